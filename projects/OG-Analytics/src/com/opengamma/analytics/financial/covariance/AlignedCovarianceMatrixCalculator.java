@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.analytics.math.function.Function;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+
+/**
+ * Calculates the covariance matrix of an array of return time series in a single pass.
+ * <p>
+ * Unlike {@link CovarianceMatrixCalculator}, which evaluates a {@link CovarianceCalculator} for every pair of series, the series are
+ * aligned once onto the dates that they all have in common and the whole matrix is then estimated by a {@link CovarianceMatrixEstimator}.
+ * Either the sample covariance or the exponentially weighted moving average (EWMA) covariance can be calculated. The populated estimator
+ * is available from {@link #getEstimator}, so that a caller can keep it and add each new day's returns without reprocessing the history.
+ */
+public class AlignedCovarianceMatrixCalculator implements Function<DoubleTimeSeries<?>, DoubleMatrix2D> {
+  private final boolean _isExponentiallyWeighted;
+  private final double _lambda;
+  private final ExecutorService _executor;
+
+  /**
+   * Creates a calculator for the sample covariance matrix.
+   * @param executor The executor to calculate blocks of the matrix on, null to calculate on the calling thread
+   */
+  public AlignedCovarianceMatrixCalculator(final ExecutorService executor) {
+    _isExponentiallyWeighted = false;
+    _lambda = 0;
+    _executor = executor;
+  }
+
+  /**
+   * Creates a calculator for the EWMA covariance matrix.
+   * @param lambda The weight parameter, $0 \leq \lambda \leq 1$
+   * @param executor The executor to calculate blocks of the matrix on, null to calculate on the calling thread
+   */
+  public AlignedCovarianceMatrixCalculator(final double lambda, final ExecutorService executor) {
+    ArgumentChecker.isTrue(lambda >= 0 && lambda <= 1, "lambda must be between zero and one; have {}", lambda);
+    _isExponentiallyWeighted = true;
+    _lambda = lambda;
+    _executor = executor;
+  }
+
+  /**
+   * Calculates the covariance matrix. The ordering of the elements is determined by the order of the array.
+   * @param x An array of return time series, not null or empty
+   * @return The covariance matrix
+   * @throws IllegalArgumentException If the array is null or empty, or if the series have too few dates in common
+   */
+  @Override
+  public DoubleMatrix2D evaluate(final DoubleTimeSeries<?>... x) {
+    return getEstimator(x).getCovarianceMatrix();
+  }
+
+  /**
+   * Creates an estimator populated with the returns of the series on the dates that they all have in common.
+   * @param x An array of return time series, not null or empty
+   * @return The estimator
+   */
+  public CovarianceMatrixEstimator getEstimator(final DoubleTimeSeries<?>... x) {
+    final double[][] returns = align(x);
+    final CovarianceMatrixEstimator estimator = _isExponentiallyWeighted ? new ExponentialWeightedMovingAverageCovarianceMatrixEstimator(x.length, _lambda)
+        : new SampleCovarianceMatrixEstimator(x.length);
+    estimator.update(returns, _executor);
+    return estimator;
+  }
+
+  /**
+   * Aligns an array of time series onto the dates that they all have in common. Each series is iterated over once.
+   * @param x An array of time series, not null or empty
+   * @return The values of the series, indexed by series and then by date in the order of the first series
+   */
+  public static double[][] align(final DoubleTimeSeries<?>... x) {
+    Validate.notNull(x, "x");
+    ArgumentChecker.notEmpty(x, "x");
+    Validate.noNullElements(x, "x");
+    final int n = x.length;
+    final DoubleTimeSeries<?> first = x[0];
+    final int size = first.size();
+    final Map<Object, Integer> dateIndex = new HashMap<Object, Integer>(size * 2);
+    final Iterator<?> times = first.timeIterator();
+    for (int k = 0; k < size; k++) {
+      dateIndex.put(times.next(), k);
+    }
+    final double[][] values = new double[n][size];
+    final int[] count = new int[size];
+    for (int i = 0; i < n; i++) {
+      final double[] row = values[i];
+      final Iterator<? extends Map.Entry<?, Double>> entries = x[i].iterator();
+      while (entries.hasNext()) {
+        final Map.Entry<?, Double> entry = entries.next();
+        final Integer k = dateIndex.get(entry.getKey());
+        if (k != null) {
+          row[k] = entry.getValue();
+          count[k]++;
+        }
+      }
+    }
+    int nDates = 0;
+    for (int k = 0; k < size; k++) {
+      if (count[k] == n) {
+        for (int i = 0; i < n; i++) {
+          values[i][nDates] = values[i][k];
+        }
+        nDates++;
+      }
+    }
+    if (nDates < size) {
+      for (int i = 0; i < n; i++) {
+        values[i] = Arrays.copyOf(values[i], nDates);
+      }
+    }
+    return values;
+  }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Estimates the covariance matrix of a set of return series, one observation (i.e. one date's returns for every series) at a time.
+ * <p>
+ * The estimate can be updated with a single observation, which costs $O(n^2)$ for $n$ series, so that daily updates do not need the
+ * history to be reprocessed, or with a block of observations. Blocks are processed as a single pass over the data in which the matrix
+ * is divided into tiles of series that are computed independently, on an executor if one is supplied.
+ * <p>
+ * This class is not thread-safe.
+ */
+public abstract class CovarianceMatrixEstimator {
+  /** The number of series in each side of a tile of the matrix */
+  private static final int SERIES_BLOCK = 64;
+  /** The number of observations processed at a time for each tile, so that the rows of a tile stay in cache */
+  private static final int OBSERVATION_BLOCK = 1024;
+  private final int _dimension;
+  private int _nObservations;
+
+  /**
+   * @param dimension The number of series, greater than zero
+   */
+  protected CovarianceMatrixEstimator(final int dimension) {
+    ArgumentChecker.isTrue(dimension > 0, "dimension must be greater than zero");
+    _dimension = dimension;
+  }
+
+  /**
+   * Adds a single observation to the estimate.
+   * @param returns The return of each series, not null
+   */
+  public void update(final double[] returns) {
+    Validate.notNull(returns, "returns");
+    ArgumentChecker.isTrue(returns.length == _dimension, "need a return for each of the {} series; have {}", _dimension, returns.length);
+    updateObservation(returns);
+    _nObservations++;
+  }
+
+  /**
+   * Adds a block of observations to the estimate, in date order.
+   * @param returns The returns, indexed by series and then by observation, not null. All series must have the same number of observations.
+   * @param executor The executor to process the tiles of the matrix on, null to process them on the calling thread
+   */
+  public void update(final double[][] returns, final ExecutorService executor) {
+    Validate.notNull(returns, "returns");
+    ArgumentChecker.isTrue(returns.length == _dimension, "need returns for each of the {} series; have {}", _dimension, returns.length);
+    Validate.notNull(returns[0], "returns");
+    final int nObservations = returns[0].length;
+    for (int i = 1; i < _dimension; i++) {
+      Validate.notNull(returns[i], "returns");
+      ArgumentChecker.isTrue(returns[i].length == nObservations, "series {} has {} observations; expected {}", i, returns[i].length, nObservations);
+    }
+    if (nObservations == 0) {
+      return;
+    }
+    updateBlock(returns, nObservations, executor);
+    _nObservations += nObservations;
+  }
+
+  /**
+   * Adds a single observation to the estimate. {@link #getNumberOfObservations} does not yet include the observation.
+   * @param returns The return of each series
+   */
+  protected abstract void updateObservation(double[] returns);
+
+  /**
+   * Adds a block of observations to the estimate. {@link #getNumberOfObservations} does not yet include the block.
+   * @param returns The returns, indexed by series and then by observation
+   * @param nObservations The number of observations, greater than zero
+   * @param executor The executor to process the tiles of the matrix on, null to process them on the calling thread
+   */
+  protected abstract void updateBlock(double[][] returns, int nObservations, ExecutorService executor);
+
+  /**
+   * @return The current estimate of the covariance matrix
+   */
+  public abstract DoubleMatrix2D getCovarianceMatrix();
+
+  public int getDimension() {
+    return _dimension;
+  }
+
+  public int getNumberOfObservations() {
+    return _nObservations;
+  }
+
+  /**
+   * Calculates the matrix of inner products of the rows of the data, $\sum_k a_{ik}a_{jk}$, a tile at a time.
+   * @param a The data, indexed by series and then by observation
+   * @param nObservations The number of observations
+   * @param executor The executor to process the tiles on, null to process them on the calling thread
+   * @return The symmetric matrix of inner products
+   */
+  protected static double[][] innerProducts(final double[][] a, final int nObservations, final ExecutorService executor) {
+    final int n = a.length;
+    final double[][] result = new double[n][n];
+    final List<Callable<Void>> tiles = new ArrayList<Callable<Void>>();
+    for (int rowStart = 0; rowStart < n; rowStart += SERIES_BLOCK) {
+      for (int columnStart = rowStart; columnStart < n; columnStart += SERIES_BLOCK) {
+        final int iStart = rowStart;
+        final int jStart = columnStart;
+        tiles.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            innerProductsTile(a, nObservations, result, iStart, Math.min(iStart + SERIES_BLOCK, n), jStart, Math.min(jStart + SERIES_BLOCK, n));
+            return null;
+          }
+        });
+      }
+    }
+    if (executor == null || tiles.size() == 1) {
+      for (final Callable<Void> tile : tiles) {
+        try {
+          tile.call();
+        } catch (final Exception e) {
+          throw new OpenGammaRuntimeException("Error calculating covariance", e);
+        }
+      }
+    } else {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>(tiles.size());
+      for (final Callable<Void> tile : tiles) {
+        futures.add(executor.submit(tile));
+      }
+      for (final Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OpenGammaRuntimeException("Interrupted while calculating covariance", e);
+        } catch (final ExecutionException e) {
+          throw new OpenGammaRuntimeException("Error calculating covariance", e.getCause());
+        }
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < i; j++) {
+        result[i][j] = result[j][i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Fills the upper-triangular part of a tile of the matrix of inner products. Tiles do not overlap, so can be filled concurrently.
+   */
+  private static void innerProductsTile(final double[][] a, final int nObservations, final double[][] result, final int iStart, final int iEnd,
+      final int jStart, final int jEnd) {
+    for (int kStart = 0; kStart < nObservations; kStart += OBSERVATION_BLOCK) {
+      final int kEnd = Math.min(kStart + OBSERVATION_BLOCK, nObservations);
+      for (int i = iStart; i < iEnd; i++) {
+        final double[] ai = a[i];
+        final double[] resultRow = result[i];
+        for (int j = Math.max(i, jStart); j < jEnd; j++) {
+          final double[] aj = a[j];
+          double sum = 0;
+          for (int k = kStart; k < kEnd; k++) {
+            sum += ai[k] * aj[k];
+          }
+          resultRow[j] += sum;
+        }
+      }
+    }
+  }
+
+}
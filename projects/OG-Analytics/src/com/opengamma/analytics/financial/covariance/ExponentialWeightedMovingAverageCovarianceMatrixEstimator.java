@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.concurrent.ExecutorService;
+
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Estimates the exponentially weighted moving average (EWMA) covariance matrix of a set of return series,
+ * $$
+ * \begin{eqnarray*}
+ * \Sigma_t = \lambda \Sigma_{t-1} + (1 - \lambda) r_t r_t^T
+ * \end{eqnarray*}
+ * $$
+ * where $r_t$ is the vector of returns of each series for a single period. As in
+ * {@link ExponentialWeightedMovingAverageHistoricalVolatilityCalculator}, the estimate is started from the outer product of the first
+ * observation with itself, and the diagonal is the EWMA variance of each series.
+ * <p>
+ * A block of $m$ observations is added in one pass as
+ * $\Sigma_{t+m} = \lambda^m \Sigma_t + (1 - \lambda) \sum_{k=1}^m \lambda^{m-k} r_{t+k} r_{t+k}^T$.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ExponentialWeightedMovingAverageCovarianceMatrixEstimator extends CovarianceMatrixEstimator {
+  private final double _lambda;
+  private final double[][] _covariance;
+
+  /**
+   * @param dimension The number of series, greater than zero
+   * @param lambda The weight parameter, $0 \leq \lambda \leq 1$
+   */
+  public ExponentialWeightedMovingAverageCovarianceMatrixEstimator(final int dimension, final double lambda) {
+    super(dimension);
+    ArgumentChecker.isTrue(lambda >= 0 && lambda <= 1, "lambda must be between zero and one; have {}", lambda);
+    _lambda = lambda;
+    _covariance = new double[dimension][dimension];
+  }
+
+  @Override
+  protected void updateObservation(final double[] returns) {
+    final int n = getDimension();
+    final boolean first = getNumberOfObservations() == 0;
+    final double decay = first ? 0 : _lambda;
+    final double weight = first ? 1 : 1 - _lambda;
+    for (int i = 0; i < n; i++) {
+      final double[] row = _covariance[i];
+      final double weightedReturn = weight * returns[i];
+      for (int j = 0; j < n; j++) {
+        row[j] = decay * row[j] + weightedReturn * returns[j];
+      }
+    }
+  }
+
+  @Override
+  protected void updateBlock(final double[][] returns, final int nObservations, final ExecutorService executor) {
+    final int n = getDimension();
+    final boolean first = getNumberOfObservations() == 0;
+    // weight each observation by the square root of its weight, so that the inner products of the rows give the weighted sum
+    final double[] rootWeights = new double[nObservations];
+    double weight = 1 - _lambda;
+    for (int k = nObservations - 1; k >= 0; k--) {
+      rootWeights[k] = Math.sqrt(weight);
+      weight *= _lambda;
+    }
+    if (first) {
+      rootWeights[0] = Math.sqrt(Math.pow(_lambda, nObservations - 1));
+    }
+    final double[][] weighted = new double[n][nObservations];
+    for (int i = 0; i < n; i++) {
+      final double[] series = returns[i];
+      final double[] weightedSeries = weighted[i];
+      for (int k = 0; k < nObservations; k++) {
+        weightedSeries[k] = rootWeights[k] * series[k];
+      }
+    }
+    final double[][] blockCovariance = innerProducts(weighted, nObservations, executor);
+    final double decay = first ? 0 : Math.pow(_lambda, nObservations);
+    for (int i = 0; i < n; i++) {
+      final double[] row = _covariance[i];
+      final double[] blockRow = blockCovariance[i];
+      for (int j = 0; j < n; j++) {
+        row[j] = decay * row[j] + blockRow[j];
+      }
+    }
+  }
+
+  /**
+   * @return The EWMA covariance matrix
+   * @throws IllegalArgumentException If there are no observations
+   */
+  @Override
+  public DoubleMatrix2D getCovarianceMatrix() {
+    ArgumentChecker.isTrue(getNumberOfObservations() > 0, "need at least one observation to estimate the covariance");
+    final int n = getDimension();
+    final double[][] covariance = new double[n][];
+    for (int i = 0; i < n; i++) {
+      covariance[i] = _covariance[i].clone();
+    }
+    return new DoubleMatrix2D(covariance);
+  }
+
+  public double getLambda() {
+    return _lambda;
+  }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.concurrent.ExecutorService;
+
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Estimates the sample covariance matrix of a set of return series,
+ * $$
+ * \begin{eqnarray*}
+ * \frac{1}{n-1}\sum\limits_{k=1}^n (x_{ik} - \overline{x}_i)(x_{jk} - \overline{x}_j)
+ * \end{eqnarray*}
+ * $$
+ * where $n$ is the number of observations.
+ * <p>
+ * The means and the sums of products of deviations from the means are kept, rather than raw sums of products, so that the estimate is
+ * numerically stable. A single observation is added using Welford's update, and a block of observations by calculating its own means
+ * and co-moments and combining them with the existing ones (Chan, Golub and LeVeque).
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SampleCovarianceMatrixEstimator extends CovarianceMatrixEstimator {
+  private final double[] _means;
+  private final double[][] _comoments;
+
+  /**
+   * @param dimension The number of series, greater than zero
+   */
+  public SampleCovarianceMatrixEstimator(final int dimension) {
+    super(dimension);
+    _means = new double[dimension];
+    _comoments = new double[dimension][dimension];
+  }
+
+  @Override
+  protected void updateObservation(final double[] returns) {
+    final int n = getDimension();
+    final int nObservations = getNumberOfObservations() + 1;
+    final double[] deltas = new double[n];
+    for (int i = 0; i < n; i++) {
+      deltas[i] = returns[i] - _means[i];
+      _means[i] += deltas[i] / nObservations;
+    }
+    for (int i = 0; i < n; i++) {
+      final double[] row = _comoments[i];
+      for (int j = i; j < n; j++) {
+        row[j] += deltas[i] * (returns[j] - _means[j]);
+        _comoments[j][i] = row[j];
+      }
+    }
+  }
+
+  @Override
+  protected void updateBlock(final double[][] returns, final int nObservations, final ExecutorService executor) {
+    final int n = getDimension();
+    final double[] blockMeans = new double[n];
+    final double[][] deviations = new double[n][nObservations];
+    for (int i = 0; i < n; i++) {
+      final double[] series = returns[i];
+      double sum = 0;
+      for (int k = 0; k < nObservations; k++) {
+        sum += series[k];
+      }
+      final double mean = sum / nObservations;
+      final double[] deviation = deviations[i];
+      for (int k = 0; k < nObservations; k++) {
+        deviation[k] = series[k] - mean;
+      }
+      blockMeans[i] = mean;
+    }
+    final double[][] blockComoments = innerProducts(deviations, nObservations, executor);
+    final int previous = getNumberOfObservations();
+    final int total = previous + nObservations;
+    final double weight = (double) previous * nObservations / total;
+    final double[] deltas = new double[n];
+    for (int i = 0; i < n; i++) {
+      deltas[i] = blockMeans[i] - _means[i];
+      _means[i] += deltas[i] * nObservations / total;
+    }
+    for (int i = 0; i < n; i++) {
+      final double[] row = _comoments[i];
+      final double[] blockRow = blockComoments[i];
+      for (int j = 0; j < n; j++) {
+        row[j] += blockRow[j] + deltas[i] * deltas[j] * weight;
+      }
+    }
+  }
+
+  /**
+   * @return The sample covariance matrix
+   * @throws IllegalArgumentException If there are fewer than two observations
+   */
+  @Override
+  public DoubleMatrix2D getCovarianceMatrix() {
+    final int nObservations = getNumberOfObservations();
+    ArgumentChecker.isTrue(nObservations > 1, "need at least two observations to estimate the covariance; have {}", nObservations);
+    final int n = getDimension();
+    final double[][] covariance = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        covariance[i][j] = _comoments[i][j] / (nObservations - 1);
+      }
+    }
+    return new DoubleMatrix2D(covariance);
+  }
+
+  /**
+   * @return The mean of each series
+   */
+  public double[] getMeans() {
+    return _means.clone();
+  }
+
+}
@@ -0,0 +1,333 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.option.pricing.fourier;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.analytics.math.function.Function1D;
+import com.opengamma.analytics.math.integration.GaussLegendreWeightAndAbscissaFunction;
+import com.opengamma.analytics.math.integration.GaussianQuadratureData;
+import com.opengamma.analytics.math.number.ComplexNumber;
+
+/**
+ * Prices European options for a whole set of strikes (and, optionally, expiries) from a single set of evaluations of the characteristic function.
+ * <p>
+ * {@link FourierPricer} integrates adaptively for each strike, so the characteristic exponent is evaluated afresh for every option. Here the
+ * integral is instead taken with a composite Gauss-Legendre rule on a fixed grid, so the transform $\frac{\phi(z)}{z(-i - z)}$, with
+ * $z = x - i(1 + \alpha)$, only needs to be computed once per expiry at the grid nodes; each strike is then a cheap weighted sum over the
+ * cached values. For time-homogeneous (Levy) exponents, where $\psi(u, t) = t\psi(u, 1)$, the exponent is evaluated once for all expiries.
+ * <p>
+ * Results are written to primitive arrays, which makes this suitable for calibration where a strike/expiry grid is repriced for every
+ * trial set of model parameters.
+ */
+public class FourierBatchPricer {
+  private static final IntegralLimitCalculator LIMIT_CALCULATOR = new IntegralLimitCalculator();
+  private static final int DEFAULT_PANELS = 64;
+  private static final int DEFAULT_POINTS_PER_PANEL = 8;
+
+  private final int _nPanels;
+  private final int _pointsPerPanel;
+  private final double[] _abscissas;
+  private final double[] _weights;
+
+  public FourierBatchPricer() {
+    this(DEFAULT_PANELS, DEFAULT_POINTS_PER_PANEL);
+  }
+
+  /**
+   * @param nPanels The number of equal width panels the integration range is divided into, greater than zero
+   * @param pointsPerPanel The number of Gauss-Legendre points used on each panel, greater than zero
+   */
+  public FourierBatchPricer(final int nPanels, final int pointsPerPanel) {
+    Validate.isTrue(nPanels > 0, "need nPanels > 0");
+    Validate.isTrue(pointsPerPanel > 0, "need pointsPerPanel > 0");
+    _nPanels = nPanels;
+    _pointsPerPanel = pointsPerPanel;
+    final GaussianQuadratureData data = new GaussLegendreWeightAndAbscissaFunction().generate(pointsPerPanel);
+    _abscissas = data.getAbscissas();
+    _weights = data.getWeights();
+  }
+
+  /**
+   * Gets the number of grid nodes, i.e. the number of characteristic function evaluations made per expiry.
+   * @return The number of nodes
+   */
+  public int getNumberOfNodes() {
+    return _nPanels * _pointsPerPanel;
+  }
+
+  /**
+   * Price a European option across a set of strikes with the same expiry.
+   * @param forward The forward value of the underlying
+   * @param discountFactor The discount factor
+   * @param t Time to expiry
+   * @param isCall true for calls
+   * @param ce The Characteristic Exponent (log of characteristic function) of the returns of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param alpha Regularization factor. Values of 0 or -1 are not allowed. -0.5 is recommended
+   * @param limitTolerance Tolerance used to find the upper limit of the integral
+   * @return The prices, in the same order as the strikes
+   */
+  public double[] price(final double forward, final double discountFactor, final double t, final boolean isCall, final MartingaleCharacteristicExponent ce,
+      final double[] strikes, final double alpha, final double limitTolerance) {
+    Validate.notNull(strikes, "strikes");
+    final double[] prices = new double[strikes.length];
+    price(forward, discountFactor, t, isCall, ce, strikes, alpha, limitTolerance, prices);
+    return prices;
+  }
+
+  /**
+   * Price a European option across a set of strikes with the same expiry, writing the results into an existing array.
+   * @param forward The forward value of the underlying
+   * @param discountFactor The discount factor
+   * @param t Time to expiry
+   * @param isCall true for calls
+   * @param ce The Characteristic Exponent (log of characteristic function) of the returns of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param alpha Regularization factor. Values of 0 or -1 are not allowed. -0.5 is recommended
+   * @param limitTolerance Tolerance used to find the upper limit of the integral
+   * @param prices The array the prices are written to, not null, at least as long as the strikes
+   */
+  public void price(final double forward, final double discountFactor, final double t, final boolean isCall, final MartingaleCharacteristicExponent ce,
+      final double[] strikes, final double alpha, final double limitTolerance, final double[] prices) {
+    validate(ce, alpha, limitTolerance);
+    Validate.notNull(strikes, "strikes");
+    Validate.notNull(prices, "prices");
+    Validate.isTrue(prices.length >= strikes.length, "prices array is shorter than strikes array");
+    final double xMax = getIntegralLimit(ce, t, alpha, limitTolerance);
+    final int n = getNumberOfNodes();
+    final double[] x = new double[n];
+    final double[] w = new double[n];
+    final double[] re = new double[n];
+    final double[] im = new double[n];
+    setNodes(xMax, x, w);
+    final Function1D<ComplexNumber, ComplexNumber> func = ce.getFunction(t);
+    for (int j = 0; j < n; j++) {
+      final ComplexNumber psi = func.evaluate(new ComplexNumber(x[j], -1 - alpha));
+      setTransform(x[j], alpha, psi.getReal(), psi.getImaginary(), j, re, im);
+    }
+    priceFromTransform(forward, discountFactor, isCall, strikes, alpha, x, w, re, im, prices);
+  }
+
+  /**
+   * Price a European option across a grid of expiries and strikes. For time-homogeneous characteristic exponents the exponent is evaluated
+   * only once, and shared between all expiries.
+   * @param forwards The forward for each expiry, not null
+   * @param discountFactors The discount factor for each expiry, not null
+   * @param expiries The times to expiry, not null
+   * @param isCall true for calls
+   * @param ce The Characteristic Exponent (log of characteristic function) of the returns of the underlying, not null
+   * @param strikes The strikes for each expiry, not null
+   * @param alpha Regularization factor. Values of 0 or -1 are not allowed. -0.5 is recommended
+   * @param limitTolerance Tolerance used to find the upper limit of the integral
+   * @return The prices, indexed by expiry then strike
+   */
+  public double[][] price(final double[] forwards, final double[] discountFactors, final double[] expiries, final boolean isCall, final MartingaleCharacteristicExponent ce,
+      final double[][] strikes, final double alpha, final double limitTolerance) {
+    validate(ce, alpha, limitTolerance);
+    Validate.notNull(forwards, "forwards");
+    Validate.notNull(discountFactors, "discount factors");
+    Validate.notNull(expiries, "expiries");
+    Validate.notNull(strikes, "strikes");
+    final int nExpiries = expiries.length;
+    Validate.isTrue(forwards.length == nExpiries, "need a forward for each expiry");
+    Validate.isTrue(discountFactors.length == nExpiries, "need a discount factor for each expiry");
+    Validate.isTrue(strikes.length == nExpiries, "need a set of strikes for each expiry");
+    final double[][] res = new double[nExpiries][];
+    if (nExpiries == 0) {
+      return res;
+    }
+    if (!isTimeHomogeneous(ce)) {
+      for (int i = 0; i < nExpiries; i++) {
+        res[i] = price(forwards[i], discountFactors[i], expiries[i], isCall, ce, strikes[i], alpha, limitTolerance);
+      }
+      return res;
+    }
+    // psi(u, t) = t * psi(u, 1), and the integrand decays slowest for the shortest expiry, so one grid covers every expiry
+    double tMin = expiries[0];
+    for (int i = 1; i < nExpiries; i++) {
+      tMin = Math.min(tMin, expiries[i]);
+    }
+    Validate.isTrue(tMin > 0, "need positive expiries");
+    final double xMax = getIntegralLimit(ce, tMin, alpha, limitTolerance);
+    final int n = getNumberOfNodes();
+    final double[] x = new double[n];
+    final double[] w = new double[n];
+    final double[] psiRe = new double[n];
+    final double[] psiIm = new double[n];
+    final double[] re = new double[n];
+    final double[] im = new double[n];
+    setNodes(xMax, x, w);
+    final Function1D<ComplexNumber, ComplexNumber> func = ce.getFunction(1.0);
+    for (int j = 0; j < n; j++) {
+      final ComplexNumber psi = func.evaluate(new ComplexNumber(x[j], -1 - alpha));
+      psiRe[j] = psi.getReal();
+      psiIm[j] = psi.getImaginary();
+    }
+    for (int i = 0; i < nExpiries; i++) {
+      final double t = expiries[i];
+      for (int j = 0; j < n; j++) {
+        setTransform(x[j], alpha, t * psiRe[j], t * psiIm[j], j, re, im);
+      }
+      res[i] = new double[strikes[i].length];
+      priceFromTransform(forwards[i], discountFactors[i], isCall, strikes[i], alpha, x, w, re, im, res[i]);
+    }
+    return res;
+  }
+
+  /**
+   * Calculates the sensitivity of the option price to each of the parameters of the characteristic exponent, for a set of strikes with the same
+   * expiry. The adjoint of the characteristic exponent is evaluated once per grid node, and shared between all parameters and strikes.
+   * @param forward The forward value of the underlying
+   * @param discountFactor The discount factor
+   * @param t Time to expiry
+   * @param ce The Characteristic Exponent (log of characteristic function) of the returns of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param alpha Regularization factor. Values of 0 or -1 are not allowed. -0.5 is recommended
+   * @param limitTolerance Tolerance used to find the upper limit of the integral
+   * @return The sensitivities, indexed by model parameter then strike
+   */
+  public double[][] getGreeks(final double forward, final double discountFactor, final double t, final MartingaleCharacteristicExponent ce, final double[] strikes,
+      final double alpha, final double limitTolerance) {
+    validate(ce, alpha, limitTolerance);
+    Validate.notNull(strikes, "strikes");
+    final double xMax = getIntegralLimit(ce, t, alpha, limitTolerance);
+    final int n = getNumberOfNodes();
+    final double[] x = new double[n];
+    final double[] w = new double[n];
+    final double[] re = new double[n];
+    final double[] im = new double[n];
+    setNodes(xMax, x, w);
+    final Function1D<ComplexNumber, ComplexNumber[]> adjointFunc = ce.getAdjointFunction(t);
+    double[][] sensRe = null;
+    double[][] sensIm = null;
+    int nParams = 0;
+    for (int j = 0; j < n; j++) {
+      final ComplexNumber[] adjoint = adjointFunc.evaluate(new ComplexNumber(x[j], -1 - alpha));
+      if (sensRe == null) {
+        nParams = adjoint.length - 1;
+        sensRe = new double[nParams][n];
+        sensIm = new double[nParams][n];
+      }
+      setTransform(x[j], alpha, adjoint[0].getReal(), adjoint[0].getImaginary(), j, re, im);
+      for (int p = 0; p < nParams; p++) {
+        final double dRe = adjoint[p + 1].getReal();
+        final double dIm = adjoint[p + 1].getImaginary();
+        sensRe[p][j] = re[j] * dRe - im[j] * dIm;
+        sensIm[p][j] = re[j] * dIm + im[j] * dRe;
+      }
+    }
+    final int nStrikes = strikes.length;
+    final double[][] res = new double[nParams][nStrikes];
+    for (int p = 0; p < nParams; p++) {
+      for (int i = 0; i < nStrikes; i++) {
+        final double k = Math.log(strikes[i] / forward);
+        res[p][i] = discountFactor * forward * Math.exp(-alpha * k) * integrate(k, x, w, sensRe[p], sensIm[p]) / Math.PI;
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Returns true if the characteristic exponent is known to be linear in time, i.e. $\psi(u, t) = t\psi(u, 1)$, so that evaluations can be shared between expiries
+   * @param ce The characteristic exponent
+   * @return true if the exponent is time-homogeneous
+   */
+  protected boolean isTimeHomogeneous(final CharacteristicExponent ce) {
+    if (ce instanceof GaussianCharacteristicExponent || ce instanceof CGMYCharacteristicExponent) {
+      return true;
+    }
+    if (ce instanceof MeanCorrection) {
+      return isTimeHomogeneous(((MeanCorrection) ce).getBase());
+    }
+    return false;
+  }
+
+  private void validate(final MartingaleCharacteristicExponent ce, final double alpha, final double limitTolerance) {
+    Validate.notNull(ce, "characteristic exponent");
+    Validate.isTrue(limitTolerance > 0, "limit tolerance must be > 0");
+    Validate.isTrue(alpha != 0.0 && alpha != -1.0, "alpha cannot be -1 or 0");
+    Validate.isTrue(alpha <= ce.getLargestAlpha() && alpha >= ce.getSmallestAlpha(),
+        "The value of alpha is not valid for the Characteristic Exponent and will most likely lead to mispricing. Choose a value between " + ce.getSmallestAlpha() + " and " + ce.getLargestAlpha());
+  }
+
+  private double getIntegralLimit(final MartingaleCharacteristicExponent ce, final double t, final double alpha, final double limitTolerance) {
+    return LIMIT_CALCULATOR.solve(new EuropeanCallFourierTransform(ce).getFunction(t), alpha, limitTolerance);
+  }
+
+  /**
+   * Maps the Gauss-Legendre points on $[-1, 1]$ onto each of the panels of $[0, x_{max}]$
+   */
+  private void setNodes(final double xMax, final double[] x, final double[] w) {
+    final double halfWidth = 0.5 * xMax / _nPanels;
+    int j = 0;
+    for (int panel = 0; panel < _nPanels; panel++) {
+      final double mid = (2 * panel + 1) * halfWidth;
+      for (int i = 0; i < _pointsPerPanel; i++) {
+        x[j] = mid + halfWidth * _abscissas[i];
+        w[j] = halfWidth * _weights[i];
+        j++;
+      }
+    }
+  }
+
+  /**
+   * Sets $\frac{\exp(\psi)}{z(-i - z)}$ at node j, where $z = x - i(1 + \alpha)$ and $z(-i - z) = \alpha(1 + \alpha) - x^2 + ix(1 + 2\alpha)$
+   */
+  private static void setTransform(final double x, final double alpha, final double psiRe, final double psiIm, final int j, final double[] re, final double[] im) {
+    final double mod = Math.exp(psiRe);
+    final double numRe = mod * Math.cos(psiIm);
+    final double numIm = mod * Math.sin(psiIm);
+    final double denomRe = alpha * (1 + alpha) - x * x;
+    final double denomIm = x * (1 + 2 * alpha);
+    final double denomSq = denomRe * denomRe + denomIm * denomIm;
+    re[j] = (numRe * denomRe + numIm * denomIm) / denomSq;
+    im[j] = (numIm * denomRe - numRe * denomIm) / denomSq;
+  }
+
+  /**
+   * Computes $\sum_j w_j Re\left[e^{-ix_jk}g_j\right]$
+   */
+  private static double integrate(final double k, final double[] x, final double[] w, final double[] re, final double[] im) {
+    final int n = x.length;
+    double sum = 0.0;
+    for (int j = 0; j < n; j++) {
+      final double xk = x[j] * k;
+      sum += w[j] * (Math.cos(xk) * re[j] + Math.sin(xk) * im[j]);
+    }
+    return sum;
+  }
+
+  private static void priceFromTransform(final double forward, final double discountFactor, final boolean isCall, final double[] strikes, final double alpha,
+      final double[] x, final double[] w, final double[] re, final double[] im, final double[] prices) {
+    final int nStrikes = strikes.length;
+    for (int i = 0; i < nStrikes; i++) {
+      final double strike = strikes[i];
+      final double k = Math.log(strike / forward);
+      final double integral = Math.exp(-alpha * k) * integrate(k, x, w, re, im) / Math.PI;
+      prices[i] = getPrice(forward, discountFactor, strike, isCall, alpha, integral);
+    }
+  }
+
+  private static double getPrice(final double forward, final double discountFactor, final double strike, final boolean isCall, final double alpha, final double integral) {
+    if (isCall) {
+      if (alpha > 0.0) {
+        return discountFactor * forward * integral;
+      } else if (alpha < -1.0) {
+        return discountFactor * (forward * (1 + integral) - strike);
+      } else {
+        return discountFactor * forward * (integral + 1);
+      }
+    }
+    if (alpha > 0.0) {
+      return discountFactor * (forward * (integral - 1) + strike);
+    } else if (alpha < -1.0) {
+      return discountFactor * forward * integral;
+    }
+    return discountFactor * (forward * integral + strike);
+  }
+
+}
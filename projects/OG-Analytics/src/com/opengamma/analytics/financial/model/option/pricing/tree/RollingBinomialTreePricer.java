@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.option.pricing.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Prices European and American vanilla options on a Cox-Ross-Rubinstein binomial lattice.
+ * <p>
+ * Unlike {@link BinomialOptionModel}, which builds a {@link com.opengamma.analytics.financial.model.tree.RecombiningBinomialTree} of
+ * boxed spot/value pairs for every valuation, only the current level of the lattice is held, in a primitive array that is allocated once
+ * per thread and reused for every option. Delta, gamma and theta are read from the first levels of the lattice during the backward
+ * induction, rather than by repricing on bumped data. Batches of options on the same underlying can be priced across an executor.
+ * <p>
+ * The results of {@link #priceAndGreeks} are laid out as {@link #PRICE}, {@link #DELTA}, {@link #GAMMA} and {@link #THETA}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RollingBinomialTreePricer {
+  /** Index of the price in the result array */
+  public static final int PRICE = 0;
+  /** Index of the delta in the result array */
+  public static final int DELTA = 1;
+  /** Index of the gamma in the result array */
+  public static final int GAMMA = 2;
+  /** Index of the theta in the result array */
+  public static final int THETA = 3;
+  /** The length of the result array */
+  public static final int N_RESULTS = 4;
+
+  private final int _n;
+  private final ThreadLocal<double[]> _buffer;
+
+  /**
+   * @param n The number of time steps in the lattice, greater than one
+   */
+  public RollingBinomialTreePricer(final int n) {
+    ArgumentChecker.isTrue(n > 1, "need at least two steps to calculate greeks from the lattice");
+    _n = n;
+    _buffer = new ThreadLocal<double[]>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      protected double[] initialValue() {
+        return new double[_n + 1];
+      }
+    };
+  }
+
+  public int getNumberOfSteps() {
+    return _n;
+  }
+
+  /**
+   * Prices an option.
+   * @param spot The spot value of the underlying
+   * @param strike The strike
+   * @param timeToExpiry The time to expiry
+   * @param interestRate The continuously-compounded interest rate used for discounting
+   * @param costOfCarry The continuously-compounded cost of carry of the underlying
+   * @param volatility The volatility of the underlying
+   * @param isCall true for a call, false for a put
+   * @param isAmerican true for an American option, false for a European option
+   * @return The price
+   */
+  public double price(final double spot, final double strike, final double timeToExpiry, final double interestRate, final double costOfCarry, final double volatility,
+      final boolean isCall, final boolean isAmerican) {
+    return roll(spot, strike, timeToExpiry, interestRate, costOfCarry, volatility, isCall, isAmerican, null);
+  }
+
+  /**
+   * Prices an option and calculates its delta, gamma and theta from the lattice.
+   * @param spot The spot value of the underlying
+   * @param strike The strike
+   * @param timeToExpiry The time to expiry
+   * @param interestRate The continuously-compounded interest rate used for discounting
+   * @param costOfCarry The continuously-compounded cost of carry of the underlying
+   * @param volatility The volatility of the underlying
+   * @param isCall true for a call, false for a put
+   * @param isAmerican true for an American option, false for a European option
+   * @return The price, delta, gamma and theta
+   */
+  public double[] priceAndGreeks(final double spot, final double strike, final double timeToExpiry, final double interestRate, final double costOfCarry,
+      final double volatility, final boolean isCall, final boolean isAmerican) {
+    final double[] result = new double[N_RESULTS];
+    priceAndGreeks(spot, strike, timeToExpiry, interestRate, costOfCarry, volatility, isCall, isAmerican, result);
+    return result;
+  }
+
+  /**
+   * Prices an option and calculates its delta, gamma and theta from the lattice, writing the results into an existing array.
+   * @param spot The spot value of the underlying
+   * @param strike The strike
+   * @param timeToExpiry The time to expiry
+   * @param interestRate The continuously-compounded interest rate used for discounting
+   * @param costOfCarry The continuously-compounded cost of carry of the underlying
+   * @param volatility The volatility of the underlying
+   * @param isCall true for a call, false for a put
+   * @param isAmerican true for an American option, false for a European option
+   * @param result The array the results are written to, not null, of length at least {@link #N_RESULTS}
+   */
+  public void priceAndGreeks(final double spot, final double strike, final double timeToExpiry, final double interestRate, final double costOfCarry,
+      final double volatility, final boolean isCall, final boolean isAmerican, final double[] result) {
+    ArgumentChecker.notNull(result, "result");
+    ArgumentChecker.isTrue(result.length >= N_RESULTS, "result array too short");
+    roll(spot, strike, timeToExpiry, interestRate, costOfCarry, volatility, isCall, isAmerican, result);
+  }
+
+  /**
+   * Prices a batch of options on the same underlying, calculating the delta, gamma and theta of each.
+   * @param spot The spot value of the underlying
+   * @param interestRate The continuously-compounded interest rate used for discounting
+   * @param costOfCarry The continuously-compounded cost of carry of the underlying
+   * @param volatility The volatility of the underlying
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times to expiry, not null, same length as the strikes
+   * @param isCall Whether each option is a call, not null, same length as the strikes
+   * @param isAmerican Whether each option is American, not null, same length as the strikes
+   * @param executor The executor to price on, null to price on the calling thread
+   * @return The price, delta, gamma and theta of each option
+   */
+  public double[][] priceAndGreeks(final double spot, final double interestRate, final double costOfCarry, final double volatility, final double[] strikes,
+      final double[] timesToExpiry, final boolean[] isCall, final boolean[] isAmerican, final ExecutorService executor) {
+    ArgumentChecker.notNull(strikes, "strikes");
+    ArgumentChecker.notNull(timesToExpiry, "times to expiry");
+    ArgumentChecker.notNull(isCall, "is call");
+    ArgumentChecker.notNull(isAmerican, "is American");
+    final int nOptions = strikes.length;
+    ArgumentChecker.isTrue(timesToExpiry.length == nOptions, "need a time to expiry for each strike");
+    ArgumentChecker.isTrue(isCall.length == nOptions, "need an option type for each strike");
+    ArgumentChecker.isTrue(isAmerican.length == nOptions, "need an exercise type for each strike");
+    final double[][] results = new double[nOptions][N_RESULTS];
+    if (executor == null) {
+      priceRange(spot, interestRate, costOfCarry, volatility, strikes, timesToExpiry, isCall, isAmerican, results, 0, nOptions);
+      return results;
+    }
+    final int nTasks = Math.min(nOptions, Runtime.getRuntime().availableProcessors() * 4);
+    final List<Future<?>> futures = new ArrayList<Future<?>>(nTasks);
+    for (int task = 0; task < nTasks; task++) {
+      final int from = (int) ((long) nOptions * task / nTasks);
+      final int to = (int) ((long) nOptions * (task + 1) / nTasks);
+      futures.add(executor.submit(new Callable<Void>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public Void call() {
+          priceRange(spot, interestRate, costOfCarry, volatility, strikes, timesToExpiry, isCall, isAmerican, results, from, to);
+          return null;
+        }
+      }));
+    }
+    for (final Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted while pricing", e);
+      } catch (final ExecutionException e) {
+        throw new OpenGammaRuntimeException("Error pricing option batch", e.getCause());
+      }
+    }
+    return results;
+  }
+
+  private void priceRange(final double spot, final double interestRate, final double costOfCarry, final double volatility, final double[] strikes,
+      final double[] timesToExpiry, final boolean[] isCall, final boolean[] isAmerican, final double[][] results, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      roll(spot, strikes[i], timesToExpiry[i], interestRate, costOfCarry, volatility, isCall[i], isAmerican[i], results[i]);
+    }
+  }
+
+  /**
+   * Runs the backward induction. If greeks is not null, the price, delta, gamma and theta are written to it.
+   */
+  private double roll(final double spot, final double strike, final double timeToExpiry, final double interestRate, final double costOfCarry,
+      final double volatility, final boolean isCall, final boolean isAmerican, final double[] greeks) {
+    ArgumentChecker.isTrue(spot > 0, "spot must be positive");
+    ArgumentChecker.isTrue(timeToExpiry > 0, "time to expiry must be positive");
+    ArgumentChecker.isTrue(volatility > 0, "volatility must be positive");
+    final int n = _n;
+    final double dt = timeToExpiry / n;
+    final double u = Math.exp(volatility * Math.sqrt(dt));
+    final double d = 1 / u;
+    final double p = (Math.exp(costOfCarry * dt) - d) / (u - d);
+    ArgumentChecker.isTrue(p > 0 && p < 1, "Up probability {} is outside (0, 1); increase the number of steps", p);
+    final double df = Math.exp(-interestRate * dt);
+    final double pUp = df * p;
+    final double pDown = df * (1 - p);
+    final double sign = isCall ? 1 : -1;
+    final double uOverD = u / d;
+    final double[] values = _buffer.get();
+    double s = spot * Math.pow(d, n);
+    for (int j = 0; j <= n; j++) {
+      values[j] = Math.max(sign * (s - strike), 0);
+      s *= uOverD;
+    }
+    double v20 = 0, v21 = 0, v22 = 0, v10 = 0, v11 = 0;
+    if (n == 2) {
+      // the terminal payoffs are the second level of the lattice
+      v20 = values[0];
+      v21 = values[1];
+      v22 = values[2];
+    }
+    for (int i = n - 1; i >= 0; i--) {
+      // spot at the bottom node of level i
+      s = spot * Math.pow(d, i);
+      for (int j = 0; j <= i; j++) {
+        double value = pDown * values[j] + pUp * values[j + 1];
+        if (isAmerican) {
+          value = Math.max(value, sign * (s - strike));
+        }
+        values[j] = value;
+        s *= uOverD;
+      }
+      if (i == 2) {
+        v20 = values[0];
+        v21 = values[1];
+        v22 = values[2];
+      } else if (i == 1) {
+        v10 = values[0];
+        v11 = values[1];
+      }
+    }
+    final double price = values[0];
+    if (greeks != null) {
+      final double s20 = spot * d * d;
+      final double s22 = spot * u * u;
+      greeks[PRICE] = price;
+      greeks[DELTA] = (v11 - v10) / (spot * (u - d));
+      greeks[GAMMA] = ((v22 - v21) / (s22 - spot) - (v21 - v20) / (spot - s20)) / (0.5 * (s22 - s20));
+      greeks[THETA] = (v21 - price) / (2 * dt);
+    }
+    return price;
+  }
+
+}
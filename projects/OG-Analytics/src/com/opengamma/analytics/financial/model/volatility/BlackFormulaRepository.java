@@ -29,6 +29,8 @@ public abstract class BlackFormulaRepository {
   private static final double SMALL = 1.0E-12;
   private static final int MAX_ITERATIONS = 15; //something's wrong if Newton-Raphson taking longer than this
   private static final double VOL_TOL = 1e-9; // 1 part in 100,000 basis points will do for implied vol
+  private static final int BULK_MAX_ITERATIONS = 50; // Newton from the inflection point takes under 30 iterations even for tiny prices
+  private static final double ONE_OVER_ROOT_TWO_PI = 1 / Math.sqrt(2 * Math.PI);
 
   /**
    * The <b>forward</b> price of an option using the Black formula
@@ -606,6 +608,248 @@ public abstract class BlackFormulaRepository {
     return strike;
   }
 
+  /**
+   * The <b>forward</b> prices of a set of options using the Black formula. This gives the same results as calling
+   * {@link #price(double, double, double, double, boolean)} for each option, but the normal distribution is evaluated inline and
+   * nothing is allocated, so is much faster for large numbers of options.
+   * @param forwards The forward values of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times-to-expiry, not null
+   * @param lognormalVols The log-normal volatilities, not null
+   * @param isCall True for calls, false for puts, not null
+   * @param prices The array that the <b>forward</b> prices are written to, not null
+   */
+  public static void price(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] lognormalVols, final boolean[] isCall,
+      final double[] prices) {
+    final int n = checkBulkInputs(forwards, strikes, timesToExpiry, lognormalVols, isCall);
+    Validate.notNull(prices, "prices");
+    Validate.isTrue(prices.length == n, "prices array has the wrong length");
+    for (int i = 0; i < n; i++) {
+      final double forward = forwards[i];
+      final double strike = strikes[i];
+      final double sigmaRootT = lognormalVols[i] * Math.sqrt(timesToExpiry[i]);
+      if (isSpecialCase(forward, strike, lognormalVols[i], sigmaRootT)) {
+        prices[i] = price(forward, strike, timesToExpiry[i], lognormalVols[i], isCall[i]);
+        continue;
+      }
+      final double sign = isCall[i] ? 1 : -1;
+      final double d1 = Math.log(forward / strike) / sigmaRootT + 0.5 * sigmaRootT;
+      final double d2 = d1 - sigmaRootT;
+      prices[i] = sign * (forward * normalCDF(sign * d1) - strike * normalCDF(sign * d2));
+    }
+  }
+
+  /**
+   * The <b>forward</b> prices of a set of options using the Black formula.
+   * @param forwards The forward values of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times-to-expiry, not null
+   * @param lognormalVols The log-normal volatilities, not null
+   * @param isCall True for calls, false for puts, not null
+   * @return The <b>forward</b> prices
+   * @see #price(double[], double[], double[], double[], boolean[], double[])
+   */
+  public static double[] price(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] lognormalVols, final boolean[] isCall) {
+    Validate.notNull(forwards, "forwards");
+    final double[] prices = new double[forwards.length];
+    price(forwards, strikes, timesToExpiry, lognormalVols, isCall, prices);
+    return prices;
+  }
+
+  /**
+   * The forward delta, gamma, vega and theta of a set of options in a single pass. Each greek gives the same result as the corresponding
+   * single-option function, e.g. {@link #delta(double, double, double, double, boolean)}. Any of the output arrays may be null if that greek
+   * is not required.
+   * @param forwards The forward values of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times-to-expiry, not null
+   * @param lognormalVols The log-normal volatilities, not null
+   * @param isCall True for calls, false for puts, not null
+   * @param deltas The array that the forward deltas are written to, may be null
+   * @param gammas The array that the forward gammas are written to, may be null
+   * @param vegas The array that the forward vegas are written to, may be null
+   * @param thetas The array that the forward thetas are written to, may be null
+   */
+  public static void greeks(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] lognormalVols, final boolean[] isCall,
+      final double[] deltas, final double[] gammas, final double[] vegas, final double[] thetas) {
+    final int n = checkBulkInputs(forwards, strikes, timesToExpiry, lognormalVols, isCall);
+    Validate.isTrue(deltas == null || deltas.length == n, "deltas array has the wrong length");
+    Validate.isTrue(gammas == null || gammas.length == n, "gammas array has the wrong length");
+    Validate.isTrue(vegas == null || vegas.length == n, "vegas array has the wrong length");
+    Validate.isTrue(thetas == null || thetas.length == n, "thetas array has the wrong length");
+    for (int i = 0; i < n; i++) {
+      final double forward = forwards[i];
+      final double strike = strikes[i];
+      final double vol = lognormalVols[i];
+      final double rootT = Math.sqrt(timesToExpiry[i]);
+      final double sigmaRootT = vol * rootT;
+      if (isSpecialCase(forward, strike, vol, sigmaRootT)) {
+        if (deltas != null) {
+          deltas[i] = delta(forward, strike, timesToExpiry[i], vol, isCall[i]);
+        }
+        if (gammas != null) {
+          gammas[i] = gamma(forward, strike, timesToExpiry[i], vol);
+        }
+        if (vegas != null) {
+          vegas[i] = vega(forward, strike, timesToExpiry[i], vol);
+        }
+        if (thetas != null) {
+          thetas[i] = theta(forward, strike, timesToExpiry[i], vol);
+        }
+        continue;
+      }
+      final double d1 = Math.log(forward / strike) / sigmaRootT + 0.5 * sigmaRootT;
+      final double pdf = normalPDF(d1);
+      if (deltas != null) {
+        final double sign = isCall[i] ? 1 : -1;
+        deltas[i] = sign * normalCDF(sign * d1);
+      }
+      if (gammas != null) {
+        gammas[i] = pdf / forward / sigmaRootT;
+      }
+      if (vegas != null) {
+        vegas[i] = forward * rootT * pdf;
+      }
+      if (thetas != null) {
+        thetas[i] = -forward * pdf * vol / 2 / rootT;
+      }
+    }
+  }
+
+  /**
+   * The log-normal (Black) implied volatilities of a set of options. For each option, the out-the-money price is found by put-call parity
+   * and Newton's method is started from the inflection point of the price as a function of volatility, from which it converges monotonically
+   * (Manaster and Koehler). Options for which this does not converge, and at-the-money options, fall back to
+   * {@link #impliedVolatility(double, double, double, double, boolean)}, which also reports any invalid prices.
+   * @param prices The <b>forward</b> prices, not null
+   * @param forwards The forward values of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times-to-expiry, not null
+   * @param isCall True for calls, false for puts, not null
+   * @param lognormalVols The array that the implied volatilities are written to, not null
+   */
+  public static void impliedVolatility(final double[] prices, final double[] forwards, final double[] strikes, final double[] timesToExpiry, final boolean[] isCall,
+      final double[] lognormalVols) {
+    Validate.notNull(prices, "prices");
+    Validate.notNull(lognormalVols, "lognormal vols");
+    final int n = checkBulkInputs(forwards, strikes, timesToExpiry, lognormalVols, isCall);
+    Validate.isTrue(prices.length == n, "prices array has the wrong length");
+    for (int i = 0; i < n; i++) {
+      final double forward = forwards[i];
+      final double strike = strikes[i];
+      final double timeToExpiry = timesToExpiry[i];
+      final double otmPrice = prices[i] - Math.max(0, (isCall[i] ? 1 : -1) * (forward - strike));
+      if (!(strike > 0 && otmPrice > 0 && otmPrice < Math.min(forward, strike)) || forward == strike) {
+        lognormalVols[i] = impliedVolatility(prices[i], forward, strike, timeToExpiry, isCall[i]);
+        continue;
+      }
+      final double sign = strike >= forward ? 1 : -1;
+      final double rootT = Math.sqrt(timeToExpiry);
+      final double logMoneyness = Math.log(forward / strike);
+      double sigma = Math.sqrt(2 * Math.abs(logMoneyness) / timeToExpiry);
+      boolean converged = false;
+      for (int count = 0; count < BULK_MAX_ITERATIONS; count++) {
+        final double sigmaRootT = sigma * rootT;
+        final double d1 = logMoneyness / sigmaRootT + 0.5 * sigmaRootT;
+        final double d2 = d1 - sigmaRootT;
+        final double vega = forward * rootT * normalPDF(d1);
+        if (!(vega > 0)) {
+          break;
+        }
+        final double change = (otmPrice - sign * (forward * normalCDF(sign * d1) - strike * normalCDF(sign * d2))) / vega;
+        sigma += change;
+        if (Math.abs(change) < VOL_TOL) {
+          converged = true;
+          break;
+        }
+      }
+      lognormalVols[i] = converged ? sigma : impliedVolatility(prices[i], forward, strike, timeToExpiry, isCall[i]);
+    }
+  }
+
+  /**
+   * The log-normal (Black) implied volatilities of a set of options.
+   * @param prices The <b>forward</b> prices, not null
+   * @param forwards The forward values of the underlying, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times-to-expiry, not null
+   * @param isCall True for calls, false for puts, not null
+   * @return The implied volatilities
+   * @see #impliedVolatility(double[], double[], double[], double[], boolean[], double[])
+   */
+  public static double[] impliedVolatility(final double[] prices, final double[] forwards, final double[] strikes, final double[] timesToExpiry, final boolean[] isCall) {
+    Validate.notNull(prices, "prices");
+    final double[] lognormalVols = new double[prices.length];
+    impliedVolatility(prices, forwards, strikes, timesToExpiry, isCall, lognormalVols);
+    return lognormalVols;
+  }
+
+  private static int checkBulkInputs(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] lognormalVols, final boolean[] isCall) {
+    Validate.notNull(forwards, "forwards");
+    Validate.notNull(strikes, "strikes");
+    Validate.notNull(timesToExpiry, "times to expiry");
+    Validate.notNull(lognormalVols, "lognormal vols");
+    Validate.notNull(isCall, "is call");
+    final int n = forwards.length;
+    Validate.isTrue(strikes.length == n && timesToExpiry.length == n && lognormalVols.length == n && isCall.length == n, "arrays must all be the same length");
+    return n;
+  }
+
+  /**
+   * The cases handled specially by the single-option functions, which the bulk functions delegate to. A negative volatility is passed
+   * through so that the single-option function rejects it.
+   */
+  private static boolean isSpecialCase(final double forward, final double strike, final double lognormalVol, final double sigmaRootT) {
+    return !(lognormalVol >= 0) || strike < SMALL || forward == 0 || sigmaRootT < SMALL || Math.abs(forward - strike) < SMALL;
+  }
+
+  /**
+   * The standard normal density.
+   */
+  private static double normalPDF(final double x) {
+    return Math.exp(-0.5 * x * x) * ONE_OVER_ROOT_TWO_PI;
+  }
+
+  /**
+   * The standard normal cumulative distribution, using the rational approximation of Hart (1968) as given by West (2005), "Better
+   * approximations to cumulative normal functions", which is accurate to double precision. This avoids the boxing in
+   * {@link NormalDistribution#getCDF(Double)} for the bulk functions.
+   */
+  private static double normalCDF(final double x) {
+    final double xAbs = Math.abs(x);
+    double c;
+    if (xAbs > 37) {
+      c = 0;
+    } else {
+      final double e = Math.exp(-0.5 * xAbs * xAbs);
+      if (xAbs < 7.07106781186547) {
+        double b = 3.52624965998911E-02 * xAbs + 0.700383064443688;
+        b = b * xAbs + 6.37396220353165;
+        b = b * xAbs + 33.912866078383;
+        b = b * xAbs + 112.079291497871;
+        b = b * xAbs + 221.213596169931;
+        b = b * xAbs + 220.206867912376;
+        c = e * b;
+        b = 8.83883476483184E-02 * xAbs + 1.75566716318264;
+        b = b * xAbs + 16.064177579207;
+        b = b * xAbs + 86.7807322029461;
+        b = b * xAbs + 296.564248779674;
+        b = b * xAbs + 637.333633378831;
+        b = b * xAbs + 793.826512519948;
+        b = b * xAbs + 440.413735824752;
+        c /= b;
+      } else {
+        double b = xAbs + 0.65;
+        b = xAbs + 4 / b;
+        b = xAbs + 3 / b;
+        b = xAbs + 2 / b;
+        b = xAbs + 1 / b;
+        c = e / b / 2.506628274631;
+      }
+    }
+    return x > 0 ? 1 - c : c;
+  }
+
   private static double[] priceAndVega(final double forward, final double strike, final double timeToExpiry, final double lognormalVol, final boolean isCall) {
 
     final double rootT = Math.sqrt(timeToExpiry);
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility.smile.fitting;
+
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.analytics.financial.model.volatility.smile.function.SABRFormulaData;
+import com.opengamma.analytics.financial.model.volatility.smile.function.VolatilityFunctionProvider;
+
+/**
+ * Calibrates the slices of a surface or cube to SABR using {@link SABRModelFitter}.
+ */
+public class SABRSliceCalibrator extends SmileSliceCalibrator<SABRFormulaData> {
+  private final VolatilityFunctionProvider<SABRFormulaData> _model;
+
+  /**
+   * @param model The SABR volatility function, not null
+   * @param executor The executor to fit slices on, null to fit on the calling thread
+   * @param tolerance The largest absolute change in the forward and volatilities of a slice for which the previous fit is reused, not negative
+   */
+  public SABRSliceCalibrator(final VolatilityFunctionProvider<SABRFormulaData> model, final ExecutorService executor, final double tolerance) {
+    super(executor, tolerance);
+    Validate.notNull(model, "model");
+    _model = model;
+  }
+
+  @Override
+  protected SmileModelFitter<SABRFormulaData> createFitter(final SmileSliceData slice) {
+    return new SABRModelFitter(slice.getForward(), slice.getStrikes(), slice.getTimeToExpiry(), slice.getImpliedVols(), slice.getErrors(), _model);
+  }
+
+  public VolatilityFunctionProvider<SABRFormulaData> getModel() {
+    return _model;
+  }
+
+}
@@ -22,6 +22,7 @@ import com.opengamma.analytics.math.minimization.NonLinearTransformFunction;
 import com.opengamma.analytics.math.statistics.leastsquare.LeastSquareResults;
 import com.opengamma.analytics.math.statistics.leastsquare.LeastSquareResultsWithTransform;
 import com.opengamma.analytics.math.statistics.leastsquare.NonLinearLeastSquare;
+import com.opengamma.util.tuple.Pair;
 
 /**
  * 
@@ -99,11 +100,36 @@ public abstract class SmileModelFitter<T extends SmileModelData> {
    * @return The LeastSquareResults
    */
   public LeastSquareResultsWithTransform solve(final DoubleMatrix1D start, final NonLinearParameterTransforms transform) {
+    return solveCountingEvaluations(start, transform).getFirst();
+  }
+
+  /**
+   * Solve using the default NonLinearParameterTransforms for the concrete implementation, with some parameters fixed to their initial
+   * values (indicated by fixed), also returning the number of times the model was evaluated. Each trial step of the solver makes one
+   * evaluation, so this is a measure of the number of iterations needed to converge.
+   * @param start The first guess at the parameter values
+   * @param fixed Indicates which parameters are fixed
+   * @return The LeastSquareResults and the number of model evaluations
+   */
+  public Pair<LeastSquareResultsWithTransform, Integer> solveCountingEvaluations(final DoubleMatrix1D start, final BitSet fixed) {
+    return solveCountingEvaluations(start, getTransform(start, fixed));
+  }
+
+  private Pair<LeastSquareResultsWithTransform, Integer> solveCountingEvaluations(final DoubleMatrix1D start, final NonLinearParameterTransforms transform) {
     final NonLinearTransformFunction transFunc = new NonLinearTransformFunction(getModelValueFunction(), getModelJacobianFunction(), transform);
+    final Function1D<DoubleMatrix1D, DoubleMatrix1D> fittingFunction = transFunc.getFittingFunction();
+    final int[] evaluations = new int[1];
+    final Function1D<DoubleMatrix1D, DoubleMatrix1D> countingFunction = new Function1D<DoubleMatrix1D, DoubleMatrix1D>() {
+      @Override
+      public DoubleMatrix1D evaluate(final DoubleMatrix1D x) {
+        evaluations[0]++;
+        return fittingFunction.evaluate(x);
+      }
+    };
 
-    final LeastSquareResults solRes = SOLVER.solve(_marketValues, _errors, transFunc.getFittingFunction(), transFunc.getFittingJacobian(),
+    final LeastSquareResults solRes = SOLVER.solve(_marketValues, _errors, countingFunction, transFunc.getFittingJacobian(),
         transform.transform(start), getConstraintFunction(transform), getMaximumStep());
-    return new LeastSquareResultsWithTransform(solRes, transform);
+    return Pair.of(new LeastSquareResultsWithTransform(solRes, transform), evaluations[0]);
   }
 
   protected Function1D<DoubleMatrix1D, DoubleMatrix1D> getModelValueFunction() {
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility.smile.fitting;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the work done by a {@link SmileSliceCalibrator}. The counters are cumulative over the lifetime of the calibrator and
+ * are safe to read while calibrations are running.
+ */
+public class SmileSliceCalibrationStatistics {
+  private final AtomicLong _slicesFitted = new AtomicLong();
+  private final AtomicLong _slicesWarmStarted = new AtomicLong();
+  private final AtomicLong _slicesSkipped = new AtomicLong();
+  private final AtomicLong _slicesFailed = new AtomicLong();
+  private final AtomicLong _modelEvaluations = new AtomicLong();
+  private final AtomicLong _fittingNanos = new AtomicLong();
+  private final AtomicLong _maxFittingNanos = new AtomicLong();
+
+  /* package */void recordFit(final boolean warmStarted, final int modelEvaluations, final long nanos) {
+    _slicesFitted.incrementAndGet();
+    if (warmStarted) {
+      _slicesWarmStarted.incrementAndGet();
+    }
+    _modelEvaluations.addAndGet(modelEvaluations);
+    _fittingNanos.addAndGet(nanos);
+    long max = _maxFittingNanos.get();
+    while (nanos > max) {
+      if (_maxFittingNanos.compareAndSet(max, nanos)) {
+        break;
+      }
+      max = _maxFittingNanos.get();
+    }
+  }
+
+  /* package */void recordSkip() {
+    _slicesSkipped.incrementAndGet();
+  }
+
+  /* package */void recordFailure() {
+    _slicesFailed.incrementAndGet();
+  }
+
+  /**
+   * Gets the number of slices passed to the solver.
+   * @return the number of slices fitted
+   */
+  public long getSlicesFitted() {
+    return _slicesFitted.get();
+  }
+
+  /**
+   * Gets the number of fitted slices that started from the parameters of a previous fit.
+   * @return the number of warm-started slices
+   */
+  public long getSlicesWarmStarted() {
+    return _slicesWarmStarted.get();
+  }
+
+  /**
+   * Gets the number of slices whose quotes had not moved, so the previous fit was reused.
+   * @return the number of skipped slices
+   */
+  public long getSlicesSkipped() {
+    return _slicesSkipped.get();
+  }
+
+  /**
+   * Gets the number of slices for which the solver failed.
+   * @return the number of failed slices
+   */
+  public long getSlicesFailed() {
+    return _slicesFailed.get();
+  }
+
+  /**
+   * Gets the total number of model evaluations (solver iterations) made.
+   * @return the number of model evaluations
+   */
+  public long getModelEvaluations() {
+    return _modelEvaluations.get();
+  }
+
+  /**
+   * Gets the mean number of solver iterations per fitted slice.
+   * @return the mean number of iterations, zero if nothing has been fitted
+   */
+  public double getMeanIterationsPerSlice() {
+    final long fitted = _slicesFitted.get();
+    return fitted == 0 ? 0 : (double) _modelEvaluations.get() / fitted;
+  }
+
+  /**
+   * Gets the mean time taken to fit a slice.
+   * @return the mean time in nanoseconds, zero if nothing has been fitted
+   */
+  public double getMeanNanosPerSlice() {
+    final long fitted = _slicesFitted.get();
+    return fitted == 0 ? 0 : (double) _fittingNanos.get() / fitted;
+  }
+
+  /**
+   * Gets the longest time taken to fit a single slice.
+   * @return the time in nanoseconds
+   */
+  public long getMaxNanosPerSlice() {
+    return _maxFittingNanos.get();
+  }
+
+  @Override
+  public String toString() {
+    return "SmileSliceCalibrationStatistics[fitted=" + getSlicesFitted() + ", warmStarted=" + getSlicesWarmStarted() + ", skipped=" + getSlicesSkipped()
+        + ", failed=" + getSlicesFailed() + ", meanIterations=" + getMeanIterationsPerSlice() + ", meanNanos=" + getMeanNanosPerSlice() + "]";
+  }
+
+}
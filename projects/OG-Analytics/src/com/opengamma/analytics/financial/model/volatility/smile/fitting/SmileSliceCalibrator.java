@@ -0,0 +1,219 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility.smile.fitting;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.analytics.financial.model.volatility.smile.function.SmileModelData;
+import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.statistics.leastsquare.LeastSquareResultsWithTransform;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * Calibrates a smile model to many independent slices (e.g. the expiries of a surface, or the expiry/tenor pairs of a swaption cube).
+ * <p>
+ * The slices are fitted in parallel when an executor is supplied. The result of each fit is kept, keyed by surface name and slice key, so
+ * that on the next calibration of the same surface a slice starts from its previous parameters rather than a static initial guess, and a
+ * slice whose quotes have moved by less than the tolerance is not refitted at all.
+ * <p>
+ * This class is thread-safe.
+ * @param <T> The type of the smile model data
+ */
+public abstract class SmileSliceCalibrator<T extends SmileModelData> {
+  private static final Logger s_logger = LoggerFactory.getLogger(SmileSliceCalibrator.class);
+
+  private final ExecutorService _executor;
+  private final double _tolerance;
+  private final ConcurrentMap<Pair<String, Object>, CalibratedSlice> _previous = new ConcurrentHashMap<Pair<String, Object>, CalibratedSlice>();
+  private final SmileSliceCalibrationStatistics _statistics = new SmileSliceCalibrationStatistics();
+
+  /**
+   * @param executor The executor to fit slices on, null to fit on the calling thread
+   * @param tolerance The largest absolute change in the forward and volatilities of a slice for which the previous fit is reused, not negative
+   */
+  protected SmileSliceCalibrator(final ExecutorService executor, final double tolerance) {
+    Validate.isTrue(tolerance >= 0, "tolerance must not be negative");
+    _executor = executor;
+    _tolerance = tolerance;
+  }
+
+  /**
+   * Creates the fitter for a single slice.
+   * @param slice The market data of the slice
+   * @return The fitter
+   */
+  protected abstract SmileModelFitter<T> createFitter(SmileSliceData slice);
+
+  /**
+   * Calibrates each slice of a surface. Slices for which the solver fails are logged and omitted from the result.
+   * @param <K> The type of the slice key
+   * @param surfaceName The name identifying the surface between calibrations, not null
+   * @param slices The market data for each slice, not null
+   * @param initialValues The initial guess of the model parameters, used for slices that have not been calibrated before, not null
+   * @param fixed The parameters that are fixed at their initial values, not null
+   * @return The fit results, in the iteration order of the slices
+   */
+  public <K> Map<K, LeastSquareResultsWithTransform> calibrate(final String surfaceName, final Map<K, SmileSliceData> slices, final DoubleMatrix1D initialValues,
+      final BitSet fixed) {
+    return calibrate(surfaceName, slices, initialValues, fixed, _executor);
+  }
+
+  /**
+   * Calibrates each slice of a surface using the given executor in place of the one this calibrator was constructed with. Slices for which the
+   * solver fails are logged and omitted from the result.
+   * @param <K> The type of the slice key
+   * @param surfaceName The name identifying the surface between calibrations, not null
+   * @param slices The market data for each slice, not null
+   * @param initialValues The initial guess of the model parameters, used for slices that have not been calibrated before, not null
+   * @param fixed The parameters that are fixed at their initial values, not null
+   * @param executor The executor to fit slices on, null to fit on the calling thread
+   * @return The fit results, in the iteration order of the slices
+   */
+  public <K> Map<K, LeastSquareResultsWithTransform> calibrate(final String surfaceName, final Map<K, SmileSliceData> slices, final DoubleMatrix1D initialValues,
+      final BitSet fixed, final ExecutorService executor) {
+    Validate.notNull(surfaceName, "surface name");
+    Validate.notNull(slices, "slices");
+    Validate.notNull(initialValues, "initial values");
+    Validate.notNull(fixed, "fixed");
+    final Map<K, LeastSquareResultsWithTransform> results = new LinkedHashMap<K, LeastSquareResultsWithTransform>();
+    if (executor == null) {
+      for (final Map.Entry<K, SmileSliceData> slice : slices.entrySet()) {
+        final LeastSquareResultsWithTransform result = calibrateSlice(surfaceName, slice.getKey(), slice.getValue(), initialValues, fixed);
+        if (result != null) {
+          results.put(slice.getKey(), result);
+        }
+      }
+      return results;
+    }
+    final List<Pair<K, Future<LeastSquareResultsWithTransform>>> futures = new ArrayList<Pair<K, Future<LeastSquareResultsWithTransform>>>(slices.size());
+    for (final Map.Entry<K, SmileSliceData> slice : slices.entrySet()) {
+      final K key = slice.getKey();
+      final SmileSliceData data = slice.getValue();
+      futures.add(Pair.of(key, executor.submit(new Callable<LeastSquareResultsWithTransform>() {
+        @Override
+        public LeastSquareResultsWithTransform call() {
+          return calibrateSlice(surfaceName, key, data, initialValues, fixed);
+        }
+      })));
+    }
+    for (final Pair<K, Future<LeastSquareResultsWithTransform>> future : futures) {
+      final LeastSquareResultsWithTransform result;
+      try {
+        result = future.getSecond().get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted while calibrating " + surfaceName, e);
+      } catch (final ExecutionException e) {
+        throw new OpenGammaRuntimeException("Error calibrating slice " + future.getFirst() + " of " + surfaceName, e.getCause());
+      }
+      if (result != null) {
+        results.put(future.getFirst(), result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Discards the previous fits for a surface, so that its next calibration starts from the initial values.
+   * @param surfaceName The name of the surface, not null
+   */
+  public void invalidate(final String surfaceName) {
+    Validate.notNull(surfaceName, "surface name");
+    for (final Pair<String, Object> key : _previous.keySet()) {
+      if (surfaceName.equals(key.getFirst())) {
+        _previous.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Discards all previous fits.
+   */
+  public void invalidateAll() {
+    _previous.clear();
+  }
+
+  public SmileSliceCalibrationStatistics getStatistics() {
+    return _statistics;
+  }
+
+  public double getTolerance() {
+    return _tolerance;
+  }
+
+  private LeastSquareResultsWithTransform calibrateSlice(final String surfaceName, final Object sliceKey, final SmileSliceData slice, final DoubleMatrix1D initialValues,
+      final BitSet fixed) {
+    final Pair<String, Object> key = Pair.of(surfaceName, sliceKey);
+    final CalibratedSlice previous = _previous.get(key);
+    if (previous != null && previous.getFixed().equals(fixed)) {
+      if (slice.isWithinTolerance(previous.getData(), _tolerance)) {
+        _statistics.recordSkip();
+        return previous.getResult();
+      }
+    }
+    final boolean warmStart = previous != null && previous.getFixed().equals(fixed);
+    final DoubleMatrix1D start = warmStart ? previous.getResult().getModelParameters() : initialValues;
+    final SmileModelFitter<T> fitter = createFitter(slice);
+    final long startTime = System.nanoTime();
+    final Pair<LeastSquareResultsWithTransform, Integer> solution;
+    try {
+      solution = fitter.solveCountingEvaluations(start, fixed);
+    } catch (final RuntimeException e) {
+      s_logger.warn("Could not fit slice {} of {}: {}", new Object[] {sliceKey, surfaceName, e.getMessage() });
+      _statistics.recordFailure();
+      _previous.remove(key);
+      return null;
+    }
+    final LeastSquareResultsWithTransform result = solution.getFirst();
+    _statistics.recordFit(warmStart, solution.getSecond(), System.nanoTime() - startTime);
+    // only compare future quotes against the quotes used by the last actual fit, so that a slow drift still triggers a refit
+    _previous.put(key, new CalibratedSlice(slice, (BitSet) fixed.clone(), result));
+    return result;
+  }
+
+  /**
+   * The inputs and result of a previous fit of a slice.
+   */
+  private static final class CalibratedSlice {
+    private final SmileSliceData _data;
+    private final BitSet _fixed;
+    private final LeastSquareResultsWithTransform _result;
+
+    private CalibratedSlice(final SmileSliceData data, final BitSet fixed, final LeastSquareResultsWithTransform result) {
+      _data = data;
+      _fixed = fixed;
+      _result = result;
+    }
+
+    public SmileSliceData getData() {
+      return _data;
+    }
+
+    public BitSet getFixed() {
+      return _fixed;
+    }
+
+    public LeastSquareResultsWithTransform getResult() {
+      return _result;
+    }
+  }
+
+}
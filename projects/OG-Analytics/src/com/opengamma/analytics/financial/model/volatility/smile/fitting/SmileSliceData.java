@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility.smile.fitting;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * The market data for a single smile (i.e. one expiry, or one expiry/tenor pair of a cube) that is to be calibrated.
+ */
+public class SmileSliceData {
+  private final double _forward;
+  private final double _timeToExpiry;
+  private final double[] _strikes;
+  private final double[] _impliedVols;
+  private final double[] _errors;
+
+  /**
+   * @param forward The forward value of the underlying
+   * @param timeToExpiry The time-to-expiry
+   * @param strikes The ordered strikes, not null
+   * @param impliedVols The market implied volatilities, not null, same length as the strikes
+   * @param errors The 'measurement' error of each volatility, not null, same length as the strikes
+   */
+  public SmileSliceData(final double forward, final double timeToExpiry, final double[] strikes, final double[] impliedVols, final double[] errors) {
+    Validate.notNull(strikes, "null strikes");
+    Validate.notNull(impliedVols, "null implied vols");
+    Validate.notNull(errors, "null errors");
+    Validate.isTrue(strikes.length == impliedVols.length, "vols not the same length as strikes");
+    Validate.isTrue(strikes.length == errors.length, "errors not the same length as strikes");
+    _forward = forward;
+    _timeToExpiry = timeToExpiry;
+    _strikes = Arrays.copyOf(strikes, strikes.length);
+    _impliedVols = Arrays.copyOf(impliedVols, impliedVols.length);
+    _errors = Arrays.copyOf(errors, errors.length);
+  }
+
+  public double getForward() {
+    return _forward;
+  }
+
+  public double getTimeToExpiry() {
+    return _timeToExpiry;
+  }
+
+  public double[] getStrikes() {
+    return _strikes;
+  }
+
+  public double[] getImpliedVols() {
+    return _impliedVols;
+  }
+
+  public double[] getErrors() {
+    return _errors;
+  }
+
+  /**
+   * Tests whether another slice has the same strikes, expiry and errors, and a forward and volatilities that differ from these by no more
+   * than a tolerance, in which case a previous fit to the other slice is also a fit to this one.
+   * @param other The other slice, not null
+   * @param tolerance The largest absolute change in the forward or any volatility
+   * @return true if the slices are within the tolerance
+   */
+  public boolean isWithinTolerance(final SmileSliceData other, final double tolerance) {
+    Validate.notNull(other, "other");
+    if (Double.doubleToLongBits(_timeToExpiry) != Double.doubleToLongBits(other._timeToExpiry)) {
+      return false;
+    }
+    if (!Arrays.equals(_strikes, other._strikes) || !Arrays.equals(_errors, other._errors)) {
+      return false;
+    }
+    if (Math.abs(_forward - other._forward) > tolerance) {
+      return false;
+    }
+    final int n = _impliedVols.length;
+    for (int i = 0; i < n; i++) {
+      if (Math.abs(_impliedVols[i] - other._impliedVols[i]) > tolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    long temp;
+    temp = Double.doubleToLongBits(_forward);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    temp = Double.doubleToLongBits(_timeToExpiry);
+    result = prime * result + (int) (temp ^ (temp >>> 32));
+    result = prime * result + Arrays.hashCode(_strikes);
+    result = prime * result + Arrays.hashCode(_impliedVols);
+    result = prime * result + Arrays.hashCode(_errors);
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final SmileSliceData other = (SmileSliceData) obj;
+    if (Double.doubleToLongBits(_forward) != Double.doubleToLongBits(other._forward)) {
+      return false;
+    }
+    if (Double.doubleToLongBits(_timeToExpiry) != Double.doubleToLongBits(other._timeToExpiry)) {
+      return false;
+    }
+    return Arrays.equals(_strikes, other._strikes) && Arrays.equals(_impliedVols, other._impliedVols) && Arrays.equals(_errors, other._errors);
+  }
+
+}
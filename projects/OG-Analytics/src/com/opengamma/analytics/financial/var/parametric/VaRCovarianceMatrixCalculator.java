@@ -12,7 +12,6 @@ import java.util.Map;
 
 import org.apache.commons.lang.Validate;
 
-import com.opengamma.analytics.financial.covariance.CovarianceMatrixCalculator;
 import com.opengamma.analytics.financial.greeks.MixedOrderUnderlying;
 import com.opengamma.analytics.financial.greeks.NthOrderUnderlying;
 import com.opengamma.analytics.financial.pnl.SensitivityAndReturnDataBundle;
@@ -27,10 +26,14 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  * 
  */
 public class VaRCovarianceMatrixCalculator implements Function<SensitivityAndReturnDataBundle, Map<Integer, ParametricVaRDataBundle>> {
-  private final CovarianceMatrixCalculator _calculator;
+  private final Function<DoubleTimeSeries<?>, DoubleMatrix2D> _calculator;
   private static final DoubleTimeSeries<?>[] EMPTY = new DoubleTimeSeries<?>[0];
 
-  public VaRCovarianceMatrixCalculator(final CovarianceMatrixCalculator calculator) {
+  /**
+   * @param calculator The covariance matrix calculator, e.g. a {@link com.opengamma.analytics.financial.covariance.CovarianceMatrixCalculator}
+   * or an {@link com.opengamma.analytics.financial.covariance.AlignedCovarianceMatrixCalculator}, not null
+   */
+  public VaRCovarianceMatrixCalculator(final Function<DoubleTimeSeries<?>, DoubleMatrix2D> calculator) {
     Validate.notNull(calculator, "calculator");
     _calculator = calculator;
   }
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.calendar.LocalDate;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.timeseries.returns.ContinuouslyCompoundedTimeSeriesReturnCalculator;
+import com.opengamma.analytics.financial.timeseries.returns.TimeSeriesReturnCalculator;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.analytics.math.statistics.descriptive.SampleCovarianceCalculator;
+import com.opengamma.util.CalculationMode;
+import com.opengamma.util.timeseries.DoubleTimeSeries;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+
+/**
+ *
+ */
+public class AlignedCovarianceMatrixCalculatorTest {
+  private static final LocalDate[] T = new LocalDate[21];
+  static {
+    for (int i = 0; i < T.length; i++) {
+      T[i] = LocalDate.ofEpochDays(i + 1);
+    }
+  }
+  private static final LocalDateDoubleTimeSeries CLOSE_TS = new ArrayLocalDateDoubleTimeSeries(T, new double[] {132.5, 133.5, 135., 133., 133., 137., 135., 135., 142.5,
+    143., 144.5, 145., 146., 149., 148., 147., 147., 147., 145., 145., 150.});
+  private static final LocalDateDoubleTimeSeries HIGH_TS = new ArrayLocalDateDoubleTimeSeries(T, new double[] {132.5, 134., 136., 137., 136., 137., 136.5, 136., 143.5,
+    145., 147., 147.5, 147., 150., 149., 149.5, 147.5, 149., 147.5, 145., 150.});
+  private static final LocalDateDoubleTimeSeries LOW_TS = new ArrayLocalDateDoubleTimeSeries(T, new double[] {131., 131., 134., 133., 133., 133., 135., 135., 137., 142.,
+    142., 145., 143., 148., 146.5, 147., 146., 146.5, 144.5, 144., 143.5});
+  private static final TimeSeriesReturnCalculator RETURN_CALCULATOR = new ContinuouslyCompoundedTimeSeriesReturnCalculator(CalculationMode.LENIENT);
+  private static final DoubleTimeSeries<?> TS1 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3, 4}, new double[] {-1, 1, -1, 1});
+  private static final DoubleTimeSeries<?> TS2 = TS1.multiply(-1);
+  private static final AlignedCovarianceMatrixCalculator CALCULATOR = new AlignedCovarianceMatrixCalculator(null);
+  private static final double EPS = 1e-9;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullTSArray() {
+    CALCULATOR.evaluate((DoubleTimeSeries<?>[]) null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testEmptyTSArray() {
+    CALCULATOR.evaluate(new DoubleTimeSeries<?>[0]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeLambda() {
+    new AlignedCovarianceMatrixCalculator(-0.94, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoCommonDates() {
+    final DoubleTimeSeries<?> ts = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {5, 6, 7}, new double[] {1, 2, 3});
+    CALCULATOR.evaluate(TS1, ts);
+  }
+
+  @Test
+  public void test() {
+    final DoubleMatrix2D matrix = CALCULATOR.evaluate(TS1, TS2);
+    assertEquals(matrix.getNumberOfRows(), 2);
+    assertEquals(matrix.getNumberOfColumns(), 2);
+    assertEquals(matrix.getEntry(0, 0), 4. / 3, EPS);
+    assertEquals(matrix.getEntry(1, 0), -4. / 3, EPS);
+    assertEquals(matrix.getEntry(0, 1), -4. / 3, EPS);
+    assertEquals(matrix.getEntry(1, 1), 4. / 3, EPS);
+  }
+
+  @Test
+  public void testAlignment() {
+    final DoubleTimeSeries<?> ts1 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {1, 2, 3, 5, 6}, new double[] {1, 2, 3, 5, 6});
+    final DoubleTimeSeries<?> ts2 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {0, 2, 3, 4, 6}, new double[] {10, 20, 30, 40, 60});
+    final DoubleTimeSeries<?> ts3 = new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, new int[] {2, 3, 6, 7}, new double[] {200, 300, 600, 700});
+    final double[][] aligned = AlignedCovarianceMatrixCalculator.align(ts1, ts2, ts3);
+    assertEquals(3, aligned.length);
+    assertArrayEquals(new double[] {2, 3, 6}, aligned[0], 0.0);
+    assertArrayEquals(new double[] {20, 30, 60}, aligned[1], 0.0);
+    assertArrayEquals(new double[] {200, 300, 600}, aligned[2], 0.0);
+  }
+
+  @Test
+  public void testAgainstPairwiseCalculator() {
+    final DoubleTimeSeries<?> returns = RETURN_CALCULATOR.evaluate(CLOSE_TS);
+    final DoubleTimeSeries<?> highReturns = RETURN_CALCULATOR.evaluate(HIGH_TS);
+    final DoubleTimeSeries<?> lowReturns = RETURN_CALCULATOR.evaluate(LOW_TS);
+    final DoubleTimeSeries<?>[] ts = new DoubleTimeSeries<?>[] {returns, highReturns, lowReturns};
+    final DoubleMatrix2D matrix = CALCULATOR.evaluate(ts);
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final DoubleMatrix2D parallel;
+    try {
+      parallel = new AlignedCovarianceMatrixCalculator(executor).evaluate(ts);
+    } finally {
+      executor.shutdown();
+    }
+    final SampleCovarianceCalculator sampleCovariance = new SampleCovarianceCalculator();
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        final double expected = sampleCovariance.evaluate(ts[i].valuesArrayFast(), ts[j].valuesArrayFast());
+        assertEquals(expected, matrix.getEntry(i, j), 1e-15);
+        assertEquals(matrix.getEntry(i, j), parallel.getEntry(i, j), 1e-15);
+      }
+    }
+  }
+
+  @Test
+  public void testEWMAVolatility() {
+    final double lambda = 0.94;
+    final HistoricalVolatilityCalculator volatilityCalculator = new ExponentialWeightedMovingAverageHistoricalVolatilityCalculator(lambda, RETURN_CALCULATOR);
+    final DoubleMatrix2D matrix = new AlignedCovarianceMatrixCalculator(lambda, null).evaluate(RETURN_CALCULATOR.evaluate(CLOSE_TS), RETURN_CALCULATOR.evaluate(HIGH_TS));
+    assertEquals(volatilityCalculator.evaluate(CLOSE_TS), Math.sqrt(matrix.getEntry(0, 0)), 1e-15);
+    assertEquals(volatilityCalculator.evaluate(HIGH_TS), Math.sqrt(matrix.getEntry(1, 1)), 1e-15);
+  }
+
+  @Test
+  public void testDailyUpdate() {
+    final DoubleTimeSeries<?> returns = RETURN_CALCULATOR.evaluate(CLOSE_TS);
+    final DoubleTimeSeries<?> lowReturns = RETURN_CALCULATOR.evaluate(LOW_TS);
+    final int n = returns.size();
+    final CovarianceMatrixEstimator estimator = CALCULATOR.getEstimator(returns.head(n - 1), lowReturns.head(n - 1));
+    estimator.update(new double[] {returns.getLatestValue(), lowReturns.getLatestValue()});
+    final DoubleMatrix2D expected = CALCULATOR.evaluate(returns, lowReturns);
+    final DoubleMatrix2D updated = estimator.getCovarianceMatrix();
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 2; j++) {
+        assertEquals(expected.getEntry(i, j), updated.getEntry(i, j), 1e-15);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.MersenneTwister64;
+
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.analytics.math.statistics.descriptive.SampleCovarianceCalculator;
+import com.opengamma.analytics.math.statistics.distribution.NormalDistribution;
+
+/**
+ *
+ */
+public class CovarianceMatrixEstimatorTest {
+  private static final NormalDistribution NORMAL = new NormalDistribution(0, 0.01, new MersenneTwister64(MersenneTwister.DEFAULT_SEED));
+  // more series than fit in one tile, and more observations than are processed at a time
+  private static final int N_SERIES = 70;
+  private static final int N_OBSERVATIONS = 1500;
+  private static final double[][] RETURNS = new double[N_SERIES][N_OBSERVATIONS];
+  private static final SampleCovarianceCalculator SAMPLE_COVARIANCE = new SampleCovarianceCalculator();
+  private static final double LAMBDA = 0.94;
+  private static final double EPS = 1e-14;
+
+  static {
+    for (int k = 0; k < N_OBSERVATIONS; k++) {
+      final double common = NORMAL.nextRandom();
+      for (int i = 0; i < N_SERIES; i++) {
+        // a common factor, so that the series are correlated, and a non-zero mean
+        RETURNS[i][k] = 0.001 * i + (i % 3) * common + NORMAL.nextRandom();
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroDimension() {
+    new SampleCovarianceMatrixEstimator(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testLambdaTooLarge() {
+    new ExponentialWeightedMovingAverageCovarianceMatrixEstimator(2, 1.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongObservationLength() {
+    new SampleCovarianceMatrixEstimator(2).update(new double[] {1, 2, 3});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRaggedBlock() {
+    new SampleCovarianceMatrixEstimator(2).update(new double[][] {new double[] {1, 2}, new double[] {1, 2, 3}}, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooFewObservations() {
+    final CovarianceMatrixEstimator estimator = new SampleCovarianceMatrixEstimator(2);
+    estimator.update(new double[] {1, 2});
+    estimator.getCovarianceMatrix();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNoObservations() {
+    new ExponentialWeightedMovingAverageCovarianceMatrixEstimator(2, LAMBDA).getCovarianceMatrix();
+  }
+
+  @Test
+  public void testSampleBlock() {
+    final CovarianceMatrixEstimator estimator = new SampleCovarianceMatrixEstimator(N_SERIES);
+    estimator.update(RETURNS, null);
+    assertEquals(N_OBSERVATIONS, estimator.getNumberOfObservations());
+    assertMatrixEquals(getSampleCovariance(RETURNS), estimator.getCovarianceMatrix());
+  }
+
+  @Test
+  public void testSampleParallelBlock() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final CovarianceMatrixEstimator estimator = new SampleCovarianceMatrixEstimator(N_SERIES);
+      estimator.update(RETURNS, executor);
+      assertMatrixEquals(getSampleCovariance(RETURNS), estimator.getCovarianceMatrix());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSampleIncremental() {
+    final CovarianceMatrixEstimator estimator = new SampleCovarianceMatrixEstimator(N_SERIES);
+    final int split1 = 1000;
+    final int split2 = 1200;
+    estimator.update(getObservations(0, split1), null);
+    for (int k = split1; k < split2; k++) {
+      estimator.update(getObservation(k));
+    }
+    estimator.update(getObservations(split2, N_OBSERVATIONS), null);
+    assertEquals(N_OBSERVATIONS, estimator.getNumberOfObservations());
+    assertMatrixEquals(getSampleCovariance(RETURNS), estimator.getCovarianceMatrix());
+    final double[] means = ((SampleCovarianceMatrixEstimator) estimator).getMeans();
+    for (int i = 0; i < N_SERIES; i++) {
+      double sum = 0;
+      for (int k = 0; k < N_OBSERVATIONS; k++) {
+        sum += RETURNS[i][k];
+      }
+      assertEquals(sum / N_OBSERVATIONS, means[i], EPS);
+    }
+  }
+
+  @Test
+  public void testEWMABlock() {
+    final CovarianceMatrixEstimator estimator = new ExponentialWeightedMovingAverageCovarianceMatrixEstimator(N_SERIES, LAMBDA);
+    estimator.update(RETURNS, null);
+    assertMatrixEquals(getEWMACovariance(RETURNS), estimator.getCovarianceMatrix());
+  }
+
+  @Test
+  public void testEWMAIncremental() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final CovarianceMatrixEstimator estimator = new ExponentialWeightedMovingAverageCovarianceMatrixEstimator(N_SERIES, LAMBDA);
+      final int split1 = 1;
+      final int split2 = 700;
+      estimator.update(getObservation(0));
+      estimator.update(getObservations(split1, split2), executor);
+      for (int k = split2; k < N_OBSERVATIONS; k++) {
+        estimator.update(getObservation(k));
+      }
+      assertEquals(N_OBSERVATIONS, estimator.getNumberOfObservations());
+      assertMatrixEquals(getEWMACovariance(RETURNS), estimator.getCovarianceMatrix());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static double[] getObservation(final int k) {
+    final double[] observation = new double[N_SERIES];
+    for (int i = 0; i < N_SERIES; i++) {
+      observation[i] = RETURNS[i][k];
+    }
+    return observation;
+  }
+
+  private static double[][] getObservations(final int from, final int to) {
+    final double[][] observations = new double[N_SERIES][];
+    for (int i = 0; i < N_SERIES; i++) {
+      observations[i] = Arrays.copyOfRange(RETURNS[i], from, to);
+    }
+    return observations;
+  }
+
+  private static double[][] getSampleCovariance(final double[][] returns) {
+    final double[][] covariance = new double[N_SERIES][N_SERIES];
+    for (int i = 0; i < N_SERIES; i++) {
+      for (int j = 0; j < N_SERIES; j++) {
+        covariance[i][j] = SAMPLE_COVARIANCE.evaluate(returns[i], returns[j]);
+      }
+    }
+    return covariance;
+  }
+
+  private static double[][] getEWMACovariance(final double[][] returns) {
+    final double[][] covariance = new double[N_SERIES][N_SERIES];
+    for (int i = 0; i < N_SERIES; i++) {
+      for (int j = 0; j < N_SERIES; j++) {
+        double sum = returns[i][0] * returns[j][0];
+        for (int k = 1; k < N_OBSERVATIONS; k++) {
+          sum = LAMBDA * sum + (1 - LAMBDA) * returns[i][k] * returns[j][k];
+        }
+        covariance[i][j] = sum;
+      }
+    }
+    return covariance;
+  }
+
+  private static void assertMatrixEquals(final double[][] expected, final DoubleMatrix2D actual) {
+    assertEquals(expected.length, actual.getNumberOfRows());
+    assertEquals(expected.length, actual.getNumberOfColumns());
+    for (int i = 0; i < expected.length; i++) {
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(expected[i][j], actual.getEntry(i, j), EPS);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.option.pricing.fourier;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.model.option.pricing.analytic.formula.BlackFunctionData;
+import com.opengamma.analytics.financial.model.option.pricing.analytic.formula.EuropeanVanillaOption;
+
+/**
+ *
+ */
+public class FourierBatchPricerTest {
+  private static final double FORWARD = 100;
+  private static final double DF = 0.96;
+  private static final double T = 1.5;
+  private static final double ALPHA = -0.5;
+  private static final double TOL = 1e-10;
+  private static final double[] STRIKES = new double[] {60, 80, 95, 100, 105, 120, 150 };
+  private static final BlackFunctionData DATA = new BlackFunctionData(FORWARD, DF, 0.0);
+  private static final MartingaleCharacteristicExponent HESTON = new HestonCharacteristicExponent(1.2, 0.04, 0.2, 0.3, -0.6);
+  private static final MartingaleCharacteristicExponent CGMY = new CGMYMartingaleCharacteristicExponent(0.1, 3.0, 5.0, 0.8);
+  private static final FourierPricer FOURIER_PRICER = new FourierPricer();
+  private static final FourierBatchPricer PRICER = new FourierBatchPricer();
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadPanels() {
+    new FourierBatchPricer(0, 8);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadPoints() {
+    new FourierBatchPricer(64, 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullCharacteristicExponent() {
+    PRICER.price(FORWARD, DF, T, true, null, STRIKES, ALPHA, TOL);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullStrikes() {
+    PRICER.price(FORWARD, DF, T, true, HESTON, null, ALPHA, TOL);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroAlpha() {
+    PRICER.price(FORWARD, DF, T, true, HESTON, STRIKES, 0, TOL);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeTolerance() {
+    PRICER.price(FORWARD, DF, T, true, HESTON, STRIKES, ALPHA, -TOL);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testShortOutputArray() {
+    PRICER.price(FORWARD, DF, T, true, HESTON, STRIKES, ALPHA, TOL, new double[STRIKES.length - 1]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfStrikeSets() {
+    PRICER.price(new double[] {FORWARD, FORWARD }, new double[] {DF, DF }, new double[] {0.5, T }, true, CGMY, new double[][] {STRIKES }, ALPHA, TOL);
+  }
+
+  @Test
+  public void testHeston() {
+    testAgainstFourierPricer(HESTON, true, ALPHA);
+    testAgainstFourierPricer(HESTON, false, ALPHA);
+    testAgainstFourierPricer(HESTON, true, 0.75);
+  }
+
+  @Test
+  public void testCGMY() {
+    testAgainstFourierPricer(CGMY, true, ALPHA);
+    testAgainstFourierPricer(CGMY, false, 0.75);
+  }
+
+  @Test
+  public void testMultipleExpiries() {
+    final double[] expiries = new double[] {0.25, 1.0, T };
+    final double[] forwards = new double[] {FORWARD, 101, 102 };
+    final double[] dfs = new double[] {0.99, DF, 0.93 };
+    final double[][] strikes = new double[][] {STRIKES, STRIKES, STRIKES };
+    for (final MartingaleCharacteristicExponent ce : new MartingaleCharacteristicExponent[] {HESTON, CGMY }) {
+      final double[][] prices = PRICER.price(forwards, dfs, expiries, true, ce, strikes, ALPHA, TOL);
+      for (int i = 0; i < expiries.length; i++) {
+        final double[] expected = PRICER.price(forwards[i], dfs[i], expiries[i], true, ce, strikes[i], ALPHA, TOL);
+        for (int j = 0; j < STRIKES.length; j++) {
+          assertEquals(expected[j], prices[i][j], 1e-7 * forwards[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTimeHomogeneous() {
+    assertEquals(true, PRICER.isTimeHomogeneous(CGMY));
+    assertEquals(true, PRICER.isTimeHomogeneous(new GaussianMartingaleCharacteristicExponent(0.2)));
+    assertEquals(false, PRICER.isTimeHomogeneous(HESTON));
+  }
+
+  @Test
+  public void testGreeks() {
+    final double[][] greeks = PRICER.getGreeks(FORWARD, DF, T, HESTON, STRIKES, ALPHA, TOL);
+    final FourierModelGreeks modelGreeks = new FourierModelGreeks();
+    for (int i = 0; i < STRIKES.length; i++) {
+      final double[] expected = modelGreeks.getGreeks(DATA, new EuropeanVanillaOption(STRIKES[i], T, true), HESTON, ALPHA, TOL);
+      assertEquals(expected.length, greeks.length);
+      for (int p = 0; p < expected.length; p++) {
+        assertEquals(expected[p], greeks[p][i], 1e-6);
+      }
+    }
+  }
+
+  private void testAgainstFourierPricer(final MartingaleCharacteristicExponent ce, final boolean isCall, final double alpha) {
+    final double[] prices = PRICER.price(FORWARD, DF, T, isCall, ce, STRIKES, alpha, TOL);
+    for (int i = 0; i < STRIKES.length; i++) {
+      final double expected = FOURIER_PRICER.price(DATA, new EuropeanVanillaOption(STRIKES[i], T, isCall), ce, alpha, TOL);
+      assertEquals(expected, prices[i], 1e-6);
+    }
+  }
+
+}
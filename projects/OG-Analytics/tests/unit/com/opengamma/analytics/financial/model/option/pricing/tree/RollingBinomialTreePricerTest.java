@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.option.pricing.tree;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.time.calendar.ZonedDateTime;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.analytics.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.analytics.financial.model.option.definition.CoxRossRubinsteinBinomialOptionModelDefinition;
+import com.opengamma.analytics.financial.model.option.definition.EuropeanVanillaOptionDefinition;
+import com.opengamma.analytics.financial.model.option.definition.OptionDefinition;
+import com.opengamma.analytics.financial.model.option.definition.StandardOptionDataBundle;
+import com.opengamma.analytics.financial.model.tree.RecombiningBinomialTree;
+import com.opengamma.analytics.financial.model.volatility.BlackFormulaRepository;
+import com.opengamma.analytics.financial.model.volatility.surface.VolatilitySurface;
+import com.opengamma.analytics.math.curve.ConstantDoublesCurve;
+import com.opengamma.analytics.math.surface.ConstantDoublesSurface;
+import com.opengamma.util.monitor.OperationTimer;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.time.Expiry;
+import com.opengamma.util.tuple.DoublesPair;
+
+/**
+ *
+ */
+public class RollingBinomialTreePricerTest {
+  private static final Logger s_logger = LoggerFactory.getLogger(RollingBinomialTreePricerTest.class);
+  private static final int WARMUP_CYCLES = 0;
+  private static final int BENCHMARK_CYCLES = 1;
+  private static final double SPOT = 100;
+  private static final double R = 0.05;
+  private static final double B = 0.02;
+  private static final double SIGMA = 0.25;
+  private static final int STEPS = 500;
+  private static final RollingBinomialTreePricer PRICER = new RollingBinomialTreePricer(STEPS);
+  private static final ZonedDateTime DATE = DateUtils.getUTCDate(2012, 1, 1);
+  private static final StandardOptionDataBundle DATA = new StandardOptionDataBundle(YieldCurve.from(ConstantDoublesCurve.from(R)), B,
+      new VolatilitySurface(ConstantDoublesSurface.from(SIGMA)), SPOT, DATE);
+  private static final BinomialOptionModel<StandardOptionDataBundle> CRR_MODEL = new BinomialOptionModel<StandardOptionDataBundle>(
+      new CoxRossRubinsteinBinomialOptionModelDefinition(), STEPS);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTooFewSteps() {
+    new RollingBinomialTreePricer(1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeSpot() {
+    PRICER.price(-SPOT, 100, 1, R, B, SIGMA, true, false);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeVolatility() {
+    PRICER.price(SPOT, 100, 1, R, B, -SIGMA, true, false);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testShortResultArray() {
+    PRICER.priceAndGreeks(SPOT, 100, 1, R, B, SIGMA, true, false, new double[RollingBinomialTreePricer.N_RESULTS - 1]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBatchLengths() {
+    PRICER.priceAndGreeks(SPOT, R, B, SIGMA, new double[] {90, 100 }, new double[] {1 }, new boolean[] {true, true }, new boolean[] {true, true }, null);
+  }
+
+  @Test
+  public void testAgainstBinomialOptionModel() {
+    for (final double strike : new double[] {80, 100, 120 }) {
+      for (final boolean isCall : new boolean[] {true, false }) {
+        final Expiry expiry = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1.5));
+        final OptionDefinition american = new AmericanVanillaOptionDefinition(strike, expiry, isCall);
+        final OptionDefinition european = new EuropeanVanillaOptionDefinition(strike, expiry, isCall);
+        final double t = american.getTimeToExpiry(DATE);
+        assertEquals(CRR_MODEL.getTreeGeneratingFunction(american).evaluate(DATA).getNode(0, 0).second, PRICER.price(SPOT, strike, t, R, B, SIGMA, isCall, true), 1e-9);
+        assertEquals(CRR_MODEL.getTreeGeneratingFunction(european).evaluate(DATA).getNode(0, 0).second, PRICER.price(SPOT, strike, t, R, B, SIGMA, isCall, false), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testEuropeanGreeks() {
+    final double t = 1.5;
+    final double df = Math.exp(-R * t);
+    final double carry = Math.exp(B * t);
+    final double forward = SPOT * carry;
+    for (final double strike : new double[] {80, 100, 120 }) {
+      for (final boolean isCall : new boolean[] {true, false }) {
+        final double[] result = PRICER.priceAndGreeks(SPOT, strike, t, R, B, SIGMA, isCall, false);
+        assertEquals(df * BlackFormulaRepository.price(forward, strike, t, SIGMA, isCall), result[RollingBinomialTreePricer.PRICE], 2e-2);
+        assertEquals(df * carry * BlackFormulaRepository.delta(forward, strike, t, SIGMA, isCall), result[RollingBinomialTreePricer.DELTA], 1e-3);
+        assertEquals(df * carry * carry * BlackFormulaRepository.gamma(forward, strike, t, SIGMA), result[RollingBinomialTreePricer.GAMMA], 1e-4);
+        final double eps = 1e-3;
+        final double theta = -(PRICER.price(SPOT, strike, t + eps, R, B, SIGMA, isCall, false) - PRICER.price(SPOT, strike, t - eps, R, B, SIGMA, isCall, false)) / 2 / eps;
+        assertEquals(theta, result[RollingBinomialTreePricer.THETA], 5e-2);
+      }
+    }
+  }
+
+  @Test
+  public void testFewStepGreeksAgainstBinomialOptionModel() {
+    for (final int steps : new int[] {2, 3 }) {
+      final RollingBinomialTreePricer pricer = new RollingBinomialTreePricer(steps);
+      final BinomialOptionModel<StandardOptionDataBundle> model = new BinomialOptionModel<StandardOptionDataBundle>(new CoxRossRubinsteinBinomialOptionModelDefinition(), steps);
+      for (final double strike : new double[] {80, 100, 120 }) {
+        for (final boolean isCall : new boolean[] {true, false }) {
+          final Expiry expiry = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1.5));
+          for (final OptionDefinition definition : new OptionDefinition[] {new AmericanVanillaOptionDefinition(strike, expiry, isCall),
+            new EuropeanVanillaOptionDefinition(strike, expiry, isCall) }) {
+            final double t = definition.getTimeToExpiry(DATE);
+            final RecombiningBinomialTree<DoublesPair> tree = model.getTreeGeneratingFunction(definition).evaluate(DATA);
+            final DoublesPair node00 = tree.getNode(0, 0);
+            final DoublesPair node10 = tree.getNode(1, 0);
+            final DoublesPair node11 = tree.getNode(1, 1);
+            final DoublesPair node20 = tree.getNode(2, 0);
+            final DoublesPair node21 = tree.getNode(2, 1);
+            final DoublesPair node22 = tree.getNode(2, 2);
+            final double delta = (node11.second - node10.second) / (node11.first - node10.first);
+            final double gamma = ((node22.second - node21.second) / (node22.first - node21.first) - (node21.second - node20.second) / (node21.first - node20.first))
+                / (0.5 * (node22.first - node20.first));
+            final double theta = (node21.second - node00.second) / (2 * t / steps);
+            final double[] result = pricer.priceAndGreeks(SPOT, strike, t, R, B, SIGMA, isCall, definition instanceof AmericanVanillaOptionDefinition);
+            assertEquals(node00.second, result[RollingBinomialTreePricer.PRICE], 1e-9);
+            assertEquals(delta, result[RollingBinomialTreePricer.DELTA], 1e-9);
+            assertEquals(gamma, result[RollingBinomialTreePricer.GAMMA], 1e-9);
+            assertEquals(theta, result[RollingBinomialTreePricer.THETA], 1e-9);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBatch() {
+    final int n = 101;
+    final double[] strikes = new double[n];
+    final double[] expiries = new double[n];
+    final boolean[] isCall = new boolean[n];
+    final boolean[] isAmerican = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      strikes[i] = 50 + i;
+      expiries[i] = 0.25 + (i % 8) * 0.25;
+      isCall[i] = i % 2 == 0;
+      isAmerican[i] = i % 3 != 0;
+    }
+    final double[][] serial = PRICER.priceAndGreeks(SPOT, R, B, SIGMA, strikes, expiries, isCall, isAmerican, null);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final double[][] parallel;
+    try {
+      parallel = PRICER.priceAndGreeks(SPOT, R, B, SIGMA, strikes, expiries, isCall, isAmerican, executor);
+    } finally {
+      executor.shutdown();
+    }
+    for (int i = 0; i < n; i++) {
+      final double[] single = PRICER.priceAndGreeks(SPOT, strikes[i], expiries[i], R, B, SIGMA, isCall[i], isAmerican[i]);
+      for (int j = 0; j < RollingBinomialTreePricer.N_RESULTS; j++) {
+        assertEquals(single[j], serial[i][j], 0);
+        assertEquals(single[j], parallel[i][j], 0);
+      }
+    }
+  }
+
+  /**
+   * Tests of performance. "enabled = false" for the standard testing.
+   */
+  @Test(enabled = false)
+  public void testSpeed() {
+    final Expiry expiry = new Expiry(DateUtils.getDateOffsetWithYearFraction(DATE, 1.5));
+    final OptionDefinition american = new AmericanVanillaOptionDefinition(100, expiry, false);
+    final double t = american.getTimeToExpiry(DATE);
+    final int nOptions = 100;
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      priceWithTree(american, nOptions);
+      priceWithRollingArray(t, nOptions);
+    }
+    if (BENCHMARK_CYCLES > 0) {
+      OperationTimer timer = new OperationTimer(s_logger, "processing {} cycles of {} options on full tree", BENCHMARK_CYCLES, nOptions);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        priceWithTree(american, nOptions);
+      }
+      timer.finished();
+      timer = new OperationTimer(s_logger, "processing {} cycles of {} options on rolling array", BENCHMARK_CYCLES, nOptions);
+      for (int i = 0; i < BENCHMARK_CYCLES; i++) {
+        priceWithRollingArray(t, nOptions);
+      }
+      timer.finished();
+      s_logger.info("Lattice storage per option: full tree {} node objects, rolling array {} doubles per thread", (STEPS + 1) * (STEPS + 2) / 2, STEPS + 1);
+    }
+  }
+
+  private void priceWithTree(final OptionDefinition definition, final int nOptions) {
+    for (int i = 0; i < nOptions; i++) {
+      CRR_MODEL.getTreeGeneratingFunction(definition).evaluate(DATA);
+    }
+  }
+
+  private void priceWithRollingArray(final double t, final int nOptions) {
+    final double[] result = new double[RollingBinomialTreePricer.N_RESULTS];
+    for (int i = 0; i < nOptions; i++) {
+      PRICER.priceAndGreeks(SPOT, 100, t, R, B, SIGMA, false, true, result);
+    }
+  }
+
+}
@@ -109,4 +109,190 @@ public class BlackFormulaRepositotyTest {
     // Performance note: strike+derivatives: 18-Jul-12: On Mac Pro 3.2 GHz Quad-Core Intel Xeon: 80 ms for 100000.
   }
 
+  @Test
+  /**
+   * Tests the bulk prices against the single-option prices, including the special cases.
+   */
+  public void bulkPrice() {
+    final BulkData data = new BulkData();
+    final double[] prices = BlackFormulaRepository.price(data._forwards, data._strikes, data._times, data._vols, data._isCall);
+    for (int i = 0; i < data._n; i++) {
+      final double expected = BlackFormulaRepository.price(data._forwards[i], data._strikes[i], data._times[i], data._vols[i], data._isCall[i]);
+      assertEquals("Bulk price " + i, expected, prices[i], 1.0E-13 * data._forwards[i]);
+    }
+  }
+
+  @Test
+  /**
+   * Tests the bulk greeks against the single-option greeks, including the special cases.
+   */
+  public void bulkGreeks() {
+    final BulkData data = new BulkData();
+    final double[] deltas = new double[data._n];
+    final double[] gammas = new double[data._n];
+    final double[] vegas = new double[data._n];
+    final double[] thetas = new double[data._n];
+    BlackFormulaRepository.greeks(data._forwards, data._strikes, data._times, data._vols, data._isCall, deltas, gammas, vegas, thetas);
+    final double[] vegasOnly = new double[data._n];
+    BlackFormulaRepository.greeks(data._forwards, data._strikes, data._times, data._vols, data._isCall, null, null, vegasOnly, null);
+    for (int i = 0; i < data._n; i++) {
+      final double f = data._forwards[i];
+      final double k = data._strikes[i];
+      final double t = data._times[i];
+      final double vol = data._vols[i];
+      assertEquals("Bulk delta " + i, BlackFormulaRepository.delta(f, k, t, vol, data._isCall[i]), deltas[i], 1.0E-13);
+      assertEquals("Bulk gamma " + i, BlackFormulaRepository.gamma(f, k, t, vol), gammas[i], 1.0E-13);
+      assertEquals("Bulk vega " + i, BlackFormulaRepository.vega(f, k, t, vol), vegas[i], 1.0E-13 * f);
+      assertEquals("Bulk theta " + i, BlackFormulaRepository.theta(f, k, t, vol), thetas[i], 1.0E-13 * f);
+      assertEquals("Bulk vega only " + i, vegas[i], vegasOnly[i], 0);
+    }
+  }
+
+  @Test
+  /**
+   * Tests that the bulk implied volatilities recover the volatilities used to price, for calls and puts on both sides of the forward.
+   */
+  public void bulkImpliedVolatility() {
+    final BulkData data = new BulkData();
+    final double[] prices = BlackFormulaRepository.price(data._forwards, data._strikes, data._times, data._vols, data._isCall);
+    final double[] vols = BlackFormulaRepository.impliedVolatility(prices, data._forwards, data._strikes, data._times, data._isCall);
+    for (int i = 0; i < data._n; i++) {
+      // the volatility is only recoverable to this accuracy where the price is sensitive to it
+      if (BlackFormulaRepository.vega(data._forwards[i], data._strikes[i], data._times[i], data._vols[i]) > 1.0E-3) {
+        final double expected = BlackFormulaRepository.impliedVolatility(prices[i], data._forwards[i], data._strikes[i], data._times[i], data._isCall[i]);
+        assertEquals("Bulk implied volatility " + i, expected, vols[i], 1.0E-8);
+        assertEquals("Bulk implied volatility " + i, data._vols[i], vols[i], 1.0E-8);
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void bulkNegativeVolatility() {
+    BlackFormulaRepository.price(new double[] {FORWARD}, new double[] {FORWARD}, new double[] {TIME_TO_EXPIRY}, new double[] {-0.2}, new boolean[] {true});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void bulkWrongLength() {
+    BlackFormulaRepository.price(new double[] {FORWARD}, STRIKES_INPUT, new double[] {TIME_TO_EXPIRY}, new double[] {0.2}, new boolean[] {true});
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void bulkWrongOutputLength() {
+    final BulkData data = new BulkData();
+    BlackFormulaRepository.greeks(data._forwards, data._strikes, data._times, data._vols, data._isCall, null, new double[1], null, null);
+  }
+
+  @Test(enabled = false)
+  /**
+   * Assess the performance of the bulk functions against the single-option functions.
+   */
+  public void bulkPerformance() {
+    final int nbTest = 100;
+    final BulkData data = new BulkData();
+    final int n = data._n;
+    final double[] prices = new double[n];
+    final double[] vols = new double[n];
+    final double[] deltas = new double[n];
+    final double[] gammas = new double[n];
+    final double[] vegas = new double[n];
+    final double[] thetas = new double[n];
+    BlackFormulaRepository.price(data._forwards, data._strikes, data._times, data._vols, data._isCall, prices);
+    long startTime, endTime;
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      for (int i = 0; i < n; i++) {
+        prices[i] = BlackFormulaRepository.price(data._forwards[i], data._strikes[i], data._times[i], data._vols[i], data._isCall[i]);
+      }
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " single prices: " + (endTime - startTime) + " ms");
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      BlackFormulaRepository.price(data._forwards, data._strikes, data._times, data._vols, data._isCall, prices);
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " bulk prices: " + (endTime - startTime) + " ms");
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      for (int i = 0; i < n; i++) {
+        deltas[i] = BlackFormulaRepository.delta(data._forwards[i], data._strikes[i], data._times[i], data._vols[i], data._isCall[i]);
+        gammas[i] = BlackFormulaRepository.gamma(data._forwards[i], data._strikes[i], data._times[i], data._vols[i]);
+        vegas[i] = BlackFormulaRepository.vega(data._forwards[i], data._strikes[i], data._times[i], data._vols[i]);
+        thetas[i] = BlackFormulaRepository.theta(data._forwards[i], data._strikes[i], data._times[i], data._vols[i]);
+      }
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " single greeks: " + (endTime - startTime) + " ms");
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      BlackFormulaRepository.greeks(data._forwards, data._strikes, data._times, data._vols, data._isCall, deltas, gammas, vegas, thetas);
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " bulk greeks: " + (endTime - startTime) + " ms");
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      for (int i = 0; i < n; i++) {
+        if (data._vols[i] > 0 && data._strikes[i] > 0) {
+          vols[i] = BlackFormulaRepository.impliedVolatility(prices[i], data._forwards[i], data._strikes[i], data._times[i], data._isCall[i]);
+        }
+      }
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " single implied volatilities: " + (endTime - startTime) + " ms");
+
+    startTime = System.currentTimeMillis();
+    for (int looptest = 0; looptest < nbTest; looptest++) {
+      BlackFormulaRepository.impliedVolatility(prices, data._forwards, data._strikes, data._times, data._isCall, vols);
+    }
+    endTime = System.currentTimeMillis();
+    System.out.println(nbTest * n + " bulk implied volatilities: " + (endTime - startTime) + " ms");
+  }
+
+  /**
+   * A grid of options over strike, expiry and volatility, with some zero strikes, zero volatilities and at-the-money options.
+   */
+  private static final class BulkData {
+    private final int _n;
+    private final double[] _forwards;
+    private final double[] _strikes;
+    private final double[] _times;
+    private final double[] _vols;
+    private final boolean[] _isCall;
+
+    BulkData() {
+      final double[] times = new double[] {0.1, 1.0, TIME_TO_EXPIRY, 10.0};
+      final double[] vols = new double[] {0.0, 0.05, 0.2, 0.6};
+      final double[] strikes = new double[STRIKES_INPUT.length + 2];
+      System.arraycopy(STRIKES_INPUT, 0, strikes, 0, STRIKES_INPUT.length);
+      strikes[STRIKES_INPUT.length] = FORWARD;
+      strikes[STRIKES_INPUT.length + 1] = 0.0;
+      _n = 2 * times.length * vols.length * strikes.length;
+      _forwards = new double[_n];
+      _strikes = new double[_n];
+      _times = new double[_n];
+      _vols = new double[_n];
+      _isCall = new boolean[_n];
+      int i = 0;
+      for (final double t : times) {
+        for (final double vol : vols) {
+          for (final double k : strikes) {
+            for (int loopcall = 0; loopcall < 2; loopcall++) {
+              _forwards[i] = FORWARD;
+              _strikes[i] = k;
+              _times[i] = t;
+              _vols[i] = vol;
+              _isCall[i] = loopcall == 0;
+              i++;
+            }
+          }
+        }
+      }
+    }
+  }
+
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility.smile.fitting;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.model.option.pricing.analytic.formula.EuropeanVanillaOption;
+import com.opengamma.analytics.financial.model.volatility.smile.function.SABRFormulaData;
+import com.opengamma.analytics.financial.model.volatility.smile.function.SABRHaganVolatilityFunction;
+import com.opengamma.analytics.financial.model.volatility.smile.function.VolatilityFunctionProvider;
+import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.statistics.leastsquare.LeastSquareResultsWithTransform;
+
+/**
+ *
+ */
+public class SABRSliceCalibratorTest {
+  private static final VolatilityFunctionProvider<SABRFormulaData> SABR = new SABRHaganVolatilityFunction();
+  private static final double[] STRIKES = new double[] {0.005, 0.01, 0.02, 0.03, 0.04, 0.05, 0.07 };
+  private static final double[] EXPIRIES = new double[] {0.5, 1, 2, 5, 7, 10 };
+  private static final double FORWARD = 0.03;
+  private static final SABRFormulaData SABR_DATA = new SABRFormulaData(0.05, 0.5, -0.3, 0.2);
+  private static final DoubleMatrix1D INITIAL_VALUES = new DoubleMatrix1D(new double[] {0.1, 0.5, 0.0, 0.5 });
+  private static final BitSet FIXED = new BitSet();
+
+  static {
+    FIXED.set(1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegativeTolerance() {
+    new SABRSliceCalibrator(SABR, null, -1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullModel() {
+    new SABRSliceCalibrator(null, null, 0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullSurfaceName() {
+    new SABRSliceCalibrator(SABR, null, 0).calibrate(null, getSlices(0), INITIAL_VALUES, FIXED);
+  }
+
+  @Test
+  public void testSerialFit() {
+    final SABRSliceCalibrator calibrator = new SABRSliceCalibrator(SABR, null, 1e-8);
+    final Map<Double, LeastSquareResultsWithTransform> results = calibrator.calibrate("Test", getSlices(0), INITIAL_VALUES, FIXED);
+    assertFits(results);
+    assertEquals(EXPIRIES.length, calibrator.getStatistics().getSlicesFitted());
+    assertEquals(0, calibrator.getStatistics().getSlicesWarmStarted());
+    assertTrue(calibrator.getStatistics().getModelEvaluations() > 0);
+  }
+
+  @Test
+  public void testParallelFit() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final SABRSliceCalibrator calibrator = new SABRSliceCalibrator(SABR, executor, 1e-8);
+      final Map<Double, LeastSquareResultsWithTransform> results = calibrator.calibrate("Test", getSlices(0), INITIAL_VALUES, FIXED);
+      assertFits(results);
+      final Map<Double, LeastSquareResultsWithTransform> serial = new SABRSliceCalibrator(SABR, null, 1e-8).calibrate("Test", getSlices(0), INITIAL_VALUES, FIXED);
+      for (final Double expiry : serial.keySet()) {
+        assertEquals(serial.get(expiry).getModelParameters(), results.get(expiry).getModelParameters());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSkipUnchanged() {
+    final SABRSliceCalibrator calibrator = new SABRSliceCalibrator(SABR, null, 1e-6);
+    final Map<Double, LeastSquareResultsWithTransform> first = calibrator.calibrate("Test", getSlices(0), INITIAL_VALUES, FIXED);
+    final Map<Double, LeastSquareResultsWithTransform> second = calibrator.calibrate("Test", getSlices(1e-7), INITIAL_VALUES, FIXED);
+    for (final Double expiry : first.keySet()) {
+      assertSame(first.get(expiry), second.get(expiry));
+    }
+    assertEquals(EXPIRIES.length, calibrator.getStatistics().getSlicesSkipped());
+    assertEquals(EXPIRIES.length, calibrator.getStatistics().getSlicesFitted());
+  }
+
+  @Test
+  public void testWarmStart() {
+    final SABRSliceCalibrator calibrator = new SABRSliceCalibrator(SABR, null, 1e-6);
+    calibrator.calibrate("Test", getSlices(0), INITIAL_VALUES, FIXED);
+    final long coldEvaluations = calibrator.getStatistics().getModelEvaluations();
+    final Map<Double, LeastSquareResultsWithTransform> results = calibrator.calibrate("Test", getSlices(1e-4), INITIAL_VALUES, FIXED);
+    assertEquals(2 * EXPIRIES.length, calibrator.getStatistics().getSlicesFitted());
+    assertEquals(EXPIRIES.length, calibrator.getStatistics().getSlicesWarmStarted());
+    assertTrue(calibrator.getStatistics().getModelEvaluations() - coldEvaluations < coldEvaluations);
+    assertEquals(EXPIRIES.length, results.size());
+  }
+
+  @Test
+  public void testSurfacesAreIndependent() {
+    final SABRSliceCalibrator calibrator = new SABRSliceCalibrator(SABR, null, 1e-6);
+    calibrator.calibrate("Test1", getSlices(0), INITIAL_VALUES, FIXED);
+    calibrator.calibrate("Test2", getSlices(0), INITIAL_VALUES, FIXED);
+    assertEquals(0, calibrator.getStatistics().getSlicesSkipped());
+    calibrator.invalidate("Test1");
+    calibrator.calibrate("Test1", getSlices(0), INITIAL_VALUES, FIXED);
+    calibrator.calibrate("Test2", getSlices(0), INITIAL_VALUES, FIXED);
+    assertEquals(EXPIRIES.length, calibrator.getStatistics().getSlicesSkipped());
+    assertEquals(3 * EXPIRIES.length, calibrator.getStatistics().getSlicesFitted());
+  }
+
+  private void assertFits(final Map<Double, LeastSquareResultsWithTransform> results) {
+    assertEquals(EXPIRIES.length, results.size());
+    for (final LeastSquareResultsWithTransform result : results.values()) {
+      final DoubleMatrix1D parameters = result.getModelParameters();
+      assertEquals(SABR_DATA.getAlpha(), parameters.getEntry(0), 1e-5);
+      assertEquals(SABR_DATA.getBeta(), parameters.getEntry(1), 1e-12);
+      assertEquals(SABR_DATA.getRho(), parameters.getEntry(2), 1e-4);
+      assertEquals(SABR_DATA.getNu(), parameters.getEntry(3), 1e-4);
+    }
+  }
+
+  private Map<Double, SmileSliceData> getSlices(final double shift) {
+    final int n = STRIKES.length;
+    final double[] errors = new double[n];
+    Arrays.fill(errors, 0.0001);
+    final Map<Double, SmileSliceData> slices = new LinkedHashMap<Double, SmileSliceData>();
+    for (final double t : EXPIRIES) {
+      final double[] vols = new double[n];
+      for (int i = 0; i < n; i++) {
+        vols[i] = SABR.getVolatilityFunction(new EuropeanVanillaOption(STRIKES[i], t, true), FORWARD).evaluate(SABR_DATA) + shift;
+      }
+      slices.put(t, new SmileSliceData(FORWARD, t, STRIKES, vols, errors));
+    }
+    return slices;
+  }
+
+}
@@ -71,6 +71,7 @@ public class BloombergTickWriter extends TerminatableJob {
   private final StopWatch _stopWatch = new StopWatch();
   private long _reportInterval;
   private final StorageMode _storageMode;
+  private TickJournalWriter _journalWriter;
   
   public BloombergTickWriter(BlockingQueue<FudgeMsg> allTicksQueue, Map<String, String> ticker2Buid, 
       String rootDir, StorageMode storageMode, BloombergTicksCollector ticksGenerator) {
@@ -116,7 +117,7 @@ public class BloombergTickWriter extends TerminatableJob {
     // This might not be the case outside of the high load test case where data arrives at high speed and the blocking is a rarity.
     List<FudgeMsg> ticks = new ArrayList<FudgeMsg>(_allTicksQueue.size());
     _allTicksQueue.drainTo(ticks);
-    FudgeMsg msg = writeAllTicksToSingleFile(ticks);
+    FudgeMsg msg = (_storageMode == StorageMode.JOURNAL) ? writeAllTicksToJournal(ticks) : writeAllTicksToSingleFile(ticks);
     if (_storageMode == StorageMode.MULTI) {
       if (msg != null && BloombergTickReplayUtils.isTerminateMsg(msg)) {
         ticks.remove(msg);
@@ -253,6 +254,50 @@ public class BloombergTickWriter extends TerminatableJob {
     return terminateMsg;
   }
 
+  private FudgeMsg writeAllTicksToJournal(List<FudgeMsg> ticks) {
+    if (ticks.isEmpty()) {
+      return null;
+    }
+    FudgeMsg terminateMsg = null;
+    File dir = new File(makeBaseDirectoryName());
+    if (_journalWriter == null || !_journalWriter.getDirectory().equals(dir)) {
+      // Start a journal for each day
+      closeJournal();
+      _journalWriter = new TickJournalWriter(getFudgeContext(), dir);
+    }
+    for (FudgeMsg tick : ticks) {
+      if (BloombergTickReplayUtils.isTerminateMsg(tick)) {
+        terminateMsg = tick;
+        continue;
+      }
+      _nBlocks += FudgeSize.calculateMessageSize(tick);
+      String securityDes = tick.getString(SECURITY_KEY);
+      String buid = getBloombergBUID(securityDes);
+      if (buid == null) {
+        s_logger.warn("Skipping tick with no security from journal: {}", tick);
+        continue;
+      }
+      ((MutableFudgeMsg) tick).add(BUID_KEY, buid);
+      Long receivedTS = tick.getLong(RECEIVED_TS_KEY);
+      _journalWriter.write(buid, (receivedTS != null) ? receivedTS : System.currentTimeMillis(), tick);
+    }
+    _nWrites++;
+    _nTicks += ticks.size();
+    return terminateMsg;
+  }
+
+  private void closeJournal() {
+    if (_journalWriter != null) {
+      _journalWriter.close();
+      _journalWriter = null;
+    }
+  }
+
+  @Override
+  protected void postRunCycle() {
+    closeJournal();
+  }
+
   private File getTicksFile() {
     String baseDirectory = makeBaseDirectoryName();
     File dir = new File(baseDirectory);
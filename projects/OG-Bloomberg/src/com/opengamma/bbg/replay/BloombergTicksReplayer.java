@@ -38,6 +38,7 @@ public class BloombergTicksReplayer implements Lifecycle {
   private final ZonedDateTime _endTime;
   private final boolean _infiniteLoop;
   private final Set<String> _securities;
+  private final double _speed;
   
   private Thread _tickPlayerThread;
   private TerminatableJob _ticksPlayerJob;
@@ -60,12 +61,28 @@ public class BloombergTicksReplayer implements Lifecycle {
   }
 
   public BloombergTicksReplayer(Mode mode, String rootDir, BloombergTickReceiver bloombergTickReceiver, ZonedDateTime startTime, ZonedDateTime endTime, boolean infiniteLoop, Set<String> securities) {
+    this(mode, rootDir, bloombergTickReceiver, startTime, endTime, infiniteLoop, securities, 1d);
+  }
+
+  /**
+   * @param mode the replay mode, not null
+   * @param rootDir the root directory of the ticks, not null
+   * @param bloombergTickReceiver the receiver to play ticks to, not null
+   * @param startTime the time of the first tick to replay, not null
+   * @param endTime the time of the last tick to replay, not null
+   * @param infiniteLoop true to replay repeatedly
+   * @param securities the BUIDs of the securities to replay, empty for all, not null
+   * @param speed the multiple of the original speed to replay at in {@link Mode#ORIGINAL_LATENCY} mode, positive
+   */
+  public BloombergTicksReplayer(Mode mode, String rootDir, BloombergTickReceiver bloombergTickReceiver, ZonedDateTime startTime, ZonedDateTime endTime, boolean infiniteLoop, Set<String> securities,
+      double speed) {
     ArgumentChecker.notNull(rootDir, "rootDir");
     ArgumentChecker.notNull(bloombergTickReceiver, "tickHandler");
     ArgumentChecker.notNull(mode, "mode");
     ArgumentChecker.notNull(startTime, "startTime");
     ArgumentChecker.notNull(endTime, "endTime");
     ArgumentChecker.notNull(securities, "securities");
+    ArgumentChecker.isTrue(speed > 0, "speed must be positive");
     _mode = mode;
     _rootDir = rootDir;
     _bloombergTickReceiver = bloombergTickReceiver;
@@ -73,6 +90,7 @@ public class BloombergTicksReplayer implements Lifecycle {
     _endTime = endTime;
     _infiniteLoop = infiniteLoop;
     _securities = securities;
+    _speed = speed;
   }
 
   @Override
@@ -134,7 +152,7 @@ public class BloombergTicksReplayer implements Lifecycle {
    */
   private void startPlayer() {
     s_logger.info("starting ticksPlayer-job");
-    TicksPlayerJob ticksPlayer = new TicksPlayerJob(_ticksQueue, _bloombergTickReceiver, _mode, _ticksLoaderThread);
+    TicksPlayerJob ticksPlayer = new TicksPlayerJob(_ticksQueue, _bloombergTickReceiver, _mode, _ticksLoaderThread, _speed);
     _ticksPlayerJob = ticksPlayer;
     Thread thread = new Thread(_ticksPlayerJob, "TicksPlayer");
 //    thread.setDaemon(true);
@@ -16,5 +16,9 @@ public enum StorageMode {
   /**
    * Store ticks per security
    */
-  MULTI
+  MULTI,
+  /**
+   * Store all ticks in an indexed journal of large segment files
+   */
+  JOURNAL
 }
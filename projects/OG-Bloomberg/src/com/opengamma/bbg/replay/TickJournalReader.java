@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.bbg.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Reads ticks from a journal written by {@link TickJournalWriter}.
+ * <p>
+ * Each segment is memory-mapped and read in place. The segment indexes are used to skip segments
+ * holding none of the wanted securities or times, and to seek within a segment to the first wanted
+ * time. Only the ticks of the wanted securities are decoded.
+ * <p>
+ * This class is thread-safe; several threads may read the same journal at once.
+ */
+public class TickJournalReader {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalReader.class);
+
+  private final FudgeContext _fudgeContext;
+  private final File _directory;
+
+  /**
+   * Creates a reader.
+   *
+   * @param fudgeContext  the Fudge context, not null
+   * @param directory  the journal directory, not null
+   */
+  public TickJournalReader(FudgeContext fudgeContext, File directory) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(directory, "directory");
+    _fudgeContext = fudgeContext;
+    _directory = directory;
+  }
+
+  /**
+   * Checks whether a directory holds a tick journal.
+   *
+   * @param directory  the directory, not null
+   * @return true if there is at least one segment in the directory
+   */
+  public static boolean isJournal(File directory) {
+    return !TickJournalWriter.listSegments(directory).isEmpty();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Reads ticks in the order they were written.
+   * <p>
+   * Ticks received from different sessions may be slightly out of time order, so every tick in
+   * the time range is delivered regardless of the order.
+   *
+   * @param securities  the securities to read, empty for all, not null
+   * @param fromTime  the earliest receive time to read, in epoch milliseconds
+   * @param toTime  the latest receive time to read, in epoch milliseconds
+   * @param handler  the handler to pass ticks to, not null
+   * @return the number of ticks passed to the handler
+   */
+  public long read(Set<String> securities, long fromTime, long toTime, TickHandler handler) {
+    ArgumentChecker.notNull(securities, "securities");
+    ArgumentChecker.notNull(handler, "handler");
+    long count = 0;
+    for (File segmentFile : TickJournalWriter.listSegments(_directory)) {
+      final ByteBuffer segment = map(segmentFile);
+      final TickJournalSegmentIndex index = loadIndex(segmentFile, segment);
+      final boolean[] wanted = index.select(securities, fromTime, toTime);
+      if (wanted == null) {
+        s_logger.debug("Skipping tick journal segment {}", segmentFile);
+        continue;
+      }
+      int offset = index.getStartOffset(fromTime, TickJournalWriter.FIRST_RECORD_OFFSET);
+      int length;
+      while ((length = TickJournalWriter.recordLength(segment, offset)) > 0) {
+        final int body = offset + TickJournalWriter.RECORD_HEADER_SIZE;
+        if (segment.get(offset + 4) == TickJournalWriter.TICK_RECORD) {
+          final long receivedTime = segment.getLong(body);
+          final int securityId = segment.getInt(body + 8);
+          // A segment still being written may define securities after its index was built
+          if (receivedTime >= fromTime && receivedTime <= toTime && securityId < wanted.length && wanted[securityId]) {
+            final FudgeMsg tick = decode(segment, body + 12, body + length);
+            count++;
+            if (!handler.tickRead(index.getSecurity(securityId), receivedTime, tick)) {
+              return count;
+            }
+          }
+        }
+        offset = body + length;
+      }
+    }
+    return count;
+  }
+
+  //-------------------------------------------------------------------------
+  private ByteBuffer map(File segmentFile) {
+    try {
+      final RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+      try {
+        final ByteBuffer segment = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        if (segment.limit() < TickJournalWriter.FIRST_RECORD_OFFSET || segment.getInt(0) != TickJournalWriter.SEGMENT_MAGIC
+            || segment.getInt(4) != TickJournalWriter.SEGMENT_VERSION) {
+          throw new OpenGammaRuntimeException("File " + segmentFile + " is not a tick journal segment");
+        }
+        return segment;
+      } finally {
+        // The mapping remains valid after the file is closed
+        file.close();
+      }
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Cannot read tick journal segment " + segmentFile, ex);
+    }
+  }
+
+  private TickJournalSegmentIndex loadIndex(File segmentFile, ByteBuffer segment) {
+    final File indexFile = TickJournalWriter.indexFile(segmentFile);
+    if (indexFile.exists()) {
+      return TickJournalSegmentIndex.read(indexFile);
+    }
+    s_logger.info("Building index of tick journal segment {}", segmentFile);
+    final ByteBuffer records = segment.duplicate();
+    records.position(TickJournalWriter.FIRST_RECORD_OFFSET);
+    return TickJournalSegmentIndex.build(records);
+  }
+
+  private FudgeMsg decode(ByteBuffer segment, int start, int end) {
+    final ByteBuffer message = segment.duplicate();
+    message.limit(end).position(start);
+    return _fudgeContext.deserialize(new ByteBufferInputStream(message)).getMessage();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Receives the ticks read from a journal.
+   */
+  public interface TickHandler {
+
+    /**
+     * Receives a tick.
+     *
+     * @param security  the security the tick is for, not null
+     * @param receivedTime  the time the tick was received, in epoch milliseconds
+     * @param tick  the tick message, not null
+     * @return true to continue reading, false to stop
+     */
+    boolean tickRead(String security, long receivedTime, FudgeMsg tick);
+
+  }
+
+  /**
+   * An input stream over the remaining bytes of a buffer.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer _buffer;
+
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      _buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return _buffer.hasRemaining() ? (_buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+      if (!_buffer.hasRemaining()) {
+        return -1;
+      }
+      final int count = Math.min(length, _buffer.remaining());
+      _buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return _buffer.remaining();
+    }
+  }
+
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.bbg.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * The time and security index of a single tick journal segment.
+ * <p>
+ * The index records the securities in the segment, with the time range and number of ticks of
+ * each, so that a reader can skip segments holding none of the ticks it wants. It also records
+ * the offset of every {@link #ENTRY_INTERVAL}th tick with the latest time of any tick before it,
+ * allowing a reader to seek to a time even though ticks from different sessions may be slightly
+ * out of order.
+ * <p>
+ * The index is written alongside the segment when the segment is closed. An index for a segment
+ * that was not closed, for example one still being written, is built by scanning the segment.
+ */
+final class TickJournalSegmentIndex {
+
+  /**
+   * The number of ticks between index entries.
+   */
+  static final int ENTRY_INTERVAL = 1024;
+
+  private static final int INDEX_MAGIC = 0x4F47544A;
+  private static final int INDEX_VERSION = 1;
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final List<SecurityEntry> _securities = new ArrayList<SecurityEntry>();
+  private long[] _entryTimes = new long[16];
+  private int[] _entryOffsets = new int[16];
+  private int _entryCount;
+  private int _tickCount;
+  private long _minTime = Long.MAX_VALUE;
+  private long _maxTime = Long.MIN_VALUE;
+
+  /**
+   * Records a security definition.
+   *
+   * @param securityId  the identifier of the security within the segment, the next unused identifier
+   * @param security  the security, not null
+   */
+  void securityDefined(final int securityId, final String security) {
+    if (securityId != _securities.size()) {
+      throw new OpenGammaRuntimeException("Security " + security + " defined out of order as " + securityId);
+    }
+    _securities.add(new SecurityEntry(security));
+  }
+
+  /**
+   * Records a tick.
+   *
+   * @param offset  the offset of the tick's record in the segment
+   * @param receivedTime  the time the tick was received, in epoch milliseconds
+   * @param securityId  the identifier of the tick's security within the segment
+   */
+  void tickWritten(final int offset, final long receivedTime, final int securityId) {
+    if (_tickCount % ENTRY_INTERVAL == 0) {
+      if (_entryCount == _entryTimes.length) {
+        _entryTimes = Arrays.copyOf(_entryTimes, _entryCount * 2);
+        _entryOffsets = Arrays.copyOf(_entryOffsets, _entryCount * 2);
+      }
+      _entryTimes[_entryCount] = _maxTime;
+      _entryOffsets[_entryCount] = offset;
+      _entryCount++;
+    }
+    _tickCount++;
+    _minTime = Math.min(_minTime, receivedTime);
+    _maxTime = Math.max(_maxTime, receivedTime);
+    final SecurityEntry security = _securities.get(securityId);
+    security._firstTime = Math.min(security._firstTime, receivedTime);
+    security._lastTime = Math.max(security._lastTime, receivedTime);
+    security._tickCount++;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of ticks in the segment.
+   *
+   * @return the number of ticks
+   */
+  int getTickCount() {
+    return _tickCount;
+  }
+
+  /**
+   * Gets the number of securities defined in the segment.
+   *
+   * @return the number of securities
+   */
+  int getSecurityCount() {
+    return _securities.size();
+  }
+
+  /**
+   * Gets a security by its identifier within the segment.
+   *
+   * @param securityId  the identifier
+   * @return the security, not null
+   */
+  String getSecurity(final int securityId) {
+    return _securities.get(securityId)._security;
+  }
+
+  /**
+   * Gets the number of ticks of a security in the segment.
+   *
+   * @param security  the security, not null
+   * @return the number of ticks, zero if none
+   */
+  int getTickCount(final String security) {
+    for (SecurityEntry entry : _securities) {
+      if (entry._security.equals(security)) {
+        return entry._tickCount;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Selects the securities of the segment which are wanted by a reader.
+   *
+   * @param securities  the securities wanted, empty for all, not null
+   * @param fromTime  the earliest tick time wanted, in epoch milliseconds
+   * @param toTime  the latest tick time wanted, in epoch milliseconds
+   * @return the wanted flags indexed by security identifier, null if the segment holds no wanted ticks
+   */
+  boolean[] select(final Set<String> securities, final long fromTime, final long toTime) {
+    if (_tickCount == 0 || _minTime > toTime || _maxTime < fromTime) {
+      return null;
+    }
+    final boolean[] wanted = new boolean[_securities.size()];
+    boolean any = false;
+    for (int i = 0; i < wanted.length; i++) {
+      final SecurityEntry entry = _securities.get(i);
+      wanted[i] = entry._tickCount > 0 && entry._firstTime <= toTime && entry._lastTime >= fromTime
+          && (securities.isEmpty() || securities.contains(entry._security));
+      any |= wanted[i];
+    }
+    return any ? wanted : null;
+  }
+
+  /**
+   * Gets the offset to start reading from so that no tick at or after a time is missed.
+   *
+   * @param fromTime  the earliest tick time wanted, in epoch milliseconds
+   * @param firstRecordOffset  the offset of the first record in the segment
+   * @return the offset of a record
+   */
+  int getStartOffset(final long fromTime, final int firstRecordOffset) {
+    // Entry times are the latest time of the ticks before each entry so never decrease
+    int low = 0;
+    int high = _entryCount - 1;
+    int found = -1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (_entryTimes[mid] < fromTime) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return (found < 0) ? firstRecordOffset : _entryOffsets[found];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes the index to a file.
+   * <p>
+   * The index is written to a temporary file that is then renamed into place, so a reader never
+   * sees a partly written index.
+   *
+   * @param file  the file, not null
+   */
+  void write(final File file) {
+    ArgumentChecker.notNull(file, "file");
+    final File temp = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(INDEX_MAGIC);
+        out.writeInt(INDEX_VERSION);
+        out.writeInt(_tickCount);
+        out.writeLong(_minTime);
+        out.writeLong(_maxTime);
+        out.writeInt(_securities.size());
+        for (SecurityEntry entry : _securities) {
+          out.writeUTF(entry._security);
+          out.writeInt(entry._tickCount);
+          out.writeLong(entry._firstTime);
+          out.writeLong(entry._lastTime);
+        }
+        out.writeInt(_entryCount);
+        for (int i = 0; i < _entryCount; i++) {
+          out.writeLong(_entryTimes[i]);
+          out.writeInt(_entryOffsets[i]);
+        }
+      } finally {
+        out.close();
+      }
+    } catch (IOException ex) {
+      temp.delete();
+      throw new OpenGammaRuntimeException("Unable to write tick journal index " + file, ex);
+    }
+    // Renaming over an existing file fails on some platforms
+    if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+      temp.delete();
+      throw new OpenGammaRuntimeException("Unable to move tick journal index " + temp + " to " + file);
+    }
+  }
+
+  /**
+   * Reads an index from a file.
+   *
+   * @param file  the file, not null
+   * @return the index, not null
+   */
+  static TickJournalSegmentIndex read(final File file) {
+    ArgumentChecker.notNull(file, "file");
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+          throw new OpenGammaRuntimeException("File " + file + " is not a tick journal index");
+        }
+        final TickJournalSegmentIndex index = new TickJournalSegmentIndex();
+        index._tickCount = in.readInt();
+        index._minTime = in.readLong();
+        index._maxTime = in.readLong();
+        final int securityCount = in.readInt();
+        for (int i = 0; i < securityCount; i++) {
+          final SecurityEntry entry = new SecurityEntry(in.readUTF());
+          entry._tickCount = in.readInt();
+          entry._firstTime = in.readLong();
+          entry._lastTime = in.readLong();
+          index._securities.add(entry);
+        }
+        index._entryCount = in.readInt();
+        index._entryTimes = new long[Math.max(index._entryCount, 1)];
+        index._entryOffsets = new int[Math.max(index._entryCount, 1)];
+        for (int i = 0; i < index._entryCount; i++) {
+          index._entryTimes[i] = in.readLong();
+          index._entryOffsets[i] = in.readInt();
+        }
+        return index;
+      } finally {
+        in.close();
+      }
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Unable to read tick journal index " + file, ex);
+    }
+  }
+
+  /**
+   * Builds an index by scanning the records of a segment.
+   *
+   * @param segment  the segment contents, positioned at the first record, not null
+   * @return the index, not null
+   */
+  static TickJournalSegmentIndex build(final ByteBuffer segment) {
+    final TickJournalSegmentIndex index = new TickJournalSegmentIndex();
+    int offset = segment.position();
+    int length;
+    while ((length = TickJournalWriter.recordLength(segment, offset)) > 0) {
+      final int body = offset + TickJournalWriter.RECORD_HEADER_SIZE;
+      switch (segment.get(offset + 4)) {
+        case TickJournalWriter.SECURITY_RECORD:
+          index.securityDefined(segment.getInt(body), TickJournalWriter.readSecurity(segment, body + 4));
+          break;
+        case TickJournalWriter.TICK_RECORD:
+          index.tickWritten(offset, segment.getLong(body), segment.getInt(body + 8));
+          break;
+        default:
+          throw new OpenGammaRuntimeException("Unknown tick journal record type at offset " + offset);
+      }
+      offset += TickJournalWriter.RECORD_HEADER_SIZE + length;
+    }
+    return index;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The index details of a single security.
+   */
+  private static final class SecurityEntry {
+    private final String _security;
+    private int _tickCount;
+    private long _firstTime = Long.MAX_VALUE;
+    private long _lastTime = Long.MIN_VALUE;
+
+    private SecurityEntry(final String security) {
+      _security = security;
+    }
+  }
+
+}
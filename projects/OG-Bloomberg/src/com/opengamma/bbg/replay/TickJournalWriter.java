@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.bbg.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Appends ticks to a journal of large, memory-mapped segment files.
+ * <p>
+ * A journal is a directory of segments named in sequence, each starting with a header followed by
+ * records. A record is a length, a type and a body. A security record assigns an identifier within
+ * the segment to a security, and a tick record holds the time the tick was received, the identifier
+ * of its security and the encoded Fudge message. The length of a record is written after its body,
+ * so a reader sees only complete records and may read a segment while it is being written.
+ * <p>
+ * When a segment is full, or the writer is closed, its {@link TickJournalSegmentIndex index} is
+ * written alongside. The segment is not trimmed to its records, as readers may still have it mapped
+ * and would fault on pages beyond a shortened file; the records end at the first zero length, and
+ * the unwritten remainder of the segment is never touched so is left unallocated where the file
+ * system supports sparse files. Opening a writer on an existing journal starts a new segment
+ * numbered after the highest existing one.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class TickJournalWriter implements Closeable {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(TickJournalWriter.class);
+
+  /**
+   * The default size of a segment, in bytes.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+  /**
+   * The suffix of a segment file.
+   */
+  public static final String SEGMENT_SUFFIX = ".journal";
+  /**
+   * The suffix of a segment index file.
+   */
+  public static final String INDEX_SUFFIX = ".idx";
+
+  private static final String SEGMENT_PREFIX = "ticks-";
+  static final int SEGMENT_MAGIC = 0x4F47544B;
+  static final int SEGMENT_VERSION = 1;
+  static final int FIRST_RECORD_OFFSET = 8;
+  static final int RECORD_HEADER_SIZE = 5;
+  static final byte SECURITY_RECORD = 1;
+  static final byte TICK_RECORD = 2;
+  private static final int TICK_HEADER_SIZE = 12;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final FudgeContext _fudgeContext;
+  private final File _directory;
+  private final int _segmentSize;
+  private final Map<String, Integer> _securityIds = new HashMap<String, Integer>();
+  private int _nextSegmentNumber;
+  private File _segmentFile;
+  private RandomAccessFile _segmentAccess;
+  private MappedByteBuffer _segment;
+  private TickJournalSegmentIndex _index;
+
+  /**
+   * Creates a writer with segments of the default size.
+   *
+   * @param fudgeContext  the Fudge context, not null
+   * @param directory  the journal directory, created if necessary, not null
+   */
+  public TickJournalWriter(FudgeContext fudgeContext, File directory) {
+    this(fudgeContext, directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * Creates a writer.
+   *
+   * @param fudgeContext  the Fudge context, not null
+   * @param directory  the journal directory, created if necessary, not null
+   * @param segmentSize  the size of each segment in bytes, large enough for the biggest tick
+   */
+  public TickJournalWriter(FudgeContext fudgeContext, File directory, int segmentSize) {
+    ArgumentChecker.notNull(fudgeContext, "fudgeContext");
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.isTrue(segmentSize > FIRST_RECORD_OFFSET, "segmentSize too small");
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new OpenGammaRuntimeException("Cannot create tick journal directory " + directory);
+    }
+    _fudgeContext = fudgeContext;
+    _directory = directory;
+    _segmentSize = segmentSize;
+    int nextSegmentNumber = 0;
+    for (File segment : listSegments(directory)) {
+      nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(segment) + 1);
+    }
+    _nextSegmentNumber = nextSegmentNumber;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the journal directory.
+   *
+   * @return the directory, not null
+   */
+  public File getDirectory() {
+    return _directory;
+  }
+
+  /**
+   * Appends a tick to the journal.
+   *
+   * @param security  the security the tick is for, not null
+   * @param receivedTime  the time the tick was received, in epoch milliseconds
+   * @param tick  the tick message, not null
+   */
+  public void write(String security, long receivedTime, FudgeMsg tick) {
+    ArgumentChecker.notNull(security, "security");
+    ArgumentChecker.notNull(tick, "tick");
+    final byte[] message = _fudgeContext.toByteArray(tick);
+    final byte[] securityName = security.getBytes(UTF8);
+    // Allow for defining the security, which a new segment will need
+    final int required = RECORD_HEADER_SIZE + 6 + securityName.length + RECORD_HEADER_SIZE + TICK_HEADER_SIZE + message.length;
+    if (_segment == null || _segment.remaining() < required + RECORD_HEADER_SIZE) {
+      if (_segment != null) {
+        closeSegment();
+      }
+      if (required + RECORD_HEADER_SIZE > _segmentSize - FIRST_RECORD_OFFSET) {
+        throw new OpenGammaRuntimeException("Tick of " + message.length + " bytes for " + security + " is too big for segments of " + _segmentSize + " bytes");
+      }
+      openSegment();
+    }
+    Integer securityId = _securityIds.get(security);
+    if (securityId == null) {
+      securityId = _securityIds.size();
+      final int offset = _segment.position();
+      _segment.position(offset + 4);
+      _segment.put(SECURITY_RECORD).putInt(securityId).putShort((short) securityName.length).put(securityName);
+      _segment.putInt(offset, _segment.position() - offset - RECORD_HEADER_SIZE);
+      _securityIds.put(security, securityId);
+      _index.securityDefined(securityId, security);
+    }
+    final int offset = _segment.position();
+    _segment.position(offset + 4);
+    _segment.put(TICK_RECORD).putLong(receivedTime).putInt(securityId).put(message);
+    _segment.putInt(offset, _segment.position() - offset - RECORD_HEADER_SIZE);
+    _index.tickWritten(offset, receivedTime, securityId);
+  }
+
+  /**
+   * Forces the ticks written so far to the storage device.
+   */
+  public void flush() {
+    if (_segment != null) {
+      _segment.force();
+    }
+  }
+
+  /**
+   * Closes the current segment, writing its index.
+   */
+  @Override
+  public void close() {
+    if (_segment != null) {
+      closeSegment();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private void openSegment() {
+    _segmentFile = new File(_directory, segmentName(_nextSegmentNumber++));
+    try {
+      _segmentAccess = new RandomAccessFile(_segmentFile, "rw");
+      _segment = _segmentAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _segmentSize);
+    } catch (IOException ex) {
+      throw new OpenGammaRuntimeException("Cannot open tick journal segment " + _segmentFile, ex);
+    }
+    _segment.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION);
+    _securityIds.clear();
+    _index = new TickJournalSegmentIndex();
+    s_logger.info("Opened tick journal segment {}", _segmentFile);
+  }
+
+  private void closeSegment() {
+    _segment.force();
+    _segment = null;
+    try {
+      _segmentAccess.close();
+    } catch (IOException ex) {
+      s_logger.warn("Cannot close tick journal segment {}", _segmentFile);
+    }
+    _index.write(indexFile(_segmentFile));
+    s_logger.info("Closed tick journal segment {} with {} ticks", _segmentFile, _index.getTickCount());
+    _segmentAccess = null;
+    _index = null;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Lists the segments of a journal in the order they were written.
+   *
+   * @param directory  the journal directory, not null
+   * @return the segment files, empty if none, not null
+   */
+  public static List<File> listSegments(File directory) {
+    ArgumentChecker.notNull(directory, "directory");
+    final File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(SEGMENT_SUFFIX);
+      }
+    });
+    if (files == null) {
+      return new ArrayList<File>();
+    }
+    // Segment names are zero padded so sort in sequence
+    Arrays.sort(files);
+    return new ArrayList<File>(Arrays.asList(files));
+  }
+
+  static String segmentName(int segmentNumber) {
+    return String.format(SEGMENT_PREFIX + "%06d", segmentNumber) + SEGMENT_SUFFIX;
+  }
+
+  /**
+   * Gets the number of a segment from its file name.
+   *
+   * @param segmentFile  the segment file, not null
+   * @return the segment number, -1 if the file is not named as a segment
+   */
+  static int segmentNumber(File segmentFile) {
+    final String name = segmentFile.getName();
+    if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+
+  static File indexFile(File segmentFile) {
+    final String name = segmentFile.getName();
+    return new File(segmentFile.getParentFile(), name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+  }
+
+  /**
+   * Gets the body length of the complete record at an offset of a segment.
+   *
+   * @param segment  the segment contents, not null
+   * @param offset  the offset of the record
+   * @return the body length, zero at the end of the records
+   */
+  static int recordLength(ByteBuffer segment, int offset) {
+    if (offset + RECORD_HEADER_SIZE > segment.limit()) {
+      return 0;
+    }
+    final int length = segment.getInt(offset);
+    if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segment.limit()) {
+      return 0;
+    }
+    return length;
+  }
+
+  static String readSecurity(ByteBuffer segment, int offset) {
+    final byte[] name = new byte[segment.getShort(offset)];
+    final ByteBuffer source = segment.duplicate();
+    source.position(offset + 2);
+    source.get(name);
+    return new String(name, UTF8);
+  }
+
+}
@@ -116,6 +116,10 @@ public class TicksLoaderJob extends TerminatableJob {
    * @return  <code>true</code> if the end has been reached, <code>false</code> otherwise
    */
   private boolean loadTicks(String fullPath) {
+    File journal = new File(fullPath);
+    if (journal.isDirectory()) {
+      return loadJournal(journal);
+    }
     try {
       FileInputStream fis = new FileInputStream(fullPath);
       FudgeMsgReader reader = s_fudgeContext.createMessageReader(fis);
@@ -152,6 +156,27 @@ public class TicksLoaderJob extends TerminatableJob {
     
   }
 
+  /**
+   * @param journal the journal directory
+   * @return  <code>true</code> if the end has not been reached, <code>false</code> otherwise
+   */
+  private boolean loadJournal(File journal) {
+    TickJournalReader reader = new TickJournalReader(s_fudgeContext, journal);
+    reader.read(_securities, _startTimeInEpochsMillis, _endTimeInEpochsMillis, new TickJournalReader.TickHandler() {
+      @Override
+      public boolean tickRead(String security, long receivedTime, FudgeMsg tick) {
+        try {
+          _ticksQueue.put(tick);
+        } catch (InterruptedException e) {
+          Thread.interrupted();
+          s_logger.warn("interrupted waiting to write to ticks queue");
+        }
+        return !isTerminated();
+      }
+    });
+    return !isTerminated();
+  }
+
   /**
    * @param message
    * @return
@@ -188,7 +213,11 @@ public class TicksLoaderJob extends TerminatableJob {
     while (current.isAfter(startDate) || current.equals(startDate)) {
       String fullPath = getFileNameFromDate(current);
       File file = new File(fullPath);
-      if (file.exists()) {
+      File journal = file.getParentFile();
+      if (TickJournalReader.isJournal(journal)) {
+        // A journal is read in preference to a single file for the same day
+        reverseOrder.add(journal.getPath());
+      } else if (file.exists()) {
         reverseOrder.add(fullPath);
       } else {
         s_logger.warn("{} does not exists ", file);
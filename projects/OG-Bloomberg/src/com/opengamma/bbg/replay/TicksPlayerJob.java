@@ -29,16 +29,31 @@ public class TicksPlayerJob extends TerminatableJob {
   private BloombergTickReceiver _tickReceiver;
   private Mode _mode;
   private Thread _ticksLoaderThread;
+  private final double _speed;
+  private final FudgeDeserializer _deserializer = new FudgeDeserializer(OpenGammaFudgeContext.getInstance());
 
   public TicksPlayerJob(BlockingQueue<FudgeMsg> ticksQueue, BloombergTickReceiver tickReceiver, Mode mode, Thread ticksLoaderThread) {
+    this(ticksQueue, tickReceiver, mode, ticksLoaderThread, 1d);
+  }
+
+  /**
+   * @param ticksQueue the queue of ticks to play, not null
+   * @param tickReceiver the receiver to play ticks to, not null
+   * @param mode the replay mode, not null
+   * @param ticksLoaderThread the thread loading ticks onto the queue, not null
+   * @param speed the multiple of the original speed to play at in {@link Mode#ORIGINAL_LATENCY} mode, positive
+   */
+  public TicksPlayerJob(BlockingQueue<FudgeMsg> ticksQueue, BloombergTickReceiver tickReceiver, Mode mode, Thread ticksLoaderThread, double speed) {
     ArgumentChecker.notNull(ticksQueue, "ticksQueue");
     ArgumentChecker.notNull(tickReceiver, "tickReceiver");
     ArgumentChecker.notNull(mode, "mode");
     ArgumentChecker.notNull(ticksLoaderThread, "ticksLoaderThread");
+    ArgumentChecker.isTrue(speed > 0, "speed must be positive");
     _ticksQueue = ticksQueue;
     _tickReceiver = tickReceiver;
     _mode = mode;
     _ticksLoaderThread = ticksLoaderThread;
+    _speed = speed;
   }
 
   @Override
@@ -61,7 +76,7 @@ public class TicksPlayerJob extends TerminatableJob {
    * 
    */
   private void playNextTick() {
-    FudgeDeserializer deserializer = new FudgeDeserializer(OpenGammaFudgeContext.getInstance());
+    FudgeDeserializer deserializer = _deserializer;
     switch (_mode) {
       case ORIGINAL_LATENCY:
         BloombergTick currentTick = null;;
@@ -79,7 +94,7 @@ public class TicksPlayerJob extends TerminatableJob {
           FudgeMsg nextMsg = _ticksQueue.peek();
           if (nextMsg != null && !BloombergTickReplayUtils.isTerminateMsg(nextMsg)) {
             BloombergTick nextTick = BloombergTick.fromFudgeMsg(deserializer, nextMsg);
-            long tickLatency = nextTick.getReceivedTS() - currentTick.getReceivedTS();
+            long tickLatency = (long) ((nextTick.getReceivedTS() - currentTick.getReceivedTS()) / _speed);
             long sleepTime = tickLatency - (ts2 - ts1);
             s_logger.debug("sleeping for {}ms,", sleepTime);
             if (sleepTime > 0) {
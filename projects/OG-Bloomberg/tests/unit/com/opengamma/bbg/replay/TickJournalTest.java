@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.bbg.replay;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Test TickJournalWriter and TickJournalReader.
+ */
+@Test
+public class TickJournalTest {
+
+  private static final FudgeContext s_fudgeContext = OpenGammaFudgeContext.getInstance();
+  private static final String[] SECURITIES = {"EQ0001", "EQ0002", "EQ0003" };
+  private static final long START = 1330000000000L;
+  private static final int TICKS = 5000;
+  private static final int SEGMENT_SIZE = 64 * 1024;
+
+  private File _dir;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    _dir = new File(SystemUtils.getJavaIoTmpDir(), "tickJournalTest");
+    if (_dir.exists()) {
+      FileUtils.deleteDirectory(_dir);
+    }
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(_dir);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_writeAndReadAll() {
+    writeTicks();
+    assertTrue(TickJournalWriter.listSegments(_dir).size() > 1);
+    List<FudgeMsg> ticks = read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(TICKS, ticks.size());
+    for (int i = 0; i < TICKS; i++) {
+      assertEquals(i, ticks.get(i).getInt("SEQ").intValue());
+    }
+  }
+
+  public void test_readSecuritiesFromTime() {
+    writeTicks();
+    Set<String> securities = Sets.newHashSet(SECURITIES[1]);
+    long from = START + 3000;
+    List<FudgeMsg> ticks = read(securities, from, Long.MAX_VALUE);
+    int expected = 0;
+    for (int i = 0; i < TICKS; i++) {
+      if (i % SECURITIES.length == 1 && tickTime(i) >= from) {
+        assertEquals(i, ticks.get(expected).getInt("SEQ").intValue());
+        expected++;
+      }
+    }
+    assertEquals(expected, ticks.size());
+  }
+
+  public void test_readWithoutIndex() {
+    writeTicks();
+    for (File segment : TickJournalWriter.listSegments(_dir)) {
+      assertTrue(TickJournalWriter.indexFile(segment).delete());
+    }
+    long from = START + 1000;
+    long to = START + 2000;
+    List<FudgeMsg> ticks = read(Collections.<String>emptySet(), from, to);
+    int expected = 0;
+    for (int i = 0; i < TICKS; i++) {
+      if (tickTime(i) >= from && tickTime(i) <= to) {
+        expected++;
+      }
+    }
+    assertEquals(expected, ticks.size());
+  }
+
+  public void test_readOpenSegment() {
+    TickJournalWriter writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+    writer.write(SECURITIES[0], START, tick(0));
+    writer.write(SECURITIES[1], START + 1, tick(1));
+    assertEquals(2, read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE).size());
+    writer.close();
+    assertEquals(2, read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE).size());
+  }
+
+  public void test_reopenAppendsSegment() {
+    TickJournalWriter writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+    writer.write(SECURITIES[0], START, tick(0));
+    writer.close();
+    writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+    writer.write(SECURITIES[0], START + 1, tick(1));
+    writer.close();
+    assertEquals(2, TickJournalWriter.listSegments(_dir).size());
+    assertEquals(2, read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE).size());
+  }
+
+  public void test_reopenAfterGapAppendsSegment() {
+    for (int i = 0; i < 3; i++) {
+      final TickJournalWriter writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+      writer.write(SECURITIES[0], START + i, tick(i));
+      writer.close();
+    }
+    final File removed = TickJournalWriter.listSegments(_dir).get(1);
+    assertTrue(removed.delete());
+    assertTrue(TickJournalWriter.indexFile(removed).delete());
+    final TickJournalWriter writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+    writer.write(SECURITIES[0], START + 3, tick(3));
+    writer.close();
+    assertEquals(3, TickJournalWriter.listSegments(_dir).size());
+    assertEquals(3, read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE).size());
+    // Only the segments and their indexes remain, with no temporary index files
+    assertEquals(6, _dir.list().length);
+  }
+
+  public void test_stopReading() {
+    writeTicks();
+    final List<FudgeMsg> ticks = new ArrayList<FudgeMsg>();
+    long count = new TickJournalReader(s_fudgeContext, _dir).read(Collections.<String>emptySet(), Long.MIN_VALUE, Long.MAX_VALUE, new TickJournalReader.TickHandler() {
+      @Override
+      public boolean tickRead(String security, long receivedTime, FudgeMsg tick) {
+        ticks.add(tick);
+        return ticks.size() < 10;
+      }
+    });
+    assertEquals(10, count);
+    assertFalse(TickJournalReader.isJournal(new File(_dir, "missing")));
+  }
+
+  //-------------------------------------------------------------------------
+  private void writeTicks() {
+    TickJournalWriter writer = new TickJournalWriter(s_fudgeContext, _dir, SEGMENT_SIZE);
+    try {
+      for (int i = 0; i < TICKS; i++) {
+        writer.write(SECURITIES[i % SECURITIES.length], tickTime(i), tick(i));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static long tickTime(int i) {
+    // Slightly out of order, as ticks from several sessions may be
+    return START + i - ((i % 7 == 0) ? 5 : 0);
+  }
+
+  private static FudgeMsg tick(int i) {
+    MutableFudgeMsg msg = s_fudgeContext.newMessage();
+    msg.add("SEQ", i);
+    msg.add("LAST_PRICE", 100d + i);
+    return msg;
+  }
+
+  private List<FudgeMsg> read(Set<String> securities, long from, long to) {
+    final List<FudgeMsg> ticks = new ArrayList<FudgeMsg>();
+    new TickJournalReader(s_fudgeContext, _dir).read(securities, from, to, new TickJournalReader.TickHandler() {
+      @Override
+      public boolean tickRead(String security, long receivedTime, FudgeMsg tick) {
+        ticks.add(tick);
+        return true;
+      }
+    });
+    return ticks;
+  }
+
+}
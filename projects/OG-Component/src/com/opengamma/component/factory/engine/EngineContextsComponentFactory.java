@@ -7,6 +7,8 @@ package com.opengamma.component.factory.engine;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.joda.beans.BeanBuilder;
 import org.joda.beans.BeanDefinition;
@@ -44,6 +46,7 @@ import com.opengamma.financial.convention.ConventionBundleSource;
 import com.opengamma.financial.currency.CurrencyMatrixSource;
 import com.opengamma.financial.marketdata.MarketDataELCompiler;
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesResolver;
+import com.opengamma.util.NamedThreadPoolFactory;
 
 /**
  * Component factory for the config source.
@@ -188,6 +191,9 @@ public class EngineContextsComponentFactory extends AbstractComponentFactory {
     OpenGammaExecutionContext.setConventionBundleSource(context, getConventionBundleSource());
     OpenGammaExecutionContext.setConfigSource(context, getConfigSource());
     OpenGammaExecutionContext.setOverrideOperationCompiler(context, ooc);
+    final ExecutorService calibrationExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new NamedThreadPoolFactory("Calibration", true));
+    repo.registerLifecycleStop(calibrationExecutor, "shutdown");
+    OpenGammaExecutionContext.setCalibrationExecutor(context, calibrationExecutor);
     context.setSecuritySource(getSecuritySource());
     context.setPortfolioStructure(new PortfolioStructure(getPositionSource()));
     ComponentInfo info = new ComponentInfo(FunctionExecutionContext.class, getClassifier());
@@ -28,6 +28,8 @@ import com.opengamma.core.security.SecuritySource;
 import com.opengamma.engine.ComputationTargetResolver;
 import com.opengamma.engine.DefaultCachingComputationTargetResolver;
 import com.opengamma.engine.DefaultComputationTargetResolver;
+import com.opengamma.engine.target.CoalescingComputationTargetResolver;
+import com.opengamma.util.rest.BulkRequestCoalescer;
 
 /**
  * Component factory for the target resolver.
@@ -55,11 +57,20 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
    */
   @PropertyDefinition
   private CacheManager _cacheManager;
+  /**
+   * The maximum number of bulk lookups of targets in progress at once.
+   */
+  @PropertyDefinition
+  private int _maxConcurrentLoads = BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS;
 
   @Override
   public void init(final ComponentRepository repo, final LinkedHashMap<String, String> configuration) {
-    repo.registerComponent(new ComponentInfo(ComputationTargetResolver.class, getClassifier()), new DefaultCachingComputationTargetResolver(new DefaultComputationTargetResolver(getSecuritySource(),
-        getPositionSource()), getCacheManager()));
+    // concurrent cache misses are coalesced into bulk security lookups, and into bulk position lookups where the
+    // position source is remote; a remote position source already coalesces its own lookups so is used directly
+    final DefaultComputationTargetResolver resolver = new DefaultComputationTargetResolver(getSecuritySource(), getPositionSource());
+    repo.registerComponent(new ComponentInfo(ComputationTargetResolver.class, getClassifier()),
+        new DefaultCachingComputationTargetResolver(
+            new CoalescingComputationTargetResolver(resolver, getMaxConcurrentLoads(), BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE, 0), getCacheManager()));
   }
 
   //------------------------- AUTOGENERATED START -------------------------
@@ -91,6 +102,8 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
         return getPositionSource();
       case -1452875317:  // cacheManager
         return getCacheManager();
+      case 1161698002:  // maxConcurrentLoads
+        return getMaxConcurrentLoads();
     }
     return super.propertyGet(propertyName, quiet);
   }
@@ -110,6 +123,9 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
       case -1452875317:  // cacheManager
         setCacheManager((CacheManager) newValue);
         return;
+      case 1161698002:  // maxConcurrentLoads
+        setMaxConcurrentLoads((Integer) newValue);
+        return;
     }
     super.propertySet(propertyName, newValue, quiet);
   }
@@ -133,6 +149,7 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
           JodaBeanUtils.equal(getSecuritySource(), other.getSecuritySource()) &&
           JodaBeanUtils.equal(getPositionSource(), other.getPositionSource()) &&
           JodaBeanUtils.equal(getCacheManager(), other.getCacheManager()) &&
+          JodaBeanUtils.equal(getMaxConcurrentLoads(), other.getMaxConcurrentLoads()) &&
           super.equals(obj);
     }
     return false;
@@ -145,6 +162,7 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
     hash += hash * 31 + JodaBeanUtils.hashCode(getSecuritySource());
     hash += hash * 31 + JodaBeanUtils.hashCode(getPositionSource());
     hash += hash * 31 + JodaBeanUtils.hashCode(getCacheManager());
+    hash += hash * 31 + JodaBeanUtils.hashCode(getMaxConcurrentLoads());
     return hash ^ super.hashCode();
   }
 
@@ -251,6 +269,31 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
     return metaBean().cacheManager().createProperty(this);
   }
 
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the maximum number of bulk lookups of targets in progress at once.
+   * @return the value of the property
+   */
+  public int getMaxConcurrentLoads() {
+    return _maxConcurrentLoads;
+  }
+
+  /**
+   * Sets the maximum number of bulk lookups of targets in progress at once.
+   * @param maxConcurrentLoads  the new value of the property
+   */
+  public void setMaxConcurrentLoads(int maxConcurrentLoads) {
+    this._maxConcurrentLoads = maxConcurrentLoads;
+  }
+
+  /**
+   * Gets the the {@code maxConcurrentLoads} property.
+   * @return the property, not null
+   */
+  public final Property<Integer> maxConcurrentLoads() {
+    return metaBean().maxConcurrentLoads().createProperty(this);
+  }
+
   //-----------------------------------------------------------------------
   /**
    * The meta-bean for {@code TargetResolverComponentFactory}.
@@ -281,6 +324,11 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
      */
     private final MetaProperty<CacheManager> _cacheManager = DirectMetaProperty.ofReadWrite(
         this, "cacheManager", TargetResolverComponentFactory.class, CacheManager.class);
+    /**
+     * The meta-property for the {@code maxConcurrentLoads} property.
+     */
+    private final MetaProperty<Integer> _maxConcurrentLoads = DirectMetaProperty.ofReadWrite(
+        this, "maxConcurrentLoads", TargetResolverComponentFactory.class, Integer.TYPE);
     /**
      * The meta-properties.
      */
@@ -289,7 +337,8 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
         "classifier",
         "securitySource",
         "positionSource",
-        "cacheManager");
+        "cacheManager",
+        "maxConcurrentLoads");
 
     /**
      * Restricted constructor.
@@ -308,6 +357,8 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
           return _positionSource;
         case -1452875317:  // cacheManager
           return _cacheManager;
+        case 1161698002:  // maxConcurrentLoads
+          return _maxConcurrentLoads;
       }
       return super.metaPropertyGet(propertyName);
     }
@@ -360,6 +411,14 @@ public class TargetResolverComponentFactory extends AbstractComponentFactory {
       return _cacheManager;
     }
 
+    /**
+     * The meta-property for the {@code maxConcurrentLoads} property.
+     * @return the meta-property, not null
+     */
+    public final MetaProperty<Integer> maxConcurrentLoads() {
+      return _maxConcurrentLoads;
+    }
+
   }
 
   ///CLOVER:ON
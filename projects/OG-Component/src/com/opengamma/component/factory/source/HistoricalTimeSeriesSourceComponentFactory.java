@@ -8,6 +8,8 @@ package com.opengamma.component.factory.source;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import javax.management.MBeanServer;
+
 import com.opengamma.component.factory.ComponentInfoAttributes;
 import com.opengamma.core.historicaltimeseries.impl.RemoteHistoricalTimeSeriesSource;
 import com.opengamma.master.historicaltimeseries.impl.EHCachingHistoricalTimeSeriesResolver;
@@ -61,6 +63,12 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
    */
   @PropertyDefinition
   private CacheManager _cacheManager;
+  /**
+   * The estimated size in bytes of the time-series to cache, zero to use the cache manager instead.
+   * If set, a size-weighted cache is used and its statistics are published over JMX.
+   */
+  @PropertyDefinition
+  private long _maximumCacheBytes;
   /**
    * The underlying hts master.
    */
@@ -81,7 +89,15 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
     infoResolver.addAttribute(ComponentInfoAttributes.REMOTE_CLIENT_JAVA, RemoteHistoricalTimeSeriesResolver.class);
     repo.registerComponent(infoResolver, resolver);
     HistoricalTimeSeriesSource source = initSource(resolver);
-    if (getCacheManager() != null) {
+    if (getMaximumCacheBytes() > 0) {
+      // identifier bundles are small, so are given a fraction of the budget
+      final EHCachingHistoricalTimeSeriesSource cachingSource = new EHCachingHistoricalTimeSeriesSource(source, getMaximumCacheBytes(), Math.max(getMaximumCacheBytes() / 16, 1));
+      final MBeanServer jmx = repo.findInstance(MBeanServer.class);
+      if (jmx != null) {
+        cachingSource.registerMBeans(jmx);
+      }
+      source = cachingSource;
+    } else if (getCacheManager() != null) {
       source = new EHCachingHistoricalTimeSeriesSource(source, getCacheManager());
     }
     final ComponentInfo infoSource = new ComponentInfo(HistoricalTimeSeriesSource.class, getClassifier());
@@ -136,6 +152,8 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
         return isPublishRest();
       case -1452875317:  // cacheManager
         return getCacheManager();
+      case -2118390711:  // maximumCacheBytes
+        return getMaximumCacheBytes();
       case 173967376:  // historicalTimeSeriesMaster
         return getHistoricalTimeSeriesMaster();
       case 195157501:  // configSource
@@ -156,6 +174,9 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
       case -1452875317:  // cacheManager
         setCacheManager((CacheManager) newValue);
         return;
+      case -2118390711:  // maximumCacheBytes
+        setMaximumCacheBytes((Long) newValue);
+        return;
       case 173967376:  // historicalTimeSeriesMaster
         setHistoricalTimeSeriesMaster((HistoricalTimeSeriesMaster) newValue);
         return;
@@ -184,6 +205,7 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
       return JodaBeanUtils.equal(getClassifier(), other.getClassifier()) &&
           JodaBeanUtils.equal(isPublishRest(), other.isPublishRest()) &&
           JodaBeanUtils.equal(getCacheManager(), other.getCacheManager()) &&
+          JodaBeanUtils.equal(getMaximumCacheBytes(), other.getMaximumCacheBytes()) &&
           JodaBeanUtils.equal(getHistoricalTimeSeriesMaster(), other.getHistoricalTimeSeriesMaster()) &&
           JodaBeanUtils.equal(getConfigSource(), other.getConfigSource()) &&
           super.equals(obj);
@@ -197,6 +219,7 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
     hash += hash * 31 + JodaBeanUtils.hashCode(getClassifier());
     hash += hash * 31 + JodaBeanUtils.hashCode(isPublishRest());
     hash += hash * 31 + JodaBeanUtils.hashCode(getCacheManager());
+    hash += hash * 31 + JodaBeanUtils.hashCode(getMaximumCacheBytes());
     hash += hash * 31 + JodaBeanUtils.hashCode(getHistoricalTimeSeriesMaster());
     hash += hash * 31 + JodaBeanUtils.hashCode(getConfigSource());
     return hash ^ super.hashCode();
@@ -278,6 +301,33 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
     return metaBean().cacheManager().createProperty(this);
   }
 
+  //-----------------------------------------------------------------------
+  /**
+   * Gets the estimated size in bytes of the time-series to cache, zero to use the cache manager instead.
+   * If set, a size-weighted cache is used and its statistics are published over JMX.
+   * @return the value of the property
+   */
+  public long getMaximumCacheBytes() {
+    return _maximumCacheBytes;
+  }
+
+  /**
+   * Sets the estimated size in bytes of the time-series to cache, zero to use the cache manager instead.
+   * If set, a size-weighted cache is used and its statistics are published over JMX.
+   * @param maximumCacheBytes  the new value of the property
+   */
+  public void setMaximumCacheBytes(long maximumCacheBytes) {
+    this._maximumCacheBytes = maximumCacheBytes;
+  }
+
+  /**
+   * Gets the the {@code maximumCacheBytes} property.
+   * @return the property, not null
+   */
+  public final Property<Long> maximumCacheBytes() {
+    return metaBean().maximumCacheBytes().createProperty(this);
+  }
+
   //-----------------------------------------------------------------------
   /**
    * Gets the underlying hts master.
@@ -355,6 +405,11 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
      */
     private final MetaProperty<CacheManager> _cacheManager = DirectMetaProperty.ofReadWrite(
         this, "cacheManager", HistoricalTimeSeriesSourceComponentFactory.class, CacheManager.class);
+    /**
+     * The meta-property for the {@code maximumCacheBytes} property.
+     */
+    private final MetaProperty<Long> _maximumCacheBytes = DirectMetaProperty.ofReadWrite(
+        this, "maximumCacheBytes", HistoricalTimeSeriesSourceComponentFactory.class, Long.TYPE);
     /**
      * The meta-property for the {@code historicalTimeSeriesMaster} property.
      */
@@ -373,6 +428,7 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
         "classifier",
         "publishRest",
         "cacheManager",
+        "maximumCacheBytes",
         "historicalTimeSeriesMaster",
         "configSource");
 
@@ -391,6 +447,8 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
           return _publishRest;
         case -1452875317:  // cacheManager
           return _cacheManager;
+        case -2118390711:  // maximumCacheBytes
+          return _maximumCacheBytes;
         case 173967376:  // historicalTimeSeriesMaster
           return _historicalTimeSeriesMaster;
         case 195157501:  // configSource
@@ -439,6 +497,14 @@ public class HistoricalTimeSeriesSourceComponentFactory extends AbstractComponen
       return _cacheManager;
     }
 
+    /**
+     * The meta-property for the {@code maximumCacheBytes} property.
+     * @return the meta-property, not null
+     */
+    public final MetaProperty<Long> maximumCacheBytes() {
+      return _maximumCacheBytes;
+    }
+
     /**
      * The meta-property for the {@code historicalTimeSeriesMaster} property.
      * @return the meta-property, not null
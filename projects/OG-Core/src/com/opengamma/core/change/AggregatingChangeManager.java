@@ -30,6 +30,20 @@ public class AggregatingChangeManager extends BasicChangeManager implements Chan
    * @param changeProviders  the change providers to aggregate, not null
    */
   public AggregatingChangeManager(List<ChangeProvider> changeProviders) {
+    this(changeProviders, 0);
+  }
+
+  /**
+   * Creates an instance that forwards events in batches.
+   * <p>
+   * Events received from the underlying managers within the window are merged,
+   * so that each changed object is reported once.
+   * 
+   * @param changeProviders  the change providers to aggregate, not null
+   * @param batchWindowMillis  the time to collect events for before forwarding them, zero to forward each event immediately
+   */
+  public AggregatingChangeManager(List<ChangeProvider> changeProviders, long batchWindowMillis) {
+    super(batchWindowMillis);
     ArgumentChecker.notNull(changeProviders, "changeProviders");
     for (ChangeProvider changeProvider : changeProviders) {
       addChangeManager(changeProvider.changeManager());
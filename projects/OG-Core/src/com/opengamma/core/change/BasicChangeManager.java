@@ -6,13 +6,29 @@
 package com.opengamma.core.change;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.time.Instant;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
 import com.opengamma.util.PublicSPI;
 
 /**
@@ -20,20 +36,107 @@ import com.opengamma.util.PublicSPI;
  * <p>
  * Events are sent when an entity is added, updated, removed or corrected.
  * <p>
+ * By default each event is passed to the listeners on the thread that reports it.
+ * If a batch window is set, events are instead collected for that period and then published
+ * together as a {@link ChangeEventBatch}, holding one event for each changed object. This reduces
+ * the work done by listeners, and the number of messages sent by subclasses, when many entities
+ * are changed at once, such as during a bulk load. A shared timer closes the batch windows, but the
+ * batches themselves are published on a shared pool, one batch at a time for each manager, so that a
+ * slow listener of one manager does not delay the others. Call {@link #flush()} when the manager is
+ * stopped to publish any events still pending.
+ * <p>
+ * A listener may be added with its own executor, in which case events are passed to it on that
+ * executor, in order, so that a slow listener does not delay the others.
+ * <p>
  * This class is mutable and thread-safe using concurrent collections.
  */
 @PublicSPI
 public class BasicChangeManager implements ChangeManager {
 
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(BasicChangeManager.class);
+
+  /**
+   * The maximum number of events published in a single batch.
+   */
+  public static final int MAX_BATCH_SIZE = 1000;
+
   /**
    * The listeners.
    */
   private final CopyOnWriteArraySet<ChangeListener> _listeners = new CopyOnWriteArraySet<ChangeListener>();
+  /**
+   * The dispatchers for listeners that have their own executor.
+   */
+  private final ConcurrentMap<ChangeListener, ListenerDispatcher> _dispatchers = new ConcurrentHashMap<ChangeListener, ListenerDispatcher>();
+  /**
+   * The batch window in milliseconds, zero to publish each event immediately.
+   */
+  private final long _batchWindowMillis;
+  /**
+   * The lock guarding the pending batch.
+   */
+  private final Object _batchLock = new Object();
+  /**
+   * The events awaiting publication, null if none.
+   */
+  private ChangeEventBatch _pendingBatch;
+  /**
+   * The publisher of batches when their window closes.
+   */
+  private final BatchPublisher _batchPublisher = new BatchPublisher();
+  /**
+   * The number of events reported.
+   */
+  private final AtomicLong _publishedEventCount = new AtomicLong();
+  /**
+   * The number of batches of events fired to the listeners.
+   */
+  private final AtomicLong _firedBatchCount = new AtomicLong();
+  /**
+   * The number of events fired to the listeners, after merging.
+   */
+  private final AtomicLong _firedEventCount = new AtomicLong();
+  /**
+   * The largest batch fired.
+   */
+  private final AtomicLong _maxBatchSize = new AtomicLong();
+  /**
+   * The total time events were held in a batch window, in nanoseconds.
+   */
+  private final AtomicLong _totalBatchDelayNanos = new AtomicLong();
+  /**
+   * The number of batch windows closed.
+   */
+  private final AtomicLong _batchWindowCount = new AtomicLong();
+  /**
+   * The number of batches delivered to individual listeners.
+   */
+  private final AtomicLong _deliveryCount = new AtomicLong();
+  /**
+   * The total time from firing to each listener returning, in nanoseconds.
+   */
+  private final AtomicLong _totalDeliveryNanos = new AtomicLong();
+  /**
+   * The longest time from firing to a listener returning, in nanoseconds.
+   */
+  private final AtomicLong _maxDeliveryNanos = new AtomicLong();
 
   /**
-   * Creates a manager.
+   * Creates a manager that publishes each event immediately.
    */
   public BasicChangeManager() {
+    this(0);
+  }
+
+  /**
+   * Creates a manager that publishes events in batches.
+   * 
+   * @param batchWindowMillis  the time to collect events for before publishing them, zero to publish each event immediately
+   */
+  public BasicChangeManager(final long batchWindowMillis) {
+    ArgumentChecker.notNegative(batchWindowMillis, "batchWindowMillis");
+    _batchWindowMillis = batchWindowMillis;
   }
 
   //-------------------------------------------------------------------------
@@ -49,6 +152,25 @@ public class BasicChangeManager implements ChangeManager {
   @Override
   public void addChangeListener(ChangeListener listener) {
     ArgumentChecker.notNull(listener, "listener");
+    _dispatchers.remove(listener);
+    _listeners.add(listener);
+  }
+
+  /**
+   * Adds a listener to the manager that is called using its own executor.
+   * <p>
+   * The listener will receive all events, in order, but on a thread of the executor rather
+   * than the thread publishing the event. This is intended for listeners that are slow to respond.
+   * <p>
+   * This method is not intended to be overridden.
+   * 
+   * @param listener  the listener to add, not null
+   * @param executor  the executor to call the listener on, not null
+   */
+  public void addChangeListener(ChangeListener listener, Executor executor) {
+    ArgumentChecker.notNull(listener, "listener");
+    ArgumentChecker.notNull(executor, "executor");
+    _dispatchers.put(listener, new ListenerDispatcher(listener, executor));
     _listeners.add(listener);
   }
 
@@ -65,6 +187,7 @@ public class BasicChangeManager implements ChangeManager {
   public void removeChangeListener(ChangeListener listener) {
     ArgumentChecker.notNull(listener, "listener");
     _listeners.remove(listener);
+    _dispatchers.remove(listener);
   }
 
   /**
@@ -98,27 +221,200 @@ public class BasicChangeManager implements ChangeManager {
   /**
    * Handles an event when an entity changes.
    * <p>
-   * This implementation calls {@link #fireEntityChanged(ChangeEvent)} directly.
-   * An overriding method may use a more advanced mechanism to handle the event.
+   * This implementation adds the event to the pending batch if there is a batch window,
+   * or otherwise calls {@link #publishEntityChanges(List)} directly.
    * 
    * @param event  the event that occurred, not null
    */
   protected void handleEntityChanged(final ChangeEvent event) {
-    fireEntityChanged(event);
+    _publishedEventCount.incrementAndGet();
+    if (_batchWindowMillis == 0) {
+      publishEntityChanges(Collections.singletonList(event));
+      return;
+    }
+    synchronized (_batchLock) {
+      if (_pendingBatch == null) {
+        _pendingBatch = new ChangeEventBatch();
+        BatchTimer.schedule(_batchPublisher, _batchWindowMillis);
+      }
+      _pendingBatch.add(event);
+    }
   }
 
   /**
-   * Fires an event to the local listeners when an entity changes.
+   * Publishes any events held in the pending batch immediately.
    * <p>
-   * This implementation loops around the stored listeners and calls them in
-   * serial on the calling thread.
+   * This is called when the batch window closes, and may be called to publish events early, for example at shutdown.
+   */
+  public void flush() {
+    final ChangeEventBatch batch;
+    synchronized (_batchLock) {
+      batch = _pendingBatch;
+      _pendingBatch = null;
+    }
+    if (batch == null || batch.isEmpty()) {
+      return;
+    }
+    _batchWindowCount.incrementAndGet();
+    _totalBatchDelayNanos.addAndGet(System.nanoTime() - batch.getStartNanos());
+    s_logger.debug("Publishing {} change events merged from {}", batch.size(), batch.getAddedCount());
+    final List<ChangeEvent> events = batch.getEvents();
+    for (int i = 0; i < events.size(); i += MAX_BATCH_SIZE) {
+      publishEntityChanges(events.subList(i, Math.min(i + MAX_BATCH_SIZE, events.size())));
+    }
+  }
+
+  /**
+   * Publishes events, either a single event or a batch with one event for each changed object.
+   * <p>
+   * This implementation calls {@link #fireEntityChanges(List)} directly.
+   * An overriding method may use a more advanced mechanism to handle the events.
+   * 
+   * @param events  the events that occurred, not null
+   */
+  protected void publishEntityChanges(final List<ChangeEvent> events) {
+    fireEntityChanges(events);
+  }
+
+  /**
+   * Fires an event to the local listeners when an entity changes.
    * 
    * @param event  the event that occurred, not null
    */
   protected void fireEntityChanged(final ChangeEvent event) {
+    fireEntityChanges(Collections.singletonList(event));
+  }
+
+  /**
+   * Fires events to the local listeners.
+   * <p>
+   * This implementation loops around the stored listeners and calls them in
+   * serial on the calling thread, except for those added with their own executor.
+   * 
+   * @param events  the events that occurred, not null
+   */
+  protected void fireEntityChanges(final List<ChangeEvent> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    _firedBatchCount.incrementAndGet();
+    _firedEventCount.addAndGet(events.size());
+    updateMax(_maxBatchSize, events.size());
+    final long firedNanos = System.nanoTime();
     for (ChangeListener listener : _listeners) {
+      final ListenerDispatcher dispatcher = _dispatchers.get(listener);
+      if (dispatcher != null) {
+        dispatcher.dispatch(events, firedNanos);
+      } else {
+        deliver(listener, events, firedNanos);
+      }
+    }
+  }
+
+  private void deliver(final ChangeListener listener, final List<ChangeEvent> events, final long firedNanos) {
+    for (ChangeEvent event : events) {
       listener.entityChanged(event);
     }
+    final long latency = System.nanoTime() - firedNanos;
+    _deliveryCount.incrementAndGet();
+    _totalDeliveryNanos.addAndGet(latency);
+    updateMax(_maxDeliveryNanos, latency);
+  }
+
+  private static void updateMax(final AtomicLong max, final long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the time events are collected for before being published.
+   * 
+   * @return the batch window in milliseconds, zero if each event is published immediately
+   */
+  public long getBatchWindowMillis() {
+    return _batchWindowMillis;
+  }
+
+  /**
+   * Gets the number of events reported to this manager for publication.
+   * 
+   * @return the number of events
+   */
+  public long getPublishedEventCount() {
+    return _publishedEventCount.get();
+  }
+
+  /**
+   * Gets the number of batches fired to the local listeners.
+   * Without a batch window, each event is a batch of one.
+   * 
+   * @return the number of batches
+   */
+  public long getFiredBatchCount() {
+    return _firedBatchCount.get();
+  }
+
+  /**
+   * Gets the number of events fired to the local listeners, after merging events for the same object.
+   * 
+   * @return the number of events
+   */
+  public long getFiredEventCount() {
+    return _firedEventCount.get();
+  }
+
+  /**
+   * Gets the mean number of events in a batch fired to the local listeners.
+   * 
+   * @return the mean batch size, zero if none fired
+   */
+  public double getMeanBatchSize() {
+    final long batches = _firedBatchCount.get();
+    return (batches > 0) ? (double) _firedEventCount.get() / batches : 0;
+  }
+
+  /**
+   * Gets the largest number of events in a batch fired to the local listeners.
+   * 
+   * @return the largest batch size
+   */
+  public long getMaxBatchSize() {
+    return _maxBatchSize.get();
+  }
+
+  /**
+   * Gets the mean time from the first event of a batch being reported to the batch being published.
+   * 
+   * @return the mean delay in milliseconds, zero if no batches published
+   */
+  public double getMeanBatchDelayMillis() {
+    final long windows = _batchWindowCount.get();
+    return (windows > 0) ? _totalBatchDelayNanos.get() / 1000000d / windows : 0;
+  }
+
+  /**
+   * Gets the mean time from events being fired to a listener returning from them,
+   * including any time spent waiting for the listener's executor.
+   * <p>
+   * The latency from an event being reported to a listener receiving it is this plus the batch delay.
+   * 
+   * @return the mean latency in milliseconds, zero if no events delivered
+   */
+  public double getMeanDeliveryLatencyMillis() {
+    final long deliveries = _deliveryCount.get();
+    return (deliveries > 0) ? _totalDeliveryNanos.get() / 1000000d / deliveries : 0;
+  }
+
+  /**
+   * Gets the longest time from events being fired to a listener returning from them.
+   * 
+   * @return the longest latency in milliseconds
+   */
+  public double getMaxDeliveryLatencyMillis() {
+    return _maxDeliveryNanos.get() / 1000000d;
   }
 
   //-------------------------------------------------------------------------
@@ -132,4 +428,110 @@ public class BasicChangeManager implements ChangeManager {
     return getClass().getSimpleName();
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * Passes events to a listener on its own executor, in order.
+   */
+  private final class ListenerDispatcher implements Runnable {
+    private final ChangeListener _listener;
+    private final Executor _executor;
+    private final Queue<Delivery> _queue = new ConcurrentLinkedQueue<Delivery>();
+    private final AtomicBoolean _running = new AtomicBoolean();
+
+    ListenerDispatcher(final ChangeListener listener, final Executor executor) {
+      _listener = listener;
+      _executor = executor;
+    }
+
+    void dispatch(final List<ChangeEvent> events, final long firedNanos) {
+      _queue.add(new Delivery(new ArrayList<ChangeEvent>(events), firedNanos));
+      if (_running.compareAndSet(false, true)) {
+        _executor.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      do {
+        Delivery entry = _queue.poll();
+        while (entry != null) {
+          try {
+            deliver(_listener, entry._events, entry._firedNanos);
+          } catch (RuntimeException ex) {
+            s_logger.error("Change listener " + _listener + " failed", ex);
+          }
+          entry = _queue.poll();
+        }
+        _running.set(false);
+      } while (!_queue.isEmpty() && _running.compareAndSet(false, true));
+    }
+  }
+
+  /**
+   * Publishes the pending batch of a manager on the shared publisher pool.
+   * <p>
+   * At most one publication per manager runs at a time, so batches are delivered in order.
+   */
+  private final class BatchPublisher implements Runnable {
+    private final AtomicBoolean _requested = new AtomicBoolean();
+    private final AtomicBoolean _running = new AtomicBoolean();
+
+    void request() {
+      _requested.set(true);
+      if (_running.compareAndSet(false, true)) {
+        BatchTimer.publish(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      do {
+        while (_requested.getAndSet(false)) {
+          try {
+            flush();
+          } catch (RuntimeException ex) {
+            s_logger.error("Unable to publish batch of change events from " + BasicChangeManager.this, ex);
+          }
+        }
+        _running.set(false);
+      } while (_requested.get() && _running.compareAndSet(false, true));
+    }
+  }
+
+  /**
+   * Events awaiting delivery to a listener.
+   */
+  private static final class Delivery {
+    private final List<ChangeEvent> _events;
+    private final long _firedNanos;
+
+    Delivery(final List<ChangeEvent> events, final long firedNanos) {
+      _events = events;
+      _firedNanos = firedNanos;
+    }
+  }
+
+  /**
+   * The shared timer that closes batch windows, and the shared pool that publishes the batches.
+   * <p>
+   * The timer thread only hands each batch over to the pool, so it is never held up by a listener.
+   */
+  private static final class BatchTimer {
+    private static final ScheduledExecutorService s_timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadPoolFactory("ChangeManager-batch", true));
+    private static final ExecutorService s_publishers = Executors.newCachedThreadPool(new NamedThreadPoolFactory("ChangeManager-publish", true));
+
+    static void schedule(final BatchPublisher publisher, final long delayMillis) {
+      s_timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          publisher.request();
+        }
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static void publish(final BatchPublisher publisher) {
+      s_publishers.execute(publisher);
+    }
+  }
+
 }
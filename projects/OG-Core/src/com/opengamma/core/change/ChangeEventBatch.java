@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.change;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A batch of change events, holding at most one event for each object.
+ * <p>
+ * When a second event is added for an object already in the batch, the two are merged into a single
+ * event running from the state before the first to the state after the second. An object added and
+ * then updated within the batch is therefore reported as added, with the latest version.
+ * Events are returned in the order their objects were first changed.
+ * <p>
+ * This class is mutable and not thread-safe.
+ */
+public final class ChangeEventBatch {
+
+  /**
+   * The events keyed by object identifier.
+   */
+  private final Map<ObjectId, ChangeEvent> _events = new LinkedHashMap<ObjectId, ChangeEvent>();
+  /**
+   * The number of events added, including those merged.
+   */
+  private int _addedCount;
+  /**
+   * The time the first event was added, from {@link System#nanoTime()}.
+   */
+  private long _startNanos;
+
+  /**
+   * Creates an empty batch.
+   */
+  public ChangeEventBatch() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds an event to the batch, merging it with any event already held for the same object.
+   *
+   * @param event  the event to add, not null
+   */
+  public void add(final ChangeEvent event) {
+    ArgumentChecker.notNull(event, "event");
+    if (_addedCount++ == 0) {
+      _startNanos = System.nanoTime();
+    }
+    final ObjectId objectId = (event.getAfterId() != null ? event.getAfterId() : event.getBeforeId()).getObjectId();
+    final ChangeEvent previous = _events.get(objectId);
+    _events.put(objectId, (previous != null) ? merge(previous, event) : event);
+  }
+
+  /**
+   * Merges two consecutive events for the same object.
+   *
+   * @param first  the earlier event, not null
+   * @param second  the later event, not null
+   * @return the merged event, not null
+   */
+  static ChangeEvent merge(final ChangeEvent first, final ChangeEvent second) {
+    if (first.getType() == ChangeType.ADDED) {
+      if (second.getType() == ChangeType.REMOVED) {
+        return second;
+      }
+      return new ChangeEvent(ChangeType.ADDED, null, second.getAfterId(), second.getVersionInstant());
+    }
+    final UniqueId beforeId = (first.getBeforeId() != null) ? first.getBeforeId() : second.getBeforeId();
+    return new ChangeEvent(second.getType(), beforeId, second.getAfterId(), second.getVersionInstant());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Checks if the batch is empty.
+   *
+   * @return true if no events have been added
+   */
+  public boolean isEmpty() {
+    return _events.isEmpty();
+  }
+
+  /**
+   * Gets the number of events in the batch, after merging.
+   *
+   * @return the number of events
+   */
+  public int size() {
+    return _events.size();
+  }
+
+  /**
+   * Gets the number of events added to the batch, before merging.
+   *
+   * @return the number of events added
+   */
+  public int getAddedCount() {
+    return _addedCount;
+  }
+
+  /**
+   * Gets the time the first event was added.
+   *
+   * @return the time from {@link System#nanoTime()}, undefined if the batch is empty
+   */
+  public long getStartNanos() {
+    return _startNanos;
+  }
+
+  /**
+   * Gets the events in the batch.
+   *
+   * @return a copy of the events, not null
+   */
+  public List<ChangeEvent> getEvents() {
+    return new ArrayList<ChangeEvent>(_events.values());
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "ChangeEventBatch[" + _events.size() + " events]";
+  }
+
+}
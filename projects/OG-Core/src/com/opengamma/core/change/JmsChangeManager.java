@@ -5,6 +5,9 @@
  */
 package com.opengamma.core.change;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.jms.Connection;
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -14,9 +17,12 @@ import javax.jms.Session;
 import javax.jms.Topic;
 
 import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
 import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.FudgeMsgEnvelope;
+import org.fudgemsg.MutableFudgeMsg;
 import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.Lifecycle;
@@ -36,6 +42,8 @@ import com.opengamma.util.jms.JmsConnector;
  * <p>
  * Events are sent when an entity is added, updated, removed or corrected.
  * <p>
+ * If a batch window is set, the events collected in each window are sent as a single JMS message.
+ * <p>
  * This class is mutable and thread-safe using concurrent collections.
  */
 @PublicSPI
@@ -43,6 +51,10 @@ public class JmsChangeManager extends BasicChangeManager implements MessageListe
 
   /** Logger. */
   private static final Logger s_logger = LoggerFactory.getLogger(JmsChangeManager.class);
+  /**
+   * The field name holding each event of a batch message.
+   */
+  private static final String EVENT_FIELD_NAME = "changeEvent";
 
   /**
    * The JMS connector, not null
@@ -78,6 +90,18 @@ public class JmsChangeManager extends BasicChangeManager implements MessageListe
    * @param topicName  the topic name to use, not null
    */
   public JmsChangeManager(JmsConnector connector, String topicName) {
+    this(connector, topicName, 0);
+  }
+
+  /**
+   * Creates a change manager that sends events in batches.
+   * 
+   * @param connector  the JMS connector, not null
+   * @param topicName  the topic name to use, not null
+   * @param batchWindowMillis  the time to collect events for before sending them, zero to send each event immediately
+   */
+  public JmsChangeManager(JmsConnector connector, String topicName, long batchWindowMillis) {
+    super(batchWindowMillis);
     ArgumentChecker.notNull(connector, "connector");
     _jmsConnector = connector.withTopicName(topicName);
     ByteArrayFudgeMessageReceiver bafmr = new ByteArrayFudgeMessageReceiver(this, OpenGammaFudgeContext.getInstance());
@@ -104,6 +128,8 @@ public class JmsChangeManager extends BasicChangeManager implements MessageListe
   @Override
   public void stop() {
     final String topicName = _jmsConnector.getTopicName();
+    // Publish any batched events before the connection goes
+    flush();
     try {
       _connection.close();
       _connection = null;
@@ -130,18 +156,29 @@ public class JmsChangeManager extends BasicChangeManager implements MessageListe
 
   //-------------------------------------------------------------------------
   /**
-   * Handles an event when an entity changes.
+   * Publishes events when entities change.
    * <p>
-   * This implementation sends the event by JMS to be received by all change
-   * managers, including this one.
+   * This implementation sends the events by JMS to be received by all change
+   * managers, including this one. A single event is sent as before, while a
+   * batch is sent as one message containing each event.
    * 
-   * @param event  the event that occurred, not null
+   * @param events  the events that occurred, not null
    */
   @Override
-  protected void handleEntityChanged(final ChangeEvent event) {
-    final FudgeMsgEnvelope msg = OpenGammaFudgeContext.getInstance().toFudgeMsg(event);
+  protected void publishEntityChanges(final List<ChangeEvent> events) {
+    final FudgeMsg msg;
+    if (events.size() == 1) {
+      msg = OpenGammaFudgeContext.getInstance().toFudgeMsg(events.get(0)).getMessage();
+    } else {
+      final FudgeSerializer serializer = new FudgeSerializer(OpenGammaFudgeContext.getInstance());
+      final MutableFudgeMsg batch = serializer.newMessage();
+      for (ChangeEvent event : events) {
+        serializer.addToMessage(batch, EVENT_FIELD_NAME, null, event);
+      }
+      msg = batch;
+    }
     s_logger.debug("Sending change message {}", msg);
-    final byte[] fudgeMsg = OpenGammaFudgeContext.getInstance().toByteArray(msg.getMessage());
+    final byte[] fudgeMsg = OpenGammaFudgeContext.getInstance().toByteArray(msg);
     final JmsByteArrayMessageSender messageSender = new JmsByteArrayMessageSender(getJmsConnector().getTopicName(), getJmsConnector().getJmsTemplateTopic());
     messageSender.send(fudgeMsg);
   }
@@ -156,8 +193,16 @@ public class JmsChangeManager extends BasicChangeManager implements MessageListe
     final FudgeMsg msg = msgEnvelope.getMessage();
     s_logger.debug("Received change message {}", msg);
     final FudgeDeserializer deserializer = new FudgeDeserializer(fudgeContext);
-    final ChangeEvent event = deserializer.fudgeMsgToObject(ChangeEvent.class, msg);
-    fireEntityChanged(event);
+    if (msg.hasField(EVENT_FIELD_NAME)) {
+      final List<ChangeEvent> events = new ArrayList<ChangeEvent>();
+      for (FudgeField field : msg.getAllByName(EVENT_FIELD_NAME)) {
+        events.add(deserializer.fieldValueToObject(ChangeEvent.class, field));
+      }
+      fireEntityChanges(events);
+    } else {
+      final ChangeEvent event = deserializer.fudgeMsgToObject(ChangeEvent.class, msg);
+      fireEntityChanged(event);
+    }
   }
 
   //-------------------------------------------------------------------------
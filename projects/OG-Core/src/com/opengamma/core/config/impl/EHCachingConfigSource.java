@@ -5,12 +5,11 @@
  */
 package com.opengamma.core.config.impl;
 
-import static com.opengamma.util.ehcache.EHCacheUtils.get;
-import static com.opengamma.util.ehcache.EHCacheUtils.putException;
 import static com.opengamma.util.ehcache.EHCacheUtils.putValue;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.Callable;
 
 import javax.time.Instant;
 
@@ -18,21 +17,27 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.config.ConfigSource;
 import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.cache.SizeEstimators;
+import com.opengamma.util.cache.WeightedCache;
 import com.opengamma.util.ehcache.EHCacheUtils;
 
 /**
  * An EHCache based {@link ConfigSource}. This is better than having no cache but is not very efficient. Also does not listen for changes to the underlying data.
+ * <p>
+ * A {@link WeightedCache} may be used instead of EHCache, in which case concurrent requests for the same missing item share one call to the underlying.
  */
 public class EHCachingConfigSource implements ConfigSource {
 
   private static final String CACHE_NAME = "config";
   private final ConfigSource _underlying;
   private final Cache _cache;
+  private final WeightedCache<Object, Object> _weightedCache;
 
   public EHCachingConfigSource(final ConfigSource underlying, final CacheManager cacheManager) {
     ArgumentChecker.notNull(underlying, "underlying");
@@ -40,56 +45,90 @@ public class EHCachingConfigSource implements ConfigSource {
     _underlying = underlying;
     EHCacheUtils.addCache(cacheManager, CACHE_NAME);
     _cache = EHCacheUtils.getCacheFromManager(cacheManager, CACHE_NAME);
+    _weightedCache = null;
+  }
+
+  /**
+   * Creates an instance using a weighted cache.
+   * 
+   * @param underlying  the underlying source, not null
+   * @param maximumBytes  the estimated size in bytes of the items to hold, greater than zero
+   */
+  public EHCachingConfigSource(final ConfigSource underlying, final long maximumBytes) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+    _cache = null;
+    _weightedCache = new WeightedCache<Object, Object>(CACHE_NAME, maximumBytes, SizeEstimators.defaultEstimator());
   }
 
   protected ConfigSource getUnderlying() {
     return _underlying;
   }
 
+  /**
+   * Gets the EHCache.
+   * 
+   * @return the cache, null if using a weighted cache
+   */
   protected Cache getCache() {
     return _cache;
   }
 
-  @Override
-  public <T> T getConfig(Class<T> clazz, UniqueId uniqueId) {
-    final Object key = Arrays.asList(clazz, uniqueId);
+  /**
+   * Gets the weighted cache, for monitoring.
+   * 
+   * @return the cache, null if using EHCache
+   */
+  public WeightedCache<Object, Object> getWeightedCache() {
+    return _weightedCache;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T get(final Object key, final Callable<T> loader) {
+    if (_weightedCache != null) {
+      return (T) _weightedCache.get(key, loader);
+    }
     final Element e = getCache().get(key);
     if (e != null) {
       return EHCacheUtils.<T>get(e);
     }
     try {
-      return putValue(key, getUnderlying().getConfig(clazz, uniqueId), getCache());
+      return putValue(key, loader.call(), getCache());
     } catch (RuntimeException ex) {
       return EHCacheUtils.<T>putException(key, ex, getCache());
+    } catch (Exception ex) {
+      throw new OpenGammaRuntimeException("Unable to load " + key, ex);
     }
   }
 
   @Override
-  public <T> T getConfig(Class<T> clazz, ObjectId objectId, VersionCorrection versionCorrection) {
-    final Object key = Arrays.asList(clazz, objectId, versionCorrection);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return EHCacheUtils.<T>get(e);
-    }
-    try {
-      return putValue(key, getUnderlying().getConfig(clazz, objectId, versionCorrection), getCache());
-    } catch (RuntimeException ex) {
-      return EHCacheUtils.<T>putException(key, ex, getCache());
-    }
+  public <T> T getConfig(final Class<T> clazz, final UniqueId uniqueId) {
+    return get(Arrays.asList(clazz, uniqueId), new Callable<T>() {
+      @Override
+      public T call() {
+        return getUnderlying().getConfig(clazz, uniqueId);
+      }
+    });
   }
 
   @Override
-  public <T> Collection<? extends T> getConfigs(Class<T> clazz, String configName, VersionCorrection versionCorrection) {
-    final Object key = Arrays.asList(clazz, configName, versionCorrection);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return get(e);
-    }
-    try {
-      return putValue(key, getUnderlying().getConfigs(clazz, configName, versionCorrection), getCache());
-    } catch (RuntimeException ex) {
-      return putException(key, ex, getCache());
-    }
+  public <T> T getConfig(final Class<T> clazz, final ObjectId objectId, final VersionCorrection versionCorrection) {
+    return get(Arrays.asList(clazz, objectId, versionCorrection), new Callable<T>() {
+      @Override
+      public T call() {
+        return getUnderlying().getConfig(clazz, objectId, versionCorrection);
+      }
+    });
+  }
+
+  @Override
+  public <T> Collection<? extends T> getConfigs(final Class<T> clazz, final String configName, final VersionCorrection versionCorrection) {
+    return get(Arrays.asList(clazz, configName, versionCorrection), new Callable<Collection<? extends T>>() {
+      @Override
+      public Collection<? extends T> call() {
+        return getUnderlying().getConfigs(clazz, configName, versionCorrection);
+      }
+    });
   }
 
   @Override
@@ -99,17 +138,13 @@ public class EHCachingConfigSource implements ConfigSource {
   }
 
   @Override
-  public <T> T getByName(Class<T> clazz, String name, Instant versionAsOf) {
-    final Object key = Arrays.asList(clazz, name, versionAsOf);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return EHCacheUtils.<T>get(e);
-    }
-    try {
-      return putValue(key, getUnderlying().getByName(clazz, name, versionAsOf), getCache());
-    } catch (RuntimeException ex) {
-      return EHCacheUtils.<T>putException(key, ex, getCache());
-    }
+  public <T> T getByName(final Class<T> clazz, final String name, final Instant versionAsOf) {
+    return get(Arrays.asList(clazz, name, versionAsOf), new Callable<T>() {
+      @Override
+      public T call() {
+        return getUnderlying().getByName(clazz, name, versionAsOf);
+      }
+    });
   }
 
 }
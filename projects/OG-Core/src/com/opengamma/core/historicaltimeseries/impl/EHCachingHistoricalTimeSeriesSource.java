@@ -10,6 +10,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
 
 import javax.time.calendar.Clock;
 import javax.time.calendar.LocalDate;
@@ -22,6 +26,7 @@ import org.apache.commons.lang.ObjectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.change.BasicChangeManager;
 import com.opengamma.core.change.ChangeEvent;
 import com.opengamma.core.change.ChangeListener;
@@ -32,6 +37,9 @@ import com.opengamma.id.ExternalIdBundle;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.OpenGammaClock;
+import com.opengamma.util.cache.SizeEstimator;
+import com.opengamma.util.cache.SizeEstimators;
+import com.opengamma.util.cache.WeightedCache;
 import com.opengamma.util.ehcache.EHCacheUtils;
 import com.opengamma.util.timeseries.localdate.ListLocalDateDoubleTimeSeries;
 import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
@@ -41,7 +49,8 @@ import com.opengamma.util.tuple.Pair;
 /**
  * A cache decorating a {@code HistoricalTimeSeriesSource}.
  * <p>
- * The cache is implemented using {@code EHCache}.
+ * The cache is implemented using {@code EHCache}, or using a {@link WeightedCache} which bounds the
+ * cache by the number of points held rather than by the number of series.
  */
 public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeriesSource {
 
@@ -105,13 +114,21 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
    */
   private final HistoricalTimeSeriesSource _underlying;
   /**
-   * The cache.
+   * The cache, null if using a weighted cache.
    */
   private final Cache _dataCache;
   /**
-   * The identifier bundle cache
+   * The identifier bundle cache, null if using a weighted cache.
    */
   private final Cache _identifierBundleCache;
+  /**
+   * The weighted cache, null if using EHCache.
+   */
+  private final WeightedCache<Object, HistoricalTimeSeries> _weightedDataCache;
+  /**
+   * The weighted identifier bundle cache, null if using EHCache.
+   */
+  private final WeightedCache<UniqueId, ExternalIdBundle> _weightedIdentifierBundleCache;
   /**
    * The clock.
    */
@@ -131,6 +148,40 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
     _dataCache = EHCacheUtils.getCacheFromManager(cacheManager, DATA_CACHE_NAME);
     EHCacheUtils.addCache(cacheManager, ID_BUNDLE_CACHE_NAME);
     _identifierBundleCache = EHCacheUtils.getCacheFromManager(cacheManager, ID_BUNDLE_CACHE_NAME);
+    _weightedDataCache = null;
+    _weightedIdentifierBundleCache = null;
+
+    _changeListener = createChangeListener();
+    _underlying.changeManager().addChangeListener(_changeListener);
+    _changeManager = new BasicChangeManager();
+  }
+
+  /**
+   * Creates an instance using weighted caches.
+   * <p>
+   * Time-series are weighed by their number of points, so that a long series displaces a
+   * proportionate number of short ones.
+   * 
+   * @param underlying  the underlying source, not null
+   * @param maximumDataBytes  the estimated size in bytes of the time-series to hold, greater than zero
+   * @param maximumIdentifierBytes  the estimated size in bytes of the identifier bundles to hold, greater than zero
+   */
+  public EHCachingHistoricalTimeSeriesSource(HistoricalTimeSeriesSource underlying, long maximumDataBytes, long maximumIdentifierBytes) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+    _dataCache = null;
+    _identifierBundleCache = null;
+    _weightedDataCache = new WeightedCache<Object, HistoricalTimeSeries>(DATA_CACHE_NAME, maximumDataBytes, new SizeEstimator<HistoricalTimeSeries>() {
+      @Override
+      public int estimateSize(HistoricalTimeSeries hts) {
+        if (hts == MISS || hts.getTimeSeries() == null) {
+          return 16;
+        }
+        return SizeEstimators.estimateObjectSize(hts.getTimeSeries());
+      }
+    });
+    _weightedIdentifierBundleCache = new WeightedCache<UniqueId, ExternalIdBundle>(ID_BUNDLE_CACHE_NAME, maximumIdentifierBytes,
+        SizeEstimators.<ExternalIdBundle>constant(SizeEstimators.DEFAULT_OBJECT_SIZE));
 
     _changeListener = createChangeListener();
     _underlying.changeManager().addChangeListener(_changeListener);
@@ -160,11 +211,18 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
   private void cleanCaches(UniqueId id) {
     // Only care where the unversioned ID has been cached since it now represents something else
     UniqueId latestId = id.toLatest();
-    _dataCache.remove(latestId);
-    _identifierBundleCache.remove(latestId);
-    // Destroy all version/correction cached values for the object
-    _dataCache.remove(id.getObjectId());
-    _identifierBundleCache.remove(id.getObjectId());
+    if (_weightedDataCache != null) {
+      _weightedDataCache.remove(latestId);
+      _weightedIdentifierBundleCache.remove(latestId);
+      // Destroy all version/correction cached values for the object
+      _weightedDataCache.remove(id.getObjectId());
+    } else {
+      _dataCache.remove(latestId);
+      _identifierBundleCache.remove(latestId);
+      // Destroy all version/correction cached values for the object
+      _dataCache.remove(id.getObjectId());
+      _identifierBundleCache.remove(id.getObjectId());
+    }
   }
 
   //-------------------------------------------------------------------------
@@ -180,19 +238,58 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
   /**
    * Gets the cache manager.
    * 
-   * @return the cache manager, not null
+   * @return the cache manager, null if using weighted caches
    */
   public CacheManager getDataCacheManager() {
-    return _dataCache.getCacheManager();
+    return (_dataCache != null) ? _dataCache.getCacheManager() : null;
   }
   
   /**
    * Gets the id cache manager.
    * 
-   * @return the id cache manager, not null
+   * @return the id cache manager, null if using weighted caches
    */
   public CacheManager getIdentifierBundleCacheManager() {
-    return _identifierBundleCache.getCacheManager();
+    return (_identifierBundleCache != null) ? _identifierBundleCache.getCacheManager() : null;
+  }
+
+  /**
+   * Gets the weighted time-series cache, for monitoring.
+   * 
+   * @return the cache, null if using EHCache
+   */
+  public WeightedCache<Object, HistoricalTimeSeries> getWeightedDataCache() {
+    return _weightedDataCache;
+  }
+
+  /**
+   * Gets the weighted identifier bundle cache, for monitoring.
+   * 
+   * @return the cache, null if using EHCache
+   */
+  public WeightedCache<UniqueId, ExternalIdBundle> getWeightedIdentifierBundleCache() {
+    return _weightedIdentifierBundleCache;
+  }
+
+  /**
+   * Publishes the statistics of the weighted caches over JMX.
+   * <p>
+   * Nothing is published when using EHCache, whose statistics are published with its cache manager.
+   * A failure to register is logged rather than thrown, as the cache works without it.
+   * 
+   * @param server  the server to register with, not null
+   */
+  public void registerMBeans(MBeanServer server) {
+    ArgumentChecker.notNull(server, "server");
+    if (_weightedDataCache == null) {
+      return;
+    }
+    try {
+      _weightedDataCache.registerMBean(server);
+      _weightedIdentifierBundleCache.registerMBean(server);
+    } catch (JMException ex) {
+      s_logger.warn("Couldn't register cache statistics with JMX", ex);
+    }
   }
 
   /**
@@ -206,24 +303,14 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
 
   //-------------------------------------------------------------------------
   @Override
-  public HistoricalTimeSeries getHistoricalTimeSeries(UniqueId uniqueId) {
+  public HistoricalTimeSeries getHistoricalTimeSeries(final UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
-    HistoricalTimeSeries hts = getFromDataCache(uniqueId);
-    if (hts != null) {
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      hts = _underlying.getHistoricalTimeSeries(uniqueId);
-      if (hts != null) {
-        s_logger.debug("Caching time-series {}", hts);
-        _dataCache.put(new Element(uniqueId, hts));
-      } else {
-        s_logger.debug("Caching miss on {}", uniqueId);
-        _dataCache.put(new Element(uniqueId, MISS));
+    return getOrLoad(uniqueId, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
+        return loaded(uniqueId, _underlying.getHistoricalTimeSeries(uniqueId));
       }
-    }
-    return hts;
+    });
   }
 
   @Override
@@ -259,37 +346,28 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
   }
 
   private HistoricalTimeSeries doGetHistoricalTimeSeries(
-      UniqueId uniqueId, LocalDate start, boolean includeStart, LocalDate end, boolean includeEnd, Integer maxPoints) {
-    SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
-    ObjectsPair<UniqueId, SubSeriesKey> key = Pair.of(uniqueId, subseriesKey);
-    Element element = _dataCache.get(key);
-    HistoricalTimeSeries hts;
-    if (element != null) {
-      hts = (HistoricalTimeSeries) element.getObjectValue();
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      // If we have the full series cached computing a sub-series could be faster
-      Element fullHtsElement = _dataCache.get(uniqueId);
-      if (fullHtsElement != null) {
-        hts = getSubSeries((HistoricalTimeSeries) fullHtsElement.getObjectValue(), start, includeStart, end, includeEnd, maxPoints);
-      } else {
+      final UniqueId uniqueId, final LocalDate start, final boolean includeStart, final LocalDate end, final boolean includeEnd, final Integer maxPoints) {
+    final SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
+    final ObjectsPair<UniqueId, SubSeriesKey> key = Pair.of(uniqueId, subseriesKey);
+    HistoricalTimeSeries hts = getFromDataCache(key);
+    if (hts != null) {
+      return MISS.equals(hts) ? null : hts;
+    }
+    // If we have the full series cached computing a sub-series could be faster
+    final HistoricalTimeSeries fullHts = getFromDataCache(uniqueId);
+    if (fullHts != null) {
+      return MISS.equals(fullHts) ? null : getSubSeries(fullHts, start, includeStart, end, includeEnd, maxPoints);
+    }
+    return getOrLoad(key, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
         if (maxPoints == null) {
-          hts = _underlying.getHistoricalTimeSeries(uniqueId, start, includeStart, end, includeEnd);
+          return loaded(key, _underlying.getHistoricalTimeSeries(uniqueId, start, includeStart, end, includeEnd));
         } else {
-          hts = _underlying.getHistoricalTimeSeries(uniqueId, start, includeStart, end, includeEnd, maxPoints);
-        }
-        if (hts != null) {
-          s_logger.debug("Caching sub time-series {}", hts);
-          _dataCache.put(new Element(key, hts));
-        } else {
-          s_logger.debug("Caching miss {}", key);
-          _dataCache.put(new Element(key, MISS));
+          return loaded(key, _underlying.getHistoricalTimeSeries(uniqueId, start, includeStart, end, includeEnd, maxPoints));
         }
       }
-    }
-    return hts;
+    });
   }
 
   //-------------------------------------------------------------------------
@@ -302,26 +380,19 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
 
   @Override
   public HistoricalTimeSeries getHistoricalTimeSeries(
-      ExternalIdBundle identifiers, LocalDate identifierValidityDate, String dataSource, String dataProvider, String dataField) {
+      final ExternalIdBundle identifiers, final LocalDate identifierValidityDate, final String dataSource, final String dataProvider, final String dataField) {
     ArgumentChecker.notNull(identifiers, "identifiers");
-    HistoricalTimeSeriesKey key = new HistoricalTimeSeriesKey(null, identifierValidityDate, identifiers, dataSource, dataProvider, dataField);
-    HistoricalTimeSeries hts = getFromDataCache(key);
-    if (hts != null) {
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      hts = _underlying.getHistoricalTimeSeries(identifiers, identifierValidityDate, dataSource, dataProvider, dataField);
-      if (hts != null) {
-        s_logger.debug("Caching time-series {}", hts);
-        _dataCache.put(new Element(key, hts));
-        _dataCache.put(new Element(hts.getUniqueId(), hts));
-      } else {
-        s_logger.debug("Caching miss on {}", key);
-        _dataCache.put(new Element(key, MISS));
+    final HistoricalTimeSeriesKey key = new HistoricalTimeSeriesKey(null, identifierValidityDate, identifiers, dataSource, dataProvider, dataField);
+    return getOrLoad(key, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
+        final HistoricalTimeSeries hts = _underlying.getHistoricalTimeSeries(identifiers, identifierValidityDate, dataSource, dataProvider, dataField);
+        if (hts != null) {
+          putInDataCache(hts.getUniqueId(), hts);
+        }
+        return loaded(key, hts);
       }
-    }
-    return hts;
+    });
   }
 
   @Override
@@ -392,41 +463,32 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
   }
 
   private HistoricalTimeSeries doGetHistoricalTimeSeries(
-      ExternalIdBundle identifiers, LocalDate currentDate, String dataSource, String dataProvider, String dataField,
-      LocalDate start, boolean includeStart, LocalDate end, boolean includeEnd, Integer maxPoints) {
-    HistoricalTimeSeriesKey seriesKey = new HistoricalTimeSeriesKey(null, currentDate, identifiers, dataSource, dataProvider, dataField);
-    SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
-    ObjectsPair<HistoricalTimeSeriesKey, SubSeriesKey> key = Pair.of(seriesKey, subseriesKey);
-    Element element = _dataCache.get(key);
-    HistoricalTimeSeries hts;
-    if (element != null) {
-      hts = (HistoricalTimeSeries) element.getObjectValue();
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      // If we have the full series cached computing a sub-series could be faster
-      Element fullHtsElement = _dataCache.get(seriesKey);
-      if (fullHtsElement != null) {
-        hts = getSubSeries((HistoricalTimeSeries) fullHtsElement.getObjectValue(), start, includeStart, end, includeEnd, maxPoints);
-      } else {
+      final ExternalIdBundle identifiers, final LocalDate currentDate, final String dataSource, final String dataProvider, final String dataField,
+      final LocalDate start, final boolean includeStart, final LocalDate end, final boolean includeEnd, final Integer maxPoints) {
+    final HistoricalTimeSeriesKey seriesKey = new HistoricalTimeSeriesKey(null, currentDate, identifiers, dataSource, dataProvider, dataField);
+    final SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
+    final ObjectsPair<HistoricalTimeSeriesKey, SubSeriesKey> key = Pair.of(seriesKey, subseriesKey);
+    final HistoricalTimeSeries hts = getFromDataCache(key);
+    if (hts != null) {
+      return MISS.equals(hts) ? null : hts;
+    }
+    // If we have the full series cached computing a sub-series could be faster
+    final HistoricalTimeSeries fullHts = getFromDataCache(seriesKey);
+    if (fullHts != null) {
+      return MISS.equals(fullHts) ? null : getSubSeries(fullHts, start, includeStart, end, includeEnd, maxPoints);
+    }
+    return getOrLoad(key, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
         if (maxPoints == null) {
-          hts = _underlying.getHistoricalTimeSeries(identifiers, currentDate, dataSource, dataProvider, dataField, 
-              start, includeStart, end, includeEnd);
+          return loaded(key, _underlying.getHistoricalTimeSeries(identifiers, currentDate, dataSource, dataProvider, dataField,
+              start, includeStart, end, includeEnd));
         } else {
-          hts = _underlying.getHistoricalTimeSeries(identifiers, currentDate, dataSource, dataProvider, dataField, 
-              start, includeStart, end, includeEnd, maxPoints);
-        }
-        if (hts != null) {
-          s_logger.debug("Caching sub time-series {}", hts);
-          _dataCache.put(new Element(key, hts));
-        } else {
-          s_logger.debug("Caching miss {}", key);
-          _dataCache.put(new Element(key, MISS));
+          return loaded(key, _underlying.getHistoricalTimeSeries(identifiers, currentDate, dataSource, dataProvider, dataField,
+              start, includeStart, end, includeEnd, maxPoints));
         }
       }
-    }
-    return hts;
+    });
   }
   
   //-------------------------------------------------------------------------
@@ -438,27 +500,20 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
 
   @Override
   public HistoricalTimeSeries getHistoricalTimeSeries(
-      String dataField, ExternalIdBundle identifierBundle, LocalDate identifierValidityDate, String resolutionKey) {
+      final String dataField, final ExternalIdBundle identifierBundle, final LocalDate identifierValidityDate, final String resolutionKey) {
     ArgumentChecker.notNull(dataField, "dataField");
     ArgumentChecker.notEmpty(identifierBundle, "identifierBundle");
-    HistoricalTimeSeriesKey key = new HistoricalTimeSeriesKey(resolutionKey, identifierValidityDate, identifierBundle, null, null, dataField);
-    HistoricalTimeSeries hts = getFromDataCache(key);
-    if (hts != null) {
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      hts = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey);
-      if (hts != null) {
-        s_logger.debug("Caching time-series {}", hts);
-        _dataCache.put(new Element(key, hts));
-        _dataCache.put(new Element(hts.getUniqueId(), hts));
-      } else {
-        s_logger.debug("Caching miss on {}", key);
-        _dataCache.put(new Element(key, MISS));
+    final HistoricalTimeSeriesKey key = new HistoricalTimeSeriesKey(resolutionKey, identifierValidityDate, identifierBundle, null, null, dataField);
+    return getOrLoad(key, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
+        final HistoricalTimeSeries hts = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey);
+        if (hts != null) {
+          putInDataCache(hts.getUniqueId(), hts);
+        }
+        return loaded(key, hts);
       }
-    }
-    return hts;
+    });
   }
 
   @Override
@@ -588,41 +643,36 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
     }
   }
 
-  private HistoricalTimeSeries doGetHistoricalTimeSeries(String dataField, ExternalIdBundle identifierBundle,
-        LocalDate identifierValidityDate, String resolutionKey,
-        LocalDate start, boolean includeStart, LocalDate end, boolean includeEnd, Integer maxPoints) {
-    HistoricalTimeSeriesKey seriesKey = new HistoricalTimeSeriesKey(resolutionKey, identifierValidityDate, identifierBundle, null, null, dataField);
-    SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
-    ObjectsPair<HistoricalTimeSeriesKey, SubSeriesKey> key = Pair.of(seriesKey, subseriesKey);
-    Element element = _dataCache.get(key);
-    HistoricalTimeSeries hts;
-    if (element != null) {
-      hts = (HistoricalTimeSeries) element.getObjectValue();
-      if (MISS.equals(hts)) {
-        hts = null;
-      }
-    } else {
-      // If we have the full series cached computing a sub-series could be faster
-      Element fullHtsElement = _dataCache.get(seriesKey);
-      if (fullHtsElement != null) {
-        hts = getSubSeries((HistoricalTimeSeries) fullHtsElement.getObjectValue(), start, includeStart, end, includeEnd, maxPoints);
-      } else {
+  private HistoricalTimeSeries doGetHistoricalTimeSeries(final String dataField, final ExternalIdBundle identifierBundle,
+        final LocalDate identifierValidityDate, final String resolutionKey,
+        final LocalDate start, final boolean includeStart, final LocalDate end, final boolean includeEnd, final Integer maxPoints) {
+    final HistoricalTimeSeriesKey seriesKey = new HistoricalTimeSeriesKey(resolutionKey, identifierValidityDate, identifierBundle, null, null, dataField);
+    final SubSeriesKey subseriesKey = new SubSeriesKey(start, includeStart, end, includeEnd, maxPoints);
+    final ObjectsPair<HistoricalTimeSeriesKey, SubSeriesKey> key = Pair.of(seriesKey, subseriesKey);
+    final HistoricalTimeSeries hts = getFromDataCache(key);
+    if (hts != null) {
+      return MISS.equals(hts) ? null : hts;
+    }
+    // If we have the full series cached computing a sub-series could be faster
+    final HistoricalTimeSeries fullHts = getFromDataCache(seriesKey);
+    if (fullHts != null) {
+      return MISS.equals(fullHts) ? null : getSubSeries(fullHts, start, includeStart, end, includeEnd, maxPoints);
+    }
+    return getOrLoad(key, new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
+        final HistoricalTimeSeries loaded;
         if (maxPoints == null) {
-          hts = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey, start, includeStart, end, includeEnd);
+          loaded = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey, start, includeStart, end, includeEnd);
         } else {
-          hts = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey, start, includeStart, end, includeEnd, maxPoints);          
+          loaded = _underlying.getHistoricalTimeSeries(dataField, identifierBundle, identifierValidityDate, resolutionKey, start, includeStart, end, includeEnd, maxPoints);
         }
-        if (hts != null) {
-          s_logger.debug("Caching sub time-series {}", hts);
-          _dataCache.put(new Element(key, hts));
-          _dataCache.put(new Element(new ObjectsPair<UniqueId, SubSeriesKey>(hts.getUniqueId(), subseriesKey), hts)); 
-        } else {
-          s_logger.debug("Caching miss {}", key);
-          _dataCache.put(new Element(key, MISS));
+        if (loaded != null) {
+          putInDataCache(new ObjectsPair<UniqueId, SubSeriesKey>(loaded.getUniqueId(), subseriesKey), loaded);
         }
-      }      
-    }
-    return hts;
+        return loaded(key, loaded);
+      }
+    });
   }
 
   //-------------------------------------------------------------------------
@@ -657,12 +707,12 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
         HistoricalTimeSeriesKey key = new HistoricalTimeSeriesKey(null, null, identifiers, dataSource, dataProvider, dataField);
         if (hts != null) {
           s_logger.debug("Caching time-series {}", hts);
-          _dataCache.put(new Element(key, hts));
-          _dataCache.put(new Element(hts.getUniqueId(), hts));
+          putInDataCache(key, hts);
+          putInDataCache(hts.getUniqueId(), hts);
           hts = getSubSeries(hts, start, includeStart, end, includeEnd, null);
         } else {
           s_logger.debug("Caching miss {}", key);
-          _dataCache.put(new Element(key, MISS));
+          putInDataCache(key, MISS);
         }
         result.put(identifiers, hts);
       }
@@ -675,32 +725,81 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
    * Attempts to retrieve the time-series with the given key from the cache.
    * 
    * @param key  the key, not null
-   * @return the time-series, null if no match
+   * @return the time-series, the miss marker if a miss is cached, null if no match
    */
-  private HistoricalTimeSeries getFromDataCache(HistoricalTimeSeriesKey key) {
-    Element element = _dataCache.get(key);
-    if (element == null) {
+  private HistoricalTimeSeries getFromDataCache(Object key) {
+    final HistoricalTimeSeries hts;
+    if (_weightedDataCache != null) {
+      hts = _weightedDataCache.getIfPresent(key);
+    } else {
+      final Element element = _dataCache.get(key);
+      hts = (element != null) ? (HistoricalTimeSeries) element.getObjectValue() : null;
+    }
+    if (hts == null) {
       s_logger.debug("Cache miss on {}", key);
       return null;
     }
     s_logger.debug("Cache hit on {}", key);
-    return (HistoricalTimeSeries) element.getObjectValue();
+    return hts;
   }
 
   /**
-   * Attempts to retrieve the time-series with the given unique identifier from the cache.
+   * Gets a time-series from the cache, loading it if it is missing.
+   * <p>
+   * With a weighted cache, concurrent misses on the same key share one call to the loader.
    * 
-   * @param uniqueId  the unique identifier, not null
-   * @return the time-series, null if no match
+   * @param key  the key, not null
+   * @param loader  the loader, returning the time-series or the miss marker, not null
+   * @return the time-series, null if a miss
    */
-  private HistoricalTimeSeries getFromDataCache(UniqueId uniqueId) {
-    Element element = _dataCache.get(uniqueId);
-    if (element == null) {
-      s_logger.debug("Cache miss on {}", uniqueId);
-      return null;
+  private HistoricalTimeSeries getOrLoad(Object key, Callable<HistoricalTimeSeries> loader) {
+    HistoricalTimeSeries hts;
+    if (_weightedDataCache != null) {
+      hts = _weightedDataCache.get(key, loader);
+    } else {
+      hts = getFromDataCache(key);
+      if (hts == null) {
+        try {
+          hts = loader.call();
+        } catch (RuntimeException ex) {
+          throw ex;
+        } catch (Exception ex) {
+          throw new OpenGammaRuntimeException("Unable to load " + key, ex);
+        }
+        putInDataCache(key, hts);
+      }
+    }
+    return MISS.equals(hts) ? null : hts;
+  }
+
+  /**
+   * Converts a time-series loaded from the underlying into the value to cache.
+   * 
+   * @param key  the key, not null
+   * @param hts  the time-series, null if not found
+   * @return the time-series or the miss marker, not null
+   */
+  private static HistoricalTimeSeries loaded(Object key, HistoricalTimeSeries hts) {
+    if (hts != null) {
+      s_logger.debug("Caching time-series {}", hts);
+      return hts;
+    }
+    s_logger.debug("Caching miss on {}", key);
+    return MISS;
+  }
+
+  /**
+   * Adds a time-series, or the miss marker, to the cache.
+   * 
+   * @param key  the key, not null
+   * @param hts  the time-series or miss marker, not null
+   */
+  private void putInDataCache(Object key, HistoricalTimeSeries hts) {
+    if (_weightedDataCache != null) {
+      _weightedDataCache.put(key, hts);
+    } else {
+      _dataCache.put(new Element(key, hts));
     }
-    s_logger.debug("Cache hit on {}", uniqueId);
-    return (HistoricalTimeSeries) element.getObjectValue();
   }
 
   /**
@@ -748,7 +847,15 @@ public class EHCachingHistoricalTimeSeriesSource implements HistoricalTimeSeries
   }
 
   @Override
-  public ExternalIdBundle getExternalIdBundle(UniqueId uniqueId) {
+  public ExternalIdBundle getExternalIdBundle(final UniqueId uniqueId) {
+    if (_weightedIdentifierBundleCache != null) {
+      return _weightedIdentifierBundleCache.get(uniqueId, new Callable<ExternalIdBundle>() {
+        @Override
+        public ExternalIdBundle call() {
+          return _underlying.getExternalIdBundle(uniqueId);
+        }
+      });
+    }
     Element idBundleCacheElement = _identifierBundleCache.get(uniqueId);
     if (idBundleCacheElement == null) {
       ExternalIdBundle idBundle = _underlying.getExternalIdBundle(uniqueId);
@@ -6,6 +6,11 @@
 package com.opengamma.core.historicaltimeseries.impl;
 
 import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -22,12 +27,16 @@ import com.opengamma.id.UniqueId;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.rest.AbstractRemoteClient;
+import com.opengamma.util.rest.BulkRequestCoalescer;
 import com.opengamma.util.rest.UniformInterfaceException404NotFound;
 import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
 import com.opengamma.util.tuple.Pair;
 
 /**
  * Provides remote access to an {@link HistoricalTimeSeriesSource}.
+ * <p>
+ * Lookups by bundle, data source, data provider and data field that are made concurrently are
+ * coalesced into bulk requests, one for each combination of source, provider, field and date range.
  */
 public class RemoteHistoricalTimeSeriesSource extends AbstractRemoteClient implements HistoricalTimeSeriesSource {
 
@@ -35,6 +44,48 @@ public class RemoteHistoricalTimeSeriesSource extends AbstractRemoteClient imple
    * The change manager.
    */
   private final ChangeManager _changeManager;
+  /**
+   * The coalescer of lookups by bundle, keyed by the bundle and the other search parameters.
+   */
+  private final BulkRequestCoalescer<Pair<ExternalIdBundle, List<Object>>, HistoricalTimeSeries> _bundleLookups =
+      new BulkRequestCoalescer<Pair<ExternalIdBundle, List<Object>>, HistoricalTimeSeries>(BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE) {
+        @Override
+        protected HistoricalTimeSeries loadSingle(final Pair<ExternalIdBundle, List<Object>> key) {
+          final List<Object> params = key.getSecond();
+          try {
+            URI uri = DataHistoricalTimeSeriesSourceResource.uriSearchSingle(getBaseUri(), key.getFirst(), (String) params.get(0), (String) params.get(1),
+                (String) params.get(2), (LocalDate) params.get(3), (Boolean) params.get(4), (LocalDate) params.get(5), (Boolean) params.get(6), null);
+            return accessRemote(uri).get(HistoricalTimeSeries.class);
+          } catch (UniformInterfaceException404NotFound ex) {
+            return null;
+          }
+        }
+
+        @Override
+        protected Map<Pair<ExternalIdBundle, List<Object>>, HistoricalTimeSeries> loadBulk(final Collection<Pair<ExternalIdBundle, List<Object>>> keys) {
+          final Map<List<Object>, Set<ExternalIdBundle>> byParams = new HashMap<List<Object>, Set<ExternalIdBundle>>();
+          for (Pair<ExternalIdBundle, List<Object>> key : keys) {
+            Set<ExternalIdBundle> bundles = byParams.get(key.getSecond());
+            if (bundles == null) {
+              bundles = new HashSet<ExternalIdBundle>();
+              byParams.put(key.getSecond(), bundles);
+            }
+            bundles.add(key.getFirst());
+          }
+          final Map<Pair<ExternalIdBundle, List<Object>>, HistoricalTimeSeries> result = new HashMap<Pair<ExternalIdBundle, List<Object>>, HistoricalTimeSeries>();
+          for (Map.Entry<List<Object>, Set<ExternalIdBundle>> entry : byParams.entrySet()) {
+            final List<Object> params = entry.getKey();
+            final Map<ExternalIdBundle, HistoricalTimeSeries> found = getHistoricalTimeSeries(entry.getValue(), (String) params.get(0), (String) params.get(1),
+                (String) params.get(2), (LocalDate) params.get(3), (Boolean) params.get(4), (LocalDate) params.get(5), (Boolean) params.get(6));
+            if (found != null) {
+              for (Map.Entry<ExternalIdBundle, HistoricalTimeSeries> series : found.entrySet()) {
+                result.put(Pair.of(series.getKey(), params), series.getValue());
+              }
+            }
+          }
+          return result;
+        }
+      };
 
 
   /**
@@ -113,13 +164,8 @@ public class RemoteHistoricalTimeSeriesSource extends AbstractRemoteClient imple
   public HistoricalTimeSeries getHistoricalTimeSeries(ExternalIdBundle identifierBundle, String dataSource, String dataProvider, String dataField,
       LocalDate start, boolean includeStart, LocalDate end, boolean includeEnd) {
     ArgumentChecker.notNull(identifierBundle, "identifierBundle");
-    try {
-      URI uri = DataHistoricalTimeSeriesSourceResource.uriSearchSingle(
-          getBaseUri(), identifierBundle, dataSource, dataProvider, dataField, start, includeStart, end, includeEnd, null);
-      return accessRemote(uri).get(HistoricalTimeSeries.class);
-    } catch (UniformInterfaceException404NotFound ex) {
-      return null;
-    }
+    final List<Object> params = Arrays.<Object>asList(dataSource, dataProvider, dataField, start, includeStart, end, includeEnd);
+    return _bundleLookups.get(Pair.of(identifierBundle, params));
   }
 
   @Override
@@ -5,11 +5,18 @@
  */
 package com.opengamma.core.holiday.impl;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.time.calendar.LocalDate;
 
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeListener;
+import com.opengamma.core.change.ChangeManager;
 import com.opengamma.core.holiday.Holiday;
 import com.opengamma.core.holiday.HolidaySource;
 import com.opengamma.core.holiday.HolidayType;
@@ -24,12 +31,20 @@ import com.opengamma.util.map.HashMap3;
 import com.opengamma.util.map.Map2;
 import com.opengamma.util.map.Map3;
 import com.opengamma.util.money.Currency;
+import com.opengamma.util.tuple.Pair;
 
 /**
- * A cached {@link HolidaySource} using a concurrent hash map and no eviction policy. This is better than having no cache but is not very efficient. Also does not listen for changes to the underlying
- * data.
+ * A cached {@link HolidaySource} using a concurrent hash map and no eviction policy. This is better than having no cache but is not very efficient.
+ * <p>
+ * If the underlying source is a {@link HolidayBitSetSource}, each calendar is loaded once as a {@link HolidayBitSet} covering
+ * {@link HolidayBitSet#DEFAULT_START_DATE} to {@link HolidayBitSet#DEFAULT_END_DATE} and dates in that range are checked against it.
+ * Otherwise, and for dates outside the range, the result for each date is cached as it is requested.
+ * <p>
+ * If a change manager is given, such as that of the holiday master behind the underlying source, everything cached is discarded
+ * whenever it reports a change. Otherwise changes to the underlying data are not seen. A bit set whose load was already in
+ * progress when the cache was discarded is returned to its caller but not kept.
  */
-public class CachedHolidaySource implements HolidaySource {
+public class CachedHolidaySource implements HolidayBitSetSource {
 
   private static final Object NULL = new Object();
 
@@ -39,12 +54,49 @@ public class CachedHolidaySource implements HolidaySource {
   private final ConcurrentMap<Currency, ConcurrentMap<LocalDate, Object>> _isHoliday1 = new ConcurrentHashMap<Currency, ConcurrentMap<LocalDate, Object>>();
   private final Map3<LocalDate, HolidayType, ExternalIdBundle, Object> _isHoliday2 = new HashMap3<LocalDate, HolidayType, ExternalIdBundle, Object>();
   private final Map3<LocalDate, HolidayType, ExternalId, Object> _isHoliday3 = new HashMap3<LocalDate, HolidayType, ExternalId, Object>();
+  private final ConcurrentMap<Set<Currency>, HolidayBitSet> _currencyBitSets = new ConcurrentHashMap<Set<Currency>, HolidayBitSet>();
+  private final ConcurrentMap<Pair<HolidayType, ExternalIdBundle>, HolidayBitSet> _bundleBitSets = new ConcurrentHashMap<Pair<HolidayType, ExternalIdBundle>, HolidayBitSet>();
+  /**
+   * Incremented by each call to {@link #clear}, so that a bit set loaded before the call is not cached after it.
+   */
+  private final AtomicLong _generation = new AtomicLong();
 
   public CachedHolidaySource(final HolidaySource underlying) {
     ArgumentChecker.notNull(underlying, "underlying");
     _underlying = underlying;
   }
 
+  /**
+   * Creates a cache that is discarded whenever the change manager reports a change.
+   *
+   * @param underlying  the underlying source, not null
+   * @param changeManager  the change manager of the underlying holiday data, not null
+   */
+  public CachedHolidaySource(final HolidaySource underlying, final ChangeManager changeManager) {
+    this(underlying);
+    ArgumentChecker.notNull(changeManager, "changeManager");
+    changeManager.addChangeListener(new ChangeListener() {
+      @Override
+      public void entityChanged(final ChangeEvent event) {
+        clear();
+      }
+    });
+  }
+
+  /**
+   * Discards everything cached.
+   */
+  public void clear() {
+    _generation.incrementAndGet();
+    _getHoliday1.clear();
+    _getHoliday2.clear();
+    _isHoliday1.clear();
+    _isHoliday2.clear();
+    _isHoliday3.clear();
+    _currencyBitSets.clear();
+    _bundleBitSets.clear();
+  }
+
   protected HolidaySource getUnderlying() {
     return _underlying;
   }
@@ -108,6 +160,10 @@ public class CachedHolidaySource implements HolidaySource {
 
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final Currency currency) {
+    final HolidayBitSet bitSet = getDefaultHolidayBitSet(Collections.singleton(currency));
+    if (bitSet != null && bitSet.covers(dateToCheck)) {
+      return bitSet.isHoliday(dateToCheck);
+    }
     ConcurrentMap<LocalDate, Object> dates = _isHoliday1.get(currency);
     if (dates == null) {
       dates = new ConcurrentHashMap<LocalDate, Object>();
@@ -132,6 +188,10 @@ public class CachedHolidaySource implements HolidaySource {
 
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds) {
+    final HolidayBitSet bitSet = getDefaultHolidayBitSet(holidayType, regionOrExchangeIds);
+    if (bitSet != null && bitSet.covers(dateToCheck)) {
+      return bitSet.isHoliday(dateToCheck);
+    }
     Object result = _isHoliday2.get(dateToCheck, holidayType, regionOrExchangeIds);
     if (result != null) {
       return (Boolean) getOrThrow(result);
@@ -148,6 +208,10 @@ public class CachedHolidaySource implements HolidaySource {
 
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final HolidayType holidayType, final ExternalId regionOrExchangeId) {
+    final HolidayBitSet bitSet = getDefaultHolidayBitSet(holidayType, ExternalIdBundle.of(regionOrExchangeId));
+    if (bitSet != null && bitSet.covers(dateToCheck)) {
+      return bitSet.isHoliday(dateToCheck);
+    }
     Object result = _isHoliday3.get(dateToCheck, holidayType, regionOrExchangeId);
     if (result != null) {
       return (Boolean) getOrThrow(result);
@@ -162,4 +226,117 @@ public class CachedHolidaySource implements HolidaySource {
     }
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Sets over the default range are cached. Other ranges are passed to the underlying source.
+   */
+  @Override
+  public HolidayBitSet getHolidayBitSet(final Set<Currency> currencies, final LocalDate start, final LocalDate end) {
+    if (isDefaultRange(start, end)) {
+      return getDefaultHolidayBitSet(currencies);
+    }
+    if (getUnderlying() instanceof HolidayBitSetSource) {
+      return ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(currencies, start, end);
+    }
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Sets over the default range are cached. Other ranges are passed to the underlying source.
+   */
+  @Override
+  public HolidayBitSet getHolidayBitSet(final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds, final LocalDate start, final LocalDate end) {
+    if (isDefaultRange(start, end)) {
+      return getDefaultHolidayBitSet(holidayType, regionOrExchangeIds);
+    }
+    if (getUnderlying() instanceof HolidayBitSetSource) {
+      return ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(holidayType, regionOrExchangeIds, start, end);
+    }
+    return null;
+  }
+
+  private static boolean isDefaultRange(final LocalDate start, final LocalDate end) {
+    return HolidayBitSet.DEFAULT_START_DATE.equals(start) && HolidayBitSet.DEFAULT_END_DATE.equals(end);
+  }
+
+  /**
+   * Gets the union of CURRENCY calendars over the default range, loading it if necessary.
+   * <p>
+   * A union of several currencies is formed from the cached sets of each currency.
+   *
+   * @param currencies  the currencies, not null or empty
+   * @return the non-working days, null if the underlying source cannot supply them
+   */
+  protected HolidayBitSet getDefaultHolidayBitSet(final Set<Currency> currencies) {
+    HolidayBitSet bitSet = _currencyBitSets.get(currencies);
+    if (bitSet != null) {
+      return bitSet;
+    }
+    if (!(getUnderlying() instanceof HolidayBitSetSource)) {
+      return null;
+    }
+    ArgumentChecker.notEmpty(currencies, "currencies");
+    final long generation = _generation.get();
+    if (currencies.size() == 1) {
+      bitSet = ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(currencies, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+    } else {
+      for (Currency currency : currencies) {
+        final HolidayBitSet currencyBitSet = getDefaultHolidayBitSet(Collections.singleton(currency));
+        if (currencyBitSet == null) {
+          return null;
+        }
+        bitSet = (bitSet == null) ? currencyBitSet : bitSet.or(currencyBitSet);
+      }
+    }
+    if (bitSet == null) {
+      return null;
+    }
+    final Set<Currency> key = Collections.unmodifiableSet(new HashSet<Currency>(currencies));
+    final HolidayBitSet existing = _currencyBitSets.putIfAbsent(key, bitSet);
+    if (existing != null) {
+      return existing;
+    }
+    if (_generation.get() != generation) {
+      // Cleared while loading, so the set may be stale
+      _currencyBitSets.remove(key, bitSet);
+    }
+    return bitSet;
+  }
+
+  /**
+   * Gets a BANK, SETTLEMENT or TRADING calendar over the default range, loading it if necessary.
+   *
+   * @param holidayType  the type of holiday, not null
+   * @param regionOrExchangeIds  the regions or exchanges, not null
+   * @return the non-working days, null if the underlying source cannot supply them
+   */
+  protected HolidayBitSet getDefaultHolidayBitSet(final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds) {
+    final Pair<HolidayType, ExternalIdBundle> key = Pair.of(holidayType, regionOrExchangeIds);
+    HolidayBitSet bitSet = _bundleBitSets.get(key);
+    if (bitSet != null) {
+      return bitSet;
+    }
+    if (!(getUnderlying() instanceof HolidayBitSetSource)) {
+      return null;
+    }
+    final long generation = _generation.get();
+    bitSet = ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(holidayType, regionOrExchangeIds, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+    if (bitSet == null) {
+      return null;
+    }
+    final HolidayBitSet existing = _bundleBitSets.putIfAbsent(key, bitSet);
+    if (existing != null) {
+      return existing;
+    }
+    if (_generation.get() != generation) {
+      // Cleared while loading, so the set may be stale
+      _bundleBitSets.remove(key, bitSet);
+    }
+    return bitSet;
+  }
+
 }
@@ -5,11 +5,12 @@
  */
 package com.opengamma.core.holiday.impl;
 
-import static com.opengamma.util.ehcache.EHCacheUtils.get;
-import static com.opengamma.util.ehcache.EHCacheUtils.putException;
 import static com.opengamma.util.ehcache.EHCacheUtils.putValue;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.time.calendar.LocalDate;
 
@@ -17,6 +18,7 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.holiday.Holiday;
 import com.opengamma.core.holiday.HolidaySource;
 import com.opengamma.core.holiday.HolidayType;
@@ -26,17 +28,24 @@ import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.cache.SizeEstimators;
+import com.opengamma.util.cache.WeightedCache;
 import com.opengamma.util.ehcache.EHCacheUtils;
 import com.opengamma.util.money.Currency;
 
 /**
  * An EHCache based {@link HolidaySource}. This is better than having no cache but is not very efficient. Also does not listen for changes to the underlying data.
+ * <p>
+ * A {@link WeightedCache} may be used instead of EHCache, in which case concurrent requests for the same missing item share one call to the underlying.
+ * <p>
+ * If the underlying source is a {@link HolidayBitSetSource}, the bit sets it supplies are cached too.
  */
-public class EHCachingHolidaySource implements HolidaySource {
+public class EHCachingHolidaySource implements HolidayBitSetSource {
 
   private static final String CACHE_NAME = "holiday";
   private final HolidaySource _underlying;
   private final Cache _cache;
+  private final WeightedCache<Object, Object> _weightedCache;
 
   public EHCachingHolidaySource(final HolidaySource underlying, final CacheManager cacheManager) {
     ArgumentChecker.notNull(underlying, "underlying");
@@ -44,87 +53,137 @@ public class EHCachingHolidaySource implements HolidaySource {
     _underlying = underlying;
     EHCacheUtils.addCache(cacheManager, CACHE_NAME);
     _cache = EHCacheUtils.getCacheFromManager(cacheManager, CACHE_NAME);
+    _weightedCache = null;
+  }
+
+  /**
+   * Creates an instance using a weighted cache.
+   * 
+   * @param underlying  the underlying source, not null
+   * @param maximumBytes  the estimated size in bytes of the items to hold, greater than zero
+   */
+  public EHCachingHolidaySource(final HolidaySource underlying, final long maximumBytes) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+    _cache = null;
+    _weightedCache = new WeightedCache<Object, Object>(CACHE_NAME, maximumBytes, SizeEstimators.defaultEstimator());
   }
 
   protected HolidaySource getUnderlying() {
     return _underlying;
   }
 
+  /**
+   * Gets the EHCache.
+   * 
+   * @return the cache, null if using a weighted cache
+   */
   protected Cache getCache() {
     return _cache;
   }
 
-  @Override
-  public Holiday getHoliday(final UniqueId uniqueId) {
-    final Element e = getCache().get(uniqueId);
-    if (e != null) {
-      return get(e);
-    }
-    try {
-      return putValue(uniqueId, getUnderlying().getHoliday(uniqueId), getCache());
-    } catch (RuntimeException ex) {
-      return putException(uniqueId, ex, getCache());
-    }
+  /**
+   * Gets the weighted cache, for monitoring.
+   * 
+   * @return the cache, null if using EHCache
+   */
+  public WeightedCache<Object, Object> getWeightedCache() {
+    return _weightedCache;
   }
 
   @SuppressWarnings("unchecked")
-  @Override
-  public Holiday getHoliday(final ObjectId objectId, final VersionCorrection versionCorrection) {
-    final Object key = Arrays.asList(objectId, versionCorrection);
+  private <T> T get(final Object key, final Callable<T> loader) {
+    if (_weightedCache != null) {
+      return (T) _weightedCache.get(key, loader);
+    }
     final Element e = getCache().get(key);
     if (e != null) {
-      return get(e);
+      return EHCacheUtils.<T>get(e);
     }
     try {
-      return putValue(key, getUnderlying().getHoliday(objectId, versionCorrection), getCache());
+      return putValue(key, loader.call(), getCache());
     } catch (RuntimeException ex) {
-      return putException(key, ex, getCache());
+      return EHCacheUtils.<T>putException(key, ex, getCache());
+    } catch (Exception ex) {
+      throw new OpenGammaRuntimeException("Unable to load " + key, ex);
     }
   }
 
-  @SuppressWarnings("unchecked")
+  @Override
+  public Holiday getHoliday(final UniqueId uniqueId) {
+    return get(uniqueId, new Callable<Holiday>() {
+      @Override
+      public Holiday call() {
+        return getUnderlying().getHoliday(uniqueId);
+      }
+    });
+  }
+
+  @Override
+  public Holiday getHoliday(final ObjectId objectId, final VersionCorrection versionCorrection) {
+    return get(Arrays.asList(objectId, versionCorrection), new Callable<Holiday>() {
+      @Override
+      public Holiday call() {
+        return getUnderlying().getHoliday(objectId, versionCorrection);
+      }
+    });
+  }
+
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final Currency currency) {
-    final Object key = Arrays.asList(dateToCheck, currency);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return (Boolean) get(e);
-    }
-    try {
-      return (Boolean) putValue(key, getUnderlying().isHoliday(dateToCheck, currency), getCache());
-    } catch (RuntimeException ex) {
-      return (Boolean) putException(key, ex, getCache());
-    }
+    return get(Arrays.asList(dateToCheck, currency), new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return getUnderlying().isHoliday(dateToCheck, currency);
+      }
+    });
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds) {
-    final Object key = Arrays.asList(dateToCheck, holidayType, regionOrExchangeIds);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return (Boolean) get(e);
-    }
-    try {
-      return (Boolean) putValue(key, getUnderlying().isHoliday(dateToCheck, holidayType, regionOrExchangeIds), getCache());
-    } catch (RuntimeException ex) {
-      return (Boolean) putException(key, ex, getCache());
-    }
+    return get(Arrays.asList(dateToCheck, holidayType, regionOrExchangeIds), new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return getUnderlying().isHoliday(dateToCheck, holidayType, regionOrExchangeIds);
+      }
+    });
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public boolean isHoliday(final LocalDate dateToCheck, final HolidayType holidayType, final ExternalId regionOrExchangeId) {
-    final Object key = Arrays.asList(dateToCheck, holidayType, regionOrExchangeId);
-    final Element e = getCache().get(key);
-    if (e != null) {
-      return (Boolean) get(e);
+    return get(Arrays.asList(dateToCheck, holidayType, regionOrExchangeId), new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return getUnderlying().isHoliday(dateToCheck, holidayType, regionOrExchangeId);
+      }
+    });
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public HolidayBitSet getHolidayBitSet(final Set<Currency> currencies, final LocalDate start, final LocalDate end) {
+    if (!(getUnderlying() instanceof HolidayBitSetSource)) {
+      return null;
     }
-    try {
-      return (Boolean) putValue(key, getUnderlying().isHoliday(dateToCheck, holidayType, regionOrExchangeId), getCache());
-    } catch (RuntimeException ex) {
-      return (Boolean) putException(key, ex, getCache());
+    return get(Arrays.asList(HolidayBitSet.class, new HashSet<Currency>(currencies), start, end), new Callable<HolidayBitSet>() {
+      @Override
+      public HolidayBitSet call() {
+        return ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(currencies, start, end);
+      }
+    });
+  }
+
+  @Override
+  public HolidayBitSet getHolidayBitSet(final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds, final LocalDate start, final LocalDate end) {
+    if (!(getUnderlying() instanceof HolidayBitSetSource)) {
+      return null;
     }
+    return get(Arrays.asList(HolidayBitSet.class, holidayType, regionOrExchangeIds, start, end), new Callable<HolidayBitSet>() {
+      @Override
+      public HolidayBitSet call() {
+        return ((HolidayBitSetSource) getUnderlying()).getHolidayBitSet(holidayType, regionOrExchangeIds, start, end);
+      }
+    });
   }
 
 }
@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.holiday.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.time.calendar.LocalDate;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An immutable set of non-working days over a fixed range of dates.
+ * <p>
+ * Each date in the range is one bit, indexed by its epoch day, so a calendar of a century
+ * is held in a few kilobytes. Calendars over the same range can be combined with {@link #or},
+ * which is a bitwise OR of the words.
+ * <p>
+ * The number of working days before each word is precomputed, along with the word that holds every 64th
+ * working day. This allows the working days between two dates to be counted, and a date to be moved by a
+ * number of working days, in constant time rather than by testing one date after another.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public final class HolidayBitSet implements Serializable {
+
+  /**
+   * The first date of the range loaded by default, inclusive.
+   */
+  public static final LocalDate DEFAULT_START_DATE = LocalDate.of(1970, 1, 1);
+  /**
+   * The end of the range loaded by default, exclusive.
+   */
+  public static final LocalDate DEFAULT_END_DATE = LocalDate.of(2100, 1, 1);
+
+  /** Serialization version. */
+  private static final long serialVersionUID = 1L;
+  /** The number of bits in a word. */
+  private static final int WORD_BITS = 64;
+  /** The shift to convert a bit index to a word index. */
+  private static final int WORD_SHIFT = 6;
+  /** The day of the week of epoch day zero, 1970-01-01, which was a Thursday, counting Monday as zero. */
+  private static final int EPOCH_DAY_OF_WEEK = 3;
+
+  /**
+   * The epoch day of the first date in the range.
+   */
+  private final long _startEpochDay;
+  /**
+   * The number of dates in the range.
+   */
+  private final int _days;
+  /**
+   * The bits, set for non-working days. Bits beyond the end of the range are set.
+   */
+  private final long[] _bits;
+  /**
+   * The number of working days before each word.
+   */
+  private final int[] _workingDaysBefore;
+  /**
+   * The index of the word holding working day 64 * i, for each i.
+   */
+  private final int[] _selectWords;
+  /**
+   * The total number of working days.
+   */
+  private final int _workingDays;
+
+  /**
+   * Obtains a set of non-working days.
+   *
+   * @param start  the first date of the range, inclusive, not null
+   * @param end  the last date of the range, exclusive, not null
+   * @param weekends  true if every Saturday and Sunday is a non-working day
+   * @param holidays  the other non-working days, dates outside the range are ignored, not null
+   * @return the set, not null
+   */
+  public static HolidayBitSet of(final LocalDate start, final LocalDate end, final boolean weekends, final Iterable<LocalDate> holidays) {
+    ArgumentChecker.notNull(start, "start");
+    ArgumentChecker.notNull(end, "end");
+    ArgumentChecker.notNull(holidays, "holidays");
+    ArgumentChecker.isTrue(start.isBefore(end), "start must be before end");
+    final long startEpochDay = start.toEpochDays();
+    final long days = end.toEpochDays() - startEpochDay;
+    ArgumentChecker.isTrue(days < Integer.MAX_VALUE, "range is too long");
+    final long[] bits = new long[wordCount((int) days)];
+    if (weekends) {
+      for (int i = 0; i < days; i++) {
+        final int dayOfWeek = (int) (((startEpochDay + i + EPOCH_DAY_OF_WEEK) % 7 + 7) % 7);
+        if (dayOfWeek >= 5) {
+          bits[i >>> WORD_SHIFT] |= 1L << i;
+        }
+      }
+    }
+    for (LocalDate holiday : holidays) {
+      final long index = holiday.toEpochDays() - startEpochDay;
+      if (index >= 0 && index < days) {
+        bits[(int) (index >>> WORD_SHIFT)] |= 1L << index;
+      }
+    }
+    return new HolidayBitSet(startEpochDay, (int) days, bits);
+  }
+
+  /**
+   * Creates an instance, setting the unused bits of the last word and building the rank tables.
+   *
+   * @param startEpochDay  the epoch day of the first date
+   * @param days  the number of dates
+   * @param bits  the bits, not null, owned by this instance
+   */
+  private HolidayBitSet(final long startEpochDay, final int days, final long[] bits) {
+    _startEpochDay = startEpochDay;
+    _days = days;
+    _bits = bits;
+    final int unused = bits.length * WORD_BITS - days;
+    if (unused > 0) {
+      bits[bits.length - 1] |= -1L << (WORD_BITS - unused);
+    }
+    _workingDaysBefore = new int[bits.length];
+    int workingDays = 0;
+    for (int i = 0; i < bits.length; i++) {
+      _workingDaysBefore[i] = workingDays;
+      workingDays += Long.bitCount(~bits[i]);
+    }
+    _workingDays = workingDays;
+    _selectWords = new int[(workingDays >>> WORD_SHIFT) + 1];
+    int word = 0;
+    for (int i = 0; i < _selectWords.length; i++) {
+      final int rank = i << WORD_SHIFT;
+      while (word + 1 < bits.length && _workingDaysBefore[word + 1] <= rank) {
+        word++;
+      }
+      _selectWords[i] = word;
+    }
+  }
+
+  private static int wordCount(final int days) {
+    return (days + WORD_BITS - 1) >>> WORD_SHIFT;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Combines this set with another, so that a date is a non-working day if it is one in either set.
+   *
+   * @param other  the other set, covering the same range, not null
+   * @return the combined set, not null
+   */
+  public HolidayBitSet or(final HolidayBitSet other) {
+    ArgumentChecker.notNull(other, "other");
+    ArgumentChecker.isTrue(_startEpochDay == other._startEpochDay && _days == other._days, "sets must cover the same range");
+    final long[] bits = new long[_bits.length];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = _bits[i] | other._bits[i];
+    }
+    return new HolidayBitSet(_startEpochDay, _days, bits);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the first date of the range.
+   *
+   * @return the first date, inclusive, not null
+   */
+  public LocalDate getStartDate() {
+    return LocalDate.ofEpochDays(_startEpochDay);
+  }
+
+  /**
+   * Gets the end of the range.
+   *
+   * @return the end date, exclusive, not null
+   */
+  public LocalDate getEndDate() {
+    return LocalDate.ofEpochDays(_startEpochDay + _days);
+  }
+
+  /**
+   * Checks if a date is in the range of this set.
+   *
+   * @param date  the date, not null
+   * @return true if the date is in the range
+   */
+  public boolean covers(final LocalDate date) {
+    final long index = date.toEpochDays() - _startEpochDay;
+    return index >= 0 && index < _days;
+  }
+
+  /**
+   * Checks if a date is a non-working day.
+   *
+   * @param date  the date, in the range, not null
+   * @return true if the date is a non-working day
+   */
+  public boolean isHoliday(final LocalDate date) {
+    final int index = index(date);
+    return (_bits[index >>> WORD_SHIFT] & (1L << index)) != 0;
+  }
+
+  /**
+   * Checks if a date is a working day.
+   *
+   * @param date  the date, in the range, not null
+   * @return true if the date is a working day
+   */
+  public boolean isWorkingDay(final LocalDate date) {
+    return !isHoliday(date);
+  }
+
+  /**
+   * Gets the first working day after a date.
+   *
+   * @param date  the date, in the range, not null
+   * @return the next working day, null if it is beyond the range
+   */
+  public LocalDate nextWorkingDay(final LocalDate date) {
+    return date(rank(index(date) + 1));
+  }
+
+  /**
+   * Gets the last working day before a date.
+   *
+   * @param date  the date, in the range, not null
+   * @return the previous working day, null if it is before the range
+   */
+  public LocalDate previousWorkingDay(final LocalDate date) {
+    return date(rank(index(date)) - 1);
+  }
+
+  /**
+   * Moves a date by a number of working days.
+   * <p>
+   * A positive amount gives the n-th working day after the date and a negative amount the n-th
+   * working day before it, whether or not the date itself is a working day. Zero gives the date.
+   *
+   * @param date  the date, in the range, not null
+   * @param workingDays  the number of working days to move by
+   * @return the moved date, null if it is outside the range
+   */
+  public LocalDate addWorkingDays(final LocalDate date, final int workingDays) {
+    if (workingDays == 0) {
+      index(date);
+      return date;
+    }
+    final int index = index(date);
+    if (workingDays > 0) {
+      return date(rank(index + 1) + workingDays - 1);
+    }
+    return date(rank(index) + workingDays);
+  }
+
+  /**
+   * Counts the working days in a range of dates.
+   *
+   * @param from  the first date, inclusive, in the range, not null
+   * @param to  the last date, exclusive, in the range or its end, not null
+   * @return the number of working days, negative if the last date is before the first
+   */
+  public int getWorkingDayCount(final LocalDate from, final LocalDate to) {
+    final long toIndex = to.toEpochDays() - _startEpochDay;
+    ArgumentChecker.isTrue(toIndex >= 0 && toIndex <= _days, "date {} is outside the range {} to {}", to, getStartDate(), getEndDate());
+    return rank((int) toIndex) - rank(index(from));
+  }
+
+  /**
+   * Gets the total number of working days in the range.
+   *
+   * @return the number of working days
+   */
+  public int getWorkingDayCount() {
+    return _workingDays;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the index of a date, checking it is in the range.
+   */
+  private int index(final LocalDate date) {
+    ArgumentChecker.notNull(date, "date");
+    final long index = date.toEpochDays() - _startEpochDay;
+    if (index < 0 || index >= _days) {
+      throw new IllegalArgumentException("Date " + date + " is outside the range " + getStartDate() + " to " + getEndDate());
+    }
+    return (int) index;
+  }
+
+  /**
+   * Counts the working days before an index, which may be the end of the range.
+   */
+  private int rank(final int index) {
+    if (index >= _days) {
+      return _workingDays;
+    }
+    final int word = index >>> WORD_SHIFT;
+    final long mask = (1L << index) - 1;
+    return _workingDaysBefore[word] + Long.bitCount(~_bits[word] & mask);
+  }
+
+  /**
+   * Gets the date of a working day by its rank, null if there is no such working day.
+   */
+  private LocalDate date(final int rank) {
+    if (rank < 0 || rank >= _workingDays) {
+      return null;
+    }
+    int word = _selectWords[rank >>> WORD_SHIFT];
+    while (word + 1 < _bits.length && _workingDaysBefore[word + 1] <= rank) {
+      word++;
+    }
+    long working = ~_bits[word];
+    for (int i = rank - _workingDaysBefore[word]; i > 0; i--) {
+      working &= working - 1;
+    }
+    return LocalDate.ofEpochDays(_startEpochDay + ((long) word << WORD_SHIFT) + Long.numberOfTrailingZeros(working));
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public boolean equals(final Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (obj instanceof HolidayBitSet) {
+      final HolidayBitSet other = (HolidayBitSet) obj;
+      return _startEpochDay == other._startEpochDay && _days == other._days && Arrays.equals(_bits, other._bits);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (_startEpochDay ^ (_startEpochDay >>> 32)) ^ _days ^ Arrays.hashCode(_bits);
+  }
+
+  @Override
+  public String toString() {
+    return "HolidayBitSet[" + getStartDate() + " to " + getEndDate() + ", " + _workingDays + " working days]";
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.holiday.impl;
+
+import java.util.Set;
+
+import javax.time.calendar.LocalDate;
+
+import com.opengamma.core.holiday.HolidaySource;
+import com.opengamma.core.holiday.HolidayType;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.util.money.Currency;
+
+/**
+ * A source of holidays that can supply every non-working day of a calendar over a range of dates at once.
+ * <p>
+ * This is an optional extension to {@link HolidaySource}. A date is set in a returned {@link HolidayBitSet}
+ * exactly when {@code isHoliday} would return true for it, including weekends where the source treats them as holidays.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface HolidayBitSetSource extends HolidaySource {
+
+  /**
+   * Gets the non-working days of the union of CURRENCY calendars.
+   *
+   * @param currencies  the currencies, not null or empty
+   * @param start  the first date of the range, inclusive, not null
+   * @param end  the last date of the range, exclusive, not null
+   * @return the non-working days, null if this source cannot supply them
+   * @throws RuntimeException if an error occurs
+   */
+  HolidayBitSet getHolidayBitSet(Set<Currency> currencies, LocalDate start, LocalDate end);
+
+  /**
+   * Gets the non-working days of a BANK, SETTLEMENT or TRADING calendar.
+   *
+   * @param holidayType  the type of holiday, must not be CURRENCY, not null
+   * @param regionOrExchangeIds  the regions or exchanges, not null
+   * @param start  the first date of the range, inclusive, not null
+   * @param end  the last date of the range, exclusive, not null
+   * @return the non-working days, null if this source cannot supply them
+   * @throws RuntimeException if an error occurs
+   */
+  HolidayBitSet getHolidayBitSet(HolidayType holidayType, ExternalIdBundle regionOrExchangeIds, LocalDate start, LocalDate end);
+
+}
@@ -5,11 +5,13 @@
  */
 package com.opengamma.core.holiday.impl;
 
+import java.util.Collections;
+import java.util.Set;
+
 import javax.time.calendar.DayOfWeek;
 import javax.time.calendar.LocalDate;
 
 import com.opengamma.core.holiday.Holiday;
-import com.opengamma.core.holiday.HolidaySource;
 import com.opengamma.core.holiday.HolidayType;
 import com.opengamma.id.ExternalId;
 import com.opengamma.id.ExternalIdBundle;
@@ -23,7 +25,7 @@ import com.opengamma.util.money.Currency;
  * <p>
  * This is designed for testing.
  */
-public class WeekendHolidaySource implements HolidaySource {
+public class WeekendHolidaySource implements HolidayBitSetSource {
 
   @Override
   public Holiday getHoliday(final UniqueId uniqueId) {
@@ -52,6 +54,16 @@ public class WeekendHolidaySource implements HolidaySource {
     return isWeekend(dateToCheck);
   }
   
+  @Override
+  public HolidayBitSet getHolidayBitSet(final Set<Currency> currencies, final LocalDate start, final LocalDate end) {
+    return HolidayBitSet.of(start, end, true, Collections.<LocalDate>emptySet());
+  }
+
+  @Override
+  public HolidayBitSet getHolidayBitSet(final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds, final LocalDate start, final LocalDate end) {
+    return HolidayBitSet.of(start, end, true, Collections.<LocalDate>emptySet());
+  }
+
   private boolean isWeekend(final LocalDate dateToCheck) {
     return dateToCheck.getDayOfWeek() == DayOfWeek.SATURDAY || dateToCheck.getDayOfWeek() == DayOfWeek.SUNDAY;
   }
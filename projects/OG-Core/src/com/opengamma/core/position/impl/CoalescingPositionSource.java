@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.position.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.change.ChangeManager;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.PositionSource;
+import com.opengamma.core.position.Trade;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.rest.BulkRequestCoalescer;
+
+/**
+ * Wrapper around an existing {@link PositionSource} that coalesces concurrent position and trade lookups.
+ * <p>
+ * Lookups made while another is in progress are queued, de-duplicated and then loaded together. Where the
+ * underlying is a {@link RemotePositionSource} the positions are fetched with a single bulk request, otherwise
+ * each distinct identifier is fetched once no matter how many threads asked for it. Portfolios and nodes are
+ * passed straight through.
+ * <p>
+ * The coalescers count the requests made and the loads performed, so that the batch sizes achieved can be monitored.
+ */
+public class CoalescingPositionSource implements PositionSource {
+
+  /**
+   * The underlying source.
+   */
+  private final PositionSource _underlying;
+  /**
+   * The coalescer of position lookups.
+   */
+  private final BulkRequestCoalescer<UniqueId, Position> _positionLookups;
+  /**
+   * The coalescer of trade lookups.
+   */
+  private final BulkRequestCoalescer<UniqueId, Trade> _tradeLookups;
+
+  /**
+   * Creates an instance allowing {@link BulkRequestCoalescer#DEFAULT_MAX_CONCURRENT_LOADS} loads of each kind at a time.
+   *
+   * @param underlying  the underlying source, not null
+   */
+  public CoalescingPositionSource(final PositionSource underlying) {
+    this(underlying, BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE, 0);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param underlying  the underlying source, not null
+   * @param maxConcurrentLoads  the maximum number of loads of each kind in progress at once, greater than zero
+   * @param maxBatchSize  the maximum number of identifiers in a bulk load, greater than zero
+   * @param batchWindowMillis  the time to wait for further lookups before loading, in milliseconds, zero or greater
+   */
+  public CoalescingPositionSource(final PositionSource underlying, final int maxConcurrentLoads, final int maxBatchSize, final long batchWindowMillis) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+    _positionLookups = new BulkRequestCoalescer<UniqueId, Position>(maxConcurrentLoads, maxBatchSize, batchWindowMillis) {
+      @Override
+      protected Position loadSingle(final UniqueId uniqueId) {
+        return getPositionImpl(uniqueId);
+      }
+
+      @Override
+      protected Map<UniqueId, Position> loadBulk(final Collection<UniqueId> uniqueIds) {
+        return getPositionsImpl(uniqueIds);
+      }
+    };
+    _tradeLookups = new BulkRequestCoalescer<UniqueId, Trade>(maxConcurrentLoads, maxBatchSize, batchWindowMillis) {
+      @Override
+      protected Trade loadSingle(final UniqueId uniqueId) {
+        return getTradeImpl(uniqueId);
+      }
+
+      @Override
+      protected Map<UniqueId, Trade> loadBulk(final Collection<UniqueId> uniqueIds) {
+        final Map<UniqueId, Trade> result = new HashMap<UniqueId, Trade>();
+        for (UniqueId uniqueId : uniqueIds) {
+          final Trade trade = getTradeImpl(uniqueId);
+          if (trade != null) {
+            result.put(uniqueId, trade);
+          }
+        }
+        return result;
+      }
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the underlying source.
+   *
+   * @return the underlying source, not null
+   */
+  public PositionSource getUnderlying() {
+    return _underlying;
+  }
+
+  /**
+   * Gets the coalescer of position lookups, for monitoring.
+   *
+   * @return the coalescer, not null
+   */
+  public BulkRequestCoalescer<UniqueId, Position> getPositionLookups() {
+    return _positionLookups;
+  }
+
+  /**
+   * Gets the coalescer of trade lookups, for monitoring.
+   *
+   * @return the coalescer, not null
+   */
+  public BulkRequestCoalescer<UniqueId, Trade> getTradeLookups() {
+    return _tradeLookups;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Loads a position from the underlying.
+   *
+   * @param uniqueId  the unique identifier, not null
+   * @return the position, null if not found
+   */
+  protected Position getPositionImpl(final UniqueId uniqueId) {
+    try {
+      return getUnderlying().getPosition(uniqueId);
+    } catch (DataNotFoundException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Loads several positions from the underlying.
+   *
+   * @param uniqueIds  the distinct unique identifiers, not null
+   * @return the positions found, keyed by the requested identifiers, not null
+   */
+  protected Map<UniqueId, Position> getPositionsImpl(final Collection<UniqueId> uniqueIds) {
+    if (getUnderlying() instanceof RemotePositionSource) {
+      return ((RemotePositionSource) getUnderlying()).getPositions(uniqueIds);
+    }
+    final Map<UniqueId, Position> result = new HashMap<UniqueId, Position>();
+    for (UniqueId uniqueId : uniqueIds) {
+      final Position position = getPositionImpl(uniqueId);
+      if (position != null) {
+        result.put(uniqueId, position);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Loads a trade from the underlying.
+   *
+   * @param uniqueId  the unique identifier, not null
+   * @return the trade, null if not found
+   */
+  protected Trade getTradeImpl(final UniqueId uniqueId) {
+    try {
+      return getUnderlying().getTrade(uniqueId);
+    } catch (DataNotFoundException ex) {
+      return null;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public Portfolio getPortfolio(final UniqueId uniqueId) {
+    return getUnderlying().getPortfolio(uniqueId);
+  }
+
+  @Override
+  public Portfolio getPortfolio(final ObjectId objectId, final VersionCorrection versionCorrection) {
+    return getUnderlying().getPortfolio(objectId, versionCorrection);
+  }
+
+  @Override
+  public PortfolioNode getPortfolioNode(final UniqueId uniqueId) {
+    return getUnderlying().getPortfolioNode(uniqueId);
+  }
+
+  @Override
+  public Position getPosition(final UniqueId uniqueId) {
+    ArgumentChecker.notNull(uniqueId, "uniqueId");
+    final Position position = _positionLookups.get(uniqueId);
+    if (position == null) {
+      throw new DataNotFoundException("Unable to find position: " + uniqueId);
+    }
+    return position;
+  }
+
+  /**
+   * Gets several positions, coalescing the lookups with any made concurrently.
+   *
+   * @param uniqueIds  the unique identifiers, not null
+   * @return the positions found, keyed by unique identifier, with those not found omitted, not null
+   */
+  public Map<UniqueId, Position> getPositions(final Collection<UniqueId> uniqueIds) {
+    return _positionLookups.getAll(uniqueIds);
+  }
+
+  @Override
+  public Trade getTrade(final UniqueId uniqueId) {
+    ArgumentChecker.notNull(uniqueId, "uniqueId");
+    final Trade trade = _tradeLookups.get(uniqueId);
+    if (trade == null) {
+      throw new DataNotFoundException("Unable to find trade: " + uniqueId);
+    }
+    return trade;
+  }
+
+  /**
+   * Gets several trades, coalescing the lookups with any made concurrently.
+   *
+   * @param uniqueIds  the unique identifiers, not null
+   * @return the trades found, keyed by unique identifier, with those not found omitted, not null
+   */
+  public Map<UniqueId, Trade> getTrades(final Collection<UniqueId> uniqueIds) {
+    return _tradeLookups.getAll(uniqueIds);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public ChangeManager changeManager() {
+    return getUnderlying().changeManager();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + getUnderlying() + "]";
+  }
+
+}
@@ -6,8 +6,11 @@
 package com.opengamma.core.position.impl;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
@@ -16,6 +19,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import com.opengamma.DataNotFoundException;
 import com.opengamma.core.position.Portfolio;
 import com.opengamma.core.position.PortfolioNode;
 import com.opengamma.core.position.Position;
@@ -25,6 +29,7 @@ import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.opengamma.util.rest.AbstractDataResource;
 
 /**
@@ -104,6 +109,20 @@ public class DataPositionSourceResource extends AbstractDataResource {
     return responseOkFudge(result);
   }
 
+  @POST
+  @Path("positionSearches/bulk")
+  public Response getPositions(FudgeListWrapper<UniqueId> request) {
+    final List<Position> result = new ArrayList<Position>(request.getList().size());
+    for (UniqueId uniqueId : request.getList()) {
+      try {
+        result.add(getPositionSource().getPosition(uniqueId));
+      } catch (DataNotFoundException ex) {
+        // omitted from the result
+      }
+    }
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
   @GET
   @Path("trades/{tradeId}")
   public Response getTrade(
@@ -177,6 +196,17 @@ public class DataPositionSourceResource extends AbstractDataResource {
     return bld.build(uniqueId.getObjectId());
   }
 
+  /**
+   * Builds a URI for the bulk lookup of positions, with the identifiers sent as a {@link FudgeListWrapper}.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriGetPositions(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("positionSearches/bulk");
+    return bld.build();
+  }
+
   /**
    * Builds a URI.
    * 
@@ -6,7 +6,12 @@
 package com.opengamma.core.position.impl;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import com.opengamma.DataNotFoundException;
 import com.opengamma.core.change.BasicChangeManager;
 import com.opengamma.core.change.ChangeManager;
 import com.opengamma.core.position.Portfolio;
@@ -18,10 +23,15 @@ import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.opengamma.util.rest.AbstractRemoteClient;
+import com.opengamma.util.rest.BulkRequestCoalescer;
+import com.opengamma.util.rest.UniformInterfaceException404NotFound;
 
 /**
  * Provides remote access to an {@link PositionSource}.
+ * <p>
+ * Position lookups that are made concurrently are coalesced into bulk requests.
  */
 public class RemotePositionSource extends AbstractRemoteClient implements PositionSource {
 
@@ -29,6 +39,44 @@ public class RemotePositionSource extends AbstractRemoteClient implements Positi
    * The change manager.
    */
   private final ChangeManager _changeManager;
+  /**
+   * The coalescer of position lookups.
+   */
+  private final BulkRequestCoalescer<UniqueId, Position> _positionLookups =
+      new BulkRequestCoalescer<UniqueId, Position>(BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE) {
+        @Override
+        protected Position loadSingle(final UniqueId uniqueId) {
+          try {
+            return accessRemote(DataPositionSourceResource.uriGetPosition(getBaseUri(), uniqueId)).get(Position.class);
+          } catch (DataNotFoundException ex) {
+            return null;
+          } catch (UniformInterfaceException404NotFound ex) {
+            return null;
+          }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Map<UniqueId, Position> loadBulk(final Collection<UniqueId> uniqueIds) {
+          URI uri = DataPositionSourceResource.uriGetPositions(getBaseUri());
+          List<Position> list = accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(uniqueIds)).getList();
+          Map<UniqueId, Position> byUniqueId = new HashMap<UniqueId, Position>(list.size());
+          Map<ObjectId, Position> byObjectId = new HashMap<ObjectId, Position>(list.size());
+          for (Position position : list) {
+            byUniqueId.put(position.getUniqueId(), position);
+            byObjectId.put(position.getUniqueId().getObjectId(), position);
+          }
+          // an unversioned identifier is matched by the latest version returned for it
+          Map<UniqueId, Position> result = new HashMap<UniqueId, Position>(list.size());
+          for (UniqueId uniqueId : uniqueIds) {
+            Position position = uniqueId.isLatest() ? byObjectId.get(uniqueId.getObjectId()) : byUniqueId.get(uniqueId);
+            if (position != null) {
+              result.put(uniqueId, position);
+            }
+          }
+          return result;
+        }
+      };
 
   /**
    * Creates an instance.
@@ -81,8 +129,23 @@ public class RemotePositionSource extends AbstractRemoteClient implements Positi
   public Position getPosition(UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
     
-    URI uri = DataPositionSourceResource.uriGetPosition(getBaseUri(), uniqueId);
-    return accessRemote(uri).get(Position.class);
+    Position position = _positionLookups.get(uniqueId);
+    if (position == null) {
+      throw new DataNotFoundException("Position not found: " + uniqueId);
+    }
+    return position;
+  }
+
+  /**
+   * Gets several positions in as few round trips as possible.
+   * 
+   * @param uniqueIds  the unique identifiers to find, not null
+   * @return the positions found, keyed by unique identifier, with those not found omitted, not null
+   */
+  public Map<UniqueId, Position> getPositions(Collection<UniqueId> uniqueIds) {
+    ArgumentChecker.notNull(uniqueIds, "uniqueIds");
+    
+    return _positionLookups.getAll(uniqueIds);
   }
 
   @Override
@@ -7,10 +7,13 @@ package com.opengamma.core.security.impl;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
@@ -19,8 +22,11 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.FudgeMsgEnvelope;
 import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
 
 import com.opengamma.core.security.Security;
 import com.opengamma.core.security.SecuritySource;
@@ -31,6 +37,7 @@ import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.fudgemsg.FudgeListWrapper;
+import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
 import com.opengamma.util.rest.AbstractDataResource;
 
@@ -112,6 +119,38 @@ public class DataSecuritySourceResource extends AbstractDataResource {
     return responseOkFudge(FudgeListWrapper.of(result.values()));
   }
 
+  @POST
+  @Path("securitySearches/bulk")
+  public Response getBulk(FudgeListWrapper<UniqueId> request) {
+    // variant using POST to avoid very long URIs
+    Map<UniqueId, Security> result = getSecuritySource().getSecurities(request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result.values()));
+  }
+
+  @SuppressWarnings("unchecked")
+  @POST
+  @Path("securitySearches/bundles")
+  public Response searchBundles(FudgeMsgEnvelope request) {
+    FudgeMsg msg = request.getMessage();
+    FudgeDeserializer deserializationContext = new FudgeDeserializer(OpenGammaFudgeContext.getInstance());
+    Set<ExternalIdBundle> bundles = deserializationContext.fudgeMsgToObject(Set.class, msg.getMessage("id"));
+    String versionAsOf = msg.getString("versionAsOf");
+    String correctedTo = msg.getString("correctedTo");
+    Map<ExternalIdBundle, Security> result = new HashMap<ExternalIdBundle, Security>();
+    for (ExternalIdBundle bundle : bundles) {
+      final Security security;
+      if (versionAsOf != null || correctedTo != null) {
+        security = getSecuritySource().getSecurity(bundle, VersionCorrection.parse(versionAsOf, correctedTo));
+      } else {
+        security = getSecuritySource().getSecurity(bundle);
+      }
+      if (security != null) {
+        result.put(bundle, security);
+      }
+    }
+    return responseOkFudge(FudgeMapWrapper.of(result));
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Builds a URI.
@@ -176,6 +215,46 @@ public class DataSecuritySourceResource extends AbstractDataResource {
     return bld.build();
   }
 
+  /**
+   * Builds a URI for the POST variant of the bulk lookup, with the identifiers sent as a {@link FudgeListWrapper}.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriBulk(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("securitySearches/bulk");
+    return bld.build();
+  }
+
+  /**
+   * Builds a URI for the lookup of many bundles.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriSearchBundles(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("securitySearches/bundles");
+    return bld.build();
+  }
+
+  /**
+   * Builds the message for the lookup of many bundles.
+   * 
+   * @param bundles  the bundles, not null
+   * @param vc  the version-correction, null to use the lookup without version-correction
+   * @return the message, not null
+   */
+  public static FudgeMsg uriSearchBundlesData(Set<ExternalIdBundle> bundles, VersionCorrection vc) {
+    FudgeSerializer serializationContext = new FudgeSerializer(OpenGammaFudgeContext.getInstance());
+    MutableFudgeMsg msg = serializationContext.newMessage();
+    serializationContext.addToMessage(msg, "id", null, bundles);
+    if (vc != null) {
+      serializationContext.addToMessage(msg, "versionAsOf", null, vc.getVersionAsOfString());
+      serializationContext.addToMessage(msg, "correctedTo", null, vc.getCorrectedToString());
+    }
+    return msg;
+  }
+
   // deprecated
   //-------------------------------------------------------------------------
   @GET
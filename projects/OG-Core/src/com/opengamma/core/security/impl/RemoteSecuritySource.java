@@ -6,10 +6,13 @@
 package com.opengamma.core.security.impl;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.opengamma.DataNotFoundException;
 import com.opengamma.core.change.BasicChangeManager;
@@ -22,11 +25,17 @@ import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.fudgemsg.FudgeListWrapper;
+import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.opengamma.util.rest.AbstractRemoteClient;
+import com.opengamma.util.rest.BulkRequestCoalescer;
 import com.opengamma.util.rest.UniformInterfaceException404NotFound;
+import com.opengamma.util.tuple.Pair;
 
 /**
  * Provides remote access to an {@link SecuritySource}.
+ * <p>
+ * Lookups by unique identifier and by single bundle that are made concurrently are coalesced into bulk
+ * requests, so that many threads resolving securities share round trips to the server.
  */
 public class RemoteSecuritySource extends AbstractRemoteClient implements SecuritySource {
 
@@ -34,6 +43,85 @@ public class RemoteSecuritySource extends AbstractRemoteClient implements Securi
    * The change manager.
    */
   private final ChangeManager _changeManager;
+  /**
+   * The coalescer of lookups by unique identifier.
+   */
+  private final BulkRequestCoalescer<UniqueId, Security> _uniqueIdLookups =
+      new BulkRequestCoalescer<UniqueId, Security>(BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE) {
+        @Override
+        protected Security loadSingle(final UniqueId uniqueId) {
+          try {
+            return accessRemote(DataSecuritySourceResource.uriGet(getBaseUri(), uniqueId)).get(Security.class);
+          } catch (DataNotFoundException ex) {
+            return null;
+          } catch (UniformInterfaceException404NotFound ex) {
+            return null;
+          }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Map<UniqueId, Security> loadBulk(final Collection<UniqueId> uniqueIds) {
+          URI uri = DataSecuritySourceResource.uriBulk(getBaseUri());
+          List<Security> list = accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(uniqueIds)).getList();
+          Map<UniqueId, Security> byUniqueId = new HashMap<UniqueId, Security>(list.size());
+          Map<ObjectId, Security> byObjectId = new HashMap<ObjectId, Security>(list.size());
+          for (Security security : list) {
+            byUniqueId.put(security.getUniqueId(), security);
+            byObjectId.put(security.getUniqueId().getObjectId(), security);
+          }
+          // an unversioned identifier is matched by the latest version returned for it
+          Map<UniqueId, Security> result = new HashMap<UniqueId, Security>(list.size());
+          for (UniqueId uniqueId : uniqueIds) {
+            Security security = uniqueId.isLatest() ? byObjectId.get(uniqueId.getObjectId()) : byUniqueId.get(uniqueId);
+            if (security != null) {
+              result.put(uniqueId, security);
+            }
+          }
+          return result;
+        }
+      };
+  /**
+   * The coalescer of lookups of a single security by bundle, keyed by bundle and version-correction, which may be null.
+   */
+  private final BulkRequestCoalescer<Pair<ExternalIdBundle, VersionCorrection>, Security> _bundleLookups =
+      new BulkRequestCoalescer<Pair<ExternalIdBundle, VersionCorrection>, Security>(BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE) {
+        @Override
+        protected Security loadSingle(final Pair<ExternalIdBundle, VersionCorrection> key) {
+          try {
+            URI uri = DataSecuritySourceResource.uriSearchSingle(getBaseUri(), key.getFirst(), key.getSecond());
+            return accessRemote(uri).get(Security.class);
+          } catch (DataNotFoundException ex) {
+            return null;
+          } catch (UniformInterfaceException404NotFound ex) {
+            return null;
+          }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected Map<Pair<ExternalIdBundle, VersionCorrection>, Security> loadBulk(final Collection<Pair<ExternalIdBundle, VersionCorrection>> keys) {
+          final Map<VersionCorrection, Set<ExternalIdBundle>> byVersionCorrection = new HashMap<VersionCorrection, Set<ExternalIdBundle>>();
+          for (Pair<ExternalIdBundle, VersionCorrection> key : keys) {
+            Set<ExternalIdBundle> bundles = byVersionCorrection.get(key.getSecond());
+            if (bundles == null) {
+              bundles = new HashSet<ExternalIdBundle>();
+              byVersionCorrection.put(key.getSecond(), bundles);
+            }
+            bundles.add(key.getFirst());
+          }
+          final Map<Pair<ExternalIdBundle, VersionCorrection>, Security> result = new HashMap<Pair<ExternalIdBundle, VersionCorrection>, Security>();
+          for (Map.Entry<VersionCorrection, Set<ExternalIdBundle>> entry : byVersionCorrection.entrySet()) {
+            URI uri = DataSecuritySourceResource.uriSearchBundles(getBaseUri());
+            Map<ExternalIdBundle, Security> found = accessRemote(uri).post(FudgeMapWrapper.class,
+                DataSecuritySourceResource.uriSearchBundlesData(entry.getValue(), entry.getKey())).getMap();
+            for (Map.Entry<ExternalIdBundle, Security> security : found.entrySet()) {
+              result.put(Pair.of(security.getKey(), entry.getKey()), security.getValue());
+            }
+          }
+          return result;
+        }
+      };
 
   /**
    * Creates an instance.
@@ -61,8 +149,11 @@ public class RemoteSecuritySource extends AbstractRemoteClient implements Securi
   public Security getSecurity(final UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
     
-    URI uri = DataSecuritySourceResource.uriGet(getBaseUri(), uniqueId);
-    return accessRemote(uri).get(Security.class);
+    Security security = _uniqueIdLookups.get(uniqueId);
+    if (security == null) {
+      throw new DataNotFoundException("Security not found: " + uniqueId);
+    }
+    return security;
   }
 
   @Override
@@ -84,18 +175,11 @@ public class RemoteSecuritySource extends AbstractRemoteClient implements Securi
     return accessRemote(uri).get(FudgeListWrapper.class).getList();
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Map<UniqueId, Security> getSecurities(final Collection<UniqueId> uniqueIds) {
     ArgumentChecker.notNull(uniqueIds, "uniqueIds");
     
-    URI uri = DataSecuritySourceResource.uriBulk(getBaseUri(), uniqueIds);
-    List<Security> list = accessRemote(uri).get(FudgeListWrapper.class).getList();
-    Map<UniqueId, Security> result = new HashMap<UniqueId, Security>(list.size());
-    for (Security security : list) {
-      result.put(security.getUniqueId(), security);
-    }
-    return result;
+    return _uniqueIdLookups.getAll(uniqueIds);
   }
 
   @Override
@@ -117,14 +201,7 @@ public class RemoteSecuritySource extends AbstractRemoteClient implements Securi
   public Security getSecurity(final ExternalIdBundle bundle) {
     ArgumentChecker.notNull(bundle, "bundle");
     
-    try {
-      URI uri = DataSecuritySourceResource.uriSearchSingle(getBaseUri(), bundle, null);
-      return accessRemote(uri).get(Security.class);
-    } catch (DataNotFoundException ex) {
-      return null;
-    } catch (UniformInterfaceException404NotFound ex) {
-      return null;
-    }
+    return _bundleLookups.get(Pair.of(bundle, (VersionCorrection) null));
   }
 
   @Override
@@ -132,14 +209,29 @@ public class RemoteSecuritySource extends AbstractRemoteClient implements Securi
     ArgumentChecker.notNull(bundle, "bundle");
     ArgumentChecker.notNull(versionCorrection, "versionCorrection");
     
-    try {
-      URI uri = DataSecuritySourceResource.uriSearchSingle(getBaseUri(), bundle, versionCorrection);
-      return accessRemote(uri).get(Security.class);
-    } catch (DataNotFoundException ex) {
-      return null;
-    } catch (UniformInterfaceException404NotFound ex) {
-      return null;
+    return _bundleLookups.get(Pair.of(bundle, versionCorrection));
+  }
+
+  /**
+   * Gets a single security for each of several bundles in as few round trips as possible.
+   * 
+   * @param bundles  the bundles to search for, not null
+   * @param versionCorrection  the version-correction, null to search without one
+   * @return the securities found, keyed by bundle, with bundles that match nothing omitted, not null
+   */
+  public Map<ExternalIdBundle, Security> getSingleSecurities(final Collection<ExternalIdBundle> bundles, final VersionCorrection versionCorrection) {
+    ArgumentChecker.notNull(bundles, "bundles");
+    
+    final List<Pair<ExternalIdBundle, VersionCorrection>> keys = new ArrayList<Pair<ExternalIdBundle, VersionCorrection>>(bundles.size());
+    for (ExternalIdBundle bundle : bundles) {
+      keys.add(Pair.of(bundle, versionCorrection));
     }
+    final Map<Pair<ExternalIdBundle, VersionCorrection>, Security> found = _bundleLookups.getAll(keys);
+    final Map<ExternalIdBundle, Security> result = new HashMap<ExternalIdBundle, Security>(found.size());
+    for (Map.Entry<Pair<ExternalIdBundle, VersionCorrection>, Security> entry : found.entrySet()) {
+      result.put(entry.getKey().getFirst(), entry.getValue());
+    }
+    return result;
   }
 
 }
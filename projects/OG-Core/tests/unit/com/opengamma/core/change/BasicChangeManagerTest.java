@@ -7,6 +7,14 @@ package com.opengamma.core.change;
 
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.time.Instant;
 
@@ -24,6 +32,7 @@ public class BasicChangeManagerTest {
   private static final Instant NOW = Instant.now();
   private static final UniqueId UID_A_B_1 = UniqueId.of("A", "B", "1");
   private static final UniqueId UID_A_B_2 = UniqueId.of("A", "B", "2");
+  private static final UniqueId UID_A_C_1 = UniqueId.of("A", "C", "1");
 
   private BasicChangeManager _changeManager;
   private ChangeListener _testListener;
@@ -111,4 +120,110 @@ public class BasicChangeManagerTest {
     _changeManager.entityChanged(ChangeType.CORRECTED, UID_A_B_1, UID_A_B_2, NOW);
   }
 
+  //-------------------------------------------------------------------------
+  public void test_batch_flush() {
+    final BasicChangeManager test = new BasicChangeManager(60000);
+    final List<ChangeEvent> received = new CopyOnWriteArrayList<ChangeEvent>();
+    test.addChangeListener(new ChangeListener() {
+      @Override
+      public void entityChanged(ChangeEvent event) {
+        received.add(event);
+      }
+    });
+    test.entityChanged(ChangeType.ADDED, null, UID_A_B_1, NOW);
+    test.entityChanged(ChangeType.ADDED, null, UID_A_C_1, NOW);
+    test.entityChanged(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, NOW);
+    assertEquals(0, received.size());
+    test.flush();
+    assertEquals(2, received.size());
+    assertEquals(new ChangeEvent(ChangeType.ADDED, null, UID_A_B_2, NOW), received.get(0));
+    assertEquals(new ChangeEvent(ChangeType.ADDED, null, UID_A_C_1, NOW), received.get(1));
+    assertEquals(3, test.getPublishedEventCount());
+    assertEquals(1, test.getFiredBatchCount());
+    assertEquals(2, test.getFiredEventCount());
+    assertEquals(2, test.getMaxBatchSize());
+    test.flush();
+    assertEquals(2, received.size());
+  }
+
+  public void test_batch_window() throws Exception {
+    final BasicChangeManager test = new BasicChangeManager(10);
+    final CountDownLatch latch = new CountDownLatch(1);
+    test.addChangeListener(new ChangeListener() {
+      @Override
+      public void entityChanged(ChangeEvent event) {
+        latch.countDown();
+      }
+    });
+    test.entityChanged(ChangeType.ADDED, null, UID_A_B_1, NOW);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(test.getMeanBatchDelayMillis() > 0);
+  }
+
+  public void test_batch_slowListenerDoesNotDelayOtherManagers() throws Exception {
+    final BasicChangeManager slow = new BasicChangeManager(10);
+    final BasicChangeManager other = new BasicChangeManager(10);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch slowStarted = new CountDownLatch(1);
+    final CountDownLatch otherReceived = new CountDownLatch(1);
+    slow.addChangeListener(new ChangeListener() {
+      @Override
+      public void entityChanged(ChangeEvent event) {
+        slowStarted.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    });
+    other.addChangeListener(new ChangeListener() {
+      @Override
+      public void entityChanged(ChangeEvent event) {
+        otherReceived.countDown();
+      }
+    });
+    try {
+      slow.entityChanged(ChangeType.ADDED, null, UID_A_B_1, NOW);
+      assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+      other.entityChanged(ChangeType.ADDED, null, UID_A_C_1, NOW);
+      assertTrue(otherReceived.await(5, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  public void test_listenerExecutor() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(3);
+      final List<ChangeEvent> received = new CopyOnWriteArrayList<ChangeEvent>();
+      _changeManager.addChangeListener(new ChangeListener() {
+        @Override
+        public void entityChanged(ChangeEvent event) {
+          try {
+            release.await();
+          } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+          }
+          received.add(event);
+          done.countDown();
+        }
+      }, executor);
+      _changeManager.entityChanged(ChangeType.ADDED, null, UID_A_B_1, NOW);
+      _changeManager.entityChanged(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, NOW);
+      _changeManager.entityChanged(ChangeType.ADDED, null, UID_A_C_1, NOW);
+      // the slow listener has not blocked the publishing thread
+      assertEquals(0, received.size());
+      release.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(UID_A_B_1, received.get(0).getAfterId());
+      assertEquals(UID_A_B_2, received.get(1).getAfterId());
+      assertEquals(UID_A_C_1, received.get(2).getAfterId());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
 }
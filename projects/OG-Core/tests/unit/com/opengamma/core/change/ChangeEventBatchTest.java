@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.change;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import javax.time.Instant;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+
+/**
+ * Test {@link ChangeEventBatch}.
+ */
+@Test
+public class ChangeEventBatchTest {
+
+  private static final Instant T1 = Instant.ofEpochMillis(1000);
+  private static final Instant T2 = Instant.ofEpochMillis(2000);
+  private static final UniqueId UID_A_B_1 = UniqueId.of("A", "B", "1");
+  private static final UniqueId UID_A_B_2 = UniqueId.of("A", "B", "2");
+  private static final UniqueId UID_A_B_3 = UniqueId.of("A", "B", "3");
+  private static final UniqueId UID_A_C_1 = UniqueId.of("A", "C", "1");
+
+  public void test_empty() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    assertTrue(test.isEmpty());
+    assertEquals(0, test.size());
+    assertEquals(0, test.getEvents().size());
+  }
+
+  public void test_distinctObjects() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    test.add(new ChangeEvent(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, T1));
+    test.add(new ChangeEvent(ChangeType.REMOVED, UID_A_C_1, null, T2));
+    assertEquals(2, test.size());
+    assertEquals(2, test.getAddedCount());
+    assertEquals(UID_A_B_2, test.getEvents().get(0).getAfterId());
+    assertEquals(UID_A_C_1, test.getEvents().get(1).getBeforeId());
+  }
+
+  public void test_merge_updates() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    test.add(new ChangeEvent(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, T1));
+    test.add(new ChangeEvent(ChangeType.CORRECTED, UID_A_B_2, UID_A_B_3, T2));
+    assertEquals(1, test.size());
+    assertEquals(2, test.getAddedCount());
+    assertEquals(new ChangeEvent(ChangeType.CORRECTED, UID_A_B_1, UID_A_B_3, T2), test.getEvents().get(0));
+  }
+
+  public void test_merge_addedThenUpdated() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    test.add(new ChangeEvent(ChangeType.ADDED, null, UID_A_B_1, T1));
+    test.add(new ChangeEvent(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, T2));
+    assertEquals(new ChangeEvent(ChangeType.ADDED, null, UID_A_B_2, T2), test.getEvents().get(0));
+  }
+
+  public void test_merge_addedThenRemoved() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    test.add(new ChangeEvent(ChangeType.ADDED, null, UID_A_B_1, T1));
+    test.add(new ChangeEvent(ChangeType.REMOVED, UID_A_B_1, null, T2));
+    assertEquals(new ChangeEvent(ChangeType.REMOVED, UID_A_B_1, null, T2), test.getEvents().get(0));
+  }
+
+  public void test_merge_updatedThenRemoved() {
+    final ChangeEventBatch test = new ChangeEventBatch();
+    test.add(new ChangeEvent(ChangeType.UPDATED, UID_A_B_1, UID_A_B_2, T1));
+    test.add(new ChangeEvent(ChangeType.REMOVED, UID_A_B_2, null, T2));
+    assertEquals(new ChangeEvent(ChangeType.REMOVED, UID_A_B_1, null, T2), test.getEvents().get(0));
+  }
+
+}
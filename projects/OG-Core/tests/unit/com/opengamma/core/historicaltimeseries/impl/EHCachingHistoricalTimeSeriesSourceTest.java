@@ -10,12 +10,23 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.time.calendar.LocalDate;
 
 import com.opengamma.core.change.BasicChangeManager;
 import net.sf.ehcache.CacheManager;
 
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -86,5 +97,58 @@ public class EHCachingHistoricalTimeSeriesSourceTest {
     verify(_underlyingSource, times(1)).getExternalIdBundle(UID);
   }
 
+  //-------------------------------------------------------------------------
+  private EHCachingHistoricalTimeSeriesSource weightedCachingSource() {
+    return new EHCachingHistoricalTimeSeriesSource(_underlyingSource, 1024 * 1024, 1024 * 1024);
+  }
+
+  public void getHistoricalTimeSeries_UniqueId_weighted() {
+    final HistoricalTimeSeries series = new SimpleHistoricalTimeSeries(UID, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {LocalDate.of(2011, 6, 30) }, new double[] {12.34d }));
+    when(_underlyingSource.getHistoricalTimeSeries(UID)).thenReturn(series);
+    final EHCachingHistoricalTimeSeriesSource cachingSource = weightedCachingSource();
+    assertSame(series, cachingSource.getHistoricalTimeSeries(UID));
+    assertSame(series, cachingSource.getHistoricalTimeSeries(UID));
+    verify(_underlyingSource, times(1)).getHistoricalTimeSeries(UID);
+    assertEquals(1, cachingSource.getWeightedDataCache().getLoadCount());
+  }
+
+  public void getHistoricalTimeSeries_UniqueId_weightedMiss() {
+    final EHCachingHistoricalTimeSeriesSource cachingSource = weightedCachingSource();
+    assertNull(cachingSource.getHistoricalTimeSeries(UID));
+    assertNull(cachingSource.getHistoricalTimeSeries(UID));
+    verify(_underlyingSource, times(1)).getHistoricalTimeSeries(UID);
+  }
+
+  public void getHistoricalTimeSeries_UniqueId_weightedConcurrentMissesShareLoad() throws Exception {
+    final HistoricalTimeSeries series = new SimpleHistoricalTimeSeries(UID, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {LocalDate.of(2011, 6, 30) }, new double[] {12.34d }));
+    final CountDownLatch loading = new CountDownLatch(1);
+    when(_underlyingSource.getHistoricalTimeSeries(UID)).thenAnswer(new Answer<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries answer(final InvocationOnMock invocation) throws Exception {
+        loading.countDown();
+        Thread.sleep(200);
+        return series;
+      }
+    });
+    final EHCachingHistoricalTimeSeriesSource cachingSource = weightedCachingSource();
+    final Callable<HistoricalTimeSeries> lookup = new Callable<HistoricalTimeSeries>() {
+      @Override
+      public HistoricalTimeSeries call() {
+        return cachingSource.getHistoricalTimeSeries(UID);
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<HistoricalTimeSeries> first = executor.submit(lookup);
+      loading.await();
+      final Future<HistoricalTimeSeries> second = executor.submit(lookup);
+      assertSame(series, first.get(5, TimeUnit.SECONDS));
+      assertSame(series, second.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(_underlyingSource, times(1)).getHistoricalTimeSeries(UID);
+  }
+
 
 }
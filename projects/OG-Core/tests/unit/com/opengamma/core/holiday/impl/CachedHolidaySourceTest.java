@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.holiday.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.time.Instant;
+import javax.time.calendar.LocalDate;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.core.change.BasicChangeManager;
+import com.opengamma.core.change.ChangeManager;
+import com.opengamma.core.change.ChangeType;
+import com.opengamma.core.holiday.HolidaySource;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.money.Currency;
+
+/**
+ * Test {@link CachedHolidaySource}.
+ */
+@Test
+public class CachedHolidaySourceTest {
+
+  private static final LocalDate CHRISTMAS = LocalDate.of(2012, 12, 25);
+  private static final LocalDate BOXING_DAY = LocalDate.of(2012, 12, 26);
+  private static final Set<Currency> GBP = Collections.singleton(Currency.GBP);
+
+  private HolidayBitSetSource _underlyingSource;
+  private ChangeManager _changeManager;
+  private CachedHolidaySource _cachingSource;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    _underlyingSource = mock(HolidayBitSetSource.class);
+    _changeManager = new BasicChangeManager();
+    _cachingSource = new CachedHolidaySource(_underlyingSource, _changeManager);
+    when(_underlyingSource.getHolidayBitSet(GBP, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE)).thenReturn(
+        HolidayBitSet.of(HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE, true, Collections.singleton(CHRISTMAS)));
+  }
+
+  public void isHoliday_loadsBitSetOnce() {
+    assertTrue(_cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    assertFalse(_cachingSource.isHoliday(BOXING_DAY, Currency.GBP));
+    assertTrue(_cachingSource.isHoliday(LocalDate.of(2012, 12, 22), Currency.GBP));
+    verify(_underlyingSource, times(1)).getHolidayBitSet(GBP, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+    verify(_underlyingSource, times(0)).isHoliday(CHRISTMAS, Currency.GBP);
+  }
+
+  public void isHoliday_outsideRange() {
+    final LocalDate date = LocalDate.of(2100, 12, 25);
+    when(_underlyingSource.isHoliday(date, Currency.GBP)).thenReturn(true);
+    assertTrue(_cachingSource.isHoliday(date, Currency.GBP));
+    assertTrue(_cachingSource.isHoliday(date, Currency.GBP));
+    verify(_underlyingSource, times(1)).isHoliday(date, Currency.GBP);
+  }
+
+  public void isHoliday_notBitSetSource() {
+    final HolidaySource underlying = mock(HolidaySource.class);
+    final CachedHolidaySource cachingSource = new CachedHolidaySource(underlying);
+    when(underlying.isHoliday(CHRISTMAS, Currency.GBP)).thenReturn(true);
+    assertTrue(cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    assertTrue(cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    verify(underlying, times(1)).isHoliday(CHRISTMAS, Currency.GBP);
+  }
+
+  public void getHolidayBitSet_union() {
+    when(_underlyingSource.getHolidayBitSet(Collections.singleton(Currency.EUR), HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE)).thenReturn(
+        HolidayBitSet.of(HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE, true, Collections.singleton(BOXING_DAY)));
+    final Set<Currency> currencies = new HashSet<Currency>();
+    currencies.add(Currency.GBP);
+    currencies.add(Currency.EUR);
+    final HolidayBitSet union = _cachingSource.getHolidayBitSet(currencies, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+    assertTrue(union.isHoliday(CHRISTMAS));
+    assertTrue(union.isHoliday(BOXING_DAY));
+    assertFalse(union.isHoliday(LocalDate.of(2012, 12, 27)));
+  }
+
+  public void changeEvent_clearsCache() {
+    assertTrue(_cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    _changeManager.entityChanged(ChangeType.UPDATED, UniqueId.of("Hol", "1", "0"), UniqueId.of("Hol", "1", "1"), Instant.now());
+    assertTrue(_cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    verify(_underlyingSource, times(2)).getHolidayBitSet(GBP, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+  }
+
+  public void clearDuringLoad_notCached() {
+    final HolidayBitSet stale = HolidayBitSet.of(HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE, true, Collections.singleton(CHRISTMAS));
+    final HolidayBitSet fresh = HolidayBitSet.of(HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE, true, Collections.singleton(BOXING_DAY));
+    when(_underlyingSource.getHolidayBitSet(GBP, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE)).thenAnswer(new Answer<HolidayBitSet>() {
+      private int _calls;
+
+      @Override
+      public HolidayBitSet answer(final InvocationOnMock invocation) {
+        if (_calls++ == 0) {
+          // The underlying data changes while the first load is in progress
+          _cachingSource.clear();
+          return stale;
+        }
+        return fresh;
+      }
+    });
+    assertTrue(_cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    assertFalse(_cachingSource.isHoliday(CHRISTMAS, Currency.GBP));
+    assertTrue(_cachingSource.isHoliday(BOXING_DAY, Currency.GBP));
+    verify(_underlyingSource, times(2)).getHolidayBitSet(GBP, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+  }
+
+}
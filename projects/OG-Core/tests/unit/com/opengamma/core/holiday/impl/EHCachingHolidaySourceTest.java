@@ -9,7 +9,14 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertSame;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.time.calendar.LocalDate;
+
 import net.sf.ehcache.CacheManager;
 
 import org.testng.annotations.BeforeMethod;
@@ -21,6 +28,7 @@ import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ehcache.EHCacheUtils;
+import com.opengamma.util.money.Currency;
 
 /**
  * Test {@link EHCachingHolidaySource}.
@@ -59,4 +67,19 @@ public class EHCachingHolidaySourceTest {
     verify(_underlyingSource, times(1)).getHoliday(OID, VC);
   }
 
+  public void getHolidayBitSet() {
+    final HolidayBitSetSource underlying = mock(HolidayBitSetSource.class);
+    final EHCachingHolidaySource cachingSource = new EHCachingHolidaySource(underlying, EHCacheUtils.createCacheManager());
+    final Set<Currency> gbp = Collections.singleton(Currency.GBP);
+    final HolidayBitSet bitSet = HolidayBitSet.of(HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE, true, Collections.singleton(LocalDate.of(2012, 12, 25)));
+    when(underlying.getHolidayBitSet(gbp, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE)).thenReturn(bitSet);
+    assertSame(bitSet, cachingSource.getHolidayBitSet(gbp, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE));
+    assertSame(bitSet, cachingSource.getHolidayBitSet(gbp, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE));
+    verify(underlying, times(1)).getHolidayBitSet(gbp, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+  }
+
+  public void getHolidayBitSet_notBitSetSource() {
+    assertNull(_cachingSource.getHolidayBitSet(Collections.singleton(Currency.GBP), HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE));
+  }
+
 }
@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.holiday.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.time.calendar.LocalDate;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link HolidayBitSet}.
+ */
+@Test
+public class HolidayBitSetTest {
+
+  private static final LocalDate START = LocalDate.of(2012, 1, 1);
+  private static final LocalDate END = LocalDate.of(2013, 1, 1);
+  private static final LocalDate CHRISTMAS = LocalDate.of(2012, 12, 25);
+  private static final LocalDate BOXING_DAY = LocalDate.of(2012, 12, 26);
+
+  private static final HolidayBitSet WEEKENDS = HolidayBitSet.of(START, END, true, Collections.<LocalDate>emptySet());
+  private static final HolidayBitSet CHRISTMAS_ONLY = HolidayBitSet.of(START, END, false, Collections.singleton(CHRISTMAS));
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_of_emptyRange() {
+    HolidayBitSet.of(START, START, true, Collections.<LocalDate>emptySet());
+  }
+
+  public void test_of_ignoresDatesOutsideRange() {
+    final HolidayBitSet test = HolidayBitSet.of(START, END, false, Arrays.asList(LocalDate.of(2011, 12, 31), END));
+    assertEquals(366, test.getWorkingDayCount());
+    assertEquals(START, test.getStartDate());
+    assertEquals(END, test.getEndDate());
+  }
+
+  public void test_isHoliday() {
+    assertTrue(WEEKENDS.isHoliday(LocalDate.of(2012, 12, 22)));  // Saturday
+    assertTrue(WEEKENDS.isHoliday(LocalDate.of(2012, 12, 23)));  // Sunday
+    assertFalse(WEEKENDS.isHoliday(CHRISTMAS));
+    assertTrue(WEEKENDS.isWorkingDay(CHRISTMAS));
+    assertTrue(CHRISTMAS_ONLY.isHoliday(CHRISTMAS));
+    assertFalse(CHRISTMAS_ONLY.isHoliday(LocalDate.of(2012, 12, 22)));
+    assertEquals(261, WEEKENDS.getWorkingDayCount());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_isHoliday_outsideRange() {
+    WEEKENDS.isHoliday(END);
+  }
+
+  public void test_covers() {
+    assertTrue(WEEKENDS.covers(START));
+    assertTrue(WEEKENDS.covers(LocalDate.of(2012, 12, 31)));
+    assertFalse(WEEKENDS.covers(END));
+    assertFalse(WEEKENDS.covers(LocalDate.of(2011, 12, 31)));
+  }
+
+  public void test_or() {
+    final HolidayBitSet test = WEEKENDS.or(CHRISTMAS_ONLY);
+    assertTrue(test.isHoliday(CHRISTMAS));
+    assertTrue(test.isHoliday(LocalDate.of(2012, 12, 22)));
+    assertEquals(260, test.getWorkingDayCount());
+    assertEquals(test, CHRISTMAS_ONLY.or(WEEKENDS));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_or_differentRange() {
+    WEEKENDS.or(HolidayBitSet.of(START, LocalDate.of(2013, 1, 2), true, Collections.<LocalDate>emptySet()));
+  }
+
+  public void test_nextWorkingDay() {
+    final HolidayBitSet test = HolidayBitSet.of(START, END, true, Arrays.asList(CHRISTMAS, BOXING_DAY));
+    assertEquals(LocalDate.of(2012, 12, 27), test.nextWorkingDay(LocalDate.of(2012, 12, 24)));
+    assertEquals(LocalDate.of(2012, 12, 24), test.nextWorkingDay(LocalDate.of(2012, 12, 21)));
+    assertEquals(LocalDate.of(2012, 12, 24), test.previousWorkingDay(LocalDate.of(2012, 12, 27)));
+    assertEquals(LocalDate.of(2012, 12, 31), test.nextWorkingDay(LocalDate.of(2012, 12, 28)));
+    assertNull(test.nextWorkingDay(LocalDate.of(2012, 12, 31)));
+    assertNull(test.previousWorkingDay(LocalDate.of(2012, 1, 2)));
+  }
+
+  public void test_addWorkingDays() {
+    final HolidayBitSet test = HolidayBitSet.of(START, END, true, Arrays.asList(CHRISTMAS, BOXING_DAY));
+    assertEquals(LocalDate.of(2012, 12, 21), test.addWorkingDays(LocalDate.of(2012, 12, 21), 0));
+    assertEquals(LocalDate.of(2012, 12, 27), test.addWorkingDays(LocalDate.of(2012, 12, 21), 2));
+    assertEquals(LocalDate.of(2012, 12, 24), test.addWorkingDays(CHRISTMAS, -1));
+    assertEquals(LocalDate.of(2012, 12, 27), test.addWorkingDays(CHRISTMAS, 1));
+    assertEquals(LocalDate.of(2012, 2, 1), test.addWorkingDays(LocalDate.of(2012, 1, 2), 22));
+    assertEquals(LocalDate.of(2012, 1, 2), test.addWorkingDays(LocalDate.of(2012, 2, 1), -22));
+    assertNull(test.addWorkingDays(LocalDate.of(2012, 12, 21), 10));
+  }
+
+  public void test_getWorkingDayCount() {
+    final HolidayBitSet test = HolidayBitSet.of(START, END, true, Arrays.asList(CHRISTMAS, BOXING_DAY));
+    assertEquals(4, test.getWorkingDayCount(LocalDate.of(2012, 12, 20), LocalDate.of(2012, 12, 28)));
+    assertEquals(-4, test.getWorkingDayCount(LocalDate.of(2012, 12, 28), LocalDate.of(2012, 12, 20)));
+    assertEquals(259, test.getWorkingDayCount(START, END));
+    assertEquals(0, test.getWorkingDayCount(CHRISTMAS, CHRISTMAS));
+  }
+
+}
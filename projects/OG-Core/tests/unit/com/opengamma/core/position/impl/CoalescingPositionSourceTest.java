@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.core.position.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.time.calendar.OffsetDateTime;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.Trade;
+import com.opengamma.core.security.impl.SimpleSecurityLink;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Test {@link CoalescingPositionSource}.
+ */
+@Test
+public class CoalescingPositionSourceTest {
+
+  private static final OffsetDateTime NOW = OffsetDateTime.now();
+
+  private static SimplePosition position(final String id) {
+    final SimplePosition position = new SimplePosition(UniqueId.of("Pos", id), BigDecimal.ONE, ExternalIdBundle.EMPTY);
+    final SimpleTrade trade = new SimpleTrade(position.getUniqueId(), new SimpleSecurityLink(), BigDecimal.ONE,
+        new SimpleCounterparty(ExternalId.of("CPARTY", "C100")), NOW.toLocalDate(), NOW.toOffsetTime());
+    trade.setUniqueId(UniqueId.of("Trade", id));
+    position.addTrade(trade);
+    return position;
+  }
+
+  private static MockPositionSource underlying() {
+    final SimplePortfolio portfolio = new SimplePortfolio(UniqueId.of("Port", "1"), "Name");
+    portfolio.getRootNode().addPosition(position("1"));
+    portfolio.getRootNode().addPosition(position("2"));
+    portfolio.getRootNode().addPosition(position("3"));
+    final MockPositionSource underlying = new MockPositionSource();
+    underlying.addPortfolio(portfolio);
+    return underlying;
+  }
+
+  public void test_getPosition() {
+    final CoalescingPositionSource test = new CoalescingPositionSource(underlying());
+    final Position position = test.getPosition(UniqueId.of("Pos", "1"));
+    assertEquals(UniqueId.of("Pos", "1"), position.getUniqueId());
+    assertEquals(1, test.getPositionLookups().getRequestCount());
+    assertEquals(1, test.getPositionLookups().getLoadCount());
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_getPosition_notFound() {
+    final CoalescingPositionSource test = new CoalescingPositionSource(underlying());
+    test.getPosition(UniqueId.of("Pos", "4"));
+  }
+
+  public void test_getPositions() {
+    final CoalescingPositionSource test = new CoalescingPositionSource(underlying());
+    final Map<UniqueId, Position> positions = test.getPositions(Arrays.asList(UniqueId.of("Pos", "1"), UniqueId.of("Pos", "2"), UniqueId.of("Pos", "2"),
+        UniqueId.of("Pos", "4")));
+    assertEquals(2, positions.size());
+    assertEquals(UniqueId.of("Pos", "1"), positions.get(UniqueId.of("Pos", "1")).getUniqueId());
+    assertEquals(UniqueId.of("Pos", "2"), positions.get(UniqueId.of("Pos", "2")).getUniqueId());
+    assertEquals(4, test.getPositionLookups().getRequestCount());
+    assertEquals(1, test.getPositionLookups().getLoadCount());
+    assertEquals(3, test.getPositionLookups().getLoadedKeyCount());
+  }
+
+  public void test_getTrades() {
+    final CoalescingPositionSource test = new CoalescingPositionSource(underlying());
+    final Trade trade = test.getTrade(UniqueId.of("Trade", "3"));
+    assertEquals(UniqueId.of("Trade", "3"), trade.getUniqueId());
+    final Map<UniqueId, Trade> trades = test.getTrades(Arrays.asList(UniqueId.of("Trade", "1"), UniqueId.of("Trade", "2")));
+    assertEquals(2, trades.size());
+    assertEquals(2, test.getTradeLookups().getLoadCount());
+  }
+
+  public void test_portfolio_passedThrough() {
+    final MockPositionSource underlying = underlying();
+    final CoalescingPositionSource test = new CoalescingPositionSource(underlying);
+    assertSame(underlying.getPortfolio(UniqueId.of("Port", "1")), test.getPortfolio(UniqueId.of("Port", "1")));
+    assertSame(underlying.changeManager(), test.changeManager());
+  }
+
+}
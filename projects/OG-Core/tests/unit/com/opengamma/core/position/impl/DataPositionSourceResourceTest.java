@@ -13,6 +13,7 @@ import static org.testng.AssertJUnit.assertSame;
 
 import java.math.BigDecimal;
 import java.net.URI;
+import java.util.Arrays;
 
 import javax.time.Instant;
 import javax.ws.rs.core.Response;
@@ -21,12 +22,14 @@ import javax.ws.rs.core.UriInfo;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.opengamma.DataNotFoundException;
 import com.opengamma.core.position.PositionSource;
 import com.opengamma.id.ExternalId;
 import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.transport.jaxrs.FudgeResponse;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.sun.jersey.api.client.ClientResponse.Status;
 
 /**
@@ -95,6 +98,19 @@ public class DataPositionSourceResourceTest {
     assertSame(target, test.getEntity());
   }
 
+  @Test
+  public void testGetPositions() {
+    final SimplePosition target = new SimplePosition(BigDecimal.ONE, EID);
+    final UniqueId missing = UniqueId.of("Test", "Missing", "B");
+    
+    when(_underlying.getPosition(eq(UID))).thenReturn(target);
+    when(_underlying.getPosition(eq(missing))).thenThrow(new DataNotFoundException("Missing"));
+    
+    Response test = _resource.getPositions(FudgeListWrapper.of(Arrays.asList(UID, missing)));
+    assertEquals(Status.OK.getStatusCode(), test.getStatus());
+    assertEquals(FudgeListWrapper.of(Arrays.asList(target)), test.getEntity());
+  }
+
   @Test
   public void testGetTradeByUid() {
     final SimpleTrade target = new SimpleTrade();
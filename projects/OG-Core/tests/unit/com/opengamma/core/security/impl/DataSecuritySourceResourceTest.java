@@ -13,15 +13,18 @@ import static org.testng.AssertJUnit.assertSame;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Map;
 
 import javax.time.Instant;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import org.fudgemsg.FudgeMsgEnvelope;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.opengamma.core.security.Security;
 import com.opengamma.core.security.SecuritySource;
 import com.opengamma.id.ExternalIdBundle;
@@ -29,6 +32,7 @@ import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.fudgemsg.FudgeListWrapper;
+import com.opengamma.util.fudgemsg.FudgeMapWrapper;
 import com.sun.jersey.api.client.ClientResponse.Status;
 
 /**
@@ -94,4 +98,21 @@ public class DataSecuritySourceResourceTest {
     assertEquals(FudgeListWrapper.of(targetColl), test.getEntity());
   }
 
+  @Test
+  public void testSearchBundles() {
+    final SimpleSecurity target = new SimpleSecurity("TEST");
+    target.setExternalIdBundle(BUNDLE);
+    target.setName("Test");
+    final ExternalIdBundle missing = ExternalIdBundle.of("A", "Missing");
+    
+    when(_underlying.getSecurity(eq(BUNDLE), eq(VC))).thenReturn(target);
+    
+    FudgeMsgEnvelope request = new FudgeMsgEnvelope(DataSecuritySourceResource.uriSearchBundlesData(ImmutableSet.of(BUNDLE, missing), VC));
+    Response test = _resource.searchBundles(request);
+    assertEquals(Status.OK.getStatusCode(), test.getStatus());
+    Map<?, ?> result = ((FudgeMapWrapper) test.getEntity()).getMap();
+    assertEquals(1, result.size());
+    assertSame(target, result.get(BUNDLE));
+  }
+
 }
@@ -10,6 +10,7 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -56,6 +57,16 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
 
   private final AtomicBoolean _cachePutLock = new AtomicBoolean();
 
+  /**
+   * The number of resolutions satisfied from the cache.
+   */
+  private final AtomicLong _hitCount = new AtomicLong();
+
+  /**
+   * The number of resolutions passed to the underlying.
+   */
+  private final AtomicLong _missCount = new AtomicLong();
+
   /**
    * Creates an instance using the specified cache manager.
    * 
@@ -87,6 +98,24 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
     return _lazyResolveContext;
   }
 
+  /**
+   * Gets the number of resolutions satisfied from the cache.
+   * 
+   * @return the number of cache hits
+   */
+  public long getHitCount() {
+    return _hitCount.get();
+  }
+
+  /**
+   * Gets the number of resolutions that were not in the cache and were passed to the underlying.
+   * 
+   * @return the number of cache misses
+   */
+  public long getMissCount() {
+    return _missCount.get();
+  }
+
   /**
    * Gets the cache manager.
    * 
@@ -100,10 +129,12 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
   public ComputationTarget resolve(ComputationTargetSpecification specification) {
     ComputationTarget target = _frontCache.get(specification);
     if (target != null) {
+      _hitCount.incrementAndGet();
       return target;
     }
     final Element e = _computationTarget.get(specification);
     if (e != null) {
+      _hitCount.incrementAndGet();
       target = (ComputationTarget) e.getValue();
       final ComputationTarget existing = _frontCache.putIfAbsent(MemoryUtils.instance(specification), target);
       if (existing != null) {
@@ -112,6 +143,7 @@ public class DefaultCachingComputationTargetResolver extends DelegatingComputati
         return target;
       }
     } else {
+      _missCount.incrementAndGet();
       target = super.resolve(specification);
       if (target != null) {
         specification = MemoryUtils.instance(specification);
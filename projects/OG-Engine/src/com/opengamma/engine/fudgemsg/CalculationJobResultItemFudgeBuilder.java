@@ -67,6 +67,10 @@ public class CalculationJobResultItemFudgeBuilder implements FudgeBuilder<Calcul
     String stackTrace = message.getString(STACK_TRACE_FIELD_NAME);
     long[] missingInputs = message.getValue(long[].class, MISSING_INPUTS_FIELD_NAME);
     long[] missingOutputs = message.getValue(long[].class, MISSING_OUTPUTS_FIELD_NAME);
+    if ((exceptionClass == null) && (missingInputs == null) && (missingOutputs == null)) {
+      // Most items are plain successes; share the immutable instance rather than allocating one for each
+      return CalculationJobResultItem.success();
+    }
     return new CalculationJobResultItem(exceptionClass, exceptionMsg, stackTrace, missingInputs, missingOutputs);
   }
 
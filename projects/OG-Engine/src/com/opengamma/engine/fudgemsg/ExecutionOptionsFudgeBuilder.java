@@ -40,6 +40,7 @@ public class ExecutionOptionsFudgeBuilder implements FudgeBuilder<ExecutionOptio
   private static final String DEFAULT_EXECUTION_OPTIONS_FIELD = "defaultExecutionOptions";
   private static final String VERSION_CORRECTION_FIELD = "versionCorrection";
   private static final String BATCH_FIELD = "batch";
+  private static final String MAX_CONCURRENT_CYCLES_FIELD = "maxConcurrentCycles";
 
   @Override
   public MutableFudgeMsg buildMessage(FudgeSerializer serializer, ExecutionOptions object) {
@@ -57,6 +58,9 @@ public class ExecutionOptionsFudgeBuilder implements FudgeBuilder<ExecutionOptio
     }
     serializer.addToMessage(msg, DEFAULT_EXECUTION_OPTIONS_FIELD, null, object.getDefaultExecutionOptions());
     serializer.addToMessage(msg, VERSION_CORRECTION_FIELD, null, object.getVersionCorrection());
+    if (object.getMaxConcurrentCycles() != null) {
+      msg.add(MAX_CONCURRENT_CYCLES_FIELD, object.getMaxConcurrentCycles());
+    }
     return msg;
   }
 
@@ -97,7 +101,12 @@ public class ExecutionOptionsFudgeBuilder implements FudgeBuilder<ExecutionOptio
     FudgeField versionCorrectionField = message.getByName(VERSION_CORRECTION_FIELD);
     VersionCorrection versionCorrection = deserializer.fieldValueToObject(VersionCorrection.class, versionCorrectionField);
 
-    return new ExecutionOptions(executionSequence, flags, maxSuccessiveDeltaCycles, defaultExecutionOptions, versionCorrection);
+    Integer maxConcurrentCycles = null;
+    if (message.hasField(MAX_CONCURRENT_CYCLES_FIELD)) {
+      maxConcurrentCycles = message.getInt(MAX_CONCURRENT_CYCLES_FIELD);
+    }
+
+    return new ExecutionOptions(executionSequence, flags, maxSuccessiveDeltaCycles, defaultExecutionOptions, versionCorrection, maxConcurrentCycles);
   }
 
 }
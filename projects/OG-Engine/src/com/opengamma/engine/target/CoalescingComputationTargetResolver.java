@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.target;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.PositionSource;
+import com.opengamma.core.position.impl.CoalescingPositionSource;
+import com.opengamma.core.position.impl.RemotePositionSource;
+import com.opengamma.core.security.Security;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.DefaultComputationTargetResolver;
+import com.opengamma.engine.DelegatingComputationTargetResolver;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.rest.BulkRequestCoalescer;
+
+/**
+ * A computation target resolver that coalesces concurrent resolutions of securities and positions into bulk lookups.
+ * <p>
+ * During graph building, and on calculation nodes, many threads resolve targets one at a time. Requests for target types
+ * with a bulk lookup that arrive while another resolution is in progress are queued, de-duplicated and then resolved
+ * together: securities with one call to {@code getSecurities} on the security source, and positions with one call to
+ * {@link RemotePositionSource#getPositions} if the position source is remote, either directly or beneath a
+ * {@link CoalescingPositionSource}. The types coalesced are decided when the resolver is created; every other type,
+ * including trades and positions from a local source, is resolved directly by the underlying, as queueing it would only
+ * serialize the lookups.
+ * <p>
+ * This is intended to sit beneath a {@code DefaultCachingComputationTargetResolver}. The security source used for bulk lookups
+ * notifies the cache of the securities found, and the positions found are passed to the cache through the lazy
+ * resolution context, so a batch populates the cache for every target in it.
+ * <p>
+ * The coalescer keeps counts of the requests made and the loads performed, which give the batch sizes achieved.
+ */
+public class CoalescingComputationTargetResolver extends DelegatingComputationTargetResolver implements LazyResolver {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(CoalescingComputationTargetResolver.class);
+
+  /**
+   * The coalescer of resolutions.
+   */
+  private final BulkRequestCoalescer<ComputationTargetSpecification, ComputationTarget> _resolutions;
+  /**
+   * The remote source used for bulk position lookups, null if positions have no bulk lookup.
+   */
+  private final RemotePositionSource _bulkPositionSource;
+
+  /**
+   * Creates an instance allowing {@link BulkRequestCoalescer#DEFAULT_MAX_CONCURRENT_LOADS} bulk lookups at a time.
+   *
+   * @param underlying  the underlying resolver, not null
+   */
+  public CoalescingComputationTargetResolver(final DefaultComputationTargetResolver underlying) {
+    this(underlying, BulkRequestCoalescer.DEFAULT_MAX_CONCURRENT_LOADS, BulkRequestCoalescer.DEFAULT_MAX_BATCH_SIZE, 0);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param underlying  the underlying resolver, not null
+   * @param maxConcurrentLoads  the maximum number of lookups in progress at once, greater than zero
+   * @param maxBatchSize  the maximum number of targets in a bulk lookup, greater than zero
+   * @param batchWindowMillis  the time to wait for further resolutions before a lookup, in milliseconds, zero or greater
+   */
+  public CoalescingComputationTargetResolver(final DefaultComputationTargetResolver underlying, final int maxConcurrentLoads, final int maxBatchSize,
+      final long batchWindowMillis) {
+    super(underlying);
+    _bulkPositionSource = getBulkPositionSource(underlying.getPositionSourceImpl());
+    _resolutions = new BulkRequestCoalescer<ComputationTargetSpecification, ComputationTarget>(maxConcurrentLoads, maxBatchSize, batchWindowMillis) {
+      @Override
+      protected ComputationTarget loadSingle(final ComputationTargetSpecification specification) {
+        return getUnderlying().resolve(specification);
+      }
+
+      @Override
+      protected Map<ComputationTargetSpecification, ComputationTarget> loadBulk(final Collection<ComputationTargetSpecification> specifications) {
+        return resolveBulk(specifications);
+      }
+    };
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  protected DefaultComputationTargetResolver getUnderlying() {
+    return (DefaultComputationTargetResolver) super.getUnderlying();
+  }
+
+  @Override
+  public LazyResolveContext getLazyResolveContext() {
+    return getUnderlying().getLazyResolveContext();
+  }
+
+  @Override
+  public void setLazyResolveContext(final LazyResolveContext context) {
+    getUnderlying().setLazyResolveContext(context);
+  }
+
+  /**
+   * Gets the coalescer of resolutions, for monitoring the number of requests, the number of bulk
+   * lookups and the number of distinct targets looked up.
+   *
+   * @return the coalescer, not null
+   */
+  public BulkRequestCoalescer<ComputationTargetSpecification, ComputationTarget> getResolutions() {
+    return _resolutions;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public ComputationTarget resolve(final ComputationTargetSpecification specification) {
+    if (isCoalesced(specification)) {
+      return _resolutions.get(specification);
+    }
+    return getUnderlying().resolve(specification);
+  }
+
+  /**
+   * Resolves several specifications, coalescing them with any resolutions made concurrently.
+   *
+   * @param specifications  the specifications to resolve, not null
+   * @return the resolved targets, keyed by specification, with those not found omitted, not null
+   */
+  public Map<ComputationTargetSpecification, ComputationTarget> resolveAll(final Collection<ComputationTargetSpecification> specifications) {
+    final List<ComputationTargetSpecification> coalesced = new ArrayList<ComputationTargetSpecification>(specifications.size());
+    final Map<ComputationTargetSpecification, ComputationTarget> result = new HashMap<ComputationTargetSpecification, ComputationTarget>();
+    for (ComputationTargetSpecification specification : specifications) {
+      if (isCoalesced(specification)) {
+        coalesced.add(specification);
+      } else {
+        final ComputationTarget target = getUnderlying().resolve(specification);
+        if (target != null) {
+          result.put(specification, target);
+        }
+      }
+    }
+    if (!coalesced.isEmpty()) {
+      result.putAll(_resolutions.getAll(coalesced));
+    }
+    return result;
+  }
+
+  private boolean isCoalesced(final ComputationTargetSpecification specification) {
+    if (specification.getUniqueId() == null) {
+      return false;
+    }
+    switch (specification.getType()) {
+      case SECURITY:
+        return true;
+      case POSITION:
+        return _bulkPositionSource != null;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Finds the remote source to use for bulk position lookups. A {@link CoalescingPositionSource} is looked through, as the
+   * remote source beneath it already coalesces its own lookups and the positions are already queued by this resolver.
+   *
+   * @param positionSource  the position source of the underlying, may be null
+   * @return the remote source, null if positions have no bulk lookup
+   */
+  private static RemotePositionSource getBulkPositionSource(PositionSource positionSource) {
+    if (positionSource instanceof CoalescingPositionSource) {
+      positionSource = ((CoalescingPositionSource) positionSource).getUnderlying();
+    }
+    if (positionSource instanceof RemotePositionSource) {
+      return (RemotePositionSource) positionSource;
+    }
+    return null;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Resolves a batch of distinct security and position specifications.
+   *
+   * @param specifications  the specifications, not null
+   * @return the resolved targets, keyed by specification, not null
+   */
+  protected Map<ComputationTargetSpecification, ComputationTarget> resolveBulk(final Collection<ComputationTargetSpecification> specifications) {
+    final Map<UniqueId, ComputationTargetSpecification> securities = new HashMap<UniqueId, ComputationTargetSpecification>();
+    final Map<UniqueId, ComputationTargetSpecification> positions = new HashMap<UniqueId, ComputationTargetSpecification>();
+    for (ComputationTargetSpecification specification : specifications) {
+      switch (specification.getType()) {
+        case SECURITY:
+          securities.put(specification.getUniqueId(), specification);
+          break;
+        case POSITION:
+          positions.put(specification.getUniqueId(), specification);
+          break;
+        default:
+          throw new IllegalArgumentException("Unexpected target type: " + specification);
+      }
+    }
+    s_logger.debug("Resolving {} securities and {} positions", securities.size(), positions.size());
+    final Map<ComputationTargetSpecification, ComputationTarget> result = new HashMap<ComputationTargetSpecification, ComputationTarget>();
+    resolveSecurities(securities, result);
+    resolvePositions(positions, result);
+    return result;
+  }
+
+  private void resolveSecurities(final Map<UniqueId, ComputationTargetSpecification> specifications, final Map<ComputationTargetSpecification, ComputationTarget> result) {
+    if (specifications.size() < 2) {
+      resolveEach(specifications, result);
+      return;
+    }
+    // the security source from the underlying notifies the cache of the securities found
+    final Map<UniqueId, Security> securities = getUnderlying().getSecuritySource().getSecurities(specifications.keySet());
+    for (Map.Entry<UniqueId, Security> security : securities.entrySet()) {
+      final ComputationTargetSpecification specification = specifications.get(security.getKey());
+      if (specification != null) {
+        result.put(specification, new ComputationTarget(ComputationTargetType.SECURITY, security.getValue()));
+      }
+    }
+  }
+
+  private void resolvePositions(final Map<UniqueId, ComputationTargetSpecification> specifications, final Map<ComputationTargetSpecification, ComputationTarget> result) {
+    if (specifications.size() < 2) {
+      resolveEach(specifications, result);
+      return;
+    }
+    final Map<UniqueId, Position> positions = _bulkPositionSource.getPositions(specifications.keySet());
+    final List<Position> resolved = new ArrayList<Position>(positions.size());
+    for (Map.Entry<UniqueId, Position> position : positions.entrySet()) {
+      final ComputationTargetSpecification specification = specifications.get(position.getKey());
+      if (specification != null) {
+        final Position lazy = new LazyResolvedPosition(getLazyResolveContext(), position.getValue());
+        result.put(specification, new ComputationTarget(ComputationTargetType.POSITION, lazy));
+        resolved.add(lazy);
+      }
+    }
+    getLazyResolveContext().cachePositions(resolved);
+  }
+
+  private void resolveEach(final Map<UniqueId, ComputationTargetSpecification> specifications, final Map<ComputationTargetSpecification, ComputationTarget> result) {
+    for (ComputationTargetSpecification specification : specifications.values()) {
+      final ComputationTarget target = getUnderlying().resolve(specification);
+      if (target != null) {
+        result.put(specification, target);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns a string suitable for debugging.
+   *
+   * @return the string, not null
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[underlying=" + getUnderlying() + "]";
+  }
+
+}
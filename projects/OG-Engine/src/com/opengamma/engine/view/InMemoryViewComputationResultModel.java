@@ -31,7 +31,9 @@ public class InMemoryViewComputationResultModel extends InMemoryViewResultModel
    * @param marketData  the market data value, not null
    */
   public void addMarketData(ComputedValue marketData) {
-    _allMarketData.put(marketData.getSpecification(), marketData);
+    synchronized (_allMarketData) {
+      _allMarketData.put(marketData.getSpecification(), marketData);
+    }
   }
 
   @Override
@@ -106,7 +106,13 @@ public abstract class InMemoryViewResultModel implements ViewResultModel, Serial
     return _resultsByConfiguration.get(calcConfigurationName);
   }
 
-  public void addValue(final String calcConfigurationName, final ComputedValue value) {
+  /**
+   * Adds a value to the result model. Values may be added concurrently.
+   * 
+   * @param calcConfigurationName the calculation configuration the value was produced by, not null
+   * @param value the value, not null
+   */
+  public synchronized void addValue(final String calcConfigurationName, final ComputedValue value) {
     final ComputationTargetSpecification target = value.getSpecification().getTargetSpecification();
 
     ViewCalculationResultModelImpl result = _resultsByConfiguration.get(calcConfigurationName);
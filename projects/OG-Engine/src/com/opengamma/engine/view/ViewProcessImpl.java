@@ -76,7 +76,10 @@ public class ViewProcessImpl implements ViewProcessInternal, Lifecycle {
       new AtomicReference<Pair<CompiledViewDefinitionWithGraphsImpl, MarketDataPermissionProvider>>();
   private final AtomicReference<ViewComputationResultModel> _latestResult = new AtomicReference<ViewComputationResultModel>();
 
-  private ExecutorService _calcJobResultExecutorService = Executors.newSingleThreadExecutor();
+  /**
+   * Executor for consuming calculation job results. One thread streams the results of a cycle; the others consolidate them into the result model.
+   */
+  private ExecutorService _calcJobResultExecutorService = Executors.newCachedThreadPool();
 
 
 
@@ -31,14 +31,31 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
   private final FudgeMessageStore _underlying;
   private final CacheManager _cacheManager;
   private final Cache _cache;
+  private final ViewComputationCacheKey _cacheKey;
+  private final ResidentValueFilter _residentValues;
 
   public CachingFudgeMessageStore(final FudgeMessageStore underlying, final CacheManager cacheManager,
       final ViewComputationCacheKey cacheKey) {
+    this(underlying, cacheManager, cacheKey, null);
+  }
+
+  /**
+   * Creates a caching store that records the values held locally.
+   * 
+   * @param underlying the underlying store
+   * @param cacheManager the cache manager
+   * @param cacheKey the cache key
+   * @param residentValues the filter to record values held in the local cache in, null for none
+   */
+  public CachingFudgeMessageStore(final FudgeMessageStore underlying, final CacheManager cacheManager,
+      final ViewComputationCacheKey cacheKey, final ResidentValueFilter residentValues) {
     _underlying = underlying;
     _cacheManager = cacheManager;
     final String cacheName = cacheKey.toString();
     EHCacheUtils.addCache(cacheManager, cacheKey.toString());
     _cache = EHCacheUtils.getCacheFromManager(cacheManager, cacheName);
+    _cacheKey = cacheKey;
+    _residentValues = residentValues;
   }
 
   protected FudgeMessageStore getUnderlying() {
@@ -53,10 +70,24 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
     return _cache;
   }
 
+  protected ResidentValueFilter getResidentValues() {
+    return _residentValues;
+  }
+
+  private void cachePut(final long identifier, final FudgeMsg data) {
+    getCache().put(new Element(identifier, data));
+    if ((_residentValues != null) && (data != null)) {
+      _residentValues.add(_cacheKey, identifier);
+    }
+  }
+
   @Override
   public void delete() {
     s_logger.info("Delete on {}", this);
     getCacheManager().removeCache(getCache().getName());
+    if (_residentValues != null) {
+      _residentValues.remove(_cacheKey);
+    }
     getUnderlying().delete();
   }
 
@@ -67,14 +98,14 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
       return (FudgeMsg) cacheElement.getObjectValue();
     }
     final FudgeMsg data = getUnderlying().get(identifier);
-    getCache().put(new Element(identifier, data));
+    cachePut(identifier, data);
     return data;
   }
 
   @Override
   public void put(final long identifier, final FudgeMsg data) {
     getUnderlying().put(identifier, data);
-    getCache().put(new Element(identifier, data));
+    cachePut(identifier, data);
   }
 
   @Override
@@ -101,12 +132,12 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
       final Long missingIdentifier = missing.get(0);
       final FudgeMsg data = getUnderlying().get(missingIdentifier);
       result.put(missingIdentifier, data);
-      getCache().put(new Element(missingIdentifier, data));
+      cachePut(missingIdentifier, data);
     } else {
       final Map<Long, FudgeMsg> missingData = getUnderlying().get(missing);
       for (Map.Entry<Long, FudgeMsg> data : missingData.entrySet()) {
         result.put(data.getKey(), data.getValue());
-        getCache().put(new Element(data.getKey(), data.getValue()));
+        cachePut(data.getKey(), data.getValue());
       }
     }
     return result;
@@ -116,7 +147,7 @@ public class CachingFudgeMessageStore implements FudgeMessageStore {
   public void put(final Map<Long, FudgeMsg> data) {
     getUnderlying().put(data);
     for (Map.Entry<Long, FudgeMsg> element : data.entrySet()) {
-      getCache().put(new Element(element.getKey(), element.getValue()));
+      cachePut(element.getKey(), element.getValue());
     }
   }
 
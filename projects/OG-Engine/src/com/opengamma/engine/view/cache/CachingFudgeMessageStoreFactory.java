@@ -14,10 +14,16 @@ public class CachingFudgeMessageStoreFactory implements FudgeMessageStoreFactory
 
   private final FudgeMessageStoreFactory _underlying;
   private final CacheManager _cacheManager;
+  private final ResidentValueFilter _residentValues;
 
   public CachingFudgeMessageStoreFactory(final FudgeMessageStoreFactory underlying, final CacheManager cacheManager) {
+    this(underlying, cacheManager, null);
+  }
+
+  public CachingFudgeMessageStoreFactory(final FudgeMessageStoreFactory underlying, final CacheManager cacheManager, final ResidentValueFilter residentValues) {
     _underlying = underlying;
     _cacheManager = cacheManager;
+    _residentValues = residentValues;
   }
 
   protected FudgeMessageStoreFactory getUnderlying() {
@@ -28,9 +34,13 @@ public class CachingFudgeMessageStoreFactory implements FudgeMessageStoreFactory
     return _cacheManager;
   }
 
+  protected ResidentValueFilter getResidentValues() {
+    return _residentValues;
+  }
+
   @Override
   public FudgeMessageStore createMessageStore(ViewComputationCacheKey cacheKey) {
-    return new CachingFudgeMessageStore(getUnderlying().createMessageStore(cacheKey), getCacheManager(), cacheKey);
+    return new CachingFudgeMessageStore(getUnderlying().createMessageStore(cacheKey), getCacheManager(), cacheKey, getResidentValues());
   }
 
 }
@@ -282,10 +282,13 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
         response = Collections.singleton(FudgeContext.EMPTY_MESSAGE);
       } else {
         final FudgeMessageStore store = cache.getSharedDataStore();
+        final Integer compressionThreshold = request.getCompressionThreshold();
         if (identifiers.size() == 1) {
           FudgeMsg data = store.get(identifiers.get(0));
           if (data == null) {
             data = FudgeContext.EMPTY_MESSAGE;
+          } else if (compressionThreshold != null) {
+            data = FudgeMsgCompression.compress(getUnderlying().getFudgeContext(), data, compressionThreshold);
           }
           response = Collections.singleton(data);
         } else {
@@ -295,6 +298,8 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
             FudgeMsg value = data.get(identifier);
             if (value == null) {
               value = FudgeContext.EMPTY_MESSAGE;
+            } else if (compressionThreshold != null) {
+              value = FudgeMsgCompression.compress(getUnderlying().getFudgeContext(), value, compressionThreshold);
             }
             response.add(value);
           }
@@ -310,14 +315,15 @@ public class FudgeMessageStoreServer implements FudgeConnectionReceiver, Release
       final ViewComputationCacheKey key = new ViewComputationCacheKey(request.getViewCycleId(), request.getCalculationConfigurationName());
       // Review 2010-10-19 Andrew -- This causes cache creation. This is bad if messages were delayed and the cache has already been released.
       final FudgeMessageStore store = getUnderlying().getCache(key).getSharedDataStore();
+      final FudgeContext fudgeContext = getUnderlying().getFudgeContext();
       if (identifiers.size() == 1) {
-        store.put(identifiers.get(0), data.get(0));
+        store.put(identifiers.get(0), FudgeMsgCompression.decompress(fudgeContext, data.get(0)));
       } else {
         final Map<Long, FudgeMsg> map = new HashMap<Long, FudgeMsg>();
         final Iterator<Long> i = identifiers.iterator();
         final Iterator<FudgeMsg> j = data.iterator();
         while (i.hasNext()) {
-          map.put(i.next(), j.next());
+          map.put(i.next(), FudgeMsgCompression.decompress(fudgeContext, j.next()));
         }
         store.put(map);
       }
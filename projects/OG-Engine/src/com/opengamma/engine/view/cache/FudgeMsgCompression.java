@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.fudgemsg.wire.FudgeSize;
+
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * Compression of large cache values for transfer between a {@link RemoteCacheClient} and a {@link FudgeMessageStoreServer}.
+ * <p>
+ * A compressed value is sent as a message containing a single field holding the deflated encoding of the original. Values
+ * are always decompressed before being stored, so the caches at either end only ever hold the original messages.
+ */
+/* package */final class FudgeMsgCompression {
+
+  private static final String DEFLATED_FIELD = "_deflated";
+
+  private FudgeMsgCompression() {
+  }
+
+  /**
+   * Compresses a value if its encoded size is at least the threshold and compression makes it smaller.
+   * <p>
+   * The size is calculated without encoding the value, so values below the threshold are passed to the transport
+   * untouched and only encoded once.
+   *
+   * @param fudgeContext the context to encode the value with, not null
+   * @param value the value to compress, not null
+   * @param threshold the minimum encoded size, in bytes, to compress
+   * @return the compressed value, or the original if it was not compressed
+   */
+  public static FudgeMsg compress(final FudgeContext fudgeContext, final FudgeMsg value, final int threshold) {
+    if (value.isEmpty() || (FudgeSize.calculateMessageSize(value) < threshold)) {
+      return value;
+    }
+    final byte[] data = fudgeContext.toByteArray(value);
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+      final byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+        if (out.size() >= data.length) {
+          // Incompressible
+          return value;
+        }
+      }
+      final MutableFudgeMsg compressed = fudgeContext.newMessage();
+      compressed.add(DEFLATED_FIELD, out.toByteArray());
+      return compressed;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Tests whether a value is compressed.
+   *
+   * @param value the value to test, not null
+   * @return true if the value is compressed
+   */
+  public static boolean isCompressed(final FudgeMsg value) {
+    return (value.getNumFields() == 1) && (value.getByName(DEFLATED_FIELD) != null);
+  }
+
+  /**
+   * Decompresses a value if it is compressed.
+   *
+   * @param fudgeContext the context to decode the value with, not null
+   * @param value the value, not null
+   * @return the decompressed value, or the original if it was not compressed
+   */
+  public static FudgeMsg decompress(final FudgeContext fudgeContext, final FudgeMsg value) {
+    if (!isCompressed(value)) {
+      return value;
+    }
+    final FudgeField field = value.getByName(DEFLATED_FIELD);
+    final byte[] data = value.getFieldValue(byte[].class, field);
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+      final byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        final int length = inflater.inflate(buffer);
+        if ((length == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new OpenGammaRuntimeException("Truncated compressed value");
+        }
+        out.write(buffer, 0, length);
+      }
+      return fudgeContext.deserialize(out.toByteArray()).getMessage();
+    } catch (DataFormatException e) {
+      throw new OpenGammaRuntimeException("Invalid compressed value", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+}
@@ -5,6 +5,11 @@
  */
 package com.opengamma.engine.view.cache;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.fudgemsg.FudgeContext;
 import org.fudgemsg.FudgeMsg;
 import org.fudgemsg.mapping.FudgeDeserializer;
@@ -22,11 +27,23 @@ import com.opengamma.util.ArgumentChecker;
  * has a "get" and "put" channel. Although equal priority, this gives two blocking queues to isolate
  * operations that query the cache from those that update or control it. This allows, for example,
  * cache writes from a previous job to not delay loads needed by the next job.
+ * <p>
+ * Any number of requests may be outstanding on each channel, matched to their responses by correlation
+ * ID. The "get" channel may be a pool of connections to the same server, with each request sent on the
+ * connection with the fewest outstanding. Get requests for a cache are coalesced into multi-gets once
+ * {@link #setMaxGetsInFlight} are already outstanding, and large values may be compressed in transit.
  */
 public class RemoteCacheClient {
 
+  /**
+   * Default number of get requests for a cache that can be outstanding before further requests are coalesced.
+   */
+  public static final int DEFAULT_MAX_GETS_IN_FLIGHT = 4;
+
   private class FudgeClient extends FudgeSynchronousClient {
 
+    private final AtomicInteger _inFlight = new AtomicInteger();
+
     /**
      * @param requestSender
      */
@@ -39,12 +56,22 @@ public class RemoteCacheClient {
       return reply.getLong(CacheMessage.CORRELATION_ID_KEY);
     }
 
+    private int getInFlight() {
+      return _inFlight.get();
+    }
+
     private <Request extends CacheMessage, Response extends CacheMessage> Response sendMessage(final Request request, final Class<Response> responseClass) {
       final FudgeSerializer scontext = new FudgeSerializer(getMessageSender().getFudgeContext());
       final long correlationId = getNextCorrelationId();
       request.setCorrelationId(correlationId);
-      final FudgeMsg responseMsg = sendRequestAndWaitForResponse(FudgeSerializer.addClassHeader(scontext.objectToFudgeMsg(request), request.getClass(), CacheMessage.class),
-          correlationId);
+      final FudgeMsg responseMsg;
+      _inFlight.incrementAndGet();
+      try {
+        responseMsg = sendRequestAndWaitForResponse(FudgeSerializer.addClassHeader(scontext.objectToFudgeMsg(request), request.getClass(), CacheMessage.class),
+            correlationId);
+      } finally {
+        _inFlight.decrementAndGet();
+      }
       final FudgeDeserializer dcontext = new FudgeDeserializer(getMessageSender().getFudgeContext());
       final Response response = dcontext.fudgeMsgToObject(responseClass, responseMsg);
       return response;
@@ -57,8 +84,13 @@ public class RemoteCacheClient {
 
   }
 
-  private final FudgeClient _fudgeGets;
+  private final FudgeClient[] _fudgeGets;
   private final FudgeClient _fudgePuts;
+  private final AtomicInteger _nextGet = new AtomicInteger();
+  private final AtomicLong _getRequests = new AtomicLong();
+  private final AtomicLong _coalescedGets = new AtomicLong();
+  private volatile int _maxGetsInFlight = DEFAULT_MAX_GETS_IN_FLIGHT;
+  private volatile int _compressionThreshold;
 
   /**
    * Creates a new client using a single underlying transport.
@@ -67,8 +99,8 @@ public class RemoteCacheClient {
    */
   public RemoteCacheClient(final FudgeConnection connection) {
     ArgumentChecker.notNull(connection, "connection");
-    _fudgeGets = new FudgeClient(connection);
-    _fudgePuts = _fudgeGets;
+    _fudgePuts = new FudgeClient(connection);
+    _fudgeGets = new FudgeClient[] {_fudgePuts };
   }
 
   /**
@@ -78,23 +110,111 @@ public class RemoteCacheClient {
    * @param requestPuts put operations
    */
   public RemoteCacheClient(final FudgeConnection requestGets, final FudgeConnection requestPuts) {
-    ArgumentChecker.notNull(requestGets, "requestGets");
+    this(Collections.singleton(requestGets), requestPuts);
+  }
+
+  /**
+   * Creates a new client using a pool of transports for cache "get" operations and one for "put" operations.
+   * 
+   * @param requestGets get operations, not null or empty
+   * @param requestPuts put operations, not null
+   */
+  public RemoteCacheClient(final Collection<FudgeConnection> requestGets, final FudgeConnection requestPuts) {
+    ArgumentChecker.notEmpty(requestGets, "requestGets");
+    ArgumentChecker.noNulls(requestGets, "requestGets");
     ArgumentChecker.notNull(requestPuts, "requestPuts");
-    _fudgeGets = new FudgeClient(requestGets);
-    if (requestPuts != requestGets) {
-      _fudgeGets.postMessage(new SlaveChannelMessage());
-      _fudgePuts = new FudgeClient(requestPuts);
-    } else {
-      _fudgePuts = _fudgeGets;
+    _fudgeGets = new FudgeClient[requestGets.size()];
+    FudgeClient fudgePuts = null;
+    int i = 0;
+    for (FudgeConnection requestGet : requestGets) {
+      final FudgeClient fudgeGet = new FudgeClient(requestGet);
+      if (requestGet != requestPuts) {
+        fudgeGet.postMessage(new SlaveChannelMessage());
+      } else {
+        fudgePuts = fudgeGet;
+      }
+      _fudgeGets[i++] = fudgeGet;
+    }
+    if (fudgePuts == null) {
+      fudgePuts = new FudgeClient(requestPuts);
     }
+    _fudgePuts = fudgePuts;
+  }
+
+  /**
+   * Returns the number of get requests for a cache that can be outstanding before further requests are held back and
+   * coalesced into a single multi-get.
+   * 
+   * @return the number of requests, zero or less if requests are never coalesced
+   */
+  public int getMaxGetsInFlight() {
+    return _maxGetsInFlight;
+  }
+
+  public void setMaxGetsInFlight(final int maxGetsInFlight) {
+    _maxGetsInFlight = maxGetsInFlight;
+  }
+
+  /**
+   * Returns the encoded size, in bytes, at which values are compressed in transit.
+   * 
+   * @return the threshold, zero or less if values are never compressed
+   */
+  public int getCompressionThreshold() {
+    return _compressionThreshold;
+  }
+
+  public void setCompressionThreshold(final int compressionThreshold) {
+    _compressionThreshold = compressionThreshold;
+  }
+
+  /**
+   * Returns the number of get requests sent to the server.
+   * 
+   * @return the number of requests
+   */
+  public long getGetRequestCount() {
+    return _getRequests.get();
+  }
+
+  /**
+   * Returns the number of get operations that were coalesced into another's request rather than sent.
+   * 
+   * @return the number of operations
+   */
+  public long getCoalescedGetCount() {
+    return _coalescedGets.get();
+  }
+
+  /* package */void coalescedGet() {
+    _coalescedGets.incrementAndGet();
   }
 
   protected void setAsynchronousMessageReceiver(final FudgeMessageReceiver asynchronousMessageReceiver) {
     _fudgePuts.setAsynchronousMessageReceiver(asynchronousMessageReceiver);
   }
 
+  private FudgeClient getGetClient() {
+    if (_fudgeGets.length == 1) {
+      return _fudgeGets[0];
+    }
+    final int start = (_nextGet.getAndIncrement() & Integer.MAX_VALUE) % _fudgeGets.length;
+    FudgeClient best = _fudgeGets[start];
+    int bestInFlight = best.getInFlight();
+    for (int i = 1; (i < _fudgeGets.length) && (bestInFlight > 0); i++) {
+      final FudgeClient client = _fudgeGets[(start + i) % _fudgeGets.length];
+      final int inFlight = client.getInFlight();
+      if (inFlight < bestInFlight) {
+        best = client;
+        bestInFlight = inFlight;
+      }
+    }
+    return best;
+  }
+
   protected <T extends CacheMessage> T sendGetMessage(final CacheMessage request, final Class<T> expectedResponse) {
-    return _fudgeGets.sendMessage(request, expectedResponse);
+    _getRequests.incrementAndGet();
+    return getGetClient().sendMessage(request, expectedResponse);
   }
 
   protected <T extends CacheMessage> T sendPutMessage(final CacheMessage request, final Class<T> expectedResponse) {
@@ -102,7 +222,7 @@ public class RemoteCacheClient {
   }
 
   protected FudgeContext getFudgeContext() {
-    return _fudgeGets.getMessageSender().getFudgeContext();
+    return _fudgePuts.getMessageSender().getFudgeContext();
   }
 
 }
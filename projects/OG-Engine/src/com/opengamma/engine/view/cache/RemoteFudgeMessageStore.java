@@ -9,11 +9,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.fudgemsg.FudgeMsg;
 
+import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.engine.view.cache.msg.CacheMessage;
 import com.opengamma.engine.view.cache.msg.DeleteRequest;
 import com.opengamma.engine.view.cache.msg.GetRequest;
@@ -22,11 +25,50 @@ import com.opengamma.engine.view.cache.msg.PutRequest;
 
 /**
  * Client to a {@link FudgeMessageStoreServer}. These are created by a {@link RemoteFudgeMessageStoreFactory}.
+ * <p>
+ * Once the client's maximum number of get requests for the cache are outstanding, further gets are held back and
+ * sent as a single request when one of the outstanding ones completes. While such a request is waiting, new gets
+ * join it rather than taking a free slot ahead of it, so a waiting request cannot be starved.
  */
 public class RemoteFudgeMessageStore implements FudgeMessageStore {
 
+  /**
+   * Identifiers requested by callers waiting for a get request to be sent on their behalf.
+   */
+  private static final class PendingGet {
+
+    private final Set<Long> _identifiers = new HashSet<Long>();
+    private Map<Long, FudgeMsg> _result;
+    private RuntimeException _error;
+
+    private synchronized void complete(final Map<Long, FudgeMsg> result, final RuntimeException error) {
+      _result = result;
+      _error = error;
+      notifyAll();
+    }
+
+    private synchronized Map<Long, FudgeMsg> waitForResult() {
+      while ((_result == null) && (_error == null)) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new OpenGammaRuntimeException("Interrupted waiting for cache values", e);
+        }
+      }
+      if (_error != null) {
+        throw new OpenGammaRuntimeException("Coalesced get request failed", _error);
+      }
+      return _result;
+    }
+
+  }
+
   private final RemoteCacheClient _client;
   private final ViewComputationCacheKey _cacheKey;
+  private final Object _getLock = new Object();
+  private int _getsInFlight;
+  private PendingGet _pendingGet;
 
   public RemoteFudgeMessageStore(final RemoteCacheClient client, final ViewComputationCacheKey cacheKey) {
     _client = client;
@@ -48,41 +90,137 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
     getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
   }
 
-  @Override
-  public FudgeMsg get(long identifier) {
-    final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
-        .getCalculationConfigurationName(), Collections.singleton(identifier));
-    final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
-    final FudgeMsg data = response.getData().get(0);
-    return data.isEmpty() ? null : data;
-  }
-
-  @Override
-  public Map<Long, FudgeMsg> get(Collection<Long> identifiers) {
+  private Map<Long, FudgeMsg> sendGetRequest(final Collection<Long> identifiers) {
     final GetRequest request = new GetRequest(getCacheKey().getViewCycleId(), getCacheKey()
         .getCalculationConfigurationName(), identifiers);
+    if (getRemoteCacheClient().getCompressionThreshold() > 0) {
+      request.setCompressionThreshold(getRemoteCacheClient().getCompressionThreshold());
+    }
     final GetResponse response = getRemoteCacheClient().sendGetMessage(request, GetResponse.class);
-    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
     final List<FudgeMsg> values = response.getData();
     if (values.size() != identifiers.size()) {
       // An error at the server end, possibly an invalid cache (gives a result with just one null in)
       return Collections.emptyMap();
     }
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
     int i = 0;
     for (Long identifier : request.getIdentifier()) {
       final FudgeMsg value = values.get(i++);
       if (!value.isEmpty()) {
+        result.put(identifier, FudgeMsgCompression.decompress(getRemoteCacheClient().getFudgeContext(), value));
+      }
+    }
+    return result;
+  }
+
+  private void getCompleted() {
+    synchronized (_getLock) {
+      _getsInFlight--;
+      _getLock.notifyAll();
+    }
+  }
+
+  private Map<Long, FudgeMsg> getImpl(final Collection<Long> identifiers) {
+    final int maxGetsInFlight = getRemoteCacheClient().getMaxGetsInFlight();
+    if (maxGetsInFlight <= 0) {
+      return sendGetRequest(identifiers);
+    }
+    final PendingGet pending;
+    final boolean sender;
+    synchronized (_getLock) {
+      if ((_pendingGet == null) && (_getsInFlight < maxGetsInFlight)) {
+        _getsInFlight++;
+        pending = null;
+        sender = true;
+      } else {
+        if (_pendingGet == null) {
+          _pendingGet = new PendingGet();
+          sender = true;
+        } else {
+          sender = false;
+        }
+        pending = _pendingGet;
+        pending._identifiers.addAll(identifiers);
+      }
+    }
+    if (pending == null) {
+      try {
+        return sendGetRequest(identifiers);
+      } finally {
+        getCompleted();
+      }
+    }
+    final Map<Long, FudgeMsg> values;
+    if (sender) {
+      // Wait for an outstanding request to complete and then send everything that has accumulated
+      final List<Long> batch;
+      boolean interrupted = false;
+      synchronized (_getLock) {
+        while (_getsInFlight >= getRemoteCacheClient().getMaxGetsInFlight()) {
+          try {
+            _getLock.wait();
+          } catch (InterruptedException e) {
+            // Other callers are depending on this request being sent
+            interrupted = true;
+          }
+        }
+        _getsInFlight++;
+        _pendingGet = null;
+        batch = new ArrayList<Long>(pending._identifiers);
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      Map<Long, FudgeMsg> result = null;
+      RuntimeException error = null;
+      try {
+        result = sendGetRequest(batch);
+      } catch (RuntimeException e) {
+        error = e;
+        throw e;
+      } finally {
+        getCompleted();
+        pending.complete(result, error);
+      }
+      values = result;
+    } else {
+      getRemoteCacheClient().coalescedGet();
+      values = pending.waitForResult();
+    }
+    final Map<Long, FudgeMsg> result = new HashMap<Long, FudgeMsg>();
+    for (Long identifier : identifiers) {
+      final FudgeMsg value = values.get(identifier);
+      if (value != null) {
         result.put(identifier, value);
       }
     }
     return result;
   }
 
+  @Override
+  public FudgeMsg get(long identifier) {
+    return getImpl(Collections.singleton(identifier)).get(identifier);
+  }
+
+  @Override
+  public Map<Long, FudgeMsg> get(Collection<Long> identifiers) {
+    return getImpl(identifiers);
+  }
+
+  private FudgeMsg compress(final FudgeMsg data) {
+    final int compressionThreshold = getRemoteCacheClient().getCompressionThreshold();
+    if (compressionThreshold > 0) {
+      return FudgeMsgCompression.compress(getRemoteCacheClient().getFudgeContext(), data, compressionThreshold);
+    } else {
+      return data;
+    }
+  }
+
   @Override
   public void put(long identifier, FudgeMsg data) {
     final PutRequest request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey()
         .getCalculationConfigurationName(), Collections.singleton(identifier),
-        Collections.singleton(data));
+        Collections.singleton(compress(data)));
     getRemoteCacheClient().sendPutMessage(request, CacheMessage.class);
   }
 
@@ -92,7 +230,7 @@ public class RemoteFudgeMessageStore implements FudgeMessageStore {
     final List<FudgeMsg> values = new ArrayList<FudgeMsg>(data.size());
     for (Map.Entry<Long, FudgeMsg> entry : data.entrySet()) {
       identifiers.add(entry.getKey());
-      values.add(entry.getValue());
+      values.add(compress(entry.getValue()));
     }
     final PutRequest request = new PutRequest(getCacheKey().getViewCycleId(), getCacheKey()
         .getCalculationConfigurationName(), identifiers, values);
@@ -30,6 +30,8 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
 
   private static final Logger s_logger = LoggerFactory.getLogger(RemoteViewComputationCacheSource.class);
 
+  private final ResidentValueFilter _residentValues;
+
   public RemoteViewComputationCacheSource(final RemoteCacheClient client,
       final FudgeMessageStoreFactory privateDataStoreFactory, final CacheManager cacheManager) {
     this(client, privateDataStoreFactory, client.getFudgeContext(), cacheManager);
@@ -45,19 +47,36 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
   public RemoteViewComputationCacheSource(final RemoteCacheClient client,
       final FudgeMessageStoreFactory privateDataStoreFactory, final FudgeContext fudgeContext,
       final CacheManager cacheManager) {
+    this(client, privateDataStoreFactory, fudgeContext, cacheManager, new ResidentValueFilter());
+  }
+
+  private RemoteViewComputationCacheSource(final RemoteCacheClient client,
+      final FudgeMessageStoreFactory privateDataStoreFactory, final FudgeContext fudgeContext,
+      final CacheManager cacheManager, final ResidentValueFilter residentValues) {
     super(createIdentifierMap(client), fudgeContext, privateDataStoreFactory, createFudgeMessageStoreFactory(client,
-        cacheManager));
+        cacheManager, residentValues));
+    _residentValues = residentValues;
     client.setAsynchronousMessageReceiver(this);
   }
 
+  /**
+   * Returns the summary of shared values held in the local cache. A calculation node can publish this so that jobs needing the
+   * values are sent to it in preference to nodes that would have to fetch them.
+   * 
+   * @return the resident values, not null
+   */
+  public ResidentValueFilter getResidentValues() {
+    return _residentValues;
+  }
+
   private static IdentifierMap createIdentifierMap(final RemoteCacheClient client) {
     return new CachingIdentifierMap(new RemoteIdentifierMap(client));
   }
 
   private static FudgeMessageStoreFactory createFudgeMessageStoreFactory(final RemoteCacheClient client,
-      final CacheManager cacheManager) {
+      final CacheManager cacheManager, final ResidentValueFilter residentValues) {
     final RemoteFudgeMessageStoreFactory remote = new RemoteFudgeMessageStoreFactory(client);
-    return new CachingFudgeMessageStoreFactory(remote, cacheManager);
+    return new CachingFudgeMessageStoreFactory(remote, cacheManager, residentValues);
   }
 
   private final CacheMessageVisitor _messageReceiver = new CacheMessageVisitor() {
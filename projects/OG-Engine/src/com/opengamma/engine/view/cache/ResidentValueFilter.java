@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.fudgemsg.FudgeField;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.FudgeMsgFactory;
+import org.fudgemsg.MutableFudgeMsg;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Compact summary of the shared values held in a calculation node's local cache, allowing a job dispatcher to favour nodes that already
+ * hold a job's inputs.
+ * <p>
+ * Each cache has a Bloom filter of the identifiers of the values held. Membership tests may give false positives, for example after a
+ * value has been evicted from the local cache, but never false negatives. The filter for a cache is discarded when the cache is deleted
+ * at the end of its cycle.
+ */
+public final class ResidentValueFilter {
+
+  /**
+   * Default number of bits in the filter for each cache. With three hashes this gives a false positive rate of around 5% at 40,000 values.
+   */
+  public static final int DEFAULT_BITS = 1 << 18;
+
+  private static final int HASHES = 3;
+
+  private static final String CACHE_FIELD = "cache";
+  private static final String VIEW_CYCLE_ID_FIELD = "viewCycleId";
+  private static final String CALC_CONFIG_FIELD = "calcConfig";
+  private static final String COUNT_FIELD = "count";
+  private static final String BITS_FIELD = "bits";
+
+  private static final class Filter {
+
+    private final AtomicLongArray _bits;
+    private final AtomicInteger _count;
+
+    private Filter(final int bits) {
+      _bits = new AtomicLongArray(bits >> 6);
+      _count = new AtomicInteger();
+    }
+
+    private Filter(final long[] bits, final int count) {
+      _bits = new AtomicLongArray(bits);
+      _count = new AtomicInteger(count);
+    }
+
+    private boolean add(final long identifier) {
+      final int mask = (_bits.length() << 6) - 1;
+      final long hash = mix(identifier);
+      final int h1 = (int) hash;
+      final int h2 = (int) (hash >>> 32) | 1;
+      boolean changed = false;
+      for (int i = 0; i < HASHES; i++) {
+        final int bit = (h1 + i * h2) & mask;
+        final int word = bit >> 6;
+        final long flag = 1L << bit;
+        long value = _bits.get(word);
+        while ((value & flag) == 0) {
+          if (_bits.compareAndSet(word, value, value | flag)) {
+            changed = true;
+            break;
+          }
+          value = _bits.get(word);
+        }
+      }
+      if (changed) {
+        _count.incrementAndGet();
+      }
+      return changed;
+    }
+
+    private boolean mightContain(final long identifier) {
+      final int mask = (_bits.length() << 6) - 1;
+      final long hash = mix(identifier);
+      final int h1 = (int) hash;
+      final int h2 = (int) (hash >>> 32) | 1;
+      for (int i = 0; i < HASHES; i++) {
+        final int bit = (h1 + i * h2) & mask;
+        if ((_bits.get(bit >> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private byte[] toByteArray() {
+      final byte[] bytes = new byte[_bits.length() << 3];
+      for (int i = 0, j = 0; i < _bits.length(); i++) {
+        long value = _bits.get(i);
+        for (int k = 0; k < 8; k++) {
+          bytes[j++] = (byte) value;
+          value >>>= 8;
+        }
+      }
+      return bytes;
+    }
+
+    private static Filter fromByteArray(final byte[] bytes, final int count) {
+      final long[] bits = new long[bytes.length >> 3];
+      for (int i = 0, j = 0; i < bits.length; i++) {
+        long value = 0;
+        for (int k = 0; k < 8; k++) {
+          value |= ((long) (bytes[j++] & 0xFF)) << (k << 3);
+        }
+        bits[i] = value;
+      }
+      return new Filter(bits, count);
+    }
+
+  }
+
+  private final ConcurrentMap<ViewComputationCacheKey, Filter> _filters = new ConcurrentHashMap<ViewComputationCacheKey, Filter>();
+  private final int _bits;
+  private final AtomicInteger _changeCount = new AtomicInteger();
+
+  /**
+   * Creates an empty filter with the default number of bits for each cache.
+   */
+  public ResidentValueFilter() {
+    this(DEFAULT_BITS);
+  }
+
+  /**
+   * Creates an empty filter.
+   *
+   * @param bits the number of bits in the filter for each cache, a power of two of at least 64
+   */
+  public ResidentValueFilter(final int bits) {
+    ArgumentChecker.isTrue((bits >= 64) && (Integer.bitCount(bits) == 1), "bits must be a power of two of at least 64");
+    _bits = bits;
+  }
+
+  /**
+   * Finalization step of the 64-bit MurmurHash3 algorithm.
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Records a value as held in the local cache.
+   *
+   * @param viewCycleId the view cycle of the cache the value is in, not null
+   * @param calculationConfigurationName the calculation configuration of the cache the value is in, not null
+   * @param identifier the value identifier
+   */
+  public void add(final UniqueId viewCycleId, final String calculationConfigurationName, final long identifier) {
+    add(new ViewComputationCacheKey(viewCycleId, calculationConfigurationName), identifier);
+  }
+
+  /* package */void add(final ViewComputationCacheKey cacheKey, final long identifier) {
+    Filter filter = _filters.get(cacheKey);
+    if (filter == null) {
+      final Filter newFilter = new Filter(_bits);
+      filter = _filters.putIfAbsent(cacheKey, newFilter);
+      if (filter == null) {
+        filter = newFilter;
+      }
+    }
+    if (filter.add(identifier)) {
+      _changeCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Discards the filter for a cache that has been deleted.
+   *
+   * @param cacheKey the cache, not null
+   */
+  /* package */void remove(final ViewComputationCacheKey cacheKey) {
+    if (_filters.remove(cacheKey) != null) {
+      _changeCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Tests whether a value might be held in the local cache.
+   *
+   * @param viewCycleId the view cycle of the cache, not null
+   * @param calculationConfigurationName the calculation configuration of the cache, not null
+   * @param identifier the value identifier
+   * @return false if the value is definitely not held, true if it might be
+   */
+  public boolean mightContain(final UniqueId viewCycleId, final String calculationConfigurationName, final long identifier) {
+    return mightContain(new ViewComputationCacheKey(viewCycleId, calculationConfigurationName), identifier);
+  }
+
+  /* package */boolean mightContain(final ViewComputationCacheKey cacheKey, final long identifier) {
+    final Filter filter = _filters.get(cacheKey);
+    return (filter != null) && filter.mightContain(identifier);
+  }
+
+  /**
+   * Returns a counter that is incremented whenever the filter changes, allowing a node to avoid resending an unchanged filter.
+   *
+   * @return the change counter
+   */
+  public int getChangeCount() {
+    return _changeCount.get();
+  }
+
+  /**
+   * Returns the approximate number of values recorded in the filter.
+   *
+   * @return the number of values
+   */
+  public int getValueCount() {
+    int count = 0;
+    for (Filter filter : _filters.values()) {
+      count += filter._count.get();
+    }
+    return count;
+  }
+
+  //-------------------------------------------------------------------------
+  public FudgeMsg toFudgeMsg(final FudgeMsgFactory factory) {
+    final MutableFudgeMsg message = factory.newMessage();
+    for (Map.Entry<ViewComputationCacheKey, Filter> filter : _filters.entrySet()) {
+      final MutableFudgeMsg cacheMessage = factory.newMessage();
+      cacheMessage.add(VIEW_CYCLE_ID_FIELD, filter.getKey().getViewCycleId().toString());
+      cacheMessage.add(CALC_CONFIG_FIELD, filter.getKey().getCalculationConfigurationName());
+      cacheMessage.add(COUNT_FIELD, filter.getValue()._count.get());
+      cacheMessage.add(BITS_FIELD, filter.getValue().toByteArray());
+      message.add(CACHE_FIELD, cacheMessage);
+    }
+    return message;
+  }
+
+  public static ResidentValueFilter fromFudgeMsg(final FudgeMsg message) {
+    ResidentValueFilter result = null;
+    for (FudgeField field : message.getAllByName(CACHE_FIELD)) {
+      final FudgeMsg cacheMessage = message.getFieldValue(FudgeMsg.class, field);
+      final ViewComputationCacheKey cacheKey = new ViewComputationCacheKey(UniqueId.parse(cacheMessage.getString(VIEW_CYCLE_ID_FIELD)),
+          cacheMessage.getString(CALC_CONFIG_FIELD));
+      final Filter filter = Filter.fromByteArray(cacheMessage.getValue(byte[].class, BITS_FIELD), cacheMessage.getInt(COUNT_FIELD));
+      if (result == null) {
+        result = new ResidentValueFilter(filter._bits.length() << 6);
+      }
+      result._filters.put(cacheKey, filter);
+    }
+    return (result != null) ? result : new ResidentValueFilter();
+  }
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * An implementation of {@link BinaryDataStore} that holds values in memory until the budget of its
+ * {@link SpillingBinaryDataStoreFactory} is exhausted, after which the factory moves values out to an
+ * append-only file local to this store. The file is deleted with the store.
+ * This class is internally synchronized. Values are read back from the file without holding the store's monitor, so
+ * concurrent reads do not wait for each other or for values being spilled. A read that races the deletion of the store
+ * returns null, as for any other value missing from a deleted store.
+ */
+public class SpillingBinaryDataStore extends AbstractBinaryDataStore implements BinaryDataStore {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SpillingBinaryDataStore.class);
+
+  /**
+   * A value held in memory.
+   */
+  /* package */static final class Entry {
+
+    private final byte[] _data;
+    private volatile long _lastAccess;
+
+    private Entry(final byte[] data) {
+      _data = data;
+      _lastAccess = System.nanoTime();
+    }
+
+    public byte[] getData() {
+      return _data;
+    }
+
+    public long getLastAccess() {
+      return _lastAccess;
+    }
+
+    private void touch() {
+      _lastAccess = System.nanoTime();
+    }
+
+  }
+
+  /**
+   * The location of a value in the spill file.
+   */
+  private static final class SpillRecord {
+
+    private final long _offset;
+    private final int _length;
+
+    private SpillRecord(final long offset, final int length) {
+      _offset = offset;
+      _length = length;
+    }
+
+  }
+
+  private final SpillingBinaryDataStoreFactory _factory;
+  private final ViewComputationCacheKey _cacheKey;
+  private final ConcurrentMap<Long, Entry> _memory = new ConcurrentHashMap<Long, Entry>();
+  private final ConcurrentMap<Long, SpillRecord> _spilled = new ConcurrentHashMap<Long, SpillRecord>();
+  private final AtomicLong _memoryBytes = new AtomicLong();
+  private volatile File _spillFile;
+  private volatile FileChannel _spillChannel;
+  private long _spillLength;
+  private volatile boolean _deleted;
+  private Iterator<Map.Entry<Long, Entry>> _sampleCursor;
+
+  /* package */SpillingBinaryDataStore(final SpillingBinaryDataStoreFactory factory, final ViewComputationCacheKey cacheKey) {
+    _factory = factory;
+    _cacheKey = cacheKey;
+  }
+
+  /* package */File getSpillFile() {
+    return _spillFile;
+  }
+
+  /**
+   * Adds in-memory entries to a sample of spill candidates. Each call continues from where the previous one stopped,
+   * wrapping around at the end, so that repeated samples visit all of the entries. Only the factory calls this, while
+   * holding its own lock.
+   *
+   * @param sample the sample to add to, not null
+   * @param count the maximum number of entries to add
+   */
+  /* package */void sample(final Collection<Map.Entry<Long, Entry>> sample, final int count) {
+    boolean wrapped = false;
+    int added = 0;
+    while (added < count) {
+      if ((_sampleCursor == null) || !_sampleCursor.hasNext()) {
+        if (wrapped) {
+          return;
+        }
+        _sampleCursor = _memory.entrySet().iterator();
+        wrapped = true;
+        if (!_sampleCursor.hasNext()) {
+          return;
+        }
+      }
+      sample.add(_sampleCursor.next());
+      added++;
+    }
+  }
+
+  /* package */long getMemoryBytes() {
+    return _memoryBytes.get();
+  }
+
+  @Override
+  public byte[] get(final long identifier) {
+    final Entry entry = _memory.get(identifier);
+    if (entry != null) {
+      entry.touch();
+      return entry.getData();
+    }
+    final SpillRecord record = _spilled.get(identifier);
+    if (record == null) {
+      return null;
+    }
+    final long start = System.nanoTime();
+    final byte[] data = new byte[record._length];
+    final ByteBuffer buffer = ByteBuffer.wrap(data);
+    try {
+      // Positional reads are safe to make concurrently with each other and with appends
+      final FileChannel channel = _spillChannel;
+      if (channel == null) {
+        // A value is only spilled once the channel is open, so it has since been closed by delete
+        return null;
+      }
+      long position = record._offset;
+      while (buffer.hasRemaining()) {
+        final int count = channel.read(buffer, position);
+        if (count < 0) {
+          throw new OpenGammaRuntimeException("Truncated spill file " + _spillFile + " reading " + identifier);
+        }
+        position += count;
+      }
+    } catch (ClosedChannelException e) {
+      if (_deleted) {
+        // The store was deleted while the value was being read
+        return null;
+      }
+      throw new OpenGammaRuntimeException("Couldn't read " + identifier + " from spill file " + _spillFile, e);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't read " + identifier + " from spill file " + _spillFile, e);
+    }
+    _factory.readBack(System.nanoTime() - start);
+    return data;
+  }
+
+  @Override
+  public void put(final long identifier, final byte[] data) {
+    final Entry previous = _memory.put(identifier, new Entry(data));
+    if (!_spilled.isEmpty()) {
+      _spilled.remove(identifier);
+    }
+    long delta = data.length;
+    if (previous != null) {
+      delta -= previous.getData().length;
+    }
+    _memoryBytes.addAndGet(delta);
+    _factory.allocated(delta);
+  }
+
+  @Override
+  public void delete() {
+    synchronized (this) {
+      _deleted = true;
+      if (_spillChannel != null) {
+        try {
+          _spillChannel.close();
+        } catch (IOException e) {
+          s_logger.warn("Couldn't close spill file {}: {}", _spillFile, e.getMessage());
+        }
+        _spillChannel = null;
+      }
+      if (_spillFile != null) {
+        if (!_spillFile.delete()) {
+          s_logger.warn("Couldn't delete spill file {}", _spillFile);
+        }
+      }
+    }
+    _memory.clear();
+    _spilled.clear();
+    _factory.deleted(this, _memoryBytes.getAndSet(0));
+  }
+
+  private synchronized FileChannel getSpillChannel() throws IOException {
+    if (_spillChannel == null) {
+      if (_deleted) {
+        throw new OpenGammaRuntimeException("Data store for " + _cacheKey + " has been deleted");
+      }
+      _spillFile = File.createTempFile("cache", ".spill", _factory.getSpillDirectory());
+      _spillChannel = new RandomAccessFile(_spillFile, "rw").getChannel();
+      s_logger.info("Spilling {} to {}", _cacheKey, _spillFile);
+    }
+    return _spillChannel;
+  }
+
+  /**
+   * Moves a value from memory to the end of the spill file. Nothing is written if the entry has already been replaced or
+   * the store deleted.
+   *
+   * @param identifier the value identifier
+   * @param entry the in-memory entry
+   * @return the number of bytes released from memory
+   */
+  /* package */synchronized int spill(final Long identifier, final Entry entry) {
+    if (_deleted || (_memory.get(identifier) != entry)) {
+      return 0;
+    }
+    final byte[] data = entry.getData();
+    final SpillRecord record = new SpillRecord(_spillLength, data.length);
+    try {
+      final FileChannel channel = getSpillChannel();
+      final ByteBuffer buffer = ByteBuffer.wrap(data);
+      long position = _spillLength;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't write " + identifier + " to spill file " + _spillFile, e);
+    }
+    _spillLength += data.length;
+    // Publish the spilled copy before dropping the in-memory one so that readers always find one of them
+    _spilled.put(identifier, record);
+    if (!_memory.remove(identifier, entry)) {
+      // Replaced by a concurrent put
+      _spilled.remove(identifier, record);
+      return 0;
+    }
+    _memoryBytes.addAndGet(-data.length);
+    return data.length;
+  }
+
+}
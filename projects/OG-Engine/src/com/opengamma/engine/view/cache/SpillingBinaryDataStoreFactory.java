@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link SpillingBinaryDataStore} objects that share a single memory budget.
+ * <p>
+ * The budget applies to all stores created by the factory, so a single large cycle may use all of it while several smaller
+ * ones share it. When the budget is exceeded, values are written out to the spill files of their stores until usage falls back
+ * below {@link #LOW_WATER_MARK} of the budget. The values spilled are chosen approximately: a sample of in-memory values is taken,
+ * continuing from where the previous sample of each store stopped, and the coldest and largest values of each sample are spilled
+ * first. The cost of a spill is therefore proportional to the number of values spilled rather than the number held. By default the
+ * budget is a fraction of the maximum heap of the calculation node.
+ * <p>
+ * The spill and read-back counters are published over JMX by {@link com.opengamma.engine.view.cache.jmx.SpillingBinaryDataStoreFactory}
+ * and reported in the log at most once a minute while values are being spilled.
+ */
+public class SpillingBinaryDataStoreFactory implements BinaryDataStoreFactory {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SpillingBinaryDataStoreFactory.class);
+
+  /**
+   * The default fraction of the maximum heap to use as the memory budget.
+   */
+  public static final double DEFAULT_HEAP_FRACTION = 0.25;
+
+  /**
+   * The fraction of the budget that memory usage is reduced to when values are spilled.
+   */
+  public static final double LOW_WATER_MARK = 0.9;
+
+  /**
+   * The number of in-memory values sampled each time candidates for spilling are chosen.
+   */
+  private static final int SAMPLE_SIZE = 64;
+  /**
+   * The most values spilled from each sample, so that only the worst values of a sample are spilled.
+   */
+  private static final int SPILL_PER_SAMPLE = 16;
+  /**
+   * The number of consecutive samples that release nothing before giving up on reaching the low water mark.
+   */
+  private static final int MAX_FRUITLESS_SAMPLES = 16;
+  /**
+   * The minimum time between reports of the spill and read-back counters in the log.
+   */
+  private static final long REPORT_INTERVAL_NANOS = 60L * 1000000000L;
+
+  private final File _spillDirectory;
+  private final long _memoryBudget;
+  private final AtomicLong _memoryUsed = new AtomicLong();
+  private final Set<SpillingBinaryDataStore> _stores = Collections.newSetFromMap(new ConcurrentHashMap<SpillingBinaryDataStore, Boolean>());
+  private final AtomicLong _spillCount = new AtomicLong();
+  private final AtomicLong _spilledBytes = new AtomicLong();
+  private final AtomicLong _readBackCount = new AtomicLong();
+  private final AtomicLong _readBackNanos = new AtomicLong();
+  private long _lastReport = System.nanoTime();
+
+  /**
+   * A value that could be spilled.
+   */
+  private static final class Candidate {
+
+    private final SpillingBinaryDataStore _store;
+    private final Long _identifier;
+    private final SpillingBinaryDataStore.Entry _entry;
+    private final double _score;
+
+    private Candidate(final SpillingBinaryDataStore store, final Map.Entry<Long, SpillingBinaryDataStore.Entry> entry, final long now) {
+      _store = store;
+      _identifier = entry.getKey();
+      _entry = entry.getValue();
+      _score = (double) _entry.getData().length * (double) (now - _entry.getLastAccess() + 1);
+    }
+
+  }
+
+  private static final Comparator<Candidate> s_coldestLargestFirst = new Comparator<Candidate>() {
+    @Override
+    public int compare(final Candidate o1, final Candidate o2) {
+      return Double.compare(o2._score, o1._score);
+    }
+  };
+
+  /**
+   * Creates a factory spilling to the system temporary directory with a budget of {@link #DEFAULT_HEAP_FRACTION} of the
+   * maximum heap.
+   */
+  public SpillingBinaryDataStoreFactory() {
+    this(new File(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Creates a factory with a budget of {@link #DEFAULT_HEAP_FRACTION} of the maximum heap.
+   *
+   * @param spillDirectory the directory to write spill files to, not null
+   */
+  public SpillingBinaryDataStoreFactory(final File spillDirectory) {
+    this(spillDirectory, (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION));
+  }
+
+  /**
+   * Creates a factory.
+   *
+   * @param spillDirectory the directory to write spill files to, not null
+   * @param memoryBudget the number of bytes of values to hold in memory across all stores
+   */
+  public SpillingBinaryDataStoreFactory(final File spillDirectory, final long memoryBudget) {
+    ArgumentChecker.notNull(spillDirectory, "spillDirectory");
+    ArgumentChecker.isTrue(memoryBudget >= 0, "memoryBudget");
+    _spillDirectory = spillDirectory;
+    _memoryBudget = memoryBudget;
+    if (!spillDirectory.exists() && !spillDirectory.mkdirs()) {
+      s_logger.warn("Couldn't create spill directory {}", spillDirectory);
+    }
+  }
+
+  public File getSpillDirectory() {
+    return _spillDirectory;
+  }
+
+  public long getMemoryBudget() {
+    return _memoryBudget;
+  }
+
+  /**
+   * Returns the number of bytes of values currently held in memory across all stores.
+   *
+   * @return the number of bytes
+   */
+  public long getMemoryUsed() {
+    return _memoryUsed.get();
+  }
+
+  /**
+   * Returns the number of values written to spill files.
+   *
+   * @return the number of values
+   */
+  public long getSpillCount() {
+    return _spillCount.get();
+  }
+
+  /**
+   * Returns the number of bytes written to spill files.
+   *
+   * @return the number of bytes
+   */
+  public long getSpilledBytes() {
+    return _spilledBytes.get();
+  }
+
+  /**
+   * Returns the number of values read back from spill files.
+   *
+   * @return the number of values
+   */
+  public long getReadBackCount() {
+    return _readBackCount.get();
+  }
+
+  /**
+   * Returns the total time spent reading values back from spill files.
+   *
+   * @return the time in nanoseconds
+   */
+  public long getReadBackNanos() {
+    return _readBackNanos.get();
+  }
+
+  @Override
+  public SpillingBinaryDataStore createDataStore(final ViewComputationCacheKey cacheKey) {
+    final SpillingBinaryDataStore store = new SpillingBinaryDataStore(this, cacheKey);
+    _stores.add(store);
+    return store;
+  }
+
+  /* package */void allocated(final long bytes) {
+    if (_memoryUsed.addAndGet(bytes) > _memoryBudget) {
+      spill();
+    }
+  }
+
+  /* package */void deleted(final SpillingBinaryDataStore store, final long bytes) {
+    _stores.remove(store);
+    _memoryUsed.addAndGet(-bytes);
+  }
+
+  /* package */void readBack(final long nanos) {
+    _readBackCount.incrementAndGet();
+    _readBackNanos.addAndGet(nanos);
+  }
+
+  private synchronized void spill() {
+    if (_memoryUsed.get() <= _memoryBudget) {
+      // Another thread has already spilled
+      return;
+    }
+    final long target = (long) (_memoryBudget * LOW_WATER_MARK);
+    final List<Candidate> candidates = new ArrayList<Candidate>(SAMPLE_SIZE);
+    final List<Map.Entry<Long, SpillingBinaryDataStore.Entry>> entries = new ArrayList<Map.Entry<Long, SpillingBinaryDataStore.Entry>>(SAMPLE_SIZE);
+    int count = 0;
+    long bytes = 0;
+    int fruitless = 0;
+    while ((_memoryUsed.get() > target) && (fruitless < MAX_FRUITLESS_SAMPLES)) {
+      sample(candidates, entries);
+      if (candidates.isEmpty()) {
+        break;
+      }
+      Collections.sort(candidates, s_coldestLargestFirst);
+      boolean released = false;
+      for (int i = 0; (i < SPILL_PER_SAMPLE) && (i < candidates.size()) && (_memoryUsed.get() > target); i++) {
+        final Candidate candidate = candidates.get(i);
+        final int spilled = candidate._store.spill(candidate._identifier, candidate._entry);
+        if (spilled > 0) {
+          _memoryUsed.addAndGet(-spilled);
+          count++;
+          bytes += spilled;
+          released = true;
+        }
+      }
+      fruitless = released ? 0 : (fruitless + 1);
+    }
+    _spillCount.addAndGet(count);
+    _spilledBytes.addAndGet(bytes);
+    s_logger.debug("Spilled {} values, {} bytes", count, bytes);
+    final long now = System.nanoTime();
+    if (now - _lastReport >= REPORT_INTERVAL_NANOS) {
+      _lastReport = now;
+      final long readBacks = getReadBackCount();
+      s_logger.info("{} values ({} bytes) spilled to {}; {} values read back, mean read-back time {}us", new Object[] {getSpillCount(), getSpilledBytes(),
+          getSpillDirectory(), readBacks, (readBacks > 0) ? (getReadBackNanos() / readBacks / 1000) : 0 });
+    }
+  }
+
+  /**
+   * Takes a sample of in-memory values, shared between the stores.
+   */
+  private void sample(final List<Candidate> candidates, final List<Map.Entry<Long, SpillingBinaryDataStore.Entry>> entries) {
+    candidates.clear();
+    final int stores = _stores.size();
+    if (stores == 0) {
+      return;
+    }
+    final int perStore = Math.max(1, (SAMPLE_SIZE + stores - 1) / stores);
+    final long now = System.nanoTime();
+    for (SpillingBinaryDataStore store : _stores) {
+      entries.clear();
+      store.sample(entries, perStore);
+      for (Map.Entry<Long, SpillingBinaryDataStore.Entry> entry : entries) {
+        candidates.add(new Candidate(store, entry, now));
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + getSpillDirectory() + "]";
+  }
+
+}
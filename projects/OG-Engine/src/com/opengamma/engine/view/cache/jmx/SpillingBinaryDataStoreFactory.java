@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache.jmx;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SpillingBinaryDataStoreFactoryMBean implementation.
+ */
+public final class SpillingBinaryDataStoreFactory implements SpillingBinaryDataStoreFactoryMBean {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SpillingBinaryDataStoreFactory.class);
+
+  private final com.opengamma.engine.view.cache.SpillingBinaryDataStoreFactory _underlying;
+
+  private SpillingBinaryDataStoreFactory(final com.opengamma.engine.view.cache.SpillingBinaryDataStoreFactory underlying) {
+    _underlying = underlying;
+  }
+
+  private com.opengamma.engine.view.cache.SpillingBinaryDataStoreFactory getUnderlying() {
+    return _underlying;
+  }
+
+  public static void registerMBeans(final com.opengamma.engine.view.cache.SpillingBinaryDataStoreFactory factory, final MBeanServer server) throws JMException {
+    final ObjectName name = new ObjectName("com.opengamma:type=SpillingBinaryDataStoreFactory,name=" + ObjectName.quote(factory.getSpillDirectory().getPath()));
+    final SpillingBinaryDataStoreFactory instance = new SpillingBinaryDataStoreFactory(factory);
+    try {
+      server.registerMBean(instance, name);
+    } catch (InstanceAlreadyExistsException e) {
+      s_logger.warn("JMX MBean {} already exists - replacing", name);
+      server.unregisterMBean(name);
+      server.registerMBean(instance, name);
+    }
+  }
+
+  @Override
+  public String getSpillDirectory() {
+    return getUnderlying().getSpillDirectory().getPath();
+  }
+
+  @Override
+  public long getMemoryBudget() {
+    return getUnderlying().getMemoryBudget();
+  }
+
+  @Override
+  public long getMemoryUsed() {
+    return getUnderlying().getMemoryUsed();
+  }
+
+  @Override
+  public long getSpillCount() {
+    return getUnderlying().getSpillCount();
+  }
+
+  @Override
+  public long getSpilledBytes() {
+    return getUnderlying().getSpilledBytes();
+  }
+
+  @Override
+  public long getReadBackCount() {
+    return getUnderlying().getReadBackCount();
+  }
+
+  @Override
+  public long getReadBackNanos() {
+    return getUnderlying().getReadBackNanos();
+  }
+
+  @Override
+  public long getMeanReadBackNanos() {
+    final long count = getUnderlying().getReadBackCount();
+    return (count > 0) ? (getUnderlying().getReadBackNanos() / count) : 0;
+  }
+
+}
@@ -0,0 +1,22 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache.jmx;
+
+/**
+ * JMX MBean interface for the memory budget and spill statistics of a spilling binary data store factory.
+ */
+public interface SpillingBinaryDataStoreFactoryMBean {
+
+  String getSpillDirectory();
+  long getMemoryBudget();
+  long getMemoryUsed();
+  long getSpillCount();
+  long getSpilledBytes();
+  long getReadBackCount();
+  long getReadBackNanos();
+  long getMeanReadBackNanos();
+
+}
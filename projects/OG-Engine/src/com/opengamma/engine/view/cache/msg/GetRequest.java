@@ -11,6 +11,8 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
   public static final String CALCULATION_CONFIGURATION_NAME_KEY = "calculationConfigurationName";
   private java.util.List<Long> _identifier;
   public static final String IDENTIFIER_KEY = "identifier";
+  private Integer _compressionThreshold;
+  public static final String COMPRESSION_THRESHOLD_KEY = "compressionThreshold";
   public GetRequest (com.opengamma.id.UniqueId viewCycleId, String calculationConfigurationName, java.util.Collection<? extends Long> identifier) {
     if (viewCycleId == null) throw new NullPointerException ("'viewCycleId' cannot be null");
     else {
@@ -60,8 +62,17 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
         throw new IllegalArgumentException ("Fudge message is not a GetRequest - field 'identifier' is not long", e);
       }
     }
+    fudgeField = fudgeMsg.getByName (COMPRESSION_THRESHOLD_KEY);
+    if (fudgeField != null)  {
+      try {
+        setCompressionThreshold (fudgeMsg.getFieldValue (Integer.class, fudgeField));
+      }
+      catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException ("Fudge message is not a GetRequest - field 'compressionThreshold' is not integer", e);
+      }
+    }
   }
-  public GetRequest (Long correlationId, com.opengamma.id.UniqueId viewCycleId, String calculationConfigurationName, java.util.Collection<? extends Long> identifier) {
+  public GetRequest (Long correlationId, com.opengamma.id.UniqueId viewCycleId, String calculationConfigurationName, java.util.Collection<? extends Long> identifier, Integer compressionThreshold) {
     super (correlationId);
     if (viewCycleId == null) throw new NullPointerException ("'viewCycleId' cannot be null");
     else {
@@ -79,6 +90,7 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
       }
       _identifier = fudge0;
     }
+    _compressionThreshold = compressionThreshold;
   }
   protected GetRequest (final GetRequest source) {
     super (source);
@@ -92,6 +104,7 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
     else {
       _identifier = new java.util.ArrayList<Long> (source._identifier);
     }
+    _compressionThreshold = source._compressionThreshold;
   }
   public GetRequest clone () {
     return new GetRequest (this);
@@ -117,6 +130,9 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
         msg.add (IDENTIFIER_KEY, null, fudge1);
       }
     }
+    if (_compressionThreshold != null)  {
+      msg.add (COMPRESSION_THRESHOLD_KEY, null, _compressionThreshold);
+    }
   }
   public static GetRequest fromFudgeMsg (final org.fudgemsg.mapping.FudgeDeserializer deserializer, final org.fudgemsg.FudgeMsg fudgeMsg) {
     final java.util.List<org.fudgemsg.FudgeField> types = fudgeMsg.getAllByOrdinal (0);
@@ -175,6 +191,12 @@ public class GetRequest extends com.opengamma.engine.view.cache.msg.CacheMessage
     if (_identifier == null) _identifier = new java.util.ArrayList<Long> ();
     _identifier.add (identifier);
   }
+  public Integer getCompressionThreshold () {
+    return _compressionThreshold;
+  }
+  public void setCompressionThreshold (Integer compressionThreshold) {
+    _compressionThreshold = compressionThreshold;
+  }
   public String toString () {
     return org.apache.commons.lang.builder.ToStringBuilder.reflectionToString(this, org.apache.commons.lang.builder.ToStringStyle.SHORT_PREFIX_STYLE);
   }
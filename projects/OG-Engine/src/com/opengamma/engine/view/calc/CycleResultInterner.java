@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.opengamma.engine.value.ValueSpecification;
+
+/**
+ * Cycle-scoped pool of the immutable structures referenced from the result fragments of a {@link SingleComputationCycle}.
+ * <p>
+ * Results from calculation nodes carry their own copies of each value specification and missing input set, decoded
+ * separately for every job item. Passing them through the pool means the values in the result models share a single
+ * instance of each. The pool is emptied when the cycle is released.
+ */
+/* package */final class CycleResultInterner {
+
+  private final ConcurrentMap<ValueSpecification, ValueSpecification> _specifications = new ConcurrentHashMap<ValueSpecification, ValueSpecification>();
+  private final ConcurrentMap<Set<ValueSpecification>, Set<ValueSpecification>> _specificationSets =
+      new ConcurrentHashMap<Set<ValueSpecification>, Set<ValueSpecification>>();
+
+  /**
+   * Returns the pooled instance of a value specification.
+   *
+   * @param specification the value specification, not null
+   * @return the pooled instance, not null
+   */
+  public ValueSpecification intern(final ValueSpecification specification) {
+    final ValueSpecification existing = _specifications.putIfAbsent(specification, specification);
+    return (existing != null) ? existing : specification;
+  }
+
+  /**
+   * Returns the pooled, unmodifiable, instance of a set of value specifications.
+   *
+   * @param specifications the value specifications, not null
+   * @return the pooled instance, not null
+   */
+  public Set<ValueSpecification> intern(final Set<ValueSpecification> specifications) {
+    if (specifications.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<ValueSpecification> existing = _specificationSets.get(specifications);
+    if (existing != null) {
+      return existing;
+    }
+    final Set<ValueSpecification> copy;
+    if (specifications.size() == 1) {
+      copy = Collections.singleton(intern(specifications.iterator().next()));
+    } else {
+      final Set<ValueSpecification> elements = new HashSet<ValueSpecification>(specifications.size() * 4 / 3 + 1);
+      for (ValueSpecification specification : specifications) {
+        elements.add(intern(specification));
+      }
+      copy = Collections.unmodifiableSet(elements);
+    }
+    existing = _specificationSets.putIfAbsent(copy, copy);
+    return (existing != null) ? existing : copy;
+  }
+
+  /**
+   * Discards the pooled instances.
+   */
+  public void release() {
+    _specifications.clear();
+    _specificationSets.clear();
+  }
+
+}
@@ -5,12 +5,16 @@
  */
 package com.opengamma.engine.view.calc;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
@@ -19,8 +23,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Maps;
 import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.CacheSelectHint;
-import com.opengamma.engine.view.calc.ExecutionPlanCache.DependencyNodeKey;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
 
 /**
@@ -28,34 +32,82 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
  * objects for persistence into a cache to avoid the build cost. A cached plan can be used to
  * construct a set of objects equivalent to the originals and start the execution for a different
  * executor.
+ * <p>
+ * Nodes and values are held as their ordinals within a {@link GraphFingerprint} so the plan is compact,
+ * serializable and applies to any graph with the same fingerprint. A plan must be bound to the
+ * fingerprint of the graph being executed, using {@link #withGraph}, before it is run. A cached plan also
+ * records the {@link GraphFingerprint#getStructure() structure} of the graph it was built from, so that a
+ * fingerprint collision is detected before the plan is used.
  */
-/* package */abstract class ExecutionPlan {
+/* package */abstract class ExecutionPlan implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private static final Logger s_logger = LoggerFactory.getLogger(ExecutionPlan.class);
 
-  private static Collection<DependencyNode> mapNodes(final Collection<DependencyNode> from, final Map<DependencyNodeKey, DependencyNode> to) {
-    final Collection<DependencyNode> nodes = new ArrayList<DependencyNode>(from.size());
-    for (DependencyNode node : from) {
-      final DependencyNode mapped = to.get(new DependencyNodeKey(node));
-      if (mapped == null) {
-        s_logger.warn("Node {} not mapped", node);
-      } else if (mapped == node) {
-        s_logger.info("Using identity mapping");
-        return from;
-      } else {
-        nodes.add(mapped);
-      }
+  private long _estimatedCost;
+  private double _jobCostScale = 1.0;
+  private int[] _structure;
+  private transient GraphFingerprint _graph;
+
+  private static Collection<DependencyNode> getNodes(final GraphFingerprint graph, final int[] ordinals) {
+    final Collection<DependencyNode> nodes = new ArrayList<DependencyNode>(ordinals.length);
+    for (int ordinal : ordinals) {
+      nodes.add(graph.getNode(ordinal));
     }
     return nodes;
   }
 
+  /**
+   * Compact form of a {@link CacheSelectHint}.
+   */
+  private static final class Hint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] _values;
+    private final boolean _isPrivate;
+
+    private Hint(final int[] values, final boolean isPrivate) {
+      _values = values;
+      _isPrivate = isPrivate;
+    }
+
+    public static Hint of(final CacheSelectHint hint, final GraphFingerprint graph) {
+      if (hint == null) {
+        return null;
+      }
+      final Set<ValueSpecification> values = new HashSet<ValueSpecification>();
+      hint.collectValueSpecifications(values);
+      final int[] ordinals = graph.getValueOrdinals(values);
+      if (ordinals == null) {
+        s_logger.warn("Cache hint {} refers to values outside of the graph", hint);
+        return null;
+      }
+      return new Hint(ordinals, hint.isPrivate());
+    }
+
+    public CacheSelectHint toCacheSelectHint(final GraphFingerprint graph) {
+      if (_values.length == 0) {
+        return _isPrivate ? CacheSelectHint.allShared() : CacheSelectHint.allPrivate();
+      }
+      final Collection<ValueSpecification> values = new ArrayList<ValueSpecification>(_values.length);
+      for (int ordinal : _values) {
+        values.add(graph.getValue(ordinal));
+      }
+      return _isPrivate ? CacheSelectHint.privateValues(values) : CacheSelectHint.sharedValues(values);
+    }
+
+  }
+
   private static final class SingleFragment extends ExecutionPlan {
 
-    private final Collection<DependencyNode> _nodes;
-    private final CacheSelectHint _cacheSelectHint;
+    private static final long serialVersionUID = 1L;
+
+    private final int[] _nodes;
+    private final Hint _cacheSelectHint;
 
-    public SingleFragment(final Collection<DependencyNode> nodes, final CacheSelectHint cacheSelectHint) {
-      s_logger.info("Creating {} for {} nodes", this, nodes.size());
+    public SingleFragment(final int[] nodes, final Hint cacheSelectHint) {
       _nodes = nodes;
       _cacheSelectHint = cacheSelectHint;
     }
@@ -63,33 +115,37 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
     @Override
     public Future<DependencyGraph> run(final GraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics) {
       s_logger.info("Running {}", this);
-      final CompleteGraphFragment fragment = new CompleteGraphFragment(context, statistics, _nodes);
+      final CompleteGraphFragment fragment = new CompleteGraphFragment(context, statistics, getNodes(getGraph(), _nodes));
       context.allocateFragmentMap(1);
-      fragment.setCacheSelectHint(_cacheSelectHint);
+      fragment.setCacheSelectHint(_cacheSelectHint.toCacheSelectHint(getGraph()));
       fragment.execute(context);
       return fragment.getFuture();
     }
 
     @Override
-    public SingleFragment withNodes(final Map<DependencyNodeKey, DependencyNode> nodes) {
-      return new SingleFragment(mapNodes(_nodes, nodes), _cacheSelectHint);
+    protected SingleFragment copy() {
+      return new SingleFragment(_nodes, _cacheSelectHint);
     }
 
   }
 
   private static final class MultipleFragment extends ExecutionPlan {
 
-    private static final class FragmentDescriptor {
+    private static final long serialVersionUID = 1L;
+
+    private static final class FragmentDescriptor implements Serializable {
+
+      private static final long serialVersionUID = 1L;
 
-      private final Collection<DependencyNode> _nodes;
-      private final CacheSelectHint _cacheSelectHint;
+      private final int[] _nodes;
+      private final Hint _cacheSelectHint;
       private final int[] _inputs;
       private final int[] _outputs;
       private final int[] _tail;
 
-      private FragmentDescriptor(final GraphFragment<?> fragment) {
-        _nodes = fragment.getNodes();
-        _cacheSelectHint = fragment.getCacheSelectHint();
+      private FragmentDescriptor(final int[] nodes, final Hint cacheSelectHint, final GraphFragment<?> fragment) {
+        _nodes = nodes;
+        _cacheSelectHint = cacheSelectHint;
         int[] a;
         int i;
         if (fragment.getInputFragments().isEmpty()) {
@@ -125,19 +181,24 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
         }
       }
 
-      private FragmentDescriptor(final FragmentDescriptor copyFrom, final Map<DependencyNodeKey, DependencyNode> withNodes) {
-        _nodes = mapNodes(copyFrom.getNodes(), withNodes);
-        _cacheSelectHint = copyFrom.getCacheSelectHint();
-        _inputs = copyFrom.getInputs();
-        _outputs = copyFrom.getOutputs();
-        _tail = copyFrom.getTail();
+      public static FragmentDescriptor of(final GraphFragment<?> fragment, final GraphFingerprint graph) {
+        final int[] nodes = graph.getNodeOrdinals(fragment.getNodes());
+        if (nodes == null) {
+          s_logger.warn("Fragment {} contains nodes outside of the graph", fragment);
+          return null;
+        }
+        final Hint hint = Hint.of(fragment.getCacheSelectHint(), graph);
+        if (hint == null) {
+          return null;
+        }
+        return new FragmentDescriptor(nodes, hint, fragment);
       }
 
-      public Collection<DependencyNode> getNodes() {
+      public int[] getNodes() {
         return _nodes;
       }
 
-      public CacheSelectHint getCacheSelectHint() {
+      public Hint getCacheSelectHint() {
         return _cacheSelectHint;
       }
 
@@ -157,23 +218,29 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
 
     private final Map<Integer, FragmentDescriptor> _fragments;
 
-    public MultipleFragment(final GraphFragment<?> root) {
-      this(new HashMap<Integer, FragmentDescriptor>());
-      s_logger.info("Creating {}", this);
-      process(root.getInputFragments());
-    }
-
     private MultipleFragment(final Map<Integer, FragmentDescriptor> fragments) {
       _fragments = fragments;
     }
 
-    private void process(final Collection<? extends GraphFragment<?>> fragments) {
+    /**
+     * Creates descriptors for the fragments and all of their inputs.
+     *
+     * @return false if a fragment could not be described
+     */
+    private static boolean process(final Collection<? extends GraphFragment<?>> fragments, final GraphFingerprint graph, final Map<Integer, FragmentDescriptor> descriptors) {
       for (GraphFragment<?> fragment : fragments) {
-        if (_fragments.get(fragment.getIdentifier()) == null) {
-          _fragments.put(fragment.getIdentifier(), new FragmentDescriptor(fragment));
-          process(fragment.getInputFragments());
+        if (descriptors.get(fragment.getIdentifier()) == null) {
+          final FragmentDescriptor descriptor = FragmentDescriptor.of(fragment, graph);
+          if (descriptor == null) {
+            return false;
+          }
+          descriptors.put(fragment.getIdentifier(), descriptor);
+          if (!process(fragment.getInputFragments(), graph, descriptors)) {
+            return false;
+          }
         }
       }
+      return true;
     }
 
     @SuppressWarnings({"unchecked" })
@@ -183,15 +250,15 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
       context.allocateFragmentMap(_fragments.size());
       final Map<Integer, GraphFragment> fragments = Maps.newHashMapWithExpectedSize(_fragments.size());
       for (Map.Entry<Integer, FragmentDescriptor> descriptor : _fragments.entrySet()) {
-        final GraphFragment fragment = new GraphFragment(context, descriptor.getValue().getNodes());
-        fragment.setCacheSelectHint(descriptor.getValue().getCacheSelectHint());
+        final GraphFragment fragment = new GraphFragment(context, getNodes(getGraph(), descriptor.getValue().getNodes()));
+        fragment.setCacheSelectHint(descriptor.getValue().getCacheSelectHint().toCacheSelectHint(getGraph()));
         fragments.put(descriptor.getKey(), fragment);
       }
       final List<GraphFragment> runnables = new LinkedList<GraphFragment>();
       final GraphFragment.Root root = new GraphFragment.Root(context, statistics);
       for (Map.Entry<Integer, FragmentDescriptor> entry : _fragments.entrySet()) {
         final GraphFragment fragment = fragments.get(entry.getKey());
-        final FragmentDescriptor descriptor = _fragments.get(entry.getKey());
+        final FragmentDescriptor descriptor = entry.getValue();
         if (descriptor.getInputs() == null) {
           runnables.add(fragment);
         } else {
@@ -224,27 +291,54 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
     }
 
     @Override
-    public MultipleFragment withNodes(final Map<DependencyNodeKey, DependencyNode> nodes) {
-      final Map<Integer, FragmentDescriptor> fragments = new HashMap<Integer, FragmentDescriptor>(_fragments);
-      for (Map.Entry<Integer, FragmentDescriptor> fragment : fragments.entrySet()) {
-        fragment.setValue(new FragmentDescriptor(fragment.getValue(), nodes));
-      }
-      return new MultipleFragment(fragments);
+    protected MultipleFragment copy() {
+      // The descriptors are immutable so can be shared
+      return new MultipleFragment(_fragments);
     }
 
   }
 
   /**
    * Creates an execution plan for fragment tree.
-   * 
+   *
    * @param root the root of the fragment tree
+   * @param graph the fingerprint of the graph the fragments are from
+   * @return the plan bound to the graph, or null if the graph has no canonical numbering
    */
-  public static ExecutionPlan of(final MutableGraphFragment.Root root) {
-    return new MultipleFragment(root);
+  public static ExecutionPlan of(final MutableGraphFragment.Root root, final GraphFingerprint graph) {
+    if (!graph.isCanonical()) {
+      return null;
+    }
+    final Map<Integer, MultipleFragment.FragmentDescriptor> descriptors = new HashMap<Integer, MultipleFragment.FragmentDescriptor>();
+    if (!MultipleFragment.process(root.getInputFragments(), graph, descriptors)) {
+      return null;
+    }
+    final ExecutionPlan plan = new MultipleFragment(descriptors);
+    s_logger.info("Created {} for {} fragments", plan, descriptors.size());
+    plan._graph = graph;
+    return plan;
   }
 
-  public static ExecutionPlan of(final CompleteGraphFragment fragment) {
-    return new SingleFragment(fragment.getNodes(), fragment.getCacheSelectHint());
+  /**
+   * Creates an execution plan for a single fragment containing the whole graph.
+   *
+   * @param fragment the fragment
+   * @param graph the fingerprint of the graph
+   * @return the plan bound to the graph, or null if the graph has no canonical numbering
+   */
+  public static ExecutionPlan of(final CompleteGraphFragment fragment, final GraphFingerprint graph) {
+    if (!graph.isCanonical()) {
+      return null;
+    }
+    final int[] nodes = graph.getNodeOrdinals(fragment.getNodes());
+    final Hint hint = Hint.of(fragment.getCacheSelectHint(), graph);
+    if ((nodes == null) || (hint == null)) {
+      return null;
+    }
+    final ExecutionPlan plan = new SingleFragment(nodes, hint);
+    s_logger.info("Created {} for {} nodes", plan, nodes.length);
+    plan._graph = graph;
+    return plan;
   }
 
   /**
@@ -252,6 +346,68 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
    */
   public abstract Future<DependencyGraph> run(final GraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics);
 
-  public abstract ExecutionPlan withNodes(final Map<DependencyNodeKey, DependencyNode> nodes);
+  /**
+   * Creates a copy of the plan sharing the immutable description.
+   *
+   * @return the copy, not null
+   */
+  protected abstract ExecutionPlan copy();
+
+  /**
+   * Returns the plan bound to a graph.
+   *
+   * @param graph the fingerprint of the graph to execute, or null for an unbound plan
+   * @return the bound plan, not null
+   */
+  public ExecutionPlan withGraph(final GraphFingerprint graph) {
+    final ExecutionPlan plan = copy();
+    plan._graph = graph;
+    plan._estimatedCost = _estimatedCost;
+    plan._jobCostScale = _jobCostScale;
+    plan._structure = _structure;
+    return plan;
+  }
+
+  /**
+   * Records the structure of the graph the plan was built from.
+   *
+   * @param structure the structure, see {@link GraphFingerprint#getStructure}
+   */
+  public void setStructure(final int[] structure) {
+    _structure = structure;
+  }
+
+  /**
+   * Tests whether the plan can be used with a graph, comparing the graph's structure with that the plan was built from.
+   *
+   * @param graph the fingerprint of the graph, not null
+   * @return true if the structures are identical
+   */
+  public boolean isStructureOf(final GraphFingerprint graph) {
+    return Arrays.equals(_structure, graph.getStructure());
+  }
+
+  protected GraphFingerprint getGraph() {
+    return _graph;
+  }
+
+  /**
+   * Records the estimates the plan was built from, so that it can be discarded once they no longer hold.
+   *
+   * @param estimatedCost the estimated cost of the whole graph, or zero if the plan does not depend on it
+   * @param jobCostScale the scale applied to the fragment cost cap
+   */
+  public void setEstimates(final long estimatedCost, final double jobCostScale) {
+    _estimatedCost = estimatedCost;
+    _jobCostScale = jobCostScale;
+  }
+
+  public long getEstimatedCost() {
+    return _estimatedCost;
+  }
+
+  public double getJobCostScale() {
+    return _jobCostScale;
+  }
 
 }
@@ -5,9 +5,8 @@
  */
 package com.opengamma.engine.view.calc;
 
-import java.util.HashSet;
+import java.io.Serializable;
 import java.util.Map;
-import java.util.Set;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -17,17 +16,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.MapMaker;
-import com.google.common.collect.Maps;
-import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.depgraph.DependencyGraph;
-import com.opengamma.engine.depgraph.DependencyNode;
-import com.opengamma.engine.function.FunctionParameters;
-import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.ehcache.EHCacheUtils;
 
 /**
  * Caches meta data taken from a graph fragment graph sufficient to construct a fragment
  * graph quickly for a recently processed graph.
+ * <p>
+ * Plans are keyed by the structural fingerprint of the graph so are shared by all graphs
+ * with the same structure. The fingerprint is only a hash, so the exact structure of the
+ * graph is stored with each plan and compared on a hit; a plan from a colliding graph is
+ * treated as a miss. Plans and keys are serializable, and fingerprints do not depend on
+ * the JVM instance, so the underlying cache may be configured to overflow to, or persist
+ * in, a disk store.
  */
 /* package */class ExecutionPlanCache {
 
@@ -36,73 +38,25 @@ import com.opengamma.util.ehcache.EHCacheUtils;
   private static final String CACHE_NAME = "executionPlans";
 
   /**
-   * Tests two dependency nodes for equality. Two nodes are the same if they
-   * are for the same parameterized function on the same target, taking the same input
-   * values and producing the same output values.
+   * The default fraction by which the estimated cost of a graph may change before its plan is discarded.
    */
-  protected static final class DependencyNodeKey {
-
-    private final ComputationTargetSpecification _target;
-    private final String _functionId;
-    private final FunctionParameters _functionParameters;
-    private final Set<ValueSpecification> _inputs;
-    private final Set<ValueSpecification> _outputs;
-
-    public DependencyNodeKey(final DependencyNode node) {
-      _target = node.getComputationTarget();
-      _functionId = node.getFunction().getFunction().getFunctionDefinition().getUniqueId();
-      _functionParameters = node.getFunction().getParameters();
-      _inputs = node.getInputValues();
-      _outputs = node.getOutputValues();
-    }
-
-    @Override
-    public int hashCode() {
-      int hc = _target.hashCode();
-      hc += (hc << 4) + _functionId.hashCode();
-      hc += (hc << 4) + _functionParameters.hashCode();
-      hc += (hc << 4) + _inputs.hashCode();
-      hc += (hc << 4) + _outputs.hashCode();
-      return hc;
-    }
-
-    @Override
-    public boolean equals(final Object o) {
-      if (o == this) {
-        return true;
-      }
-      if (!(o instanceof DependencyNodeKey)) {
-        return false;
-      }
-      final DependencyNodeKey other = (DependencyNodeKey) o;
-      return _target.equals(other._target)
-          && _functionId.equals(other._functionId)
-          && _functionParameters.equals(other._functionParameters)
-          && _inputs.equals(other._inputs)
-          && _outputs.equals(other._outputs);
-    }
-
-  }
+  public static final double DEFAULT_COST_DRIFT_TOLERANCE = 0.5;
 
   /**
-   * Tests if two dependency graphs are the same. Graphs are the same if they produce the
-   * same terminal outputs and contain nodes which apply the same parameterized functions
-   * to the same target with the same input values and produce the same output values.  
+   * Key to a cached plan. Graphs with the same structural fingerprint share plans.
    */
-  protected static final class DependencyGraphKey {
+  protected static final class PlanKey implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
+    private final long _high;
+    private final long _low;
     private final long _functionInitId;
-    private final Set<ValueSpecification> _terminals;
-    private final Map<DependencyNodeKey, DependencyNode> _nodes;
 
-    public DependencyGraphKey(final DependencyGraph graph, final long functionInitId) {
+    public PlanKey(final GraphFingerprint graph, final long functionInitId) {
+      _high = graph.getHigh();
+      _low = graph.getLow();
       _functionInitId = functionInitId;
-      _terminals = new HashSet<ValueSpecification>(graph.getTerminalOutputSpecifications());
-      final Set<DependencyNode> nodes = graph.getDependencyNodes();
-      _nodes = Maps.newHashMapWithExpectedSize(nodes.size());
-      for (DependencyNode node : nodes) {
-        _nodes.put(new DependencyNodeKey(node), node);
-      }
     }
 
     @Override
@@ -110,43 +64,40 @@ import com.opengamma.util.ehcache.EHCacheUtils;
       if (o == this) {
         return true;
       }
-      if (!(o instanceof DependencyGraphKey)) {
-        return false;
-      }
-      final DependencyGraphKey key = (DependencyGraphKey) o;
-      if (_functionInitId != key._functionInitId) {
-        return false;
-      }
-      if (!_terminals.equals(key._terminals)) {
+      if (!(o instanceof PlanKey)) {
         return false;
       }
-      return _nodes.keySet().equals(key._nodes.keySet());
+      final PlanKey key = (PlanKey) o;
+      return (_high == key._high) && (_low == key._low) && (_functionInitId == key._functionInitId);
     }
 
     @Override
     public int hashCode() {
-      int hc = 0;
+      int hc = (int) (_high ^ (_high >>> 32));
+      hc += (hc << 4) + (int) (_low ^ (_low >>> 32));
       hc += (hc << 4) + (int) (_functionInitId ^ (_functionInitId >>> 32));
-      hc += (hc << 4) + _terminals.hashCode();
-      hc += (hc << 4) + _nodes.keySet().hashCode();
       return hc;
     }
 
-    public Map<DependencyNodeKey, DependencyNode> getNodes() {
-      return _nodes;
-    }
-
   }
 
   private final Cache _cache;
 
   /**
-   * Building the "key" object can be costly. If the graph is still in memory, then we can keep a previous key
-   * around. The current behavior of view processes and executors is that graphs do not get modified once they
-   * are constructed and being used. If this changes then we will have a problem at execution as the older plan
-   * will match.
+   * Calculating the fingerprint of a graph is costly. If the graph is still in memory, then we can keep a previous
+   * fingerprint around. The current behavior of view processes and executors is that graphs do not get modified
+   * once they are constructed and being used. If this changes then we will have a problem at execution as the
+   * older plan will match.
    */
-  private final Map<DependencyGraph, DependencyGraphKey> _identityLookup = new MapMaker().weakKeys().makeMap();
+  private final Map<DependencyGraph, GraphFingerprint> _identityLookup = new MapMaker().weakKeys().makeMap();
+
+  /**
+   * The cost profiles of graphs that are still in memory, for checking cached plans against the current function costs without
+   * walking every node of the graph. As with the fingerprints, this relies on graphs not being modified once they are in use.
+   */
+  private final Map<DependencyGraph, GraphCostProfile> _costProfiles = new MapMaker().weakKeys().makeMap();
+
+  private volatile double _costDriftTolerance = DEFAULT_COST_DRIFT_TOLERANCE;
 
   /**
    * Constructs an instance.
@@ -162,6 +113,21 @@ import com.opengamma.util.ehcache.EHCacheUtils;
     }
   }
 
+  /**
+   * Sets the fraction by which the estimated cost of a graph may change before a plan built from the earlier
+   * estimate is discarded.
+   * 
+   * @param costDriftTolerance the tolerance, not negative
+   */
+  public void setCostDriftTolerance(final double costDriftTolerance) {
+    ArgumentChecker.isTrue(costDriftTolerance >= 0, "costDriftTolerance");
+    _costDriftTolerance = costDriftTolerance;
+  }
+
+  public double getCostDriftTolerance() {
+    return _costDriftTolerance;
+  }
+
   public synchronized void clear() {
     if (_cache != null) {
       s_logger.info("Clearing execution plan cache of {} items", _cache.getSize());
@@ -169,19 +135,62 @@ import com.opengamma.util.ehcache.EHCacheUtils;
     }
   }
 
+  /**
+   * Tests whether plans are being cached. If not there is no need to create them.
+   * 
+   * @return true if plans are cached
+   */
+  public boolean isEnabled() {
+    return _cache != null;
+  }
+
+  /**
+   * Returns the fingerprint of a graph.
+   * 
+   * @param graph the graph, not null
+   * @return the fingerprint, not null
+   */
+  public GraphFingerprint getFingerprint(final DependencyGraph graph) {
+    GraphFingerprint fingerprint = _identityLookup.get(graph);
+    if (fingerprint == null) {
+      s_logger.debug("Identity lookup miss");
+      fingerprint = GraphFingerprint.of(graph);
+      _identityLookup.put(graph, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Returns the cost profile of a graph.
+   * 
+   * @param graph the graph, not null
+   * @return the cost profile, not null
+   */
+  public GraphCostProfile getCostProfile(final DependencyGraph graph) {
+    GraphCostProfile profile = _costProfiles.get(graph);
+    if (profile == null) {
+      profile = GraphCostProfile.of(graph);
+      _costProfiles.put(graph, profile);
+    }
+    return profile;
+  }
+
   public ExecutionPlan getCachedPlan(final DependencyGraph graph, final long functionInitId) {
     if (_cache != null) {
       s_logger.debug("Searching for cached execution plan for {}/{}", graph, functionInitId);
-      DependencyGraphKey key = _identityLookup.get(graph);
-      if ((key == null) || (key._functionInitId != functionInitId)) {
-        s_logger.debug("Identity lookup miss");
-        key = new DependencyGraphKey(graph, functionInitId);
-        _identityLookup.put(graph, key);
+      final GraphFingerprint fingerprint = getFingerprint(graph);
+      if (!fingerprint.isCanonical()) {
+        return null;
       }
-      final Element element = _cache.get(key);
+      final Element element = _cache.get(new PlanKey(fingerprint, functionInitId));
       if (element != null) {
+        final ExecutionPlan plan = (ExecutionPlan) element.getObjectValue();
+        if (!plan.isStructureOf(fingerprint)) {
+          s_logger.warn("Cached plan for {} has fingerprint {} but a different structure", graph, fingerprint);
+          return null;
+        }
         s_logger.debug("Cache hit");
-        return ((ExecutionPlan) element.getObjectValue()).withNodes(key.getNodes());
+        return plan.withGraph(fingerprint);
       } else {
         s_logger.debug("Cache miss");
         return null;
@@ -193,17 +202,37 @@ import com.opengamma.util.ehcache.EHCacheUtils;
 
   public void cachePlan(final DependencyGraph graph, final long functionInitId, final ExecutionPlan plan) {
     if (_cache != null) {
-      s_logger.info("Caching execution plan for {}/{}", graph, functionInitId);
-      DependencyGraphKey key = _identityLookup.get(graph);
-      if ((key == null) || (key._functionInitId != functionInitId)) {
-        s_logger.debug("Identity lookup miss");
-        key = new DependencyGraphKey(graph, functionInitId);
-        _identityLookup.put(graph, key);
+      final GraphFingerprint fingerprint = getFingerprint(graph);
+      if (!fingerprint.isCanonical()) {
+        return;
       }
-      _cache.put(new Element(key, plan));
+      s_logger.info("Caching execution plan for {}/{} as {}", new Object[] {graph, functionInitId, fingerprint });
+      // Don't hold the graph in the cache
+      final ExecutionPlan unbound = plan.withGraph(null);
+      unbound.setStructure(fingerprint.getStructure());
+      _cache.put(new Element(new PlanKey(fingerprint, functionInitId), unbound));
     }
   }
 
-  // TODO [ENG-269] If the function costs change significantly, invalidate the execution plan cache.
+  /**
+   * Tests whether a cached plan was built from estimates that no longer hold. The function costs are
+   * continually updated as jobs execute so a plan that was good when built may no longer partition the
+   * graph well.
+   * 
+   * @param plan the cached plan, not null
+   * @param estimatedCost the current estimated cost of the graph
+   * @param jobCostScale the current scale of the fragment cost cap
+   * @return true if the plan should be rebuilt, false if it can still be used
+   */
+  public boolean isStale(final ExecutionPlan plan, final long estimatedCost, final double jobCostScale) {
+    if (plan.getEstimatedCost() <= 0) {
+      // Plan doesn't depend on the estimates
+      return false;
+    }
+    if (plan.getJobCostScale() != jobCostScale) {
+      return true;
+    }
+    return Math.abs(estimatedCost - plan.getEstimatedCost()) > plan.getEstimatedCost() * getCostDriftTolerance();
+  }
 
 }
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.view.calcnode.stats.FunctionCosts;
+import com.opengamma.engine.view.calcnode.stats.FunctionCostsPerConfiguration;
+import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
+
+/**
+ * The number of nodes, input values and output values in a dependency graph for each function it uses.
+ * <p>
+ * This is all the graph cost model needs, so a graph can be re-estimated as the function costs change with work proportional
+ * to the number of distinct functions rather than the number of nodes.
+ */
+/* package */final class GraphCostProfile {
+
+  private final String _calculationConfigurationName;
+  private final String[] _functionIds;
+  private final long[] _nodes;
+  private final long[] _inputs;
+  private final long[] _outputs;
+
+  private GraphCostProfile(final String calculationConfigurationName, final int functions) {
+    _calculationConfigurationName = calculationConfigurationName;
+    _functionIds = new String[functions];
+    _nodes = new long[functions];
+    _inputs = new long[functions];
+    _outputs = new long[functions];
+  }
+
+  /**
+   * Builds the profile of a graph.
+   *
+   * @param graph the graph, not null
+   * @return the profile, not null
+   */
+  public static GraphCostProfile of(final DependencyGraph graph) {
+    final Map<String, long[]> counts = new HashMap<String, long[]>();
+    for (DependencyNode node : graph.getDependencyNodes()) {
+      final String functionId = node.getFunction().getFunction().getFunctionDefinition().getUniqueId();
+      long[] count = counts.get(functionId);
+      if (count == null) {
+        count = new long[3];
+        counts.put(functionId, count);
+      }
+      count[0]++;
+      count[1] += node.getInputValues().size();
+      count[2] += node.getOutputValues().size();
+    }
+    final GraphCostProfile profile = new GraphCostProfile(graph.getCalculationConfigurationName(), counts.size());
+    int i = 0;
+    for (Map.Entry<String, long[]> count : counts.entrySet()) {
+      profile._functionIds[i] = count.getKey();
+      profile._nodes[i] = count.getValue()[0];
+      profile._inputs[i] = count.getValue()[1];
+      profile._outputs[i] = count.getValue()[2];
+      i++;
+    }
+    return profile;
+  }
+
+  /**
+   * Estimates the cost of executing the graph from the current function statistics, using the same cost model as the fragments.
+   *
+   * @param functionCosts the function costs, not null
+   * @param dataTransferNanosPerByte the time to move a byte of input or output data
+   * @return the estimated cost
+   */
+  public long estimateCost(final FunctionCosts functionCosts, final double dataTransferNanosPerByte) {
+    final FunctionCostsPerConfiguration costs = functionCosts.getStatistics(_calculationConfigurationName);
+    long cost = 0;
+    for (int i = 0; i < _functionIds.length; i++) {
+      final FunctionInvocationStatistics statistics = costs.getStatistics(_functionIds[i]);
+      cost += _nodes[i] * (long) statistics.getInvocationCost();
+      cost += _inputs[i] * (long) (statistics.getDataInputCost() * dataTransferNanosPerByte);
+      cost += _outputs[i] * (long) (statistics.getDataOutputCost() * dataTransferNanosPerByte);
+    }
+    return cost;
+  }
+
+}
@@ -0,0 +1,403 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyNode;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueSpecification;
+
+/**
+ * A 128-bit structural fingerprint of a dependency graph, with a canonical numbering of its nodes and values.
+ * <p>
+ * Graphs have the same fingerprint if they produce the same terminal outputs and contain nodes which apply
+ * the same parameterized functions to the same targets, taking the same input values and producing the same
+ * output values. The fingerprint is the sum of a hash of each node, so can be accumulated as nodes are added
+ * in any order.
+ * <p>
+ * Nodes and values are numbered in the order of their hashes. Structurally identical graphs therefore number
+ * their nodes and values the same way, allowing an {@link ExecutionPlan} to refer to them by ordinal and be
+ * used with any graph having the same fingerprint. If two nodes or values of the graph have the same hash
+ * there is no canonical numbering and the graph cannot share plans.
+ * <p>
+ * Targets, function identifiers, value names and value properties are hashed from their string content so
+ * that the fingerprint of a graph is the same in every JVM. Function parameters are hashed using their own
+ * {@code hashCode}, so a graph with parameters that do not implement a value-based hash will have a different
+ * fingerprint in each run and never find a persisted plan. As the fingerprint is a hash, distinct graphs may
+ * collide. The {@link #getStructure() structure} of the graph is exact for its canonical numbering and is
+ * compared before a plan is used, so a collision can only cause a plan to be used with a graph of identical shape.
+ */
+/* package */final class GraphFingerprint {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(GraphFingerprint.class);
+
+  private static final long SEED_HIGH = 0x6A09E667F3BCC908L;
+  private static final long SEED_LOW = 0xBB67AE8584CAA73BL;
+  private static final long TERMINAL = 0x3C6EF372FE94F82BL;
+
+  private static final Comparator<Hashed<?>> HASH_ORDER = new Comparator<Hashed<?>>() {
+    @Override
+    public int compare(final Hashed<?> o1, final Hashed<?> o2) {
+      if (o1._high != o2._high) {
+        return (o1._high < o2._high) ? -1 : 1;
+      }
+      if (o1._low != o2._low) {
+        return (o1._low < o2._low) ? -1 : 1;
+      }
+      return 0;
+    }
+  };
+
+  private final long _high;
+  private final long _low;
+  private final DependencyNode[] _nodes;
+  private final ValueSpecification[] _values;
+  private final Collection<ValueSpecification> _terminals;
+  private final boolean _canonical;
+  private Map<DependencyNode, Integer> _nodeOrdinals;
+  private Map<ValueSpecification, Integer> _valueOrdinals;
+  private int[] _structure;
+
+  private GraphFingerprint(final long high, final long low, final DependencyNode[] nodes, final ValueSpecification[] values, final Collection<ValueSpecification> terminals,
+      final boolean canonical) {
+    _high = high;
+    _low = low;
+    _nodes = nodes;
+    _values = values;
+    _terminals = terminals;
+    _canonical = canonical;
+  }
+
+  /**
+   * Calculates the fingerprint of a graph.
+   *
+   * @param graph the graph, not null
+   * @return the fingerprint, not null
+   */
+  public static GraphFingerprint of(final DependencyGraph graph) {
+    final Set<DependencyNode> graphNodes = graph.getDependencyNodes();
+    final Hashed<DependencyNode>[] nodes = newArray(graphNodes.size());
+    final Map<ValueSpecification, Hashed<ValueSpecification>> values = new HashMap<ValueSpecification, Hashed<ValueSpecification>>();
+    long high = 0;
+    long low = 0;
+    int i = 0;
+    for (DependencyNode node : graphNodes) {
+      final Hashed<DependencyNode> hashed = hash(node, values);
+      nodes[i++] = hashed;
+      high += hashed._high;
+      low += hashed._low;
+    }
+    final Collection<ValueSpecification> terminals = new ArrayList<ValueSpecification>(graph.getTerminalOutputSpecifications());
+    for (ValueSpecification terminal : terminals) {
+      final Hashed<ValueSpecification> hashed = hash(terminal, values);
+      high += mix(hashed._high ^ TERMINAL);
+      low += mix(hashed._low ^ TERMINAL);
+    }
+    high = mix(high + graphNodes.size());
+    low = mix(low + graphNodes.size());
+    final Hashed<ValueSpecification>[] valueArray = values.values().toArray(GraphFingerprint.<ValueSpecification>newArray(values.size()));
+    final boolean nodesCanonical = sort(nodes);
+    final boolean valuesCanonical = sort(valueArray);
+    final boolean canonical = nodesCanonical && valuesCanonical;
+    if (!canonical) {
+      s_logger.info("No canonical ordering for {}", graph);
+    }
+    final DependencyNode[] nodeOrder = new DependencyNode[nodes.length];
+    for (i = 0; i < nodes.length; i++) {
+      nodeOrder[i] = nodes[i]._object;
+    }
+    final ValueSpecification[] valueOrder = new ValueSpecification[valueArray.length];
+    for (i = 0; i < valueArray.length; i++) {
+      valueOrder[i] = valueArray[i]._object;
+    }
+    return new GraphFingerprint(high, low, nodeOrder, valueOrder, terminals, canonical);
+  }
+
+  //-------------------------------------------------------------------------
+  public long getHigh() {
+    return _high;
+  }
+
+  public long getLow() {
+    return _low;
+  }
+
+  /**
+   * Tests whether the nodes and values have a canonical numbering that can be shared with other graphs.
+   *
+   * @return true if the numbering is canonical
+   */
+  public boolean isCanonical() {
+    return _canonical;
+  }
+
+  public DependencyNode getNode(final int ordinal) {
+    return _nodes[ordinal];
+  }
+
+  public ValueSpecification getValue(final int ordinal) {
+    return _values[ordinal];
+  }
+
+  /**
+   * Converts nodes to their ordinals.
+   *
+   * @param nodes the nodes, not null
+   * @return the ordinals, null if any node is not part of the graph
+   */
+  public synchronized int[] getNodeOrdinals(final Collection<DependencyNode> nodes) {
+    if (_nodeOrdinals == null) {
+      _nodeOrdinals = new HashMap<DependencyNode, Integer>(_nodes.length * 4 / 3 + 1);
+      for (int i = 0; i < _nodes.length; i++) {
+        _nodeOrdinals.put(_nodes[i], i);
+      }
+    }
+    return ordinals(nodes, _nodeOrdinals);
+  }
+
+  /**
+   * Converts values to their ordinals.
+   *
+   * @param values the values, not null
+   * @return the ordinals, null if any value is not part of the graph
+   */
+  public synchronized int[] getValueOrdinals(final Collection<ValueSpecification> values) {
+    if (_valueOrdinals == null) {
+      _valueOrdinals = new HashMap<ValueSpecification, Integer>(_values.length * 4 / 3 + 1);
+      for (int i = 0; i < _values.length; i++) {
+        _valueOrdinals.put(_values[i], i);
+      }
+    }
+    return ordinals(values, _valueOrdinals);
+  }
+
+  /**
+   * Returns the exact shape of the graph under its canonical numbering: the number of nodes and values, the ordinals
+   * of the terminal outputs, and the ordinals of the input and output values of each node in turn. Graphs with the
+   * same fingerprint and the same structure can execute the same plan.
+   *
+   * @return the structure, not null
+   */
+  public synchronized int[] getStructure() {
+    if (_structure == null) {
+      final int[] terminals = sortedOrdinals(_terminals);
+      final int[][] inputs = new int[_nodes.length][];
+      final int[][] outputs = new int[_nodes.length][];
+      int size = 3 + terminals.length;
+      for (int i = 0; i < _nodes.length; i++) {
+        inputs[i] = sortedOrdinals(_nodes[i].getInputValues());
+        outputs[i] = sortedOrdinals(_nodes[i].getOutputValues());
+        size += 2 + inputs[i].length + outputs[i].length;
+      }
+      final int[] structure = new int[size];
+      int j = 0;
+      structure[j++] = _nodes.length;
+      structure[j++] = _values.length;
+      structure[j++] = terminals.length;
+      j = append(structure, j, terminals);
+      for (int i = 0; i < _nodes.length; i++) {
+        structure[j++] = inputs[i].length;
+        j = append(structure, j, inputs[i]);
+        structure[j++] = outputs[i].length;
+        j = append(structure, j, outputs[i]);
+      }
+      _structure = structure;
+    }
+    return _structure;
+  }
+
+  private int[] sortedOrdinals(final Collection<ValueSpecification> values) {
+    final int[] ordinals = getValueOrdinals(values);
+    Arrays.sort(ordinals);
+    return ordinals;
+  }
+
+  private static int append(final int[] structure, final int index, final int[] values) {
+    System.arraycopy(values, 0, structure, index, values.length);
+    return index + values.length;
+  }
+
+  private static <T> int[] ordinals(final Collection<T> objects, final Map<T, Integer> ordinals) {
+    final int[] result = new int[objects.size()];
+    int i = 0;
+    for (T object : objects) {
+      final Integer ordinal = ordinals.get(object);
+      if (ordinal == null) {
+        return null;
+      }
+      result[i++] = ordinal;
+    }
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  private static Hashed<DependencyNode> hash(final DependencyNode node, final Map<ValueSpecification, Hashed<ValueSpecification>> values) {
+    long high = SEED_HIGH;
+    long low = SEED_LOW;
+    final long target = hash(node.getComputationTarget());
+    high = mix(high ^ target);
+    low = mix(low + target);
+    final long function = hash(node.getFunction().getFunction().getFunctionDefinition().getUniqueId());
+    high = mix(high ^ function);
+    low = mix(low + function);
+    final int parameters = node.getFunction().getParameters().hashCode();
+    high = mix(high ^ parameters);
+    low = mix(low + parameters);
+    // Input and output values are unordered sets
+    long inputHigh = 0;
+    long inputLow = 0;
+    for (ValueSpecification input : node.getInputValues()) {
+      final Hashed<ValueSpecification> hashed = hash(input, values);
+      inputHigh += hashed._high;
+      inputLow += hashed._low;
+    }
+    long outputHigh = 0;
+    long outputLow = 0;
+    for (ValueSpecification output : node.getOutputValues()) {
+      final Hashed<ValueSpecification> hashed = hash(output, values);
+      outputHigh += hashed._high;
+      outputLow += hashed._low;
+    }
+    high = mix(mix(high ^ inputHigh) + outputHigh);
+    low = mix(mix(low + inputLow) ^ outputLow);
+    return new Hashed<DependencyNode>(node, high, low);
+  }
+
+  private static Hashed<ValueSpecification> hash(final ValueSpecification value, final Map<ValueSpecification, Hashed<ValueSpecification>> values) {
+    Hashed<ValueSpecification> hashed = values.get(value);
+    if (hashed == null) {
+      final long name = hash(value.getValueName());
+      final long target = hash(value.getTargetSpecification());
+      final long properties = hash(value.getProperties());
+      final long high = mix(mix(mix(SEED_LOW ^ name) ^ target) ^ properties);
+      final long low = mix(mix(mix(SEED_HIGH + name) + target) + properties);
+      hashed = new Hashed<ValueSpecification>(value, high, low);
+      values.put(value, hashed);
+    }
+    return hashed;
+  }
+
+  private static long hash(final ComputationTargetSpecification target) {
+    final long type = hash(target.getType().name());
+    return (target.getUniqueId() != null) ? mix(type ^ hash(target.getUniqueId().toString())) : type;
+  }
+
+  private static long hash(final ValueProperties properties) {
+    final Set<String> names = properties.getProperties();
+    long h = hash(properties.getClass().getName());
+    if (names != null) {
+      // Properties and their values are unordered sets
+      for (String name : names) {
+        long property = hash(name);
+        final Set<String> values = properties.getValues(name);
+        if (values != null) {
+          for (String value : values) {
+            property += mix(hash(value) ^ TERMINAL);
+          }
+        }
+        if (properties.isOptional(name)) {
+          property = ~property;
+        }
+        h += mix(property);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * 64-bit FNV-1a hash of the characters of a string, independent of the JVM instance.
+   */
+  private static long hash(final String str) {
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < str.length(); i++) {
+      h ^= str.charAt(i);
+      h *= 0x100000001B3L;
+    }
+    return mix(h);
+  }
+
+  /**
+   * Finalization step of the 64-bit MurmurHash3 algorithm.
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Sorts hashed objects into hash order.
+   *
+   * @return true if all of the hashes are distinct
+   */
+  private static boolean sort(final Hashed<?>[] hashed) {
+    Arrays.sort(hashed, HASH_ORDER);
+    for (int i = 1; i < hashed.length; i++) {
+      if (HASH_ORDER.compare(hashed[i - 1], hashed[i]) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Hashed<T>[] newArray(final int size) {
+    return new Hashed[size];
+  }
+
+  private static final class Hashed<T> {
+
+    private final T _object;
+    private final long _high;
+    private final long _low;
+
+    private Hashed(final T object, final long high, final long low) {
+      _object = object;
+      _high = high;
+      _low = low;
+    }
+
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof GraphFingerprint)) {
+      return false;
+    }
+    final GraphFingerprint other = (GraphFingerprint) o;
+    return (_high == other._high) && (_low == other._low);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (_high ^ (_high >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", _high, _low);
+  }
+
+}
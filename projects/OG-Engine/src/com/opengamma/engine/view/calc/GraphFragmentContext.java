@@ -45,6 +45,9 @@ import com.opengamma.util.async.Cancelable;
   private final AtomicInteger _graphFragmentIdentifiers = new AtomicInteger();
   private final long _functionInitializationTimestamp;
   private final AtomicLong _executionTime = new AtomicLong();
+  private int _jobCount;
+  private long _longestJobDuration;
+  private int _longestJobItems;
   private final MultipleNodeExecutor _executor;
   private final DependencyGraph _graph;
   // TODO: don't need the full spec in the keys here -- just the job identifier will do
@@ -88,6 +91,31 @@ import com.opengamma.util.async.Cancelable;
     return _executionTime.get();
   }
 
+  /**
+   * Records the duration of a job so that the longest can be reported back to the partitioner.
+   * 
+   * @param result the job result, not null
+   */
+  public synchronized void jobCompleted(final CalculationJobResult result) {
+    _jobCount++;
+    if (result.getDuration() > _longestJobDuration) {
+      _longestJobDuration = result.getDuration();
+      _longestJobItems = result.getResultItems().size();
+    }
+  }
+
+  public synchronized int getJobCount() {
+    return _jobCount;
+  }
+
+  public synchronized long getLongestJobDuration() {
+    return _longestJobDuration;
+  }
+
+  public synchronized int getLongestJobItems() {
+    return _longestJobItems;
+  }
+
   public void allocateFragmentMap(final int size) {
     _job2fragment = createMap(size);
   }
@@ -103,6 +131,7 @@ import com.opengamma.util.async.Cancelable;
     if (fragment != null) {
       // Put result into the queue
       getExecutionResultQueue().offer(new ExecutionResult(Collections.unmodifiableList(fragment.getNodes()), result));
+      jobCompleted(result);
       fragment.resultReceived(this, result);
       // Mark nodes as good or bad - the result items are in the same order as the request items (the dependency nodes)
       final Iterator<CalculationJobResultItem> itrResult = result.getResultItems().iterator();
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adjusts the size of the fragments a graph is partitioned into from the job durations observed when
+ * earlier cycles executed it.
+ * <p>
+ * The partitioner caps the cost of a fragment at the estimated makespan of the graph; a bigger fragment
+ * would finish after everything else could have done. If the estimates are poor a single job may still
+ * take most of the time to execute the graph, leaving the other nodes idle. When that is seen the cap
+ * for the calculation configuration is scaled down so that the next plan uses smaller fragments. When
+ * the jobs are well balanced again the scale is relaxed back towards the unscaled cap.
+ */
+/* package */class GraphPartitioningFeedback {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(GraphPartitioningFeedback.class);
+
+  /**
+   * Fraction of the graph execution time above which the longest job is considered a straggler.
+   */
+  private static final double STRAGGLER_SHARE = 0.5;
+
+  /**
+   * Fraction of the graph execution time below which the longest job is considered balanced.
+   */
+  private static final double BALANCED_SHARE = 0.2;
+
+  private static final double SHRINK = 0.75;
+
+  private static final double GROW = 1.25;
+
+  private static final double MINIMUM_SCALE = 1.0 / 16.0;
+
+  private final ConcurrentMap<String, Double> _jobCostScale = new ConcurrentHashMap<String, Double>();
+
+  /**
+   * Returns the scale to apply to the fragment cost cap.
+   *
+   * @param calculationConfiguration the calculation configuration name
+   * @return the scale, greater than zero and at most one
+   */
+  public double getJobCostScale(final String calculationConfiguration) {
+    final Double scale = _jobCostScale.get(calculationConfiguration);
+    return (scale != null) ? scale : 1.0;
+  }
+
+  /**
+   * Records the execution of a partitioned graph.
+   *
+   * @param calculationConfiguration the calculation configuration name
+   * @param jobCount the number of jobs the graph was executed as
+   * @param longestJobDuration the duration of the longest job, in nanoseconds
+   * @param longestJobItems the number of items in the longest job
+   * @param elapsed the time taken to execute the whole graph, in nanoseconds
+   * @return true if the scale for the configuration changed
+   */
+  public boolean graphExecuted(final String calculationConfiguration, final int jobCount, final long longestJobDuration, final int longestJobItems, final long elapsed) {
+    if ((jobCount < 2) || (elapsed <= 0)) {
+      return false;
+    }
+    final double share = (double) longestJobDuration / (double) elapsed;
+    final double scale = getJobCostScale(calculationConfiguration);
+    final double newScale;
+    if (share > STRAGGLER_SHARE) {
+      if (longestJobItems < 2) {
+        // A single item can't be split any further
+        return false;
+      }
+      newScale = Math.max(scale * SHRINK, MINIMUM_SCALE);
+    } else if ((share < BALANCED_SHARE) && (scale < 1.0)) {
+      newScale = Math.min(scale * GROW, 1.0);
+    } else {
+      return false;
+    }
+    if (newScale == scale) {
+      return false;
+    }
+    s_logger.info("Changing job cost scale for {} to {} (longest job {}% of execution)", new Object[] {calculationConfiguration, newScale, (int) (share * 100) });
+    _jobCostScale.put(calculationConfiguration, newScale);
+    return true;
+  }
+
+  public void clear() {
+    _jobCostScale.clear();
+  }
+
+}
@@ -5,9 +5,11 @@
  */
 package com.opengamma.engine.view.calc;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -24,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.depgraph.DependencyNode;
@@ -51,11 +54,20 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
   private final long _minJobCost;
   private final long _maxJobCost;
   private final int _maxConcurrency;
+  private final int _totalConcurrency;
+  private final double _dataTransferNanosPerByte;
   private final FunctionCosts _functionCosts;
   private final ExecutionPlanCache _cache;
+  private final GraphPartitioningFeedback _feedback;
 
   protected MultipleNodeExecutor(final SingleComputationCycle cycle, final int minimumJobItems, final int maximumJobItems, final long minimumJobCost, final long maximumJobCost,
       final int maximumConcurrency, final FunctionCosts functionCosts, final ExecutionPlanCache cache) {
+    this(cycle, minimumJobItems, maximumJobItems, minimumJobCost, maximumJobCost, maximumConcurrency, 1, 1.0, functionCosts, cache, new GraphPartitioningFeedback());
+  }
+
+  protected MultipleNodeExecutor(final SingleComputationCycle cycle, final int minimumJobItems, final int maximumJobItems, final long minimumJobCost, final long maximumJobCost,
+      final int maximumConcurrency, final int totalConcurrency, final double dataTransferNanosPerByte, final FunctionCosts functionCosts, final ExecutionPlanCache cache,
+      final GraphPartitioningFeedback feedback) {
     // Don't check for null as the factory does this, plus for testing we don't have a cycle and override the methods that use it
     _cycle = cycle;
     _minJobItems = minimumJobItems;
@@ -63,8 +75,11 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     _minJobCost = minimumJobCost;
     _maxJobCost = maximumJobCost;
     _maxConcurrency = maximumConcurrency;
+    _totalConcurrency = totalConcurrency;
+    _dataTransferNanosPerByte = dataTransferNanosPerByte;
     _functionCosts = functionCosts;
     _cache = cache;
+    _feedback = feedback;
   }
 
   protected long getFunctionInitId() {
@@ -79,6 +94,10 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     return _cache;
   }
 
+  protected GraphPartitioningFeedback getFeedback() {
+    return _feedback;
+  }
+
   protected CalculationJobSpecification createJobSpecification(final DependencyGraph graph) {
     return new CalculationJobSpecification(getCycle().getUniqueId(), graph.getCalculationConfigurationName(), getCycle().getValuationTime(), JobIdSource.getId());
   }
@@ -99,6 +118,16 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     getCycle().markFailed(node);
   }
 
+  /**
+   * Reports the execution of a graph so that the fragment sizes used for the next cycle can be adjusted.
+   * 
+   * @param context the execution context, not null
+   * @param elapsed the time taken to execute the graph, in nanoseconds
+   */
+  protected void graphExecuted(final GraphFragmentContext context, final long elapsed) {
+    getFeedback().graphExecuted(context.getGraph().getCalculationConfigurationName(), context.getJobCount(), context.getLongestJobDuration(), context.getLongestJobItems(), elapsed);
+  }
+
   protected CompleteGraphFragment executeSingleFragment(final MutableGraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics) {
     final Collection<DependencyNode> nodes = context.getGraph().getExecutionOrder();
     final CompleteGraphFragment fragment = new CompleteGraphFragment(context, statistics, nodes);
@@ -138,16 +167,27 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
       root.getOutputFragments().add(logicalRoot);
       logicalRoot.getInputFragments().add(root);
     }
+    // Don't merge fragments beyond the point that they would delay completion of the graph
+    long totalCost = 0;
+    for (MutableGraphFragment fragment : allFragments) {
+      totalCost += fragment.getJobCost();
+    }
+    final long criticalPath = getFinishTime(logicalRoot, Maps.<MutableGraphFragment, Long>newHashMapWithExpectedSize(allFragments.size()));
+    final double jobCostScale = getFeedback().getJobCostScale(context.getGraph().getCalculationConfigurationName());
+    final long maxJobCost = getJobCostLimit(criticalPath, totalCost, jobCostScale);
+    s_logger.debug("Critical path {}, total cost {}, fragment cost limit {}", new Object[] {criticalPath, totalCost, maxJobCost });
+    context.setEstimatedCost(totalCost);
+    context.setJobCostScale(jobCostScale);
     int failCount = 0;
     do {
-      if (mergeSharedInputs(logicalRoot, allFragments)) {
+      if (mergeSharedInputs(logicalRoot, allFragments, maxJobCost)) {
         failCount = 0;
       } else {
         if (++failCount >= 2) {
           break;
         }
       }
-      if (mergeSingleDependencies(context, allFragments)) {
+      if (mergeSingleDependencies(context, allFragments, maxJobCost)) {
         failCount = 0;
       } else {
         if (++failCount >= 2) {
@@ -200,7 +240,12 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
       // If the graph is too small, run it as-is
       final CompleteGraphFragment fragment = executeSingleFragment(context, statistics);
       timer.finished();
-      getCache().cachePlan(context.getGraph(), context.getFunctionInitId(), ExecutionPlan.of(fragment));
+      if (getCache().isEnabled()) {
+        final ExecutionPlan plan = ExecutionPlan.of(fragment, getCache().getFingerprint(context.getGraph()));
+        if (plan != null) {
+          getCache().cachePlan(context.getGraph(), context.getFunctionInitId(), plan);
+        }
+      }
       return fragment.getFuture();
     } else {
       final MutableGraphFragment.Root fragment = executeMultipleFragments(context, statistics);
@@ -218,7 +263,12 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
    */
   @Override
   public Future<DependencyGraph> execute(final DependencyGraph graph, final Queue<ExecutionResult> executionResultQueue, final GraphExecutorStatisticsGatherer statistics) {
-    final ExecutionPlan plan = getCache().getCachedPlan(graph, getCycle().getFunctionInitId());
+    ExecutionPlan plan = getCache().getCachedPlan(graph, getCycle().getFunctionInitId());
+    if ((plan != null) && (plan.getEstimatedCost() > 0)
+        && getCache().isStale(plan, estimateGraphCost(graph), getFeedback().getJobCostScale(graph.getCalculationConfigurationName()))) {
+      s_logger.info("Discarding cached execution plan for {} as the cost estimates have changed", graph);
+      plan = null;
+    }
     if (plan != null) {
       s_logger.info("Using cached execution plan for {}", graph);
       return plan.run(new GraphFragmentContext(this, graph, executionResultQueue), statistics);
@@ -248,10 +298,76 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
     return _maxConcurrency;
   }
 
+  public int getTotalConcurrency() {
+    return _totalConcurrency;
+  }
+
+  public double getDataTransferNanosPerByte() {
+    return _dataTransferNanosPerByte;
+  }
+
   public FunctionCosts getFunctionCosts() {
     return _functionCosts;
   }
 
+  /**
+   * Estimates the cost of executing a graph from the current function statistics, using the same cost model
+   * as the fragments.
+   * 
+   * @param graph the graph, not null
+   * @return the estimated cost
+   */
+  protected long estimateGraphCost(final DependencyGraph graph) {
+    return getCache().getCostProfile(graph).estimateCost(getFunctionCosts(), getDataTransferNanosPerByte());
+  }
+
+  /**
+   * Returns the largest cost that fragments may be merged up to. The graph can't complete sooner than the longer of
+   * its critical path and its total cost shared among all of the nodes; a fragment costing more than that would
+   * delay completion of the whole graph.
+   * 
+   * @param criticalPath the estimated cost of the critical path
+   * @param totalCost the estimated cost of the whole graph
+   * @param scale the scale to apply from feedback of earlier executions
+   * @return the cost limit
+   */
+  protected long getJobCostLimit(final long criticalPath, final long totalCost, final double scale) {
+    final long makespan = Math.max(criticalPath, totalCost / Math.max(getTotalConcurrency(), 1));
+    return Math.max(Math.min((long) (makespan * scale), getMaxJobCost()), getMinJobCost());
+  }
+
+  /**
+   * Returns the estimated finish time of a fragment if executed as soon as its inputs are available. The inputs are visited with an
+   * explicit stack as the chain of fragments along the critical path can be too long to recurse.
+   */
+  private static long getFinishTime(final MutableGraphFragment fragment, final Map<MutableGraphFragment, Long> finishTimes) {
+    final Deque<MutableGraphFragment> stack = new ArrayDeque<MutableGraphFragment>();
+    stack.push(fragment);
+    while (!stack.isEmpty()) {
+      final MutableGraphFragment next = stack.peek();
+      if (finishTimes.containsKey(next)) {
+        stack.pop();
+        continue;
+      }
+      long start = 0;
+      boolean ready = true;
+      for (MutableGraphFragment input : next.getInputFragments()) {
+        final Long finish = finishTimes.get(input);
+        if (finish == null) {
+          stack.push(input);
+          ready = false;
+        } else {
+          start = Math.max(start, finish);
+        }
+      }
+      if (ready) {
+        stack.pop();
+        finishTimes.put(next, start + next.getJobCost());
+      }
+    }
+    return finishTimes.get(fragment);
+  }
+
   private Collection<MutableGraphFragment> graphToFragments(final MutableGraphFragmentContext context, final DependencyGraph graph, final Set<MutableGraphFragment> allFragments) {
     final Map<DependencyNode, MutableGraphFragment> node2fragment = new HashMap<DependencyNode, MutableGraphFragment>();
     final Collection<DependencyNode> rootNodes = graph.getRootNodes();
@@ -287,7 +403,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
   /**
    * Finds pairs of nodes with the same input set (i.e. that would execute concurrently) that are below the minimum job size and merge them together.
    */
-  private boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments) {
+  private boolean mergeSharedInputs(final MutableGraphFragment logicalRoot, final Set<MutableGraphFragment> allFragments, final long maxJobCost) {
     final Map<Set<MutableGraphFragment>, MutableGraphFragment> possibleCandidates = new HashMap<Set<MutableGraphFragment>, MutableGraphFragment>();
     // REVIEW 2010-08-27 Andrew -- Should we only create validCandidates when we're ready to use it?
     final Map<MutableGraphFragment, MutableGraphFragment> validCandidates = new HashMap<MutableGraphFragment, MutableGraphFragment>();
@@ -305,7 +421,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
         }
         final MutableGraphFragment mergeCandidate = possibleCandidates.get(fragment.getInputFragments());
         if (mergeCandidate != null) {
-          if (mergeCandidate.canAppendFragment(fragment, getMaxJobItems(), getMaxJobCost())) {
+          if (mergeCandidate.canAppendFragment(fragment, getMaxJobItems(), maxJobCost)) {
             // Defer the merge because we're iterating through the dependent's inputs at the moment
             validCandidates.put(fragment, mergeCandidate);
             // Stop using the merge candidate
@@ -356,7 +472,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
   /**
    * If a fragment has only one dependency, and both it and its dependent are below the maximum job size they are merged.
    */
-  private boolean mergeSingleDependencies(final MutableGraphFragmentContext context, final Set<MutableGraphFragment> allFragments) {
+  private boolean mergeSingleDependencies(final MutableGraphFragmentContext context, final Set<MutableGraphFragment> allFragments, final long maxJobCost) {
     int changes = 0;
     final Iterator<MutableGraphFragment> fragmentIterator = allFragments.iterator();
     while (fragmentIterator.hasNext()) {
@@ -369,7 +485,7 @@ public class MultipleNodeExecutor implements DependencyGraphExecutor<DependencyG
         // Ignore the roots
         continue;
       }
-      if (!dependency.canPrependFragment(fragment, getMaxJobItems(), getMaxJobCost())) {
+      if (!dependency.canPrependFragment(fragment, getMaxJobItems(), maxJobCost)) {
         // Can't merge
         continue;
       }
@@ -25,7 +25,11 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   private long _minimumJobCost = 1;
   private long _maximumJobCost = Long.MAX_VALUE;
   private int _maximumConcurrency = Integer.MAX_VALUE;
+  private int _totalConcurrency = 1;
+  private double _dataTransferNanosPerByte = 1.0;
+  private double _costDriftTolerance = ExecutionPlanCache.DEFAULT_COST_DRIFT_TOLERANCE;
   private FunctionCosts _functionCosts;
+  private final GraphPartitioningFeedback _feedback = new GraphPartitioningFeedback();
   
   public void setCacheManager(CacheManager cacheManager) {
     _cacheManager = cacheManager;
@@ -89,6 +93,55 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
     return _maximumConcurrency;
   }
 
+  /**
+   * Sets the number of jobs that are expected to be executing in parallel across all of the calculation nodes.
+   * Fragments are not merged beyond the cost of the graph shared among this many nodes, unless the critical
+   * path of the graph is longer.
+   * 
+   * @param totalConcurrency the number of jobs expected to be executing in parallel
+   */
+  public void setTotalConcurrency(final int totalConcurrency) {
+    ArgumentChecker.isTrue(totalConcurrency > 0, "totalConcurrency");
+    _totalConcurrency = totalConcurrency;
+    invalidateExecutionPlanCache();
+  }
+
+  public int getTotalConcurrency() {
+    return _totalConcurrency;
+  }
+
+  /**
+   * Sets the cost of moving data to or from the shared cache. The default of one nanosecond per byte assumes 1Gb/s.
+   * 
+   * @param dataTransferNanosPerByte the cost in nanoseconds per byte
+   */
+  public void setDataTransferNanosPerByte(final double dataTransferNanosPerByte) {
+    ArgumentChecker.isTrue(dataTransferNanosPerByte >= 0, "dataTransferNanosPerByte");
+    _dataTransferNanosPerByte = dataTransferNanosPerByte;
+    invalidateExecutionPlanCache();
+  }
+
+  public double getDataTransferNanosPerByte() {
+    return _dataTransferNanosPerByte;
+  }
+
+  /**
+   * Sets the fraction by which the estimated cost of a graph may change before a cached plan for it is rebuilt.
+   * 
+   * @param costDriftTolerance the tolerance, not negative
+   */
+  public void setCostDriftTolerance(final double costDriftTolerance) {
+    ArgumentChecker.isTrue(costDriftTolerance >= 0, "costDriftTolerance");
+    _costDriftTolerance = costDriftTolerance;
+    if (_executionPlanCache != null) {
+      _executionPlanCache.setCostDriftTolerance(costDriftTolerance);
+    }
+  }
+
+  public double getCostDriftTolerance() {
+    return _costDriftTolerance;
+  }
+
   public void setFunctionCosts(final FunctionCosts functionCosts) {
     ArgumentChecker.notNull(functionCosts, "functionCosts");
     _functionCosts = functionCosts;
@@ -102,7 +155,8 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
   @Override
   public MultipleNodeExecutor createExecutor(final SingleComputationCycle cycle) {
     ArgumentChecker.notNull(cycle, "cycle");
-    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getFunctionCosts(), _executionPlanCache);
+    return new MultipleNodeExecutor(cycle, getMinimumJobItems(), getMaximumJobItems(), getMinimumJobCost(), getMaximumJobCost(), getMaximumConcurrency(), getTotalConcurrency(),
+        getDataTransferNanosPerByte(), getFunctionCosts(), _executionPlanCache, _feedback);
   }
 
   @Override
@@ -122,6 +176,7 @@ public class MultipleNodeExecutorFactory implements DependencyGraphExecutorFacto
       setFunctionCosts(new FunctionCosts());
     }
     _executionPlanCache = new ExecutionPlanCache(getCacheManager());
+    _executionPlanCache.setCostDriftTolerance(getCostDriftTolerance());
   }
 
 }
@@ -32,9 +32,10 @@ import com.opengamma.util.ArgumentChecker;
  * 
  * <h2>Tuning rules<h2>
  * 
- * <p>Set maximum concurrency to the average node count of the job invokers. Requires a {@link JobDispatcher}.</p>
+ * <p>Set maximum concurrency to the average node count of the job invokers, and total concurrency to the total node
+ * count. Requires a {@link JobDispatcher}.</p>
  * 
- * <p>TODO: [ENG-200] Tuning of job size and cost parameters</p>
+ * <p>The fragment sizes are adjusted by the executors themselves between cycles from the observed job durations.</p>
  */
 public class MultipleNodeExecutorTuner implements Runnable {
   
@@ -130,6 +131,11 @@ public class MultipleNodeExecutorTuner implements Runnable {
           s_logger.info("Changing maximum concurrency to {}", newMaxConcurrency);
           getFactory().setMaximumConcurrency(newMaxConcurrency);
         }
+        final int newTotalConcurrency = Math.max((int) nodesPerInvoker, 1);
+        if (newTotalConcurrency != getFactory().getTotalConcurrency()) {
+          s_logger.info("Changing total concurrency to {}", newTotalConcurrency);
+          getFactory().setTotalConcurrency(newTotalConcurrency);
+        }
       }
     }
     if (getGraphExecutionStatistics() != null) {
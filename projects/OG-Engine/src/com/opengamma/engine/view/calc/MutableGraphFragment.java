@@ -28,11 +28,6 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
  */
 /* package */class MutableGraphFragment extends GraphFragment<MutableGraphFragment> {
 
-  /**
-   * Data input/output rate from shared cache. Assumes 1Gb/s. This needs to be tunable through the executor.
-   */
-  private static final double NANOS_PER_BYTE = 1.0;
-
   /**
    * Flag to dump the execution plan to a temporary file.
    */
@@ -55,12 +50,13 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
     super(context, node);
     final FunctionInvocationStatistics statistics = context.getFunctionStatistics(node.getFunction().getFunction());
     _invocationCost = (long) statistics.getInvocationCost();
-    final Integer inputCost = (Integer) (int) (statistics.getDataInputCost() * NANOS_PER_BYTE);
+    final double nanosPerByte = context.getExecutor().getDataTransferNanosPerByte();
+    final Integer inputCost = (Integer) (int) (statistics.getDataInputCost() * nanosPerByte);
     for (ValueSpecification input : node.getInputValues()) {
       _inputValues.put(input, inputCost);
     }
     _dataInputCost = node.getInputValues().size() * inputCost;
-    final Integer outputCost = (Integer) (int) (statistics.getDataOutputCost() * NANOS_PER_BYTE);
+    final Integer outputCost = (Integer) (int) (statistics.getDataOutputCost() * nanosPerByte);
     for (ValueSpecification output : node.getOutputValues()) {
       _outputValues.put(output, outputCost);
     }
@@ -309,10 +305,12 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
 
   public static class Root extends MutableGraphFragment {
 
+    private final MutableGraphFragmentContext _context;
     private final RootGraphFragmentFuture _future;
 
     public Root(final MutableGraphFragmentContext context, final GraphExecutorStatisticsGatherer statistics) {
       super(context);
+      _context = context;
       _future = new RootGraphFragmentFuture(context, this, statistics);
     }
 
@@ -323,7 +321,14 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
         printExecutionPlan(ps, this, new HashSet<Integer>());
         ps.close();
       }
-      context.getExecutor().getCache().cachePlan(context.getGraph(), context.getFunctionInitId(), ExecutionPlan.of(this));
+      final ExecutionPlanCache cache = context.getExecutor().getCache();
+      if (cache.isEnabled()) {
+        final ExecutionPlan plan = ExecutionPlan.of(this, cache.getFingerprint(context.getGraph()));
+        if (plan != null) {
+          plan.setEstimates(_context.getEstimatedCost(), _context.getJobCostScale());
+          cache.cachePlan(context.getGraph(), context.getFunctionInitId(), plan);
+        }
+      }
       _future.executed();
     }
 
@@ -22,6 +22,8 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
 
   private final FunctionCostsPerConfiguration _functionCost;
   private Map<ValueSpecification, Boolean> _sharedCacheValues;
+  private long _estimatedCost;
+  private double _jobCostScale = 1.0;
 
   public MutableGraphFragmentContext(final MultipleNodeExecutor executor, final DependencyGraph graph, final Queue<ExecutionResult> executionResultQueue) {
     super(executor, graph, executionResultQueue);
@@ -37,6 +39,22 @@ import com.opengamma.engine.view.calcnode.stats.FunctionInvocationStatistics;
     return _sharedCacheValues;
   }
 
+  public long getEstimatedCost() {
+    return _estimatedCost;
+  }
+
+  public void setEstimatedCost(final long estimatedCost) {
+    _estimatedCost = estimatedCost;
+  }
+
+  public double getJobCostScale() {
+    return _jobCostScale;
+  }
+
+  public void setJobCostScale(final double jobCostScale) {
+    _jobCostScale = jobCostScale;
+  }
+
   public FunctionInvocationStatistics getFunctionStatistics(final CompiledFunctionDefinition function) {
     return _functionCost.getStatistics(function.getFunctionDefinition().getUniqueId());
   }
@@ -36,7 +36,9 @@ import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
     if (!isCancelled()) {
       _done = true;
       notifyAll();
-      _statistics.graphExecuted(getContext().getGraph().getCalculationConfigurationName(), getContext().getGraph().getSize(), getContext().getExecutionTime(), System.nanoTime() - _jobStarted);
+      final long elapsed = System.nanoTime() - _jobStarted;
+      _statistics.graphExecuted(getContext().getGraph().getCalculationConfigurationName(), getContext().getGraph().getSize(), getContext().getExecutionTime(), elapsed);
+      getContext().getExecutor().graphExecuted(getContext(), elapsed);
     }
   }
 
@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,7 +27,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -83,6 +86,16 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
    */
   public static final String MARKET_DATA_SHIFT_PROPERTY = "MARKET_DATA_SHIFT";
 
+  /**
+   * The maximum number of partitions that job results are consolidated into concurrently.
+   */
+  private static final int RESULT_PARTITIONS = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The minimum number of job result items for each partition; smaller batches are consolidated by a single thread.
+   */
+  private static final int MIN_PARTITION_ITEMS = 64;
+
   private enum NodeStateFlag {
     /**
      * Node was executed successfully.
@@ -120,6 +133,8 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
 
   // Output
   private final InMemoryViewComputationResultModel _resultModel;
+  private final CycleResultInterner _resultInterner = new CycleResultInterner();
+  private volatile ExecutorService _resultExecutor;
 
   public SingleComputationCycle(UniqueId cycleId, UniqueId viewProcessId,
       ComputationResultListener cycleFragmentResultListener, ViewProcessContext viewProcessContext,
@@ -285,7 +300,8 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
    * 
    * @param previousCycle the previous cycle from which a delta cycle should be performed, or null to perform a full cycle
    * @param marketDataSnapshot the market data snapshot with which to execute the cycle, not null
-   * @param calcJobResultExecutorService the executor to use for streaming calculation job result consumption, not null
+   * @param calcJobResultExecutorService the executor to use for streaming calculation job result consumption and consolidation of the results into the
+   *          result model, not null
    * @throws InterruptedException if the thread is interrupted while waiting for the computation cycle to complete. Execution of any outstanding jobs will be cancelled, but {@link #release()} still
    *           must be called.
    */
@@ -303,6 +319,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       computeDelta(previousCycle);
     }
 
+    _resultExecutor = calcJobResultExecutorService;
     final BlockingQueue<ExecutionResult> calcJobResultQueue = new LinkedBlockingQueue<ExecutionResult>();
     CalculationJobResultStreamConsumer calculationJobResultStreamConsumer = new CalculationJobResultStreamConsumer(calcJobResultQueue, this);
     Future<?> resultStreamConsumerJobInProgress;
@@ -541,9 +558,16 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
   private void populateResultModel() {
     getResultModel().setCalculationTime(Instant.now());
     getResultModel().setCalculationDuration(getDuration());
-    for (DependencyGraph depGraph : getCompiledViewDefinition().getAllDependencyGraphs()) {
-      populateResultModel(depGraph);
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    for (final DependencyGraph depGraph : getCompiledViewDefinition().getAllDependencyGraphs()) {
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          populateResultModel(depGraph);
+        }
+      });
     }
+    runConcurrently(tasks);
   }
 
   private void populateResultModel(DependencyGraph depGraph) {
@@ -559,6 +583,48 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     }
   }
 
+  /**
+   * Runs tasks using the result executor supplied to {@link #execute}, if any, returning when all have completed. The calling thread runs any
+   * tasks the executor has not started, so this is safe to call from a thread belonging to that executor.
+   * 
+   * @param tasks the tasks to run, not null
+   */
+  private void runConcurrently(final List<Runnable> tasks) {
+    final ExecutorService executor = _resultExecutor;
+    if ((executor == null) || (tasks.size() < 2)) {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+      return;
+    }
+    final List<FutureTask<Object>> futures = new ArrayList<FutureTask<Object>>(tasks.size());
+    for (Runnable task : tasks) {
+      final FutureTask<Object> future = new FutureTask<Object>(task, null);
+      if (!futures.isEmpty()) {
+        try {
+          executor.execute(future);
+        } catch (RejectedExecutionException e) {
+          s_logger.debug("Result executor rejected task; running inline");
+        }
+      }
+      futures.add(future);
+    }
+    // A task already started (or finished) by the executor won't be run a second time
+    for (FutureTask<Object> future : futures) {
+      future.run();
+    }
+    for (FutureTask<Object> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted while consolidating results", e);
+      } catch (ExecutionException e) {
+        throw new OpenGammaRuntimeException("Unable to consolidate results", e.getCause());
+      }
+    }
+  }
+
   /*package*/void calculationJobsCompleted(List<ExecutionResult> results) {
     try {
       ViewComputationResultModel fragmentResult = generateCycleFragmentResult(results);
@@ -578,46 +644,119 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
     }
   }
 
+  /**
+   * The result items from a batch of completed jobs that are consolidated into a fragment result by one task. Items are dealt to the partitions in
+   * turn so that each task makes a similar share of the cache reads, which are the part of consolidation that runs concurrently. All tasks add their
+   * values to the same fragment result model, whose monitor serializes the adds.
+   */
+  private static final class FragmentPartition {
+
+    private ExecutionResult[] _results = new ExecutionResult[16];
+    private int[] _items = new int[16];
+    private int _size;
+
+    public void add(final ExecutionResult result, final int item) {
+      if (_size == _items.length) {
+        _results = Arrays.copyOf(_results, _size * 2);
+        _items = Arrays.copyOf(_items, _size * 2);
+      }
+      _results[_size] = result;
+      _items[_size++] = item;
+    }
+
+  }
+
   private ViewComputationResultModel generateCycleFragmentResult(List<ExecutionResult> calculationJobResults) {
-    InMemoryViewComputationResultModel resultModel = constructTemplateResultModel();
+    final InMemoryViewComputationResultModel resultModel = constructTemplateResultModel();
+    int itemCount = 0;
     for (ExecutionResult calculationJobResult : calculationJobResults) {
-      String calcConfigurationName = calculationJobResult.getResult().getSpecification().getCalcConfigName();
-      DependencyGraph depGraph = getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
-      ViewComputationCache computationCache = getComputationCache(calcConfigurationName);
-      final Iterator<CalculationJobResultItem> itrResultItem = calculationJobResult.getResult().getResultItems().iterator();
-      final Iterator<DependencyNode> itrNode = calculationJobResult.getNodes().iterator();
-      while (itrResultItem.hasNext()) {
-        assert itrNode.hasNext();
-        final CalculationJobResultItem resultItem = itrResultItem.next();
-        final DependencyNode node = itrNode.next();
-        Set<ValueSpecification> specifications = node.getOutputValues();
-        Map<ValueSpecification, Set<ValueRequirement>> requirements = submapByKeySet(depGraph.getTerminalOutputs(), specifications);
-        resultModel.addRequirements(requirements);
-        for (Pair<ValueSpecification, Object> value : computationCache.getValues(specifications, CacheSelectHint.allShared())) {
-          final ValueSpecification valueSpec = value.getFirst();
-          final Object calculatedValue = value.getSecond();
-          if ((calculatedValue == null) || !requirements.containsKey(valueSpec)) {
-            // Not in cache or not a terminal output
-            continue;
-          }
-          if (calculatedValue instanceof MissingMarketDataSentinel) {
-            continue;
+      itemCount += calculationJobResult.getNodes().size();
+    }
+    final int partitionCount = Math.min(RESULT_PARTITIONS, itemCount / MIN_PARTITION_ITEMS);
+    if ((_resultExecutor == null) || (partitionCount < 2)) {
+      for (ExecutionResult calculationJobResult : calculationJobResults) {
+        addToCycleFragmentResult(resultModel, calculationJobResult);
+      }
+    } else {
+      final FragmentPartition[] partitions = new FragmentPartition[partitionCount];
+      for (int i = 0; i < partitionCount; i++) {
+        partitions[i] = new FragmentPartition();
+      }
+      int index = 0;
+      for (ExecutionResult calculationJobResult : calculationJobResults) {
+        final int nodes = calculationJobResult.getNodes().size();
+        for (int i = 0; i < nodes; i++) {
+          partitions[index].add(calculationJobResult, i);
+          if (++index == partitionCount) {
+            index = 0;
           }
-          ComputedValue computedValue = new ComputedValue(valueSpec, calculatedValue);
-          computedValue.setInvocationResult(resultItem.getResult());
-          computedValue.setMissingInputs(resultItem.getMissingInputs());
-          computedValue.setExceptionClass(resultItem.getExceptionClass());
-          computedValue.setExceptionMsg(resultItem.getExceptionMsg());
-          computedValue.setStackTrace(resultItem.getStackTrace());
-          computedValue.setRequirements(depGraph.getTerminalOutputs().get(valueSpec));
-          computedValue.setComputeNodeId(calculationJobResult.getResult().getComputeNodeId());
-          resultModel.addValue(calcConfigurationName, computedValue);
         }
       }
+      final List<Runnable> tasks = new ArrayList<Runnable>(partitionCount);
+      for (final FragmentPartition partition : partitions) {
+        tasks.add(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 0; i < partition._size; i++) {
+              final ExecutionResult calculationJobResult = partition._results[i];
+              final int item = partition._items[i];
+              addToCycleFragmentResult(resultModel, calculationJobResult, calculationJobResult.getResult().getResultItems().get(item), calculationJobResult.getNodes().get(item));
+            }
+          }
+        });
+      }
+      runConcurrently(tasks);
     }
     return !resultModel.getAllResults().isEmpty() ? resultModel : null;
   }
 
+  private void addToCycleFragmentResult(final InMemoryViewComputationResultModel resultModel, final ExecutionResult calculationJobResult) {
+    final Iterator<CalculationJobResultItem> itrResultItem = calculationJobResult.getResult().getResultItems().iterator();
+    final Iterator<DependencyNode> itrNode = calculationJobResult.getNodes().iterator();
+    while (itrResultItem.hasNext()) {
+      assert itrNode.hasNext();
+      addToCycleFragmentResult(resultModel, calculationJobResult, itrResultItem.next(), itrNode.next());
+    }
+  }
+
+  private void addToCycleFragmentResult(final InMemoryViewComputationResultModel resultModel, final ExecutionResult calculationJobResult,
+      final CalculationJobResultItem resultItem, final DependencyNode node) {
+    final Set<ValueSpecification> terminalOutputs = node.getTerminalOutputValues();
+    if (terminalOutputs.isEmpty()) {
+      // Intermediate node; none of its outputs belong in the result model so don't fetch them
+      return;
+    }
+    final String calcConfigurationName = calculationJobResult.getResult().getSpecification().getCalcConfigName();
+    final DependencyGraph depGraph = getCompiledViewDefinition().getDependencyGraph(calcConfigurationName);
+    final Map<ValueSpecification, Set<ValueRequirement>> requirements = submapByKeySet(depGraph.getTerminalOutputs(), terminalOutputs);
+    if (requirements.isEmpty()) {
+      return;
+    }
+    resultModel.addRequirements(requirements);
+    final Set<ValueSpecification> missingInputs = _resultInterner.intern(resultItem.getMissingInputs());
+    final ViewComputationCache computationCache = getComputationCache(calcConfigurationName);
+    for (Pair<ValueSpecification, Object> value : computationCache.getValues(requirements.keySet(), CacheSelectHint.allShared())) {
+      final ValueSpecification valueSpec = value.getFirst();
+      final Object calculatedValue = value.getSecond();
+      if ((calculatedValue == null) || !requirements.containsKey(valueSpec)) {
+        // Not in cache or not a terminal output
+        continue;
+      }
+      if (calculatedValue instanceof MissingMarketDataSentinel) {
+        continue;
+      }
+      ComputedValue computedValue = new ComputedValue(valueSpec, calculatedValue);
+      computedValue.setInvocationResult(resultItem.getResult());
+      computedValue.setMissingInputs(missingInputs);
+      computedValue.setExceptionClass(resultItem.getExceptionClass());
+      computedValue.setExceptionMsg(resultItem.getExceptionMsg());
+      computedValue.setStackTrace(resultItem.getStackTrace());
+      computedValue.setRequirements(depGraph.getTerminalOutputs().get(valueSpec));
+      computedValue.setComputeNodeId(calculationJobResult.getResult().getComputeNodeId());
+      resultModel.addValue(calcConfigurationName, computedValue);
+    }
+  }
+
   private void addMarketDataToResultFragment(InMemoryViewComputationResultModel result, ValueSpecification marketDataSpecification, ComputedValue marketData) {
     result.addMarketData(marketData);
     for (DependencyGraph depGraph : getCompiledViewDefinition().getAllDependencyGraphs()) {
@@ -700,6 +839,7 @@ public class SingleComputationCycle implements ViewCycle, EngineResource {
       dumpComputationCachesToDisk();
     }
     getViewProcessContext().getComputationCacheSource().releaseCaches(getUniqueId());
+    _resultInterner.release();
     _state = ViewCycleState.DESTROYED;
   }
 
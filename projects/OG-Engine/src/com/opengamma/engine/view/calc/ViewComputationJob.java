@@ -6,16 +6,22 @@
 package com.opengamma.engine.view.calc;
 
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -61,11 +67,18 @@ import com.opengamma.engine.view.listener.ComputationResultListener;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
 import com.opengamma.util.TerminatableJob;
 import com.opengamma.util.monitor.OperationTimer;
 
 /**
  * The job which schedules and executes computation cycles for a view process.
+ * <p>
+ * If the execution options allow more than one concurrent cycle, each cycle is prepared on the job's thread - obtaining
+ * the compiled view definition and initialising the market data snapshot - and then executed on a separate thread while
+ * the next cycle is prepared. Every cycle has its own computation caches, identified by its cycle identifier. The
+ * results of each cycle are held until those of the earlier cycles have been delivered, so the view process receives
+ * the cycles in sequence order.
  */
 public class ViewComputationJob extends TerminatableJob implements MarketDataListener {
   private static final Logger s_logger = LoggerFactory.getLogger(ViewComputationJob.class);
@@ -80,6 +93,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
   private final ViewCycleTrigger _masterCycleTrigger;
   private final FixedTimeTrigger _compilationExpiryCycleTrigger;
   private final boolean _executeCycles;
+  private final int _maxConcurrentCycles;
 
   private int _cycleCount;
   private EngineResourceReference<SingleComputationCycle> _previousCycleReference;
@@ -106,6 +120,19 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   private MarketDataProvider _marketDataProvider;
 
+  /**
+   * The cycles executing concurrently, oldest first. Only accessed by the job's thread.
+   */
+  private final Deque<ConcurrentCycle> _concurrentCycles = new ArrayDeque<ConcurrentCycle>();
+  private ExecutorService _concurrentCycleExecutor;
+
+  private final ComputationResultListener _streamingResultListener = new ComputationResultListener() {
+    @Override
+    public void resultAvailable(ViewComputationResultModel result) {
+      cycleFragmentCompleted(result);
+    }
+  };
+
   public ViewComputationJob(ViewProcessImpl viewProcess, ViewExecutionOptions executionOptions,
       ViewProcessContext processContext, EngineResourceManagerInternal<SingleComputationCycle> cycleManager) {
     ArgumentChecker.notNull(viewProcess, "viewProcess");
@@ -120,6 +147,8 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     _compilationExpiryCycleTrigger = new FixedTimeTrigger();
     _masterCycleTrigger = createViewCycleTrigger(executionOptions);
     _executeCycles = !getExecutionOptions().getFlags().contains(ViewExecutionFlags.COMPILE_ONLY);
+    final Integer maxConcurrentCycles = executionOptions.getMaxConcurrentCycles();
+    _maxConcurrentCycles = (_executeCycles && maxConcurrentCycles != null) ? maxConcurrentCycles : 1;
     updateViewDefinitionIfRequired();
     subscribeToViewDefinition();
   }
@@ -164,6 +193,19 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     return _compilationExpiryCycleTrigger;
   }
 
+  private boolean isConcurrent() {
+    return _maxConcurrentCycles > 1;
+  }
+
+  private ExecutorService getConcurrentCycleExecutor() {
+    if (_concurrentCycleExecutor == null) {
+      // Each cycle also needs a thread to consume its calculation job results, so the pool cannot be bounded by the
+      // number of concurrent cycles
+      _concurrentCycleExecutor = Executors.newCachedThreadPool(new NamedThreadPoolFactory("ViewCycle-" + getViewProcess().getUniqueId()));
+    }
+    return _concurrentCycleExecutor;
+  }
+
   /**
    * Determines whether to run, and runs if required, a single computation cycle using the following rules:
    * <ul>
@@ -193,6 +235,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       }
       if (executionOptions == null) {
         s_logger.info("No more view cycle execution options");
+        completeConcurrentCycles();
         processCompleted();
         return;
       }
@@ -203,7 +246,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
     if (executionOptions.getMarketDataSpecification() == null) {
       s_logger.error("No market data specification for cycle");
-      cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException("No market data specification for cycle"));
+      cyclePreparationFailed(executionOptions, new OpenGammaRuntimeException("No market data specification for cycle"));
       return;
     }
 
@@ -214,6 +257,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
         // most efficient operation.
         if (getMarketDataProvider() != null) {
           s_logger.info("Replacing market data provider between cycles");
+          completeConcurrentCycles();
         }
         replaceMarketDataProvider(executionOptions.getMarketDataSpecification());
       }
@@ -222,7 +266,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       marketDataSnapshot = getMarketDataProvider().snapshot(executionOptions.getMarketDataSpecification());
     } catch (Exception e) {
       s_logger.error("Error with market data provider", e);
-      cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException("Error with market data provider", e));
+      cyclePreparationFailed(executionOptions, new OpenGammaRuntimeException("Error with market data provider", e));
       return;
     }
 
@@ -241,7 +285,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       }
     } catch (Exception e) {
       s_logger.error("Error obtaining compilation valuation time", e);
-      cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException("Error obtaining compilation valuation time", e));
+      cyclePreparationFailed(executionOptions, new OpenGammaRuntimeException("Error obtaining compilation valuation time", e));
       return;
     }
 
@@ -253,7 +297,7 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       String message = MessageFormat.format("Error obtaining compiled view definition {0} for time {1} at version-correction {2}",
           getViewProcess().getDefinitionId(), compilationValuationTime, versionCorrection);
       s_logger.error(message);
-      cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException(message, e));
+      cyclePreparationFailed(executionOptions, new OpenGammaRuntimeException(message, e));
       return;
     }
 
@@ -268,12 +312,14 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       }
     } catch (Exception e) {
       s_logger.error("Error initializing snapshot {}", marketDataSnapshot);
-      cycleExecutionFailed(executionOptions, new OpenGammaRuntimeException("Error initializing snapshot" + marketDataSnapshot, e));
+      cyclePreparationFailed(executionOptions, new OpenGammaRuntimeException("Error initializing snapshot" + marketDataSnapshot, e));
     }
 
+    final ConcurrentCycle concurrentCycle = isConcurrent() ? new ConcurrentCycle(executionOptions) : null;
     EngineResourceReference<SingleComputationCycle> cycleReference;
     try {
-      cycleReference = createCycle(executionOptions, compiledViewDefinition, versionCorrection);
+      cycleReference = createCycle(executionOptions, compiledViewDefinition, versionCorrection,
+          (concurrentCycle != null) ? concurrentCycle : _streamingResultListener);
     } catch (Exception e) {
       s_logger.error("Error creating next view cycle for view process " + getViewProcess(), e);
       return;
@@ -281,23 +327,14 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
     if (_executeCycles) {
       try {
-        final SingleComputationCycle singleComputationCycle = cycleReference.get();
-        final HashMap<String, Collection<ComputationTargetSpecification>> configToComputationTargets = new HashMap<String, Collection<ComputationTargetSpecification>>();
-        final HashMap<String, Map<ValueSpecification, Set<ValueRequirement>>> configToTerminalOutputs = new HashMap<String, Map<ValueSpecification, Set<ValueRequirement>>>();
-        for (DependencyGraph graph : compiledViewDefinition.getAllDependencyGraphs()) {
-          configToComputationTargets.put(graph.getCalculationConfigurationName(), graph.getAllComputationTargets());
-          configToTerminalOutputs.put(graph.getCalculationConfigurationName(), graph.getTerminalOutputs());
+        final ViewCycleMetadata cycleMetadata = createCycleMetadata(cycleReference.get(), marketDataSnapshot, compiledViewDefinition,
+            versionCorrection, executionOptions);
+        if (concurrentCycle != null) {
+          executeConcurrently(concurrentCycle, cycleReference, cycleMetadata, marketDataSnapshot);
+        } else {
+          cycleStarted(cycleMetadata);
+          executeViewCycle(cycleType, cycleReference, marketDataSnapshot, getViewProcess().getCalcJobResultExecutorService());
         }
-        cycleStarted(new DefaultViewCycleMetadata(
-            cycleReference.get().getUniqueId(),
-            marketDataSnapshot.getUniqueId(),
-            compiledViewDefinition.getViewDefinition().getUniqueId(),
-            versionCorrection,
-            executionOptions.getValuationTime(),
-            singleComputationCycle.getAllCalculationConfigurationNames(),
-            configToComputationTargets,
-            configToTerminalOutputs));
-        executeViewCycle(cycleType, cycleReference, marketDataSnapshot, getViewProcess().getCalcJobResultExecutorService());
       } catch (InterruptedException e) {
         // Execution interrupted - don't propagate as failure
         s_logger.info("View cycle execution interrupted for view process {}", getViewProcess());
@@ -312,6 +349,16 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       }
     }
 
+    if (concurrentCycle != null) {
+      // Deliver any cycles which have completed, waiting for the oldest if no more may be started
+      deliverConcurrentCycles(_concurrentCycles.size() >= _maxConcurrentCycles);
+      if (getExecutionOptions().getExecutionSequence().isEmpty()) {
+        completeConcurrentCycles();
+        processCompleted();
+      }
+      return;
+    }
+
     // Don't push the results through if we've been terminated, since another computation job could be running already
     // and the fact that we've been terminated means the view is no longer interested in the result. Just die quietly.
     if (isTerminated()) {
@@ -335,6 +382,31 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
   }
 
+  private ViewCycleMetadata createCycleMetadata(SingleComputationCycle cycle, MarketDataSnapshot marketDataSnapshot,
+      CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, VersionCorrection versionCorrection, ViewCycleExecutionOptions executionOptions) {
+    final HashMap<String, Collection<ComputationTargetSpecification>> configToComputationTargets = new HashMap<String, Collection<ComputationTargetSpecification>>();
+    final HashMap<String, Map<ValueSpecification, Set<ValueRequirement>>> configToTerminalOutputs = new HashMap<String, Map<ValueSpecification, Set<ValueRequirement>>>();
+    for (DependencyGraph graph : compiledViewDefinition.getAllDependencyGraphs()) {
+      configToComputationTargets.put(graph.getCalculationConfigurationName(), graph.getAllComputationTargets());
+      configToTerminalOutputs.put(graph.getCalculationConfigurationName(), graph.getTerminalOutputs());
+    }
+    return new DefaultViewCycleMetadata(
+        cycle.getUniqueId(),
+        marketDataSnapshot.getUniqueId(),
+        compiledViewDefinition.getViewDefinition().getUniqueId(),
+        versionCorrection,
+        executionOptions.getValuationTime(),
+        cycle.getAllCalculationConfigurationNames(),
+        configToComputationTargets,
+        configToTerminalOutputs);
+  }
+
+  private void cyclePreparationFailed(ViewCycleExecutionOptions executionOptions, Exception exception) {
+    // Report the failure after the results of any earlier cycles
+    completeConcurrentCycles();
+    cycleExecutionFailed(executionOptions, exception);
+  }
+
   private void cycleCompleted(ViewCycle cycle) {
     try {
       getViewProcess().cycleCompleted(cycle);
@@ -470,14 +542,113 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
       throw e;
     }
 
-    long durationNanos = cycleReference.get().getDuration().toNanosLong();
+    recordCycleDuration(cycleReference.get());
+  }
+
+  private void recordCycleDuration(SingleComputationCycle cycle) {
+    long durationNanos = cycle.getDuration().toNanosLong();
     _totalTimeNanos += durationNanos;
     _cycleCount += 1;
     s_logger.info("Last latency was {} ms, Average latency is {} ms", durationNanos / NANOS_PER_MILLISECOND, (_totalTimeNanos / _cycleCount) / NANOS_PER_MILLISECOND);
   }
 
+  //-------------------------------------------------------------------------
+  private void executeConcurrently(final ConcurrentCycle concurrentCycle, final EngineResourceReference<SingleComputationCycle> cycleReference,
+      final ViewCycleMetadata cycleMetadata, final MarketDataSnapshot marketDataSnapshot) {
+    s_logger.info("Performing full computation concurrently with {} earlier cycles", _concurrentCycles.size());
+    concurrentCycle.setCycle(cycleReference, cycleMetadata);
+    final ExecutorService executor = getConcurrentCycleExecutor();
+    concurrentCycle.setFuture(executor.submit(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        if (!concurrentCycle.started()) {
+          return null;
+        }
+        try {
+          cycleReference.get().execute(null, marketDataSnapshot, executor);
+        } finally {
+          concurrentCycle.finished();
+        }
+        return null;
+      }
+    }));
+    _concurrentCycles.add(concurrentCycle);
+  }
+
+  /**
+   * Delivers the events of concurrently executing cycles to the view process, in sequence order, stopping at the first
+   * cycle which is still executing.
+   * 
+   * @param waitForOldest true to wait for the oldest cycle to complete, false to deliver only completed cycles
+   */
+  private void deliverConcurrentCycles(boolean waitForOldest) {
+    while (!_concurrentCycles.isEmpty()) {
+      final ConcurrentCycle oldest = _concurrentCycles.peek();
+      if (!waitForOldest && !oldest.getFuture().isDone()) {
+        return;
+      }
+      waitForOldest = false;
+      try {
+        deliverConcurrentCycle(oldest);
+      } catch (InterruptedException e) {
+        Thread.interrupted();
+        s_logger.info("Interrupted while waiting for {} concurrent cycles. No results will be output from these cycles.", _concurrentCycles.size());
+        cancelConcurrentCycles();
+        return;
+      }
+      _concurrentCycles.poll();
+    }
+  }
+
+  private void completeConcurrentCycles() {
+    while (!_concurrentCycles.isEmpty()) {
+      deliverConcurrentCycles(true);
+    }
+  }
+
+  private void deliverConcurrentCycle(final ConcurrentCycle concurrentCycle) throws InterruptedException {
+    Exception failure = null;
+    try {
+      concurrentCycle.getFuture().get();
+    } catch (ExecutionException e) {
+      failure = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+    }
+    final EngineResourceReference<SingleComputationCycle> cycleReference = concurrentCycle.getCycleReference();
+    if (isTerminated()) {
+      cycleReference.release();
+      return;
+    }
+    cycleStarted(concurrentCycle.getCycleMetadata());
+    for (ViewComputationResultModel fragment : concurrentCycle.takeFragments()) {
+      cycleFragmentCompleted(fragment);
+    }
+    if (failure != null) {
+      s_logger.error("View cycle execution failed for view process " + getViewProcess(), failure);
+      cycleReference.release();
+      cycleExecutionFailed(concurrentCycle.getExecutionOptions(), failure);
+      return;
+    }
+    recordCycleDuration(cycleReference.get());
+    cycleCompleted(cycleReference.get());
+    if (_previousCycleReference != null) {
+      _previousCycleReference.release();
+    }
+    _previousCycleReference = cycleReference;
+  }
+
+  private void cancelConcurrentCycles() {
+    for (ConcurrentCycle concurrentCycle : _concurrentCycles) {
+      concurrentCycle.cancel();
+    }
+    _concurrentCycles.clear();
+  }
+
   @Override
   protected void postRunCycle() {
+    cancelConcurrentCycles();
+    if (_concurrentCycleExecutor != null) {
+      _concurrentCycleExecutor.shutdown();
+    }
     if (_previousCycleReference != null) {
       _previousCycleReference.release();
     }
@@ -544,20 +715,13 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
 
   //-------------------------------------------------------------------------
   private EngineResourceReference<SingleComputationCycle> createCycle(ViewCycleExecutionOptions executionOptions,
-      CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, VersionCorrection versionCorrection) {
+      CompiledViewDefinitionWithGraphsImpl compiledViewDefinition, VersionCorrection versionCorrection, ComputationResultListener streamingResultListener) {
     // View definition was compiled based on compilation options, which might have only included an indicative
     // valuation time. A further check ensures that the compiled view definition is still valid.
     if (!compiledViewDefinition.isValidFor(executionOptions.getValuationTime())) {
       throw new OpenGammaRuntimeException("Compiled view definition " + compiledViewDefinition + " not valid for execution options " + executionOptions);
     }
     UniqueId cycleId = getViewProcess().generateCycleId();
-
-    ComputationResultListener streamingResultListener = new ComputationResultListener() {
-      @Override
-      public void resultAvailable(ViewComputationResultModel result) {
-        cycleFragmentCompleted(result);
-      }
-    };
     SingleComputationCycle cycle = new SingleComputationCycle(cycleId, getViewProcess().getUniqueId(),
         streamingResultListener, getProcessContext(), compiledViewDefinition, executionOptions, versionCorrection);
     return getCycleManager().manage(cycle);
@@ -813,4 +977,94 @@ public class ViewComputationJob extends TerminatableJob implements MarketDataLis
     }
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * A cycle executing concurrently with others from the execution sequence. The result fragments produced by the cycle
+   * are held until the cycle is delivered to the view process.
+   */
+  private static final class ConcurrentCycle implements ComputationResultListener {
+
+    private final ViewCycleExecutionOptions _executionOptions;
+    private final List<ViewComputationResultModel> _fragments = new ArrayList<ViewComputationResultModel>();
+    private EngineResourceReference<SingleComputationCycle> _cycleReference;
+    private ViewCycleMetadata _cycleMetadata;
+    private Future<?> _future;
+    private boolean _running;
+    private boolean _cancelled;
+
+    public ConcurrentCycle(final ViewCycleExecutionOptions executionOptions) {
+      _executionOptions = executionOptions;
+    }
+
+    public ViewCycleExecutionOptions getExecutionOptions() {
+      return _executionOptions;
+    }
+
+    public void setCycle(final EngineResourceReference<SingleComputationCycle> cycleReference, final ViewCycleMetadata cycleMetadata) {
+      _cycleReference = cycleReference;
+      _cycleMetadata = cycleMetadata;
+    }
+
+    public EngineResourceReference<SingleComputationCycle> getCycleReference() {
+      return _cycleReference;
+    }
+
+    public ViewCycleMetadata getCycleMetadata() {
+      return _cycleMetadata;
+    }
+
+    public void setFuture(final Future<?> future) {
+      _future = future;
+    }
+
+    public Future<?> getFuture() {
+      return _future;
+    }
+
+    @Override
+    public synchronized void resultAvailable(final ViewComputationResultModel result) {
+      _fragments.add(result);
+    }
+
+    public synchronized List<ViewComputationResultModel> takeFragments() {
+      final List<ViewComputationResultModel> fragments = new ArrayList<ViewComputationResultModel>(_fragments);
+      _fragments.clear();
+      return fragments;
+    }
+
+    /**
+     * Marks the cycle as executing.
+     * 
+     * @return false if the cycle has been cancelled and must not be executed, true otherwise
+     */
+    public synchronized boolean started() {
+      if (_cancelled) {
+        return false;
+      }
+      _running = true;
+      return true;
+    }
+
+    public synchronized void finished() {
+      _running = false;
+      if (_cancelled) {
+        _cycleReference.release();
+      }
+    }
+
+    /**
+     * Cancels the cycle, releasing it now if it is not executing or when execution stops otherwise.
+     */
+    public void cancel() {
+      synchronized (this) {
+        _cancelled = true;
+        if (!_running) {
+          _cycleReference.release();
+        }
+      }
+      _future.cancel(true);
+    }
+
+  }
+
 }
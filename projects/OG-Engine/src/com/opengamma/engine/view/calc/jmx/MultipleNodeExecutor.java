@@ -49,6 +49,11 @@ public final class MultipleNodeExecutor implements MultipleNodeExecutorMBean {
     return getUnderlying().getMaximumConcurrency();
   }
 
+  @Override
+  public int getTotalConcurrency() {
+    return getUnderlying().getTotalConcurrency();
+  }
+
   @Override
   public long getMaximumJobCost() {
     return getUnderlying().getMaximumJobCost();
@@ -74,6 +79,11 @@ public final class MultipleNodeExecutor implements MultipleNodeExecutorMBean {
     getUnderlying().setMaximumConcurrency(maximumConcurrency);
   }
 
+  @Override
+  public void setTotalConcurrency(int totalConcurrency) {
+    getUnderlying().setTotalConcurrency(totalConcurrency);
+  }
+
   @Override
   public void setMaximumJobCost(long maximumJobCost) {
     getUnderlying().setMaximumJobCost(maximumJobCost);
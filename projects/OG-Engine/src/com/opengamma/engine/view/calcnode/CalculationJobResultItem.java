@@ -154,27 +154,27 @@ public final class CalculationJobResultItem implements IdentifierEncodedValueSpe
     return _missingOutputIdentifiers;
   }
 
+  private static Set<ValueSpecification> convertIdentifiers(final Long2ObjectMap<ValueSpecification> identifiers, final long[] identifierArray) {
+    if ((identifierArray == null) || (identifierArray.length == 0)) {
+      return Collections.emptySet();
+    } else if (identifierArray.length == 1) {
+      return Collections.singleton(identifiers.get(identifierArray[0]));
+    } else {
+      final Set<ValueSpecification> specifications = Sets.newHashSetWithExpectedSize(identifierArray.length);
+      for (long identifier : identifierArray) {
+        specifications.add(identifiers.get(identifier));
+      }
+      return specifications;
+    }
+  }
+
   @Override
   public void convertIdentifiers(final Long2ObjectMap<ValueSpecification> identifiers) {
     if (_missingInputs == null) {
-      if (_missingInputIdentifiers == null) {
-        _missingInputs = Collections.emptySet();
-      } else {
-        _missingInputs = Sets.newHashSetWithExpectedSize(_missingInputIdentifiers.length);
-        for (long identifier : _missingInputIdentifiers) {
-          _missingInputs.add(identifiers.get(identifier));
-        }
-      }
+      _missingInputs = convertIdentifiers(identifiers, _missingInputIdentifiers);
     }
     if (_missingOutputs == null) {
-      if (_missingOutputIdentifiers == null) {
-        _missingOutputs = Collections.emptySet();
-      } else {
-        _missingOutputs = Sets.newHashSetWithExpectedSize(_missingOutputIdentifiers.length);
-        for (long identifier : _missingOutputIdentifiers) {
-          _missingOutputs.add(identifiers.get(identifier));
-        }
-      }
+      _missingOutputs = convertIdentifiers(identifiers, _missingOutputIdentifiers);
     }
   }
 
@@ -87,6 +87,7 @@ import com.opengamma.util.async.Cancelable;
   private final CapabilityRequirements _capabilityRequirements;
   private final AtomicReference<DispatchableJobTimeout> _timeout = new AtomicReference<DispatchableJobTimeout>();
   private final CancelHandle _cancelHandle;
+  private volatile JobDispatcher.SharedInputs _sharedInputs;
 
   /**
    * Creates a new dispatchable job for submission to the invokers.
@@ -150,6 +151,7 @@ import com.opengamma.util.async.Cancelable;
       // This is the last one to complete. Note that if the last few jobs complete concurrently, both may execute this code.
       _completed.set(true);
       cancelTimeout(DispatchableJobTimeout.FINISHED);
+      finished();
     } else {
       // Others are still running, but we can extend the timeout period
       extendTimeout(getDispatcher().getMaxJobExecutionTime(), true);
@@ -164,6 +166,12 @@ import com.opengamma.util.async.Cancelable;
     }
   }
 
+  /**
+   * Called when the last result has been received, before it is passed to its result receiver.
+   */
+  protected void finished() {
+  }
+
   protected abstract DispatchableJob prepareRetryJob(JobInvoker jobInvoker);
 
   @Override
@@ -269,6 +277,14 @@ import com.opengamma.util.async.Cancelable;
     return _capabilityRequirements;
   }
 
+  /* package */JobDispatcher.SharedInputs getSharedInputs() {
+    return _sharedInputs;
+  }
+
+  /* package */void setSharedInputs(final JobDispatcher.SharedInputs sharedInputs) {
+    _sharedInputs = sharedInputs;
+  }
+
   public long getJobCreationTime() {
     return _jobCreationTime;
   }
@@ -280,7 +296,7 @@ import com.opengamma.util.async.Cancelable;
 
   protected abstract void cancel(final JobInvoker jobInvoker);
 
-  private boolean cancel(boolean mayInterruptIfRunning) {
+  /* package */boolean cancel(boolean mayInterruptIfRunning) {
     s_logger.info("Cancelling job {}", this);
     while (_completed.getAndSet(true) != false) {
       Thread.yield();
@@ -5,23 +5,36 @@
  */
 package com.opengamma.engine.view.calcnode;
 
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.opengamma.engine.function.blacklist.DummyFunctionBlacklistMaintainer;
 import com.opengamma.engine.function.blacklist.FunctionBlacklistMaintainer;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.ResidentValueFilter;
 import com.opengamma.engine.view.calcnode.stats.CalculationNodeStatisticsGatherer;
 import com.opengamma.engine.view.calcnode.stats.DiscardingNodeStatisticsGatherer;
+import com.opengamma.engine.view.calcnode.stats.FunctionCosts;
+import com.opengamma.engine.view.calcnode.stats.FunctionCostsPerConfiguration;
+import com.opengamma.id.UniqueId;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.async.Cancelable;
 
@@ -35,6 +48,10 @@ public class JobDispatcher implements JobInvokerRegister {
   /* package */static final int DEFAULT_MAX_JOB_ATTEMPTS = 2;
   /* package */static final long DEFAULT_MAX_JOB_EXECUTION_QUERY_TIMEOUT = 5000;
   /* package */static final String DEFAULT_JOB_FAILURE_NODE_ID = "NOT EXECUTED";
+  /* package */static final long DEFAULT_MIN_SPECULATION_TIME = 1000;
+  /* package */static final double SPECULATION_PERCENTILE = 0.95;
+  private static final int RECENT_JOB_DURATIONS = 1024;
+  private static final int LOCALITY_STATISTICS_CYCLES = 16;
 
   private final Queue<DispatchableJob> _pending = new LinkedList<DispatchableJob>();
   private final Queue<JobInvoker> _invokers = new ConcurrentLinkedQueue<JobInvoker>();
@@ -57,6 +74,33 @@ public class JobDispatcher implements JobInvokerRegister {
   private ScheduledThreadPoolExecutor _jobTimeoutExecutor;
   private CalculationNodeStatisticsGatherer _statisticsGatherer = new DiscardingNodeStatisticsGatherer();
   private FunctionBlacklistMaintainer _blacklistUpdate = new DummyFunctionBlacklistMaintainer();
+  /**
+   * Multiple of the estimated execution time after which a job will be duplicated onto another invoker. Zero or negative to disable speculative execution.
+   */
+  private double _speculationFactor;
+  /**
+   * Minimum number of milliseconds a job must have been with an invoker for before it will be duplicated.
+   */
+  private long _minSpeculationTime = DEFAULT_MIN_SPECULATION_TIME;
+  private FunctionCosts _functionCosts;
+  private final RecentJobDurations _recentJobDurations = new RecentJobDurations(RECENT_JOB_DURATIONS, SPECULATION_PERCENTILE);
+  private final AtomicLong _speculativeJobs = new AtomicLong();
+  private final AtomicLong _speculativeJobWins = new AtomicLong();
+  private final AtomicLong _speculativeSavedNanos = new AtomicLong();
+  private boolean _localityAware;
+  private final AtomicLong _localityJobs = new AtomicLong();
+  private final AtomicLong _residentInputs = new AtomicLong();
+  private final AtomicLong _residentInputBytes = new AtomicLong();
+  private final Map<UniqueId, AtomicLong> _residentInputsByCycle = new LinkedHashMap<UniqueId, AtomicLong>() {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<UniqueId, AtomicLong> eldest) {
+      return size() > LOCALITY_STATISTICS_CYCLES;
+    }
+
+  };
 
   public JobDispatcher() {
   }
@@ -114,10 +158,15 @@ public class JobDispatcher implements JobInvokerRegister {
   public synchronized void setMaxJobExecutionTime(final long maxJobExecutionTime) {
     _maxJobExecutionTime = maxJobExecutionTime;
     if (maxJobExecutionTime > 0) {
-      if (_jobTimeoutExecutor == null) {
-        _jobTimeoutExecutor = new ScheduledThreadPoolExecutor(1);
-        _jobTimeoutExecutor.setMaximumPoolSize(1);
-      }
+      createJobTimeoutExecutor();
+    }
+  }
+
+  // caller must already own monitor
+  private void createJobTimeoutExecutor() {
+    if (_jobTimeoutExecutor == null) {
+      _jobTimeoutExecutor = new ScheduledThreadPoolExecutor(1);
+      _jobTimeoutExecutor.setMaximumPoolSize(1);
     }
   }
 
@@ -132,6 +181,138 @@ public class JobDispatcher implements JobInvokerRegister {
     return _maxJobExecutionTimeQuery;
   }
 
+  /**
+   * Sets the multiple of a job's estimated execution time after which it is considered a straggler and a duplicate is dispatched to another invoker. The
+   * estimate comes from the function costs, if set. Without an estimate for a job, the same multiple of the 95th percentile of recently completed jobs
+   * is used instead. The first copy to produce results is accepted and the other cancelled. Duplicates are only sent to idle invokers and never queued. To disable speculative
+   * execution, pass 0 or negative. This doesn't affect jobs already launched; only ones that are invoked after the call.
+   * 
+   * @param speculationFactor multiple of the estimated execution time
+   */
+  public synchronized void setSpeculationFactor(final double speculationFactor) {
+    _speculationFactor = speculationFactor;
+    if (speculationFactor > 0) {
+      createJobTimeoutExecutor();
+    }
+  }
+
+  public double getSpeculationFactor() {
+    return _speculationFactor;
+  }
+
+  /**
+   * Sets the minimum time a job must be with an invoker for before a duplicate will be dispatched, avoiding speculation on jobs where the duplicate would
+   * save little.
+   * 
+   * @param minSpeculationTime time in milliseconds
+   */
+  public void setMinSpeculationTime(final long minSpeculationTime) {
+    _minSpeculationTime = minSpeculationTime;
+  }
+
+  public long getMinSpeculationTime() {
+    return _minSpeculationTime;
+  }
+
+  /**
+   * Sets the function costs used to estimate job execution times. Without these, stragglers are detected from the durations of recent jobs only.
+   * 
+   * @param functionCosts the function costs, null for none
+   */
+  public void setFunctionCosts(final FunctionCosts functionCosts) {
+    _functionCosts = functionCosts;
+  }
+
+  public FunctionCosts getFunctionCosts() {
+    return _functionCosts;
+  }
+
+  /**
+   * Returns the number of speculative duplicates of straggling jobs that have been dispatched.
+   * 
+   * @return the number of duplicates
+   */
+  public long getSpeculativeJobCount() {
+    return _speculativeJobs.get();
+  }
+
+  /**
+   * Returns the number of speculative duplicates that completed before the original job.
+   * 
+   * @return the number of duplicates that finished first
+   */
+  public long getSpeculativeJobWinCount() {
+    return _speculativeJobWins.get();
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, between duplicates finishing and the results of the original jobs they beat arriving. This is a lower bound on
+   * the latency saved; original jobs that were successfully cancelled, or never finished, don't contribute to it.
+   * 
+   * @return the latency saved in nanoseconds
+   */
+  public long getSpeculativeSavedNanos() {
+    return _speculativeSavedNanos.get();
+  }
+
+  /**
+   * Sets whether to favour invokers that already hold a job's inputs. Jobs are sent to the capable invoker that has published the
+   * most resident input bytes, using the function costs to estimate the size of each input, or the most resident inputs if there
+   * are no function costs. If that invoker is busy, or none hold any of the inputs, the normal dispatch order is used. This is off
+   * by default; it only helps when the invokers publish their resident values, as remote calculation nodes do when given the
+   * resident values of their cache.
+   * 
+   * @param localityAware true to favour invokers holding the inputs, false to ignore where the inputs are
+   */
+  public void setLocalityAware(final boolean localityAware) {
+    _localityAware = localityAware;
+  }
+
+  public boolean isLocalityAware() {
+    return _localityAware;
+  }
+
+  /**
+   * Returns the number of jobs sent to an invoker because it held some of their inputs.
+   * 
+   * @return the number of jobs
+   */
+  public long getLocalityJobCount() {
+    return _localityJobs.get();
+  }
+
+  /**
+   * Returns the number of shared inputs that the invokers chosen for their locality reported holding. The reports are approximate, so
+   * some of these inputs may still have been fetched from the shared cache.
+   * 
+   * @return the number of inputs
+   */
+  public long getResidentInputCount() {
+    return _residentInputs.get();
+  }
+
+  /**
+   * Returns the number of shared inputs that the invokers chosen for their locality reported holding, for one of the recent view cycles.
+   * 
+   * @param viewCycleId the view cycle, not null
+   * @return the number of inputs, or zero if the cycle is not one of the recent ones
+   */
+  public long getResidentInputCount(final UniqueId viewCycleId) {
+    synchronized (_residentInputsByCycle) {
+      final AtomicLong inputs = _residentInputsByCycle.get(viewCycleId);
+      return (inputs != null) ? inputs.get() : 0;
+    }
+  }
+
+  /**
+   * Returns the estimated size of the inputs counted by {@link #getResidentInputCount()}, from the function costs.
+   * 
+   * @return the estimated number of bytes, zero if there are no function costs
+   */
+  public long getEstimatedResidentInputBytes() {
+    return _residentInputBytes.get();
+  }
+
   public void setStatisticsGatherer(final CalculationNodeStatisticsGatherer statisticsGatherer) {
     _statisticsGatherer = statisticsGatherer;
   }
@@ -198,12 +379,157 @@ public class JobDispatcher implements JobInvokerRegister {
   // TODO [ENG-42] the invoker selection logic is inefficient; it's likely that capability requirements objects won't vary much so comparison against the capabilities of invokers should be cached
   // TODO [ENG-42] job dispatch should not be O(n) on number of invokers; the caching of capabilities should allow a nearer O(1) selection
 
+  /**
+   * Estimates the size of the inputs of a job and its tail that must come from the shared cache.
+   */
+  private Map<ValueSpecification, Double> getSharedInputBytes(final CalculationJob job) {
+    final Map<ValueSpecification, Double> inputs = new HashMap<ValueSpecification, Double>();
+    final FunctionCosts functionCosts = getFunctionCosts();
+    getSharedInputBytes((functionCosts != null) ? functionCosts.getStatistics(job.getSpecification().getCalcConfigName()) : null, job, inputs);
+    return inputs;
+  }
+
+  private static void getSharedInputBytes(final FunctionCostsPerConfiguration functionCosts, final CalculationJob job, final Map<ValueSpecification, Double> inputs) {
+    final CacheSelectHint hint = job.getCacheSelectHint();
+    for (CalculationJobItem item : job.getJobItems()) {
+      final double bytes = (functionCosts != null) ? functionCosts.getStatistics(item.getFunctionUniqueIdentifier()).getDataInputCost() : 1;
+      for (ValueSpecification input : item.getInputs()) {
+        if (!hint.isPrivateValue(input)) {
+          final Double previous = inputs.get(input);
+          if ((previous == null) || (previous < bytes)) {
+            inputs.put(input, bytes);
+          }
+        }
+      }
+    }
+    if (job.getTail() != null) {
+      for (CalculationJob tail : job.getTail()) {
+        getSharedInputBytes(functionCosts, tail, inputs);
+      }
+    }
+  }
+
+  /**
+   * The estimated sizes of a job's shared inputs, with their identifiers from each identifier map used by the invokers that publish
+   * their resident values.
+   */
+  /* package */static final class SharedInputs {
+
+    private final Map<ValueSpecification, Double> _bytes;
+    private final Map<IdentifierMap, Object2LongMap<ValueSpecification>> _identifiers;
+
+    private SharedInputs(final Map<ValueSpecification, Double> bytes, final Map<IdentifierMap, Object2LongMap<ValueSpecification>> identifiers) {
+      _bytes = bytes;
+      _identifiers = identifiers;
+    }
+
+  }
+
+  /**
+   * Looks up the shared inputs of a job for the invokers that could run it. The identifier lookups may need a remote call so this must
+   * not be called while holding the dispatcher monitor.
+   */
+  private SharedInputs getSharedInputs(final DispatchableJob job) {
+    Map<ValueSpecification, Double> inputs = null;
+    Map<IdentifierMap, Object2LongMap<ValueSpecification>> identifiers = null;
+    for (JobInvoker jobInvoker : getInvokers()) {
+      if (!(jobInvoker instanceof ResidentValueJobInvoker)) {
+        continue;
+      }
+      final ResidentValueJobInvoker residentInvoker = (ResidentValueJobInvoker) jobInvoker;
+      if ((residentInvoker.getResidentValues() == null) || !job.canRunOn(jobInvoker)) {
+        continue;
+      }
+      if (inputs == null) {
+        inputs = getSharedInputBytes(job.getJob());
+        if (inputs.isEmpty()) {
+          return null;
+        }
+        identifiers = new HashMap<IdentifierMap, Object2LongMap<ValueSpecification>>();
+      }
+      final IdentifierMap identifierMap = residentInvoker.getIdentifierMap();
+      if (!identifiers.containsKey(identifierMap)) {
+        identifiers.put(identifierMap, identifierMap.getIdentifiers(inputs.keySet()));
+      }
+    }
+    return (inputs != null) ? new SharedInputs(inputs, identifiers) : null;
+  }
+
+  // caller must already own monitor
+  private boolean invokeResident(final DispatchableJob job) {
+    final SharedInputs inputs = job.getSharedInputs();
+    if (inputs == null) {
+      return false;
+    }
+    final CalculationJobSpecification spec = job.getJob().getSpecification();
+    JobInvoker bestInvoker = null;
+    double bestBytes = 0;
+    int bestCount = 0;
+    for (JobInvoker jobInvoker : getInvokers()) {
+      if (!(jobInvoker instanceof ResidentValueJobInvoker)) {
+        continue;
+      }
+      final ResidentValueJobInvoker residentInvoker = (ResidentValueJobInvoker) jobInvoker;
+      final ResidentValueFilter residentValues = residentInvoker.getResidentValues();
+      if ((residentValues == null) || !job.canRunOn(jobInvoker)) {
+        continue;
+      }
+      final Object2LongMap<ValueSpecification> inputIdentifiers = inputs._identifiers.get(residentInvoker.getIdentifierMap());
+      if (inputIdentifiers == null) {
+        // Invoker registered, or first published its values, after the job was submitted; round-robin dispatch will consider it
+        continue;
+      }
+      double bytes = 0;
+      int count = 0;
+      for (Map.Entry<ValueSpecification, Double> input : inputs._bytes.entrySet()) {
+        if (residentValues.mightContain(spec.getViewCycleId(), spec.getCalcConfigName(), inputIdentifiers.getLong(input.getKey()))) {
+          bytes += input.getValue();
+          count++;
+        }
+      }
+      if (bytes > bestBytes) {
+        bestInvoker = jobInvoker;
+        bestBytes = bytes;
+        bestCount = count;
+      }
+    }
+    if (bestInvoker == null) {
+      return false;
+    }
+    if (!job.runOn(bestInvoker)) {
+      // Normal dispatch will deal with the busy invoker
+      s_logger.debug("Invoker {} holding inputs refused to execute job {}", bestInvoker, job);
+      return false;
+    }
+    s_logger.debug("Invoker {} holding {} inputs accepted job {}", new Object[] {bestInvoker, bestCount, job });
+    // put invoker to the end of the list
+    getInvokers().remove(bestInvoker);
+    getInvokers().add(bestInvoker);
+    _localityJobs.incrementAndGet();
+    _residentInputs.addAndGet(bestCount);
+    if (getFunctionCosts() != null) {
+      _residentInputBytes.addAndGet((long) bestBytes);
+    }
+    synchronized (_residentInputsByCycle) {
+      AtomicLong cycleInputs = _residentInputsByCycle.get(spec.getViewCycleId());
+      if (cycleInputs == null) {
+        cycleInputs = new AtomicLong();
+        _residentInputsByCycle.put(spec.getViewCycleId(), cycleInputs);
+      }
+      cycleInputs.addAndGet(bestCount);
+    }
+    return true;
+  }
+
   // caller must already own monitor
   private boolean invoke(final DispatchableJob job) {
     if (job.isCompleted()) {
       s_logger.info("Job {} cancelled", job);
       return true;
     }
+    if (isLocalityAware() && invokeResident(job)) {
+      return true;
+    }
     Collection<JobInvoker> retry = null;
     do {
       final Iterator<JobInvoker> iterator = getInvokers().iterator();
@@ -240,16 +566,128 @@ public class JobDispatcher implements JobInvokerRegister {
     return false;
   }
 
-  protected synchronized void dispatchJobImpl(final DispatchableJob job) {
-    if (!invoke(job)) {
-      s_logger.debug("Adding job to pending set");
-      getPending().add(job);
-      if (getInvokers() != null) {
-        retryPending(0L);
+  protected void dispatchJobImpl(final DispatchableJob job) {
+    if (isLocalityAware()) {
+      job.setSharedInputs(getSharedInputs(job));
+    }
+    synchronized (this) {
+      if (!invoke(job)) {
+        s_logger.debug("Adding job to pending set");
+        getPending().add(job);
+        if (getInvokers() != null) {
+          retryPending(0L);
+        }
       }
     }
   }
 
+  /**
+   * Estimates the time to execute a job and its tail from the function costs.
+   * 
+   * @param job the job to estimate
+   * @return the estimated time in nanoseconds, or zero if there are no function costs
+   */
+  /* package */double estimateExecutionNanos(final CalculationJob job) {
+    final FunctionCosts functionCosts = getFunctionCosts();
+    if (functionCosts == null) {
+      return 0;
+    }
+    return estimateExecutionNanos(functionCosts.getStatistics(job.getSpecification().getCalcConfigName()), job);
+  }
+
+  private static double estimateExecutionNanos(final FunctionCostsPerConfiguration functionCosts, final CalculationJob job) {
+    double nanos = 0;
+    for (CalculationJobItem item : job.getJobItems()) {
+      nanos += functionCosts.getStatistics(item.getFunctionUniqueIdentifier()).getInvocationCost();
+    }
+    if (job.getTail() != null) {
+      for (CalculationJob tail : job.getTail()) {
+        nanos += estimateExecutionNanos(functionCosts, tail);
+      }
+    }
+    return nanos;
+  }
+
+  /**
+   * Returns how long a job can be with an invoker for before it is considered a straggler.
+   * 
+   * @param job the job
+   * @return the time in nanoseconds, or negative if there is nothing to judge the job against
+   */
+  /* package */long getSpeculationDelayNanos(final CalculationJob job) {
+    final double estimate = estimateExecutionNanos(job);
+    final long percentile = _recentJobDurations.getPercentile();
+    final double delay;
+    if (estimate > 0) {
+      delay = estimate * getSpeculationFactor();
+    } else if (percentile > 0) {
+      // Without an estimate the job can only be judged against recent jobs; a heavy job is not a straggler just for being slower than most
+      delay = percentile * getSpeculationFactor();
+    } else {
+      return -1;
+    }
+    return Math.max((long) delay, TimeUnit.MILLISECONDS.toNanos(getMinSpeculationTime()));
+  }
+
+  /**
+   * Schedules a check for a job that has just been accepted by an invoker, dispatching a duplicate if it is still running when it becomes a straggler.
+   * 
+   * @param job the job
+   * @param jobInvoker the invoker that accepted the job
+   * @return the scheduled check, null if speculative execution is disabled or there is nothing to judge the job against
+   */
+  /* package */RunnableScheduledFuture<?> scheduleSpeculation(final StandardJob job, final JobInvoker jobInvoker) {
+    if (getSpeculationFactor() <= 0) {
+      return null;
+    }
+    final long delay = getSpeculationDelayNanos(job.getJob());
+    if (delay < 0) {
+      return null;
+    }
+    return (RunnableScheduledFuture<?>) getJobTimeoutExecutor().schedule(new Runnable() {
+      @Override
+      public void run() {
+        speculate(job, jobInvoker);
+      }
+    }, delay, TimeUnit.NANOSECONDS);
+  }
+
+  private synchronized void speculate(final StandardJob job, final JobInvoker slowInvoker) {
+    final SpeculativeJob speculative = job.createSpeculativeJob(slowInvoker);
+    if (speculative == null) {
+      return;
+    }
+    final Iterator<JobInvoker> iterator = getInvokers().iterator();
+    while (iterator.hasNext()) {
+      final JobInvoker jobInvoker = iterator.next();
+      if ((jobInvoker != slowInvoker) && speculative.canRunOn(jobInvoker)) {
+        // Unlike normal dispatch, a refusal doesn't remove the invoker; the duplicate is only sent to one that is idle now
+        _speculativeJobs.incrementAndGet();
+        if (speculative.runOn(jobInvoker)) {
+          s_logger.info("Invoker {} accepted speculative copy of job {} from {}", new Object[] {jobInvoker, job, slowInvoker });
+          iterator.remove();
+          getInvokers().add(jobInvoker);
+          return;
+        }
+        _speculativeJobs.decrementAndGet();
+      }
+    }
+    s_logger.debug("No invokers available for speculative copy of job {}", job);
+    job.discardSpeculativeJob(speculative);
+  }
+
+  /* package */void jobExecuted(final long durationNanos) {
+    _recentJobDurations.add(durationNanos);
+  }
+
+  /* package */void speculativeJobWon() {
+    _speculativeJobWins.incrementAndGet();
+  }
+
+  /* package */void speculativeJobSaved(final long nanos) {
+    _speculativeSavedNanos.addAndGet(nanos);
+  }
+
   /**
    * Puts the job into the ready queue, sent to an invoker as soon as one is available. Completion (or timeout)
    * of the job will result in one or more callbacks to the result receiver. There is always the callback for the
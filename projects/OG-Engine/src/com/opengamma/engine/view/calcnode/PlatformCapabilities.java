@@ -15,6 +15,11 @@ public final class PlatformCapabilities {
    */
   public static final String NODE_COUNT = "nodeCount";
 
+  /**
+   * Approximate number of shared values held locally by the calculation nodes.
+   */
+  public static final String RESIDENT_VALUES = "residentValues";
+
   private PlatformCapabilities() {
   }
 
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.Arrays;
+
+/**
+ * Window of the most recent job durations, used to spot jobs that are taking much longer than the others.
+ */
+/* package */final class RecentJobDurations {
+
+  /**
+   * Number of durations needed before the percentile is meaningful.
+   */
+  private static final int MIN_SAMPLES = 20;
+
+  private final long[] _durations;
+  private final double _fraction;
+  private int _next;
+  private int _samples;
+  private int _sinceCalculated;
+  private long _percentile = -1;
+
+  /**
+   * Creates a new window.
+   *
+   * @param size the number of durations to keep
+   * @param fraction the percentile to report, between 0 and 1
+   */
+  public RecentJobDurations(final int size, final double fraction) {
+    _durations = new long[size];
+    _fraction = fraction;
+  }
+
+  public synchronized void add(final long durationNanos) {
+    _durations[_next++] = durationNanos;
+    if (_next == _durations.length) {
+      _next = 0;
+    }
+    if (_samples < _durations.length) {
+      _samples++;
+    }
+    _sinceCalculated++;
+  }
+
+  /**
+   * Returns the duration that the given fraction of the recent jobs completed within. This is recalculated after each eighth of the window has been replaced.
+   *
+   * @return the duration in nanoseconds, or negative if there are too few samples
+   */
+  public synchronized long getPercentile() {
+    if (_samples < MIN_SAMPLES) {
+      return -1;
+    }
+    if ((_percentile < 0) || (_sinceCalculated > _durations.length / 8)) {
+      final long[] sorted = Arrays.copyOf(_durations, _samples);
+      Arrays.sort(sorted);
+      _percentile = sorted[Math.min((int) (_samples * _fraction), _samples - 1)];
+      _sinceCalculated = 0;
+    }
+    return _percentile;
+  }
+
+}
@@ -21,6 +21,7 @@ import org.springframework.context.Lifecycle;
 import com.opengamma.engine.function.CompiledFunctionService;
 import com.opengamma.engine.view.cache.AbstractIdentifierMap;
 import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.ResidentValueFilter;
 import com.opengamma.engine.view.calcnode.msg.Cancel;
 import com.opengamma.engine.view.calcnode.msg.Execute;
 import com.opengamma.engine.view.calcnode.msg.Failure;
@@ -45,12 +46,22 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
 
   private static final Logger s_logger = LoggerFactory.getLogger(RemoteNodeClient.class);
 
+  /**
+   * Default minimum interval between publishing the summary of resident values, in milliseconds.
+   */
+  public static final long DEFAULT_RESIDENT_VALUES_INTERVAL = 1000;
+
   private final FudgeConnection _connection;
   private final CompiledFunctionService _functionCompilationService;
   private final IdentifierMap _identifierMap;
   private final FunctionInvocationStatisticsSender _statistics;
   private boolean _started;
   private String _hostId;
+  private ResidentValueFilter _residentValues;
+  private long _residentValuesInterval = DEFAULT_RESIDENT_VALUES_INTERVAL;
+  private final Object _residentValuesLock = new Object();
+  private int _residentValuesChangeCount;
+  private long _residentValuesSendTime;
   private final RemoteCalcNodeMessageVisitor _messageVisitor = new RemoteCalcNodeMessageVisitor() {
 
     @Override
@@ -75,7 +86,7 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
         @Override
         public void executionComplete(final CalculationJobResult result) {
           AbstractIdentifierMap.convertIdentifiers(getIdentifierMap(), result);
-          sendMessage(new Result(result));
+          sendMessage(new Result(result, createResidentValuesReady()));
         }
 
         @Override
@@ -146,6 +157,35 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
     return _hostId;
   }
 
+  /**
+   * Sets the summary of shared values held in the local cache to publish to the job dispatcher, typically from
+   * {@link com.opengamma.engine.view.cache.RemoteViewComputationCacheSource#getResidentValues}. The dispatcher can then send jobs to
+   * this node when it already holds their inputs.
+   * 
+   * @param residentValues the resident values, null to not publish any
+   */
+  public void setResidentValues(final ResidentValueFilter residentValues) {
+    _residentValues = residentValues;
+  }
+
+  public ResidentValueFilter getResidentValues() {
+    return _residentValues;
+  }
+
+  /**
+   * Sets the minimum interval between publishing the summary of resident values. The summary is attached to job results when it
+   * has changed, so a shorter interval gives the dispatcher more current information at the cost of more network traffic.
+   * 
+   * @param residentValuesInterval the interval in milliseconds
+   */
+  public void setResidentValuesInterval(final long residentValuesInterval) {
+    _residentValuesInterval = residentValuesInterval;
+  }
+
+  public long getResidentValuesInterval() {
+    return _residentValuesInterval;
+  }
+
   @Override
   public void onNodeChange() {
     if (isRunning()) {
@@ -183,6 +223,30 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
     sendMessage(ready);
   }
 
+  /**
+   * Creates a ready message carrying the summary of resident values if it has changed since it was last sent, and wasn't sent too
+   * recently.
+   * 
+   * @return the message, or null if there is nothing to send
+   */
+  protected Ready createResidentValuesReady() {
+    final ResidentValueFilter residentValues = getResidentValues();
+    if (residentValues == null) {
+      return null;
+    }
+    final int changeCount = residentValues.getChangeCount();
+    final long now = System.currentTimeMillis();
+    synchronized (_residentValuesLock) {
+      if ((changeCount == _residentValuesChangeCount) || (now - _residentValuesSendTime < getResidentValuesInterval())) {
+        return null;
+      }
+      _residentValuesChangeCount = changeCount;
+      _residentValuesSendTime = now;
+    }
+    s_logger.debug("Publishing {} resident values", residentValues.getValueCount());
+    return new Ready(getTotalNodeCount(), getHostId(), residentValues.toFudgeMsg(getConnection().getFudgeMessageSender().getFudgeContext()));
+  }
+
   protected void sendStaleCacheQuery() {
     // PLAT-339
     // TODO: Query the binary store implementation for active caches
@@ -245,6 +309,11 @@ public class RemoteNodeClient extends SimpleCalculationNodeInvocationContainer i
   @Override
   public void connectionReset(final FudgeConnection connection) {
     s_logger.info("Underlying connection reset - resending capabilities & querying for stale caches");
+    synchronized (_residentValuesLock) {
+      // Force the resident values to be sent again with the next result
+      _residentValuesSendTime = 0;
+      _residentValuesChangeCount--;
+    }
     sendCapabilities();
     sendStaleCacheQuery();
     s_logger.debug("Capabilities sent");
@@ -31,6 +31,7 @@ import com.opengamma.engine.function.blacklist.FunctionBlacklistMaintainer;
 import com.opengamma.engine.function.blacklist.FunctionBlacklistQuery;
 import com.opengamma.engine.view.cache.AbstractIdentifierMap;
 import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.ResidentValueFilter;
 import com.opengamma.engine.view.calcnode.msg.Cancel;
 import com.opengamma.engine.view.calcnode.msg.Execute;
 import com.opengamma.engine.view.calcnode.msg.Failure;
@@ -51,7 +52,7 @@ import com.opengamma.transport.FudgeMessageSender;
 /**
  * A JobInvoker for invoking a job on a remote node connected by a FudgeConnection.
  */
-/* package */class RemoteNodeJobInvoker implements JobInvoker, FudgeMessageReceiver, FudgeConnectionStateListener {
+/* package */class RemoteNodeJobInvoker implements ResidentValueJobInvoker, FudgeMessageReceiver, FudgeConnectionStateListener {
 
   private static final Logger s_logger = LoggerFactory.getLogger(RemoteNodeJobInvoker.class);
 
@@ -98,6 +99,7 @@ import com.opengamma.transport.FudgeMessageSender;
   private final FunctionBlacklistQuery _blacklistQuery;
   private final FunctionBlacklistMaintainer _blacklistUpdate;
   private volatile String _invokerId;
+  private volatile ResidentValueFilter _residentValues;
   private final RemoteCalcNodeMessageVisitor _messageVisitor = new RemoteCalcNodeMessageVisitor() {
 
     @Override
@@ -141,12 +143,26 @@ import com.opengamma.transport.FudgeMessageSender;
       }
     }
 
-    @Override
-    protected void visitReadyMessage(final Ready message) {
-      s_logger.debug("Remote invoker ready message - {}", message);
+    /**
+     * Applies the capacity and resident values from a ready message. The ready message that travels with every result only needs
+     * this; the capacity checks are made when the job count is decremented for the completed job.
+     */
+    private void updateCapabilities(final Ready message) {
       getCapabilitySet().setParameterCapability(PlatformCapabilities.NODE_COUNT, message.getCapacity());
+      if (message.getResidentValues() != null) {
+        final ResidentValueFilter residentValues = ResidentValueFilter.fromFudgeMsg(message.getResidentValues());
+        s_logger.debug("Remote invoker holds approximately {} values", residentValues.getValueCount());
+        _residentValues = residentValues;
+        getCapabilitySet().setParameterCapability(PlatformCapabilities.RESIDENT_VALUES, residentValues.getValueCount());
+      }
       // [ENG-42] this is where we'd detect any other capability changes
       _capacity = message.getCapacity();
+    }
+
+    @Override
+    protected void visitReadyMessage(final Ready message) {
+      s_logger.debug("Remote invoker ready message - {}", message);
+      updateCapabilities(message);
       final int launched = _launched.get();
       if (launched < 0) {
         // An additional decrement can happen if there is an error in the original job dispatch
@@ -164,7 +180,7 @@ import com.opengamma.transport.FudgeMessageSender;
     protected void visitResultMessage(final Result message) {
       s_logger.info("Received result for job {}", message.getResult().getSpecification());
       if (message.getReady() != null) {
-        message.getReady().accept(this);
+        updateCapabilities(message.getReady());
       }
       // We decrement the count (and re-register) before processing the data as the remote node is already available if it's sent us its data.
       final JobInfo job = getPendingJobs().remove(message.getResult().getSpecification());
@@ -227,7 +243,8 @@ import com.opengamma.transport.FudgeMessageSender;
     return _executorService;
   }
 
-  private IdentifierMap getIdentifierMap() {
+  @Override
+  public IdentifierMap getIdentifierMap() {
     return _identifierMap;
   }
 
@@ -434,6 +451,11 @@ import com.opengamma.transport.FudgeMessageSender;
     return _fudgeMessageSender.toString();
   }
 
+  @Override
+  public ResidentValueFilter getResidentValues() {
+    return _residentValues;
+  }
+
   @Override
   public String getInvokerId() {
     return _invokerId;
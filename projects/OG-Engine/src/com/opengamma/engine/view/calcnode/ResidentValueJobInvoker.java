@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.ResidentValueFilter;
+
+/**
+ * A {@link JobInvoker} for node(s) that publish a summary of the shared values they hold locally. A job dispatcher can use this to favour
+ * the invoker for jobs whose inputs would otherwise have to be fetched over the network.
+ */
+public interface ResidentValueJobInvoker extends JobInvoker {
+
+  /**
+   * Returns the most recent summary of shared values held at the node(s).
+   * 
+   * @return the resident values, or null if the node(s) have not published any
+   */
+  ResidentValueFilter getResidentValues();
+
+  /**
+   * Returns the identifier map used to convert value specifications to the identifiers held in the summary.
+   * 
+   * @return the identifier map, not null
+   */
+  IdentifierMap getIdentifierMap();
+
+}
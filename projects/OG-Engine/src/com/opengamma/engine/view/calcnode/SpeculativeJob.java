@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A duplicate of a {@link StandardJob} that has been running for much longer than expected, dispatched to a different invoker in case the original is on a slow
+ * node.
+ * <p>
+ * The duplicate shares the result receivers of the original so the first result produced for each job is the one accepted. When all of the results have been
+ * received, the job that lost the race is cancelled. A duplicate is never retried; if it fails or times out the original is left to complete.
+ */
+/* package */final class SpeculativeJob extends DispatchableJob {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SpeculativeJob.class);
+
+  private final StandardJob _original;
+  private final List<CalculationJobSpecification> _jobSpecifications;
+  private final AtomicReference<DispatchableJob> _winner = new AtomicReference<DispatchableJob>();
+  private volatile long _finishTime;
+  private volatile boolean _loserReported;
+
+  private static void getJobSpecifications(final CalculationJob job, final List<CalculationJobSpecification> specifications) {
+    specifications.add(job.getSpecification());
+    if (job.getTail() != null) {
+      for (CalculationJob tail : job.getTail()) {
+        getJobSpecifications(tail, specifications);
+      }
+    }
+  }
+
+  /**
+   * Creates a duplicate of a job for submission to the invokers.
+   *
+   * @param original the job to duplicate
+   */
+  public SpeculativeJob(final StandardJob original) {
+    super(original, original.getJob());
+    _original = original;
+    _jobSpecifications = new ArrayList<CalculationJobSpecification>();
+    getJobSpecifications(original.getJob(), _jobSpecifications);
+  }
+
+  /**
+   * Returns the specifications of the root job and all of its tails. The result receivers will have gone by the time the loser is cancelled so can't be used
+   * to identify what it was running.
+   *
+   * @return the job specifications, not null
+   */
+  public Collection<CalculationJobSpecification> getJobSpecifications() {
+    return _jobSpecifications;
+  }
+
+  public boolean isDecided() {
+    return _winner.get() != null;
+  }
+
+  /**
+   * Notifies that one of the two jobs has received its last result. The first to do so is the winner and the other one gets cancelled.
+   *
+   * @param winner the job that received its last result, either the original or this duplicate
+   * @return true if the job is the winner, false if the other job had already finished
+   */
+  public boolean jobFinished(final DispatchableJob winner) {
+    if (!_winner.compareAndSet(null, winner)) {
+      return false;
+    }
+    _finishTime = System.nanoTime();
+    getCancelHandle().removeCallback(this);
+    if (winner == this) {
+      s_logger.info("Speculative copy of {} finished first", _original);
+      getDispatcher().speculativeJobWon();
+      _original.cancel(false);
+    } else {
+      s_logger.debug("Original job {} finished before its speculative copy", _original);
+      cancel(false);
+    }
+    return true;
+  }
+
+  /**
+   * Notifies that a result has been received from the job that lost the race. The time since the winner finished is a lower bound on the latency the
+   * duplicate has saved.
+   *
+   * @param loser the job that received the result
+   */
+  public void lateResult(final DispatchableJob loser) {
+    if ((_winner.get() == this) && (loser == _original) && !_loserReported) {
+      _loserReported = true;
+      getDispatcher().speculativeJobSaved(System.nanoTime() - _finishTime);
+    }
+  }
+
+  @Override
+  protected JobResultReceiver getResultReceiver(final CalculationJobResult result) {
+    return _original.removeResultReceiver(result);
+  }
+
+  @Override
+  protected boolean isLastResult() {
+    return _original.isLastResult();
+  }
+
+  @Override
+  protected void finished() {
+    jobFinished(this);
+  }
+
+  @Override
+  protected DispatchableJob prepareRetryJob(final JobInvoker jobInvoker) {
+    return null;
+  }
+
+  @Override
+  protected void fail(final CalculationJob job, final CalculationJobResultItem failure) {
+    // The original is still running and will report its own results
+    s_logger.info("Speculative copy of {} failed", _original);
+    getCancelHandle().removeCallback(this);
+  }
+
+  @Override
+  protected boolean isAlive(final JobInvoker jobInvoker) {
+    return jobInvoker.isAlive(_jobSpecifications);
+  }
+
+  @Override
+  protected void cancel(final JobInvoker jobInvoker) {
+    jobInvoker.cancel(_jobSpecifications);
+  }
+
+  @Override
+  public String toString() {
+    return "P" + getJob().getSpecification().getJobId();
+  }
+
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RunnableScheduledFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,10 @@ import com.opengamma.util.tuple.Triple;
   private final ConcurrentMap<CalculationJobSpecification, JobResultReceiver> _resultReceivers;
   private Set<String> _usedJobInvoker;
   private int _rescheduled;
+  private volatile JobInvoker _invoker;
+  private volatile long _startTime;
+  private volatile SpeculativeJob _speculative;
+  private RunnableScheduledFuture<?> _speculationCheck;
 
   private static List<CalculationJob> getAllJobs(CalculationJob job, List<CalculationJob> jobs) {
     if (jobs == null) {
@@ -69,9 +74,20 @@ import com.opengamma.util.tuple.Triple;
     }
   }
 
+  /* package */JobResultReceiver removeResultReceiver(final CalculationJobResult result) {
+    return _resultReceivers.remove(result.getSpecification());
+  }
+
   @Override
   protected JobResultReceiver getResultReceiver(final CalculationJobResult result) {
-    return _resultReceivers.remove(result.getSpecification());
+    final JobResultReceiver receiver = removeResultReceiver(result);
+    if (receiver == null) {
+      final SpeculativeJob speculative = _speculative;
+      if (speculative != null) {
+        speculative.lateResult(this);
+      }
+    }
+    return receiver;
   }
 
   @Override
@@ -316,8 +332,77 @@ import com.opengamma.util.tuple.Triple;
     }
   }
 
+  @Override
+  public boolean runOn(final JobInvoker jobInvoker) {
+    _startTime = System.nanoTime();
+    _invoker = jobInvoker;
+    if (!super.runOn(jobInvoker)) {
+      return false;
+    }
+    if (!isCompleted()) {
+      final RunnableScheduledFuture<?> check = getDispatcher().scheduleSpeculation(this, jobInvoker);
+      if (check != null) {
+        synchronized (this) {
+          cancelSpeculationCheck();
+          _speculationCheck = check;
+        }
+      }
+    }
+    return true;
+  }
+
+  // caller must already own monitor
+  private void cancelSpeculationCheck() {
+    if (_speculationCheck != null) {
+      getDispatcher().getJobTimeoutExecutor().remove(_speculationCheck);
+      _speculationCheck = null;
+    }
+  }
+
+  /**
+   * Creates a speculative copy of this job if it is still running on the given invoker and hasn't already been copied.
+   * 
+   * @param jobInvoker the invoker the job was running on when the speculation check was scheduled
+   * @return the copy, or null if none should be dispatched
+   */
+  /* package */synchronized SpeculativeJob createSpeculativeJob(final JobInvoker jobInvoker) {
+    _speculationCheck = null;
+    if ((_speculative != null) || (_invoker != jobInvoker) || isCompleted() || _resultReceivers.isEmpty()) {
+      return null;
+    }
+    _speculative = new SpeculativeJob(this);
+    return _speculative;
+  }
+
+  /**
+   * Discards a speculative copy that no invoker was able to accept.
+   * 
+   * @param speculative the copy returned by {@link #createSpeculativeJob}
+   */
+  /* package */synchronized void discardSpeculativeJob(final SpeculativeJob speculative) {
+    if (_speculative == speculative) {
+      _speculative = null;
+    }
+    getCancelHandle().removeCallback(speculative);
+  }
+
+  @Override
+  protected void finished() {
+    synchronized (this) {
+      cancelSpeculationCheck();
+    }
+    final SpeculativeJob speculative = _speculative;
+    if ((speculative == null) || speculative.jobFinished(this)) {
+      getDispatcher().jobExecuted(System.nanoTime() - _startTime);
+    }
+  }
+
   @Override
   protected DispatchableJob prepareRetryJob(final JobInvoker jobInvoker) {
+    _invoker = null;
+    synchronized (this) {
+      cancelSpeculationCheck();
+    }
     if ((_usedJobInvoker != null) && _usedJobInvoker.contains(jobInvoker.getInvokerId())) {
       return createWatchedJob();
     } else {
@@ -358,7 +443,13 @@ import com.opengamma.util.tuple.Triple;
 
   @Override
   protected void cancel(final JobInvoker jobInvoker) {
-    jobInvoker.cancel(_resultReceivers.keySet());
+    final SpeculativeJob speculative = _speculative;
+    if ((speculative != null) && speculative.isDecided()) {
+      // Lost the race to the speculative copy which will have taken all of the result receivers
+      jobInvoker.cancel(speculative.getJobSpecifications());
+    } else {
+      jobInvoker.cancel(_resultReceivers.keySet());
+    }
   }
 
   @Override
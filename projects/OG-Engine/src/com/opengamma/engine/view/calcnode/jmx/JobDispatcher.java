@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode.jmx;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JobDispatcherMBean implementation.
+ */
+public final class JobDispatcher implements JobDispatcherMBean {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(JobDispatcher.class);
+
+  private final com.opengamma.engine.view.calcnode.JobDispatcher _underlying;
+
+  private JobDispatcher(final com.opengamma.engine.view.calcnode.JobDispatcher underlying) {
+    _underlying = underlying;
+  }
+
+  private com.opengamma.engine.view.calcnode.JobDispatcher getUnderlying() {
+    return _underlying;
+  }
+
+  public static void registerMBeans(final com.opengamma.engine.view.calcnode.JobDispatcher dispatcher, final MBeanServer server) throws JMException {
+    final ObjectName name = new ObjectName("com.opengamma:type=JobDispatcher,name=" + dispatcher.toString());
+    final JobDispatcher instance = new JobDispatcher(dispatcher);
+    try {
+      server.registerMBean(instance, name);
+    } catch (InstanceAlreadyExistsException e) {
+      s_logger.warn("JMX MBean {} already exists - replacing", name);
+      server.unregisterMBean(name);
+      server.registerMBean(instance, name);
+    }
+  }
+
+  @Override
+  public double getSpeculationFactor() {
+    return getUnderlying().getSpeculationFactor();
+  }
+
+  @Override
+  public void setSpeculationFactor(double speculationFactor) {
+    getUnderlying().setSpeculationFactor(speculationFactor);
+  }
+
+  @Override
+  public long getMinSpeculationTime() {
+    return getUnderlying().getMinSpeculationTime();
+  }
+
+  @Override
+  public void setMinSpeculationTime(long minSpeculationTime) {
+    getUnderlying().setMinSpeculationTime(minSpeculationTime);
+  }
+
+  @Override
+  public long getSpeculativeJobCount() {
+    return getUnderlying().getSpeculativeJobCount();
+  }
+
+  @Override
+  public long getSpeculativeJobWinCount() {
+    return getUnderlying().getSpeculativeJobWinCount();
+  }
+
+  @Override
+  public long getSpeculativeSavedNanos() {
+    return getUnderlying().getSpeculativeSavedNanos();
+  }
+
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode.jmx;
+
+/**
+ * JMX MBean interface for the job dispatcher's speculative execution.
+ */
+public interface JobDispatcherMBean {
+
+  void setSpeculationFactor(double speculationFactor);
+  double getSpeculationFactor();
+  void setMinSpeculationTime(long minSpeculationTime);
+  long getMinSpeculationTime();
+  long getSpeculativeJobCount();
+  long getSpeculativeJobWinCount();
+  long getSpeculativeSavedNanos();
+
+}
@@ -9,6 +9,8 @@ public class Ready extends com.opengamma.engine.view.calcnode.msg.RemoteCalcNode
   public static final String CAPACITY_KEY = "capacity";
   private String _hostId;
   public static final String HOST_ID_KEY = "hostId";
+  private org.fudgemsg.FudgeMsg _residentValues;
+  public static final String RESIDENT_VALUES_KEY = "residentValues";
   public Ready (int capacity, String hostId) {
     _capacity = capacity;
     if (hostId == null) throw new NullPointerException ("hostId' cannot be null");
@@ -33,12 +35,30 @@ public class Ready extends com.opengamma.engine.view.calcnode.msg.RemoteCalcNode
     catch (IllegalArgumentException e) {
       throw new IllegalArgumentException ("Fudge message is not a Ready - field 'hostId' is not string", e);
     }
+    fudgeField = fudgeMsg.getByName (RESIDENT_VALUES_KEY);
+    if (fudgeField != null)  {
+      try {
+        final org.fudgemsg.FudgeMsg fudge1;
+        fudge1 = fudgeMsg.getFieldValue (org.fudgemsg.FudgeMsg.class, fudgeField);
+        setResidentValues (fudge1);
+      }
+      catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException ("Fudge message is not a Ready - field 'residentValues' is not anonymous/unknown message", e);
+      }
+    }
+  }
+  public Ready (int capacity, String hostId, org.fudgemsg.FudgeMsg residentValues) {
+    _capacity = capacity;
+    if (hostId == null) throw new NullPointerException ("hostId' cannot be null");
+    _hostId = hostId;
+    _residentValues = residentValues;
   }
   protected Ready (final Ready source) {
     super (source);
     if (source == null) throw new NullPointerException ("'source' must not be null");
     _capacity = source._capacity;
     _hostId = source._hostId;
+    _residentValues = source._residentValues;
   }
   public Ready clone () {
     return new Ready (this);
@@ -55,6 +75,9 @@ public class Ready extends com.opengamma.engine.view.calcnode.msg.RemoteCalcNode
     if (_hostId != null)  {
       msg.add (HOST_ID_KEY, null, _hostId);
     }
+    if (_residentValues != null)  {
+      msg.add (RESIDENT_VALUES_KEY, null, (_residentValues instanceof org.fudgemsg.MutableFudgeMsg) ? serializer.newMessage (_residentValues) : _residentValues);
+    }
   }
   public static Ready fromFudgeMsg (final org.fudgemsg.mapping.FudgeDeserializer deserializer, final org.fudgemsg.FudgeMsg fudgeMsg) {
     final java.util.List<org.fudgemsg.FudgeField> types = fudgeMsg.getAllByOrdinal (0);
@@ -83,6 +106,12 @@ public class Ready extends com.opengamma.engine.view.calcnode.msg.RemoteCalcNode
     if (hostId == null) throw new NullPointerException ("hostId' cannot be null");
     _hostId = hostId;
   }
+  public org.fudgemsg.FudgeMsg getResidentValues () {
+    return _residentValues;
+  }
+  public void setResidentValues (org.fudgemsg.FudgeMsg residentValues) {
+    _residentValues = residentValues;
+  }
   public String toString () {
     return org.apache.commons.lang.builder.ToStringBuilder.reflectionToString(this, org.apache.commons.lang.builder.ToStringStyle.SHORT_PREFIX_STYLE);
   }
@@ -26,6 +26,7 @@ public class ExecutionOptions implements ViewExecutionOptions {
   private final Integer _maxSuccessiveDeltaCycles;
   private final ViewCycleExecutionOptions _defaultExecutionOptions;
   private final VersionCorrection _versionCorrection;
+  private final Integer _maxConcurrentCycles;
 
   //-------------------------------------------------------------------------
   /**
@@ -150,6 +151,22 @@ public class ExecutionOptions implements ViewExecutionOptions {
     return of(cycleExecutionSequence, defaultCycleOptions, ExecutionFlags.none().batch().runAsFastAsPossible().awaitMarketData().get());
   }
 
+  /**
+   * Creates an execution sequence designed for batch-mode operation, running several cycles at the same time.
+   * The typical next-cycle triggers are disabled; the sequence is instead configured to run as fast as possible.
+   *
+   * @param cycleExecutionSequence  the execution sequence, not null
+   * @param defaultCycleOptions  the default view cycle execution options, may be null
+   * @param maxConcurrentCycles  the maximum number of cycles to execute at the same time, greater than zero
+   * @return the execution sequence, not null
+   */
+  public static ViewExecutionOptions batch(ViewCycleExecutionSequence cycleExecutionSequence, ViewCycleExecutionOptions defaultCycleOptions, int maxConcurrentCycles) {
+    ArgumentChecker.notNull(cycleExecutionSequence, "cycleExecutionSequence");
+    ArgumentChecker.isTrue(maxConcurrentCycles > 0, "maxConcurrentCycles must be positive");
+    return new ExecutionOptions(cycleExecutionSequence, ExecutionFlags.none().batch().runAsFastAsPossible().awaitMarketData().get(),
+        null, defaultCycleOptions, VersionCorrection.LATEST, maxConcurrentCycles);
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Creates an execution sequence to run a single cycle.
@@ -239,15 +256,32 @@ public class ExecutionOptions implements ViewExecutionOptions {
    */
   public ExecutionOptions(ViewCycleExecutionSequence executionSequence, EnumSet<ViewExecutionFlags> flags,
       Integer maxSuccessiveDeltaCycles, ViewCycleExecutionOptions defaultExecutionOptions, VersionCorrection versionCorrection) {
+    this(executionSequence, flags, maxSuccessiveDeltaCycles, defaultExecutionOptions, versionCorrection, null);
+  }
+
+  /**
+   * 
+   * @param executionSequence  the execution sequence, not null
+   * @param flags  the execution flags, not null
+   * @param maxSuccessiveDeltaCycles  the maximum cycles, may be null
+   * @param defaultExecutionOptions  the default view cycle execution options, may be null
+   * @param versionCorrection  the version-correction instants, not null
+   * @param maxConcurrentCycles  the maximum number of cycles to execute at the same time, may be null
+   */
+  public ExecutionOptions(ViewCycleExecutionSequence executionSequence, EnumSet<ViewExecutionFlags> flags,
+      Integer maxSuccessiveDeltaCycles, ViewCycleExecutionOptions defaultExecutionOptions, VersionCorrection versionCorrection,
+      Integer maxConcurrentCycles) {
     ArgumentChecker.notNull(executionSequence, "executionSequence");
     ArgumentChecker.notNull(flags, "flags");
     ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    ArgumentChecker.isTrue(maxConcurrentCycles == null || maxConcurrentCycles > 0, "maxConcurrentCycles must be positive");
     
     _executionSequence = executionSequence;
     _flags = flags;
     _maxSuccessiveDeltaCycles = maxSuccessiveDeltaCycles;
     _defaultExecutionOptions = defaultExecutionOptions;
     _versionCorrection = versionCorrection;
+    _maxConcurrentCycles = maxConcurrentCycles;
   }
 
   //-------------------------------------------------------------------------
@@ -261,6 +295,11 @@ public class ExecutionOptions implements ViewExecutionOptions {
     return _maxSuccessiveDeltaCycles;
   }
 
+  @Override
+  public Integer getMaxConcurrentCycles() {
+    return _maxConcurrentCycles;
+  }
+
   @Override
   public ViewCycleExecutionOptions getDefaultExecutionOptions() {
     return _defaultExecutionOptions;
@@ -312,6 +351,13 @@ public class ExecutionOptions implements ViewExecutionOptions {
     if (!_versionCorrection.equals(other._versionCorrection)) {
       return false;
     }
+    if (_maxConcurrentCycles == null) {
+      if (other._maxConcurrentCycles != null) {
+        return false;
+      }
+    } else if (!_maxConcurrentCycles.equals(other._maxConcurrentCycles)) {
+      return false;
+    }
     return true;
   }
 
@@ -324,13 +370,14 @@ public class ExecutionOptions implements ViewExecutionOptions {
     result = prime * result + ((_defaultExecutionOptions == null) ? 0 : _defaultExecutionOptions.hashCode());
     result = prime * result + ((_maxSuccessiveDeltaCycles == null) ? 0 : _maxSuccessiveDeltaCycles.hashCode());
     result = prime * result + _versionCorrection.hashCode();
+    result = prime * result + ((_maxConcurrentCycles == null) ? 0 : _maxConcurrentCycles.hashCode());
     return result;
   }
 
   @Override
   public String toString() {
     return "ExecutionOptions [executionSequence=" + _executionSequence + ", flags=" + _flags + ", maxSuccessiveDeltaCycles=" + _maxSuccessiveDeltaCycles + ", defaultExecutionOptions=" +
-        _defaultExecutionOptions + ", versionCorrection=" + _versionCorrection + "]";
+        _defaultExecutionOptions + ", versionCorrection=" + _versionCorrection + ", maxConcurrentCycles=" + _maxConcurrentCycles + "]";
   }
 
 }
@@ -34,6 +34,17 @@ public interface ViewExecutionOptions {
    * @return the maximum number of delta cycles following a full computation cycle, null for no limit
    */
   Integer getMaxSuccessiveDeltaCycles();
+
+  /**
+   * Gets the maximum number of cycles from the execution sequence that may execute at the same time.
+   * <p>
+   * Running several cycles at once suits a long sequence of independent cycles, such as a historical run over many
+   * valuation dates, where the market data for later cycles can be obtained while earlier cycles execute. Results
+   * are still delivered in sequence order. Every cycle executed concurrently is a full cycle.
+   * 
+   * @return the maximum number of concurrent cycles, null to execute one cycle at a time
+   */
+  Integer getMaxConcurrentCycles();
     
   /**
    * Gets the default execution options.
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertFalse;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.MutableFudgeMsg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.UniqueId;
+import com.opengamma.transport.FudgeConnection;
+import com.opengamma.transport.socket.ServerSocketFudgeConnectionReceiver;
+import com.opengamma.transport.socket.SocketFudgeConnection;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Measures the get throughput of a {@link RemoteCacheClient} against a cache server over loopback sockets, for a range of
+ * payload sizes and numbers of concurrent callers, with and without coalescing and compression.
+ */
+public class RemoteCacheClientThroughputTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(RemoteCacheClientThroughputTest.class);
+  private static final FudgeContext s_fudgeContext = OpenGammaFudgeContext.getInstance();
+
+  private static final int[] PAYLOAD_SIZES = {64, 1024, 16 * 1024, 256 * 1024 };
+  private static final int[] CONCURRENCY = {1, 4, 16 };
+  private static final int NUM_VALUES = 64;
+  private static final int NUM_GETS = 2000;
+  private static final int GET_CONNECTIONS = 2;
+
+  private ServerSocketFudgeConnectionReceiver _serverSocket;
+  private final List<SocketFudgeConnection> _sockets = new ArrayList<SocketFudgeConnection>();
+
+  @BeforeMethod
+  public void setUp() {
+    final InMemoryViewComputationCacheSource cache = new InMemoryViewComputationCacheSource(s_fudgeContext);
+    _serverSocket = new ServerSocketFudgeConnectionReceiver(s_fudgeContext, new ViewComputationCacheServer(cache), Executors.newCachedThreadPool());
+    _serverSocket.start();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    for (SocketFudgeConnection socket : _sockets) {
+      socket.stop();
+    }
+    _sockets.clear();
+    _serverSocket.stop();
+  }
+
+  private SocketFudgeConnection createConnection() {
+    final SocketFudgeConnection socket = new SocketFudgeConnection(s_fudgeContext);
+    try {
+      socket.setInetAddress(InetAddress.getLocalHost());
+    } catch (UnknownHostException e) {
+      throw new OpenGammaRuntimeException("", e);
+    }
+    socket.setPortNumber(_serverSocket.getPortNumber());
+    _sockets.add(socket);
+    return socket;
+  }
+
+  private RemoteCacheClient createClient(final int maxGetsInFlight, final int compressionThreshold) {
+    final List<FudgeConnection> gets = new ArrayList<FudgeConnection>(GET_CONNECTIONS);
+    for (int i = 0; i < GET_CONNECTIONS; i++) {
+      gets.add(createConnection());
+    }
+    final RemoteCacheClient client = new RemoteCacheClient(gets, createConnection());
+    client.setMaxGetsInFlight(maxGetsInFlight);
+    client.setCompressionThreshold(compressionThreshold);
+    return client;
+  }
+
+  private static FudgeMsg createValue(final Random rand, final int size) {
+    // Rounded prices compress much as real values would
+    final double[] data = new double[size / 8];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = Math.round(rand.nextDouble() * 10000d) / 100d;
+    }
+    final MutableFudgeMsg message = s_fudgeContext.newMessage();
+    message.add(0, data);
+    return message;
+  }
+
+  private void run(final String name, final int maxGetsInFlight, final int compressionThreshold, final int payloadSize, final int threadCount)
+      throws InterruptedException {
+    final RemoteCacheClient client = createClient(maxGetsInFlight, compressionThreshold);
+    final FudgeMessageStore store = new RemoteFudgeMessageStore(client, new ViewComputationCacheKey(UniqueId.of("Test", name + payloadSize + "x" + threadCount), "Default"));
+    final Random rand = new Random(1);
+    final Map<Long, FudgeMsg> values = new HashMap<Long, FudgeMsg>();
+    for (long i = 0; i < NUM_VALUES; i++) {
+      values.put(i, createValue(rand, payloadSize));
+    }
+    store.put(values);
+    final AtomicBoolean failed = new AtomicBoolean();
+    final List<Thread> threads = new ArrayList<Thread>(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      final int seed = i;
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            final Random rand = new Random(seed);
+            for (int j = 0; j < NUM_GETS / threadCount; j++) {
+              if (store.get(rand.nextInt(NUM_VALUES)) == null) {
+                failed.set(true);
+              }
+            }
+          } catch (RuntimeException e) {
+            s_logger.error("Caught exception", e);
+            failed.set(true);
+          }
+        }
+      }));
+    }
+    final long start = System.nanoTime();
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    final double seconds = (double) (System.nanoTime() - start) / 1e9;
+    assertFalse(failed.get());
+    final int gets = (NUM_GETS / threadCount) * threadCount;
+    s_logger.info("{} payload {} bytes, {} threads: {} gets/s, {} MB/s, {} requests, {} coalesced", new Object[] {name, payloadSize, threadCount,
+      (long) (gets / seconds), Math.round((double) gets * payloadSize / seconds / 1048576d * 10d) / 10d, client.getGetRequestCount(), client.getCoalescedGetCount() });
+  }
+
+  private void run(final String name, final int maxGetsInFlight, final int compressionThreshold) throws InterruptedException {
+    for (int payloadSize : PAYLOAD_SIZES) {
+      for (int threadCount : CONCURRENCY) {
+        run(name, maxGetsInFlight, compressionThreshold, payloadSize, threadCount);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_uncoalesced() throws InterruptedException {
+    run("Uncoalesced", 0, 0);
+  }
+
+  @Test
+  public void test_coalesced() throws InterruptedException {
+    run("Coalesced", RemoteCacheClient.DEFAULT_MAX_GETS_IN_FLIGHT, 0);
+  }
+
+  @Test
+  public void test_coalescedCompressed() throws InterruptedException {
+    run("Compressed", RemoteCacheClient.DEFAULT_MAX_GETS_IN_FLIGHT, 4096);
+  }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calcnode;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.time.Instant;
+
+import org.fudgemsg.FudgeContext;
+import org.fudgemsg.FudgeMsg;
+import org.fudgemsg.mapping.FudgeDeserializer;
+import org.fudgemsg.mapping.FudgeSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.engine.view.cache.AbstractIdentifierMap;
+import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.InMemoryIdentifierMap;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Measures the memory allocated for each item when a calculation job result is received from a remote node and its
+ * identifiers resolved, as a guide to the young generation pressure from job result processing.
+ */
+public class CalculationJobResultAllocationTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(CalculationJobResultAllocationTest.class);
+  private static final FudgeContext s_fudgeContext = OpenGammaFudgeContext.getInstance();
+
+  private static final int NUM_ITEMS = 1000;
+  private static final int NUM_RUNS = 50;
+  private static final int MISSING_INPUT_RATE = 10;
+
+  private static long getAllocatedBytes() {
+    final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  private static CalculationJobResult createResult(final IdentifierMap identifierMap) {
+    final ComputationTargetSpecification target = new ComputationTargetSpecification("Foo");
+    final List<CalculationJobResultItem> items = new ArrayList<CalculationJobResultItem>(NUM_ITEMS);
+    for (int i = 0; i < NUM_ITEMS; i++) {
+      if ((i % MISSING_INPUT_RATE) == 0) {
+        final Set<ValueSpecification> missing = new HashSet<ValueSpecification>();
+        missing.add(new ValueSpecification("Missing" + (i % 3), target, ValueProperties.with(ValuePropertyNames.FUNCTION, "Test").get()));
+        items.add(CalculationJobResultItem.missingInputs(missing));
+      } else {
+        items.add(CalculationJobResultItem.success());
+      }
+    }
+    final CalculationJobResult result = new CalculationJobResult(new CalculationJobSpecification(UniqueId.of("Test", "ViewCycle"), "Default", Instant.now(), 1L),
+        0L, items, "Node");
+    AbstractIdentifierMap.convertIdentifiers(identifierMap, result);
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_allocationPerItem() {
+    final IdentifierMap identifierMap = new InMemoryIdentifierMap();
+    final byte[] encoded = s_fudgeContext.toByteArray(new FudgeSerializer(s_fudgeContext).objectToFudgeMsg(createResult(identifierMap)));
+    long bestBytes = Long.MAX_VALUE;
+    long totalNanos = 0;
+    for (int run = 0; run < NUM_RUNS; run++) {
+      final long startBytes = getAllocatedBytes();
+      final long startNanos = System.nanoTime();
+      final FudgeMsg message = s_fudgeContext.deserialize(encoded).getMessage();
+      final CalculationJobResult result = new FudgeDeserializer(s_fudgeContext).fudgeMsgToObject(CalculationJobResult.class, message);
+      AbstractIdentifierMap.resolveIdentifiers(identifierMap, result);
+      totalNanos += System.nanoTime() - startNanos;
+      final long bytes = getAllocatedBytes() - startBytes;
+      if (bytes < bestBytes) {
+        bestBytes = bytes;
+      }
+      assertEquals(NUM_ITEMS, result.getResultItems().size());
+    }
+    if (bestBytes < 0) {
+      s_logger.warn("Thread allocation counters not available on this JVM");
+    } else {
+      s_logger.info("{} bytes allocated per job result item", bestBytes / NUM_ITEMS);
+    }
+    s_logger.info("{} ns per job result item", totalNanos / NUM_RUNS / NUM_ITEMS);
+  }
+
+}
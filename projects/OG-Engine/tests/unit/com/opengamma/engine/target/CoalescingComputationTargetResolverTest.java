@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.target;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.position.Position;
+import com.opengamma.core.position.impl.CoalescingPositionSource;
+import com.opengamma.core.position.impl.MockPositionSource;
+import com.opengamma.core.position.impl.RemotePositionSource;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.core.position.impl.SimplePosition;
+import com.opengamma.core.security.Security;
+import com.opengamma.core.security.impl.SimpleSecurity;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
+import com.opengamma.engine.DefaultComputationTargetResolver;
+import com.opengamma.engine.test.MockSecuritySource;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.UniqueId;
+
+/**
+ * Test {@link CoalescingComputationTargetResolver}.
+ */
+@Test
+public class CoalescingComputationTargetResolverTest {
+
+  /**
+   * Records the bulk calls made.
+   */
+  private static class RecordingSecuritySource extends MockSecuritySource {
+    private final List<Collection<UniqueId>> _bulkCalls = new ArrayList<Collection<UniqueId>>();
+
+    @Override
+    public Map<UniqueId, Security> getSecurities(final Collection<UniqueId> uniqueIds) {
+      _bulkCalls.add(new ArrayList<UniqueId>(uniqueIds));
+      return super.getSecurities(uniqueIds);
+    }
+  }
+
+  /**
+   * Serves positions from memory and records the bulk calls made.
+   */
+  private static class RecordingRemotePositionSource extends RemotePositionSource {
+    private final Map<UniqueId, Position> _positions = new HashMap<UniqueId, Position>();
+    private final List<Collection<UniqueId>> _bulkCalls = new ArrayList<Collection<UniqueId>>();
+
+    RecordingRemotePositionSource() {
+      super(URI.create("http://localhost/jax/positionSource"));
+    }
+
+    void addPosition(final Position position) {
+      _positions.put(position.getUniqueId(), position);
+    }
+
+    @Override
+    public Position getPosition(final UniqueId uniqueId) {
+      final Position position = _positions.get(uniqueId);
+      if (position == null) {
+        throw new DataNotFoundException("Position not found: " + uniqueId);
+      }
+      return position;
+    }
+
+    @Override
+    public Map<UniqueId, Position> getPositions(final Collection<UniqueId> uniqueIds) {
+      _bulkCalls.add(new ArrayList<UniqueId>(uniqueIds));
+      final Map<UniqueId, Position> result = new HashMap<UniqueId, Position>();
+      for (UniqueId uniqueId : uniqueIds) {
+        final Position position = _positions.get(uniqueId);
+        if (position != null) {
+          result.put(uniqueId, position);
+        }
+      }
+      return result;
+    }
+  }
+
+  private static Security security(final String id) {
+    return new SimpleSecurity(UniqueId.of("Sec", id), ExternalIdBundle.EMPTY, "Security " + id, "EQUITY");
+  }
+
+  private static Position position(final String id) {
+    return new SimplePosition(UniqueId.of("Pos", id), BigDecimal.ONE, ExternalIdBundle.EMPTY);
+  }
+
+  public void test_resolve_single() {
+    final RecordingSecuritySource securities = new RecordingSecuritySource();
+    securities.addSecurity(security("1"));
+    final CoalescingComputationTargetResolver test = new CoalescingComputationTargetResolver(new DefaultComputationTargetResolver(securities, new MockPositionSource()));
+    final ComputationTarget target = test.resolve(new ComputationTargetSpecification(ComputationTargetType.SECURITY, UniqueId.of("Sec", "1")));
+    assertEquals(UniqueId.of("Sec", "1"), target.getUniqueId());
+    assertEquals(0, securities._bulkCalls.size());
+    assertEquals(1, test.getResolutions().getLoadCount());
+  }
+
+  public void test_resolveAll_bulk() {
+    final RecordingSecuritySource securities = new RecordingSecuritySource();
+    securities.addSecurity(security("1"));
+    securities.addSecurity(security("2"));
+    final RecordingRemotePositionSource positions = new RecordingRemotePositionSource();
+    positions.addPosition(position("1"));
+    positions.addPosition(position("2"));
+    final CoalescingComputationTargetResolver test = new CoalescingComputationTargetResolver(new DefaultComputationTargetResolver(securities, positions));
+    final ComputationTargetSpecification sec1 = new ComputationTargetSpecification(ComputationTargetType.SECURITY, UniqueId.of("Sec", "1"));
+    final ComputationTargetSpecification sec2 = new ComputationTargetSpecification(ComputationTargetType.SECURITY, UniqueId.of("Sec", "2"));
+    final ComputationTargetSpecification sec3 = new ComputationTargetSpecification(ComputationTargetType.SECURITY, UniqueId.of("Sec", "3"));
+    final ComputationTargetSpecification pos1 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "1"));
+    final ComputationTargetSpecification pos2 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "2"));
+    final ComputationTargetSpecification primitive = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Prim", "1"));
+    final Map<ComputationTargetSpecification, ComputationTarget> result = test.resolveAll(Arrays.asList(sec1, sec2, sec3, sec1, pos1, pos2, primitive));
+    assertEquals(5, result.size());
+    assertEquals(UniqueId.of("Sec", "1"), result.get(sec1).getUniqueId());
+    assertEquals(UniqueId.of("Sec", "2"), result.get(sec2).getUniqueId());
+    assertEquals(UniqueId.of("Pos", "1"), result.get(pos1).getUniqueId());
+    assertTrue(result.get(pos2).getValue() instanceof LazyResolvedPosition);
+    assertEquals(UniqueId.of("Prim", "1"), result.get(primitive).getUniqueId());
+    assertEquals(1, securities._bulkCalls.size());
+    assertEquals(3, securities._bulkCalls.get(0).size());
+    assertEquals(1, positions._bulkCalls.size());
+    assertEquals(2, positions._bulkCalls.get(0).size());
+    assertEquals(6, test.getResolutions().getRequestCount());
+    assertEquals(1, test.getResolutions().getLoadCount());
+    assertEquals(5, test.getResolutions().getLoadedKeyCount());
+  }
+
+  public void test_resolveAll_coalescedRemotePositionsLookedThrough() {
+    final RecordingRemotePositionSource positions = new RecordingRemotePositionSource();
+    positions.addPosition(position("1"));
+    positions.addPosition(position("2"));
+    final CoalescingPositionSource coalescingPositions = new CoalescingPositionSource(positions);
+    final CoalescingComputationTargetResolver test = new CoalescingComputationTargetResolver(new DefaultComputationTargetResolver(new MockSecuritySource(), coalescingPositions));
+    final ComputationTargetSpecification pos1 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "1"));
+    final ComputationTargetSpecification pos2 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "2"));
+    final Map<ComputationTargetSpecification, ComputationTarget> result = test.resolveAll(Arrays.asList(pos1, pos2));
+    assertEquals(2, result.size());
+    assertEquals(1, positions._bulkCalls.size());
+    // the bulk lookup goes straight to the remote source rather than through a second coalescer
+    assertEquals(0, coalescingPositions.getPositionLookups().getRequestCount());
+  }
+
+  public void test_resolveAll_localPositionsResolvedDirectly() {
+    final SimplePortfolio portfolio = new SimplePortfolio(UniqueId.of("Port", "1"), "Name");
+    portfolio.getRootNode().addPosition(position("1"));
+    portfolio.getRootNode().addPosition(position("2"));
+    final MockPositionSource positions = new MockPositionSource();
+    positions.addPortfolio(portfolio);
+    final CoalescingComputationTargetResolver test = new CoalescingComputationTargetResolver(new DefaultComputationTargetResolver(new MockSecuritySource(), positions));
+    final ComputationTargetSpecification pos1 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "1"));
+    final ComputationTargetSpecification pos2 = new ComputationTargetSpecification(ComputationTargetType.POSITION, UniqueId.of("Pos", "2"));
+    final Map<ComputationTargetSpecification, ComputationTarget> result = test.resolveAll(Arrays.asList(pos1, pos2));
+    assertEquals(2, result.size());
+    assertTrue(result.get(pos2).getValue() instanceof LazyResolvedPosition);
+    assertEquals(UniqueId.of("Pos", "1"), test.resolve(pos1).getUniqueId());
+    assertEquals(0, test.getResolutions().getRequestCount());
+  }
+
+}
@@ -11,6 +11,8 @@ import static com.opengamma.engine.view.ViewCalculationResultModelImplTest.SPEC;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.time.Duration;
@@ -19,8 +21,13 @@ import javax.time.Instant;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Sets;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.ComputationTargetType;
 import com.opengamma.engine.value.ComputedValue;
 import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.id.UniqueId;
 import com.opengamma.util.tuple.Pair;
 
 /**
@@ -34,6 +41,34 @@ public class ViewComputationResultModelImplTest {
     checkModel(model);
   }
 
+  public void testConcurrentAddValue() throws InterruptedException {
+    final InMemoryViewComputationResultModel model = new InMemoryViewComputationResultModel();
+    final int threadCount = 4;
+    final int valueCount = 1000;
+    final List<Thread> threads = new ArrayList<Thread>(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      final String calcConfigurationName = "configName" + (i % 2);
+      final ComputationTargetSpecification target = new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "Target" + i));
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < valueCount; j++) {
+            model.addValue(calcConfigurationName, new ComputedValue(new ValueSpecification(new ValueRequirement("DATA" + j, target), "mockFunctionId"), j));
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(threadCount * valueCount, model.getAllResults().size());
+    assertEquals(threadCount, model.getAllTargets().size());
+    assertEquals(valueCount, model.getTargetResult(new ComputationTargetSpecification(ComputationTargetType.PRIMITIVE, UniqueId.of("Test", "Target0"))).getAllValues("configName0").size());
+  }
+
   static void checkModel(InMemoryViewResultModel model) {
     model.setValuationTime(Instant.ofEpochMillis(400));
     assertEquals(Instant.ofEpochMillis(400), model.getValuationTime());
@@ -33,6 +33,7 @@ import com.opengamma.engine.view.execution.ExecutionFlags;
 import com.opengamma.engine.view.execution.ExecutionOptions;
 import com.opengamma.engine.view.execution.ViewCycleExecutionOptions;
 import com.opengamma.engine.view.execution.ViewExecutionOptions;
+import com.opengamma.id.VersionCorrection;
 import com.opengamma.util.test.Timeout;
 
 /**
@@ -242,5 +243,41 @@ public class ViewProcessTest {
 
     vp.stop();
   }
-  
+
+  public void testConcurrentCyclesDeliveredInOrder() throws InterruptedException {
+    final ViewProcessorTestEnvironment env = new ViewProcessorTestEnvironment();
+    env.init();
+    final ViewProcessorImpl vp = env.getViewProcessor();
+    vp.start();
+
+    ViewClient client = vp.createViewClient(ViewProcessorTestEnvironment.TEST_USER);
+    TestViewResultListener resultListener = new TestViewResultListener();
+    client.setResultListener(resultListener);
+
+    final Instant time0 = Instant.now();
+    ViewCycleExecutionOptions defaultCycleOptions = new ViewCycleExecutionOptions(MarketData.live());
+    final ViewExecutionOptions executionOptions = new ExecutionOptions(ArbitraryViewCycleExecutionSequence.of(time0, time0.plusMillis(10),
+        time0.plusMillis(20), time0.plusMillis(30), time0.plusMillis(40)), ExecutionFlags.none().runAsFastAsPossible().get(), null,
+        defaultCycleOptions, VersionCorrection.LATEST, 3);
+    client.attachToViewProcess(env.getViewDefinition().getUniqueId(), executionOptions);
+
+    ViewProcessImpl viewProcess = env.getViewProcess(vp, client.getUniqueId());
+    ViewComputationJob computationJob = env.getCurrentComputationJob(viewProcess);
+    Thread computationThread = env.getCurrentComputationThread(viewProcess);
+
+    resultListener.getViewDefinitionCompiled(Timeout.standardTimeoutMillis());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(time0.plusMillis(10 * i), resultListener.getCycleCompleted(10 * Timeout.standardTimeoutMillis()).getFullResult().getValuationTime());
+    }
+    resultListener.assertProcessCompleted(Timeout.standardTimeoutMillis());
+    resultListener.assertNoCalls(Timeout.standardTimeoutMillis());
+
+    assertEquals(ViewProcessState.FINISHED, viewProcess.getState());
+    assertTrue(computationJob.isTerminated());
+    computationThread.join(Timeout.standardTimeoutMillis());
+    assertFalse(computationThread.isAlive());
+
+    vp.stop();
+  }
+
 }
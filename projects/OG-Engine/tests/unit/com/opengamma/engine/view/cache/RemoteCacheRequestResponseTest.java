@@ -275,4 +275,89 @@ public class RemoteCacheRequestResponseTest {
     assertNull(outputValue);
   }
 
+  @Test(timeOut = 10000l)
+  public void singleThreadPutLoadCompressed() {
+    InMemoryViewComputationCacheSource cache = new InMemoryViewComputationCacheSource(s_fudgeContext);
+    ViewComputationCacheServer server = new ViewComputationCacheServer(cache);
+    DirectFudgeConnection conduit = new DirectFudgeConnection(cache.getFudgeContext());
+    conduit.connectEnd2(server);
+    RemoteCacheClient client = new RemoteCacheClient(conduit.getEnd1());
+    client.setCompressionThreshold(256);
+    final ViewComputationCacheKey cacheKey = new ViewComputationCacheKey(UniqueId.of("Test", "ViewCycle1"), "Config1");
+    FudgeMessageStore dataStore = new RemoteFudgeMessageStore(client, cacheKey);
+    final MutableFudgeMsg smallValue = s_fudgeContext.newMessage();
+    smallValue.add(0, "Small");
+    final MutableFudgeMsg largeValue = s_fudgeContext.newMessage();
+    for (int i = 0; i < 256; i++) {
+      largeValue.add(i, Integer.toString(i % 8));
+    }
+    assertFalse(FudgeMsgCompression.isCompressed(FudgeMsgCompression.compress(s_fudgeContext, smallValue, 256)));
+    assertTrue(FudgeMsgCompression.isCompressed(FudgeMsgCompression.compress(s_fudgeContext, largeValue, 256)));
+    dataStore.put(1L, smallValue);
+    dataStore.put(2L, largeValue);
+    // The server must hold the original values
+    final FudgeMessageStore serverStore = cache.findCache(cacheKey.getViewCycleId(), cacheKey.getCalculationConfigurationName()).getSharedDataStore();
+    assertEquals(largeValue.getAllFields(), serverStore.get(2L).getAllFields());
+    assertEquals(smallValue.getAllFields(), dataStore.get(1L).getAllFields());
+    assertEquals(largeValue.getAllFields(), dataStore.get(2L).getAllFields());
+    final Map<Long, FudgeMsg> outputMap = dataStore.get(Arrays.asList(1L, 2L, 3L));
+    assertEquals(2, outputMap.size());
+    assertEquals(largeValue.getAllFields(), outputMap.get(2L).getAllFields());
+  }
+
+  @Test(timeOut = 30000l)
+  public void multiThreadCoalescedGets() throws InterruptedException {
+    InMemoryViewComputationCacheSource cache = new InMemoryViewComputationCacheSource(s_fudgeContext);
+    ViewComputationCacheServer server = new ViewComputationCacheServer(cache);
+    DirectFudgeConnection conduit1 = new DirectFudgeConnection(cache.getFudgeContext());
+    conduit1.connectEnd2(server);
+    DirectFudgeConnection conduit2 = new DirectFudgeConnection(cache.getFudgeContext());
+    conduit2.connectEnd2(server);
+    DirectFudgeConnection conduit3 = new DirectFudgeConnection(cache.getFudgeContext());
+    conduit3.connectEnd2(server);
+    final RemoteCacheClient client = new RemoteCacheClient(Arrays.asList(conduit1.getEnd1(), conduit2.getEnd1()), conduit3.getEnd1());
+    client.setMaxGetsInFlight(1);
+    final FudgeMessageStore dataStore = new RemoteFudgeMessageStore(client, new ViewComputationCacheKey(UniqueId.of("Test", "ViewCycle1"), "Config1"));
+    final Map<Long, FudgeMsg> inputMap = new HashMap<Long, FudgeMsg>();
+    for (int i = 0; i < 100; i++) {
+      final MutableFudgeMsg value = s_fudgeContext.newMessage();
+      value.add(0, Integer.toString(i));
+      inputMap.put((long) i, value);
+    }
+    dataStore.put(inputMap);
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 10; i++) {
+      final int offset = i;
+      final Thread t = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int j = 0; j < 100; j++) {
+              final long identifier = (j + offset) % 110;
+              final FudgeMsg value = dataStore.get(identifier);
+              if (identifier < 100) {
+                assertEquals(inputMap.get(identifier).getAllFields(), value.getAllFields());
+              } else {
+                assertNull(value);
+              }
+            }
+          } catch (Throwable e) {
+            s_logger.error("Failed", e);
+            failed.set(true);
+          }
+        }
+      });
+      threads.add(t);
+    }
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertFalse("One thread failed. Check logs.", failed.get());
+    assertEquals(1000, client.getGetRequestCount() + client.getCoalescedGetCount());
+  }
+
 }
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.fudgemsg.OpenGammaFudgeContext;
+
+/**
+ * Tests the {@link ResidentValueFilter} class.
+ */
+@Test
+public class ResidentValueFilterTest {
+
+  private static final ViewComputationCacheKey CACHE_A = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle1"), "Default");
+  private static final ViewComputationCacheKey CACHE_B = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle2"), "Default");
+
+  public void testAddAndRemove() {
+    final ResidentValueFilter filter = new ResidentValueFilter();
+    assertFalse(filter.mightContain(CACHE_A, 1L));
+    final int changeCount = filter.getChangeCount();
+    for (long i = 0; i < 100; i++) {
+      filter.add(CACHE_A, i);
+    }
+    assertTrue(filter.getChangeCount() > changeCount);
+    assertEquals(100, filter.getValueCount());
+    for (long i = 0; i < 100; i++) {
+      assertTrue(filter.mightContain(CACHE_A, i));
+      assertFalse(filter.mightContain(CACHE_B, i));
+    }
+    filter.remove(CACHE_A);
+    assertFalse(filter.mightContain(CACHE_A, 1L));
+    assertEquals(0, filter.getValueCount());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidBits() {
+    new ResidentValueFilter(1000);
+  }
+
+  public void testFudgeCycle() {
+    final ResidentValueFilter filter = new ResidentValueFilter(1024);
+    filter.add(CACHE_A, 42L);
+    filter.add(CACHE_B, 43L);
+    final ResidentValueFilter cycled = ResidentValueFilter.fromFudgeMsg(filter.toFudgeMsg(OpenGammaFudgeContext.getInstance()));
+    assertTrue(cycled.mightContain(CACHE_A, 42L));
+    assertTrue(cycled.mightContain(CACHE_B, 43L));
+    assertEquals(2, cycled.getValueCount());
+  }
+
+}
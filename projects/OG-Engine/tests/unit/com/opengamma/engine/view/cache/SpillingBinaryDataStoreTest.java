@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+
+/**
+ * Tests the {@link SpillingBinaryDataStore} and {@link SpillingBinaryDataStoreFactory} classes.
+ */
+@Test
+public class SpillingBinaryDataStoreTest {
+
+  private static final ViewComputationCacheKey CACHE_A = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle1"), "Default");
+  private static final ViewComputationCacheKey CACHE_B = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle2"), "Default");
+
+  private static byte[] value(final int size, final long identifier) {
+    final byte[] data = new byte[size];
+    Arrays.fill(data, (byte) identifier);
+    return data;
+  }
+
+  private static SpillingBinaryDataStoreFactory createFactory(final long budget) {
+    return new SpillingBinaryDataStoreFactory(new File(System.getProperty("java.io.tmpdir")), budget);
+  }
+
+  public void testWithinBudget() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(10000);
+    final SpillingBinaryDataStore store = factory.createDataStore(CACHE_A);
+    for (long i = 0; i < 10; i++) {
+      store.put(i, value(100, i));
+    }
+    assertEquals(1000, factory.getMemoryUsed());
+    assertEquals(0, factory.getSpillCount());
+    assertNull(store.getSpillFile());
+    assertTrue(Arrays.equals(value(100, 5), store.get(5)));
+    assertNull(store.get(10));
+    store.delete();
+    assertEquals(0, factory.getMemoryUsed());
+  }
+
+  public void testSpillAndReadBack() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(1000);
+    final SpillingBinaryDataStore store = factory.createDataStore(CACHE_A);
+    for (long i = 0; i < 20; i++) {
+      store.put(i, value(100, i));
+    }
+    assertTrue(factory.getMemoryUsed() <= 1000);
+    assertTrue(factory.getSpillCount() >= 10);
+    assertEquals(factory.getSpillCount() * 100, factory.getSpilledBytes());
+    final File file = store.getSpillFile();
+    assertNotNull(file);
+    assertTrue(file.exists());
+    for (long i = 0; i < 20; i++) {
+      assertTrue(Arrays.equals(value(100, i), store.get(i)));
+    }
+    assertEquals(factory.getSpillCount(), factory.getReadBackCount());
+    store.delete();
+    assertFalse(file.exists());
+    assertEquals(0, factory.getMemoryUsed());
+  }
+
+  public void testGetAfterDelete() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(100);
+    final SpillingBinaryDataStore store = factory.createDataStore(CACHE_A);
+    store.put(1L, value(200, 1));
+    assertEquals(1, factory.getSpillCount());
+    store.delete();
+    assertNull(store.get(1L));
+    assertEquals(0, factory.getReadBackCount());
+  }
+
+  public void testLargestSpilledFirst() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(1000);
+    final SpillingBinaryDataStore store = factory.createDataStore(CACHE_A);
+    store.put(1L, value(10, 1));
+    store.put(2L, value(800, 2));
+    store.put(3L, value(10, 3));
+    store.put(4L, value(300, 4));
+    assertEquals(1, factory.getSpillCount());
+    assertEquals(800, factory.getSpilledBytes());
+    assertTrue(Arrays.equals(value(800, 2), store.get(2L)));
+    store.delete();
+  }
+
+  public void testReplaceSpilledValue() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(100);
+    final SpillingBinaryDataStore store = factory.createDataStore(CACHE_A);
+    store.put(1L, value(200, 1));
+    assertEquals(1, factory.getSpillCount());
+    store.put(1L, value(50, 2));
+    assertTrue(Arrays.equals(value(50, 2), store.get(1L)));
+    assertEquals(0, factory.getReadBackCount());
+    store.delete();
+  }
+
+  public void testBudgetSharedBetweenStores() {
+    final SpillingBinaryDataStoreFactory factory = createFactory(1000);
+    final SpillingBinaryDataStore storeA = factory.createDataStore(CACHE_A);
+    final SpillingBinaryDataStore storeB = factory.createDataStore(CACHE_B);
+    storeA.put(1L, value(900, 1));
+    storeB.put(1L, value(200, 2));
+    // The larger value from the other store is the one spilled
+    assertNotNull(storeA.getSpillFile());
+    assertNull(storeB.getSpillFile());
+    assertTrue(Arrays.equals(value(900, 1), storeA.get(1L)));
+    assertTrue(Arrays.equals(value(200, 2), storeB.get(1L)));
+    storeA.delete();
+    assertEquals(200, factory.getMemoryUsed());
+    storeB.delete();
+    assertEquals(0, factory.getMemoryUsed());
+  }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.calc;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
+
+/**
+ * Tests the {@link CycleResultInterner} class.
+ */
+@Test
+public class CycleResultInternerTest {
+
+  private static ValueSpecification valueSpec(final String name) {
+    return new ValueSpecification(name, new ComputationTargetSpecification("Foo"), ValueProperties.with(ValuePropertyNames.FUNCTION, "Test").get());
+  }
+
+  public void testInternSpecification() {
+    final CycleResultInterner interner = new CycleResultInterner();
+    final ValueSpecification a1 = valueSpec("A");
+    final ValueSpecification a2 = valueSpec("A");
+    assertNotSame(a1, a2);
+    assertSame(interner.intern(a1), a1);
+    assertSame(interner.intern(a2), a1);
+  }
+
+  public void testInternSet() {
+    final CycleResultInterner interner = new CycleResultInterner();
+    assertTrue(interner.intern(Collections.<ValueSpecification>emptySet()).isEmpty());
+    final Set<ValueSpecification> set1 = new HashSet<ValueSpecification>();
+    set1.add(valueSpec("A"));
+    set1.add(valueSpec("B"));
+    final Set<ValueSpecification> set2 = new HashSet<ValueSpecification>();
+    set2.add(valueSpec("A"));
+    set2.add(valueSpec("B"));
+    final Set<ValueSpecification> interned = interner.intern(set1);
+    assertEquals(interned, set1);
+    assertSame(interner.intern(set2), interned);
+    final Set<ValueSpecification> single = interner.intern(Collections.singleton(valueSpec("A")));
+    // Elements are shared with the earlier set
+    assertSame(single.iterator().next(), interner.intern(valueSpec("A")));
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testInternedSetUnmodifiable() {
+    final CycleResultInterner interner = new CycleResultInterner();
+    final Set<ValueSpecification> set = new HashSet<ValueSpecification>();
+    set.add(valueSpec("A"));
+    set.add(valueSpec("B"));
+    interner.intern(set).add(valueSpec("C"));
+  }
+
+  public void testRelease() {
+    final CycleResultInterner interner = new CycleResultInterner();
+    final ValueSpecification a1 = valueSpec("A");
+    interner.intern(a1);
+    interner.release();
+    final ValueSpecification a2 = valueSpec("A");
+    assertSame(interner.intern(a2), a2);
+  }
+
+}
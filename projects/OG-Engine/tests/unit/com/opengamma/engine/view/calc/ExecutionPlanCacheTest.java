@@ -10,7 +10,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
-import java.util.Map;
+import java.util.Arrays;
 import java.util.concurrent.Future;
 
 import org.testng.annotations.Test;
@@ -24,8 +24,7 @@ import com.opengamma.engine.value.ValueProperties;
 import com.opengamma.engine.value.ValuePropertyNames;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueSpecification;
-import com.opengamma.engine.view.calc.ExecutionPlanCache.DependencyGraphKey;
-import com.opengamma.engine.view.calc.ExecutionPlanCache.DependencyNodeKey;
+import com.opengamma.engine.view.calc.ExecutionPlanCache.PlanKey;
 import com.opengamma.engine.view.calc.stats.GraphExecutorStatisticsGatherer;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.ehcache.EHCacheUtils;
@@ -36,7 +35,7 @@ import com.opengamma.util.ehcache.EHCacheUtils;
 @Test
 public class ExecutionPlanCacheTest {
 
-  public void testDependencyNodeKey_same() {
+  public void testNodeFingerprint_same() {
     final DependencyNode a = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     a.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
     a.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
@@ -49,17 +48,16 @@ public class ExecutionPlanCacheTest {
     b.addInputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addOutputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
     b.addOutputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
-    // Note: if this test fails because the next two both become true then the DependencyNodeKey class could be redundant
     assertFalse(a.equals(b));
     assertFalse(b.equals(a));
-    final DependencyNodeKey ak = new DependencyNodeKey(a);
-    final DependencyNodeKey bk = new DependencyNodeKey(b);
+    final GraphFingerprint ak = fingerprint(a);
+    final GraphFingerprint bk = fingerprint(b);
     assertTrue(ak.equals(bk));
     assertTrue(bk.equals(ak));
     assertEquals(ak.hashCode(), bk.hashCode());
   }
 
-  public void testDependencyNodeKey_target() {
+  public void testNodeFingerprint_target() {
     final DependencyNode a = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     a.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
     a.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
@@ -68,13 +66,13 @@ public class ExecutionPlanCacheTest {
     b.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "B"))));
     b.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addInputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
-    final DependencyNodeKey ak = new DependencyNodeKey(a);
-    final DependencyNodeKey bk = new DependencyNodeKey(b);
+    final GraphFingerprint ak = fingerprint(a);
+    final GraphFingerprint bk = fingerprint(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
-  public void testDependencyNodeKey_function() {
+  public void testNodeFingerprint_function() {
     final DependencyNode a = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     a.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
     a.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
@@ -83,13 +81,13 @@ public class ExecutionPlanCacheTest {
     b.setFunction(new MockFunction("Bar", new ComputationTarget(UniqueId.of("Test", "A"))));
     b.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addInputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
-    final DependencyNodeKey ak = new DependencyNodeKey(a);
-    final DependencyNodeKey bk = new DependencyNodeKey(b);
+    final GraphFingerprint ak = fingerprint(a);
+    final GraphFingerprint bk = fingerprint(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
-  public void testDependencyNodeKey_inputs() {
+  public void testNodeFingerprint_inputs() {
     final DependencyNode a = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     a.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
     a.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
@@ -101,13 +99,13 @@ public class ExecutionPlanCacheTest {
     b.addInputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addOutputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
     b.addOutputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
-    final DependencyNodeKey ak = new DependencyNodeKey(a);
-    final DependencyNodeKey bk = new DependencyNodeKey(b);
+    final GraphFingerprint ak = fingerprint(a);
+    final GraphFingerprint bk = fingerprint(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
-  public void testDependencyNodeKey_outputs() {
+  public void testNodeFingerprint_outputs() {
     final DependencyNode a = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     a.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
     a.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
@@ -119,12 +117,18 @@ public class ExecutionPlanCacheTest {
     b.addInputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addInputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Bar").get()));
     b.addOutputValue(new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
-    final DependencyNodeKey ak = new DependencyNodeKey(a);
-    final DependencyNodeKey bk = new DependencyNodeKey(b);
+    final GraphFingerprint ak = fingerprint(a);
+    final GraphFingerprint bk = fingerprint(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
+  private GraphFingerprint fingerprint(final DependencyNode node) {
+    final DependencyGraph graph = new DependencyGraph("Default");
+    graph.addDependencyNode(node);
+    return GraphFingerprint.of(graph);
+  }
+
   private DependencyGraph createDependencyGraph() {
     final DependencyGraph graph = new DependencyGraph("Default");
     final DependencyNode[] nodes = new DependencyNode[10];
@@ -145,42 +149,41 @@ public class ExecutionPlanCacheTest {
     return graph;
   }
 
-  public void testDependencyGraphKey_same() {
+  public void testGraphFingerprint_same() {
     final DependencyGraph a = createDependencyGraph();
     final DependencyGraph b = createDependencyGraph();
-    // Note: if this test fails because the next two both become true then the DependencyGraphKey class could be redundant
     assertFalse(a.equals(b));
     assertFalse(b.equals(a));
-    final DependencyGraphKey ak = new DependencyGraphKey(a, 0);
-    final DependencyGraphKey bk = new DependencyGraphKey(b, 0);
+    final GraphFingerprint ak = GraphFingerprint.of(a);
+    final GraphFingerprint bk = GraphFingerprint.of(b);
     assertTrue(ak.equals(bk));
     assertTrue(bk.equals(ak));
     assertEquals(ak.hashCode(), bk.hashCode());
   }
 
-  public void testDependencyGraphKey_initId() {
+  public void testPlanKey_initId() {
     final DependencyGraph a = createDependencyGraph();
     final DependencyGraph b = createDependencyGraph();
-    final DependencyGraphKey ak = new DependencyGraphKey(a, 1);
-    final DependencyGraphKey bk = new DependencyGraphKey(b, 2);
+    final PlanKey ak = new PlanKey(GraphFingerprint.of(a), 1);
+    final PlanKey bk = new PlanKey(GraphFingerprint.of(b), 2);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
-  public void testDependencyGraphKey_terminals() {
+  public void testGraphFingerprint_terminals() {
     final DependencyGraph a = createDependencyGraph();
     a.addTerminalOutput(new ValueRequirement("1", new ComputationTargetSpecification(UniqueId.of("Test", "X"))),
         new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo1").get()));
     final DependencyGraph b = createDependencyGraph();
     b.addTerminalOutput(new ValueRequirement("2", new ComputationTargetSpecification(UniqueId.of("Test", "X"))),
         new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo2").get()));
-    final DependencyGraphKey ak = new DependencyGraphKey(a, 0);
-    final DependencyGraphKey bk = new DependencyGraphKey(b, 0);
+    final GraphFingerprint ak = GraphFingerprint.of(a);
+    final GraphFingerprint bk = GraphFingerprint.of(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
-  public void testDependencyGraphKey_node() {
+  public void testGraphFingerprint_node() {
     final DependencyGraph a = createDependencyGraph();
     final DependencyNode n = new DependencyNode(new ComputationTarget(UniqueId.of("Test", "A")));
     n.setFunction(new MockFunction("Foo", new ComputationTarget(UniqueId.of("Test", "A"))));
@@ -190,12 +193,22 @@ public class ExecutionPlanCacheTest {
     n.addOutputValue(new ValueSpecification("2", new ComputationTargetSpecification(UniqueId.of("Test", "A")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo").get()));
     a.addDependencyNode(n);
     final DependencyGraph b = createDependencyGraph();
-    final DependencyGraphKey ak = new DependencyGraphKey(a, 0);
-    final DependencyGraphKey bk = new DependencyGraphKey(b, 0);
+    final GraphFingerprint ak = GraphFingerprint.of(a);
+    final GraphFingerprint bk = GraphFingerprint.of(b);
     assertFalse(ak.equals(bk));
     assertFalse(bk.equals(ak));
   }
 
+  public void testGraphFingerprint_structure() {
+    final GraphFingerprint ak = GraphFingerprint.of(createDependencyGraph());
+    final GraphFingerprint bk = GraphFingerprint.of(createDependencyGraph());
+    assertTrue(Arrays.equals(ak.getStructure(), bk.getStructure()));
+    final DependencyGraph c = createDependencyGraph();
+    c.addTerminalOutput(new ValueRequirement("1", new ComputationTargetSpecification(UniqueId.of("Test", "X"))),
+        new ValueSpecification("1", new ComputationTargetSpecification(UniqueId.of("Test", "X")), ValueProperties.with(ValuePropertyNames.FUNCTION, "Foo1").get()));
+    assertFalse(Arrays.equals(ak.getStructure(), GraphFingerprint.of(c).getStructure()));
+  }
+
   private ExecutionPlan createExecutionPlan() {
     return new ExecutionPlan() {
       @Override
@@ -204,7 +217,7 @@ public class ExecutionPlanCacheTest {
       }
 
       @Override
-      public ExecutionPlan withNodes(Map<DependencyNodeKey, DependencyNode> nodes) {
+      protected ExecutionPlan copy() {
         return this;
       }
     };
@@ -232,6 +245,15 @@ public class ExecutionPlanCacheTest {
     assertEquals(cached, plan);
   }
 
+  public void testCache_structureMismatch() {
+    final ExecutionPlanCache cache = new ExecutionPlanCache(EHCacheUtils.createCacheManager());
+    final ExecutionPlan plan = createExecutionPlan();
+    cache.cachePlan(createDependencyGraph(), 0, plan);
+    // Same fingerprint but a different shape, as if two graphs had collided
+    plan.setStructure(new int[] {1, 1, 0, 0, 1, 0 });
+    assertNull(cache.getCachedPlan(createDependencyGraph(), 0));
+  }
+
   public void testCache_identity_invalid() {
     final ExecutionPlanCache cache = new ExecutionPlanCache(EHCacheUtils.createCacheManager());
     final DependencyGraph graph = createDependencyGraph();
@@ -243,4 +265,18 @@ public class ExecutionPlanCacheTest {
     assertNull(cached);
   }
 
+  public void testCache_stale() {
+    final ExecutionPlanCache cache = new ExecutionPlanCache(null);
+    final ExecutionPlan plan = createExecutionPlan();
+    assertFalse(cache.isStale(plan, 1000, 0.5));
+    plan.setEstimates(1000, 1.0);
+    assertFalse(cache.isStale(plan, 1000, 1.0));
+    assertFalse(cache.isStale(plan, 1400, 1.0));
+    assertTrue(cache.isStale(plan, 1600, 1.0));
+    assertTrue(cache.isStale(plan, 400, 1.0));
+    assertTrue(cache.isStale(plan, 1000, 0.75));
+    cache.setCostDriftTolerance(1.0);
+    assertFalse(cache.isStale(plan, 1600, 1.0));
+  }
+
 }
@@ -7,6 +7,10 @@ package com.opengamma.engine.view.calc;
 
 import static org.testng.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
@@ -143,7 +147,7 @@ public class ExecutionPlanTest {
     final MutableGraphFragmentContext mContext = createMutableGraphFragmentContext();
     final CompleteGraphFragment fragment = new CompleteGraphFragment(mContext, createStatisticsGatherer(), mContext.getGraph().getExecutionOrder());
     fragment.setCacheSelectHint(CacheSelectHint.allShared());
-    final ExecutionPlan plan = ExecutionPlan.of(fragment);
+    final ExecutionPlan plan = ExecutionPlan.of(fragment, GraphFingerprint.of(mContext.getGraph()));
     final GraphFragmentContext context = createGraphFragmentContext();
     final Future<?> future = plan.run(context, createStatisticsGatherer());
     assertEquals(future.get(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS), context.getGraph());
@@ -168,10 +172,26 @@ public class ExecutionPlanTest {
     fragment[3].getOutputFragments().add(root);
     root.getInputFragments().add(fragment[2]);
     root.getInputFragments().add(fragment[3]);
-    final ExecutionPlan plan = ExecutionPlan.of(root);
+    final ExecutionPlan plan = ExecutionPlan.of(root, GraphFingerprint.of(mContext.getGraph()));
     final GraphFragmentContext context = createGraphFragmentContext();
     final Future<?> future = plan.run(context, createStatisticsGatherer());
     assertEquals(future.get(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS), context.getGraph());
   }
 
+  public void testSerializedPlanOnEquivalentGraph() throws Exception {
+    final MutableGraphFragmentContext mContext = createMutableGraphFragmentContext();
+    final CompleteGraphFragment fragment = new CompleteGraphFragment(mContext, createStatisticsGatherer(), mContext.getGraph().getExecutionOrder());
+    fragment.setCacheSelectHint(CacheSelectHint.allShared());
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(ExecutionPlan.of(fragment, GraphFingerprint.of(mContext.getGraph())));
+    out.close();
+    final ExecutionPlan plan = (ExecutionPlan) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    final GraphFragmentContext context = createGraphFragmentContext();
+    final GraphFingerprint fingerprint = GraphFingerprint.of(context.getGraph());
+    assertEquals(fingerprint, GraphFingerprint.of(mContext.getGraph()));
+    final Future<?> future = plan.withGraph(fingerprint).run(context, createStatisticsGatherer());
+    assertEquals(future.get(Timeout.standardTimeoutMillis(), TimeUnit.MILLISECONDS), context.getGraph());
+  }
+
 }
@@ -123,7 +123,11 @@ public class MultipleNodeExecutorTest {
   }
 
   private MultipleNodeExecutor createExecutor(final int minimum, final int maximum, final int concurrency) {
-    return new MultipleNodeExecutor(null, minimum, maximum, 0, Integer.MAX_VALUE, concurrency, new FunctionCosts(), new ExecutionPlanCache(null)) {
+    return createExecutor(minimum, maximum, concurrency, 1, new GraphPartitioningFeedback());
+  }
+
+  private MultipleNodeExecutor createExecutor(final int minimum, final int maximum, final int concurrency, final int totalConcurrency, final GraphPartitioningFeedback feedback) {
+    return new MultipleNodeExecutor(null, minimum, maximum, 0, Integer.MAX_VALUE, concurrency, totalConcurrency, 1.0, new FunctionCosts(), new ExecutionPlanCache(null), feedback) {
 
       @Override
       protected long getFunctionInitId() {
@@ -340,6 +344,52 @@ public class MultipleNodeExecutorTest {
     assertTrue(hint.isPrivateValue(_testValue34));
   }
 
+  /**
+   * Input-merge on N0+N1, single-dep merge on N4+N3, but N(0+1)+N(4+3) would cost more than the critical path.
+   */
+  public void testMinMax4_totalConcurrency() {
+    final MultipleNodeExecutor executor = createExecutor(3, 4, 0, 2, new GraphPartitioningFeedback());
+    final RootGraphFragmentFuture root = execute(executor, _testGraph);
+    if (PRINT_GRAPHS) {
+      System.out.println("testMinMax4_totalConcurrency");
+      MultipleNodeExecutor.printFragment(root.getFragment());
+    }
+    assertEquals(2, root.getFragment().getInputFragments().size());
+    for (GraphFragment<?> fragment : root.getFragment().getInputFragments()) {
+      assertEquals(2, fragment.getNodes().size());
+    }
+  }
+
+  public void testJobCostLimit() {
+    final MultipleNodeExecutor executor = createExecutor(1, Integer.MAX_VALUE, 0, 4, new GraphPartitioningFeedback());
+    // Critical path longer than the shared cost
+    assertEquals(50, executor.getJobCostLimit(50, 100, 1.0));
+    // Shared cost longer than the critical path
+    assertEquals(25, executor.getJobCostLimit(10, 100, 1.0));
+    assertEquals(12, executor.getJobCostLimit(10, 100, 0.5));
+  }
+
+  public void testFeedback() {
+    final GraphPartitioningFeedback feedback = new GraphPartitioningFeedback();
+    assertEquals(1.0, feedback.getJobCostScale("Default"), 0.0);
+    // Single job graphs tell us nothing
+    assertFalse(feedback.graphExecuted("Default", 1, 90, 10, 100));
+    // A single item job can't be split
+    assertFalse(feedback.graphExecuted("Default", 10, 90, 1, 100));
+    // Straggler
+    assertTrue(feedback.graphExecuted("Default", 10, 90, 10, 100));
+    assertEquals(0.75, feedback.getJobCostScale("Default"), 0.0);
+    assertEquals(1.0, feedback.getJobCostScale("Other"), 0.0);
+    // Neither straggling nor balanced
+    assertFalse(feedback.graphExecuted("Default", 10, 30, 10, 100));
+    // Balanced
+    assertTrue(feedback.graphExecuted("Default", 10, 10, 10, 100));
+    assertEquals(0.9375, feedback.getJobCostScale("Default"), 0.0);
+    assertTrue(feedback.graphExecuted("Default", 10, 10, 10, 100));
+    assertEquals(1.0, feedback.getJobCostScale("Default"), 0.0);
+    assertFalse(feedback.graphExecuted("Default", 10, 10, 10, 100));
+  }
+
   /**
    * Single-dep merge N4+N3, single tail on N2 (one of N0, N1 or N(4+3)).
    */
@@ -8,6 +8,7 @@ package com.opengamma.engine.view.calcnode;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 
 import javax.time.Instant;
@@ -61,6 +62,7 @@ public class CalculationJobResultTest {
     assertEquals(2, outputJob.getResultItems().size());
     CalculationJobResultItem outputItem1 = outputJob.getResultItems().get(0);
     assertNotNull(outputItem1);
+    assertSame(CalculationJobResultItem.success(), outputItem1);
     assertEquals(InvocationResult.SUCCESS, outputItem1.getResult());
     assertNull(outputItem1.getExceptionClass());
     assertNull(outputItem1.getExceptionMsg());
@@ -11,6 +11,7 @@ import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -27,7 +28,15 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.function.EmptyFunctionParameters;
+import com.opengamma.engine.value.ValueProperties;
+import com.opengamma.engine.value.ValuePropertyNames;
+import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.cache.CacheSelectHint;
+import com.opengamma.engine.view.cache.IdentifierMap;
+import com.opengamma.engine.view.cache.InMemoryIdentifierMap;
+import com.opengamma.engine.view.cache.ResidentValueFilter;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.async.Cancelable;
 import com.opengamma.util.test.Timeout;
@@ -441,4 +450,121 @@ public class JobDispatcherTest {
     assertTrue (blockingInvoker.isCancelled ());
   }
 
+  private static void primeRecentJobDurations(final JobDispatcher jobDispatcher, final long durationNanos) {
+    for (int i = 0; i < 100; i++) {
+      jobDispatcher.jobExecuted(durationNanos);
+    }
+  }
+
+  @Test
+  public void testSpeculativeJobWins() {
+    s_logger.info("testSpeculativeJobWins");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    jobDispatcher.setSpeculationFactor(3);
+    jobDispatcher.setMinSpeculationTime(TIMEOUT / 10);
+    primeRecentJobDurations(jobDispatcher, 1000000L);
+    final BlockingJobInvoker slowInvoker = new BlockingJobInvoker(2 * TIMEOUT);
+    final TestJobInvoker fastInvoker = new TestJobInvoker("Fast");
+    jobDispatcher.registerJobInvoker(slowInvoker);
+    jobDispatcher.registerJobInvoker(fastInvoker);
+    final TestJobResultReceiver result = new TestJobResultReceiver();
+    final CalculationJob job = createTestJob();
+    jobDispatcher.dispatchJob(job, result);
+    final CalculationJobResult jobResult = result.waitForResult(TIMEOUT);
+    assertNotNull(jobResult);
+    assertEquals(job.getSpecification(), jobResult.getSpecification());
+    assertEquals(fastInvoker.getInvokerId(), jobResult.getComputeNodeId());
+    assertEquals(1, jobDispatcher.getSpeculativeJobCount());
+    assertEquals(1, jobDispatcher.getSpeculativeJobWinCount());
+    assertTrue(slowInvoker.isCancelled());
+  }
+
+  @Test
+  public void testSpeculationDisabled() {
+    s_logger.info("testSpeculationDisabled");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    jobDispatcher.setMinSpeculationTime(0);
+    primeRecentJobDurations(jobDispatcher, 1000000L);
+    final BlockingJobInvoker slowInvoker = new BlockingJobInvoker(TIMEOUT / 10);
+    final TestJobInvoker fastInvoker = new TestJobInvoker("Fast");
+    jobDispatcher.registerJobInvoker(slowInvoker);
+    jobDispatcher.registerJobInvoker(fastInvoker);
+    final TestJobResultReceiver result = new TestJobResultReceiver();
+    jobDispatcher.dispatchJob(createTestJob(), result);
+    final CalculationJobResult jobResult = result.waitForResult(TIMEOUT);
+    assertNotNull(jobResult);
+    assertEquals(slowInvoker.getInvokerId(), jobResult.getComputeNodeId());
+    assertEquals(0, jobDispatcher.getSpeculativeJobCount());
+  }
+
+  @Test
+  public void testSpeculationDelay() {
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    jobDispatcher.setSpeculationFactor(3);
+    jobDispatcher.setMinSpeculationTime(1);
+    final CalculationJob job = createTestJob();
+    // Nothing to judge the job against
+    assertEquals(-1, jobDispatcher.getSpeculationDelayNanos(job));
+    primeRecentJobDurations(jobDispatcher, 5000000L);
+    assertEquals(15000000L, jobDispatcher.getSpeculationDelayNanos(job));
+    jobDispatcher.setMinSpeculationTime(20);
+    assertEquals(20000000L, jobDispatcher.getSpeculationDelayNanos(job));
+  }
+
+  private class ResidentTestJobInvoker extends TestJobInvoker implements ResidentValueJobInvoker {
+
+    private final ResidentValueFilter _residentValues = new ResidentValueFilter(1024);
+    private final IdentifierMap _identifierMap;
+
+    public ResidentTestJobInvoker(final String nodeId, final IdentifierMap identifierMap) {
+      super(nodeId);
+      _identifierMap = identifierMap;
+    }
+
+    @Override
+    public ResidentValueFilter getResidentValues() {
+      return _residentValues;
+    }
+
+    @Override
+    public IdentifierMap getIdentifierMap() {
+      return _identifierMap;
+    }
+
+  }
+
+  @Test
+  public void testInvokerHoldingInputsPreferred() {
+    s_logger.info("testInvokerHoldingInputsPreferred");
+    final JobDispatcher jobDispatcher = new JobDispatcher();
+    jobDispatcher.setLocalityAware(true);
+    final IdentifierMap identifierMap = new InMemoryIdentifierMap();
+    final ResidentTestJobInvoker node1 = new ResidentTestJobInvoker("1", identifierMap);
+    final ResidentTestJobInvoker node2 = new ResidentTestJobInvoker("2", identifierMap);
+    jobDispatcher.registerJobInvoker(node1);
+    jobDispatcher.registerJobInvoker(node2);
+    final ComputationTargetSpecification target = new ComputationTargetSpecification("Foo");
+    final ValueSpecification input = new ValueSpecification("A", target, ValueProperties.with(ValuePropertyNames.FUNCTION, "A").get());
+    final ValueSpecification output = new ValueSpecification("B", target, ValueProperties.with(ValuePropertyNames.FUNCTION, "B").get());
+    final CalculationJobSpecification jobSpec = createTestJobSpec();
+    node2.getResidentValues().add(jobSpec.getViewCycleId(), jobSpec.getCalcConfigName(), identifierMap.getIdentifier(input));
+    for (int i = 0; i < 3; i++) {
+      final CalculationJobSpecification spec = (i == 0) ? jobSpec : createTestJobSpec();
+      final CalculationJob job = new CalculationJob(spec, 0L, null, Arrays.asList(new CalculationJobItem("B", new EmptyFunctionParameters(), target, Collections
+          .singleton(input), Collections.singleton(output))), CacheSelectHint.allShared());
+      final TestJobResultReceiver result = new TestJobResultReceiver();
+      jobDispatcher.dispatchJob(job, result);
+      final CalculationJobResult jobResult = result.waitForResult(TIMEOUT);
+      assertNotNull(jobResult);
+      assertEquals("2", jobResult.getComputeNodeId());
+    }
+    assertEquals(3, jobDispatcher.getLocalityJobCount());
+    assertEquals(3, jobDispatcher.getResidentInputCount());
+    assertEquals(3, jobDispatcher.getResidentInputCount(jobSpec.getViewCycleId()));
+    // No function costs to estimate the sizes from
+    assertEquals(0, jobDispatcher.getEstimatedResidentInputBytes());
+    jobDispatcher.setLocalityAware(false);
+    nodeTest("1", jobDispatcher);
+  }
+
 }
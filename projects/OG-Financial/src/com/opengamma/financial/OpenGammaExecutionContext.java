@@ -5,6 +5,8 @@
  */
 package com.opengamma.financial;
 
+import java.util.concurrent.ExecutorService;
+
 import com.opengamma.core.config.ConfigSource;
 import com.opengamma.core.exchange.ExchangeSource;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
@@ -62,6 +64,11 @@ public final class OpenGammaExecutionContext {
    */
   public static final String CURVE_CALCULATION_CONFIG_NAME = "curveCalculationConfigurationSource";
 
+  /**
+   * The name under which an {@link ExecutorService} for parallel calibration within a function should be bound.
+   */
+  public static final String CALIBRATION_EXECUTOR_NAME = "calibrationExecutor";
+
   /**
    * Restricted constructor.
    */
@@ -240,4 +247,24 @@ public final class OpenGammaExecutionContext {
   public static void setOverrideOperationCompiler(final FunctionExecutionContext context, final OverrideOperationCompiler overrideOperationCompiler) {
     context.put(OVERRIDE_OPERATION_COMPILER_NAME, overrideOperationCompiler);
   }
+
+  /**
+   * Gets the executor for parallel calibration within a function from the context.
+   * 
+   * @param context the context to examine, not null
+   * @return the executor, null if not found, in which case calibrations should run on the calling thread
+   */
+  public static ExecutorService getCalibrationExecutor(final FunctionExecutionContext context) {
+    return (ExecutorService) context.get(CALIBRATION_EXECUTOR_NAME);
+  }
+
+  /**
+   * Stores the executor for parallel calibration within a function in the context.
+   * 
+   * @param context the context to store in, not null
+   * @param executor the value to store, not null
+   */
+  public static void setCalibrationExecutor(final FunctionExecutionContext context, final ExecutorService executor) {
+    context.put(CALIBRATION_EXECUTOR_NAME, executor);
+  }
 }
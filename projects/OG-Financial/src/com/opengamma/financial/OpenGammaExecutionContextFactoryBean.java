@@ -5,6 +5,8 @@
  */
 package com.opengamma.financial;
 
+import java.util.concurrent.ExecutorService;
+
 import com.opengamma.core.config.ConfigSource;
 import com.opengamma.core.exchange.ExchangeSource;
 import com.opengamma.core.historicaltimeseries.HistoricalTimeSeriesSource;
@@ -32,6 +34,7 @@ public class OpenGammaExecutionContextFactoryBean extends SingletonFactoryBean<F
   private ExchangeSource _exchangeSource;
   private ConfigSource _configSource;
   private OverrideOperationCompiler _overrideOperationCompiler;
+  private ExecutorService _calibrationExecutor;
 
   public HistoricalTimeSeriesSource getHistoricalTimeSeriesSource() {
     return _historicalTimeSeriesSource;
@@ -105,6 +108,14 @@ public class OpenGammaExecutionContextFactoryBean extends SingletonFactoryBean<F
     _overrideOperationCompiler = overrideOperationCompiler;
   }
 
+  public ExecutorService getCalibrationExecutor() {
+    return _calibrationExecutor;
+  }
+
+  public void setCalibrationExecutor(final ExecutorService calibrationExecutor) {
+    _calibrationExecutor = calibrationExecutor;
+  }
+
   @Override
   protected FunctionExecutionContext createObject() {
     FunctionExecutionContext context = new FunctionExecutionContext();
@@ -131,6 +142,9 @@ public class OpenGammaExecutionContextFactoryBean extends SingletonFactoryBean<F
     if (getOverrideOperationCompiler() != null) {
       OpenGammaExecutionContext.setOverrideOperationCompiler(context, getOverrideOperationCompiler());
     }
+    if (getCalibrationExecutor() != null) {
+      OpenGammaExecutionContext.setCalibrationExecutor(context, getCalibrationExecutor());
+    }
     return context;
   }
 
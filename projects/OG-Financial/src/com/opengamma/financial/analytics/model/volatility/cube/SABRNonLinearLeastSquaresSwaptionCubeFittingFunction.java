@@ -9,6 +9,7 @@ import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -20,7 +21,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
 import com.opengamma.OpenGammaRuntimeException;
-import com.opengamma.analytics.financial.model.volatility.smile.fitting.SABRModelFitter;
+import com.opengamma.analytics.financial.model.volatility.smile.fitting.SABRSliceCalibrator;
+import com.opengamma.analytics.financial.model.volatility.smile.fitting.SmileSliceData;
 import com.opengamma.analytics.financial.model.volatility.smile.function.SABRHaganVolatilityFunction;
 import com.opengamma.analytics.math.interpolation.FlatExtrapolator1D;
 import com.opengamma.analytics.math.interpolation.GridInterpolator2D;
@@ -43,6 +45,7 @@ import com.opengamma.engine.value.ValuePropertyNames;
 import com.opengamma.engine.value.ValueRequirement;
 import com.opengamma.engine.value.ValueRequirementNames;
 import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.financial.OpenGammaExecutionContext;
 import com.opengamma.financial.analytics.model.volatility.VolatilityDataFittingDefaults;
 import com.opengamma.financial.analytics.model.volatility.cube.fitted.FittedSmileDataPoints;
 import com.opengamma.financial.analytics.volatility.fittedresults.SABRFittedSurfaces;
@@ -65,11 +68,18 @@ public class SABRNonLinearLeastSquaresSwaptionCubeFittingFunction extends Abstra
   private static final LinearInterpolator1D LINEAR = (LinearInterpolator1D) Interpolator1DFactory.getInterpolator(Interpolator1DFactory.LINEAR);
   private static final FlatExtrapolator1D FLAT = new FlatExtrapolator1D();
   private static final GridInterpolator2D INTERPOLATOR = new GridInterpolator2D(LINEAR, LINEAR, FLAT, FLAT);
+  /** Largest change in a forward or volatility for which the previous fit of a smile is reused */
+  private static final double REFIT_TOLERANCE = 1e-6;
 
   static {
     FIXED.set(1);
   }
 
+  /**
+   * The previous fits of this function instance's cubes. Slices are fitted on the calibration executor of the execution context, if any.
+   */
+  private final SABRSliceCalibrator _calibrator = new SABRSliceCalibrator(SABR_FUNCTION, null, REFIT_TOLERANCE);
+
   @Override
   public Set<ComputedValue> execute(final FunctionExecutionContext executionContext, final FunctionInputs inputs, final ComputationTarget target, final Set<ValueRequirement> desiredValues) {
     String cubeName = null;
@@ -95,18 +105,10 @@ public class SABRNonLinearLeastSquaresSwaptionCubeFittingFunction extends Abstra
     final SortedMap<Tenor, SortedMap<Tenor, Pair<double[], double[]>>> smiles = volatilityCubeData.getSmiles();
     final SortedMap<Tenor, SortedMap<Tenor, ExternalId[]>> smileIds = volatilityCubeData.getSmileIds();
     final SortedMap<Tenor, SortedMap<Tenor, Double[]>> smileRelativeStrikes = volatilityCubeData.getSmileRelativeStrikes();
-    final DoubleArrayList swapMaturitiesList = new DoubleArrayList();
-    final DoubleArrayList swaptionExpiriesList = new DoubleArrayList();
-    final DoubleArrayList alphaList = new DoubleArrayList();
-    final DoubleArrayList betaList = new DoubleArrayList();
-    final DoubleArrayList nuList = new DoubleArrayList();
-    final DoubleArrayList rhoList = new DoubleArrayList();
-    final DoubleArrayList chiSqList = new DoubleArrayList();
-    final Map<DoublesPair, DoubleMatrix2D> inverseJacobians = new HashMap<DoublesPair, DoubleMatrix2D>();
-    final Map<Pair<Tenor, Tenor>, ExternalId[]> fittedSmileIds = new HashMap<Pair<Tenor, Tenor>, ExternalId[]>();
-    final Map<Pair<Tenor, Tenor>, Double[]> fittedRelativeStrikes = new HashMap<Pair<Tenor, Tenor>, Double[]>();
+    final Map<Pair<Tenor, Tenor>, SmileSliceData> slices = new LinkedHashMap<Pair<Tenor, Tenor>, SmileSliceData>();
+    final Map<Pair<Tenor, Tenor>, ExternalId[]> sliceIds = new HashMap<Pair<Tenor, Tenor>, ExternalId[]>();
+    final Map<Pair<Tenor, Tenor>, Double[]> sliceRelativeStrikes = new HashMap<Pair<Tenor, Tenor>, Double[]>();
     for (final Map.Entry<Tenor, SortedMap<Tenor, Pair<double[], double[]>>> swapMaturityEntry : smiles.entrySet()) {
-      final double maturity = getTime(swapMaturityEntry.getKey());
       for (final Map.Entry<Tenor, Pair<double[], double[]>> swaptionExpiryEntry : swapMaturityEntry.getValue().entrySet()) {
         final double swaptionExpiry = getTime(swaptionExpiryEntry.getKey());
         final double[] strikes = swaptionExpiryEntry.getValue().getFirst();
@@ -137,23 +139,44 @@ public class SABRNonLinearLeastSquaresSwaptionCubeFittingFunction extends Abstra
             errors[k] = ERROR;
           }
           if (strikes.length > 4 && forward > 0) { //don't fit those smiles with insufficient data
-            final LeastSquareResultsWithTransform fittedResult = new SABRModelFitter(forward, strikes, swaptionExpiry, blackVols, errors, SABR_FUNCTION).solve(SABR_INITIAL_VALUES, FIXED);
-            final DoubleMatrix1D parameters = fittedResult.getModelParameters();
-            swapMaturitiesList.add(maturity);
-            swaptionExpiriesList.add(swaptionExpiry);
-            alphaList.add(parameters.getEntry(0));
-            betaList.add(parameters.getEntry(1));
-            rhoList.add(parameters.getEntry(2));
-            nuList.add(parameters.getEntry(3));
-            final DoublesPair expiryMaturityPair = new DoublesPair(swaptionExpiry, maturity);
-            inverseJacobians.put(expiryMaturityPair, fittedResult.getModelParameterSensitivityToData());
-            chiSqList.add(fittedResult.getChiSq());
-            fittedSmileIds.put(tenorPair, externalIds);
-            fittedRelativeStrikes.put(tenorPair, relativeStrikes);
+            slices.put(tenorPair, new SmileSliceData(forward, swaptionExpiry, strikes, blackVols, errors));
+            sliceIds.put(tenorPair, externalIds);
+            sliceRelativeStrikes.put(tenorPair, relativeStrikes);
           }
         }
       }
     }
+    final Map<Pair<Tenor, Tenor>, LeastSquareResultsWithTransform> fittedResults = _calibrator.calibrate(currency + "_" + cubeName, slices, SABR_INITIAL_VALUES, FIXED,
+        OpenGammaExecutionContext.getCalibrationExecutor(executionContext));
+    s_logger.debug("Calibrated {} SABR smiles for {}: {}", new Object[] {fittedResults.size(), cubeName, _calibrator.getStatistics() });
+    final DoubleArrayList swapMaturitiesList = new DoubleArrayList();
+    final DoubleArrayList swaptionExpiriesList = new DoubleArrayList();
+    final DoubleArrayList alphaList = new DoubleArrayList();
+    final DoubleArrayList betaList = new DoubleArrayList();
+    final DoubleArrayList nuList = new DoubleArrayList();
+    final DoubleArrayList rhoList = new DoubleArrayList();
+    final DoubleArrayList chiSqList = new DoubleArrayList();
+    final Map<DoublesPair, DoubleMatrix2D> inverseJacobians = new HashMap<DoublesPair, DoubleMatrix2D>();
+    final Map<Pair<Tenor, Tenor>, ExternalId[]> fittedSmileIds = new HashMap<Pair<Tenor, Tenor>, ExternalId[]>();
+    final Map<Pair<Tenor, Tenor>, Double[]> fittedRelativeStrikes = new HashMap<Pair<Tenor, Tenor>, Double[]>();
+    for (final Map.Entry<Pair<Tenor, Tenor>, LeastSquareResultsWithTransform> entry : fittedResults.entrySet()) {
+      final Pair<Tenor, Tenor> tenorPair = entry.getKey();
+      final LeastSquareResultsWithTransform fittedResult = entry.getValue();
+      final double maturity = getTime(tenorPair.getFirst());
+      final double swaptionExpiry = getTime(tenorPair.getSecond());
+      final DoubleMatrix1D parameters = fittedResult.getModelParameters();
+      swapMaturitiesList.add(maturity);
+      swaptionExpiriesList.add(swaptionExpiry);
+      alphaList.add(parameters.getEntry(0));
+      betaList.add(parameters.getEntry(1));
+      rhoList.add(parameters.getEntry(2));
+      nuList.add(parameters.getEntry(3));
+      final DoublesPair expiryMaturityPair = new DoublesPair(swaptionExpiry, maturity);
+      inverseJacobians.put(expiryMaturityPair, fittedResult.getModelParameterSensitivityToData());
+      chiSqList.add(fittedResult.getChiSq());
+      fittedSmileIds.put(tenorPair, sliceIds.get(tenorPair));
+      fittedRelativeStrikes.put(tenorPair, sliceRelativeStrikes.get(tenorPair));
+    }
     if (swapMaturitiesList.size() < 5) { //don't have sufficient fits to construct a surface
       throw new OpenGammaRuntimeException("Could not construct SABR parameter surfaces; have under 5 surface points");
     }
@@ -6,6 +6,7 @@
 package com.opengamma.financial.convention;
 
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -18,12 +19,18 @@ import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.core.exchange.Exchange;
 import com.opengamma.core.holiday.HolidaySource;
 import com.opengamma.core.holiday.HolidayType;
+import com.opengamma.core.holiday.impl.HolidayBitSet;
+import com.opengamma.core.holiday.impl.HolidayBitSetSource;
 import com.opengamma.core.region.Region;
 import com.opengamma.financial.convention.calendar.Calendar;
 import com.opengamma.util.money.Currency;
 
 /**
  * Temporary adapter to make the existing Calendar interface work with the holiday repository.  THIS MUST BE REFACTORED.
+ * <p>
+ * If the holiday source is a {@link HolidayBitSetSource}, such as one of the caching holiday sources, the calendar is read
+ * from a {@link HolidayBitSet} combining all of its regions or currencies, and working days are found without checking
+ * dates one at a time. The bit set is fetched on first use and kept for the life of the adapter.
  */
 public class HolidaySourceCalendarAdapter implements Calendar, Serializable {
 
@@ -35,6 +42,14 @@ public class HolidaySourceCalendarAdapter implements Calendar, Serializable {
   private Exchange _exchange;
   private Set<Currency> _currencies;
   private final HolidayType _type;
+  /**
+   * The holidays as a bit set, null until first used or if the holiday source cannot supply them.
+   */
+  private transient volatile HolidayBitSet _bitSet;
+  /**
+   * Whether the holiday source has been asked for the bit set.
+   */
+  private transient volatile boolean _bitSetFetched;
 
   public HolidaySourceCalendarAdapter(final HolidaySource holidaySource, final Region[] regions) {
     Validate.notNull(regions, "Region set is null");
@@ -107,6 +122,10 @@ public class HolidaySourceCalendarAdapter implements Calendar, Serializable {
 
   @Override
   public boolean isWorkingDay(final LocalDate date) {
+    final HolidayBitSet bitSet = getHolidayBitSet();
+    if (bitSet != null && bitSet.covers(date)) {
+      return bitSet.isWorkingDay(date);
+    }
     switch (_type) {
       case BANK:
         for (final Region region : _regions) {
@@ -132,4 +151,92 @@ public class HolidaySourceCalendarAdapter implements Calendar, Serializable {
     }
     throw new OpenGammaRuntimeException("switch doesn't support " + _type);
   }
+
+  /**
+   * Gets the first working day after a date.
+   * 
+   * @param date  the date, not null
+   * @return the next working day, not null
+   */
+  public LocalDate nextWorkingDay(final LocalDate date) {
+    return addWorkingDays(date, 1);
+  }
+
+  /**
+   * Gets the last working day before a date.
+   * 
+   * @param date  the date, not null
+   * @return the previous working day, not null
+   */
+  public LocalDate previousWorkingDay(final LocalDate date) {
+    return addWorkingDays(date, -1);
+  }
+
+  /**
+   * Moves a date by a number of working days.
+   * <p>
+   * A positive amount gives the n-th working day after the date and a negative amount the n-th
+   * working day before it, whether or not the date itself is a working day. Zero gives the date.
+   * 
+   * @param date  the date, not null
+   * @param workingDays  the number of working days to move by
+   * @return the moved date, not null
+   */
+  public LocalDate addWorkingDays(final LocalDate date, final int workingDays) {
+    Validate.notNull(date, "date");
+    final HolidayBitSet bitSet = getHolidayBitSet();
+    if (bitSet != null && bitSet.covers(date)) {
+      final LocalDate result = bitSet.addWorkingDays(date, workingDays);
+      if (result != null) {
+        return result;
+      }
+    }
+    final int step = workingDays >= 0 ? 1 : -1;
+    LocalDate result = date;
+    for (int i = Math.abs(workingDays); i > 0; i--) {
+      do {
+        result = result.plusDays(step);
+      } while (!isWorkingDay(result));
+    }
+    return result;
+  }
+
+  /**
+   * Gets the holidays of this calendar as a bit set over the default range, fetching it on first use.
+   * 
+   * @return the holidays, null if the holiday source cannot supply them
+   */
+  private HolidayBitSet getHolidayBitSet() {
+    if (!_bitSetFetched) {
+      _bitSet = fetchHolidayBitSet();
+      _bitSetFetched = true;
+    }
+    return _bitSet;
+  }
+
+  private HolidayBitSet fetchHolidayBitSet() {
+    if (!(_holidaySource instanceof HolidayBitSetSource)) {
+      return null;
+    }
+    final HolidayBitSetSource source = (HolidayBitSetSource) _holidaySource;
+    switch (_type) {
+      case BANK: {
+        final Set<Currency> currencies = new HashSet<Currency>();
+        for (final Region region : _regions) {
+          if (region.getCurrency() == null) {
+            return null;
+          }
+          currencies.add(region.getCurrency());
+        }
+        return currencies.isEmpty() ? null : source.getHolidayBitSet(currencies, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+      }
+      case CURRENCY:
+        return _currencies.isEmpty() ? null : source.getHolidayBitSet(_currencies, HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+      case SETTLEMENT:
+      case TRADING:
+        return source.getHolidayBitSet(_type, _exchange.getExternalIdBundle(), HolidayBitSet.DEFAULT_START_DATE, HolidayBitSet.DEFAULT_END_DATE);
+    }
+    return null;
+  }
+
 }
@@ -0,0 +1,353 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.integration.copier.portfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.integration.copier.portfolio.PortfolioCopierStats.Stage;
+import com.opengamma.integration.copier.portfolio.reader.PortfolioReader;
+import com.opengamma.integration.copier.portfolio.writer.BatchPortfolioWriter;
+import com.opengamma.integration.copier.portfolio.writer.PortfolioWriter;
+import com.opengamma.master.position.ManageablePosition;
+import com.opengamma.master.security.ManageableSecurity;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
+import com.opengamma.util.tuple.ObjectsPair;
+
+/**
+ * A portfolio copier that reads, resolves securities and writes positions in a pipeline of threads.
+ * <p>
+ * The calling thread reads and parses rows, grouping them into batches of rows with the same path.
+ * A resolver thread writes the securities of each batch in a single call, writing each distinct
+ * security only once for the whole copy. A bounded pool of writer threads then writes the positions
+ * of several batches at once. The stages are joined by bounded queues, so that a slow stage holds
+ * back the reader rather than the rows being held in memory.
+ * <p>
+ * Securities are identified by their external identifier bundle. Where several rows contain the
+ * same security it is written for the first row and reused for the others, whereas the simple copier
+ * writes it for each row. Positions are added to the portfolio nodes in the order their batches
+ * complete, and the visitor is called on the calling thread as each batch completes.
+ * <p>
+ * The writer must implement {@link BatchPortfolioWriter}, otherwise the rows are copied one at a time
+ * by {@link SimplePortfolioCopier}. If the visitor is a {@link PortfolioCopierStats} the work done by
+ * each stage is recorded in it.
+ */
+public class PipelinedPortfolioCopier implements PortfolioCopier {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(PipelinedPortfolioCopier.class);
+
+  /**
+   * The default maximum number of rows in a batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+  /**
+   * The default number of position writer threads.
+   */
+  public static final int DEFAULT_WRITER_THREADS = 4;
+
+  /**
+   * The time to wait for a queue before checking for failure of another stage, in milliseconds.
+   */
+  private static final long POLL_MILLIS = 100;
+
+  private final boolean _flatten;
+  private final int _batchSize;
+  private final int _writerThreads;
+
+  public PipelinedPortfolioCopier() {
+    this(false, DEFAULT_BATCH_SIZE, DEFAULT_WRITER_THREADS);
+  }
+
+  public PipelinedPortfolioCopier(int writerThreads) {
+    this(false, DEFAULT_BATCH_SIZE, writerThreads);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param flatten  whether to write all positions to the root node
+   * @param batchSize  the maximum number of rows in a batch, greater than zero
+   * @param writerThreads  the number of position writer threads, greater than zero
+   */
+  public PipelinedPortfolioCopier(boolean flatten, int batchSize, int writerThreads) {
+    ArgumentChecker.isTrue(batchSize > 0, "batchSize must be positive");
+    ArgumentChecker.isTrue(writerThreads > 0, "writerThreads must be positive");
+    _flatten = flatten;
+    _batchSize = batchSize;
+    _writerThreads = writerThreads;
+  }
+
+  public int getBatchSize() {
+    return _batchSize;
+  }
+
+  public int getWriterThreads() {
+    return _writerThreads;
+  }
+
+  @Override
+  public void copy(PortfolioReader portfolioReader, PortfolioWriter portfolioWriter) {
+    copy(portfolioReader, portfolioWriter, null);
+  }
+
+  @Override
+  public void copy(PortfolioReader portfolioReader, PortfolioWriter portfolioWriter, PortfolioCopierVisitor visitor) {
+
+    ArgumentChecker.notNull(portfolioWriter, "portfolioWriter");
+    ArgumentChecker.notNull(portfolioReader, "portfolioReader");
+
+    if (portfolioWriter instanceof BatchPortfolioWriter == false) {
+      s_logger.info("Portfolio writer {} does not write batches, copying one row at a time", portfolioWriter);
+      new SimplePortfolioCopier(_flatten).copy(portfolioReader, portfolioWriter, visitor);
+      return;
+    }
+    new Pipeline(portfolioReader, (BatchPortfolioWriter) portfolioWriter, visitor).run();
+
+    // Flush changes to portfolio master
+    portfolioWriter.flush();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The rows of a single portfolio node passed between the stages.
+   */
+  private static final class Batch {
+    private final String[] _path;
+    private final List<ManageablePosition> _positions = new ArrayList<ManageablePosition>();
+    private final List<ManageableSecurity[]> _securities = new ArrayList<ManageableSecurity[]>();
+    private List<ManageableSecurity[]> _writtenSecurities;
+    private List<ManageablePosition> _writtenPositions;
+
+    Batch(String[] path) {
+      _path = path;
+    }
+
+    int size() {
+      return _positions.size();
+    }
+  }
+
+  /**
+   * The state of a single copy.
+   */
+  private final class Pipeline {
+    private final Batch _end = new Batch(null);
+    private final PortfolioReader _reader;
+    private final BatchPortfolioWriter _writer;
+    private final PortfolioCopierVisitor _visitor;
+    private final PortfolioCopierStats _stats;
+    private final BlockingQueue<Batch> _resolveQueue = new ArrayBlockingQueue<Batch>(2);
+    private final BlockingQueue<Batch> _completed = new LinkedBlockingQueue<Batch>();
+    private final Semaphore _writePermits = new Semaphore(_writerThreads * 2);
+    private final AtomicReference<Throwable> _failure = new AtomicReference<Throwable>();
+    private final ExecutorService _writers = Executors.newFixedThreadPool(_writerThreads, new NamedThreadPoolFactory("PortfolioCopier-writer"));
+    // accessed only by the resolver thread
+    private final Map<ExternalIdBundle, ManageableSecurity> _resolved = new HashMap<ExternalIdBundle, ManageableSecurity>();
+
+    Pipeline(PortfolioReader reader, BatchPortfolioWriter writer, PortfolioCopierVisitor visitor) {
+      _reader = reader;
+      _writer = writer;
+      _visitor = visitor;
+      _stats = (visitor instanceof PortfolioCopierStats) ? (PortfolioCopierStats) visitor : null;
+    }
+
+    void run() {
+      Thread resolver = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          resolveBatches();
+        }
+      }, "PortfolioCopier-resolver");
+      resolver.setDaemon(true);
+      resolver.start();
+      try {
+        readBatches();
+        enqueue(_end);
+        resolver.join();
+        checkFailure();
+        _writers.shutdown();
+        _writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        checkFailure();
+        reportCompleted();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted copying portfolio", ex);
+      } finally {
+        resolver.interrupt();
+        _writers.shutdownNow();
+      }
+    }
+
+    //-------------------------------------------------------------------------
+    private void readBatches() throws InterruptedException {
+      ObjectsPair<ManageablePosition, ManageableSecurity[]> next;
+      Batch batch = null;
+      int rows = 0;
+      long readNanos = 0;
+      while (true) {
+        long start = System.nanoTime();
+        next = _reader.readNext();
+        readNanos += System.nanoTime() - start;
+        if (next == null) {
+          break;
+        }
+        rows++;
+
+        // Is position and security data is available for the current row?
+        if (next.getFirst() != null && next.getSecond() != null) {
+          String[] path = _flatten ? new String[0] : _reader.getCurrentPath();
+          if (batch != null && (batch.size() >= _batchSize || !Arrays.equals(batch._path, path))) {
+            enqueue(batch);
+            batch = null;
+          }
+          if (batch == null) {
+            batch = new Batch(path);
+          }
+          batch._positions.add(next.getFirst());
+          batch._securities.add(next.getSecond());
+        } else {
+          if (_visitor != null) {
+            if (next.getFirst() == null) {
+              _visitor.error("Could not load position");
+            }
+            if (next.getSecond() == null) {
+              _visitor.error("Could not load security(ies)");
+            }
+          }
+        }
+        reportCompleted();
+      }
+      if (batch != null) {
+        enqueue(batch);
+      }
+      if (_stats != null) {
+        _stats.stageCompleted(Stage.READ, rows, readNanos);
+      }
+    }
+
+    private void enqueue(Batch batch) throws InterruptedException {
+      while (_resolveQueue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS) == false) {
+        checkFailure();
+        reportCompleted();
+      }
+    }
+
+    private void reportCompleted() {
+      Batch batch;
+      while ((batch = _completed.poll()) != null) {
+        if (_visitor != null) {
+          String message = StringUtils.arrayToDelimitedString(batch._path, "/");
+          for (int i = 0; i < batch.size(); i++) {
+            _visitor.info(message, batch._writtenPositions.get(i), batch._writtenSecurities.get(i));
+          }
+        }
+      }
+    }
+
+    private void checkFailure() {
+      Throwable failure = _failure.get();
+      if (failure != null) {
+        throw new OpenGammaRuntimeException("Error copying portfolio: " + failure.getMessage(), failure);
+      }
+    }
+
+    //-------------------------------------------------------------------------
+    private void resolveBatches() {
+      try {
+        Batch batch;
+        while ((batch = _resolveQueue.take()) != _end) {
+          resolve(batch);
+          _writePermits.acquire();
+          final Batch resolved = batch;
+          _writers.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                write(resolved);
+              } catch (Throwable ex) {
+                fail(ex);
+              } finally {
+                _writePermits.release();
+              }
+            }
+          });
+        }
+      } catch (InterruptedException ex) {
+        s_logger.debug("Security resolution interrupted");
+      } catch (Throwable ex) {
+        fail(ex);
+      }
+    }
+
+    private void resolve(Batch batch) {
+      long start = System.nanoTime();
+
+      // Write each security not already written once
+      List<ManageableSecurity> securities = new ArrayList<ManageableSecurity>();
+      Set<ExternalIdBundle> bundles = new HashSet<ExternalIdBundle>();
+      for (ManageableSecurity[] rowSecurities : batch._securities) {
+        for (ManageableSecurity security : rowSecurities) {
+          ExternalIdBundle bundle = security.getExternalIdBundle();
+          if (_resolved.containsKey(bundle) == false && bundles.add(bundle)) {
+            securities.add(security);
+          }
+        }
+      }
+      List<ManageableSecurity> written = _writer.writeSecurities(securities);
+      for (int i = 0; i < securities.size(); i++) {
+        _resolved.put(securities.get(i).getExternalIdBundle(), written.get(i));
+      }
+
+      List<ManageableSecurity[]> writtenSecurities = new ArrayList<ManageableSecurity[]>(batch.size());
+      for (ManageableSecurity[] rowSecurities : batch._securities) {
+        ManageableSecurity[] rowWritten = new ManageableSecurity[rowSecurities.length];
+        for (int i = 0; i < rowSecurities.length; i++) {
+          rowWritten[i] = _resolved.get(rowSecurities[i].getExternalIdBundle());
+        }
+        writtenSecurities.add(rowWritten);
+      }
+      batch._writtenSecurities = writtenSecurities;
+      if (_stats != null) {
+        _stats.stageCompleted(Stage.RESOLVE, batch.size(), System.nanoTime() - start);
+      }
+    }
+
+    private void write(Batch batch) {
+      long start = System.nanoTime();
+      batch._writtenPositions = _writer.writePositions(batch._path, batch._positions);
+      if (_stats != null) {
+        _stats.stageCompleted(Stage.WRITE, batch.size(), System.nanoTime() - start);
+      }
+      _completed.add(batch);
+    }
+
+    private void fail(Throwable ex) {
+      s_logger.error("Error copying portfolio", ex);
+      _failure.compareAndSet(null, ex);
+    }
+  }
+
+}
@@ -5,19 +5,54 @@
  */
 package com.opengamma.integration.copier.portfolio;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import com.opengamma.master.position.ManageablePosition;
 import com.opengamma.master.security.ManageableSecurity;
 
 /**
  * Portfolio copier visitor that gathers statistics
+ * <p>
+ * A copier that runs in stages, such as {@link PipelinedPortfolioCopier}, also records the number
+ * of rows processed and the time spent by each stage, from which the throughput of each stage is
+ * reported. Messages may be passed on to another visitor, such as one that prints them.
  */
 public class PortfolioCopierStats implements PortfolioCopierVisitor {
 
+  /**
+   * The stages of a portfolio copy.
+   */
+  public enum Stage {
+    /** Reading and parsing rows. */
+    READ,
+    /** Resolving and writing securities. */
+    RESOLVE,
+    /** Writing positions and portfolio nodes. */
+    WRITE
+  }
+
   private int _positionLoadCount = 0;
   private int _securityLoadCount = 0;
   private int _positionErrorCount = 0;
   private int _securityErrorCount = 0;
 
+  private final PortfolioCopierVisitor _delegate;
+  private final AtomicLongArray _stageRows = new AtomicLongArray(Stage.values().length);
+  private final AtomicLongArray _stageNanos = new AtomicLongArray(Stage.values().length);
+
+  public PortfolioCopierStats() {
+    this(null);
+  }
+
+  /**
+   * Creates an instance that passes each message on to another visitor.
+   *
+   * @param delegate  the visitor to pass messages to, null for none
+   */
+  public PortfolioCopierStats(PortfolioCopierVisitor delegate) {
+    _delegate = delegate;
+  }
+
   @Override
   public void info(String message, ManageablePosition position, ManageableSecurity[] securities) {
     if (position == null) {
@@ -30,15 +65,35 @@ public class PortfolioCopierStats implements PortfolioCopierVisitor {
     } else {
       _securityLoadCount++;
     }
+    if (_delegate != null) {
+      _delegate.info(message, position, securities);
+    }
   }
 
   @Override
   public void info(String message) {
+    if (_delegate != null) {
+      _delegate.info(message);
+    }
   }
 
   @Override
   public void error(String message) {
+    if (_delegate != null) {
+      _delegate.error(message);
+    }
+  }
 
+  /**
+   * Records the work done by a stage of the copy. This may be called by several threads at once.
+   *
+   * @param stage  the stage, not null
+   * @param rows  the number of rows processed
+   * @param nanos  the time taken, in nanoseconds
+   */
+  public void stageCompleted(Stage stage, int rows, long nanos) {
+    _stageRows.addAndGet(stage.ordinal(), rows);
+    _stageNanos.addAndGet(stage.ordinal(), nanos);
   }
 
   public int getPositionLoadCount() {
@@ -57,4 +112,45 @@ public class PortfolioCopierStats implements PortfolioCopierVisitor {
     return _securityErrorCount;
   }
 
+  public long getStageRowCount(Stage stage) {
+    return _stageRows.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the time spent in a stage, summed over all the threads performing the stage.
+   *
+   * @param stage  the stage, not null
+   * @return the time in nanoseconds
+   */
+  public long getStageNanos(Stage stage) {
+    return _stageNanos.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the rows processed by a stage for each second spent in the stage.
+   * <p>
+   * When a stage is performed by several threads this is the throughput of each thread.
+   *
+   * @param stage  the stage, not null
+   * @return the rows per second, zero if no time has been recorded
+   */
+  public double getStageThroughput(Stage stage) {
+    long nanos = getStageNanos(stage);
+    return (nanos == 0) ? 0d : getStageRowCount(stage) * 1e9 / nanos;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buf = new StringBuilder();
+    buf.append("Loaded ").append(_positionLoadCount).append(" positions, ").append(_securityLoadCount).append(" securities; ")
+        .append(_positionErrorCount).append(" position errors, ").append(_securityErrorCount).append(" security errors");
+    for (Stage stage : Stage.values()) {
+      if (getStageRowCount(stage) > 0) {
+        buf.append("; ").append(stage.name().toLowerCase()).append(' ').append(getStageRowCount(stage)).append(" rows in ")
+            .append(getStageNanos(stage) / 1000000).append("ms (").append(Math.round(getStageThroughput(stage))).append(" rows/s)");
+      }
+    }
+    return buf.toString();
+  }
+
 }
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+
+package com.opengamma.integration.copier.portfolio.writer;
+
+import java.util.List;
+
+import com.opengamma.master.position.ManageablePosition;
+import com.opengamma.master.security.ManageableSecurity;
+
+/**
+ * A portfolio writer that can write many securities and positions in a single call.
+ * <p>
+ * This allows a copier to resolve securities and write positions in batches, and to write
+ * the positions of several batches at once. The single row methods of {@link PortfolioWriter}
+ * remain available and keep their existing behaviour.
+ */
+public interface BatchPortfolioWriter extends PortfolioWriter {
+
+  /**
+   * Writes securities, reusing or updating existing securities in the same way as
+   * {@link #writePosition} does for the securities of a single row.
+   * <p>
+   * This must only be called by one thread at a time.
+   *
+   * @param securities  the securities to write, not null
+   * @return the securities in the masters after writing, in the order given, not null
+   */
+  List<ManageableSecurity> writeSecurities(List<ManageableSecurity> securities);
+
+  /**
+   * Writes positions to a portfolio node, the securities of which have already been written.
+   * <p>
+   * This may be called concurrently by several threads, and is independent of the current path.
+   *
+   * @param path  the path of the node to add the positions to, starting from the top of the hierarchy, not null
+   * @param positions  the positions to write, not null
+   * @return the positions in the masters after writing, in the order given, not null
+   */
+  List<ManageablePosition> writePositions(String[] path, List<ManageablePosition> positions);
+
+}
@@ -6,12 +6,18 @@
 package com.opengamma.integration.copier.portfolio.writer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 import javax.time.calendar.ZonedDateTime;
 
 import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.util.beancompare.BeanCompare;
 import com.opengamma.util.beancompare.BeanDifference;
@@ -20,6 +26,7 @@ import org.apache.commons.lang.ArrayUtils;
 import com.opengamma.id.ExternalIdSearch;
 import com.opengamma.id.ExternalIdSearchType;
 import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.BulkMasterUtils;
 import com.opengamma.master.portfolio.ManageablePortfolio;
 import com.opengamma.master.portfolio.ManageablePortfolioNode;
 import com.opengamma.master.portfolio.PortfolioDocument;
@@ -30,7 +37,6 @@ import com.opengamma.master.position.ManageablePosition;
 import com.opengamma.master.position.PositionDocument;
 import com.opengamma.master.position.PositionMaster;
 import com.opengamma.master.position.PositionSearchRequest;
-import com.opengamma.master.position.PositionSearchResult;
 import com.opengamma.master.security.ManageableSecurity;
 import com.opengamma.master.security.SecurityDocument;
 import com.opengamma.master.security.SecurityMaster;
@@ -42,8 +48,11 @@ import com.opengamma.util.tuple.ObjectsPair;
 
 /**
  * A class that writes securities and portfolio positions and trades to the OG masters
+ * <p>
+ * The batch methods write the new securities and positions of each call with the bulk methods of
+ * the masters where they are available. Batches of positions may be written concurrently.
  */
-public class MasterPortfolioWriter implements PortfolioWriter {
+public class MasterPortfolioWriter implements BatchPortfolioWriter {
 
   private final PortfolioMaster _portfolioMaster;
   private final PositionMaster _positionMaster;
@@ -58,6 +67,11 @@ public class MasterPortfolioWriter implements PortfolioWriter {
 
   private BeanCompare _beanCompare;
 
+  /**
+   * The lock guarding the portfolio tree while positions are written concurrently.
+   */
+  private final Object _portfolioLock = new Object();
+
   public MasterPortfolioWriter(String portfolioName, PortfolioMaster portfolioMaster, 
       PositionMaster positionMaster, SecurityMaster securityMaster, boolean overwrite) {
 
@@ -114,25 +128,7 @@ public class MasterPortfolioWriter implements PortfolioWriter {
     } else {
 
       if (!(_originalNode == null) && !_originalNode.getPositionIds().isEmpty()) {
-        PositionSearchRequest searchReq = new PositionSearchRequest();
-        
-        // Filter positions in current node of original portfolio
-        searchReq.setPositionObjectIds(_originalNode.getPositionIds());
-  
-        // Filter positions with same external ids
-        ExternalIdSearch externalIdSearch = new ExternalIdSearch();
-        externalIdSearch.addExternalIds(position.getSecurityLink().getExternalIds()); 
-        externalIdSearch.setSearchType(ExternalIdSearchType.ALL);
-        searchReq.setSecurityIdSearch(externalIdSearch);
-        
-        // Filter positions with the same quantity
-        searchReq.setMinQuantity(position.getQuantity());
-        searchReq.setMaxQuantity(position.getQuantity());
-  
-        // Search
-        PositionSearchResult searchResult = _positionMaster.search(searchReq);
-        
-        PositionDocument firstDocument = searchResult.getFirstDocument();
+        PositionDocument firstDocument = findExistingPosition(position, _originalNode);
         if (firstDocument != null) {        
           ManageablePosition existingPosition = firstDocument.getPosition();
           // Add the existing position to the portfolio
@@ -142,8 +138,6 @@ public class MasterPortfolioWriter implements PortfolioWriter {
           return new ObjectsPair<ManageablePosition, ManageableSecurity[]>(existingPosition, 
               writtenSecurities.toArray(new ManageableSecurity[writtenSecurities.size()]));            
         }
-        
-        // TODO also confirm that all the associated trades are identical
       }
    
       // Add the new position to the position master
@@ -179,15 +173,7 @@ public class MasterPortfolioWriter implements PortfolioWriter {
       }
     } else {
       for (ManageableSecurity foundSecurity : searchResult.getSecurities()) {
-        List<BeanDifference<?>> differences = null;
-        if (foundSecurity.getClass().equals(security.getClass())) {
-          try {
-            differences = _beanCompare.compare(foundSecurity, security);
-          } catch (Exception e) {
-            throw new OpenGammaRuntimeException("Error comparing securities with ID bundle " + security.getExternalIdBundle(), e);
-          }
-        }
-        if (differences != null && differences.size() == 1 && differences.get(0).getProperty().propertyType() == UniqueId.class) {
+        if (isUnchanged(foundSecurity, security)) {
           // It's already there, don't update or add it
           return foundSecurity;
         } else {
@@ -204,6 +190,192 @@ public class MasterPortfolioWriter implements PortfolioWriter {
     return result.getSecurity();
   }
   
+  /*
+   * Checks whether a security found in the master differs from the one to be written only by its unique id.
+   */
+  private boolean isUnchanged(ManageableSecurity foundSecurity, ManageableSecurity security) {
+    List<BeanDifference<?>> differences = null;
+    if (foundSecurity.getClass().equals(security.getClass())) {
+      try {
+        differences = _beanCompare.compare(foundSecurity, security);
+      } catch (Exception e) {
+        throw new OpenGammaRuntimeException("Error comparing securities with ID bundle " + security.getExternalIdBundle(), e);
+      }
+    }
+    return differences != null && differences.size() == 1 && differences.get(0).getProperty().propertyType() == UniqueId.class;
+  }
+
+  /**
+   * Writes securities with one search for all of them, adding and updating securities in bulk.
+   * <p>
+   * Each security is matched to the existing securities sharing any of its identifiers, as
+   * {@link #writePosition} does. A security that shares an identifier with an earlier one in the
+   * list, or that would update a security already being updated, is written on its own after the
+   * others so that it sees their result.
+   * 
+   * @param securities  the securities to write, not null
+   * @return the securities in the masters after writing, in the order given, not null
+   */
+  @Override
+  public List<ManageableSecurity> writeSecurities(List<ManageableSecurity> securities) {
+    
+    ArgumentChecker.noNulls(securities, "securities");
+    if (securities.isEmpty()) {
+      return Collections.emptyList();
+    }
+    
+    // Search for existing securities matching any of the identifiers
+    ExternalIdSearch idSearch = new ExternalIdSearch();
+    for (ManageableSecurity security : securities) {
+      idSearch.addExternalIds(security.getExternalIdBundle());
+    }
+    SecuritySearchRequest searchReq = new SecuritySearchRequest();
+    searchReq.setVersionCorrection(VersionCorrection.ofVersionAsOf(ZonedDateTime.now())); // valid now
+    searchReq.setExternalIdSearch(idSearch);
+    searchReq.setFullDetail(true);
+    searchReq.setSortOrder(SecuritySearchSortOrder.VERSION_FROM_INSTANT_DESC);
+    List<ManageableSecurity> foundSecurities = _securityMaster.search(searchReq).getSecurities();
+    
+    ManageableSecurity[] result = new ManageableSecurity[securities.size()];
+    List<Integer> addIndices = new ArrayList<Integer>();
+    List<SecurityDocument> addDocs = new ArrayList<SecurityDocument>();
+    List<Integer> updateIndices = new ArrayList<Integer>();
+    List<SecurityDocument> updateDocs = new ArrayList<SecurityDocument>();
+    List<Integer> laterIndices = new ArrayList<Integer>();
+    Set<ExternalId> batchIds = new HashSet<ExternalId>();
+    Set<ObjectId> touched = new HashSet<ObjectId>();
+    for (int i = 0; i < securities.size(); i++) {
+      ManageableSecurity security = securities.get(i);
+      Set<ExternalId> ids = security.getExternalIdBundle().getExternalIds();
+      if (!Collections.disjoint(batchIds, ids)) {
+        laterIndices.add(i);
+        continue;
+      }
+      batchIds.addAll(ids);
+      List<ManageableSecurity> matches = new ArrayList<ManageableSecurity>();
+      for (ManageableSecurity foundSecurity : foundSecurities) {
+        if (!Collections.disjoint(foundSecurity.getExternalIdBundle().getExternalIds(), ids)) {
+          matches.add(foundSecurity);
+        }
+      }
+      if (_overwrite) {
+        for (ManageableSecurity foundSecurity : matches) {
+          if (touched.add(foundSecurity.getUniqueId().getObjectId())) {
+            _securityMaster.remove(foundSecurity.getUniqueId());
+          }
+        }
+        addIndices.add(i);
+        addDocs.add(new SecurityDocument(security));
+      } else if (matches.isEmpty()) {
+        addIndices.add(i);
+        addDocs.add(new SecurityDocument(security));
+      } else {
+        ManageableSecurity foundSecurity = matches.get(0);
+        if (isUnchanged(foundSecurity, security)) {
+          result[i] = foundSecurity;
+        } else if (touched.add(foundSecurity.getUniqueId().getObjectId())) {
+          SecurityDocument updateDoc = new SecurityDocument(security);
+          updateDoc.setUniqueId(foundSecurity.getUniqueId());
+          updateIndices.add(i);
+          updateDocs.add(updateDoc);
+        } else {
+          laterIndices.add(i);
+        }
+      }
+    }
+    
+    // Write in bulk, then write the remainder one at a time
+    List<SecurityDocument> added = BulkMasterUtils.addAll(_securityMaster, addDocs);
+    for (int i = 0; i < added.size(); i++) {
+      result[addIndices.get(i)] = added.get(i).getSecurity();
+    }
+    List<SecurityDocument> updated = BulkMasterUtils.updateAll(_securityMaster, updateDocs);
+    for (int i = 0; i < updated.size(); i++) {
+      result[updateIndices.get(i)] = updated.get(i).getSecurity();
+    }
+    for (int i : laterIndices) {
+      result[i] = writeSecurity(securities.get(i));
+    }
+    return Arrays.asList(result);
+  }
+
+  /**
+   * Writes positions to the portfolio node with the given path, adding new positions in bulk.
+   * <p>
+   * Unless overwriting, a position matching one in the same node of the previous version of the
+   * portfolio is reused, as {@link #writePosition} does. Only the update of the portfolio tree is
+   * performed while holding a lock, so batches of positions may be written concurrently.
+   * 
+   * @param path  the path of the node to add the positions to, not null
+   * @param positions  the positions to write, not null
+   * @return the positions in the masters after writing, in the order given, not null
+   */
+  @Override
+  public List<ManageablePosition> writePositions(String[] path, List<ManageablePosition> positions) {
+    
+    ArgumentChecker.notNull(path, "path");
+    ArgumentChecker.noNulls(positions, "positions");
+    
+    ManageablePortfolioNode originalNode = null;
+    if (!_overwrite && _originalRoot != null) {
+      originalNode = (path.length == 0) ? _originalRoot : findNode(path, _originalRoot);
+    }
+    
+    ManageablePosition[] result = new ManageablePosition[positions.size()];
+    List<Integer> addIndices = new ArrayList<Integer>();
+    List<PositionDocument> addDocs = new ArrayList<PositionDocument>();
+    for (int i = 0; i < positions.size(); i++) {
+      ManageablePosition position = positions.get(i);
+      PositionDocument existingDoc = null;
+      if (originalNode != null && !originalNode.getPositionIds().isEmpty()) {
+        existingDoc = findExistingPosition(position, originalNode);
+      }
+      if (existingDoc != null) {
+        result[i] = existingDoc.getPosition();
+      } else {
+        addIndices.add(i);
+        addDocs.add(new PositionDocument(position));
+      }
+    }
+    List<PositionDocument> added = BulkMasterUtils.addAll(_positionMaster, addDocs);
+    for (int i = 0; i < added.size(); i++) {
+      result[addIndices.get(i)] = added.get(i).getPosition();
+    }
+    
+    // Add the positions to the portfolio
+    synchronized (_portfolioLock) {
+      ManageablePortfolioNode rootNode = _portfolioDocument.getPortfolio().getRootNode();
+      ManageablePortfolioNode node = (path.length == 0) ? rootNode : createNode(path, rootNode);
+      for (ManageablePosition position : result) {
+        node.addPosition(position.getUniqueId());
+      }
+    }
+    return Arrays.asList(result);
+  }
+
+  /*
+   * Searches the given node of the original portfolio for a position with the same security and quantity.
+   */
+  private PositionDocument findExistingPosition(ManageablePosition position, ManageablePortfolioNode originalNode) {
+    PositionSearchRequest searchReq = new PositionSearchRequest();
+    
+    // Filter positions in current node of original portfolio
+    searchReq.setPositionObjectIds(originalNode.getPositionIds());
+
+    // Filter positions with same external ids
+    ExternalIdSearch externalIdSearch = new ExternalIdSearch();
+    externalIdSearch.addExternalIds(position.getSecurityLink().getExternalIds()); 
+    externalIdSearch.setSearchType(ExternalIdSearchType.ALL);
+    searchReq.setSecurityIdSearch(externalIdSearch);
+    
+    // Filter positions with the same quantity
+    searchReq.setMinQuantity(position.getQuantity());
+    searchReq.setMaxQuantity(position.getQuantity());
+
+    // TODO also confirm that all the associated trades are identical
+    return _positionMaster.search(searchReq).getFirstDocument();
+  }
+
   // This weak equals does not actually compare the security's fields, just the type, external ids and attributes :(
   protected boolean weakEquals(ManageableSecurity sec1, ManageableSecurity sec2) {
     return sec1.getName().equals(sec2.getName()) &&
@@ -243,7 +415,9 @@ public class MasterPortfolioWriter implements PortfolioWriter {
 
   @Override
   public void flush() {
-    _portfolioDocument = _portfolioMaster.update(_portfolioDocument);
+    synchronized (_portfolioLock) {
+      _portfolioDocument = _portfolioMaster.update(_portfolioDocument);
+    }
   }
   
   @Override
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.integration.tool.marketdata;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.component.tool.AbstractTool;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
+import com.opengamma.masterdb.historicaltimeseries.DbHistoricalTimeSeriesBlockMigrator;
+import com.opengamma.masterdb.historicaltimeseries.DbHistoricalTimeSeriesMaster;
+import com.opengamma.util.generate.scripts.Scriptable;
+
+/**
+ * Tool to copy the time-series data points of a database master into compressed block storage.
+ * <p>
+ * The tool context must provide a local database time-series master. The data points
+ * stored a point per row are copied, leaving the originals in place. Series that have
+ * already been copied are skipped, so the tool may be run again if interrupted.
+ * Once complete, the master may be configured to use block storage.
+ */
+@Scriptable
+public class HtsBlockStorageMigrationTool extends AbstractTool {
+
+  /**
+   * Main method to run the tool.
+   *
+   * @param args  the arguments, not null
+   */
+  public static void main(String[] args) { // CSIGNORE
+    boolean success = new HtsBlockStorageMigrationTool().initAndRun(args);
+    System.exit(success ? 0 : 1);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  protected void doRun() {
+    HistoricalTimeSeriesMaster master = getToolContext().getHistoricalTimeSeriesMaster();
+    if (master instanceof DbHistoricalTimeSeriesMaster == false) {
+      throw new OpenGammaRuntimeException("Time-series master must be a database master to migrate: " + master);
+    }
+    long rows = new DbHistoricalTimeSeriesBlockMigrator((DbHistoricalTimeSeriesMaster) master).migrate();
+    System.out.println("Copied " + rows + " data point rows to block storage");
+  }
+
+}
@@ -10,6 +10,9 @@ import org.apache.commons.cli.Options;
 import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.component.tool.AbstractTool;
 import com.opengamma.financial.tool.ToolContext;
+import com.opengamma.integration.copier.portfolio.PipelinedPortfolioCopier;
+import com.opengamma.integration.copier.portfolio.PortfolioCopier;
+import com.opengamma.integration.copier.portfolio.PortfolioCopierStats;
 import com.opengamma.integration.copier.portfolio.PortfolioCopierVisitor;
 import com.opengamma.integration.copier.portfolio.QuietPortfolioCopierVisitor;
 import com.opengamma.integration.copier.portfolio.SimplePortfolioCopier;
@@ -41,6 +44,8 @@ public class PortfolioLoaderTool extends AbstractTool {
   private static final String VERBOSE_OPT = "v";
   /** Asset class flag */
   private static final String SECURITY_TYPE_OPT = "s";
+  /** Writer threads option flag */
+  private static final String THREADS_OPT = "t";
 
   private static ToolContext s_context;
   
@@ -77,7 +82,12 @@ public class PortfolioLoaderTool extends AbstractTool {
     );
 
     // Construct portfolio copier
-    SimplePortfolioCopier portfolioCopier = new SimplePortfolioCopier();
+    PortfolioCopier portfolioCopier;
+    if (getCommandLine().hasOption(THREADS_OPT)) {
+      portfolioCopier = new PipelinedPortfolioCopier(Integer.parseInt(getCommandLine().getOptionValue(THREADS_OPT)));
+    } else {
+      portfolioCopier = new SimplePortfolioCopier();
+    }
         
     // Create visitor for verbose/quiet mode
     PortfolioCopierVisitor portfolioCopierVisitor; 
@@ -86,9 +96,11 @@ public class PortfolioLoaderTool extends AbstractTool {
     } else {
       portfolioCopierVisitor = new QuietPortfolioCopierVisitor();
     }
+    PortfolioCopierStats stats = new PortfolioCopierStats(portfolioCopierVisitor);
     
     // Call the portfolio loader with the supplied arguments
-    portfolioCopier.copy(portfolioReader, portfolioWriter, portfolioCopierVisitor);
+    portfolioCopier.copy(portfolioReader, portfolioWriter, stats);
+    System.out.println(stats);
 
     // close stuff
     portfolioReader.close();
@@ -178,6 +190,11 @@ public class PortfolioLoaderTool extends AbstractTool {
         "Deletes any existing matching securities, positions and portfolios and recreates them from input data");
     options.addOption(overwriteOption);
 
+    Option threadsOption = new Option(
+        THREADS_OPT, "threads", true, 
+        "Copies in a pipeline with the given number of position writer threads, writing securities and positions in batches");
+    options.addOption(threadsOption);
+
     Option verboseOption = new Option(
         VERBOSE_OPT, "verbose", false, 
         "Displays progress messages on the terminal");
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.integration.copier;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.UniqueId;
+import com.opengamma.integration.copier.portfolio.PipelinedPortfolioCopier;
+import com.opengamma.integration.copier.portfolio.PortfolioCopierStats;
+import com.opengamma.integration.copier.portfolio.PortfolioCopierStats.Stage;
+import com.opengamma.integration.copier.portfolio.reader.PortfolioReader;
+import com.opengamma.integration.copier.portfolio.reader.SingleSheetSimplePortfolioReader;
+import com.opengamma.integration.copier.portfolio.writer.MasterPortfolioWriter;
+import com.opengamma.master.portfolio.ManageablePortfolio;
+import com.opengamma.master.portfolio.ManageablePortfolioNode;
+import com.opengamma.master.portfolio.PortfolioDocument;
+import com.opengamma.master.portfolio.PortfolioMaster;
+import com.opengamma.master.portfolio.PortfolioSearchRequest;
+import com.opengamma.master.portfolio.PortfolioSearchResult;
+import com.opengamma.master.position.ManageablePosition;
+import com.opengamma.master.position.PositionMaster;
+import com.opengamma.master.position.PositionSearchRequest;
+import com.opengamma.master.position.impl.InMemoryPositionMaster;
+import com.opengamma.master.security.ManageableSecurity;
+import com.opengamma.master.security.SecurityMaster;
+import com.opengamma.master.security.SecuritySearchRequest;
+import com.opengamma.master.security.impl.InMemorySecurityMaster;
+import com.opengamma.util.tuple.ObjectsPair;
+
+/**
+ * Test PipelinedPortfolioCopier.
+ */
+@Test
+public class PipelinedPortfolioCopierTest {
+
+  private static final String PORTFOLIO_NAME = "test";
+  private static final String PORTFOLIO_FILE = "tests/unit/com/opengamma/integration/copier/TestPortfolio.csv";
+  private static final String SECURITY_TYPE = "Equity";
+  private static final int FILE_ROWS = 11;
+  private static final int FILE_SECURITIES = 10;
+
+  private PortfolioMaster _portfolioMaster;
+  private PositionMaster _positionMaster;
+  private SecurityMaster _securityMaster;
+  private ManageablePortfolioNode _rootNode;
+
+  @BeforeMethod
+  public void setUp() {
+    _positionMaster = new InMemoryPositionMaster();
+    _securityMaster = new InMemorySecurityMaster();
+    _portfolioMaster = mock(PortfolioMaster.class);
+    PortfolioSearchRequest portSearchRequest = new PortfolioSearchRequest();
+    portSearchRequest.setName(PORTFOLIO_NAME);
+    when(_portfolioMaster.search(portSearchRequest)).thenReturn(new PortfolioSearchResult());
+    _rootNode = new ManageablePortfolioNode(PORTFOLIO_NAME);
+    _rootNode.setUniqueId(UniqueId.of("abc", "123"));
+    PortfolioDocument portfolioDocument = new PortfolioDocument();
+    portfolioDocument.setPortfolio(new ManageablePortfolio(PORTFOLIO_NAME, _rootNode));
+    when(_portfolioMaster.add(any(PortfolioDocument.class))).thenReturn(portfolioDocument);
+    when(_portfolioMaster.update(any(PortfolioDocument.class))).thenReturn(portfolioDocument);
+  }
+
+  //-------------------------------------------------------------------------
+  public void test_copy() {
+    PortfolioReader reader = twice(PORTFOLIO_FILE);
+    MasterPortfolioWriter writer = new MasterPortfolioWriter(PORTFOLIO_NAME, _portfolioMaster, _positionMaster, _securityMaster, false);
+    PortfolioCopierStats stats = new PortfolioCopierStats();
+    new PipelinedPortfolioCopier(false, 3, 2).copy(reader, writer, stats);
+    reader.close();
+
+    assertEquals(stats.getPositionLoadCount(), FILE_ROWS * 2);
+    assertEquals(stats.getSecurityLoadCount(), FILE_ROWS * 2);
+    assertEquals(stats.getPositionErrorCount(), 0);
+    assertEquals(stats.getStageRowCount(Stage.READ), FILE_ROWS * 2);
+    assertEquals(stats.getStageRowCount(Stage.RESOLVE), FILE_ROWS * 2);
+    assertEquals(stats.getStageRowCount(Stage.WRITE), FILE_ROWS * 2);
+
+    // each security is written once, each position for every row
+    assertEquals(_securityMaster.search(new SecuritySearchRequest()).getDocuments().size(), FILE_SECURITIES);
+    assertEquals(_positionMaster.search(new PositionSearchRequest()).getDocuments().size(), FILE_ROWS * 2);
+    assertEquals(_rootNode.getPositionIds().size(), FILE_ROWS * 2);
+  }
+
+  public void test_copy_reusesExistingSecurities() {
+    PortfolioReader reader = new SingleSheetSimplePortfolioReader(PORTFOLIO_FILE, SECURITY_TYPE);
+    MasterPortfolioWriter writer = new MasterPortfolioWriter(PORTFOLIO_NAME, _portfolioMaster, _positionMaster, _securityMaster, false);
+    new PipelinedPortfolioCopier(false, 4, 2).copy(reader, writer);
+    reader.close();
+    reader = new SingleSheetSimplePortfolioReader(PORTFOLIO_FILE, SECURITY_TYPE);
+    new PipelinedPortfolioCopier(false, 4, 2).copy(reader, writer);
+    reader.close();
+
+    assertEquals(_securityMaster.search(new SecuritySearchRequest()).getDocuments().size(), FILE_SECURITIES);
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void test_copy_writeFails() {
+    PortfolioReader reader = twice(PORTFOLIO_FILE);
+    MasterPortfolioWriter writer = new MasterPortfolioWriter(PORTFOLIO_NAME, _portfolioMaster, _positionMaster, _securityMaster, false) {
+      @Override
+      public List<ManageablePosition> writePositions(String[] path, List<ManageablePosition> positions) {
+        throw new IllegalStateException("Test");
+      }
+    };
+    try {
+      new PipelinedPortfolioCopier(false, 2, 2).copy(reader, writer);
+    } finally {
+      reader.close();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private static PortfolioReader twice(final String filename) {
+    return new PortfolioReader() {
+      private PortfolioReader _reader = new SingleSheetSimplePortfolioReader(filename, SECURITY_TYPE);
+      private boolean _second;
+
+      @Override
+      public ObjectsPair<ManageablePosition, ManageableSecurity[]> readNext() {
+        ObjectsPair<ManageablePosition, ManageableSecurity[]> next = _reader.readNext();
+        if (next == null && !_second) {
+          _reader.close();
+          _reader = new SingleSheetSimplePortfolioReader(filename, SECURITY_TYPE);
+          _second = true;
+          next = _reader.readNext();
+        }
+        return next;
+      }
+
+      @Override
+      public String[] getCurrentPath() {
+        return new String[0];
+      }
+
+      @Override
+      public void close() {
+        _reader.close();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master;
+
+import java.util.List;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.util.PublicSPI;
+
+/**
+ * A master that can add, update and correct many documents in a single call.
+ * <p>
+ * This is an optional extension to {@link AbstractMaster} intended for loading large
+ * numbers of documents, such as a nightly load of positions or securities.
+ * Each method behaves as though the equivalent single document method had been called
+ * for each document in turn, except that an implementation may process the documents
+ * in groups, such as one database transaction per group of documents.
+ * If a call fails then some of the documents may have been stored.
+ * <p>
+ * The change manager of the master is notified of each document that is stored.
+ * Use {@link BulkMasterUtils} to call these methods on a master that may not implement this interface.
+ * 
+ * @param <D>  the type of the document
+ */
+@PublicSPI
+public interface BulkMaster<D extends AbstractDocument> {
+
+  /**
+   * Adds documents to the data store.
+   * <p>
+   * This is equivalent to calling {@link AbstractMaster#add} for each document.
+   * 
+   * @param documents  the documents, not null and not containing null
+   * @return the added documents in the order given, may be updates of the input documents, not null
+   * @throws IllegalArgumentException if the request is invalid
+   */
+  List<D> addAll(List<D> documents);
+
+  /**
+   * Updates documents in the data store.
+   * <p>
+   * This is equivalent to calling {@link AbstractMaster#update} for each document.
+   * Each object may only be updated once in a single call.
+   * 
+   * @param documents  the documents, not null and not containing null
+   * @return the current state of the documents in the order given, may be updates of the input documents, not null
+   * @throws IllegalArgumentException if the request is invalid
+   * @throws DataNotFoundException if there is no document with one of the unique identifiers
+   */
+  List<D> updateAll(List<D> documents);
+
+  /**
+   * Corrects documents in the data store.
+   * <p>
+   * This is equivalent to calling {@link AbstractMaster#correct} for each document.
+   * Each object may only be corrected once in a single call.
+   * 
+   * @param documents  the documents, not null and not containing null
+   * @return the corrected state of the versions in the order given, may be updates of the input documents, not null
+   * @throws IllegalArgumentException if the request is invalid
+   * @throws DataNotFoundException if there is no document with one of the unique identifiers
+   */
+  List<D> correctAll(List<D> documents);
+
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Utility methods for calling the {@link BulkMaster} methods on any master.
+ * <p>
+ * If the master implements {@link BulkMaster} the bulk method is called,
+ * otherwise the single document method is called for each document in turn.
+ * <p>
+ * This is a thread-safe static utility class.
+ */
+public final class BulkMasterUtils {
+
+  /**
+   * Restricted constructor.
+   */
+  private BulkMasterUtils() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds documents to a master.
+   * 
+   * @param <D>  the type of the document
+   * @param master  the master, not null
+   * @param documents  the documents, not null and not containing null
+   * @return the added documents in the order given, not null
+   */
+  @SuppressWarnings("unchecked")
+  public static <D extends AbstractDocument> List<D> addAll(final AbstractMaster<D> master, final List<D> documents) {
+    ArgumentChecker.notNull(master, "master");
+    ArgumentChecker.noNulls(documents, "documents");
+    if (master instanceof BulkMaster) {
+      return ((BulkMaster<D>) master).addAll(documents);
+    }
+    final List<D> result = new ArrayList<D>(documents.size());
+    for (D document : documents) {
+      result.add(master.add(document));
+    }
+    return result;
+  }
+
+  /**
+   * Updates documents in a master.
+   * 
+   * @param <D>  the type of the document
+   * @param master  the master, not null
+   * @param documents  the documents, not null and not containing null
+   * @return the current state of the documents in the order given, not null
+   */
+  @SuppressWarnings("unchecked")
+  public static <D extends AbstractDocument> List<D> updateAll(final AbstractMaster<D> master, final List<D> documents) {
+    ArgumentChecker.notNull(master, "master");
+    ArgumentChecker.noNulls(documents, "documents");
+    if (master instanceof BulkMaster) {
+      return ((BulkMaster<D>) master).updateAll(documents);
+    }
+    final List<D> result = new ArrayList<D>(documents.size());
+    for (D document : documents) {
+      result.add(master.update(document));
+    }
+    return result;
+  }
+
+  /**
+   * Corrects documents in a master.
+   * 
+   * @param <D>  the type of the document
+   * @param master  the master, not null
+   * @param documents  the documents, not null and not containing null
+   * @return the corrected state of the versions in the order given, not null
+   */
+  @SuppressWarnings("unchecked")
+  public static <D extends AbstractDocument> List<D> correctAll(final AbstractMaster<D> master, final List<D> documents) {
+    ArgumentChecker.notNull(master, "master");
+    ArgumentChecker.noNulls(documents, "documents");
+    if (master instanceof BulkMaster) {
+      return ((BulkMaster<D>) master).correctAll(documents);
+    }
+    final List<D> result = new ArrayList<D>(documents.size());
+    for (D document : documents) {
+      result.add(master.correct(document));
+    }
+    return result;
+  }
+
+}
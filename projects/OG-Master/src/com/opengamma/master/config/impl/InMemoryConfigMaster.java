@@ -6,6 +6,8 @@
 package com.opengamma.master.config.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,6 +35,8 @@ import com.opengamma.master.config.ConfigMetaDataRequest;
 import com.opengamma.master.config.ConfigMetaDataResult;
 import com.opengamma.master.config.ConfigSearchRequest;
 import com.opengamma.master.config.ConfigSearchResult;
+import com.opengamma.master.impl.InMemoryIndex;
+import com.opengamma.master.impl.InMemoryNameIndex;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.paging.Paging;
 
@@ -43,6 +47,9 @@ import com.opengamma.util.paging.Paging;
  * <p>
  * This implementation does not copy stored elements, making it thread-hostile.
  * As such, this implementation is currently most useful for testing scenarios.
+ * <p>
+ * Documents are indexed by name and type, so that searches on those fields do not scan
+ * every document. Searches do not lock, while changes are made one at a time.
  */
 public class InMemoryConfigMaster implements ConfigMaster {
 
@@ -55,6 +62,18 @@ public class InMemoryConfigMaster implements ConfigMaster {
    * A cache of securities by identifier.
    */
   private final ConcurrentMap<ObjectId, ConfigDocument<?>> _store = new ConcurrentHashMap<ObjectId, ConfigDocument<?>>();
+  /**
+   * The index of documents by name.
+   */
+  private final InMemoryNameIndex _nameIndex = new InMemoryNameIndex();
+  /**
+   * The index of documents by type.
+   */
+  private final InMemoryIndex<Class<?>> _typeIndex = new InMemoryIndex<Class<?>>();
+  /**
+   * The lock held while changing the store and indexes.
+   */
+  private final Object _writeLock = new Object();
   /**
    * The supplied of identifiers.
    */
@@ -139,7 +158,10 @@ public class InMemoryConfigMaster implements ConfigMaster {
     doc.setValue(value);
     doc.setUniqueId(uniqueId);
     doc.setVersionFromInstant(now);
-    _store.put(objectId, doc);
+    synchronized (_writeLock) {
+      _store.put(objectId, doc);
+      index(objectId, doc);
+    }
     _changeManager.entityChanged(ChangeType.ADDED, null, uniqueId, now);
     return (ConfigDocument<T>) doc;
   }
@@ -153,16 +175,20 @@ public class InMemoryConfigMaster implements ConfigMaster {
     
     final UniqueId uniqueId = document.getUniqueId();
     final Instant now = Instant.now();
-    final ConfigDocument<?> storedDocument = _store.get(uniqueId.getObjectId());
-    if (storedDocument == null) {
-      throw new DataNotFoundException("Config not found: " + uniqueId);
-    }
-    document.setVersionFromInstant(now);
-    document.setVersionToInstant(null);
-    document.setCorrectionFromInstant(now);
-    document.setCorrectionToInstant(null);
-    if (_store.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
-      throw new IllegalArgumentException("Concurrent modification");
+    synchronized (_writeLock) {
+      final ConfigDocument<?> storedDocument = _store.get(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Config not found: " + uniqueId);
+      }
+      document.setVersionFromInstant(now);
+      document.setVersionToInstant(null);
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      if (_store.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
+        throw new IllegalArgumentException("Concurrent modification");
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
+      index(uniqueId.getObjectId(), document);
     }
     _changeManager.entityChanged(ChangeType.UPDATED, uniqueId, document.getUniqueId(), now);
     return document;
@@ -172,8 +198,12 @@ public class InMemoryConfigMaster implements ConfigMaster {
   @Override
   public void remove(UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
-    if (_store.remove(uniqueId.getObjectId()) == null) {
-      throw new DataNotFoundException("Config not found: " + uniqueId);
+    synchronized (_writeLock) {
+      final ConfigDocument<?> storedDocument = _store.remove(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Config not found: " + uniqueId);
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
     }
     _changeManager.entityChanged(ChangeType.REMOVED, uniqueId, null, Instant.now());
   }
@@ -223,7 +253,7 @@ public class InMemoryConfigMaster implements ConfigMaster {
   public <T> ConfigSearchResult<T> search(ConfigSearchRequest<T> request) {
     ArgumentChecker.notNull(request, "request");
     final List<ConfigDocument<T>> list = new ArrayList<ConfigDocument<T>>();
-    for (ConfigDocument<?> doc : _store.values()) {
+    for (ConfigDocument<?> doc : candidates(request)) {
       if (request.matches(doc)) {
         list.add((ConfigDocument<T>) doc);
       }
@@ -237,6 +267,41 @@ public class InMemoryConfigMaster implements ConfigMaster {
     return result;
   }
 
+  /**
+   * Finds the documents that may match a search, using the most selective index.
+   * 
+   * @param request  the search request, not null
+   * @return the candidate documents, not null
+   */
+  @SuppressWarnings("unchecked")
+  private Collection<ConfigDocument<?>> candidates(final ConfigSearchRequest<?> request) {
+    final Set<ObjectId> objectIds = InMemoryIndex.narrowest(
+        (request.getConfigIds() != null) ? new HashSet<ObjectId>(request.getConfigIds()) : null,
+        _nameIndex.search(request.getName()),
+        (request.getType() != null) ? _typeIndex.get(request.getType()) : null);
+    if (objectIds == null) {
+      return _store.values();
+    }
+    final List<ConfigDocument<?>> documents = new ArrayList<ConfigDocument<?>>(objectIds.size());
+    for (ObjectId objectId : objectIds) {
+      final ConfigDocument<?> document = _store.get(objectId);
+      if (document != null) {
+        documents.add(document);
+      }
+    }
+    return documents;
+  }
+
+  private void index(final ObjectId objectId, final ConfigDocument<?> document) {
+    _nameIndex.add(document.getName(), objectId);
+    _typeIndex.add(document.getType(), objectId);
+  }
+
+  private void unindex(final ObjectId objectId, final ConfigDocument<?> document) {
+    _nameIndex.remove(document.getName(), objectId);
+    _typeIndex.remove(document.getType(), objectId);
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public <T> ConfigHistoryResult<T> history(ConfigHistoryRequest<T> request) {
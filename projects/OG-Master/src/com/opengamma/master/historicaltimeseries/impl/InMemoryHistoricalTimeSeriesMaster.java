@@ -6,6 +6,7 @@
 package com.opengamma.master.historicaltimeseries.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -41,6 +42,9 @@ import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoSearchR
 import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesMaster;
 import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
 import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeriesInfo;
+import com.opengamma.master.impl.InMemoryExternalIdIndex;
+import com.opengamma.master.impl.InMemoryIndex;
+import com.opengamma.master.impl.InMemoryNameIndex;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.paging.Paging;
 import com.opengamma.util.timeseries.DoubleTimeSeriesOperators;
@@ -50,6 +54,10 @@ import com.opengamma.util.timeseries.localdate.MutableLocalDateDoubleTimeSeries;
 
 /**
  * An in-memory implementation of a historical time-series master.
+ * <p>
+ * Time-series are indexed by external identifier, name and data field, so that searches
+ * on those fields do not scan every time-series. Searches do not lock, while changes to
+ * the time-series information are made one at a time.
  */
 public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesMaster {
 
@@ -66,6 +74,22 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
    * A cache of time-series points by identifier.
    */
   private final ConcurrentMap<ObjectId, LocalDateDoubleTimeSeries> _storePoints = new ConcurrentHashMap<ObjectId, LocalDateDoubleTimeSeries>();
+  /**
+   * The index of time-series by external identifier, including those no longer valid.
+   */
+  private final InMemoryExternalIdIndex _externalIdIndex = new InMemoryExternalIdIndex();
+  /**
+   * The index of time-series by name.
+   */
+  private final InMemoryNameIndex _nameIndex = new InMemoryNameIndex();
+  /**
+   * The index of time-series by data field.
+   */
+  private final InMemoryIndex<String> _dataFieldIndex = new InMemoryIndex<String>();
+  /**
+   * The lock held while changing the time-series information and indexes.
+   */
+  private final Object _writeLock = new Object();
   /**
    * The supplied of identifiers.
    */
@@ -119,11 +143,7 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
     ArgumentChecker.notNull(request, "request");
     HistoricalTimeSeriesInfoMetaDataResult result = new HistoricalTimeSeriesInfoMetaDataResult();
     if (request.isDataFields()) {
-      Set<String> types = new HashSet<String>();
-      for (HistoricalTimeSeriesInfoDocument doc : _storeInfo.values()) {
-        types.add(doc.getInfo().getDataField());
-      }
-      result.getDataFields().addAll(types);
+      result.getDataFields().addAll(_dataFieldIndex.keySet());
     }
     if (request.isDataSources()) {
       Set<String> types = new HashSet<String>();
@@ -154,7 +174,7 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
   public HistoricalTimeSeriesInfoSearchResult search(HistoricalTimeSeriesInfoSearchRequest request) {
     ArgumentChecker.notNull(request, "request");
     final List<HistoricalTimeSeriesInfoDocument> list = new ArrayList<HistoricalTimeSeriesInfoDocument>();
-    for (HistoricalTimeSeriesInfoDocument doc : _storeInfo.values()) {
+    for (HistoricalTimeSeriesInfoDocument doc : candidates(request)) {
       if (request.matches(doc)) {
         list.add(doc);
       }
@@ -165,6 +185,50 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
     return result;
   }
 
+  /**
+   * Finds the documents that may match a search, using the most selective index.
+   * 
+   * @param request  the search request, not null
+   * @return the candidate documents, not null
+   */
+  @SuppressWarnings("unchecked")
+  private Collection<HistoricalTimeSeriesInfoDocument> candidates(final HistoricalTimeSeriesInfoSearchRequest request) {
+    final Set<ObjectId> objectIds = InMemoryIndex.narrowest(
+        (request.getObjectIds() != null) ? new HashSet<ObjectId>(request.getObjectIds()) : null,
+        _externalIdIndex.search(request.getExternalIdSearch()),
+        _nameIndex.search(request.getName()),
+        (request.getDataField() != null) ? _dataFieldIndex.get(request.getDataField()) : null);
+    if (objectIds == null) {
+      return _storeInfo.values();
+    }
+    final List<HistoricalTimeSeriesInfoDocument> documents = new ArrayList<HistoricalTimeSeriesInfoDocument>(objectIds.size());
+    for (ObjectId objectId : objectIds) {
+      final HistoricalTimeSeriesInfoDocument document = _storeInfo.get(objectId);
+      if (document != null) {
+        documents.add(document);
+      }
+    }
+    return documents;
+  }
+
+  private void index(final ObjectId objectId, final HistoricalTimeSeriesInfoDocument document) {
+    final ManageableHistoricalTimeSeriesInfo info = document.getInfo();
+    if (info.getExternalIdBundle() != null) {
+      _externalIdIndex.addAll(info.getExternalIdBundle().toBundle(), objectId);
+    }
+    _nameIndex.add(info.getName(), objectId);
+    _dataFieldIndex.add(info.getDataField(), objectId);
+  }
+
+  private void unindex(final ObjectId objectId, final HistoricalTimeSeriesInfoDocument document) {
+    final ManageableHistoricalTimeSeriesInfo info = document.getInfo();
+    if (info.getExternalIdBundle() != null) {
+      _externalIdIndex.removeAll(info.getExternalIdBundle().toBundle(), objectId);
+    }
+    _nameIndex.remove(info.getName(), objectId);
+    _dataFieldIndex.remove(info.getDataField(), objectId);
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public HistoricalTimeSeriesInfoDocument get(final UniqueId uniqueId) {
@@ -198,7 +262,10 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
     cloned.setVersionFromInstant(now);
     cloned.setCorrectionFromInstant(now);
     cloned.getInfo().setTimeSeriesObjectId(objectId);
-    _storeInfo.put(objectId, cloned);
+    synchronized (_writeLock) {
+      _storeInfo.put(objectId, cloned);
+      index(objectId, cloned);
+    }
     _changeManager.entityChanged(ChangeType.ADDED, null, uniqueId, now);
     return cloned;
   }
@@ -211,16 +278,20 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
     
     final UniqueId uniqueId = document.getUniqueId();
     final Instant now = Instant.now();
-    final HistoricalTimeSeriesInfoDocument storedDocument = _storeInfo.get(uniqueId.getObjectId());
-    if (storedDocument == null) {
-      throw new DataNotFoundException("Historical time-series not found: " + uniqueId);
-    }
-    document.setVersionFromInstant(now);
-    document.setVersionToInstant(null);
-    document.setCorrectionFromInstant(now);
-    document.setCorrectionToInstant(null);
-    if (_storeInfo.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
-      throw new IllegalArgumentException("Concurrent modification");
+    synchronized (_writeLock) {
+      final HistoricalTimeSeriesInfoDocument storedDocument = _storeInfo.get(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Historical time-series not found: " + uniqueId);
+      }
+      document.setVersionFromInstant(now);
+      document.setVersionToInstant(null);
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      if (_storeInfo.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
+        throw new IllegalArgumentException("Concurrent modification");
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
+      index(uniqueId.getObjectId(), document);
     }
     _changeManager.entityChanged(ChangeType.UPDATED, uniqueId, document.getUniqueId(), now);
     return document;
@@ -230,8 +301,12 @@ public class InMemoryHistoricalTimeSeriesMaster implements HistoricalTimeSeriesM
   @Override
   public void remove(final UniqueId uniqueId) {
     validateId(uniqueId);
-    if (_storeInfo.remove(uniqueId.getObjectId()) == null) {
-      throw new DataNotFoundException("Historical time-series not found: " + uniqueId);
+    synchronized (_writeLock) {
+      final HistoricalTimeSeriesInfoDocument storedDocument = _storeInfo.remove(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Historical time-series not found: " + uniqueId);
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
     }
     _changeManager.entityChanged(ChangeType.REMOVED, uniqueId, null, Instant.now());
   }
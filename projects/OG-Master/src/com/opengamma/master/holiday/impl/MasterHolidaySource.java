@@ -5,13 +5,18 @@
  */
 package com.opengamma.master.holiday.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import javax.time.calendar.DayOfWeek;
 import javax.time.calendar.LocalDate;
 
 import com.opengamma.core.holiday.HolidaySource;
 import com.opengamma.core.holiday.HolidayType;
+import com.opengamma.core.holiday.impl.HolidayBitSet;
+import com.opengamma.core.holiday.impl.HolidayBitSetSource;
 import com.opengamma.id.ExternalId;
 import com.opengamma.id.ExternalIdBundle;
 import com.opengamma.id.ObjectId;
@@ -22,6 +27,7 @@ import com.opengamma.master.holiday.HolidayDocument;
 import com.opengamma.master.holiday.HolidayMaster;
 import com.opengamma.master.holiday.HolidaySearchRequest;
 import com.opengamma.master.holiday.ManageableHoliday;
+import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.PublicSPI;
 import com.opengamma.util.money.Currency;
 
@@ -30,9 +36,11 @@ import com.opengamma.util.money.Currency;
  * <p>
  * The {@link HolidaySource} interface provides holidays to the application via a narrow API.
  * This class provides the source on top of a standard {@link HolidayMaster}.
+ * <p>
+ * A whole calendar can be loaded with a single search as a {@link HolidayBitSet}.
  */
 @PublicSPI
-public class MasterHolidaySource extends AbstractMasterSource<HolidayDocument, HolidayMaster> implements HolidaySource {
+public class MasterHolidaySource extends AbstractMasterSource<HolidayDocument, HolidayMaster> implements HolidayBitSetSource {
 
   /**
    * Creates an instance with an underlying master which does not override versions.
@@ -90,6 +98,40 @@ public class MasterHolidaySource extends AbstractMasterSource<HolidayDocument, H
     return isHoliday(request, dateToCheck);
   }
 
+  //-------------------------------------------------------------------------
+  @Override
+  public HolidayBitSet getHolidayBitSet(final Set<Currency> currencies, final LocalDate start, final LocalDate end) {
+    ArgumentChecker.notEmpty(currencies, "currencies");
+    final List<LocalDate> holidayDates = new ArrayList<LocalDate>();
+    for (Currency currency : currencies) {
+      HolidaySearchRequest request = new HolidaySearchRequest(currency);
+      request.setVersionCorrection(getVersionCorrection());
+      addHolidayDates(request, holidayDates);
+    }
+    return HolidayBitSet.of(start, end, true, holidayDates);
+  }
+
+  @Override
+  public HolidayBitSet getHolidayBitSet(final HolidayType holidayType, final ExternalIdBundle regionOrExchangeIds, final LocalDate start, final LocalDate end) {
+    final List<LocalDate> holidayDates = new ArrayList<LocalDate>();
+    addHolidayDates(getSearchRequest(holidayType, regionOrExchangeIds), holidayDates);
+    return HolidayBitSet.of(start, end, true, holidayDates);
+  }
+
+  /**
+   * Adds the dates of every holiday matching a search.
+   * <p>
+   * A date is a holiday if any matching document contains it, as in {@link #isHoliday(HolidaySearchRequest, LocalDate)}.
+   * 
+   * @param request  the request to search, not null
+   * @param holidayDates  the list to add to, not null
+   */
+  protected void addHolidayDates(final HolidaySearchRequest request, final List<LocalDate> holidayDates) {
+    for (HolidayDocument doc : getMaster().search(request).getDocuments()) {
+      holidayDates.addAll(doc.getHoliday().getHolidayDates());
+    }
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Checks if the specified date is a holiday.
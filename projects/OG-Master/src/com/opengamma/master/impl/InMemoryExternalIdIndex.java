@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdSearch;
+import com.opengamma.id.ObjectId;
+
+/**
+ * A secondary index of external identifiers for an in-memory master.
+ * <p>
+ * Lookups may be made concurrently with changes and do not lock. Changes must be made by one thread
+ * at a time, typically while holding the write lock of the master.
+ */
+public class InMemoryExternalIdIndex extends InMemoryIndex<ExternalId> {
+
+  /**
+   * Creates an empty index.
+   */
+  public InMemoryExternalIdIndex() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Finds the candidate objects for an external identifier search.
+   * <p>
+   * A search for any of the identifiers returns the objects having at least one of them.
+   * A search for all, or exactly, the identifiers returns the objects having the least common of them.
+   * A search for none of the identifiers cannot be narrowed.
+   *
+   * @param search  the search, null for any identifiers
+   * @return the objects whose identifiers may match, null if the search cannot be narrowed
+   */
+  public Set<ObjectId> search(final ExternalIdSearch search) {
+    if (search == null) {
+      return null;
+    }
+    switch (search.getSearchType()) {
+      case ANY: {
+        final Set<ObjectId> result = new HashSet<ObjectId>();
+        for (ExternalId externalId : search) {
+          result.addAll(get(externalId));
+        }
+        return result;
+      }
+      case ALL:
+      case EXACT: {
+        Set<ObjectId> result = null;
+        for (ExternalId externalId : search) {
+          final Set<ObjectId> objectIds = get(externalId);
+          if (result == null || objectIds.size() < result.size()) {
+            result = objectIds;
+          }
+        }
+        return result;
+      }
+      default:
+        return null;
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.impl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.opengamma.id.ObjectId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A secondary index for an in-memory master, from a key to the objects having that key.
+ * <p>
+ * The index is used to find the candidate documents for a search without scanning the whole master.
+ * The candidates must still be checked against the search request, so an index need only
+ * return a superset of the matching objects.
+ * <p>
+ * Lookups may be made concurrently with changes and do not lock. Changes must be made by one thread
+ * at a time, typically while holding the write lock of the master.
+ *
+ * @param <K> the type of the key
+ */
+public class InMemoryIndex<K> {
+
+  /**
+   * The objects by key.
+   */
+  private final ConcurrentMap<K, Set<ObjectId>> _index = new ConcurrentHashMap<K, Set<ObjectId>>();
+
+  /**
+   * Creates an empty index.
+   */
+  public InMemoryIndex() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds an object to the index under a key.
+   *
+   * @param key  the key, null ignored
+   * @param objectId  the object identifier, not null
+   */
+  public void add(final K key, final ObjectId objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    if (key == null) {
+      return;
+    }
+    Set<ObjectId> objectIds = _index.get(key);
+    if (objectIds == null) {
+      objectIds = Collections.newSetFromMap(new ConcurrentHashMap<ObjectId, Boolean>());
+      _index.put(key, objectIds);
+    }
+    objectIds.add(objectId);
+  }
+
+  /**
+   * Adds an object to the index under each of a number of keys.
+   *
+   * @param keys  the keys, not null
+   * @param objectId  the object identifier, not null
+   */
+  public void addAll(final Iterable<? extends K> keys, final ObjectId objectId) {
+    for (K key : keys) {
+      add(key, objectId);
+    }
+  }
+
+  /**
+   * Removes an object from the index under a key.
+   *
+   * @param key  the key, null ignored
+   * @param objectId  the object identifier, not null
+   */
+  public void remove(final K key, final ObjectId objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    if (key == null) {
+      return;
+    }
+    final Set<ObjectId> objectIds = _index.get(key);
+    if (objectIds != null) {
+      objectIds.remove(objectId);
+      if (objectIds.isEmpty()) {
+        _index.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Removes an object from the index under each of a number of keys.
+   *
+   * @param keys  the keys, not null
+   * @param objectId  the object identifier, not null
+   */
+  public void removeAll(final Iterable<? extends K> keys, final ObjectId objectId) {
+    for (K key : keys) {
+      remove(key, objectId);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the objects having a key.
+   *
+   * @param key  the key, not null
+   * @return an unmodifiable view of the objects, not null
+   */
+  public Set<ObjectId> get(final K key) {
+    final Set<ObjectId> objectIds = _index.get(key);
+    return (objectIds != null) ? Collections.unmodifiableSet(objectIds) : Collections.<ObjectId>emptySet();
+  }
+
+  /**
+   * Gets the keys that at least one object has.
+   *
+   * @return an unmodifiable view of the keys, not null
+   */
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(_index.keySet());
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Selects the smallest of a number of candidate sets.
+   * <p>
+   * Each set is a superset of the objects matching a search, as returned by an index,
+   * or null if that index cannot narrow the search.
+   *
+   * @param candidates  the candidate sets, null elements meaning all objects
+   * @return the smallest set, null if all are null
+   */
+  public static Set<ObjectId> narrowest(final Set<ObjectId>... candidates) {
+    Set<ObjectId> result = null;
+    for (Set<ObjectId> candidate : candidates) {
+      if (candidate != null && (result == null || candidate.size() < result.size())) {
+        result = candidate;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + _index.size() + " keys]";
+  }
+
+}
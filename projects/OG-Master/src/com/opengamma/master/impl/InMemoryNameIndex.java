@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.opengamma.id.ObjectId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A secondary index of names for an in-memory master, supporting wildcard searches by prefix.
+ * <p>
+ * Names are held in order, ignoring case, so that a search such as {@code "VOD*"} only visits
+ * the names starting with "vod". A search starting with a wildcard cannot be narrowed.
+ * <p>
+ * Lookups may be made concurrently with changes and do not lock. Changes must be made by one thread
+ * at a time, typically while holding the write lock of the master.
+ */
+public class InMemoryNameIndex {
+
+  /**
+   * The objects by lower case name.
+   */
+  private final ConcurrentNavigableMap<String, Set<ObjectId>> _index = new ConcurrentSkipListMap<String, Set<ObjectId>>();
+
+  /**
+   * Creates an empty index.
+   */
+  public InMemoryNameIndex() {
+  }
+
+  private static String normalize(final String name) {
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Adds an object to the index.
+   *
+   * @param name  the name, null ignored
+   * @param objectId  the object identifier, not null
+   */
+  public void add(final String name, final ObjectId objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    if (name == null) {
+      return;
+    }
+    final String key = normalize(name);
+    Set<ObjectId> objectIds = _index.get(key);
+    if (objectIds == null) {
+      objectIds = Collections.newSetFromMap(new ConcurrentHashMap<ObjectId, Boolean>());
+      _index.put(key, objectIds);
+    }
+    objectIds.add(objectId);
+  }
+
+  /**
+   * Removes an object from the index.
+   *
+   * @param name  the name, null ignored
+   * @param objectId  the object identifier, not null
+   */
+  public void remove(final String name, final ObjectId objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    if (name == null) {
+      return;
+    }
+    final String key = normalize(name);
+    final Set<ObjectId> objectIds = _index.get(key);
+    if (objectIds != null) {
+      objectIds.remove(objectId);
+      if (objectIds.isEmpty()) {
+        _index.remove(key);
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Finds the candidate objects for a name search, which may contain the wildcards '*' and '?'.
+   *
+   * @param namePattern  the name to search for, null for any name
+   * @return the objects whose name may match, null if the search cannot be narrowed
+   */
+  public Set<ObjectId> search(final String namePattern) {
+    if (namePattern == null) {
+      return null;
+    }
+    int wildcard = 0;
+    while (wildcard < namePattern.length() && namePattern.charAt(wildcard) != '*' && namePattern.charAt(wildcard) != '?') {
+      wildcard++;
+    }
+    if (wildcard == 0 && namePattern.length() > 0) {
+      return null;
+    }
+    final String prefix = normalize(namePattern.substring(0, wildcard));
+    if (wildcard == namePattern.length()) {
+      final Set<ObjectId> objectIds = _index.get(prefix);
+      return (objectIds != null) ? Collections.unmodifiableSet(objectIds) : Collections.<ObjectId>emptySet();
+    }
+    final Set<ObjectId> result = new HashSet<ObjectId>();
+    for (Set<ObjectId> objectIds : _index.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+      result.addAll(objectIds);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + _index.size() + " names]";
+  }
+
+}
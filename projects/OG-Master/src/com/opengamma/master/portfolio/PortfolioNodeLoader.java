@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.portfolio;
+
+import java.util.List;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.ObjectIdentifiable;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.paging.PagingRequest;
+
+/**
+ * Partial loading of the node tree of a portfolio.
+ * <p>
+ * A portfolio master may implement this interface in addition to {@link PortfolioMaster}
+ * to allow large portfolios to be loaded a piece at a time. Rather than the whole tree
+ * and every position identifier, a subtree is loaded to a limited depth together with
+ * the number of child nodes and positions of each node, so the caller can tell which
+ * parts are still to be loaded. The position identifiers of a node are then loaded in pages.
+ */
+public interface PortfolioNodeLoader {
+
+  /**
+   * Gets a portfolio with the node tree loaded to a limited depth.
+   * <p>
+   * If the master supports history then the version in the identifier will be used
+   * to return the requested historic version.
+   *
+   * @param portfolioId  the portfolio unique identifier, not null
+   * @param depth  the number of levels of nodes to load below the root node, zero or greater
+   * @return the partial tree, not null
+   * @throws IllegalArgumentException if the request is invalid
+   * @throws DataNotFoundException if there is no portfolio with that unique identifier
+   */
+  PortfolioNodeTree getPortfolioTree(UniqueId portfolioId, int depth);
+
+  /**
+   * Gets a portfolio with the node tree loaded to a limited depth, at the specified version-correction.
+   *
+   * @param portfolioId  the portfolio object identifier, not null
+   * @param versionCorrection  the version-correction locator to search at, not null
+   * @param depth  the number of levels of nodes to load below the root node, zero or greater
+   * @return the partial tree, not null
+   * @throws IllegalArgumentException if the request is invalid
+   * @throws DataNotFoundException if there is no portfolio with that object identifier
+   */
+  PortfolioNodeTree getPortfolioTree(ObjectIdentifiable portfolioId, VersionCorrection versionCorrection, int depth);
+
+  /**
+   * Gets the subtree below a node, loaded to a limited depth.
+   * <p>
+   * The requested node is returned as the root node of the tree, with its parent node identifier set.
+   * If the master supports history then the version in the identifier will be used
+   * to return the requested historic version.
+   *
+   * @param nodeId  the node unique identifier, not null
+   * @param depth  the number of levels of nodes to load below the requested node, zero or greater
+   * @return the partial tree, not null
+   * @throws IllegalArgumentException if the request is invalid
+   * @throws DataNotFoundException if there is no node with that unique identifier
+   */
+  PortfolioNodeTree getNodeTree(UniqueId nodeId, int depth);
+
+  /**
+   * Gets a page of the position identifiers of a node.
+   * <p>
+   * The identifiers are returned in a consistent order, so successive pages may be requested
+   * until fewer than the page size are returned. The total number is available from
+   * {@link PortfolioNodeTree#getPositionCount}.
+   *
+   * @param nodeId  the node unique identifier, not null
+   * @param pagingRequest  the page to load, not null
+   * @return the position object identifiers, not null
+   * @throws IllegalArgumentException if the request is invalid
+   */
+  List<ObjectId> getNodePositionIds(UniqueId nodeId, PagingRequest pagingRequest);
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.portfolio;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.ObjectIdentifiable;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A portfolio with part of its node tree loaded, as returned by a {@link PortfolioNodeLoader}.
+ * <p>
+ * The root node of the portfolio in the document is the node requested, with its descendants to the
+ * requested depth. The nodes do not hold position identifiers. Instead, the number of child nodes and
+ * positions of each loaded node is available, so a node at the bottom of the loaded tree can be told
+ * apart from a leaf node.
+ * <p>
+ * This class is immutable, although the document it holds is not.
+ */
+public final class PortfolioNodeTree {
+
+  /**
+   * The document, with the requested node as the root.
+   */
+  private final PortfolioDocument _document;
+  /**
+   * The number of child nodes keyed by node.
+   */
+  private final Map<ObjectId, Integer> _childCounts;
+  /**
+   * The number of positions keyed by node.
+   */
+  private final Map<ObjectId, Integer> _positionCounts;
+
+  /**
+   * Creates an instance.
+   *
+   * @param document  the document, with the requested node as the root, not null
+   * @param childCounts  the number of child nodes of each loaded node, not null
+   * @param positionCounts  the number of positions of each loaded node, not null
+   */
+  public PortfolioNodeTree(final PortfolioDocument document, final Map<ObjectId, Integer> childCounts, final Map<ObjectId, Integer> positionCounts) {
+    ArgumentChecker.notNull(document, "document");
+    ArgumentChecker.notNull(childCounts, "childCounts");
+    ArgumentChecker.notNull(positionCounts, "positionCounts");
+    _document = document;
+    _childCounts = ImmutableMap.copyOf(childCounts);
+    _positionCounts = ImmutableMap.copyOf(positionCounts);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the document, with the requested node in place of the root node of the portfolio.
+   *
+   * @return the document, not null
+   */
+  public PortfolioDocument getDocument() {
+    return _document;
+  }
+
+  /**
+   * Gets the requested node, with its descendants to the requested depth.
+   *
+   * @return the node, not null
+   */
+  public ManageablePortfolioNode getRootNode() {
+    return _document.getPortfolio().getRootNode();
+  }
+
+  /**
+   * Gets the number of child nodes of a loaded node.
+   * <p>
+   * If this is more than the number of children of the node in the tree, the children have not been loaded.
+   *
+   * @param nodeId  the node identifier, not null
+   * @return the number of child nodes
+   * @throws IllegalArgumentException if the node is not in the tree
+   */
+  public int getChildCount(final ObjectIdentifiable nodeId) {
+    return count(_childCounts, nodeId);
+  }
+
+  /**
+   * Gets the number of positions of a loaded node.
+   *
+   * @param nodeId  the node identifier, not null
+   * @return the number of positions
+   * @throws IllegalArgumentException if the node is not in the tree
+   */
+  public int getPositionCount(final ObjectIdentifiable nodeId) {
+    return count(_positionCounts, nodeId);
+  }
+
+  /**
+   * Checks if the children of a node have been loaded.
+   *
+   * @param node  the node, not null
+   * @return true if all the child nodes are in the tree
+   * @throws IllegalArgumentException if the node is not in the tree
+   */
+  public boolean isChildNodesLoaded(final ManageablePortfolioNode node) {
+    ArgumentChecker.notNull(node, "node");
+    return node.getChildNodes().size() == getChildCount(node.getUniqueId());
+  }
+
+  private static int count(final Map<ObjectId, Integer> counts, final ObjectIdentifiable nodeId) {
+    ArgumentChecker.notNull(nodeId, "nodeId");
+    final Integer count = counts.get(nodeId.getObjectId());
+    if (count == null) {
+      throw new IllegalArgumentException("Node not in tree: " + nodeId);
+    }
+    return count;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "PortfolioNodeTree[" + getRootNode().getUniqueId() + ", " + _childCounts.size() + " nodes]";
+  }
+
+}
@@ -6,6 +6,7 @@
 package com.opengamma.master.position.impl;
 
 import java.net.URI;
+import java.util.List;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
@@ -18,11 +19,13 @@ import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import com.opengamma.id.ObjectId;
+import com.opengamma.master.BulkMasterUtils;
 import com.opengamma.master.position.PositionDocument;
 import com.opengamma.master.position.PositionMaster;
 import com.opengamma.master.position.PositionSearchRequest;
 import com.opengamma.master.position.PositionSearchResult;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.opengamma.util.rest.AbstractDataResource;
 
 /**
@@ -86,6 +89,27 @@ public class DataPositionMasterResource extends AbstractDataResource {
     return responseCreatedFudge(createdUri, result);
   }
 
+  @POST
+  @Path("positionBulkAdds")
+  public Response addAll(FudgeListWrapper<PositionDocument> request) {
+    List<PositionDocument> result = BulkMasterUtils.addAll(getPositionMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
+  @POST
+  @Path("positionBulkUpdates")
+  public Response updateAll(FudgeListWrapper<PositionDocument> request) {
+    List<PositionDocument> result = BulkMasterUtils.updateAll(getPositionMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
+  @POST
+  @Path("positionBulkCorrections")
+  public Response correctAll(FudgeListWrapper<PositionDocument> request) {
+    List<PositionDocument> result = BulkMasterUtils.correctAll(getPositionMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
   //-------------------------------------------------------------------------
   @Path("positions/{positionId}")
   public DataPositionResource findPosition(@PathParam("positionId") String idStr) {
@@ -122,4 +146,37 @@ public class DataPositionMasterResource extends AbstractDataResource {
     return bld.build();
   }
 
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriAddAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("positionBulkAdds");
+    return bld.build();
+  }
+
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriUpdateAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("positionBulkUpdates");
+    return bld.build();
+  }
+
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriCorrectAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("positionBulkCorrections");
+    return bld.build();
+  }
+
 }
@@ -6,7 +6,10 @@
 package com.opengamma.master.position.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -19,11 +22,15 @@ import com.opengamma.DataNotFoundException;
 import com.opengamma.core.change.BasicChangeManager;
 import com.opengamma.core.change.ChangeManager;
 import com.opengamma.core.change.ChangeType;
+import com.opengamma.id.ExternalId;
 import com.opengamma.id.ObjectId;
 import com.opengamma.id.ObjectIdSupplier;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.BulkMaster;
+import com.opengamma.master.impl.InMemoryExternalIdIndex;
+import com.opengamma.master.impl.InMemoryIndex;
 import com.opengamma.master.position.ManageablePosition;
 import com.opengamma.master.position.ManageableTrade;
 import com.opengamma.master.position.PositionDocument;
@@ -37,8 +44,11 @@ import com.opengamma.util.paging.Paging;
 
 /**
  * An in-memory implementation of a position master.
+ * <p>
+ * Positions are indexed by security identifier and provider identifier, so that searches
+ * on those fields do not scan every position. Searches do not lock, while changes are made one at a time.
  */
-public class InMemoryPositionMaster implements PositionMaster {
+public class InMemoryPositionMaster implements PositionMaster, BulkMaster<PositionDocument> {
   
   /**
    * The default scheme used for each {@link UniqueId}.
@@ -53,6 +63,18 @@ public class InMemoryPositionMaster implements PositionMaster {
    * A cache of trades by identifier.
    */
   private final ConcurrentMap<ObjectId, ManageableTrade> _storeTrades = new ConcurrentHashMap<ObjectId, ManageableTrade>();
+  /**
+   * The index of positions by security identifier.
+   */
+  private final InMemoryExternalIdIndex _securityIdIndex = new InMemoryExternalIdIndex();
+  /**
+   * The index of positions by provider identifier.
+   */
+  private final InMemoryIndex<ExternalId> _positionProviderIdIndex = new InMemoryIndex<ExternalId>();
+  /**
+   * The lock held while changing the stores and indexes.
+   */
+  private final Object _writeLock = new Object();
   /**
    * The supplier of identifiers.
    */
@@ -134,8 +156,11 @@ public class InMemoryPositionMaster implements PositionMaster {
     final PositionDocument clonedDoc = clonePositionDocument(document);
     setDocumentID(document, clonedDoc, uniqueId);    
     setVersionTimes(document, clonedDoc, now, null, now, null);
-    _storePositions.put(objectId, clonedDoc);
-    storeTrades(clonedDoc.getPosition().getTrades(), document.getPosition().getTrades(), uniqueId);
+    synchronized (_writeLock) {
+      _storePositions.put(objectId, clonedDoc);
+      storeTrades(clonedDoc.getPosition().getTrades(), document.getPosition().getTrades(), uniqueId);
+      index(objectId, clonedDoc);
+    }
     _changeManager.entityChanged(ChangeType.ADDED, null, uniqueId, now);
     return document;
   }
@@ -169,20 +194,24 @@ public class InMemoryPositionMaster implements PositionMaster {
     
     final UniqueId uniqueId = document.getUniqueId();
     final Instant now = Instant.now();
-    final PositionDocument storedDocument = _storePositions.get(uniqueId.getObjectId());
-    if (storedDocument == null) {
-      throw new DataNotFoundException("Position not found: " + uniqueId);
-    }
-    
-    final PositionDocument clonedDoc = clonePositionDocument(document);
-    removeTrades(storedDocument.getPosition().getTrades());
-    
-    setVersionTimes(document, clonedDoc, now, null, now, null);
-    
-    if (_storePositions.replace(uniqueId.getObjectId(), storedDocument, clonedDoc) == false) {
-      throw new IllegalArgumentException("Concurrent modification");
+    synchronized (_writeLock) {
+      final PositionDocument storedDocument = _storePositions.get(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Position not found: " + uniqueId);
+      }
+      
+      final PositionDocument clonedDoc = clonePositionDocument(document);
+      removeTrades(storedDocument.getPosition().getTrades());
+      
+      setVersionTimes(document, clonedDoc, now, null, now, null);
+      
+      if (_storePositions.replace(uniqueId.getObjectId(), storedDocument, clonedDoc) == false) {
+        throw new IllegalArgumentException("Concurrent modification");
+      }
+      storeTrades(clonedDoc.getPosition().getTrades(), document.getPosition().getTrades(), uniqueId);
+      unindex(uniqueId.getObjectId(), storedDocument);
+      index(uniqueId.getObjectId(), clonedDoc);
     }
-    storeTrades(clonedDoc.getPosition().getTrades(), document.getPosition().getTrades(), uniqueId);
     _changeManager.entityChanged(ChangeType.UPDATED, uniqueId, document.getUniqueId(), now);
     return document;
   }
@@ -214,11 +243,14 @@ public class InMemoryPositionMaster implements PositionMaster {
   @Override
   public void remove(UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
-    PositionDocument storedDocument = _storePositions.remove(uniqueId.getObjectId());
-    if (storedDocument == null) {
-      throw new DataNotFoundException("Position not found: " + uniqueId);
+    synchronized (_writeLock) {
+      PositionDocument storedDocument = _storePositions.remove(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Position not found: " + uniqueId);
+      }
+      removeTrades(storedDocument.getPosition().getTrades());
+      unindex(uniqueId.getObjectId(), storedDocument);
     }
-    removeTrades(storedDocument.getPosition().getTrades());
     _changeManager.entityChanged(ChangeType.REMOVED, uniqueId, null, Instant.now());
   }
 
@@ -227,6 +259,31 @@ public class InMemoryPositionMaster implements PositionMaster {
     return update(document);
   }
 
+  @Override
+  public List<PositionDocument> addAll(final List<PositionDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    final List<PositionDocument> result = new ArrayList<PositionDocument>(documents.size());
+    for (PositionDocument document : documents) {
+      result.add(add(document));
+    }
+    return result;
+  }
+
+  @Override
+  public List<PositionDocument> updateAll(final List<PositionDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    final List<PositionDocument> result = new ArrayList<PositionDocument>(documents.size());
+    for (PositionDocument document : documents) {
+      result.add(update(document));
+    }
+    return result;
+  }
+
+  @Override
+  public List<PositionDocument> correctAll(final List<PositionDocument> documents) {
+    return updateAll(documents);
+  }
+
   @Override
   public ChangeManager changeManager() {
     return _changeManager;
@@ -236,7 +293,7 @@ public class InMemoryPositionMaster implements PositionMaster {
   public PositionSearchResult search(PositionSearchRequest request) {
     ArgumentChecker.notNull(request, "request");
     final List<PositionDocument> list = new ArrayList<PositionDocument>();
-    for (PositionDocument doc : _storePositions.values()) {
+    for (PositionDocument doc : candidates(request)) {
       if (request.matches(doc)) {
         list.add(clonePositionDocument(doc));
       }
@@ -247,6 +304,47 @@ public class InMemoryPositionMaster implements PositionMaster {
     return result;
   }
 
+  /**
+   * Finds the documents that may match a search, using the most selective index.
+   * 
+   * @param request  the search request, not null
+   * @return the candidate documents, not null
+   */
+  @SuppressWarnings("unchecked")
+  private Collection<PositionDocument> candidates(final PositionSearchRequest request) {
+    final Set<ObjectId> objectIds = InMemoryIndex.narrowest(
+        (request.getPositionObjectIds() != null) ? new HashSet<ObjectId>(request.getPositionObjectIds()) : null,
+        _securityIdIndex.search(request.getSecurityIdSearch()),
+        (request.getPositionProviderId() != null) ? _positionProviderIdIndex.get(request.getPositionProviderId()) : null);
+    if (objectIds == null) {
+      return _storePositions.values();
+    }
+    final List<PositionDocument> documents = new ArrayList<PositionDocument>(objectIds.size());
+    for (ObjectId objectId : objectIds) {
+      final PositionDocument document = _storePositions.get(objectId);
+      if (document != null) {
+        documents.add(document);
+      }
+    }
+    return documents;
+  }
+
+  private void index(final ObjectId objectId, final PositionDocument document) {
+    final ManageablePosition position = document.getPosition();
+    if (position.getSecurityLink() != null) {
+      _securityIdIndex.addAll(position.getSecurityLink().getAllExternalIds(), objectId);
+    }
+    _positionProviderIdIndex.add(position.getProviderId(), objectId);
+  }
+
+  private void unindex(final ObjectId objectId, final PositionDocument document) {
+    final ManageablePosition position = document.getPosition();
+    if (position.getSecurityLink() != null) {
+      _securityIdIndex.removeAll(position.getSecurityLink().getAllExternalIds(), objectId);
+    }
+    _positionProviderIdIndex.remove(position.getProviderId(), objectId);
+  }
+
   @Override
   public PositionHistoryResult history(PositionHistoryRequest request) {
     throw new UnsupportedOperationException("History request not supported by InMemoryPositionMaster");
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.position.impl;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A portfolio from a {@link MasterPositionSource} with a root node that loads the tree when first used.
+ * <p>
+ * This class is mutable but the node tree is not.
+ */
+/* package */ final class LazyMasterPortfolio implements Portfolio {
+
+  /**
+   * The unique identifier.
+   */
+  private final UniqueId _uniqueId;
+  /**
+   * The name.
+   */
+  private final String _name;
+  /**
+   * The root node.
+   */
+  private final PortfolioNode _rootNode;
+  /**
+   * The attributes.
+   */
+  private final Map<String, String> _attributes = Maps.newHashMap();
+
+  /**
+   * Creates an instance.
+   *
+   * @param uniqueId  the unique identifier, not null
+   * @param name  the name, not null
+   * @param rootNode  the root node, not null
+   */
+  LazyMasterPortfolio(final UniqueId uniqueId, final String name, final PortfolioNode rootNode) {
+    _uniqueId = uniqueId;
+    _name = name;
+    _rootNode = rootNode;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UniqueId getUniqueId() {
+    return _uniqueId;
+  }
+
+  @Override
+  public String getName() {
+    return _name;
+  }
+
+  @Override
+  public PortfolioNode getRootNode() {
+    return _rootNode;
+  }
+
+  @Override
+  public Map<String, String> getAttributes() {
+    return _attributes;
+  }
+
+  @Override
+  public void setAttributes(final Map<String, String> attributes) {
+    ArgumentChecker.notNull(attributes, "attributes");
+    _attributes.clear();
+    _attributes.putAll(attributes);
+  }
+
+  @Override
+  public void addAttribute(final String key, final String value) {
+    ArgumentChecker.notNull(key, "key");
+    ArgumentChecker.notNull(value, "value");
+    _attributes.put(key, value);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "Portfolio[uniqueId=" + _uniqueId + "]";
+  }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.position.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.opengamma.core.position.PortfolioNode;
+import com.opengamma.core.position.Position;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.portfolio.ManageablePortfolioNode;
+import com.opengamma.master.portfolio.PortfolioNodeLoader;
+import com.opengamma.master.portfolio.PortfolioNodeTree;
+import com.opengamma.master.position.ManageablePosition;
+import com.opengamma.master.position.PositionDocument;
+import com.opengamma.master.position.PositionSearchRequest;
+import com.opengamma.master.position.PositionSearchResult;
+import com.opengamma.util.paging.PagingRequest;
+
+/**
+ * A portfolio node from a {@link MasterPositionSource} that loads its child nodes and positions when first used.
+ * <p>
+ * The node is created from a partially loaded tree. If the tree already holds the child nodes they are
+ * used directly, otherwise the subtree below this node is loaded to the configured depth. The position
+ * identifiers are loaded in pages, each page of positions being fetched from the position master in one search.
+ * <p>
+ * This class is thread-safe.
+ */
+/* package */ final class LazyMasterPortfolioNode implements PortfolioNode {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(LazyMasterPortfolioNode.class);
+
+  /**
+   * The number of position identifiers to load at a time.
+   */
+  private static final int POSITION_PAGE_SIZE = 1000;
+
+  /**
+   * The source that created the node.
+   */
+  private final MasterPositionSource _source;
+  /**
+   * The loader.
+   */
+  private final PortfolioNodeLoader _loader;
+  /**
+   * The version-correction to load positions at, null for the latest.
+   */
+  private final VersionCorrection _versionCorrection;
+  /**
+   * The number of levels of nodes to load at a time.
+   */
+  private final int _depth;
+  /**
+   * The unique identifier.
+   */
+  private final UniqueId _uniqueId;
+  /**
+   * The parent node unique identifier, null if root.
+   */
+  private final UniqueId _parentNodeId;
+  /**
+   * The name.
+   */
+  private final String _name;
+  /**
+   * The number of child nodes.
+   */
+  private final int _childCount;
+  /**
+   * The number of positions.
+   */
+  private final int _positionCount;
+  /**
+   * The tree this node was loaded in, null once the child nodes are loaded.
+   */
+  private PortfolioNodeTree _tree;
+  /**
+   * The loaded node, null once the child nodes are loaded.
+   */
+  private ManageablePortfolioNode _node;
+  /**
+   * The child nodes, null until loaded.
+   */
+  private volatile List<PortfolioNode> _childNodes;
+  /**
+   * The positions, null until loaded.
+   */
+  private volatile List<Position> _positions;
+
+  /**
+   * Creates an instance.
+   *
+   * @param source  the source creating the node, not null
+   * @param loader  the loader, not null
+   * @param versionCorrection  the version-correction to load positions at, null for the latest
+   * @param depth  the number of levels of nodes to load at a time
+   * @param tree  the tree containing the node, not null
+   * @param node  the node, not null
+   */
+  LazyMasterPortfolioNode(final MasterPositionSource source, final PortfolioNodeLoader loader, final VersionCorrection versionCorrection, final int depth,
+      final PortfolioNodeTree tree, final ManageablePortfolioNode node) {
+    _source = source;
+    _loader = loader;
+    _versionCorrection = versionCorrection;
+    _depth = depth;
+    _uniqueId = node.getUniqueId();
+    _parentNodeId = node.getParentNodeId();
+    _name = node.getName();
+    _childCount = tree.getChildCount(_uniqueId);
+    _positionCount = tree.getPositionCount(_uniqueId);
+    _tree = tree;
+    _node = node;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public UniqueId getUniqueId() {
+    return _uniqueId;
+  }
+
+  @Override
+  public UniqueId getParentNodeId() {
+    return _parentNodeId;
+  }
+
+  @Override
+  public int size() {
+    return _childCount + _positionCount;
+  }
+
+  @Override
+  public String getName() {
+    return _name;
+  }
+
+  @Override
+  public List<PortfolioNode> getChildNodes() {
+    if (_childNodes == null) {
+      synchronized (this) {
+        if (_childNodes == null) {
+          _childNodes = loadChildNodes();
+          // release the tree so that it can be collected once all its nodes are loaded
+          _tree = null;
+          _node = null;
+        }
+      }
+    }
+    return _childNodes;
+  }
+
+  private List<PortfolioNode> loadChildNodes() {
+    if (_childCount == 0) {
+      return Collections.emptyList();
+    }
+    PortfolioNodeTree tree = _tree;
+    ManageablePortfolioNode node = _node;
+    if (tree.isChildNodesLoaded(node) == false) {
+      tree = _loader.getNodeTree(_uniqueId, Math.max(_depth, 1));
+      node = tree.getRootNode();
+    }
+    final List<PortfolioNode> childNodes = new ArrayList<PortfolioNode>(node.getChildNodes().size());
+    for (ManageablePortfolioNode child : node.getChildNodes()) {
+      childNodes.add(new LazyMasterPortfolioNode(_source, _loader, _versionCorrection, _depth, tree, child));
+    }
+    return Collections.unmodifiableList(childNodes);
+  }
+
+  @Override
+  public List<Position> getPositions() {
+    if (_positions == null) {
+      synchronized (this) {
+        if (_positions == null) {
+          _positions = loadPositions();
+        }
+      }
+    }
+    return _positions;
+  }
+
+  private List<Position> loadPositions() {
+    if (_positionCount == 0) {
+      return Collections.emptyList();
+    }
+    final List<Position> positions = new ArrayList<Position>(_positionCount);
+    int first = 0;
+    List<ObjectId> positionIds;
+    do {
+      positionIds = _loader.getNodePositionIds(_uniqueId, PagingRequest.ofIndex(first, POSITION_PAGE_SIZE));
+      if (positionIds.isEmpty()) {
+        break;
+      }
+      final PositionSearchRequest positionSearch = new PositionSearchRequest();
+      positionSearch.setPositionObjectIds(positionIds);
+      if (_versionCorrection != null) {
+        positionSearch.setVersionCorrection(_versionCorrection);
+      }
+      final PositionSearchResult result = _source.getPositionMaster().search(positionSearch);
+      final Map<ObjectId, ManageablePosition> found = Maps.newHashMapWithExpectedSize(positionIds.size());
+      for (PositionDocument position : result.getDocuments()) {
+        found.put(position.getObjectId(), position.getPosition());
+      }
+      for (ObjectId positionId : positionIds) {
+        final ManageablePosition position = found.get(positionId);
+        if (position != null) {
+          positions.add(_source.convertPosition(_uniqueId, position));
+        } else {
+          s_logger.warn("Position {} not found for portfolio node {}", positionId, _uniqueId);
+        }
+      }
+      first += positionIds.size();
+    } while (positionIds.size() == POSITION_PAGE_SIZE);
+    return Collections.unmodifiableList(positions);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "PortfolioNode[uniqueId=" + _uniqueId + "]";
+  }
+
+}
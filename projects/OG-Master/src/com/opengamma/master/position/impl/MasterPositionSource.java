@@ -31,6 +31,8 @@ import com.opengamma.master.VersionedSource;
 import com.opengamma.master.portfolio.ManageablePortfolio;
 import com.opengamma.master.portfolio.ManageablePortfolioNode;
 import com.opengamma.master.portfolio.PortfolioMaster;
+import com.opengamma.master.portfolio.PortfolioNodeLoader;
+import com.opengamma.master.portfolio.PortfolioNodeTree;
 import com.opengamma.master.portfolio.PortfolioSearchRequest;
 import com.opengamma.master.portfolio.PortfolioSearchResult;
 import com.opengamma.master.position.ManageablePosition;
@@ -47,6 +49,11 @@ import com.opengamma.util.PublicSPI;
  * <p>
  * The {@link PositionSource} interface provides securities to the engine via a narrow API.
  * This class provides the source on top of a standard {@link PortfolioMaster}.
+ * <p>
+ * By default each portfolio is loaded in full, with all its positions. If a lazy load depth is set
+ * and the portfolio master is a {@link PortfolioNodeLoader}, portfolios are instead loaded a subtree
+ * at a time as the nodes are used, and the positions of each node are only loaded when requested.
+ * This suits browsing or partial use of large portfolios, but is slower for walking the whole tree.
  */
 @PublicSPI
 public class MasterPositionSource implements PositionSource, VersionedSource {
@@ -66,6 +73,10 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
    * The version-correction locator to search at, null to not override versions.
    */
   private volatile VersionCorrection _versionCorrection;
+  /**
+   * The number of levels of nodes to load at a time, negative to load portfolios in full.
+   */
+  private volatile int _lazyLoadDepth = -1;
 
   /**
    * Creates an instance with underlying masters which does not override versions.
@@ -130,11 +141,49 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
     _versionCorrection = versionCorrection;
   }
 
+  /**
+   * Gets the number of levels of portfolio nodes to load at a time.
+   * 
+   * @return the depth, negative if portfolios are loaded in full
+   */
+  public int getLazyLoadDepth() {
+    return _lazyLoadDepth;
+  }
+
+  /**
+   * Sets the number of levels of portfolio nodes to load at a time.
+   * <p>
+   * This only has an effect if the portfolio master is a {@link PortfolioNodeLoader}.
+   * 
+   * @param lazyLoadDepth  the depth, negative to load portfolios in full
+   */
+  public void setLazyLoadDepth(final int lazyLoadDepth) {
+    _lazyLoadDepth = lazyLoadDepth;
+  }
+
+  /**
+   * Gets the portfolio master as a node loader if portfolios are loaded lazily.
+   * 
+   * @return the loader, null if portfolios are loaded in full
+   */
+  private PortfolioNodeLoader getNodeLoader() {
+    if (getLazyLoadDepth() >= 0 && getPortfolioMaster() instanceof PortfolioNodeLoader) {
+      return (PortfolioNodeLoader) getPortfolioMaster();
+    }
+    return null;
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public Portfolio getPortfolio(final UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
     final VersionCorrection vc = getVersionCorrection();  // lock against change
+    final PortfolioNodeLoader loader = getNodeLoader();
+    if (loader != null) {
+      final int depth = getLazyLoadDepth();
+      final PortfolioNodeTree tree = (vc != null ? loader.getPortfolioTree(uniqueId, vc, depth) : loader.getPortfolioTree(uniqueId, depth));
+      return createLazyPortfolio(loader, tree, vc, depth);
+    }
     ManageablePortfolio manPrt;
     if (vc != null) {
       manPrt = getPortfolioMaster().get(uniqueId, vc).getPortfolio();
@@ -147,7 +196,15 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
     return prt;
   }
 
-  private void copyAttributes(ManageablePortfolio manPrt, SimplePortfolio prt) {
+  private Portfolio createLazyPortfolio(final PortfolioNodeLoader loader, final PortfolioNodeTree tree, final VersionCorrection vc, final int depth) {
+    final ManageablePortfolio manPrt = tree.getDocument().getPortfolio();
+    final LazyMasterPortfolioNode rootNode = new LazyMasterPortfolioNode(this, loader, vc, depth, tree, tree.getRootNode());
+    final LazyMasterPortfolio prt = new LazyMasterPortfolio(manPrt.getUniqueId(), manPrt.getName(), rootNode);
+    copyAttributes(manPrt, prt);
+    return prt;
+  }
+
+  private void copyAttributes(ManageablePortfolio manPrt, Portfolio prt) {
     if (manPrt.getAttributes() != null) {
       for (Entry<String, String> entry : manPrt.getAttributes().entrySet()) {
         if (entry.getKey() != null && entry.getValue() != null) {
@@ -161,6 +218,11 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
   public Portfolio getPortfolio(ObjectId objectId, VersionCorrection versionCorrection) {
     ArgumentChecker.notNull(objectId, "objectId");
     ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    final PortfolioNodeLoader loader = getNodeLoader();
+    if (loader != null) {
+      final int depth = getLazyLoadDepth();
+      return createLazyPortfolio(loader, loader.getPortfolioTree(objectId, versionCorrection, depth), versionCorrection, depth);
+    }
     ManageablePortfolio manPrt = getPortfolioMaster().get(objectId, versionCorrection).getPortfolio();
     SimplePortfolio prt = new SimplePortfolio(manPrt.getUniqueId(), manPrt.getName());
     convertNode(manPrt.getRootNode(), prt.getRootNode(), versionCorrection);
@@ -184,6 +246,12 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
         manNode = manPrt.getRootNode().findNodeByObjectId(uniqueId);
       }
     } else {
+      final PortfolioNodeLoader loader = getNodeLoader();
+      if (loader != null) {
+        final int depth = getLazyLoadDepth();
+        final PortfolioNodeTree tree = loader.getNodeTree(uniqueId, depth);
+        return new LazyMasterPortfolioNode(this, loader, null, depth, tree, tree.getRootNode());
+      }
       // match by uniqueId
       manNode = getPortfolioMaster().getNode(uniqueId);
     }
@@ -376,6 +444,9 @@ public class MasterPositionSource implements PositionSource, VersionedSource {
     if (getVersionCorrection() != null) {
       str += ",versionCorrection=" + getVersionCorrection();
     }
+    if (getLazyLoadDepth() >= 0) {
+      str += ",lazyLoadDepth=" + getLazyLoadDepth();
+    }
     return str + "]";
   }
 
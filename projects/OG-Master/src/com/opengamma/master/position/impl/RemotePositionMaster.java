@@ -6,11 +6,13 @@
 package com.opengamma.master.position.impl;
 
 import java.net.URI;
+import java.util.List;
 
 import com.opengamma.core.change.ChangeManager;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.BulkMaster;
 import com.opengamma.master.impl.AbstractRemoteMaster;
 import com.opengamma.master.portfolio.PortfolioMaster;
 import com.opengamma.master.position.ManageableTrade;
@@ -21,11 +23,12 @@ import com.opengamma.master.position.PositionMaster;
 import com.opengamma.master.position.PositionSearchRequest;
 import com.opengamma.master.position.PositionSearchResult;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 
 /**
  * Provides access to a remote {@link PortfolioMaster}.
  */
-public class RemotePositionMaster extends AbstractRemoteMaster implements PositionMaster {
+public class RemotePositionMaster extends AbstractRemoteMaster implements PositionMaster, BulkMaster<PositionDocument> {
 
   /**
    * Creates an instance.
@@ -87,6 +90,18 @@ public class RemotePositionMaster extends AbstractRemoteMaster implements Positi
     return accessRemote(uri).post(PositionDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<PositionDocument> addAll(final List<PositionDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (PositionDocument document : documents) {
+      ArgumentChecker.notNull(document.getPosition(), "document.position");
+    }
+    
+    URI uri = DataPositionMasterResource.uriAddAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public PositionDocument update(final PositionDocument document) {
@@ -98,6 +113,19 @@ public class RemotePositionMaster extends AbstractRemoteMaster implements Positi
     return accessRemote(uri).post(PositionDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<PositionDocument> updateAll(final List<PositionDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (PositionDocument document : documents) {
+      ArgumentChecker.notNull(document.getPosition(), "document.position");
+      ArgumentChecker.notNull(document.getUniqueId(), "document.uniqueId");
+    }
+    
+    URI uri = DataPositionMasterResource.uriUpdateAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public void remove(final UniqueId uniqueId) {
@@ -128,6 +156,19 @@ public class RemotePositionMaster extends AbstractRemoteMaster implements Positi
     return accessRemote(uri).post(PositionDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<PositionDocument> correctAll(final List<PositionDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (PositionDocument document : documents) {
+      ArgumentChecker.notNull(document.getPosition(), "document.position");
+      ArgumentChecker.notNull(document.getUniqueId(), "document.uniqueId");
+    }
+    
+    URI uri = DataPositionMasterResource.uriCorrectAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public ManageableTrade getTrade(final UniqueId tradeId) {
@@ -6,6 +6,7 @@
 package com.opengamma.master.security.impl;
 
 import java.net.URI;
+import java.util.List;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.HEAD;
@@ -18,6 +19,7 @@ import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import com.opengamma.id.ObjectId;
+import com.opengamma.master.BulkMasterUtils;
 import com.opengamma.master.security.SecurityDocument;
 import com.opengamma.master.security.SecurityMaster;
 import com.opengamma.master.security.SecurityMetaDataRequest;
@@ -25,6 +27,7 @@ import com.opengamma.master.security.SecurityMetaDataResult;
 import com.opengamma.master.security.SecuritySearchRequest;
 import com.opengamma.master.security.SecuritySearchResult;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.opengamma.util.rest.AbstractDataResource;
 import com.opengamma.util.rest.RestUtils;
 
@@ -97,6 +100,27 @@ public class DataSecurityMasterResource extends AbstractDataResource {
     return responseCreatedFudge(createdUri, result);
   }
 
+  @POST
+  @Path("securityBulkAdds")
+  public Response addAll(FudgeListWrapper<SecurityDocument> request) {
+    List<SecurityDocument> result = BulkMasterUtils.addAll(getSecurityMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
+  @POST
+  @Path("securityBulkUpdates")
+  public Response updateAll(FudgeListWrapper<SecurityDocument> request) {
+    List<SecurityDocument> result = BulkMasterUtils.updateAll(getSecurityMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
+  @POST
+  @Path("securityBulkCorrections")
+  public Response correctAll(FudgeListWrapper<SecurityDocument> request) {
+    List<SecurityDocument> result = BulkMasterUtils.correctAll(getSecurityMaster(), request.getList());
+    return responseOkFudge(FudgeListWrapper.of(result));
+  }
+
   //-------------------------------------------------------------------------
   @Path("securities/{securityId}")
   public DataSecurityResource findSecurity(@PathParam("securityId") String idStr) {
@@ -142,4 +166,37 @@ public class DataSecurityMasterResource extends AbstractDataResource {
     return bld.build();
   }
 
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriAddAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("securityBulkAdds");
+    return bld.build();
+  }
+
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriUpdateAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("securityBulkUpdates");
+    return bld.build();
+  }
+
+  /**
+   * Builds a URI.
+   * 
+   * @param baseUri  the base URI, not null
+   * @return the URI, not null
+   */
+  public static URI uriCorrectAll(URI baseUri) {
+    UriBuilder bld = UriBuilder.fromUri(baseUri).path("securityBulkCorrections");
+    return bld.build();
+  }
+
 }
@@ -6,6 +6,7 @@
 package com.opengamma.master.security.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,6 +25,10 @@ import com.opengamma.id.ObjectIdSupplier;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.BulkMaster;
+import com.opengamma.master.impl.InMemoryExternalIdIndex;
+import com.opengamma.master.impl.InMemoryIndex;
+import com.opengamma.master.impl.InMemoryNameIndex;
 import com.opengamma.master.security.ManageableSecurity;
 import com.opengamma.master.security.SecurityDocument;
 import com.opengamma.master.security.SecurityHistoryRequest;
@@ -40,8 +45,13 @@ import com.opengamma.util.paging.Paging;
  * A simple, in-memory implementation of {@code SecurityMaster}.
  * <p>
  * This security master does not support versioning of securities.
+ * <p>
+ * Securities are indexed by external identifier, name and security type, so that searches
+ * on those fields do not scan every security. Searches do not lock, while changes are made
+ * one at a time. A search running at the same time as a change sees each security either
+ * before or after the change.
  */
-public class InMemorySecurityMaster implements SecurityMaster {
+public class InMemorySecurityMaster implements SecurityMaster, BulkMaster<SecurityDocument> {
   // TODO: This is not hardened for production, as the data in the master can
   // be altered from outside as it is the same object
 
@@ -54,6 +64,22 @@ public class InMemorySecurityMaster implements SecurityMaster {
    * A cache of securities by identifier.
    */
   private final ConcurrentMap<ObjectId, SecurityDocument> _store = new ConcurrentHashMap<ObjectId, SecurityDocument>();
+  /**
+   * The index of securities by external identifier.
+   */
+  private final InMemoryExternalIdIndex _externalIdIndex = new InMemoryExternalIdIndex();
+  /**
+   * The index of securities by name.
+   */
+  private final InMemoryNameIndex _nameIndex = new InMemoryNameIndex();
+  /**
+   * The index of securities by type.
+   */
+  private final InMemoryIndex<String> _securityTypeIndex = new InMemoryIndex<String>();
+  /**
+   * The lock held while changing the store and indexes.
+   */
+  private final Object _writeLock = new Object();
   /**
    * The supplied of identifiers.
    */
@@ -107,11 +133,7 @@ public class InMemorySecurityMaster implements SecurityMaster {
     ArgumentChecker.notNull(request, "request");
     SecurityMetaDataResult result = new SecurityMetaDataResult();
     if (request.isSecurityTypes()) {
-      Set<String> types = new HashSet<String>();
-      for (SecurityDocument doc : _store.values()) {
-        types.add(doc.getSecurity().getSecurityType());
-      }
-      result.getSecurityTypes().addAll(types);
+      result.getSecurityTypes().addAll(_securityTypeIndex.keySet());
     }
     return result;
   }
@@ -121,7 +143,7 @@ public class InMemorySecurityMaster implements SecurityMaster {
   public SecuritySearchResult search(final SecuritySearchRequest request) {
     ArgumentChecker.notNull(request, "request");
     final List<SecurityDocument> list = new ArrayList<SecurityDocument>();
-    for (SecurityDocument doc : _store.values()) {
+    for (SecurityDocument doc : candidates(request)) {
       if (request.matches(doc)) {
         list.add(doc);
       }
@@ -132,6 +154,50 @@ public class InMemorySecurityMaster implements SecurityMaster {
     return result;
   }
 
+  /**
+   * Finds the documents that may match a search, using the most selective index.
+   * 
+   * @param request  the search request, not null
+   * @return the candidate documents, not null
+   */
+  @SuppressWarnings("unchecked")
+  private Collection<SecurityDocument> candidates(final SecuritySearchRequest request) {
+    final Set<ObjectId> objectIds = InMemoryIndex.narrowest(
+        (request.getObjectIds() != null) ? new HashSet<ObjectId>(request.getObjectIds()) : null,
+        _externalIdIndex.search(request.getExternalIdSearch()),
+        _nameIndex.search(request.getName()),
+        (request.getSecurityType() != null) ? _securityTypeIndex.get(request.getSecurityType()) : null);
+    if (objectIds == null) {
+      return _store.values();
+    }
+    final List<SecurityDocument> documents = new ArrayList<SecurityDocument>(objectIds.size());
+    for (ObjectId objectId : objectIds) {
+      final SecurityDocument document = _store.get(objectId);
+      if (document != null) {
+        documents.add(document);
+      }
+    }
+    return documents;
+  }
+
+  private void index(final ObjectId objectId, final SecurityDocument document) {
+    final ManageableSecurity security = document.getSecurity();
+    if (security.getExternalIdBundle() != null) {
+      _externalIdIndex.addAll(security.getExternalIdBundle(), objectId);
+    }
+    _nameIndex.add(document.getName(), objectId);
+    _securityTypeIndex.add(security.getSecurityType(), objectId);
+  }
+
+  private void unindex(final ObjectId objectId, final SecurityDocument document) {
+    final ManageableSecurity security = document.getSecurity();
+    if (security.getExternalIdBundle() != null) {
+      _externalIdIndex.removeAll(security.getExternalIdBundle(), objectId);
+    }
+    _nameIndex.remove(document.getName(), objectId);
+    _securityTypeIndex.remove(security.getSecurityType(), objectId);
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public SecurityDocument get(final UniqueId uniqueId) {
@@ -164,7 +230,10 @@ public class InMemorySecurityMaster implements SecurityMaster {
     final SecurityDocument doc = new SecurityDocument(security);
     doc.setVersionFromInstant(now);
     doc.setCorrectionFromInstant(now);
-    _store.put(objectId, doc);
+    synchronized (_writeLock) {
+      _store.put(objectId, doc);
+      index(objectId, doc);
+    }
     _changeManager.entityChanged(ChangeType.ADDED, null, uniqueId, now);
     return doc;
   }
@@ -178,16 +247,20 @@ public class InMemorySecurityMaster implements SecurityMaster {
     
     final UniqueId uniqueId = document.getUniqueId();
     final Instant now = Instant.now();
-    final SecurityDocument storedDocument = _store.get(uniqueId.getObjectId());
-    if (storedDocument == null) {
-      throw new DataNotFoundException("Security not found: " + uniqueId);
-    }
-    document.setVersionFromInstant(now);
-    document.setVersionToInstant(null);
-    document.setCorrectionFromInstant(now);
-    document.setCorrectionToInstant(null);
-    if (_store.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
-      throw new IllegalArgumentException("Concurrent modification");
+    synchronized (_writeLock) {
+      final SecurityDocument storedDocument = _store.get(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Security not found: " + uniqueId);
+      }
+      document.setVersionFromInstant(now);
+      document.setVersionToInstant(null);
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      if (_store.replace(uniqueId.getObjectId(), storedDocument, document) == false) {
+        throw new IllegalArgumentException("Concurrent modification");
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
+      index(uniqueId.getObjectId(), document);
     }
     _changeManager.entityChanged(ChangeType.UPDATED, uniqueId, document.getUniqueId(), now);
     return document;
@@ -197,8 +270,12 @@ public class InMemorySecurityMaster implements SecurityMaster {
   @Override
   public void remove(final UniqueId uniqueId) {
     ArgumentChecker.notNull(uniqueId, "uniqueId");
-    if (_store.remove(uniqueId.getObjectId()) == null) {
-      throw new DataNotFoundException("Security not found: " + uniqueId);
+    synchronized (_writeLock) {
+      final SecurityDocument storedDocument = _store.remove(uniqueId.getObjectId());
+      if (storedDocument == null) {
+        throw new DataNotFoundException("Security not found: " + uniqueId);
+      }
+      unindex(uniqueId.getObjectId(), storedDocument);
     }
     _changeManager.entityChanged(ChangeType.REMOVED, uniqueId, null, Instant.now());
   }
@@ -224,6 +301,32 @@ public class InMemorySecurityMaster implements SecurityMaster {
     return result;
   }
 
+  //-------------------------------------------------------------------------
+  @Override
+  public List<SecurityDocument> addAll(final List<SecurityDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    final List<SecurityDocument> result = new ArrayList<SecurityDocument>(documents.size());
+    for (SecurityDocument document : documents) {
+      result.add(add(document));
+    }
+    return result;
+  }
+
+  @Override
+  public List<SecurityDocument> updateAll(final List<SecurityDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    final List<SecurityDocument> result = new ArrayList<SecurityDocument>(documents.size());
+    for (SecurityDocument document : documents) {
+      result.add(update(document));
+    }
+    return result;
+  }
+
+  @Override
+  public List<SecurityDocument> correctAll(final List<SecurityDocument> documents) {
+    return updateAll(documents);
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public ChangeManager changeManager() {
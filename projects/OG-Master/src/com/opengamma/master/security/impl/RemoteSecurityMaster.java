@@ -6,11 +6,13 @@
 package com.opengamma.master.security.impl;
 
 import java.net.URI;
+import java.util.List;
 
 import com.opengamma.core.change.ChangeManager;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.BulkMaster;
 import com.opengamma.master.impl.AbstractRemoteMaster;
 import com.opengamma.master.security.SecurityDocument;
 import com.opengamma.master.security.SecurityHistoryRequest;
@@ -21,11 +23,12 @@ import com.opengamma.master.security.SecurityMetaDataResult;
 import com.opengamma.master.security.SecuritySearchRequest;
 import com.opengamma.master.security.SecuritySearchResult;
 import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 
 /**
  * Provides access to a remote {@link SecurityMaster}.
  */
-public class RemoteSecurityMaster extends AbstractRemoteMaster implements SecurityMaster {
+public class RemoteSecurityMaster extends AbstractRemoteMaster implements SecurityMaster, BulkMaster<SecurityDocument> {
 
   /**
    * Creates an instance.
@@ -96,6 +99,18 @@ public class RemoteSecurityMaster extends AbstractRemoteMaster implements Securi
     return accessRemote(uri).post(SecurityDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<SecurityDocument> addAll(final List<SecurityDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (SecurityDocument document : documents) {
+      ArgumentChecker.notNull(document.getSecurity(), "document.security");
+    }
+    
+    URI uri = DataSecurityMasterResource.uriAddAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public SecurityDocument update(final SecurityDocument document) {
@@ -107,6 +122,19 @@ public class RemoteSecurityMaster extends AbstractRemoteMaster implements Securi
     return accessRemote(uri).post(SecurityDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<SecurityDocument> updateAll(final List<SecurityDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (SecurityDocument document : documents) {
+      ArgumentChecker.notNull(document.getSecurity(), "document.security");
+      ArgumentChecker.notNull(document.getUniqueId(), "document.uniqueId");
+    }
+    
+    URI uri = DataSecurityMasterResource.uriUpdateAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public void remove(final UniqueId uniqueId) {
@@ -137,4 +165,17 @@ public class RemoteSecurityMaster extends AbstractRemoteMaster implements Securi
     return accessRemote(uri).post(SecurityDocument.class, document);
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public List<SecurityDocument> correctAll(final List<SecurityDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (SecurityDocument document : documents) {
+      ArgumentChecker.notNull(document.getSecurity(), "document.security");
+      ArgumentChecker.notNull(document.getUniqueId(), "document.uniqueId");
+    }
+    
+    URI uri = DataSecurityMasterResource.uriCorrectAll(getBaseUri());
+    return accessRemote(uri).post(FudgeListWrapper.class, FudgeListWrapper.of(documents)).getList();
+  }
+
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.security.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.master.security.ManageableSecurity;
+import com.opengamma.master.security.SecurityDocument;
+import com.opengamma.master.security.SecuritySearchRequest;
+
+/**
+ * Measures the latency of indexed searches of {@link InMemorySecurityMaster} against the number of securities.
+ * <p>
+ * With the indexes the search times should stay roughly constant as the master grows.
+ */
+public class InMemorySecurityMasterSearchPerformanceTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(InMemorySecurityMasterSearchPerformanceTest.class);
+  private static final int SEARCHES = 1000;
+
+  @DataProvider(name = "sizes")
+  public Object[][] data_sizes() {
+    return new Object[][] {{1000}, {10000}, {100000}, {1000000}};
+  }
+
+  @Test(dataProvider = "sizes")
+  public void test_search(final int size) {
+    final InMemorySecurityMaster master = new InMemorySecurityMaster();
+    for (int i = 0; i < size; i++) {
+      final ExternalIdBundle bundle = ExternalIdBundle.of(ExternalId.of("TICKER", "T" + i), ExternalId.of("ISIN", "I" + i));
+      master.add(new SecurityDocument(new ManageableSecurity(null, "Security " + i, "EQUITY", bundle)));
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < SEARCHES; i++) {
+      final SecuritySearchRequest request = new SecuritySearchRequest(ExternalId.of("TICKER", "T" + (i * 7919 % size)));
+      assertEquals(1, master.search(request).getDocuments().size());
+    }
+    final long externalIdNanos = (System.nanoTime() - start) / SEARCHES;
+    start = System.nanoTime();
+    for (int i = 0; i < SEARCHES; i++) {
+      final SecuritySearchRequest request = new SecuritySearchRequest();
+      request.setName("Security " + (i * 7919 % size));
+      assertEquals(1, master.search(request).getDocuments().size());
+    }
+    final long nameNanos = (System.nanoTime() - start) / SEARCHES;
+    s_logger.info("{} securities: external id search {}us, name search {}us",
+        new Object[] {size, externalIdNanos / 1000, nameNanos / 1000});
+  }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ExternalIdSearch;
+import com.opengamma.id.ExternalIdSearchType;
+import com.opengamma.id.ObjectId;
+
+/**
+ * Test {@link InMemoryExternalIdIndex}.
+ */
+@Test
+public class InMemoryExternalIdIndexTest {
+
+  private static final ExternalId ID_A = ExternalId.of("S", "A");
+  private static final ExternalId ID_B = ExternalId.of("S", "B");
+  private static final ExternalId ID_C = ExternalId.of("S", "C");
+  private static final ObjectId OID1 = ObjectId.of("Test", "1");
+  private static final ObjectId OID2 = ObjectId.of("Test", "2");
+
+  private InMemoryExternalIdIndex populated() {
+    final InMemoryExternalIdIndex test = new InMemoryExternalIdIndex();
+    test.addAll(ExternalIdBundle.of(ID_A, ID_B), OID1);
+    test.addAll(ExternalIdBundle.of(ID_B, ID_C), OID2);
+    return test;
+  }
+
+  public void test_get() {
+    final InMemoryExternalIdIndex test = populated();
+    assertEquals(Sets.newHashSet(OID1), test.get(ID_A));
+    assertEquals(Sets.newHashSet(OID1, OID2), test.get(ID_B));
+    assertEquals(0, test.get(ExternalId.of("S", "D")).size());
+    assertEquals(Sets.newHashSet(ID_A, ID_B, ID_C), test.keySet());
+  }
+
+  public void test_search_any() {
+    final InMemoryExternalIdIndex test = populated();
+    assertEquals(Sets.newHashSet(OID1, OID2), test.search(new ExternalIdSearch(ID_A, ID_C)));
+  }
+
+  public void test_search_all() {
+    final InMemoryExternalIdIndex test = populated();
+    final Set<ObjectId> result = test.search(new ExternalIdSearch(Sets.newHashSet(ID_A, ID_B), ExternalIdSearchType.ALL));
+    assertEquals(Sets.newHashSet(OID1), result);
+  }
+
+  public void test_search_none() {
+    final InMemoryExternalIdIndex test = populated();
+    assertNull(test.search(new ExternalIdSearch(Sets.newHashSet(ID_A), ExternalIdSearchType.NONE)));
+    assertNull(test.search(null));
+  }
+
+  public void test_removeAll() {
+    final InMemoryExternalIdIndex test = populated();
+    test.removeAll(ExternalIdBundle.of(ID_A, ID_B), OID1);
+    assertEquals(0, test.get(ID_A).size());
+    assertEquals(Sets.newHashSet(OID2), test.get(ID_B));
+    assertEquals(Sets.newHashSet(ID_B, ID_C), test.keySet());
+  }
+
+  @SuppressWarnings("unchecked")
+  public void test_narrowest() {
+    final Set<ObjectId> small = Collections.singleton(OID1);
+    final Set<ObjectId> large = Sets.newHashSet(OID1, OID2);
+    assertSame(small, InMemoryIndex.narrowest(large, null, small));
+    assertNull(InMemoryIndex.narrowest(null, null));
+  }
+
+}
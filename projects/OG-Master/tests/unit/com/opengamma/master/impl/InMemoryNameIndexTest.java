@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.master.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+import com.opengamma.id.ObjectId;
+
+/**
+ * Test {@link InMemoryNameIndex}.
+ */
+@Test
+public class InMemoryNameIndexTest {
+
+  private static final ObjectId OID1 = ObjectId.of("Test", "1");
+  private static final ObjectId OID2 = ObjectId.of("Test", "2");
+  private static final ObjectId OID3 = ObjectId.of("Test", "3");
+
+  private InMemoryNameIndex populated() {
+    final InMemoryNameIndex test = new InMemoryNameIndex();
+    test.add("Vodafone", OID1);
+    test.add("VOD LN Equity", OID2);
+    test.add("Apple", OID3);
+    return test;
+  }
+
+  public void test_search_exact() {
+    final InMemoryNameIndex test = populated();
+    assertEquals(Sets.newHashSet(OID1), test.search("vodafone"));
+    assertEquals(0, test.search("Vod").size());
+  }
+
+  public void test_search_prefix() {
+    final InMemoryNameIndex test = populated();
+    assertEquals(Sets.newHashSet(OID1, OID2), test.search("VOD*"));
+    assertEquals(Sets.newHashSet(OID1, OID2), test.search("vo?afone"));
+    assertEquals(Sets.newHashSet(OID3), test.search("A*"));
+    assertEquals(0, test.search("B*").size());
+  }
+
+  public void test_search_notNarrowed() {
+    final InMemoryNameIndex test = populated();
+    assertNull(test.search(null));
+    assertNull(test.search("*fone"));
+    assertNull(test.search("?od*"));
+  }
+
+  public void test_remove() {
+    final InMemoryNameIndex test = populated();
+    test.remove("VODAFONE", OID1);
+    assertEquals(Sets.newHashSet(OID2), test.search("Vod*"));
+    test.remove("Unknown", OID1);
+    test.remove(null, OID1);
+  }
+
+}
@@ -13,6 +13,7 @@ import static org.testng.AssertJUnit.assertSame;
 
 import java.math.BigDecimal;
 import java.net.URI;
+import java.util.Collections;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
@@ -25,6 +26,7 @@ import com.opengamma.id.UniqueId;
 import com.opengamma.master.position.ManageablePosition;
 import com.opengamma.master.position.PositionDocument;
 import com.opengamma.master.position.PositionMaster;
+import com.opengamma.util.fudgemsg.FudgeListWrapper;
 import com.sun.jersey.api.client.ClientResponse.Status;
 
 /**
@@ -61,6 +63,22 @@ public class DataPositionMasterResourceTest {
     assertSame(result, test.getEntity());
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testAddAllPositions() {
+    final ManageablePosition target = new ManageablePosition();
+    target.setQuantity(BigDecimal.ONE);
+    final PositionDocument request = new PositionDocument(target);
+    
+    final PositionDocument result = new PositionDocument(target);
+    result.setUniqueId(UID);
+    when(_underlying.add(same(request))).thenReturn(result);
+    
+    Response test = _resource.addAll(FudgeListWrapper.of(Collections.singletonList(request)));
+    assertEquals(Status.OK.getStatusCode(), test.getStatus());
+    assertEquals(Collections.singletonList(result), ((FudgeListWrapper<PositionDocument>) test.getEntity()).getList());
+  }
+
   @Test
   public void testFindPosition() {
     DataPositionResource test = _resource.findPosition("Test~A");
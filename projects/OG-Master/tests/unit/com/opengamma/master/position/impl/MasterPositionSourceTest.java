@@ -6,6 +6,7 @@
 package com.opengamma.master.position.impl;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,6 +14,8 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
 
 import javax.time.Instant;
 
@@ -24,12 +27,15 @@ import com.opengamma.core.position.Position;
 import com.opengamma.core.position.Trade;
 import com.opengamma.id.ExternalId;
 import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
 import com.opengamma.master.portfolio.ManageablePortfolio;
 import com.opengamma.master.portfolio.ManageablePortfolioNode;
 import com.opengamma.master.portfolio.PortfolioDocument;
 import com.opengamma.master.portfolio.PortfolioMaster;
+import com.opengamma.master.portfolio.PortfolioNodeLoader;
+import com.opengamma.master.portfolio.PortfolioNodeTree;
 import com.opengamma.master.position.ManageablePosition;
 import com.opengamma.master.position.ManageableTrade;
 import com.opengamma.master.position.PositionDocument;
@@ -37,6 +43,7 @@ import com.opengamma.master.position.PositionMaster;
 import com.opengamma.master.position.PositionSearchRequest;
 import com.opengamma.master.position.PositionSearchResult;
 import com.opengamma.master.security.ManageableSecurityLink;
+import com.opengamma.util.paging.PagingRequest;
 
 /**
  * Test {@link MasterPositionSource}.
@@ -189,6 +196,65 @@ public class MasterPositionSourceTest {
     assertEquals(0, testResult.getChildNodes().get(0).getChildNodes().size());
   }
 
+  //-------------------------------------------------------------------------
+  public void test_getPortfolio_lazy() throws Exception {
+    LoaderPortfolioMaster mockPortfolio = mock(LoaderPortfolioMaster.class);
+    PositionMaster mockPosition = mock(PositionMaster.class);
+    
+    ManageablePortfolio manPrt = new ManageablePortfolio("Hello", new ManageablePortfolioNode("Node"));
+    manPrt.getRootNode().setUniqueId(UID2);
+    manPrt.setUniqueId(UID);
+    manPrt.addAttribute("A1", "V1");
+    PortfolioNodeTree rootTree = new PortfolioNodeTree(new PortfolioDocument(manPrt),
+        Collections.singletonMap(UID2.getObjectId(), 1), Collections.singletonMap(UID2.getObjectId(), 0));
+    ManageablePortfolio manSubtree = new ManageablePortfolio("Hello", example(false));
+    manSubtree.setUniqueId(UID);
+    PortfolioNodeTree childTree = new PortfolioNodeTree(new PortfolioDocument(manSubtree),
+        Collections.<ObjectId, Integer>singletonMap(UID3.getObjectId(), 0), Collections.<ObjectId, Integer>singletonMap(UID3.getObjectId(), 1));
+    
+    ManageablePosition manPos = new ManageablePosition();
+    manPos.setQuantity(BigDecimal.valueOf(1235));
+    manPos.setSecurityLink(new ManageableSecurityLink(ExternalId.of("AA", "BB")));
+    manPos.setUniqueId(UID4);
+    PositionSearchRequest posRequest = new PositionSearchRequest();
+    posRequest.addPositionObjectId(UID4);
+    PositionSearchResult posResult = new PositionSearchResult();
+    posResult.getDocuments().add(new PositionDocument(manPos));
+    
+    when(mockPortfolio.getPortfolioTree(UID, 0)).thenReturn(rootTree);
+    when(mockPortfolio.getNodeTree(UID2, 1)).thenReturn(childTree);
+    when(mockPortfolio.getNodePositionIds(UID3, PagingRequest.ofIndex(0, 1000))).thenReturn(Arrays.asList(UID4.getObjectId()));
+    when(mockPosition.search(posRequest)).thenReturn(posResult);
+    MasterPositionSource test = new MasterPositionSource(mockPortfolio, mockPosition);
+    test.setLazyLoadDepth(0);
+    Portfolio testResult = test.getPortfolio(UID);
+    verify(mockPortfolio, never()).get(UID);
+    verify(mockPortfolio, never()).getNodeTree(UID2, 1);
+    
+    assertEquals(UID, testResult.getUniqueId());
+    assertEquals("Hello", testResult.getName());
+    assertEquals("V1", testResult.getAttributes().get("A1"));
+    assertEquals(UID2, testResult.getRootNode().getUniqueId());
+    assertEquals(1, testResult.getRootNode().size());
+    assertEquals(1, testResult.getRootNode().getChildNodes().size());
+    verify(mockPortfolio, times(1)).getNodeTree(UID2, 1);
+    PortfolioNode child = testResult.getRootNode().getChildNodes().get(0);
+    assertEquals(UID3, child.getUniqueId());
+    assertEquals(UID2, child.getParentNodeId());
+    assertEquals(1, child.size());
+    assertEquals(0, child.getChildNodes().size());
+    assertEquals(1, child.getPositions().size());
+    UniqueId combinedUid4 = UniqueId.of(UID3.getScheme() + "-" + UID4.getScheme(), UID3.getValue() + "-" + UID4.getValue(), "-");
+    assertEquals(combinedUid4, child.getPositions().get(0).getUniqueId());
+    verify(mockPosition, times(1)).search(posRequest);
+  }
+
+  /**
+   * A portfolio master that supports partial loading.
+   */
+  public interface LoaderPortfolioMaster extends PortfolioMaster, PortfolioNodeLoader {
+  }
+
 //  //-------------------------------------------------------------------------
 //  public void test_getPosition() throws Exception {
 //    PortfolioMaster mockPortfolio = mock(PortfolioMaster.class);
@@ -218,4 +218,49 @@ public class InMemorySecurityMasterTest {
     assertEquals(true, docs.contains(doc2));
   }
 
+  //-------------------------------------------------------------------------
+  public void test_search_byNamePrefix() {
+    SecuritySearchRequest request = new SecuritySearchRequest();
+    request.setName("test*");
+    SecuritySearchResult result = testPopulated.search(request);
+    assertEquals(2, result.getDocuments().size());
+    request.setName("Test 1*");
+    result = testPopulated.search(request);
+    assertEquals(1, result.getDocuments().size());
+    assertEquals(true, result.getDocuments().contains(doc1));
+    request.setName("*2");
+    result = testPopulated.search(request);
+    assertEquals(1, result.getDocuments().size());
+    assertEquals(true, result.getDocuments().contains(doc2));
+  }
+
+  public void test_search_afterUpdate() {
+    SecurityDocument doc = new SecurityDocument();
+    doc.setSecurity(new ManageableSecurity(doc1.getUniqueId(), "Renamed", "TYPE2", BUNDLE2));
+    doc.setUniqueId(doc1.getUniqueId());
+    testPopulated.update(doc);
+    
+    SecuritySearchRequest request = new SecuritySearchRequest();
+    request.setName("Test 1");
+    assertEquals(0, testPopulated.search(request).getDocuments().size());
+    request = new SecuritySearchRequest(ID1);
+    assertEquals(0, testPopulated.search(request).getDocuments().size());
+    request = new SecuritySearchRequest(ID2);
+    assertEquals(2, testPopulated.search(request).getDocuments().size());
+    request = new SecuritySearchRequest();
+    request.setSecurityType("TYPE1");
+    assertEquals(0, testPopulated.search(request).getDocuments().size());
+    request.setSecurityType("TYPE2");
+    assertEquals(2, testPopulated.search(request).getDocuments().size());
+  }
+
+  public void test_search_afterRemove() {
+    testPopulated.remove(doc1.getUniqueId());
+    SecuritySearchRequest request = new SecuritySearchRequest(ID1);
+    assertEquals(0, testPopulated.search(request).getDocuments().size());
+    request = new SecuritySearchRequest();
+    request.setSecurityType("TYPE1");
+    assertEquals(0, testPopulated.search(request).getDocuments().size());
+  }
+
 }
@@ -0,0 +1,17 @@
+START TRANSACTION;
+  UPDATE hts_schema_version SET version_value='46' WHERE version_key='schema_patch';
+
+  CREATE TABLE hts_point_block (
+      doc_oid bigint NOT NULL,
+      block_start date NOT NULL,
+      block_end date NOT NULL,
+      ver_instant timestamp without time zone NOT NULL,
+      corr_instant timestamp without time zone NOT NULL,
+      block_kind smallint NOT NULL,
+      point_count int NOT NULL,
+      last_date date NOT NULL,
+      point_data blob NOT NULL,
+      PRIMARY KEY (doc_oid, block_start, ver_instant, corr_instant)
+  );
+
+COMMIT;
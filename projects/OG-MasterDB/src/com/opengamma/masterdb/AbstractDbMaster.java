@@ -8,6 +8,11 @@ package com.opengamma.masterdb;
 import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
 import javax.time.Instant;
 import javax.time.TimeSource;
@@ -15,6 +20,7 @@ import javax.time.TimeSource;
 import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -66,6 +72,14 @@ public abstract class AbstractDbMaster {
    * The Hibernate template.
    */
   private HibernateTemplate _hibernateTemplate;
+  /**
+   * The database ids preallocated for the current thread, keyed by sequence name, null if not preallocating.
+   */
+  private final ThreadLocal<Map<String, Queue<Long>>> _preallocatedIds = new ThreadLocal<Map<String, Queue<Long>>>();
+  /**
+   * The number of ids to preallocate at a time for the current thread.
+   */
+  private final ThreadLocal<Integer> _preallocatedBlockSize = new ThreadLocal<Integer>();
 
   /**
    * Creates an instance.
@@ -158,9 +172,75 @@ public abstract class AbstractDbMaster {
    * @return the next database id
    */
   protected long nextId(String sequenceName) {
+    final Map<String, Queue<Long>> preallocated = _preallocatedIds.get();
+    if (preallocated != null) {
+      Queue<Long> ids = preallocated.get(sequenceName);
+      if (ids == null) {
+        ids = new ArrayDeque<Long>();
+        preallocated.put(sequenceName, ids);
+      }
+      if (ids.isEmpty()) {
+        for (long id : nextIds(sequenceName, _preallocatedBlockSize.get())) {
+          ids.add(id);
+        }
+      }
+      return ids.remove();
+    }
     return getJdbcTemplate().queryForLong(getDialect().sqlNextSequenceValueSelect(sequenceName));
   }
 
+  /**
+   * Gets a number of database ids, using a single query where the database supports it.
+   * 
+   * @param sequenceName  the name of the sequence to query, not null
+   * @param count  the number of ids, greater than zero
+   * @return the database ids, not null
+   */
+  protected long[] nextIds(String sequenceName, int count) {
+    ArgumentChecker.notNegativeOrZero(count, "count");
+    final long[] ids = new long[count];
+    final String sql = getDialect().sqlNextSequenceValuesSelect(sequenceName, count);
+    if (sql == null) {
+      final String sqlSingle = getDialect().sqlNextSequenceValueSelect(sequenceName);
+      for (int i = 0; i < count; i++) {
+        ids[i] = getJdbcTemplate().queryForLong(sqlSingle);
+      }
+    } else {
+      final List<Long> list = getJdbcTemplate().getJdbcOperations().queryForList(sql, Long.class);
+      if (list.size() != count) {
+        throw new IncorrectResultSizeDataAccessException(count, list.size());
+      }
+      for (int i = 0; i < count; i++) {
+        ids[i] = list.get(i);
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Starts preallocating database ids on the current thread.
+   * <p>
+   * Until {@link #endIdPreallocation()} is called, {@link #nextId(String)} on this thread
+   * takes ids from blocks queried using {@link #nextIds(String, int)}, rather than querying
+   * the sequence for every id. Any ids that are not used by the end are discarded.
+   * This is intended for inserting many rows at once.
+   * 
+   * @param blockSize  the number of ids to query from a sequence at a time, greater than zero
+   */
+  protected void startIdPreallocation(int blockSize) {
+    ArgumentChecker.notNegativeOrZero(blockSize, "blockSize");
+    _preallocatedIds.set(new HashMap<String, Queue<Long>>());
+    _preallocatedBlockSize.set(blockSize);
+  }
+
+  /**
+   * Ends preallocating database ids on the current thread.
+   */
+  protected void endIdPreallocation() {
+    _preallocatedIds.remove();
+    _preallocatedBlockSize.remove();
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Gets the time-source that determines the current time.
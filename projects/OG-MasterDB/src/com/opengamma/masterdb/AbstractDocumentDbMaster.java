@@ -5,7 +5,11 @@
  */
 package com.opengamma.masterdb;
 
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.time.Instant;
 
@@ -17,10 +21,12 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 
+import com.google.common.collect.Lists;
 import com.opengamma.DataNotFoundException;
 import com.opengamma.core.change.BasicChangeManager;
 import com.opengamma.core.change.ChangeManager;
 import com.opengamma.core.change.ChangeType;
+import com.opengamma.id.ObjectId;
 import com.opengamma.id.ObjectIdentifiable;
 import com.opengamma.id.UniqueId;
 import com.opengamma.id.VersionCorrection;
@@ -29,6 +35,7 @@ import com.opengamma.master.AbstractDocumentsResult;
 import com.opengamma.master.AbstractHistoryRequest;
 import com.opengamma.master.AbstractHistoryResult;
 import com.opengamma.master.AbstractMaster;
+import com.opengamma.master.BulkMaster;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.db.DbConnector;
 import com.opengamma.util.db.DbDateUtils;
@@ -42,19 +49,32 @@ import com.opengamma.util.paging.PagingRequest;
  * <p>
  * This provides common implementations of methods in a standard {@link AbstractMaster}.
  * <p>
+ * The {@link BulkMaster} methods split the documents into chunks, see {@link #setBulkChunkSize(int)}.
+ * Each chunk is stored in a single transaction, with the database ids queried in blocks and
+ * the change manager notified of the whole chunk once the transaction has committed.
+ * <p>
  * This class is mutable but must be treated as immutable after configuration.
  * 
  * @param <D>  the type of the document
  */
-public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> extends AbstractDbMaster implements AbstractMaster<D> {
+public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> extends AbstractDbMaster implements AbstractMaster<D>, BulkMaster<D> {
 
   /** Logger. */
   private static final Logger s_logger = LoggerFactory.getLogger(AbstractDocumentDbMaster.class);
   
+  /**
+   * The default number of documents stored in each transaction by the bulk methods.
+   */
+  public static final int DEFAULT_BULK_CHUNK_SIZE = 1000;
+
   /**
    * The change manager.
    */
   private ChangeManager _changeManager = new BasicChangeManager();
+  /**
+   * The number of documents stored in each transaction by the bulk methods.
+   */
+  private int _bulkChunkSize = DEFAULT_BULK_CHUNK_SIZE;
 
   /**
    * Creates an instance.
@@ -97,6 +117,28 @@ public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> exten
     return getChangeManager();
   }
 
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of documents stored in each transaction by the bulk methods.
+   * The default is 1000.
+   * 
+   * @return the chunk size, greater than zero
+   */
+  public int getBulkChunkSize() {
+    return _bulkChunkSize;
+  }
+
+  /**
+   * Sets the number of documents stored in each transaction by the bulk methods.
+   * The default is 1000.
+   * 
+   * @param bulkChunkSize  the chunk size, greater than zero
+   */
+  public void setBulkChunkSize(final int bulkChunkSize) {
+    ArgumentChecker.notNegativeOrZero(bulkChunkSize, "bulkChunkSize");
+    _bulkChunkSize = bulkChunkSize;
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Performs a standard get by unique identifier, handling exact version or latest.
@@ -432,6 +474,204 @@ public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> exten
     return document;
   }
 
+  //-------------------------------------------------------------------------
+  @Override
+  public List<D> addAll(final List<D> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    s_logger.debug("addAll {} documents", documents.size());
+    final List<D> result = new ArrayList<D>(documents.size());
+    for (final List<D> chunk : Lists.partition(documents, getBulkChunkSize())) {
+      final List<D> added = getTransactionTemplateRetrying(getMaxRetries()).execute(new TransactionCallback<List<D>>() {
+        @Override
+        public List<D> doInTransaction(final TransactionStatus status) {
+          return doAddAllInTransaction(chunk);
+        }
+      });
+      for (D document : added) {
+        changeManager().entityChanged(ChangeType.ADDED, null, document.getUniqueId(), document.getVersionFromInstant());
+      }
+      result.addAll(added);
+    }
+    return result;
+  }
+
+  /**
+   * Processes a chunk of document adds, within a retrying transaction.
+   * 
+   * @param documents  the documents to add, not null
+   * @return the added documents, not null
+   */
+  protected List<D> doAddAllInTransaction(final List<D> documents) {
+    // insert new rows
+    final Instant now = now();
+    for (D document : documents) {
+      document.setVersionFromInstant(now);
+      document.setVersionToInstant(null);
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      document.setUniqueId(null);
+    }
+    insertAllPreallocated(documents);
+    return documents;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public List<D> updateAll(final List<D> documents) {
+    final List<UniqueId> beforeIds = checkBulkUniqueIds(documents);
+    s_logger.debug("updateAll {} documents", documents.size());
+    final List<D> result = new ArrayList<D>(documents.size());
+    final int chunkSize = getBulkChunkSize();
+    for (int start = 0; start < documents.size(); start += chunkSize) {
+      final int end = Math.min(start + chunkSize, documents.size());
+      final List<D> chunk = documents.subList(start, end);
+      final List<UniqueId> chunkBeforeIds = beforeIds.subList(start, end);
+      final List<D> updated = getTransactionTemplateRetrying(getMaxRetries()).execute(new TransactionCallback<List<D>>() {
+        @Override
+        public List<D> doInTransaction(final TransactionStatus status) {
+          return doUpdateAllInTransaction(chunk, chunkBeforeIds);
+        }
+      });
+      for (int i = 0; i < updated.size(); i++) {
+        final D document = updated.get(i);
+        changeManager().entityChanged(ChangeType.UPDATED, chunkBeforeIds.get(i), document.getUniqueId(), document.getVersionFromInstant());
+      }
+      result.addAll(updated);
+    }
+    return result;
+  }
+
+  /**
+   * Processes a chunk of document updates, within a retrying transaction.
+   * 
+   * @param documents  the documents to update, not null
+   * @param beforeIds  the unique identifiers of the versions being updated, in the same order, not null
+   * @return the updated documents, not null
+   */
+  protected List<D> doUpdateAllInTransaction(final List<D> documents, final List<UniqueId> beforeIds) {
+    // load old rows
+    final List<D> oldDocs = new ArrayList<D>(documents.size());
+    for (UniqueId beforeId : beforeIds) {
+      oldDocs.add(getCheckLatestVersion(beforeId));
+    }
+    // update old rows
+    final Instant now = now();
+    for (D oldDoc : oldDocs) {
+      oldDoc.setVersionToInstant(now);
+    }
+    updateVersionToInstants(oldDocs);
+    // insert new rows
+    for (int i = 0; i < documents.size(); i++) {
+      final D document = documents.get(i);
+      final D oldDoc = oldDocs.get(i);
+      document.setVersionFromInstant(now);
+      document.setVersionToInstant(null);
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      document.setUniqueId(oldDoc.getUniqueId().toLatest());
+      mergeNonUpdatedFields(document, oldDoc);
+    }
+    insertAllPreallocated(documents);
+    return documents;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public List<D> correctAll(final List<D> documents) {
+    final List<UniqueId> beforeIds = checkBulkUniqueIds(documents);
+    s_logger.debug("correctAll {} documents", documents.size());
+    final List<D> result = new ArrayList<D>(documents.size());
+    final int chunkSize = getBulkChunkSize();
+    for (int start = 0; start < documents.size(); start += chunkSize) {
+      final int end = Math.min(start + chunkSize, documents.size());
+      final List<D> chunk = documents.subList(start, end);
+      final List<UniqueId> chunkBeforeIds = beforeIds.subList(start, end);
+      final List<D> corrected = getTransactionTemplateRetrying(getMaxRetries()).execute(new TransactionCallback<List<D>>() {
+        @Override
+        public List<D> doInTransaction(final TransactionStatus status) {
+          return doCorrectAllInTransaction(chunk, chunkBeforeIds);
+        }
+      });
+      for (int i = 0; i < corrected.size(); i++) {
+        final D document = corrected.get(i);
+        changeManager().entityChanged(ChangeType.CORRECTED, chunkBeforeIds.get(i), document.getUniqueId(), document.getVersionFromInstant());
+      }
+      result.addAll(corrected);
+    }
+    return result;
+  }
+
+  /**
+   * Processes a chunk of document corrections, within a retrying transaction.
+   * 
+   * @param documents  the documents to correct, not null
+   * @param beforeIds  the unique identifiers of the corrections being replaced, in the same order, not null
+   * @return the corrected documents, not null
+   */
+  protected List<D> doCorrectAllInTransaction(final List<D> documents, final List<UniqueId> beforeIds) {
+    // load old rows
+    final List<D> oldDocs = new ArrayList<D>(documents.size());
+    for (UniqueId beforeId : beforeIds) {
+      oldDocs.add(getCheckLatestCorrection(beforeId));
+    }
+    // update old rows
+    final Instant now = now();
+    for (D oldDoc : oldDocs) {
+      oldDoc.setCorrectionToInstant(now);
+    }
+    updateCorrectionToInstants(oldDocs);
+    // insert new rows
+    for (int i = 0; i < documents.size(); i++) {
+      final D document = documents.get(i);
+      final D oldDoc = oldDocs.get(i);
+      document.setVersionFromInstant(oldDoc.getVersionFromInstant());
+      document.setVersionToInstant(oldDoc.getVersionToInstant());
+      document.setCorrectionFromInstant(now);
+      document.setCorrectionToInstant(null);
+      document.setUniqueId(oldDoc.getUniqueId().toLatest());
+      mergeNonUpdatedFields(document, oldDoc);
+    }
+    insertAllPreallocated(documents);
+    return documents;
+  }
+
+  /**
+   * Checks the documents passed to a bulk update or correction.
+   * <p>
+   * The unique identifiers are returned as the documents are changed during processing.
+   * 
+   * @param documents  the documents, not null
+   * @return the unique identifiers of the documents, in the same order, not null
+   */
+  private List<UniqueId> checkBulkUniqueIds(final List<D> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    final List<UniqueId> beforeIds = new ArrayList<UniqueId>(documents.size());
+    final Set<ObjectId> objectIds = new HashSet<ObjectId>();
+    for (D document : documents) {
+      final UniqueId beforeId = document.getUniqueId();
+      ArgumentChecker.notNull(beforeId, "document.uniqueId");
+      checkScheme(beforeId);
+      ArgumentChecker.isTrue(beforeId.isVersioned(), "UniqueId must be versioned");
+      ArgumentChecker.isTrue(objectIds.add(beforeId.getObjectId()), "Object must only be changed once: " + beforeId.getObjectId());
+      beforeIds.add(beforeId);
+    }
+    return beforeIds;
+  }
+
+  /**
+   * Inserts new documents, with the database ids queried in blocks.
+   * 
+   * @param documents  the documents to insert, not null
+   */
+  private void insertAllPreallocated(final List<D> documents) {
+    startIdPreallocation(documents.size());
+    try {
+      insertAll(documents);
+    } finally {
+      endIdPreallocation();
+    }
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Merges any fields from the old document that have not been updated.
@@ -459,6 +699,20 @@ public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> exten
    */
   protected abstract D insert(D document);
 
+  /**
+   * Inserts new documents.
+   * <p>
+   * This calls {@link #insert} for each document by default.
+   * Subclasses may override this to use JDBC batches for all the documents.
+   * 
+   * @param documents  the documents to insert, not null
+   */
+  protected void insertAll(final List<D> documents) {
+    for (D document : documents) {
+      insert(document);
+    }
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Gets the document ensuring that it is the latest version.
@@ -491,6 +745,27 @@ public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> exten
     }
   }
 
+  /**
+   * Updates the document rows to mark the versions as ended, in a single batch.
+   * 
+   * @param documents  the documents to update, not null
+   */
+  protected void updateVersionToInstants(final List<D> documents) {
+    if (documents.isEmpty()) {
+      return;
+    }
+    final DbMapSqlParameterSource[] args = new DbMapSqlParameterSource[documents.size()];
+    for (int i = 0; i < args.length; i++) {
+      final D document = documents.get(i);
+      args[i] = new DbMapSqlParameterSource()
+        .addValue("doc_id", extractRowId(document.getUniqueId()))
+        .addTimestamp("ver_to_instant", document.getVersionToInstant())
+        .addValue("max_instant", DbDateUtils.MAX_SQL_TIMESTAMP);
+    }
+    final String sql = getElSqlBundle().getSql("UpdateVersionToInstant", args[0]);
+    checkBatchRowsUpdated(getJdbcTemplate().batchUpdate(sql, args), "Update end version instant failed, rows updated: ");
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Gets the document ensuring that it is the latest version.
@@ -523,4 +798,42 @@ public abstract class AbstractDocumentDbMaster<D extends AbstractDocument> exten
     }
   }
 
+  /**
+   * Updates the document rows to mark the corrections as ended, in a single batch.
+   * 
+   * @param documents  the documents to update, not null
+   */
+  protected void updateCorrectionToInstants(final List<D> documents) {
+    if (documents.isEmpty()) {
+      return;
+    }
+    final DbMapSqlParameterSource[] args = new DbMapSqlParameterSource[documents.size()];
+    for (int i = 0; i < args.length; i++) {
+      final D document = documents.get(i);
+      args[i] = new DbMapSqlParameterSource()
+        .addValue("doc_id", extractRowId(document.getUniqueId()))
+        .addTimestamp("corr_to_instant", document.getCorrectionToInstant())
+        .addValue("max_instant", DbDateUtils.MAX_SQL_TIMESTAMP);
+    }
+    final String sql = getElSqlBundle().getSql("UpdateCorrectionToInstant", args[0]);
+    checkBatchRowsUpdated(getJdbcTemplate().batchUpdate(sql, args), "Update end correction instant failed, rows updated: ");
+  }
+
+  /**
+   * Checks that each statement in a batch updated exactly one row.
+   * <p>
+   * Drivers that cannot report the count for a batched statement return
+   * {@link Statement#SUCCESS_NO_INFO}, which is accepted.
+   * 
+   * @param rowsUpdated  the update counts of the batch, not null
+   * @param message  the message prefix of the exception, not null
+   */
+  private static void checkBatchRowsUpdated(final int[] rowsUpdated, final String message) {
+    for (int rows : rowsUpdated) {
+      if (rows != 1 && rows != Statement.SUCCESS_NO_INFO) {
+        throw new IncorrectUpdateSemanticsDataAccessException(message + rows);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import javax.time.calendar.LocalDate;
+
+/**
+ * A sorted run of data points held as epoch day and value arrays.
+ * <p>
+ * This is the decoded form of a row in the {@code hts_point_block} table.
+ * Blocks are merged as the rows for a year are read, so the operations return
+ * new blocks rather than copying into collections of boxed values.
+ * <p>
+ * This class is immutable by convention, the arrays are not exposed outside the package.
+ */
+/* package */ final class DataPointBlock {
+
+  /**
+   * An empty block.
+   */
+  static final DataPointBlock EMPTY = new DataPointBlock(new int[0], new double[0], 0);
+
+  /**
+   * The dates as epoch days, strictly ascending.
+   */
+  private final int[] _dates;
+  /**
+   * The values.
+   */
+  private final double[] _values;
+  /**
+   * The number of points.
+   */
+  private final int _size;
+
+  /**
+   * Creates an instance.
+   *
+   * @param dates  the dates as epoch days, strictly ascending, not null
+   * @param values  the values, not null
+   * @param size  the number of points used from the arrays
+   */
+  DataPointBlock(final int[] dates, final double[] values, final int size) {
+    _dates = dates;
+    _values = values;
+    _size = size;
+  }
+
+  /**
+   * Decodes a block.
+   *
+   * @param data  the encoded data, not null
+   * @return the block, not null
+   */
+  static DataPointBlock decode(final byte[] data) {
+    final int count = TimeSeriesBlockCodec.decodeCount(data);
+    final int[] dates = new int[count];
+    final double[] values = new double[count];
+    TimeSeriesBlockCodec.decode(data, dates, values, 0);
+    return new DataPointBlock(dates, values, count);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the start of the yearly block containing a date.
+   *
+   * @param epochDay  the date as an epoch day
+   * @return the first day of the year, not null
+   */
+  static LocalDate blockStart(final int epochDay) {
+    return LocalDate.of(LocalDate.ofEpochDays(epochDay).getYear(), 1, 1);
+  }
+
+  /**
+   * Gets the end of the yearly block starting at a date.
+   *
+   * @param blockStart  the first day of the year, not null
+   * @return the last day of the year, not null
+   */
+  static LocalDate blockEnd(final LocalDate blockStart) {
+    return LocalDate.of(blockStart.getYear(), 12, 31);
+  }
+
+  //-------------------------------------------------------------------------
+  int size() {
+    return _size;
+  }
+
+  int dateAt(final int index) {
+    return _dates[index];
+  }
+
+  double valueAt(final int index) {
+    return _values[index];
+  }
+
+  LocalDate lastDate() {
+    return LocalDate.ofEpochDays(_dates[_size - 1]);
+  }
+
+  byte[] encode() {
+    return TimeSeriesBlockCodec.encode(_dates, _values, 0, _size);
+  }
+
+  /**
+   * Copies the points into arrays.
+   *
+   * @param from  the first index to copy
+   * @param to  the index after the last to copy
+   * @param dates  the array to copy the dates to, not null
+   * @param values  the array to copy the values to, not null
+   * @param offset  the index to copy to
+   */
+  void copyTo(final int from, final int to, final int[] dates, final double[] values, final int offset) {
+    System.arraycopy(_dates, from, dates, offset, to - from);
+    System.arraycopy(_values, from, values, offset, to - from);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns the points within a date range.
+   *
+   * @param startDate  the first date to include as an epoch day
+   * @param endDate  the last date to include as an epoch day
+   * @return the block, not null
+   */
+  DataPointBlock slice(final int startDate, final int endDate) {
+    final int from = search(startDate);
+    final int to = (endDate == Integer.MAX_VALUE ? _size : search(endDate + 1));
+    if (from == 0 && to == _size) {
+      return this;
+    }
+    final int size = Math.max(to - from, 0);
+    final int[] dates = new int[size];
+    final double[] values = new double[size];
+    if (size > 0) {
+      copyTo(from, to, dates, values, 0);
+    }
+    return new DataPointBlock(dates, values, size);
+  }
+
+  /**
+   * Returns these points with those of another block added, replacing any on the same dates.
+   *
+   * @param other  the points to add, not null
+   * @return the block, not null
+   */
+  DataPointBlock merge(final DataPointBlock other) {
+    if (_size == 0) {
+      return other;
+    }
+    if (other._size == 0) {
+      return this;
+    }
+    final int[] dates = new int[_size + other._size];
+    final double[] values = new double[_size + other._size];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < _size && j < other._size) {
+      if (_dates[i] < other._dates[j]) {
+        dates[k] = _dates[i];
+        values[k++] = _values[i++];
+      } else {
+        if (_dates[i] == other._dates[j]) {
+          i++;
+        }
+        dates[k] = other._dates[j];
+        values[k++] = other._values[j++];
+      }
+    }
+    while (i < _size) {
+      dates[k] = _dates[i];
+      values[k++] = _values[i++];
+    }
+    while (j < other._size) {
+      dates[k] = other._dates[j];
+      values[k++] = other._values[j++];
+    }
+    return new DataPointBlock(dates, values, k);
+  }
+
+  /**
+   * Returns these points without those on the dates of another block.
+   *
+   * @param other  the points whose dates are to be removed, not null
+   * @return the block, not null
+   */
+  DataPointBlock remove(final DataPointBlock other) {
+    if (_size == 0 || other._size == 0) {
+      return this;
+    }
+    final int[] dates = new int[_size];
+    final double[] values = new double[_size];
+    int j = 0;
+    int k = 0;
+    for (int i = 0; i < _size; i++) {
+      while (j < other._size && other._dates[j] < _dates[i]) {
+        j++;
+      }
+      if (j >= other._size || other._dates[j] != _dates[i]) {
+        dates[k] = _dates[i];
+        values[k++] = _values[i];
+      }
+    }
+    return new DataPointBlock(dates, values, k);
+  }
+
+  private int search(final int date) {
+    int low = 0;
+    int high = _size;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (_dates[mid] < date) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return "DataPointBlock[" + _size + " points]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Builder for a block from points in date order.
+   */
+  static final class Builder {
+    private int[] _dates = new int[16];
+    private double[] _values = new double[16];
+    private int _size;
+
+    void add(final int date, final double value) {
+      if (_size > 0 && date <= _dates[_size - 1]) {
+        throw new IllegalArgumentException("Dates must be strictly ascending");
+      }
+      if (_size == _dates.length) {
+        final int[] dates = new int[_size * 2];
+        final double[] values = new double[_size * 2];
+        System.arraycopy(_dates, 0, dates, 0, _size);
+        System.arraycopy(_values, 0, values, 0, _size);
+        _dates = dates;
+        _values = values;
+      }
+      _dates[_size] = date;
+      _values[_size++] = value;
+    }
+
+    int size() {
+      return _size;
+    }
+
+    DataPointBlock build() {
+      return new DataPointBlock(_dates, _values, _size);
+    }
+  }
+
+}
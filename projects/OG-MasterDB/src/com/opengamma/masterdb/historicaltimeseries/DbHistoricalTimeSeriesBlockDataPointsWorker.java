@@ -0,0 +1,465 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import javax.time.Instant;
+import javax.time.calendar.LocalDate;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.support.SqlLobValue;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.elsql.ElSqlBundle;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
+import com.opengamma.util.db.DbDateUtils;
+import com.opengamma.util.db.DbMapSqlParameterSource;
+import com.opengamma.util.timeseries.fast.DateTimeNumericEncoding;
+import com.opengamma.util.timeseries.fast.integer.FastArrayIntDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+import com.opengamma.util.tuple.Pair;
+
+/**
+ * A worker that stores the data points of the time-series master in compressed yearly blocks.
+ * <p>
+ * The point per row storage of {@link DbHistoricalTimeSeriesDataPointsWorker} is simple but
+ * a large range read returns one row for every point and correction. This worker stores the
+ * points in the {@code hts_point_block} table instead. Each row holds the points of one year
+ * of a series written by a single operation, encoded by {@link TimeSeriesBlockCodec}.
+ * <p>
+ * The rows are versioned exactly as the equivalent {@code hts_point} rows would be. Adding
+ * points writes a block for each year at the current instant. A correction writes blocks at
+ * the version instant at which each point was first set and the current correction instant.
+ * Removing points writes blocks of the removed dates in the same way. A read selects the
+ * visible blocks of each year in correction order and merges them, so a series loaded in bulk
+ * is read as one row per year, decoded straight into the arrays of the result.
+ * <p>
+ * The SQL is stored externally in {@code DbHistoricalTimeSeriesBlockDataPointsWorker.elsql}.
+ * Existing data can be copied to the block table using {@link DbHistoricalTimeSeriesBlockMigrator}.
+ * <p>
+ * This class is mutable but must be treated as immutable after configuration.
+ */
+public class DbHistoricalTimeSeriesBlockDataPointsWorker extends DbHistoricalTimeSeriesDataPointsWorker {
+
+  /**
+   * The block kind of points that were set.
+   */
+  static final int BLOCK_KIND_SET = 0;
+  /**
+   * The block kind of points that were removed.
+   */
+  static final int BLOCK_KIND_REMOVED = 1;
+
+  /**
+   * The external SQL bundle.
+   */
+  private final ElSqlBundle _elSqlBundle;
+
+  /**
+   * Creates an instance.
+   *
+   * @param master  the database master, not null
+   */
+  public DbHistoricalTimeSeriesBlockDataPointsWorker(final DbHistoricalTimeSeriesMaster master) {
+    super(master);
+    _elSqlBundle = ElSqlBundle.of(master.getDbConnector().getDialect().getElSqlConfig(), DbHistoricalTimeSeriesBlockDataPointsWorker.class);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the external SQL bundle.
+   *
+   * @return the external SQL bundle, not null
+   */
+  @Override
+  public ElSqlBundle getElSqlBundle() {
+    return _elSqlBundle;
+  }
+
+  @Override
+  protected ResultSetExtractor<LocalDateDoubleTimeSeries> createDataPointsExtractor(final HistoricalTimeSeriesGetFilter filter) {
+    return new DataPointBlocksExtractor(filter);
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  protected UniqueId insertDataPoints(final UniqueId uniqueId, final LocalDateDoubleTimeSeries series, final Instant now) {
+    final long docOid = extractOid(uniqueId);
+    final Timestamp nowTS = DbDateUtils.toSqlTimestamp(now);
+    final List<DbMapSqlParameterSource> argsList = new ArrayList<DbMapSqlParameterSource>();
+    for (Entry<LocalDate, DataPointBlock> entry : splitByYear(toBlock(series)).entrySet()) {
+      argsList.add(createBlockArgs(docOid, entry.getKey(), nowTS, nowTS, BLOCK_KIND_SET, entry.getValue()));
+    }
+    insertBlocks(argsList);
+    return createTimeSeriesUniqueId(docOid, now, now);
+  }
+
+  @Override
+  protected UniqueId correctDataPoints(final UniqueId uniqueId, final LocalDateDoubleTimeSeries series, final Instant now) {
+    final long docOid = extractOid(uniqueId);
+    final DataPointBlock corrections = toBlock(series);
+    writeCorrectionBlocks(docOid, corrections, BLOCK_KIND_SET, now);
+    return resolveObjectId(uniqueId, VersionCorrection.of(now, now));
+  }
+
+  @Override
+  protected UniqueId removeDataPoints(final UniqueId uniqueId, final LocalDate fromDateInclusive, final LocalDate toDateInclusive, final Instant now) {
+    final long docOid = extractOid(uniqueId);
+    final int startDate = fromDateInclusive != null ? (int) fromDateInclusive.toEpochDays() : Integer.MIN_VALUE;
+    final int endDate = toDateInclusive != null ? (int) toDateInclusive.toEpochDays() : Integer.MAX_VALUE;
+    // every point ever set in the range is removed, as with the point per row storage
+    final List<Pair<Instant, DataPointBlock>> originals = selectOriginalBlocks(docOid, fromDateInclusive, toDateInclusive);
+    DataPointBlock removed = DataPointBlock.EMPTY;
+    for (Pair<Instant, DataPointBlock> original : originals) {
+      removed = removed.merge(original.getSecond().slice(startDate, endDate));
+    }
+    writeCorrectionBlocks(docOid, removed, BLOCK_KIND_REMOVED, now, originals);
+    return resolveObjectId(uniqueId, VersionCorrection.of(now, now));
+  }
+
+  /**
+   * Writes blocks that correct existing points.
+   * <p>
+   * Each corrected point is written at the version instant at which it was first set,
+   * or the current instant if it has never been set, so the correction applies to every
+   * version containing the point.
+   *
+   * @param docOid  the document object identifier
+   * @param corrections  the points to correct, not null
+   * @param blockKind  the kind of the blocks to write
+   * @param now  the current instant, not null
+   */
+  private void writeCorrectionBlocks(final long docOid, final DataPointBlock corrections, final int blockKind, final Instant now) {
+    if (corrections.size() == 0) {
+      return;
+    }
+    final LocalDate first = LocalDate.ofEpochDays(corrections.dateAt(0));
+    final LocalDate last = corrections.lastDate();
+    writeCorrectionBlocks(docOid, corrections, blockKind, now, selectOriginalBlocks(docOid, first, last));
+  }
+
+  private void writeCorrectionBlocks(final long docOid, final DataPointBlock corrections, final int blockKind, final Instant now,
+      final List<Pair<Instant, DataPointBlock>> originals) {
+    if (corrections.size() == 0) {
+      return;
+    }
+    // find the version instant each point was first set at, the originals are in version order
+    final Map<Instant, DataPointBlock> byVersion = new TreeMap<Instant, DataPointBlock>();
+    DataPointBlock remaining = corrections;
+    for (Pair<Instant, DataPointBlock> original : originals) {
+      final DataPointBlock unset = remaining.remove(original.getSecond());
+      if (unset.size() < remaining.size()) {
+        final DataPointBlock found = remaining.remove(unset);
+        final DataPointBlock existing = byVersion.get(original.getFirst());
+        byVersion.put(original.getFirst(), existing != null ? existing.merge(found) : found);
+        remaining = unset;
+      }
+    }
+    if (remaining.size() > 0) {
+      byVersion.put(now, remaining);
+    }
+    final Timestamp nowTS = DbDateUtils.toSqlTimestamp(now);
+    final List<DbMapSqlParameterSource> argsList = new ArrayList<DbMapSqlParameterSource>();
+    for (Entry<Instant, DataPointBlock> version : byVersion.entrySet()) {
+      final Timestamp verTS = DbDateUtils.toSqlTimestamp(version.getKey());
+      for (Entry<LocalDate, DataPointBlock> entry : splitByYear(version.getValue()).entrySet()) {
+        argsList.add(createBlockArgs(docOid, entry.getKey(), verTS, nowTS, blockKind, entry.getValue()));
+      }
+    }
+    insertBlocks(argsList);
+  }
+
+  /**
+   * Selects the blocks written when points were first set.
+   *
+   * @param docOid  the document object identifier
+   * @param startDate  the first date, null for the far past
+   * @param endDate  the last date, null for the far future
+   * @return the version instants and blocks, in version order, not null
+   */
+  private List<Pair<Instant, DataPointBlock>> selectOriginalBlocks(final long docOid, final LocalDate startDate, final LocalDate endDate) {
+    final DbMapSqlParameterSource args = new DbMapSqlParameterSource()
+      .addValue("doc_oid", docOid)
+      .addValue("start_date", DbDateUtils.toSqlDateNullFarPast(startDate))
+      .addValue("end_date", DbDateUtils.toSqlDateNullFarFuture(endDate));
+    final String sql = getElSqlBundle().getSql("SelectOriginalBlocks", args);
+    final List<Pair<Instant, DataPointBlock>> result = getDbConnector().getJdbcTemplate().getNamedParameterJdbcOperations().query(sql, args,
+        new ResultSetExtractor<List<Pair<Instant, DataPointBlock>>>() {
+          @Override
+          public List<Pair<Instant, DataPointBlock>> extractData(final ResultSet rs) throws SQLException, DataAccessException {
+            final LobHandler lob = getDialect().getLobHandler();
+            final List<Pair<Instant, DataPointBlock>> blocks = new ArrayList<Pair<Instant, DataPointBlock>>();
+            while (rs.next()) {
+              final Instant ver = DbDateUtils.fromSqlTimestamp(rs.getTimestamp("VER_INSTANT"));
+              blocks.add(Pair.of(ver, DataPointBlock.decode(lob.getBlobAsBytes(rs, "POINT_DATA"))));
+            }
+            return blocks;
+          }
+        });
+    // the rows are ordered by year, the callers need version order
+    Collections.sort(result, new Comparator<Pair<Instant, DataPointBlock>>() {
+      @Override
+      public int compare(final Pair<Instant, DataPointBlock> o1, final Pair<Instant, DataPointBlock> o2) {
+        return o1.getFirst().compareTo(o2.getFirst());
+      }
+    });
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Selects the series with data points stored a point per row but none stored in blocks.
+   *
+   * @return the document object identifiers, not null
+   */
+  List<Long> selectUnmigratedSeries() {
+    final String sql = getElSqlBundle().getSql("SelectUnmigratedSeries");
+    return getJdbcTemplate().getJdbcOperations().queryForList(sql, Long.class);
+  }
+
+  /**
+   * Copies the data points of a series stored a point per row into blocks.
+   * <p>
+   * The points written by each operation, identified by the version and correction instants,
+   * are copied to one block for each year, so the history of the series is unchanged.
+   * The copy takes place in a single transaction.
+   *
+   * @param docOid  the document object identifier
+   * @return the number of data point rows copied
+   */
+  int migrateDataPoints(final long docOid) {
+    return getTransactionTemplateRetrying(getMaxRetries()).execute(new TransactionCallback<Integer>() {
+      @Override
+      public Integer doInTransaction(final TransactionStatus status) {
+        final DbMapSqlParameterSource args = new DbMapSqlParameterSource().addValue("doc_oid", docOid);
+        final String sql = getElSqlBundle().getSql("SelectMigrationPoints", args);
+        final List<DbMapSqlParameterSource> argsList = new ArrayList<DbMapSqlParameterSource>();
+        final int count = getDbConnector().getJdbcTemplate().getNamedParameterJdbcOperations().query(sql, args, new ResultSetExtractor<Integer>() {
+          @Override
+          public Integer extractData(final ResultSet rs) throws SQLException, DataAccessException {
+            int rows = 0;
+            Timestamp ver = null;
+            Timestamp corr = null;
+            DataPointBlock.Builder set = new DataPointBlock.Builder();
+            DataPointBlock.Builder removed = new DataPointBlock.Builder();
+            while (rs.next()) {
+              final Timestamp rowVer = rs.getTimestamp("VER_INSTANT");
+              final Timestamp rowCorr = rs.getTimestamp("CORR_INSTANT");
+              if (rowVer.equals(ver) == false || rowCorr.equals(corr) == false) {
+                addMigrationBlocks(argsList, docOid, ver, corr, set, removed);
+                ver = rowVer;
+                corr = rowCorr;
+                set = new DataPointBlock.Builder();
+                removed = new DataPointBlock.Builder();
+              }
+              final int date = (int) DbDateUtils.fromSqlDateAllowNull(rs.getDate("POINT_DATE")).toEpochDays();
+              final Double value = (Double) rs.getObject("POINT_VALUE");
+              if (value != null) {
+                set.add(date, value);
+              } else {
+                removed.add(date, 0d);
+              }
+              rows++;
+            }
+            addMigrationBlocks(argsList, docOid, ver, corr, set, removed);
+            return rows;
+          }
+        });
+        insertBlocks(argsList);
+        return count;
+      }
+    });
+  }
+
+  private void addMigrationBlocks(final List<DbMapSqlParameterSource> argsList, final long docOid, final Timestamp ver, final Timestamp corr,
+      final DataPointBlock.Builder set, final DataPointBlock.Builder removed) {
+    if (set.size() > 0 && removed.size() > 0) {
+      // points are only removed on their own, so this is not expected
+      throw new OpenGammaRuntimeException("Unable to migrate time-series " + docOid + " as points were both set and removed at " + corr);
+    }
+    final int blockKind = (removed.size() > 0 ? BLOCK_KIND_REMOVED : BLOCK_KIND_SET);
+    final DataPointBlock points = (removed.size() > 0 ? removed : set).build();
+    for (Entry<LocalDate, DataPointBlock> entry : splitByYear(points).entrySet()) {
+      argsList.add(createBlockArgs(docOid, entry.getKey(), ver, corr, blockKind, entry.getValue()));
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Inserts blocks.
+   *
+   * @param argsList  the arguments for each block, not null
+   */
+  void insertBlocks(final List<DbMapSqlParameterSource> argsList) {
+    if (argsList.isEmpty()) {
+      return;
+    }
+    final String sqlInsert = getElSqlBundle().getSql("InsertBlock");
+    getJdbcTemplate().batchUpdate(sqlInsert, argsList.toArray(new DbMapSqlParameterSource[argsList.size()]));
+  }
+
+  /**
+   * Creates the arguments to insert a block.
+   *
+   * @param docOid  the document object identifier
+   * @param blockStart  the start of the year, not null
+   * @param ver  the version instant, not null
+   * @param corr  the correction instant, not null
+   * @param blockKind  the kind of block
+   * @param block  the points, not empty, not null
+   * @return the arguments, not null
+   */
+  DbMapSqlParameterSource createBlockArgs(final long docOid, final LocalDate blockStart, final Timestamp ver, final Timestamp corr,
+      final int blockKind, final DataPointBlock block) {
+    final byte[] bytes = block.encode();
+    return new DbMapSqlParameterSource()
+      .addValue("doc_oid", docOid)
+      .addDate("block_start", blockStart)
+      .addDate("block_end", DataPointBlock.blockEnd(blockStart))
+      .addValue("ver_instant", ver)
+      .addValue("corr_instant", corr)
+      .addValue("block_kind", blockKind)
+      .addValue("point_count", block.size())
+      .addDate("last_date", block.lastDate())
+      .addValue("point_data", new SqlLobValue(bytes, getDialect().getLobHandler()), Types.BLOB);
+  }
+
+  /**
+   * Splits points into yearly blocks.
+   *
+   * @param block  the points, not null
+   * @return the non-empty blocks keyed by the start of the year, not null
+   */
+  static Map<LocalDate, DataPointBlock> splitByYear(final DataPointBlock block) {
+    final Map<LocalDate, DataPointBlock> result = new TreeMap<LocalDate, DataPointBlock>();
+    int from = 0;
+    while (from < block.size()) {
+      final LocalDate blockStart = DataPointBlock.blockStart(block.dateAt(from));
+      final int end = (int) DataPointBlock.blockEnd(blockStart).toEpochDays();
+      int to = from + 1;
+      while (to < block.size() && block.dateAt(to) <= end) {
+        to++;
+      }
+      final int[] dates = new int[to - from];
+      final double[] values = new double[to - from];
+      block.copyTo(from, to, dates, values, 0);
+      result.put(blockStart, new DataPointBlock(dates, values, to - from));
+      from = to;
+    }
+    return result;
+  }
+
+  private static DataPointBlock toBlock(final LocalDateDoubleTimeSeries series) {
+    final int[] dates = new int[series.size()];
+    final double[] values = new double[series.size()];
+    int i = 0;
+    for (Entry<LocalDate, Double> entry : series) {
+      LocalDate date = entry.getKey();
+      Double value = entry.getValue();
+      if (date == null || value == null) {
+        throw new IllegalArgumentException("Time-series must not contain a null value");
+      }
+      dates[i] = (int) date.toEpochDays();
+      values[i++] = value;
+    }
+    return new DataPointBlock(dates, values, i);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Mapper from SQL rows of blocks to a LocalDateDoubleTimeSeries.
+   * <p>
+   * The rows of each year are merged in correction order. Reading stops once
+   * enough points have been found to satisfy the maximum number of points.
+   */
+  protected final class DataPointBlocksExtractor implements ResultSetExtractor<LocalDateDoubleTimeSeries> {
+    private final int _startDate;
+    private final int _endDate;
+    private final Integer _maxPoints;
+
+    public DataPointBlocksExtractor(final HistoricalTimeSeriesGetFilter filter) {
+      _startDate = filter.getEarliestDate() != null ? (int) filter.getEarliestDate().toEpochDays() : Integer.MIN_VALUE;
+      _endDate = filter.getLatestDate() != null ? (int) filter.getLatestDate().toEpochDays() : Integer.MAX_VALUE;
+      _maxPoints = filter.getMaxPoints();
+    }
+
+    @Override
+    public LocalDateDoubleTimeSeries extractData(final ResultSet rs) throws SQLException, DataAccessException {
+      final LobHandler lob = getDialect().getLobHandler();
+      final int limit = (_maxPoints != null ? Math.abs(_maxPoints) : Integer.MAX_VALUE);
+      final List<DataPointBlock> years = new ArrayList<DataPointBlock>();
+      int total = 0;
+      Date yearStart = null;
+      DataPointBlock year = null;
+      while (total < limit && rs.next()) {
+        final Date blockStart = rs.getDate("BLOCK_START");
+        if (blockStart.equals(yearStart) == false) {
+          if (year != null) {
+            year = year.slice(_startDate, _endDate);
+            years.add(year);
+            total += year.size();
+          }
+          yearStart = blockStart;
+          year = DataPointBlock.EMPTY;
+        }
+        final DataPointBlock block = DataPointBlock.decode(lob.getBlobAsBytes(rs, "POINT_DATA"));
+        if (rs.getInt("BLOCK_KIND") == BLOCK_KIND_REMOVED) {
+          year = year.remove(block);
+        } else {
+          year = year.merge(block);
+        }
+      }
+      if (year != null && total < limit) {
+        year = year.slice(_startDate, _endDate);
+        years.add(year);
+        total += year.size();
+      }
+      if (_maxPoints != null && _maxPoints < 0) {
+        Collections.reverse(years);
+      }
+      // select the requested points and copy them into the result arrays
+      int skip = 0;
+      int count = total;
+      if (total > limit) {
+        count = limit;
+        skip = (_maxPoints < 0 ? total - limit : 0);
+      }
+      final int[] dates = new int[count];
+      final double[] values = new double[count];
+      int index = 0;
+      for (DataPointBlock block : years) {
+        final int from = Math.min(skip, block.size());
+        final int to = Math.min(block.size(), from + count - index);
+        skip -= from;
+        if (to > from) {
+          block.copyTo(from, to, dates, values, index);
+          index += to - from;
+        }
+      }
+      return new ArrayLocalDateDoubleTimeSeries(new FastArrayIntDoubleTimeSeries(DateTimeNumericEncoding.DATE_EPOCH_DAYS, dates, values));
+    }
+  }
+
+}
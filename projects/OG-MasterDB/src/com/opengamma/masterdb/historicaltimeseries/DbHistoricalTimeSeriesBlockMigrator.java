@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.id.ObjectIdentifiable;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Copies time-series data points stored a point per row into compressed blocks.
+ * <p>
+ * This is used to move an existing database to the block storage of
+ * {@link DbHistoricalTimeSeriesBlockDataPointsWorker}. Each series is copied in its own
+ * transaction, and a series that already has data points in blocks is skipped, so the
+ * migration may be stopped and restarted. The point per row data is left unchanged.
+ * The master should not be updated while the migration is running.
+ * <p>
+ * This class is thread-safe.
+ */
+public class DbHistoricalTimeSeriesBlockMigrator {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(DbHistoricalTimeSeriesBlockMigrator.class);
+
+  /**
+   * The master.
+   */
+  private final DbHistoricalTimeSeriesMaster _master;
+  /**
+   * The block storage worker.
+   */
+  private final DbHistoricalTimeSeriesBlockDataPointsWorker _worker;
+
+  /**
+   * Creates an instance.
+   *
+   * @param master  the master to migrate, not null
+   */
+  public DbHistoricalTimeSeriesBlockMigrator(final DbHistoricalTimeSeriesMaster master) {
+    ArgumentChecker.notNull(master, "master");
+    _master = master;
+    _worker = new DbHistoricalTimeSeriesBlockDataPointsWorker(master);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the master.
+   *
+   * @return the master, not null
+   */
+  public DbHistoricalTimeSeriesMaster getMaster() {
+    return _master;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Copies the data points of every series that has not yet been copied.
+   *
+   * @return the number of data point rows copied
+   */
+  public long migrate() {
+    final List<Long> docOids = _worker.selectUnmigratedSeries();
+    s_logger.info("Migrating data points of {} time-series to block storage", docOids.size());
+    final long start = System.nanoTime();
+    long rows = 0;
+    int series = 0;
+    for (Long docOid : docOids) {
+      rows += _worker.migrateDataPoints(docOid);
+      series++;
+      if (series % 1000 == 0) {
+        s_logger.info("Migrated {} of {} time-series, {} data point rows", new Object[] {series, docOids.size(), rows});
+      }
+    }
+    s_logger.info("Migrated {} time-series, {} data point rows in {}ms", new Object[] {series, rows, (System.nanoTime() - start) / 1000000});
+    return rows;
+  }
+
+  /**
+   * Copies the data points of a single series.
+   * <p>
+   * The series must not already have data points in blocks.
+   *
+   * @param objectId  the time-series object identifier, not null
+   * @return the number of data point rows copied
+   */
+  public int migrate(final ObjectIdentifiable objectId) {
+    ArgumentChecker.notNull(objectId, "objectId");
+    return _worker.migrateDataPoints(_master.extractOid(objectId));
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + _master + "]";
+  }
+
+}
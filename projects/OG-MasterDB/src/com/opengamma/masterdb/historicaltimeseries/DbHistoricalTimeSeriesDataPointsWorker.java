@@ -157,7 +157,7 @@ public class DbHistoricalTimeSeriesDataPointsWorker extends AbstractDbMaster {
     // Get the actual data points and attach to the Manageable HTS
     if (filter.getLatestDate() == null || filter.getEarliestDate() == null || !filter.getLatestDate().isBefore(filter.getEarliestDate())) {
       final String sqlPoints = getElSqlBundle().getSql("SelectDataPoints", args);
-      LocalDateDoubleTimeSeries series = namedJdbc.query(sqlPoints, args, new DataPointsExtractor());
+      LocalDateDoubleTimeSeries series = namedJdbc.query(sqlPoints, args, createDataPointsExtractor(filter));
       result.setTimeSeries(series);
     } else {
       //TODO: this is a hack, most of the places that call with this condition want some kind of metadata, which it would be cheaper for us to expose specifically
@@ -165,6 +165,16 @@ public class DbHistoricalTimeSeriesDataPointsWorker extends AbstractDbMaster {
     }
     return result;
   }
+
+  /**
+   * Creates the extractor for the data points query.
+   * 
+   * @param filter  the filter used to query the data points, not null
+   * @return the extractor, not null
+   */
+  protected ResultSetExtractor<LocalDateDoubleTimeSeries> createDataPointsExtractor(final HistoricalTimeSeriesGetFilter filter) {
+    return new DataPointsExtractor();
+  }
     
   //-------------------------------------------------------------------------
   public UniqueId updateTimeSeriesDataPoints(final ObjectIdentifiable objectId, final LocalDateDoubleTimeSeries series) {
@@ -105,7 +105,7 @@ public class DbHistoricalTimeSeriesMaster extends AbstractDocumentDbMaster<Histo
   /**
    * Worker.
    */
-  private final DbHistoricalTimeSeriesDataPointsWorker _dataPointsWorker;
+  private DbHistoricalTimeSeriesDataPointsWorker _dataPointsWorker;
 
   /**
    * Creates an instance.
@@ -178,6 +178,32 @@ public class DbHistoricalTimeSeriesMaster extends AbstractDocumentDbMaster<Histo
     return _dataPointsWorker;
   }
 
+  /**
+   * Checks if the data points are stored in compressed blocks.
+   * 
+   * @return true if the data points are stored in the {@code hts_point_block} table,
+   *  false if stored a point per row in the {@code hts_point} table
+   */
+  public boolean isBlockStorage() {
+    return _dataPointsWorker instanceof DbHistoricalTimeSeriesBlockDataPointsWorker;
+  }
+
+  /**
+   * Sets whether the data points are stored in compressed blocks.
+   * <p>
+   * The two forms of storage are independent, existing data points can be copied
+   * to the block storage using {@link DbHistoricalTimeSeriesBlockMigrator}.
+   * This should be set immediately after construction.
+   * 
+   * @param blockStorage  true to store the data points in the {@code hts_point_block} table,
+   *  false to store a point per row in the {@code hts_point} table
+   */
+  public void setBlockStorage(final boolean blockStorage) {
+    if (blockStorage != isBlockStorage()) {
+      _dataPointsWorker = (blockStorage ? new DbHistoricalTimeSeriesBlockDataPointsWorker(this) : new DbHistoricalTimeSeriesDataPointsWorker(this));
+    }
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public HistoricalTimeSeriesInfoMetaDataResult metaData(HistoricalTimeSeriesInfoMetaDataRequest request) {
@@ -303,6 +329,25 @@ public class DbHistoricalTimeSeriesMaster extends AbstractDocumentDbMaster<Histo
   //-------------------------------------------------------------------------
   @Override
   public HistoricalTimeSeriesInfoDocument add(HistoricalTimeSeriesInfoDocument document) {
+    checkNotDuplicate(document);
+    return super.add(document);
+  }
+
+  @Override
+  public List<HistoricalTimeSeriesInfoDocument> addAll(List<HistoricalTimeSeriesInfoDocument> documents) {
+    ArgumentChecker.noNulls(documents, "documents");
+    for (HistoricalTimeSeriesInfoDocument document : documents) {
+      checkNotDuplicate(document);
+    }
+    return super.addAll(documents);
+  }
+
+  /**
+   * Checks that a document to be added is valid and does not match an existing row.
+   * 
+   * @param document  the document, not null
+   */
+  private void checkNotDuplicate(HistoricalTimeSeriesInfoDocument document) {
     ArgumentChecker.notNull(document, "document");
     ArgumentChecker.notNull(document.getInfo(), "document.info");
     ArgumentChecker.notNull(document.getInfo().getName(), "document.info.name");
@@ -321,7 +366,6 @@ public class DbHistoricalTimeSeriesMaster extends AbstractDocumentDbMaster<Histo
     if (result.getDocuments().size() > 0) {
       throw new DataDuplicationException("Unable to add as similar row exists already: " + result.getDocuments().get(0).getObjectId() + " matched " + request);
     }
-    return super.add(document);
   }
 
   /**
@@ -0,0 +1,289 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Encodes and decodes a block of time-series data points to a compact binary form.
+ * <p>
+ * The dates are held as epoch days. The first date is written in full and each subsequent
+ * date as the number of days since the previous one, using a variable length encoding so
+ * that a typical daily series needs one byte per date. The values are written as a bit
+ * stream, each value XORed with the previous one. Successive values in a market data series
+ * tend to share their sign, exponent and leading mantissa bits, so the XOR is zero or has
+ * a short run of meaningful bits that can be written alone.
+ * <p>
+ * The layout is a format byte, the point count, the dates and then the value bits.
+ * Decoding writes directly into caller supplied arrays so that a series made of several
+ * blocks can be assembled without intermediate objects.
+ * <p>
+ * This class is a thread-safe static utility class.
+ */
+public final class TimeSeriesBlockCodec {
+
+  /**
+   * The format of the encoded data.
+   */
+  private static final byte FORMAT = 1;
+
+  /**
+   * Restricted constructor.
+   */
+  private TimeSeriesBlockCodec() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Encodes data points.
+   *
+   * @param dates  the dates as epoch days, strictly ascending, not null
+   * @param values  the values, same length as the dates, not null
+   * @param offset  the index of the first point to encode
+   * @param count  the number of points to encode
+   * @return the encoded data, not null
+   */
+  public static byte[] encode(final int[] dates, final double[] values, final int offset, final int count) {
+    ArgumentChecker.notNull(dates, "dates");
+    ArgumentChecker.notNull(values, "values");
+    if (offset < 0 || count < 0 || offset + count > dates.length || offset + count > values.length) {
+      throw new IllegalArgumentException("Invalid range: offset " + offset + ", count " + count);
+    }
+    final Writer out = new Writer(16 + count * 3);
+    out.writeByte(FORMAT);
+    out.writeVarInt(count);
+    if (count == 0) {
+      return out.toByteArray();
+    }
+    out.writeVarInt(zigZag(dates[offset]));
+    for (int i = offset + 1; i < offset + count; i++) {
+      final int delta = dates[i] - dates[i - 1];
+      if (delta <= 0) {
+        throw new IllegalArgumentException("Dates must be strictly ascending");
+      }
+      out.writeVarInt(delta);
+    }
+    long previous = Double.doubleToRawLongBits(values[offset]);
+    out.writeBits(previous, 64);
+    int previousLeading = Integer.MAX_VALUE;
+    int previousTrailing = 0;
+    for (int i = offset + 1; i < offset + count; i++) {
+      final long bits = Double.doubleToRawLongBits(values[i]);
+      final long xor = bits ^ previous;
+      previous = bits;
+      if (xor == 0) {
+        out.writeBits(0, 1);
+        continue;
+      }
+      // leading zeros are capped to fit in five bits
+      final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      final int trailing = Long.numberOfTrailingZeros(xor);
+      if (leading >= previousLeading && trailing >= previousTrailing) {
+        // meaningful bits fit in the previous window
+        out.writeBits(2, 2);
+        out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+      } else {
+        final int meaningful = 64 - leading - trailing;
+        out.writeBits(3, 2);
+        out.writeBits(leading, 5);
+        out.writeBits(meaningful - 1, 6);
+        out.writeBits(xor >>> trailing, meaningful);
+        previousLeading = leading;
+        previousTrailing = trailing;
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Gets the number of data points in encoded data.
+   *
+   * @param data  the encoded data, not null
+   * @return the number of data points
+   */
+  public static int decodeCount(final byte[] data) {
+    ArgumentChecker.notNull(data, "data");
+    final Reader in = new Reader(data);
+    checkFormat(in);
+    return in.readVarInt();
+  }
+
+  /**
+   * Decodes data points into arrays.
+   *
+   * @param data  the encoded data, not null
+   * @param dates  the array to write the dates to as epoch days, not null
+   * @param values  the array to write the values to, not null
+   * @param offset  the index to write the first point at
+   * @return the number of data points decoded
+   * @throws IndexOutOfBoundsException if the arrays are too small
+   */
+  public static int decode(final byte[] data, final int[] dates, final double[] values, final int offset) {
+    ArgumentChecker.notNull(data, "data");
+    ArgumentChecker.notNull(dates, "dates");
+    ArgumentChecker.notNull(values, "values");
+    final Reader in = new Reader(data);
+    checkFormat(in);
+    final int count = in.readVarInt();
+    if (count == 0) {
+      return 0;
+    }
+    if (offset < 0 || offset + count > dates.length || offset + count > values.length) {
+      throw new IndexOutOfBoundsException("Arrays too small for " + count + " points at offset " + offset);
+    }
+    int date = unZigZag(in.readVarInt());
+    dates[offset] = date;
+    for (int i = offset + 1; i < offset + count; i++) {
+      date += in.readVarInt();
+      dates[i] = date;
+    }
+    long previous = in.readBits(64);
+    values[offset] = Double.longBitsToDouble(previous);
+    int leading = 0;
+    int trailing = 0;
+    for (int i = offset + 1; i < offset + count; i++) {
+      if (in.readBits(1) != 0) {
+        if (in.readBits(1) != 0) {
+          leading = (int) in.readBits(5);
+          final int meaningful = (int) in.readBits(6) + 1;
+          trailing = 64 - leading - meaningful;
+        }
+        previous ^= in.readBits(64 - leading - trailing) << trailing;
+      }
+      values[i] = Double.longBitsToDouble(previous);
+    }
+    return count;
+  }
+
+  private static void checkFormat(final Reader in) {
+    final int format = in.readByte();
+    if (format != FORMAT) {
+      throw new OpenGammaRuntimeException("Unknown time-series block format: " + format);
+    }
+  }
+
+  private static int zigZag(final int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unZigZag(final int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Writes bytes and bits to a growable buffer.
+   */
+  private static final class Writer {
+    private byte[] _buffer;
+    private int _bytes;
+    private int _freeBits;
+
+    Writer(final int capacity) {
+      _buffer = new byte[capacity];
+    }
+
+    void writeByte(final int value) {
+      ensure(1);
+      _buffer[_bytes++] = (byte) value;
+      _freeBits = 0;
+    }
+
+    void writeVarInt(final int value) {
+      int remaining = value;
+      while ((remaining & ~0x7F) != 0) {
+        writeByte((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      writeByte(remaining);
+    }
+
+    void writeBits(final long value, final int count) {
+      int remaining = count;
+      while (remaining > 0) {
+        if (_freeBits == 0) {
+          ensure(1);
+          _buffer[_bytes++] = 0;
+          _freeBits = 8;
+        }
+        final int n = Math.min(_freeBits, remaining);
+        final int bits = (int) ((value >>> (remaining - n)) & ((1 << n) - 1));
+        _buffer[_bytes - 1] |= bits << (_freeBits - n);
+        _freeBits -= n;
+        remaining -= n;
+      }
+    }
+
+    private void ensure(final int extra) {
+      if (_bytes + extra > _buffer.length) {
+        final byte[] buffer = new byte[Math.max(_buffer.length * 2, _bytes + extra)];
+        System.arraycopy(_buffer, 0, buffer, 0, _bytes);
+        _buffer = buffer;
+      }
+    }
+
+    byte[] toByteArray() {
+      final byte[] result = new byte[_bytes];
+      System.arraycopy(_buffer, 0, result, 0, _bytes);
+      return result;
+    }
+  }
+
+  /**
+   * Reads bytes and bits from a buffer.
+   */
+  private static final class Reader {
+    private final byte[] _buffer;
+    private int _position;
+    private int _usedBits = 8;
+
+    Reader(final byte[] buffer) {
+      _buffer = buffer;
+    }
+
+    int readByte() {
+      if (_position >= _buffer.length) {
+        throw new OpenGammaRuntimeException("Truncated time-series block");
+      }
+      _usedBits = 8;
+      return _buffer[_position++] & 0xFF;
+    }
+
+    int readVarInt() {
+      int result = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = readByte();
+        result |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+
+    long readBits(final int count) {
+      long result = 0;
+      int remaining = count;
+      while (remaining > 0) {
+        if (_usedBits == 8) {
+          if (_position >= _buffer.length) {
+            throw new OpenGammaRuntimeException("Truncated time-series block");
+          }
+          _position++;
+          _usedBits = 0;
+        }
+        final int n = Math.min(8 - _usedBits, remaining);
+        final int bits = (_buffer[_position - 1] >>> (8 - _usedBits - n)) & ((1 << n) - 1);
+        result = (result << n) | bits;
+        _usedBits += n;
+        remaining -= n;
+      }
+      return result;
+    }
+  }
+
+}
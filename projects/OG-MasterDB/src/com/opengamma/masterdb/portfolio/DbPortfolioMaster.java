@@ -10,9 +10,11 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
@@ -25,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 
 import com.google.common.base.Objects;
@@ -43,6 +46,8 @@ import com.opengamma.master.portfolio.PortfolioDocument;
 import com.opengamma.master.portfolio.PortfolioHistoryRequest;
 import com.opengamma.master.portfolio.PortfolioHistoryResult;
 import com.opengamma.master.portfolio.PortfolioMaster;
+import com.opengamma.master.portfolio.PortfolioNodeLoader;
+import com.opengamma.master.portfolio.PortfolioNodeTree;
 import com.opengamma.master.portfolio.PortfolioSearchRequest;
 import com.opengamma.master.portfolio.PortfolioSearchResult;
 import com.opengamma.master.portfolio.PortfolioSearchSortOrder;
@@ -52,6 +57,7 @@ import com.opengamma.util.db.DbConnector;
 import com.opengamma.util.db.DbDateUtils;
 import com.opengamma.util.db.DbMapSqlParameterSource;
 import com.opengamma.util.paging.Paging;
+import com.opengamma.util.paging.PagingRequest;
 import com.opengamma.util.tuple.LongObjectPair;
 
 /**
@@ -60,13 +66,17 @@ import com.opengamma.util.tuple.LongObjectPair;
  * This is a full implementation of the portfolio master using an SQL database.
  * Full details of the API are in {@link PortfolioMaster}.
  * <p>
+ * Large portfolios can also be loaded a piece at a time, using the nested set columns
+ * of the node table to select a subtree and the depth column to limit it.
+ * Full details of this API are in {@link PortfolioNodeLoader}.
+ * <p>
  * The SQL is stored externally in {@code DbPortfolioMaster.elsql}.
  * Alternate databases or specific SQL requirements can be handled using database
  * specific overrides, such as {@code DbPortfolioMaster-MySpecialDB.elsql}.
  * <p>
  * This class is mutable but must be treated as immutable after configuration.
  */
-public class DbPortfolioMaster extends AbstractDocumentDbMaster<PortfolioDocument> implements PortfolioMaster {
+public class DbPortfolioMaster extends AbstractDocumentDbMaster<PortfolioDocument> implements PortfolioMaster, PortfolioNodeLoader {
 
   /** Logger. */
   private static final Logger s_logger = LoggerFactory.getLogger(DbPortfolioMaster.class);
@@ -364,6 +374,98 @@ public class DbPortfolioMaster extends AbstractDocumentDbMaster<PortfolioDocumen
     return docs.get(0).getPortfolio().getRootNode();  // SQL loads desired node in place of the root node
   }
 
+  //-------------------------------------------------------------------------
+  @Override
+  public PortfolioNodeTree getPortfolioTree(final UniqueId portfolioId, final int depth) {
+    ArgumentChecker.notNull(portfolioId, "portfolioId");
+    checkScheme(portfolioId);
+    if (portfolioId.isVersioned() == false) {
+      return getPortfolioTree(portfolioId, VersionCorrection.LATEST, depth);
+    }
+    s_logger.debug("getPortfolioTree {}", portfolioId);
+    final DbMapSqlParameterSource args = argsGetById(portfolioId);
+    return getTree("GetTreeById", args, depth, "Portfolio not found: " + portfolioId);
+  }
+
+  @Override
+  public PortfolioNodeTree getPortfolioTree(final ObjectIdentifiable portfolioId, final VersionCorrection versionCorrection, final int depth) {
+    ArgumentChecker.notNull(portfolioId, "portfolioId");
+    ArgumentChecker.notNull(versionCorrection, "versionCorrection");
+    checkScheme(portfolioId);
+    s_logger.debug("getPortfolioTree {} {}", portfolioId, versionCorrection);
+    final DbMapSqlParameterSource args = argsGetByOidInstants(portfolioId, versionCorrection.withLatestFixed(now()));
+    return getTree("GetTreeByOidInstants", args, depth, "Portfolio not found: " + portfolioId);
+  }
+
+  @Override
+  public PortfolioNodeTree getNodeTree(final UniqueId nodeId, final int depth) {
+    ArgumentChecker.notNull(nodeId, "nodeId");
+    checkScheme(nodeId);
+    s_logger.debug("getNodeTree {}", nodeId);
+    final DbMapSqlParameterSource args = argsGetNode(nodeId);
+    final String name = (nodeId.isVersioned() ? "GetNodeTreeById" : "GetNodeTreeByOidInstants");
+    return getTree(name, args, depth, "Node not found: " + nodeId);
+  }
+
+  @Override
+  public List<ObjectId> getNodePositionIds(final UniqueId nodeId, final PagingRequest pagingRequest) {
+    ArgumentChecker.notNull(nodeId, "nodeId");
+    ArgumentChecker.notNull(pagingRequest, "pagingRequest");
+    checkScheme(nodeId);
+    s_logger.debug("getNodePositionIds {} {}", nodeId, pagingRequest);
+    final DbMapSqlParameterSource args = argsGetNode(nodeId)
+      .addValue("paging_offset", pagingRequest.getFirstItem())
+      .addValue("paging_fetch", pagingRequest.getPagingSize());
+    final String name = (nodeId.isVersioned() ? "GetNodePositionIdsById" : "GetNodePositionIdsByOidInstants");
+    final NamedParameterJdbcOperations namedJdbc = getJdbcTemplate().getNamedParameterJdbcOperations();
+    return namedJdbc.query(getElSqlBundle().getSql(name, args), args, new RowMapper<ObjectId>() {
+      @Override
+      public ObjectId mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        return ObjectId.of(rs.getString("POS_KEY_SCHEME"), rs.getString("POS_KEY_VALUE"));
+      }
+    });
+  }
+
+  /**
+   * Gets the SQL arguments to locate a node, by row if versioned, otherwise at the latest instant.
+   * 
+   * @param nodeId  the node unique identifier, not null
+   * @return the SQL arguments, not null
+   */
+  protected DbMapSqlParameterSource argsGetNode(final UniqueId nodeId) {
+    final DbMapSqlParameterSource args = new DbMapSqlParameterSource();
+    if (nodeId.isVersioned()) {
+      args.addValue("node_id", extractRowId(nodeId));
+    } else {
+      final Instant now = now();
+      args.addValue("node_oid", extractOid(nodeId))
+        .addTimestamp("version_as_of_instant", now)
+        .addTimestamp("corrected_to_instant", now);
+    }
+    return args;
+  }
+
+  /**
+   * Loads a depth limited tree.
+   * 
+   * @param name  the name of the SQL, not null
+   * @param args  the arguments locating the root of the tree, not null
+   * @param depth  the number of levels to load below the root, zero or greater
+   * @param notFoundMessage  the message if the root is not found, not null
+   * @return the tree, not null
+   */
+  private PortfolioNodeTree getTree(final String name, final DbMapSqlParameterSource args, final int depth, final String notFoundMessage) {
+    ArgumentChecker.notNegative(depth, "depth");
+    args.addValue("depth", depth);
+    final PortfolioDocumentExtractor extractor = new PortfolioDocumentExtractor(false, false, true);
+    final NamedParameterJdbcOperations namedJdbc = getJdbcTemplate().getNamedParameterJdbcOperations();
+    final List<PortfolioDocument> docs = namedJdbc.query(getElSqlBundle().getSql(name, args), args, extractor);
+    if (docs.isEmpty()) {
+      throw new DataNotFoundException(notFoundMessage);
+    }
+    return new PortfolioNodeTree(docs.get(0), extractor.getChildCounts(), extractor.getPositionCounts());
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Mapper from SQL rows to a PortfolioDocument.
@@ -378,10 +480,36 @@ public class DbPortfolioMaster extends AbstractDocumentDbMaster<PortfolioDocumen
     private Set<ObjectId> _nodePositionIds; //Should always === _node.getPositionIds(), but has fast contains
     private List<PortfolioDocument> _documents = new ArrayList<PortfolioDocument>();
     private final Stack<LongObjectPair<ManageablePortfolioNode>> _nodes = new Stack<LongObjectPair<ManageablePortfolioNode>>();
+    private final Map<ObjectId, Integer> _childCounts;
+    private final Map<ObjectId, Integer> _positionCounts;
 
     public PortfolioDocumentExtractor(boolean includePositions, boolean complete) {
+      this(includePositions, complete, false);
+    }
+
+    public PortfolioDocumentExtractor(boolean includePositions, boolean complete, boolean includeCounts) {
       _includePosition = includePositions;
       _complete = complete;
+      _childCounts = (includeCounts ? new HashMap<ObjectId, Integer>() : null);
+      _positionCounts = (includeCounts ? new HashMap<ObjectId, Integer>() : null);
+    }
+
+    /**
+     * Gets the number of child nodes of each node, if counts were included.
+     * 
+     * @return the counts keyed by node, null if not included
+     */
+    public Map<ObjectId, Integer> getChildCounts() {
+      return _childCounts;
+    }
+
+    /**
+     * Gets the number of positions of each node, if counts were included.
+     * 
+     * @return the counts keyed by node, null if not included
+     */
+    public Map<ObjectId, Integer> getPositionCounts() {
+      return _positionCounts;
     }
 
     @Override
@@ -449,6 +577,10 @@ public class DbPortfolioMaster extends AbstractDocumentDbMaster<PortfolioDocumen
       _nodePositionIds = new HashSet<ObjectId>(); //To maintain invariant this becomes is empty
       _node.setUniqueId(createUniqueId(nodeOid, nodeId));
       _node.setPortfolioId(_portfolio.getUniqueId());
+      if (_childCounts != null) {
+        _childCounts.put(_node.getUniqueId().getObjectId(), rs.getInt("CHILD_COUNT"));
+        _positionCounts.put(_node.getUniqueId().getObjectId(), rs.getInt("POSITION_COUNT"));
+      }
       if (_nodes.size() == 0) {
         if (_complete == false) {
           final Long parentNodeId = (Long) rs.getObject("PARENT_NODE_ID");
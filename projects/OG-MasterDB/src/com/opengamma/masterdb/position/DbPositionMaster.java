@@ -11,6 +11,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -205,106 +206,130 @@ public class DbPositionMaster extends AbstractDocumentDbMaster<PositionDocument>
    */
   @Override
   protected PositionDocument insert(final PositionDocument document) {
-    ArgumentChecker.notNull(document.getPosition(), "document.position");
-
-    final long positionId = nextId("pos_master_seq");
-    final long positionOid = (document.getUniqueId() != null ? extractOid(document.getUniqueId()) : positionId);
-    final UniqueId positionUid = createUniqueId(positionOid, positionId);
-    final ManageablePosition position = document.getPosition();
-
-    // the arguments for inserting into the position table
-    final DbMapSqlParameterSource docArgs = new DbMapSqlParameterSource()
-        .addValue("position_id", positionId)
-        .addValue("position_oid", positionOid)
-        .addTimestamp("ver_from_instant", document.getVersionFromInstant())
-        .addTimestampNullFuture("ver_to_instant", document.getVersionToInstant())
-        .addTimestamp("corr_from_instant", document.getCorrectionFromInstant())
-        .addTimestampNullFuture("corr_to_instant", document.getCorrectionToInstant())
-        .addValue("quantity", position.getQuantity())
-        .addValue("provider_scheme", (position.getProviderId() != null ? position.getProviderId().getScheme().getName() : null))
-        .addValue("provider_value", (position.getProviderId() != null ? position.getProviderId().getValue() : null));
-    
-    // the arguments for inserting into the pos_attribute table
-    final List<DbMapSqlParameterSource> posAttrList = Lists.newArrayList();
-    for (Entry<String, String> entry : position.getAttributes().entrySet()) {
-      final long posAttrId = nextId("pos_trade_attr_seq");
-      final DbMapSqlParameterSource posAttrArgs = new DbMapSqlParameterSource()
-          .addValue("attr_id", posAttrId)
-          .addValue("pos_id", positionId)
-          .addValue("pos_oid", positionOid)
-          .addValue("key", entry.getKey())
-          .addValue("value", entry.getValue());
-      posAttrList.add(posAttrArgs);
-    }
+    insertAll(Collections.singletonList(document));
+    return document;
+  }
 
-    // the arguments for inserting into the idkey tables
-    final List<DbMapSqlParameterSource> posAssocList = new ArrayList<DbMapSqlParameterSource>();
-    final Set<Pair<String, String>> schemeValueSet = Sets.newHashSet();
-    for (ExternalId id : position.getSecurityLink().getAllExternalIds()) {
-      final DbMapSqlParameterSource assocArgs = new DbMapSqlParameterSource()
-          .addValue("position_id", positionId)
-          .addValue("key_scheme", id.getScheme().getName())
-          .addValue("key_value", id.getValue());
-      posAssocList.add(assocArgs);
-      schemeValueSet.add(Pair.of(id.getScheme().getName(), id.getValue()));
+  /**
+   * Inserts new documents.
+   * <p>
+   * The rows for all the documents are inserted using one JDBC batch per table.
+   * 
+   * @param documents  the documents, not null
+   */
+  @Override
+  protected void insertAll(final List<PositionDocument> documents) {
+    if (documents.isEmpty()) {
+      return;
     }
-
-    // the arguments for inserting into the trade table
+    for (PositionDocument document : documents) {
+      ArgumentChecker.notNull(document.getPosition(), "document.position");
+    }
+    final List<DbMapSqlParameterSource> docList = Lists.newArrayList();
+    final List<DbMapSqlParameterSource> posAttrList = Lists.newArrayList();
+    final List<DbMapSqlParameterSource> posAssocList = new ArrayList<DbMapSqlParameterSource>();
     final List<DbMapSqlParameterSource> tradeList = Lists.newArrayList();
     final List<DbMapSqlParameterSource> tradeAssocList = Lists.newArrayList();
     final List<DbMapSqlParameterSource> tradeAttributeList = Lists.newArrayList();
-    for (ManageableTrade trade : position.getTrades()) {
-      final long tradeId = nextId("pos_master_seq");
-      final long tradeOid = (trade.getUniqueId() != null ? extractOid(trade.getUniqueId()) : tradeId);
-      final ExternalId counterpartyId = trade.getCounterpartyExternalId();
-
-      final DbMapSqlParameterSource tradeArgs = new DbMapSqlParameterSource()
-          .addValue("trade_id", tradeId)
-          .addValue("trade_oid", tradeOid)
+    final Set<Pair<String, String>> schemeValueSet = Sets.newHashSet();
+    final List<UniqueId> positionUids = new ArrayList<UniqueId>(documents.size());
+    for (PositionDocument document : documents) {
+      final long positionId = nextId("pos_master_seq");
+      final long positionOid = (document.getUniqueId() != null ? extractOid(document.getUniqueId()) : positionId);
+      final UniqueId positionUid = createUniqueId(positionOid, positionId);
+      final ManageablePosition position = document.getPosition();
+      positionUids.add(positionUid);
+
+      // the arguments for inserting into the position table
+      final DbMapSqlParameterSource docArgs = new DbMapSqlParameterSource()
           .addValue("position_id", positionId)
           .addValue("position_oid", positionOid)
-          .addValue("quantity", trade.getQuantity())
-          .addDate("trade_date", trade.getTradeDate())
-          .addTimeAllowNull("trade_time", trade.getTradeTime() != null ? trade.getTradeTime().toLocalTime() : null)
-          .addValue("zone_offset", (trade.getTradeTime() != null ? trade.getTradeTime().getOffset().getAmountSeconds() : null))
-          .addValue("cparty_scheme", counterpartyId.getScheme().getName())
-          .addValue("cparty_value", counterpartyId.getValue())
+          .addTimestamp("ver_from_instant", document.getVersionFromInstant())
+          .addTimestampNullFuture("ver_to_instant", document.getVersionToInstant())
+          .addTimestamp("corr_from_instant", document.getCorrectionFromInstant())
+          .addTimestampNullFuture("corr_to_instant", document.getCorrectionToInstant())
+          .addValue("quantity", position.getQuantity())
           .addValue("provider_scheme", (position.getProviderId() != null ? position.getProviderId().getScheme().getName() : null))
-          .addValue("provider_value", (position.getProviderId() != null ? position.getProviderId().getValue() : null))
-          .addValue("premium_value", (trade.getPremium() != null ? trade.getPremium() : null))
-          .addValue("premium_currency", (trade.getPremiumCurrency() != null ? trade.getPremiumCurrency().getCode() : null))
-          .addDateAllowNull("premium_date", trade.getPremiumDate())
-          .addTimeAllowNull("premium_time", (trade.getPremiumTime() != null ? trade.getPremiumTime().toLocalTime() : null))
-          .addValue("premium_zone_offset", (trade.getPremiumTime() != null ? trade.getPremiumTime().getOffset().getAmountSeconds() : null));
-      tradeList.add(tradeArgs);
-      
-      // trade attributes
-      Map<String, String> attributes = new HashMap<String, String>(trade.getAttributes());
-      for (Entry<String, String> entry : attributes.entrySet()) {
-        final long tradeAttrId = nextId("pos_trade_attr_seq");
-        final DbMapSqlParameterSource tradeAttributeArgs = new DbMapSqlParameterSource()
-            .addValue("attr_id", tradeAttrId)
-            .addValue("trade_id", tradeId)
-            .addValue("trade_oid", tradeOid)
+          .addValue("provider_value", (position.getProviderId() != null ? position.getProviderId().getValue() : null));
+      docList.add(docArgs);
+
+      // the arguments for inserting into the pos_attribute table
+      for (Entry<String, String> entry : position.getAttributes().entrySet()) {
+        final long posAttrId = nextId("pos_trade_attr_seq");
+        final DbMapSqlParameterSource posAttrArgs = new DbMapSqlParameterSource()
+            .addValue("attr_id", posAttrId)
+            .addValue("pos_id", positionId)
+            .addValue("pos_oid", positionOid)
             .addValue("key", entry.getKey())
             .addValue("value", entry.getValue());
-        tradeAttributeList.add(tradeAttributeArgs);
+        posAttrList.add(posAttrArgs);
       }
-      
-      // set the trade uniqueId
-      final UniqueId tradeUid = createUniqueId(tradeOid, tradeId);
-      IdUtils.setInto(trade, tradeUid);
-      trade.setParentPositionId(positionUid);
-      for (ExternalId id : trade.getSecurityLink().getAllExternalIds()) {
+
+      // the arguments for inserting into the idkey tables
+      for (ExternalId id : position.getSecurityLink().getAllExternalIds()) {
         final DbMapSqlParameterSource assocArgs = new DbMapSqlParameterSource()
-            .addValue("trade_id", tradeId)
+            .addValue("position_id", positionId)
             .addValue("key_scheme", id.getScheme().getName())
             .addValue("key_value", id.getValue());
-        tradeAssocList.add(assocArgs);
+        posAssocList.add(assocArgs);
         schemeValueSet.add(Pair.of(id.getScheme().getName(), id.getValue()));
       }
+
+      // the arguments for inserting into the trade table
+      for (ManageableTrade trade : position.getTrades()) {
+        final long tradeId = nextId("pos_master_seq");
+        final long tradeOid = (trade.getUniqueId() != null ? extractOid(trade.getUniqueId()) : tradeId);
+        final ExternalId counterpartyId = trade.getCounterpartyExternalId();
+
+        final DbMapSqlParameterSource tradeArgs = new DbMapSqlParameterSource()
+            .addValue("trade_id", tradeId)
+            .addValue("trade_oid", tradeOid)
+            .addValue("position_id", positionId)
+            .addValue("position_oid", positionOid)
+            .addValue("quantity", trade.getQuantity())
+            .addDate("trade_date", trade.getTradeDate())
+            .addTimeAllowNull("trade_time", trade.getTradeTime() != null ? trade.getTradeTime().toLocalTime() : null)
+            .addValue("zone_offset", (trade.getTradeTime() != null ? trade.getTradeTime().getOffset().getAmountSeconds() : null))
+            .addValue("cparty_scheme", counterpartyId.getScheme().getName())
+            .addValue("cparty_value", counterpartyId.getValue())
+            .addValue("provider_scheme", (position.getProviderId() != null ? position.getProviderId().getScheme().getName() : null))
+            .addValue("provider_value", (position.getProviderId() != null ? position.getProviderId().getValue() : null))
+            .addValue("premium_value", (trade.getPremium() != null ? trade.getPremium() : null))
+            .addValue("premium_currency", (trade.getPremiumCurrency() != null ? trade.getPremiumCurrency().getCode() : null))
+            .addDateAllowNull("premium_date", trade.getPremiumDate())
+            .addTimeAllowNull("premium_time", (trade.getPremiumTime() != null ? trade.getPremiumTime().toLocalTime() : null))
+            .addValue("premium_zone_offset", (trade.getPremiumTime() != null ? trade.getPremiumTime().getOffset().getAmountSeconds() : null));
+        tradeList.add(tradeArgs);
+
+        // trade attributes
+        Map<String, String> attributes = new HashMap<String, String>(trade.getAttributes());
+        for (Entry<String, String> entry : attributes.entrySet()) {
+          final long tradeAttrId = nextId("pos_trade_attr_seq");
+          final DbMapSqlParameterSource tradeAttributeArgs = new DbMapSqlParameterSource()
+              .addValue("attr_id", tradeAttrId)
+              .addValue("trade_id", tradeId)
+              .addValue("trade_oid", tradeOid)
+              .addValue("key", entry.getKey())
+              .addValue("value", entry.getValue());
+          tradeAttributeList.add(tradeAttributeArgs);
+        }
+
+        // set the trade uniqueId
+        final UniqueId tradeUid = createUniqueId(tradeOid, tradeId);
+        IdUtils.setInto(trade, tradeUid);
+        trade.setParentPositionId(positionUid);
+        for (ExternalId id : trade.getSecurityLink().getAllExternalIds()) {
+          final DbMapSqlParameterSource assocArgs = new DbMapSqlParameterSource()
+              .addValue("trade_id", tradeId)
+              .addValue("key_scheme", id.getScheme().getName())
+              .addValue("key_value", id.getValue());
+          tradeAssocList.add(assocArgs);
+          schemeValueSet.add(Pair.of(id.getScheme().getName(), id.getValue()));
+        }
+      }
     }
 
+    // each identifier is inserted once, however many documents refer to it
     final List<DbMapSqlParameterSource> idKeyList = new ArrayList<DbMapSqlParameterSource>();
     final String sqlSelectIdKey = getElSqlBundle().getSql("SelectIdKey");
     for (Pair<String, String> pair : schemeValueSet) {
@@ -319,14 +344,14 @@ public class DbPositionMaster extends AbstractDocumentDbMaster<PositionDocument>
       }
     }
     
-    final String sqlDoc = getElSqlBundle().getSql("Insert", docArgs);
+    final String sqlDoc = getElSqlBundle().getSql("Insert", docList.get(0));
     final String sqlIdKey = getElSqlBundle().getSql("InsertIdKey");
     final String sqlPosition2IdKey = getElSqlBundle().getSql("InsertPosition2IdKey");
     final String sqlTrade = getElSqlBundle().getSql("InsertTrade");
     final String sqlTrade2IdKey = getElSqlBundle().getSql("InsertTrade2IdKey");
     final String sqlPositionAttributes = getElSqlBundle().getSql("InsertPositionAttributes");
     final String sqlTradeAttributes = getElSqlBundle().getSql("InsertTradeAttributes");
-    getJdbcTemplate().update(sqlDoc, docArgs);
+    getJdbcTemplate().batchUpdate(sqlDoc, docList.toArray(new DbMapSqlParameterSource[docList.size()]));
     getJdbcTemplate().batchUpdate(sqlIdKey, idKeyList.toArray(new DbMapSqlParameterSource[idKeyList.size()]));
     getJdbcTemplate().batchUpdate(sqlPosition2IdKey, posAssocList.toArray(new DbMapSqlParameterSource[posAssocList.size()]));
     getJdbcTemplate().batchUpdate(sqlTrade, tradeList.toArray(new DbMapSqlParameterSource[tradeList.size()]));
@@ -335,9 +360,11 @@ public class DbPositionMaster extends AbstractDocumentDbMaster<PositionDocument>
     getJdbcTemplate().batchUpdate(sqlTradeAttributes, tradeAttributeList.toArray(new DbMapSqlParameterSource[tradeAttributeList.size()]));
     
     // set the uniqueId
-    position.setUniqueId(positionUid);
-    document.setUniqueId(positionUid);
-    return document;
+    for (int i = 0; i < documents.size(); i++) {
+      final UniqueId positionUid = positionUids.get(i);
+      documents.get(i).getPosition().setUniqueId(positionUid);
+      documents.get(i).setUniqueId(positionUid);
+    }
   }
 
   //-------------------------------------------------------------------------
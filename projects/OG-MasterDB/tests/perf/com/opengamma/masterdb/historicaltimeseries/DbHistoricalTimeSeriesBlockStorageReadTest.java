@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.time.calendar.DayOfWeek;
+import javax.time.calendar.LocalDate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.id.ExternalIdBundleWithDates;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesInfoDocument;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeriesInfo;
+import com.opengamma.masterdb.DbMasterTestUtils;
+import com.opengamma.util.test.DbTest;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+
+/**
+ * Compares the read throughput of the point per row and block storage of time-series data points.
+ * <p>
+ * A number of series with twenty years of daily data are loaded in yearly updates, as a bulk
+ * history load would, and then read in full and for the most recent year in each storage form.
+ */
+public class DbHistoricalTimeSeriesBlockStorageReadTest extends DbTest {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(DbHistoricalTimeSeriesBlockStorageReadTest.class);
+
+  private static final int NUM_SERIES = 20;
+  private static final int NUM_YEARS = 20;
+  private static final int NUM_READS = 5;
+
+  private DbHistoricalTimeSeriesMaster _htsMaster;
+
+  @Factory(dataProvider = "databases", dataProviderClass = DbTest.class)
+  public DbHistoricalTimeSeriesBlockStorageReadTest(String databaseType, String databaseVersion) {
+    super(databaseType, databaseVersion, databaseVersion);
+    s_logger.info("running testcases for {}", databaseType);
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    ConfigurableApplicationContext context = DbMasterTestUtils.getContext(getDatabaseType());
+    _htsMaster = (DbHistoricalTimeSeriesMaster) context.getBean(getDatabaseType() + "DbHistoricalTimeSeriesMaster");
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    _htsMaster.setBlockStorage(false);
+    _htsMaster = null;
+    super.tearDown();
+  }
+
+  @AfterSuite
+  public static void closeAfterSuite() {
+    DbMasterTestUtils.closeAfterSuite();
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_readThroughput() {
+    List<ObjectId> pointIds = load(false);
+    List<ObjectId> blockIds = load(true);
+
+    _htsMaster.setBlockStorage(false);
+    int points = read(pointIds, HistoricalTimeSeriesGetFilter.ofAll(), "point per row", "all");
+    read(pointIds, HistoricalTimeSeriesGetFilter.ofLatestPoint(), "point per row", "latest");
+    _htsMaster.setBlockStorage(true);
+    assertEquals(points, read(blockIds, HistoricalTimeSeriesGetFilter.ofAll(), "block", "all"));
+    read(blockIds, HistoricalTimeSeriesGetFilter.ofLatestPoint(), "block", "latest");
+  }
+
+  private List<ObjectId> load(final boolean blockStorage) {
+    _htsMaster.setBlockStorage(blockStorage);
+    final Random random = new Random(1);
+    final List<ObjectId> ids = new ArrayList<ObjectId>();
+    final long start = System.nanoTime();
+    for (int i = 0; i < NUM_SERIES; i++) {
+      ManageableHistoricalTimeSeriesInfo info = new ManageableHistoricalTimeSeriesInfo();
+      info.setName("Series " + i + (blockStorage ? " block" : " point"));
+      info.setDataField("CLOSE");
+      info.setDataProvider("CMPL");
+      info.setDataSource("BLOOMBERG");
+      info.setObservationTime("LDN_CLOSE");
+      info.setExternalIdBundle(ExternalIdBundleWithDates.of(ExternalIdBundle.of("PERF", info.getName())));
+      HistoricalTimeSeriesInfoDocument doc = _htsMaster.add(new HistoricalTimeSeriesInfoDocument(info));
+      ObjectId oid = doc.getInfo().getTimeSeriesObjectId();
+      double value = 100d;
+      for (int year = 2012 - NUM_YEARS; year < 2012; year++) {
+        List<LocalDate> dates = new ArrayList<LocalDate>();
+        List<Double> values = new ArrayList<Double>();
+        for (LocalDate date = LocalDate.of(year, 1, 1); date.getYear() == year; date = date.plusDays(1)) {
+          if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+            value = Math.round((value + random.nextGaussian() / 10d) * 100d) / 100d;
+            dates.add(date);
+            values.add(value);
+          }
+        }
+        _htsMaster.updateTimeSeriesDataPoints(oid, new ArrayLocalDateDoubleTimeSeries(dates, values));
+      }
+      ids.add(oid);
+    }
+    s_logger.info("Loading {} series of {} years into {} storage took {}ms",
+        new Object[] {NUM_SERIES, NUM_YEARS, blockStorage ? "block" : "point per row", (System.nanoTime() - start) / 1000000});
+    return ids;
+  }
+
+  private int read(final List<ObjectId> ids, final HistoricalTimeSeriesGetFilter filter, final String storage, final String description) {
+    int points = 0;
+    final long start = System.nanoTime();
+    for (int n = 0; n < NUM_READS; n++) {
+      points = 0;
+      for (ObjectId id : ids) {
+        LocalDateDoubleTimeSeries series = _htsMaster.getTimeSeries(id, VersionCorrection.LATEST, filter).getTimeSeries();
+        points += series.size();
+      }
+    }
+    final long nanos = System.nanoTime() - start;
+    s_logger.info("Reading {} of {} series from {} storage: {} points in {}ms, {} points/s",
+        new Object[] {description, ids.size(), storage, points, nanos / NUM_READS / 1000000, (long) (points * NUM_READS / (nanos / 1E9))});
+    return points;
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import javax.time.Instant;
+import javax.time.calendar.LocalDate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.historicaltimeseries.HistoricalTimeSeriesGetFilter;
+import com.opengamma.master.historicaltimeseries.ManageableHistoricalTimeSeries;
+import com.opengamma.util.test.DbTest;
+import com.opengamma.util.timeseries.localdate.ArrayLocalDateDoubleTimeSeries;
+import com.opengamma.util.timeseries.localdate.LocalDateDoubleTimeSeries;
+
+/**
+ * Tests the block storage of DbHistoricalTimeSeriesMaster data points.
+ */
+public class DbHistoricalTimeSeriesMasterBlockStorageTest extends AbstractDbHistoricalTimeSeriesMasterWorkerTest {
+  // superclass sets up dummy database
+
+  private static final Logger s_logger = LoggerFactory.getLogger(DbHistoricalTimeSeriesMasterBlockStorageTest.class);
+
+  private static final ObjectId OID_101 = ObjectId.of("DbHts", "DP101");
+
+  @Factory(dataProvider = "databases", dataProviderClass = DbTest.class)
+  public DbHistoricalTimeSeriesMasterBlockStorageTest(String databaseType, String databaseVersion) {
+    super(databaseType, databaseVersion);
+    s_logger.info("running testcases for {}", databaseType);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    // the master is shared with other tests
+    _htsMaster.setBlockStorage(false);
+    super.tearDown();
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_migrate_matchesPointStorage() {
+    VersionCorrection[] vcs = {
+      VersionCorrection.LATEST,
+      VersionCorrection.of(_version1Instant, _version1Instant),
+      VersionCorrection.of(_version2Instant, _version2Instant),
+      VersionCorrection.of(_version2Instant, _version3Instant),
+      VersionCorrection.of(_version3Instant, _version4Instant),
+      VersionCorrection.of(_version1Instant, _version4Instant),
+    };
+    ManageableHistoricalTimeSeries[] expected = new ManageableHistoricalTimeSeries[vcs.length];
+    for (int i = 0; i < vcs.length; i++) {
+      expected[i] = _htsMaster.getTimeSeries(OID_101, vcs[i]);
+    }
+    assertEquals(6, new DbHistoricalTimeSeriesBlockMigrator(_htsMaster).migrate());
+    _htsMaster.setBlockStorage(true);
+    for (int i = 0; i < vcs.length; i++) {
+      ManageableHistoricalTimeSeries test = _htsMaster.getTimeSeries(OID_101, vcs[i]);
+      assertEquals(expected[i].getUniqueId(), test.getUniqueId());
+      assertEquals(expected[i].getTimeSeries(), test.getTimeSeries());
+    }
+    // already migrated
+    assertEquals(0, new DbHistoricalTimeSeriesBlockMigrator(_htsMaster).migrate());
+  }
+
+  @Test
+  public void test_migrate_filters() {
+    new DbHistoricalTimeSeriesBlockMigrator(_htsMaster).migrate();
+    _htsMaster.setBlockStorage(true);
+    LocalDateDoubleTimeSeries test = _htsMaster.getTimeSeries(OID_101, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofLatestPoint()).getTimeSeries();
+    assertEquals(1, test.size());
+    assertEquals(LocalDate.of(2011, 1, 3), test.getTimeAt(0));
+    assertEquals(3.33d, test.getValueAt(0), 0.0001d);
+    test = _htsMaster.getTimeSeries(OID_101, VersionCorrection.LATEST, HistoricalTimeSeriesGetFilter.ofEarliestPoint()).getTimeSeries();
+    assertEquals(1, test.size());
+    assertEquals(LocalDate.of(2011, 1, 1), test.getTimeAt(0));
+    test = _htsMaster.getTimeSeries(OID_101, VersionCorrection.LATEST,
+        HistoricalTimeSeriesGetFilter.ofRange(LocalDate.of(2011, 1, 2), LocalDate.of(2011, 1, 2))).getTimeSeries();
+    assertEquals(1, test.size());
+    assertEquals(3.22d, test.getValueAt(0), 0.0001d);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_updateCorrectRemove() {
+    _htsMaster.setBlockStorage(true);
+    ObjectId oid = ObjectId.of("DbHts", "DP102");
+    LocalDate[] dates = {LocalDate.of(2010, 12, 30), LocalDate.of(2010, 12, 31), LocalDate.of(2011, 1, 3)};
+    UniqueId updated = _htsMaster.updateTimeSeriesDataPoints(oid, new ArrayLocalDateDoubleTimeSeries(dates, new double[] {1d, 2d, 3d}));
+    ManageableHistoricalTimeSeries test = _htsMaster.getTimeSeries(updated);
+    assertEquals(updated, test.getUniqueId());
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(dates, new double[] {1d, 2d, 3d}), test.getTimeSeries());
+    Instant updatedInstant = test.getVersionInstant();
+
+    LocalDate[] correctDates = {LocalDate.of(2010, 12, 31), LocalDate.of(2011, 1, 4)};
+    UniqueId corrected = _htsMaster.correctTimeSeriesDataPoints(oid, new ArrayLocalDateDoubleTimeSeries(correctDates, new double[] {2.5d, 4d}));
+    test = _htsMaster.getTimeSeries(corrected);
+    LocalDate[] allDates = {LocalDate.of(2010, 12, 30), LocalDate.of(2010, 12, 31), LocalDate.of(2011, 1, 3), LocalDate.of(2011, 1, 4)};
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(allDates, new double[] {1d, 2.5d, 3d, 4d}), test.getTimeSeries());
+    // the correction applies to the earlier version, but the new point does not
+    test = _htsMaster.getTimeSeries(oid, VersionCorrection.of(updatedInstant, test.getCorrectionInstant()));
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(dates, new double[] {1d, 2.5d, 3d}), test.getTimeSeries());
+
+    UniqueId removed = _htsMaster.removeTimeSeriesDataPoints(oid, LocalDate.of(2010, 12, 31), LocalDate.of(2011, 1, 3));
+    test = _htsMaster.getTimeSeries(removed);
+    LocalDate[] remainingDates = {LocalDate.of(2010, 12, 30), LocalDate.of(2011, 1, 4)};
+    assertEquals(new ArrayLocalDateDoubleTimeSeries(remainingDates, new double[] {1d, 4d}), test.getTimeSeries());
+    // prior to the removal the points are visible
+    test = _htsMaster.getTimeSeries(corrected);
+    assertEquals(4, test.getTimeSeries().size());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_update_beforeLatest() {
+    _htsMaster.setBlockStorage(true);
+    ObjectId oid = ObjectId.of("DbHts", "DP102");
+    _htsMaster.updateTimeSeriesDataPoints(oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {LocalDate.of(2011, 1, 3)}, new double[] {1d}));
+    _htsMaster.updateTimeSeriesDataPoints(oid, new ArrayLocalDateDoubleTimeSeries(new LocalDate[] {LocalDate.of(2011, 1, 2)}, new double[] {1d}));
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.historicaltimeseries;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * Test TimeSeriesBlockCodec.
+ */
+@Test
+public class TimeSeriesBlockCodecTest {
+
+  public void test_empty() {
+    byte[] data = TimeSeriesBlockCodec.encode(new int[0], new double[0], 0, 0);
+    assertEquals(0, TimeSeriesBlockCodec.decodeCount(data));
+    assertEquals(0, TimeSeriesBlockCodec.decode(data, new int[0], new double[0], 0));
+  }
+
+  public void test_single() {
+    assertRoundTrip(new int[] {-3000}, new double[] {1.5d});
+  }
+
+  public void test_repeatedAndSpecialValues() {
+    double[] values = {1d, 1d, 1d, Double.NaN, Double.POSITIVE_INFINITY, -0d, 0d, Double.MIN_VALUE, Double.MAX_VALUE, -1d};
+    int[] dates = new int[values.length];
+    for (int i = 0; i < dates.length; i++) {
+      dates[i] = 15000 + i * 7;
+    }
+    assertRoundTrip(dates, values);
+  }
+
+  public void test_randomSeries() {
+    Random random = new Random(1);
+    for (int n = 0; n < 200; n++) {
+      int size = random.nextInt(300) + 1;
+      int[] dates = new int[size];
+      double[] values = new double[size];
+      int date = random.nextInt(40000) - 20000;
+      double value = 100d;
+      for (int i = 0; i < size; i++) {
+        date += 1 + random.nextInt(n % 2 == 0 ? 1 : 400);
+        dates[i] = date;
+        value = (n % 3 == 0 ? Double.longBitsToDouble(random.nextLong()) : Math.round((value + random.nextGaussian()) * 100d) / 100d);
+        values[i] = value;
+      }
+      assertRoundTrip(dates, values);
+    }
+  }
+
+  public void test_priceSeriesCompresses() {
+    int size = 260;
+    int[] dates = new int[size];
+    double[] values = new double[size];
+    double value = 100d;
+    Random random = new Random(2);
+    for (int i = 0; i < size; i++) {
+      dates[i] = 15000 + i;
+      value = Math.round((value + random.nextGaussian() / 10d) * 100d) / 100d;
+      values[i] = value;
+    }
+    byte[] data = TimeSeriesBlockCodec.encode(dates, values, 0, size);
+    // a row per point stores at least 12 bytes of date and value
+    assertTrue(data.length < size * 8);
+  }
+
+  public void test_decodeAtOffset() {
+    int[] dates = {10, 11, 15};
+    double[] values = {1d, 2d, 3d};
+    byte[] data = TimeSeriesBlockCodec.encode(dates, values, 1, 2);
+    int[] decodedDates = new int[4];
+    double[] decodedValues = new double[4];
+    assertEquals(2, TimeSeriesBlockCodec.decode(data, decodedDates, decodedValues, 2));
+    assertEquals(11, decodedDates[2]);
+    assertEquals(15, decodedDates[3]);
+    assertEquals(2d, decodedValues[2], 0d);
+    assertEquals(3d, decodedValues[3], 0d);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_encode_unordered() {
+    TimeSeriesBlockCodec.encode(new int[] {2, 2}, new double[] {1d, 2d}, 0, 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_encode_badRange() {
+    TimeSeriesBlockCodec.encode(new int[] {1}, new double[] {1d}, 0, 2);
+  }
+
+  @Test(expectedExceptions = IndexOutOfBoundsException.class)
+  public void test_decode_arrayTooSmall() {
+    byte[] data = TimeSeriesBlockCodec.encode(new int[] {1, 2}, new double[] {1d, 2d}, 0, 2);
+    TimeSeriesBlockCodec.decode(data, new int[1], new double[1], 0);
+  }
+
+  @Test(expectedExceptions = OpenGammaRuntimeException.class)
+  public void test_decode_truncated() {
+    byte[] data = TimeSeriesBlockCodec.encode(new int[] {1, 2}, new double[] {1d, 2.5d}, 0, 2);
+    byte[] truncated = new byte[data.length - 1];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+    TimeSeriesBlockCodec.decode(truncated, new int[2], new double[2], 0);
+  }
+
+  //-------------------------------------------------------------------------
+  private void assertRoundTrip(int[] dates, double[] values) {
+    byte[] data = TimeSeriesBlockCodec.encode(dates, values, 0, dates.length);
+    assertEquals(dates.length, TimeSeriesBlockCodec.decodeCount(data));
+    int[] decodedDates = new int[dates.length];
+    double[] decodedValues = new double[dates.length];
+    assertEquals(dates.length, TimeSeriesBlockCodec.decode(data, decodedDates, decodedValues, 0));
+    for (int i = 0; i < dates.length; i++) {
+      assertEquals(dates[i], decodedDates[i]);
+      assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]));
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.portfolio;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.id.ObjectId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.master.portfolio.ManageablePortfolioNode;
+import com.opengamma.master.portfolio.PortfolioNodeTree;
+import com.opengamma.util.paging.PagingRequest;
+import com.opengamma.util.test.DbTest;
+
+/**
+ * Tests the partial tree loading of DbPortfolioMaster.
+ */
+public class QueryPortfolioDbPortfolioMasterWorkerGetTreeTest extends AbstractDbPortfolioMasterWorkerTest {
+  // superclass sets up dummy database
+
+  private static final Logger s_logger = LoggerFactory.getLogger(QueryPortfolioDbPortfolioMasterWorkerGetTreeTest.class);
+
+  @Factory(dataProvider = "databases", dataProviderClass = DbTest.class)
+  public QueryPortfolioDbPortfolioMasterWorkerGetTreeTest(String databaseType, String databaseVersion) {
+    super(databaseType, databaseVersion, true);
+    s_logger.info("running testcases for {}", databaseType);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_getPortfolioTree_depth0() {
+    PortfolioNodeTree test = _prtMaster.getPortfolioTree(UniqueId.of("DbPrt", "101", "0"), 0);
+    assertEquals(UniqueId.of("DbPrt", "101", "0"), test.getDocument().getUniqueId());
+    assertEquals("TestPortfolio101", test.getDocument().getPortfolio().getName());
+    assertEquals(2, test.getDocument().getPortfolio().getAttributes().size());
+    ManageablePortfolioNode root = test.getRootNode();
+    assertEquals(UniqueId.of("DbPrt", "111", "0"), root.getUniqueId());
+    assertEquals(0, root.getChildNodes().size());
+    assertEquals(1, test.getChildCount(root.getUniqueId()));
+    assertEquals(0, test.getPositionCount(root.getUniqueId()));
+    assertFalse(test.isChildNodesLoaded(root));
+  }
+
+  @Test
+  public void test_getPortfolioTree_depth1() {
+    PortfolioNodeTree test = _prtMaster.getPortfolioTree(UniqueId.of("DbPrt", "101", "0"), 1);
+    ManageablePortfolioNode root = test.getRootNode();
+    assertTrue(test.isChildNodesLoaded(root));
+    ManageablePortfolioNode child = root.getChildNodes().get(0);
+    assertEquals(UniqueId.of("DbPrt", "112", "0"), child.getUniqueId());
+    assertEquals(0, child.getPositionIds().size());
+    assertEquals(1, test.getPositionCount(child.getUniqueId()));
+    assertEquals(1, test.getChildCount(child.getUniqueId()));
+    assertFalse(test.isChildNodesLoaded(child));
+  }
+
+  @Test
+  public void test_getPortfolioTree_latest() {
+    PortfolioNodeTree test = _prtMaster.getPortfolioTree(UniqueId.of("DbPrt", "201"), 5);
+    assertEquals(UniqueId.of("DbPrt", "201", "1"), test.getDocument().getUniqueId());
+    assertEquals(UniqueId.of("DbPrt", "211", "1"), test.getRootNode().getUniqueId());
+    assertEquals(1, test.getPositionCount(test.getRootNode().getUniqueId()));
+  }
+
+  @Test
+  public void test_getPortfolioTree_versionCorrection() {
+    PortfolioNodeTree test = _prtMaster.getPortfolioTree(ObjectId.of("DbPrt", "201"), VersionCorrection.ofVersionAsOf(_version1Instant), 5);
+    assertEquals(UniqueId.of("DbPrt", "201", "0"), test.getDocument().getUniqueId());
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_getPortfolioTree_notFound() {
+    _prtMaster.getPortfolioTree(UniqueId.of("DbPrt", "0", "0"), 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_getPortfolioTree_negativeDepth() {
+    _prtMaster.getPortfolioTree(UniqueId.of("DbPrt", "101", "0"), -1);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_getNodeTree() {
+    PortfolioNodeTree test = _prtMaster.getNodeTree(UniqueId.of("DbPrt", "112", "0"), 1);
+    ManageablePortfolioNode node = test.getRootNode();
+    assertEquals(UniqueId.of("DbPrt", "112", "0"), node.getUniqueId());
+    assertEquals(UniqueId.of("DbPrt", "111", "0"), node.getParentNodeId());
+    assertEquals(1, node.getChildNodes().size());
+    assertEquals(UniqueId.of("DbPrt", "113", "0"), node.getChildNodes().get(0).getUniqueId());
+    assertEquals(2, test.getPositionCount(UniqueId.of("DbPrt", "113", "0")));
+    assertEquals(0, test.getChildCount(UniqueId.of("DbPrt", "113", "0")));
+  }
+
+  @Test
+  public void test_getNodeTree_latest() {
+    PortfolioNodeTree test = _prtMaster.getNodeTree(UniqueId.of("DbPrt", "211"), 0);
+    assertEquals(UniqueId.of("DbPrt", "211", "1"), test.getRootNode().getUniqueId());
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_getNodeTree_notFound() {
+    _prtMaster.getNodeTree(UniqueId.of("DbPrt", "0", "0"), 1);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test
+  public void test_getNodePositionIds_paged() {
+    UniqueId nodeId = UniqueId.of("DbPrt", "113", "0");
+    List<ObjectId> page1 = _prtMaster.getNodePositionIds(nodeId, PagingRequest.ofIndex(0, 1));
+    List<ObjectId> page2 = _prtMaster.getNodePositionIds(nodeId, PagingRequest.ofIndex(1, 1));
+    List<ObjectId> page3 = _prtMaster.getNodePositionIds(nodeId, PagingRequest.ofIndex(2, 1));
+    assertEquals(1, page1.size());
+    assertEquals(ObjectId.of("DbPos", "501"), page1.get(0));
+    assertEquals(1, page2.size());
+    assertEquals(ObjectId.of("DbPos", "502"), page2.get(0));
+    assertEquals(0, page3.size());
+  }
+
+  @Test
+  public void test_getNodePositionIds_latest() {
+    List<ObjectId> test = _prtMaster.getNodePositionIds(UniqueId.of("DbPrt", "211"), PagingRequest.ALL);
+    assertEquals(1, test.size());
+    assertEquals(ObjectId.of("DbPos", "500"), test.get(0));
+  }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.masterdb.position;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.change.ChangeEvent;
+import com.opengamma.core.change.ChangeListener;
+import com.opengamma.core.change.ChangeType;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.master.position.ManageablePosition;
+import com.opengamma.master.position.ManageableTrade;
+import com.opengamma.master.position.PositionDocument;
+import com.opengamma.master.position.PositionSearchRequest;
+import com.opengamma.util.test.DbTest;
+
+/**
+ * Tests the bulk methods of DbPositionMaster.
+ */
+public class ModifyPositionDbPositionMasterWorkerBulkTest extends AbstractDbPositionMasterWorkerTest {
+  // superclass sets up dummy database
+
+  private static final Logger s_logger = LoggerFactory.getLogger(ModifyPositionDbPositionMasterWorkerBulkTest.class);
+
+  @Factory(dataProvider = "databases", dataProviderClass = DbTest.class)
+  public ModifyPositionDbPositionMasterWorkerBulkTest(String databaseType, String databaseVersion) {
+    super(databaseType, databaseVersion, false);
+    s_logger.info("running testcases for {}", databaseType);
+  }
+
+  //-------------------------------------------------------------------------
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_addAll_nullList() {
+    _posMaster.addAll(null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_addAll_noPosition() {
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    docs.add(new PositionDocument(new ManageablePosition(BigDecimal.TEN, ExternalId.of("A", "B"))));
+    docs.add(new PositionDocument());
+    _posMaster.addAll(docs);
+  }
+
+  @Test
+  public void test_addAll_chunked() {
+    _posMaster.setBulkChunkSize(3);
+    RecordingListener listener = new RecordingListener();
+    _posMaster.changeManager().addChangeListener(listener);
+    Instant now = Instant.now(_posMaster.getTimeSource());
+
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    for (int i = 0; i < 7; i++) {
+      // the identifiers are shared between documents in the same chunk
+      ManageablePosition position = new ManageablePosition(BigDecimal.valueOf(i), ExternalId.of("BULK", "S" + (i % 2)));
+      position.addAttribute("index", Integer.toString(i));
+      position.addTrade(new ManageableTrade(BigDecimal.ONE, ExternalId.of("BULK", "S" + (i % 2)), _now.toLocalDate(), _now.toOffsetTime(), ExternalId.of("CPS", "CPV")));
+      docs.add(new PositionDocument(position));
+    }
+    List<PositionDocument> added = _posMaster.addAll(docs);
+
+    assertEquals(7, added.size());
+    assertEquals(7, listener.getEvents().size());
+    for (int i = 0; i < 7; i++) {
+      PositionDocument test = added.get(i);
+      UniqueId uniqueId = test.getUniqueId();
+      assertNotNull(uniqueId);
+      assertEquals("0", uniqueId.getVersion());
+      assertEquals(now, test.getVersionFromInstant());
+      assertEquals(ChangeType.ADDED, listener.getEvents().get(i).getType());
+      assertEquals(uniqueId, listener.getEvents().get(i).getAfterId());
+
+      PositionDocument loaded = _posMaster.get(uniqueId);
+      assertEquals(BigDecimal.valueOf(i), loaded.getPosition().getQuantity());
+      assertEquals(ExternalId.of("BULK", "S" + (i % 2)), loaded.getPosition().getSecurityLink().getExternalId().getExternalIds().iterator().next());
+      assertEquals(Integer.toString(i), loaded.getPosition().getAttributes().get("index"));
+      assertEquals(1, loaded.getPosition().getTrades().size());
+      assertEquals(uniqueId, loaded.getPosition().getTrades().get(0).getParentPositionId());
+    }
+    assertEquals(_totalPositions + 7, _posMaster.search(new PositionSearchRequest()).getDocuments().size());
+  }
+
+  //-------------------------------------------------------------------------
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_updateAll_sameObjectTwice() {
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    for (int i = 0; i < 2; i++) {
+      ManageablePosition pos = new ManageablePosition(BigDecimal.TEN, ExternalId.of("A", "B"));
+      pos.setUniqueId(UniqueId.of("DbPos", "121", "0"));
+      docs.add(new PositionDocument(pos));
+    }
+    _posMaster.updateAll(docs);
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void test_updateAll_notFound() {
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    ManageablePosition pos = new ManageablePosition(BigDecimal.TEN, ExternalId.of("A", "B"));
+    pos.setUniqueId(UniqueId.of("DbPos", "0", "0"));
+    docs.add(new PositionDocument(pos));
+    _posMaster.updateAll(docs);
+  }
+
+  @Test
+  public void test_updateAll_getUpdateGet() {
+    _posMaster.setBulkChunkSize(2);
+    RecordingListener listener = new RecordingListener();
+    _posMaster.changeManager().addChangeListener(listener);
+    Instant now = Instant.now(_posMaster.getTimeSource());
+
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    for (String oid : new String[] {"121", "122", "123"}) {
+      ManageablePosition pos = new ManageablePosition(BigDecimal.TEN, ExternalId.of("A", oid));
+      pos.setUniqueId(UniqueId.of("DbPos", oid, "0"));
+      docs.add(new PositionDocument(pos));
+    }
+    List<PositionDocument> updated = _posMaster.updateAll(docs);
+
+    assertEquals(3, updated.size());
+    assertEquals(3, listener.getEvents().size());
+    for (int i = 0; i < 3; i++) {
+      PositionDocument test = updated.get(i);
+      UniqueId beforeId = UniqueId.of("DbPos", Integer.toString(121 + i), "0");
+      assertEquals(beforeId.getObjectId(), test.getUniqueId().getObjectId());
+      assertEquals(now, test.getVersionFromInstant());
+      assertEquals(ChangeType.UPDATED, listener.getEvents().get(i).getType());
+      assertEquals(beforeId, listener.getEvents().get(i).getBeforeId());
+      assertEquals(test.getUniqueId(), listener.getEvents().get(i).getAfterId());
+
+      assertEquals(now, _posMaster.get(beforeId).getVersionToInstant());  // old version ended
+      assertEquals(BigDecimal.TEN, _posMaster.get(test.getUniqueId()).getPosition().getQuantity());
+    }
+  }
+
+  @Test
+  public void test_correctAll_getCorrectGet() {
+    Instant now = Instant.now(_posMaster.getTimeSource());
+
+    PositionDocument base = _posMaster.get(UniqueId.of("DbPos", "121", "0"));
+    List<PositionDocument> docs = new ArrayList<PositionDocument>();
+    ManageablePosition pos = new ManageablePosition(BigDecimal.TEN, ExternalId.of("A", "B"));
+    pos.setUniqueId(UniqueId.of("DbPos", "121", "0"));
+    docs.add(new PositionDocument(pos));
+    List<PositionDocument> corrected = _posMaster.correctAll(docs);
+
+    assertEquals(1, corrected.size());
+    PositionDocument test = corrected.get(0);
+    assertEquals(base.getVersionFromInstant(), test.getVersionFromInstant());
+    assertEquals(now, test.getCorrectionFromInstant());
+    PositionDocument old = _posMaster.get(UniqueId.of("DbPos", "121", "0"));
+    assertEquals(now, old.getCorrectionToInstant());  // old correction ended
+  }
+
+  //-------------------------------------------------------------------------
+  private static class RecordingListener implements ChangeListener {
+    private final List<ChangeEvent> _events = new ArrayList<ChangeEvent>();
+
+    @Override
+    public void entityChanged(ChangeEvent event) {
+      _events.add(event);
+    }
+
+    public List<ChangeEvent> getEvents() {
+      return _events;
+    }
+  }
+
+}
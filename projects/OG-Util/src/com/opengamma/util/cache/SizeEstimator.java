@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.cache;
+
+/**
+ * Estimates the memory used by a cached value.
+ * <p>
+ * The estimate is used to weigh the value against the capacity of a {@link WeightedCache},
+ * so it need only be roughly proportional to the true size. It is called once when the value
+ * is added and once when it is removed, and must return the same result each time.
+ *
+ * @param <V> the type of the value
+ */
+public interface SizeEstimator<V> {
+
+  /**
+   * Estimates the size of a value.
+   *
+   * @param value  the value, not null
+   * @return the estimated size in bytes, zero or greater
+   */
+  int estimateSize(V value);
+
+}
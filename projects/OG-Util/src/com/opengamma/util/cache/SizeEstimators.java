@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.timeseries.TimeSeries;
+
+/**
+ * Standard implementations of {@link SizeEstimator}.
+ */
+public final class SizeEstimators {
+
+  /**
+   * The size assumed for an object of unknown type.
+   */
+  public static final int DEFAULT_OBJECT_SIZE = 256;
+  /**
+   * The size assumed for each point of a time-series, a date or time and a value.
+   */
+  public static final int TIME_SERIES_POINT_SIZE = 16;
+
+  /**
+   * The default estimator.
+   */
+  private static final SizeEstimator<Object> DEFAULT = new SizeEstimator<Object>() {
+    @Override
+    public int estimateSize(final Object value) {
+      return estimateObjectSize(value);
+    }
+  };
+
+  /**
+   * Restricted constructor.
+   */
+  private SizeEstimators() {
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets an estimator that gives every value the same size.
+   * <p>
+   * A cache using this estimator is bounded by the number of entries.
+   *
+   * @param <V> the type of the value
+   * @param size  the size of each value, zero or greater
+   * @return the estimator, not null
+   */
+  public static <V> SizeEstimator<V> constant(final int size) {
+    ArgumentChecker.notNegative(size, "size");
+    return new SizeEstimator<V>() {
+      @Override
+      public int estimateSize(final V value) {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Gets the default estimator.
+   * <p>
+   * This estimates time-series by their number of points, strings by their length and collections and
+   * maps by their number of elements. Any other object is assumed to be {@link #DEFAULT_OBJECT_SIZE} bytes.
+   *
+   * @return the estimator, not null
+   */
+  public static SizeEstimator<Object> defaultEstimator() {
+    return DEFAULT;
+  }
+
+  /**
+   * Estimates the size of an object using the rules of the default estimator.
+   *
+   * @param value  the value, not null
+   * @return the estimated size in bytes
+   */
+  public static int estimateObjectSize(final Object value) {
+    final long size;
+    if (value instanceof TimeSeries<?, ?>) {
+      size = 64L + (long) TIME_SERIES_POINT_SIZE * ((TimeSeries<?, ?>) value).size();
+    } else if (value instanceof String) {
+      size = 40L + 2L * ((String) value).length();
+    } else if (value instanceof Collection<?>) {
+      size = 64L + (long) DEFAULT_OBJECT_SIZE * ((Collection<?>) value).size();
+    } else if (value instanceof Map<?, ?>) {
+      size = 64L + 2L * DEFAULT_OBJECT_SIZE * ((Map<?, ?>) value).size();
+    } else {
+      size = DEFAULT_OBJECT_SIZE;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An in-process cache bounded by the estimated size of its values rather than by their number.
+ * <p>
+ * Each value is weighed by a {@link SizeEstimator} when it is added, and the least recently used
+ * entries are evicted once the total exceeds the maximum. A few large values, such as long
+ * time-series, therefore displace a proportionate number of small ones rather than each costing
+ * the same as a security. The capacity is divided between a small number of segments to reduce
+ * contention, so a single value should be well under a quarter of the maximum to be retained.
+ * <p>
+ * Values are loaded with {@link #get(Object, Callable)}. Concurrent lookups of the same missing key
+ * share a single call to the loader, with the other threads waiting for its result. As with the
+ * helpers in {@code EHCacheUtils}, a null result and a runtime exception from the loader are cached
+ * as well as values, so that repeated lookups of missing or invalid keys are not passed on.
+ * <p>
+ * Hit, miss, load and eviction counts are kept and can be published over JMX with {@link #registerMBean}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+public class WeightedCache<K, V> implements WeightedCacheMBean {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(WeightedCache.class);
+
+  /**
+   * The weight of a cached null or exception.
+   */
+  private static final int MARKER_WEIGHT = 16;
+  /**
+   * The marker stored for a null value.
+   */
+  private static final Object NULL = new Object();
+
+  /**
+   * The name.
+   */
+  private final String _name;
+  /**
+   * The maximum total weight.
+   */
+  private final long _maximumWeight;
+  /**
+   * The size estimator.
+   */
+  private final SizeEstimator<? super V> _estimator;
+  /**
+   * The underlying cache, holding values, the null marker or failures.
+   */
+  private final Cache<K, Object> _cache;
+  /**
+   * The total weight of the entries.
+   */
+  private final AtomicLong _weight = new AtomicLong();
+  /**
+   * The number of loads that threw an exception.
+   */
+  private final AtomicLong _failureCount = new AtomicLong();
+
+  /**
+   * Creates an instance.
+   *
+   * @param name  the name of the cache, used for JMX, not null
+   * @param maximumWeight  the estimated size in bytes above which entries are evicted, greater than zero
+   * @param estimator  the estimator of the size of each value, not null
+   */
+  public WeightedCache(final String name, final long maximumWeight, final SizeEstimator<? super V> estimator) {
+    ArgumentChecker.notNull(name, "name");
+    ArgumentChecker.isTrue(maximumWeight > 0, "maximumWeight must be positive");
+    ArgumentChecker.notNull(estimator, "estimator");
+    _name = name;
+    _maximumWeight = maximumWeight;
+    _estimator = estimator;
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maximumWeight)
+        .weigher(new Weigher<K, Object>() {
+          @Override
+          public int weigh(final K key, final Object value) {
+            final int weight = weightOf(value);
+            _weight.addAndGet(weight);
+            return weight;
+          }
+        })
+        .removalListener(new RemovalListener<K, Object>() {
+          @Override
+          public void onRemoval(final RemovalNotification<K, Object> notification) {
+            _weight.addAndGet(-weightOf(notification.getValue()));
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private int weightOf(final Object value) {
+    if (value == NULL || value instanceof Failure) {
+      return MARKER_WEIGHT;
+    }
+    return _estimator.estimateSize((V) value);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets a value, loading it if it is not in the cache.
+   * <p>
+   * If another thread is already loading the key, this waits for that load rather than starting another.
+   *
+   * @param key  the key, not null
+   * @param loader  the loader to call if the key is missing, not null
+   * @return the value, null if the loader returned null
+   * @throws RuntimeException if the loader threw an exception, now or on an earlier call
+   */
+  public V get(final K key, final Callable<? extends V> loader) {
+    ArgumentChecker.notNull(key, "key");
+    ArgumentChecker.notNull(loader, "loader");
+    final Object value;
+    try {
+      value = _cache.get(key, new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          try {
+            final V loaded = loader.call();
+            return (loaded != null) ? loaded : NULL;
+          } catch (RuntimeException ex) {
+            _failureCount.incrementAndGet();
+            return new Failure(ex);
+          }
+        }
+      });
+    } catch (ExecutionException ex) {
+      throw new OpenGammaRuntimeException("Unable to load " + key + " into cache " + _name, ex.getCause());
+    } catch (UncheckedExecutionException ex) {
+      throw (RuntimeException) ex.getCause();
+    } catch (ExecutionError ex) {
+      throw (Error) ex.getCause();
+    }
+    return unwrap(value);
+  }
+
+  /**
+   * Gets a value if it is in the cache.
+   *
+   * @param key  the key, not null
+   * @return the value, null if not in the cache or if the cached value is null
+   * @throws RuntimeException if an exception is cached for the key
+   */
+  public V getIfPresent(final K key) {
+    ArgumentChecker.notNull(key, "key");
+    final Object value = _cache.getIfPresent(key);
+    return (value != null) ? unwrap(value) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V unwrap(final Object value) {
+    if (value == NULL) {
+      return null;
+    }
+    if (value instanceof Failure) {
+      throw ((Failure) value).getException();
+    }
+    return (V) value;
+  }
+
+  /**
+   * Adds a value to the cache, replacing any existing value.
+   *
+   * @param key  the key, not null
+   * @param value  the value, null to cache a missing value
+   */
+  public void put(final K key, final V value) {
+    ArgumentChecker.notNull(key, "key");
+    _cache.put(key, (value != null) ? value : NULL);
+  }
+
+  /**
+   * Removes a key from the cache.
+   *
+   * @param key  the key, not null
+   */
+  public void remove(final K key) {
+    ArgumentChecker.notNull(key, "key");
+    _cache.invalidate(key);
+  }
+
+  @Override
+  public void removeAll() {
+    _cache.invalidateAll();
+  }
+
+  //-------------------------------------------------------------------------
+  @Override
+  public String getName() {
+    return _name;
+  }
+
+  @Override
+  public long getSize() {
+    return _cache.size();
+  }
+
+  @Override
+  public long getWeight() {
+    return _weight.get();
+  }
+
+  @Override
+  public long getMaximumWeight() {
+    return _maximumWeight;
+  }
+
+  @Override
+  public long getHitCount() {
+    return _cache.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return _cache.stats().missCount();
+  }
+
+  @Override
+  public double getHitRate() {
+    return _cache.stats().hitRate();
+  }
+
+  @Override
+  public long getLoadCount() {
+    return _cache.stats().loadCount();
+  }
+
+  @Override
+  public long getLoadExceptionCount() {
+    // runtime exceptions are cached as results, so they are counted here rather than by the underlying cache
+    return _cache.stats().loadExceptionCount() + _failureCount.get();
+  }
+
+  @Override
+  public double getAverageLoadMillis() {
+    final CacheStats stats = _cache.stats();
+    return stats.averageLoadPenalty() / 1000000d;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return _cache.stats().evictionCount();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Registers this cache with a JMX server, replacing any cache already registered with the same name.
+   *
+   * @param server  the server, not null
+   * @throws JMException if the registration fails
+   */
+  public void registerMBean(final MBeanServer server) throws JMException {
+    ArgumentChecker.notNull(server, "server");
+    final ObjectName name = new ObjectName("com.opengamma:type=WeightedCache,name=" + ObjectName.quote(_name));
+    // wrapped so that subclasses are also compliant
+    final StandardMBean mbean = new StandardMBean(this, WeightedCacheMBean.class);
+    try {
+      server.registerMBean(mbean, name);
+    } catch (InstanceAlreadyExistsException e) {
+      s_logger.warn("JMX MBean {} already exists - replacing", name);
+      server.unregisterMBean(name);
+      server.registerMBean(mbean, name);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[" + _name + "]";
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A cached exception.
+   */
+  private static final class Failure {
+    private final RuntimeException _exception;
+
+    Failure(final RuntimeException exception) {
+      _exception = exception;
+    }
+
+    RuntimeException getException() {
+      return _exception;
+    }
+  }
+
+}
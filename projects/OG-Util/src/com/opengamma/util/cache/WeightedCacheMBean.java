@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.cache;
+
+/**
+ * JMX management interface for a {@link WeightedCache}.
+ */
+public interface WeightedCacheMBean {
+
+  /**
+   * Gets the name of the cache.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the number of entries
+   */
+  long getSize();
+
+  /**
+   * Gets the estimated size of the entries in the cache.
+   *
+   * @return the estimated size in bytes
+   */
+  long getWeight();
+
+  /**
+   * Gets the estimated size above which entries are evicted.
+   *
+   * @return the maximum size in bytes
+   */
+  long getMaximumWeight();
+
+  /**
+   * Gets the number of lookups that found an entry.
+   *
+   * @return the number of hits
+   */
+  long getHitCount();
+
+  /**
+   * Gets the number of lookups that found no entry.
+   *
+   * @return the number of misses
+   */
+  long getMissCount();
+
+  /**
+   * Gets the proportion of lookups that found an entry.
+   *
+   * @return the hit rate, from zero to one
+   */
+  double getHitRate();
+
+  /**
+   * Gets the number of values loaded. Concurrent lookups of the same missing entry share a single load.
+   *
+   * @return the number of loads
+   */
+  long getLoadCount();
+
+  /**
+   * Gets the number of loads that threw an exception.
+   *
+   * @return the number of failed loads
+   */
+  long getLoadExceptionCount();
+
+  /**
+   * Gets the mean time taken to load a value.
+   *
+   * @return the mean load time in milliseconds
+   */
+  double getAverageLoadMillis();
+
+  /**
+   * Gets the number of entries evicted to keep within the maximum size.
+   *
+   * @return the number of evictions
+   */
+  long getEvictionCount();
+
+  /**
+   * Removes all entries from the cache.
+   */
+  void removeAll();
+
+}
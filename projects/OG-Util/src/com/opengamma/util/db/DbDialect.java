@@ -218,6 +218,22 @@ public abstract class DbDialect {
     return "NEXT VALUE FOR " + sequenceName + " ";
   }
 
+  /**
+   * Builds SQL to query a number of values from a sequence in one statement.
+   * <p>
+   * The SQL returns one row for each value, with the value in the first column.
+   * The values are not necessarily contiguous.
+   * This returns null by default, meaning that the database has no suitable syntax
+   * and each value must be queried separately using {@link #sqlNextSequenceValueSelect}.
+   * 
+   * @param sequenceName  the sequence name, not null
+   * @param count  the number of values to query, greater than zero
+   * @return the SQL, not space terminated, null if not supported
+   */
+  public String sqlNextSequenceValuesSelect(final String sequenceName, final int count) {
+    return null;
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Builds SQL to query the current timestamp.
@@ -0,0 +1,493 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.rest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Coalesces concurrent lookups of single keys into bulk lookups.
+ * <p>
+ * A lookup is queued and the calling thread then either waits for another thread to load it, or
+ * claims one of a limited number of load slots and loads everything queued so far. When requests
+ * are made one at a time each is loaded with {@link #loadSingle}, as before. When many threads make
+ * requests at once, such as during graph building or target resolution, the requests that arrive
+ * while a round trip is in progress are all sent in the next call to {@link #loadBulk}.
+ * <p>
+ * Bulk loads are limited to {@link #getMaxBatchSize()} distinct keys, so that a large request is
+ * sent as a stream of bounded messages rather than one very large one. If a bulk load fails, its keys
+ * are loaded one at a time so that a single bad key does not fail every request batched with it.
+ * <p>
+ * A batch window may be set so that a thread about to load waits briefly for more requests to arrive.
+ * This trades a little latency on each load for larger batches when requests arrive at a steady rate
+ * rather than in bursts. The window ends early if a full batch is queued.
+ * <p>
+ * Counts of the requests made, the loads performed and the distinct keys loaded are kept so that the
+ * batch sizes and the proportion of requests satisfied by another request's load can be monitored.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+public abstract class BulkRequestCoalescer<K, V> {
+
+  /** Logger. */
+  private static final Logger s_logger = LoggerFactory.getLogger(BulkRequestCoalescer.class);
+
+  /**
+   * The default maximum number of keys in a bulk load.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+  /**
+   * The default maximum number of loads in progress at once for a coalescer placed in front of a shared source.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_LOADS = 8;
+
+  /**
+   * The lock guarding the queue and the number of active loads.
+   */
+  private final Object _lock = new Object();
+  /**
+   * The requests waiting to be loaded.
+   */
+  private final Queue<Request<K, V>> _queue = new LinkedList<Request<K, V>>();
+  /**
+   * The maximum number of loads in progress at once.
+   */
+  private final int _maxConcurrentLoads;
+  /**
+   * The maximum number of keys in a bulk load.
+   */
+  private final int _maxBatchSize;
+  /**
+   * The time to wait for further requests before loading, in milliseconds.
+   */
+  private final long _batchWindowMillis;
+  /**
+   * The number of loads in progress.
+   */
+  private int _activeLoads;
+  /**
+   * The number of keys requested.
+   */
+  private final AtomicLong _requestCount = new AtomicLong();
+  /**
+   * The number of loads performed.
+   */
+  private final AtomicLong _loadCount = new AtomicLong();
+  /**
+   * The number of distinct keys loaded.
+   */
+  private final AtomicLong _loadedKeyCount = new AtomicLong();
+
+  /**
+   * Creates an instance allowing one load at a time.
+   */
+  protected BulkRequestCoalescer() {
+    this(1, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxConcurrentLoads  the maximum number of loads in progress at once, greater than zero
+   * @param maxBatchSize  the maximum number of keys in a bulk load, greater than zero
+   */
+  protected BulkRequestCoalescer(final int maxConcurrentLoads, final int maxBatchSize) {
+    this(maxConcurrentLoads, maxBatchSize, 0);
+  }
+
+  /**
+   * Creates an instance with a batch window.
+   *
+   * @param maxConcurrentLoads  the maximum number of loads in progress at once, greater than zero
+   * @param maxBatchSize  the maximum number of keys in a bulk load, greater than zero
+   * @param batchWindowMillis  the time to wait for further requests before loading, in milliseconds, zero or greater
+   */
+  protected BulkRequestCoalescer(final int maxConcurrentLoads, final int maxBatchSize, final long batchWindowMillis) {
+    ArgumentChecker.isTrue(maxConcurrentLoads > 0, "maxConcurrentLoads must be positive");
+    ArgumentChecker.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+    ArgumentChecker.isTrue(batchWindowMillis >= 0, "batchWindowMillis must not be negative");
+    _maxConcurrentLoads = maxConcurrentLoads;
+    _maxBatchSize = maxBatchSize;
+    _batchWindowMillis = batchWindowMillis;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the maximum number of keys in a bulk load.
+   *
+   * @return the maximum batch size
+   */
+  public int getMaxBatchSize() {
+    return _maxBatchSize;
+  }
+
+  /**
+   * Gets the maximum number of loads in progress at once.
+   *
+   * @return the maximum number of loads
+   */
+  public int getMaxConcurrentLoads() {
+    return _maxConcurrentLoads;
+  }
+
+  /**
+   * Gets the time to wait for further requests before loading.
+   *
+   * @return the batch window in milliseconds, zero if loads start immediately
+   */
+  public long getBatchWindowMillis() {
+    return _batchWindowMillis;
+  }
+
+  /**
+   * Gets the number of keys requested, including duplicates.
+   *
+   * @return the number of keys requested
+   */
+  public long getRequestCount() {
+    return _requestCount.get();
+  }
+
+  /**
+   * Gets the number of calls made to {@link #loadSingle} or {@link #loadBulk}.
+   *
+   * @return the number of loads
+   */
+  public long getLoadCount() {
+    return _loadCount.get();
+  }
+
+  /**
+   * Gets the number of distinct keys passed to the loads.
+   * <p>
+   * Dividing this by the load count gives the mean batch size. The difference between the
+   * request count and this is the number of requests satisfied by a load of the same key
+   * made for another request.
+   *
+   * @return the number of keys loaded
+   */
+  public long getLoadedKeyCount() {
+    return _loadedKeyCount.get();
+  }
+
+  /**
+   * Gets the number of lookups waiting to be loaded.
+   *
+   * @return the number of queued lookups
+   */
+  /* package */ int getQueueSize() {
+    synchronized (_lock) {
+      return _queue.size();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Loads the value for a single key.
+   *
+   * @param key  the key, not null
+   * @return the value, null if not found
+   */
+  protected abstract V loadSingle(K key);
+
+  /**
+   * Loads the values for several distinct keys in one call.
+   *
+   * @param keys  the keys, not null or empty
+   * @return the values found, keyed by the requested keys, with missing keys omitted, not null
+   */
+  protected abstract Map<K, V> loadBulk(Collection<K> keys);
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the value for a key, coalescing the lookup with any made concurrently by other threads.
+   *
+   * @param key  the key, not null
+   * @return the value, null if not found
+   * @throws RuntimeException if the load failed
+   */
+  public V get(final K key) {
+    ArgumentChecker.notNull(key, "key");
+    final Request<K, V> request = new Request<K, V>(key);
+    _requestCount.incrementAndGet();
+    synchronized (_lock) {
+      _queue.add(request);
+      if (_queue.size() >= _maxBatchSize) {
+        _lock.notifyAll();
+      }
+    }
+    await(Collections.singletonList(request));
+    return request.getValue();
+  }
+
+  /**
+   * Gets the values for several keys, coalescing the lookups with any made concurrently by other threads.
+   *
+   * @param keys  the keys, not null
+   * @return the values found, with missing keys omitted, not null
+   * @throws RuntimeException if a load failed
+   */
+  public Map<K, V> getAll(final Collection<K> keys) {
+    ArgumentChecker.noNulls(keys, "keys");
+    final List<Request<K, V>> requests = new ArrayList<Request<K, V>>(keys.size());
+    for (K key : keys) {
+      requests.add(new Request<K, V>(key));
+    }
+    _requestCount.addAndGet(requests.size());
+    synchronized (_lock) {
+      _queue.addAll(requests);
+      if (_queue.size() >= _maxBatchSize) {
+        _lock.notifyAll();
+      }
+    }
+    await(requests);
+    final Map<K, V> result = new HashMap<K, V>();
+    for (Request<K, V> request : requests) {
+      final V value = request.getValue();
+      if (value != null) {
+        result.put(request.getKey(), value);
+      }
+    }
+    return result;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Waits until all the requests have been loaded, loading queued requests on this thread whenever a load slot is free.
+   *
+   * @param requests  the requests, not null
+   */
+  private void await(final List<Request<K, V>> requests) {
+    int done = 0;
+    while (true) {
+      final Map<K, List<Request<K, V>>> batch;
+      synchronized (_lock) {
+        while (true) {
+          while (done < requests.size() && requests.get(done).isDone()) {
+            done++;
+          }
+          if (done == requests.size()) {
+            return;
+          }
+          if (_activeLoads < _maxConcurrentLoads && !_queue.isEmpty()) {
+            _activeLoads++;
+            try {
+              awaitBatchWindow();
+            } catch (RuntimeException ex) {
+              _activeLoads--;
+              _lock.notifyAll();
+              throw ex;
+            }
+            if (_queue.isEmpty()) {
+              // another load took the queued requests while this one waited
+              _activeLoads--;
+              _lock.notifyAll();
+              continue;
+            }
+            batch = drain();
+            break;
+          }
+          try {
+            _lock.wait();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new OpenGammaRuntimeException("Interrupted waiting for load", ex);
+          }
+        }
+      }
+      try {
+        load(batch);
+      } finally {
+        synchronized (_lock) {
+          _activeLoads--;
+          _lock.notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for the batch window to pass, or for a full batch to be queued.
+   * Called with the lock held and a load slot claimed.
+   */
+  private void awaitBatchWindow() {
+    if (_batchWindowMillis == 0) {
+      return;
+    }
+    final long deadline = System.currentTimeMillis() + _batchWindowMillis;
+    long remaining = _batchWindowMillis;
+    while (remaining > 0 && _queue.size() < _maxBatchSize) {
+      try {
+        _lock.wait(remaining);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted waiting for load", ex);
+      }
+      remaining = deadline - System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Removes up to the maximum batch size of distinct keys from the queue.
+   * Called with the lock held.
+   *
+   * @return the requests for each key, not null
+   */
+  private Map<K, List<Request<K, V>>> drain() {
+    final Map<K, List<Request<K, V>>> batch = new LinkedHashMap<K, List<Request<K, V>>>();
+    while (!_queue.isEmpty()) {
+      final Request<K, V> request = _queue.peek();
+      List<Request<K, V>> requests = batch.get(request.getKey());
+      if (requests == null) {
+        if (batch.size() >= _maxBatchSize) {
+          break;
+        }
+        requests = new ArrayList<Request<K, V>>(1);
+        batch.put(request.getKey(), requests);
+      }
+      requests.add(_queue.poll());
+    }
+    return batch;
+  }
+
+  /**
+   * Loads a batch of keys and completes their requests.
+   * <p>
+   * If a bulk load fails, each key of the batch is loaded with {@link #loadSingle} instead, so that one bad key
+   * or one failed round trip only fails the requests that it affects. A failure of a single load completes the
+   * requests for that key with it, so that no caller is left waiting. An {@link Error} completes every outstanding
+   * request of the batch and is then also thrown to the loading thread.
+   *
+   * @param batch  the requests for each key, not null
+   */
+  private void load(final Map<K, List<Request<K, V>>> batch) {
+    _loadedKeyCount.addAndGet(batch.size());
+    try {
+      if (batch.size() == 1) {
+        loadEach(batch);
+      } else {
+        _loadCount.incrementAndGet();
+        final Map<K, V> values;
+        try {
+          values = loadBulk(batch.keySet());
+        } catch (RuntimeException ex) {
+          s_logger.warn("Bulk load of {} keys failed, loading them individually: {}", batch.size(), ex.getMessage());
+          s_logger.debug("Caught exception", ex);
+          loadEach(batch);
+          return;
+        }
+        for (Map.Entry<K, List<Request<K, V>>> entry : batch.entrySet()) {
+          final V value = values.get(entry.getKey());
+          for (Request<K, V> request : entry.getValue()) {
+            request.setValue(value);
+          }
+        }
+      }
+    } catch (RuntimeException ex) {
+      fail(batch, ex);
+    } catch (Error ex) {
+      fail(batch, ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Loads each key of a batch with {@link #loadSingle}, completing the requests for a key that fails to load with its failure.
+   *
+   * @param batch  the requests for each key, not null
+   */
+  private void loadEach(final Map<K, List<Request<K, V>>> batch) {
+    for (Map.Entry<K, List<Request<K, V>>> entry : batch.entrySet()) {
+      _loadCount.incrementAndGet();
+      try {
+        final V value = loadSingle(entry.getKey());
+        for (Request<K, V> request : entry.getValue()) {
+          request.setValue(value);
+        }
+      } catch (RuntimeException ex) {
+        for (Request<K, V> request : entry.getValue()) {
+          request.setException(ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Completes the outstanding requests of a batch with a failure.
+   *
+   * @param batch  the requests for each key, not null
+   * @param ex  the failure, not null
+   */
+  private void fail(final Map<K, List<Request<K, V>>> batch, final Throwable ex) {
+    for (List<Request<K, V>> requests : batch.values()) {
+      for (Request<K, V> request : requests) {
+        if (!request.isDone()) {
+          request.setException(ex);
+        }
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A single queued lookup.
+   */
+  private static final class Request<K, V> {
+    private final K _key;
+    private volatile boolean _done;
+    private V _value;
+    private Throwable _exception;
+
+    Request(final K key) {
+      _key = key;
+    }
+
+    K getKey() {
+      return _key;
+    }
+
+    boolean isDone() {
+      return _done;
+    }
+
+    void setValue(final V value) {
+      _value = value;
+      _done = true;
+    }
+
+    void setException(final Throwable exception) {
+      _exception = exception;
+      _done = true;
+    }
+
+    V getValue() {
+      if (_exception instanceof RuntimeException) {
+        throw (RuntimeException) _exception;
+      } else if (_exception instanceof Error) {
+        throw (Error) _exception;
+      }
+      return _value;
+    }
+  }
+
+}
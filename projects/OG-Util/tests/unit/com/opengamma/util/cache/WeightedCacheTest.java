@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link WeightedCache}.
+ */
+@Test
+public class WeightedCacheTest {
+
+  private static Callable<String> value(final String value, final AtomicInteger calls) {
+    return new Callable<String>() {
+      @Override
+      public String call() {
+        calls.incrementAndGet();
+        return value;
+      }
+    };
+  }
+
+  public void test_get_loadsOnce() {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("test", 1000, SizeEstimators.<String>constant(10));
+    final AtomicInteger calls = new AtomicInteger();
+    assertEquals("A", test.get("a", value("A", calls)));
+    assertEquals("A", test.get("a", value("B", calls)));
+    assertEquals(1, calls.get());
+    assertEquals(1, test.getHitCount());
+    assertEquals(1, test.getMissCount());
+    assertEquals(1, test.getLoadCount());
+    assertEquals(1, test.getSize());
+    assertEquals(10, test.getWeight());
+  }
+
+  public void test_get_nullCached() {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("test", 1000, SizeEstimators.<String>constant(10));
+    final AtomicInteger calls = new AtomicInteger();
+    assertNull(test.get("a", value(null, calls)));
+    assertNull(test.get("a", value("A", calls)));
+    assertEquals(1, calls.get());
+  }
+
+  public void test_get_exceptionCached() {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("test", 1000, SizeEstimators.<String>constant(10));
+    final AtomicInteger calls = new AtomicInteger();
+    final Callable<String> failing = new Callable<String>() {
+      @Override
+      public String call() {
+        calls.incrementAndGet();
+        throw new IllegalStateException("Failed");
+      }
+    };
+    for (int i = 0; i < 2; i++) {
+      try {
+        test.get("a", failing);
+        fail();
+      } catch (IllegalStateException ex) {
+        // expected
+      }
+    }
+    assertEquals(1, calls.get());
+    assertEquals(1, test.getLoadExceptionCount());
+  }
+
+  public void test_eviction_byWeight() {
+    final SizeEstimator<String> byLength = new SizeEstimator<String>() {
+      @Override
+      public int estimateSize(final String value) {
+        return value.length();
+      }
+    };
+    final WeightedCache<Integer, String> test = new WeightedCache<Integer, String>("test", 1000, byLength);
+    for (int i = 0; i < 100; i++) {
+      test.put(i, "0123456789");
+    }
+    assertTrue(test.getWeight() <= 1000);
+    // one large value displaces many small ones
+    final String large = new String(new char[200]);
+    test.put(100, large);
+    assertSame(large, test.getIfPresent(100));
+    assertTrue(test.getWeight() <= 1000);
+    assertTrue(test.getEvictionCount() >= 10);
+  }
+
+  public void test_remove() {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("test", 1000, SizeEstimators.<String>constant(10));
+    test.put("a", "A");
+    test.put("b", "B");
+    assertEquals("A", test.getIfPresent("a"));
+    test.remove("a");
+    assertNull(test.getIfPresent("a"));
+    assertEquals(10, test.getWeight());
+    test.removeAll();
+    assertEquals(0, test.getSize());
+    assertEquals(0, test.getWeight());
+  }
+
+  public void test_get_concurrentLoadsCollapsed() throws Exception {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("test", 1000, SizeEstimators.<String>constant(10));
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+    final Callable<String> slow = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        calls.incrementAndGet();
+        release.await();
+        return "A";
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return test.get("a", slow);
+          }
+        }));
+      }
+      while (calls.get() == 0) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      for (Future<String> result : results) {
+        assertEquals("A", result.get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, calls.get());
+      assertEquals(1, test.getLoadCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_registerMBean() throws Exception {
+    final WeightedCache<String, String> test = new WeightedCache<String, String>("WeightedCacheTest", 1000, SizeEstimators.<String>constant(10));
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    test.registerMBean(server);
+    test.registerMBean(server);  // replaces
+    final ObjectName name = new ObjectName("com.opengamma:type=WeightedCache,name=" + ObjectName.quote("WeightedCacheTest"));
+    try {
+      assertEquals(1000L, server.getAttribute(name, "MaximumWeight"));
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+
+  public void test_defaultEstimator() {
+    final SizeEstimator<Object> estimator = SizeEstimators.defaultEstimator();
+    assertEquals(SizeEstimators.DEFAULT_OBJECT_SIZE, estimator.estimateSize(new Object()));
+    assertTrue(estimator.estimateSize("0123456789") < estimator.estimateSize(new String(new char[100])));
+    assertSame(estimator, SizeEstimators.defaultEstimator());
+  }
+
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.util.rest;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test {@link BulkRequestCoalescer}.
+ */
+@Test
+public class BulkRequestCoalescerTest {
+
+  /**
+   * Doubles keys, treating negative keys as missing, and records the calls made.
+   */
+  private static class Doubler extends BulkRequestCoalescer<Integer, Integer> {
+    private final List<Integer> _singleCalls = new CopyOnWriteArrayList<Integer>();
+    private final List<Collection<Integer>> _bulkCalls = new CopyOnWriteArrayList<Collection<Integer>>();
+    private final CountDownLatch _firstCallStarted = new CountDownLatch(1);
+    private final CountDownLatch _release;
+
+    Doubler(final int maxBatchSize, final CountDownLatch release) {
+      super(1, maxBatchSize);
+      _release = release;
+    }
+
+    private void block() {
+      _firstCallStarted.countDown();
+      try {
+        _release.await();
+      } catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+
+    @Override
+    protected Integer loadSingle(final Integer key) {
+      _singleCalls.add(key);
+      block();
+      if (key == 0) {
+        throw new IllegalStateException("Failed");
+      }
+      return key < 0 ? null : key * 2;
+    }
+
+    @Override
+    protected Map<Integer, Integer> loadBulk(final Collection<Integer> keys) {
+      _bulkCalls.add(new ArrayList<Integer>(keys));
+      block();
+      final Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+      for (Integer key : keys) {
+        if (key >= 0) {
+          result.put(key, key * 2);
+        }
+      }
+      return result;
+    }
+  }
+
+  public void test_get_single() {
+    final Doubler test = new Doubler(10, new CountDownLatch(0));
+    assertEquals(Integer.valueOf(4), test.get(2));
+    assertNull(test.get(-1));
+    assertEquals(2, test._singleCalls.size());
+    assertEquals(0, test._bulkCalls.size());
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void test_get_failure() {
+    final Doubler test = new Doubler(10, new CountDownLatch(0));
+    test.get(0);
+  }
+
+  public void test_getAll_batches() {
+    final Doubler test = new Doubler(3, new CountDownLatch(0));
+    final List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 1; i <= 7; i++) {
+      keys.add(i);
+    }
+    keys.add(1);  // duplicate
+    keys.add(-1);  // missing
+    final Map<Integer, Integer> result = test.getAll(keys);
+    assertEquals(7, result.size());
+    for (int i = 1; i <= 7; i++) {
+      assertEquals(Integer.valueOf(i * 2), result.get(i));
+    }
+    for (Collection<Integer> bulkCall : test._bulkCalls) {
+      assertTrue(bulkCall.size() <= 3);
+    }
+    assertEquals(3, test._bulkCalls.size());
+    assertEquals(9, test.getRequestCount());
+    assertEquals(3, test.getLoadCount());
+    assertEquals(9, test.getLoadedKeyCount());  // the duplicate is queued after the first batch is taken
+  }
+
+  public void test_batchWindow_endsWhenBatchFull() {
+    final BulkRequestCoalescer<Integer, Integer> test = new BulkRequestCoalescer<Integer, Integer>(1, 3, 60000L) {
+      @Override
+      protected Integer loadSingle(final Integer key) {
+        return key;
+      }
+
+      @Override
+      protected Map<Integer, Integer> loadBulk(final Collection<Integer> keys) {
+        final Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+        for (Integer key : keys) {
+          result.put(key, key);
+        }
+        return result;
+      }
+    };
+    assertEquals(60000L, test.getBatchWindowMillis());
+    final List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 0; i < 6; i++) {
+      keys.add(i);
+    }
+    final long start = System.currentTimeMillis();
+    assertEquals(6, test.getAll(keys).size());
+    assertTrue(System.currentTimeMillis() - start < 30000L);
+    assertEquals(2, test.getLoadCount());
+  }
+
+  public void test_get_concurrentCoalesced() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final Doubler test = new Doubler(100, release);
+    final ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      results.add(executor.submit(new Lookup(test, 1)));
+      // the first lookup holds the only load slot until released
+      test._firstCallStarted.await();
+      for (int i = 2; i <= 6; i++) {
+        results.add(executor.submit(new Lookup(test, i)));
+      }
+      while (test.getQueueSize() < 5) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(Integer.valueOf((i + 1) * 2), results.get(i).get(5, TimeUnit.SECONDS));
+      }
+      assertEquals(1, test._singleCalls.size());
+      assertEquals(1, test._bulkCalls.size());
+      assertEquals(5, test._bulkCalls.get(0).size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_get_errorCompletesWaiters() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final Doubler test = new Doubler(100, release) {
+      @Override
+      protected Map<Integer, Integer> loadBulk(final Collection<Integer> keys) {
+        throw new AssertionError("Failed");
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      results.add(executor.submit(new Lookup(test, 1)));
+      test._firstCallStarted.await();
+      for (int i = 2; i <= 4; i++) {
+        results.add(executor.submit(new Lookup(test, i)));
+      }
+      while (test.getQueueSize() < 3) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      assertEquals(Integer.valueOf(2), results.get(0).get(5, TimeUnit.SECONDS));
+      for (int i = 1; i < results.size(); i++) {
+        try {
+          results.get(i).get(5, TimeUnit.SECONDS);
+          fail();
+        } catch (ExecutionException ex) {
+          assertTrue(ex.getCause() instanceof AssertionError);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void test_getAll_bulkFailureLoadsIndividually() {
+    final Doubler test = new Doubler(10, new CountDownLatch(0)) {
+      @Override
+      protected Map<Integer, Integer> loadBulk(final Collection<Integer> keys) {
+        throw new IllegalStateException("Failed");
+      }
+    };
+    final List<Integer> keys = new ArrayList<Integer>();
+    for (int i = 1; i <= 3; i++) {
+      keys.add(i);
+    }
+    final Map<Integer, Integer> result = test.getAll(keys);
+    assertEquals(3, result.size());
+    for (int i = 1; i <= 3; i++) {
+      assertEquals(Integer.valueOf(i * 2), result.get(i));
+    }
+    assertEquals(3, test._singleCalls.size());
+    assertEquals(4, test.getLoadCount());
+  }
+
+  public void test_get_bulkFailureOnlyFailsBadKey() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final Doubler test = new Doubler(100, release) {
+      @Override
+      protected Map<Integer, Integer> loadBulk(final Collection<Integer> keys) {
+        if (keys.contains(0)) {
+          throw new IllegalStateException("Failed");
+        }
+        return super.loadBulk(keys);
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+      results.add(executor.submit(new Lookup(test, 1)));
+      test._firstCallStarted.await();
+      results.add(executor.submit(new Lookup(test, 0)));
+      results.add(executor.submit(new Lookup(test, 2)));
+      results.add(executor.submit(new Lookup(test, 3)));
+      while (test.getQueueSize() < 3) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      assertEquals(Integer.valueOf(2), results.get(0).get(5, TimeUnit.SECONDS));
+      try {
+        results.get(1).get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException ex) {
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+      }
+      assertEquals(Integer.valueOf(4), results.get(2).get(5, TimeUnit.SECONDS));
+      assertEquals(Integer.valueOf(6), results.get(3).get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class Lookup implements Callable<Integer> {
+    private final Doubler _doubler;
+    private final int _key;
+
+    Lookup(final Doubler doubler, final int key) {
+      _doubler = doubler;
+      _key = key;
+    }
+
+    @Override
+    public Integer call() {
+      return _doubler.get(_key);
+    }
+  }
+
+}
@@ -17,6 +17,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -31,6 +32,9 @@ import com.opengamma.master.portfolio.ManageablePortfolioNode;
 import com.opengamma.master.portfolio.PortfolioDocument;
 import com.opengamma.master.position.PositionSearchRequest;
 import com.opengamma.master.position.PositionSearchResult;
+import com.opengamma.web.WebPaging;
+import com.opengamma.util.paging.Paging;
+import com.opengamma.util.paging.PagingRequest;
 import com.opengamma.util.tuple.ObjectsPair;
 
 /**
@@ -51,14 +55,19 @@ public class WebPortfolioNodeResource extends AbstractWebPortfolioResource {
   @GET
   @Produces(MediaType.TEXT_HTML)
   public String getHTML() {
-    FlexiBean out = createPortfolioNodeData();
+    FlexiBean out = createPortfolioNodeData(PagingRequest.ALL);
     return getFreemarker().build("portfolios/portfolionode.ftl", out);
   }
 
   @GET
   @Produces(MediaType.APPLICATION_JSON)
-  public Response getJSON() {
-    FlexiBean out = createPortfolioNodeData();
+  public Response getJSON(
+      @QueryParam("pgIdx") Integer pgIdx,
+      @QueryParam("pgNum") Integer pgNum,
+      @QueryParam("pgSze") Integer pgSze) {
+    // positions are only paged if requested, as large nodes are rare
+    PagingRequest pr = (pgIdx != null || pgNum != null || pgSze != null ? buildPagingRequest(pgIdx, pgNum, pgSze) : PagingRequest.ALL);
+    FlexiBean out = createPortfolioNodeData(pr);
     PortfolioDocument doc = data().getPortfolio();
     if (!doc.isLatest()) {
       return Response.status(Status.NOT_FOUND).build();
@@ -68,16 +77,19 @@ public class WebPortfolioNodeResource extends AbstractWebPortfolioResource {
     return Response.ok(s).build();
   }
 
-  private FlexiBean createPortfolioNodeData() {
+  private FlexiBean createPortfolioNodeData(PagingRequest pr) {
     ManageablePortfolioNode node = data().getNode();
     PositionSearchRequest positionSearch = new PositionSearchRequest();
-    positionSearch.setPositionObjectIds(node.getPositionIds());
+    positionSearch.setPositionObjectIds(pr.select(node.getPositionIds()));
     PositionSearchResult positionsResult = data().getPositionMaster().search(positionSearch);
     resolveSecurities(positionsResult.getPositions());
     
     FlexiBean out = createRootData();
     out.put("positionsResult", positionsResult);
     out.put("positions", positionsResult.getPositions());
+    if (pr != PagingRequest.ALL) {
+      out.put("paging", new WebPaging(Paging.of(pr, node.getPositionIds().size()), data().getUriInfo()));
+    }
     return out;
   }
 
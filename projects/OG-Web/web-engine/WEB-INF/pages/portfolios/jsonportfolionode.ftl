@@ -10,6 +10,11 @@
         <#else>
         "parent_node": "Root",
         </#if>
+        <#if paging??>
+        "pgIdx": ${"${paging.firstItem}"?replace(',','')},
+        "pgSze": ${"${paging.pagingSize}"?replace(',','')},
+        "pgTtl": ${"${paging.totalItems}"?replace(',','')},
+        </#if>
         "name": "${node.name}",
         "node": "${node.uniqueId.objectId}",
         "path" : [